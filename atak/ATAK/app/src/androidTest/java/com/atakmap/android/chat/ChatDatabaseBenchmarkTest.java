@@ -0,0 +1,180 @@
+package com.atakmap.android.chat;
+
+import android.os.Bundle;
+import android.os.SystemClock;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.database.CursorIface;
+import com.atakmap.database.DatabaseIface;
+import com.atakmap.database.Databases;
+import com.atakmap.database.StatementIface;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Populates a chat database with 100k messages and times the history and
+ * search queries against it. Timings are logged under {@link #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChatDatabaseBenchmarkTest extends ATAKInstrumentedTest {
+
+    private static final String TAG = "ChatDatabaseBenchmark";
+
+    private static final int NUM_MESSAGES = 100000;
+    private static final int NUM_CONVERSATIONS = 20;
+    private static final String ALL_CHAT = "All Chat Rooms";
+    private static final int PAGE_SIZE = 100;
+
+    private static final String[] WORDS = {
+            "alpha", "bravo", "charlie", "delta", "echo", "foxtrot",
+            "checkpoint", "resupply", "casualty", "overwatch", "grid",
+            "moving", "holding", "copy", "negative", "affirm"
+    };
+
+    private static DatabaseIface db;
+    private static boolean fullText;
+
+    @BeforeClass
+    public static void populate() {
+        db = Databases.openOrCreateDatabase(null);
+        ChatDatabase.onCreate(db);
+        fullText = Databases.getTableNames(db)
+                .contains(ChatDatabase.TABLE_CHAT_SEARCH);
+
+        final Random r = new Random(1);
+        final long start = SystemClock.elapsedRealtime();
+        StatementIface stmt = null;
+        db.beginTransaction();
+        try {
+            stmt = db.compileStatement("INSERT INTO "
+                    + ChatDatabase.TABLE_CHAT
+                    + " (conversationId, messageId, receiveTime, sentTime,"
+                    + " senderUid, senderCallsign, message, messageTime)"
+                    + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+            long time = 1600000000000L;
+            for (int i = 0; i < NUM_MESSAGES; i++) {
+                // half of all traffic is in all chat rooms
+                final String convo = (i % 2 == 0) ? ALL_CHAT
+                        : "conversation-" + r.nextInt(NUM_CONVERSATIONS);
+                time += r.nextInt(5000);
+                StringBuilder msg = new StringBuilder();
+                for (int w = 3 + r.nextInt(10); w > 0; w--)
+                    msg.append(WORDS[r.nextInt(WORDS.length)]).append(' ');
+                msg.append(i);
+                try {
+                    stmt.bind(1, convo);
+                    stmt.bind(2, "message-" + i);
+                    stmt.bind(3, time);
+                    stmt.bind(4, time - 100);
+                    stmt.bind(5, "sender-" + r.nextInt(50));
+                    stmt.bind(6, "Callsign" + r.nextInt(50));
+                    stmt.bind(7, msg.toString());
+                    stmt.bind(8, time);
+                    stmt.execute();
+                } finally {
+                    stmt.clearBindings();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            if (stmt != null)
+                stmt.close();
+            db.endTransaction();
+        }
+        Log.d(TAG, "inserted " + NUM_MESSAGES + " messages in "
+                + (SystemClock.elapsedRealtime() - start) + "ms (full text "
+                + fullText + ")");
+    }
+
+    @AfterClass
+    public static void dispose() {
+        if (db != null)
+            db.close();
+        db = null;
+    }
+
+    @Test
+    public void page_through_history() {
+        long start = SystemClock.elapsedRealtime();
+        List<Bundle> page = ChatDatabase.getHistory(db, ALL_CHAT,
+                Long.MAX_VALUE, Long.MAX_VALUE, PAGE_SIZE);
+        Log.d(TAG, "newest page in "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+        assertEquals(PAGE_SIZE, page.size());
+
+        int count = page.size();
+        start = SystemClock.elapsedRealtime();
+        long lastTime = Long.MAX_VALUE;
+        while (!page.isEmpty()) {
+            final Bundle oldest = page.get(0);
+            final long time = oldest
+                    .getLong(ChatDatabase.MESSAGE_TIME_COL_NAME);
+            assertTrue(time <= lastTime);
+            lastTime = time;
+            page = ChatDatabase.getHistory(db, ALL_CHAT, time,
+                    oldest.getLong(ChatDatabase.ID_COL_NAME), PAGE_SIZE);
+            count += page.size();
+        }
+        Log.d(TAG, "paged through " + count + " messages in "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+        assertEquals(NUM_MESSAGES / 2, count);
+    }
+
+    @Test
+    public void full_history_baseline() {
+        final long start = SystemClock.elapsedRealtime();
+        int count = 0;
+        CursorIface cursor = null;
+        try {
+            // the query used to open a conversation prior to paging
+            cursor = db.query("SELECT * FROM " + ChatDatabase.TABLE_CHAT
+                    + " WHERE conversationId = ? ORDER BY CASE"
+                    + " WHEN receiveTime IS NULL THEN sentTime"
+                    + " ELSE receiveTime END", new String[] {
+                            ALL_CHAT
+            });
+            while (cursor.moveToNext())
+                count++;
+        } finally {
+            if (cursor != null)
+                cursor.close();
+        }
+        Log.d(TAG, "full history of " + count + " messages in "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+        assertEquals(NUM_MESSAGES / 2, count);
+    }
+
+    @Test
+    public void search() {
+        long start = SystemClock.elapsedRealtime();
+        List<Bundle> results = ChatDatabase.searchMessages(db, fullText,
+                "resupply checkpoint", 50);
+        Log.d(TAG, "search (full text " + fullText + ") in "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+        assertFalse(results.isEmpty());
+        for (Bundle b : results) {
+            final String msg = b.getString("message");
+            assertTrue(msg.contains("resupply") && msg.contains("checkpoint"));
+        }
+
+        start = SystemClock.elapsedRealtime();
+        List<Bundle> scan = ChatDatabase.searchMessages(db, false,
+                "resupply checkpoint", 50);
+        Log.d(TAG, "search (scan) in "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+        assertEquals(results.size(), scan.size());
+    }
+}
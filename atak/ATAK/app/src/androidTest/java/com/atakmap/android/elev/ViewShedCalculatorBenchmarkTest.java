@@ -0,0 +1,76 @@
+package com.atakmap.android.elev;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.coremap.log.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times a single observer and a patrol of observers over a DTED2 sized
+ * grid. The timings are logged under {@link #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ViewShedCalculatorBenchmarkTest extends ATAKInstrumentedTest {
+
+    private static final String TAG = "ViewShedCalculatorBenchmark";
+
+    @Test
+    public void single_observer_and_patrol() {
+        final int size = 2001;
+        final float[] grid = terrain(size, new Random(1));
+        ViewShedCalculator calc = new ViewShedCalculator(grid, size, size,
+                30d, 30d);
+
+        // warm up
+        calc.calculate(new ViewShedCalculator.Observer(size / 2, size / 2,
+                2d, 30000d));
+
+        long start = System.nanoTime();
+        int[] counts = calc.calculate(new ViewShedCalculator.Observer(
+                size / 2, size / 2, 2d, 30000d));
+        Log.d(TAG, "1 observer over " + size + "x" + size + " in "
+                + (System.nanoTime() - start) / 1000000L + "ms");
+        assertEquals(size * size, counts.length);
+
+        final ViewShedCalculator.Observer[] patrol = new ViewShedCalculator.Observer[8];
+        final Random r = new Random(2);
+        for (int i = 0; i < patrol.length; i++)
+            patrol[i] = new ViewShedCalculator.Observer(r.nextInt(size),
+                    r.nextInt(size), 2d, 15000d);
+        start = System.nanoTime();
+        counts = calc.calculate(patrol);
+        Log.d(TAG, patrol.length + " observers over " + size + "x" + size
+                + " in " + (System.nanoTime() - start) / 1000000L + "ms");
+        assertEquals(size * size, counts.length);
+    }
+
+    /**
+     * Generates rolling terrain from a sum of randomly oriented waves, as
+     * in ViewShedCalculatorTest.
+     */
+    private static float[] terrain(int size, Random r) {
+        final float[] grid = new float[size * size];
+        for (int k = 0; k < 8; k++) {
+            final double amplitude = 200d / (k + 1);
+            final double frequency = 0.01d * (k + 1);
+            final double theta = r.nextDouble() * Math.PI;
+            final double phase = r.nextDouble() * Math.PI * 2d;
+            final double cos = Math.cos(theta);
+            final double sin = Math.sin(theta);
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    grid[y * size + x] += (float) (amplitude * Math.sin(
+                            frequency * (x * cos + y * sin) + phase));
+                }
+            }
+        }
+        return grid;
+    }
+}
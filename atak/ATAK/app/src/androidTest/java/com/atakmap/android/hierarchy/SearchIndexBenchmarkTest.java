@@ -0,0 +1,96 @@
+package com.atakmap.android.hierarchy;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.coremap.log.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times building a search index of 100k items and querying it against
+ * scanning the same fields, which is the work done per keystroke by the map
+ * group search that the index replaced. The timings are logged under
+ * {@link #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchIndexBenchmarkTest extends ATAKInstrumentedTest {
+
+    private static final String TAG = "SearchIndexBenchmark";
+
+    private static final String[] WORDS = {
+            "alpha", "bravo", "charlie", "delta", "echo", "foxtrot",
+            "checkpoint", "rally", "point", "route", "overwatch", "grid"
+    };
+
+    @Test
+    public void build_and_query() {
+        final int count = 100000;
+        final Random r = new Random(1);
+        String[][] fields = new String[count][];
+        for (int i = 0; i < count; i++) {
+            fields[i] = new String[] {
+                    randomName(r), "CALLSIGN-" + i,
+                    r.nextInt(4) == 0 ? randomName(r) + " " + randomName(r)
+                            : null
+            };
+        }
+
+        SearchIndex<Integer> index = new SearchIndex<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++)
+            index.put(i, fields[i]);
+        Log.d(TAG, "indexed " + count + " items in "
+                + (System.nanoTime() - start) / 1000000L + "ms");
+
+        final String[] terms = {
+                "a", "ch", "rally", "point 4", "callsign-9999", "foxtrot-1"
+        };
+        for (String term : terms) {
+            final int iterations = 20;
+            int hits = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                hits = index.find(term, 0).size();
+            final long indexed = (System.nanoTime() - start) / iterations;
+
+            start = System.nanoTime();
+            int scanned = 0;
+            for (int i = 0; i < iterations; i++)
+                scanned = scan(fields, term);
+            final long scan = (System.nanoTime() - start) / iterations;
+
+            assertEquals(term, scanned, hits);
+            Log.d(TAG, "\"" + term + "\" " + hits + " hits in "
+                    + indexed / 1000L + "us (scan " + scan / 1000L + "us)");
+        }
+    }
+
+    private static int scan(String[][] fields, String term) {
+        int count = 0;
+        for (String[] f : fields) {
+            for (String s : f) {
+                if (s != null && s.toLowerCase(Locale.US).contains(term)) {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static String randomName(Random r) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(WORDS[r.nextInt(WORDS.length)]);
+        sb.append(r.nextBoolean() ? ' ' : '-');
+        sb.append(WORDS[r.nextInt(WORDS.length)].toUpperCase(Locale.US));
+        sb.append(' ').append(r.nextInt(100));
+        return sb.toString();
+    }
+}
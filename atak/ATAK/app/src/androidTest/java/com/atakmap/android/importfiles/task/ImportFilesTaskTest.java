@@ -0,0 +1,144 @@
+package com.atakmap.android.importfiles.task;
+
+import android.content.Context;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.android.importfiles.sort.ImportResolver;
+import com.atakmap.android.importfiles.sort.ImportSHPSort;
+import com.atakmap.coremap.filesystem.FileSystemUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class ImportFilesTaskTest extends ATAKInstrumentedTest {
+
+    private static final String[] SIDECARS = {
+            ".shx", ".dbf", ".prj", ".cpg"
+    };
+
+    private File root;
+    private File importDir;
+    private File overlaysDir;
+
+    @Before
+    public void setup() {
+        final Context appContext = InstrumentationRegistry.getTargetContext();
+        root = new File(appContext.getCacheDir(), "ImportFilesTaskTest");
+        FileSystemUtils.delete(root);
+        importDir = new File(root, "import");
+        overlaysDir = new File(root, "overlays");
+        assertTrue(importDir.mkdirs());
+    }
+
+    @After
+    public void teardown() {
+        FileSystemUtils.delete(root);
+    }
+
+    @Test
+    public void shapefile_sidecars_are_moved_once() throws IOException {
+        final Context appContext = InstrumentationRegistry.getTargetContext();
+        for (String name : new String[] {
+                "roads", "rivers", "parcels"
+        }) {
+            write(new File(importDir, name + ".shp"), new byte[] {
+                    0x00, 0x00, 0x27, 0x0A, 0x00, 0x00, 0x00, 0x00
+            });
+            for (String ext : SIDECARS)
+                write(new File(importDir, name + ext), new byte[] {
+                        0x01
+                });
+        }
+
+        final ImportSHPSort shp = new ImportSHPSort(appContext, true, false,
+                false) {
+            @Override
+            public File getDestinationPath(File file) {
+                return new File(overlaysDir, file.getName());
+            }
+
+            @Override
+            protected void onFileSorted(File src, File dst,
+                    Set<SortFlags> flags) {
+            }
+        };
+        final RecordingResolver others = new RecordingResolver();
+
+        final ImportFilesTask task = new ImportFilesTask(appContext);
+        final int sorted = task.sortDirectory(importDir,
+                Arrays.<ImportResolver> asList(shp, others));
+
+        // the sidecars that had already been moved with their shapefile
+        // are not offered to the sorters that follow
+        assertEquals(Collections.<File> emptyList(), others.missing);
+        assertEquals(3, sorted);
+        for (String name : new String[] {
+                "roads", "rivers", "parcels"
+        }) {
+            assertTrue(new File(overlaysDir, name + ".shp").exists());
+            for (String ext : SIDECARS) {
+                assertTrue(new File(overlaysDir, name + ext).exists());
+                assertFalse(new File(importDir, name + ext).exists());
+            }
+        }
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(data);
+        }
+    }
+
+    /**
+     * Matches every file and records the files that no longer existed when
+     * it was asked to import them. Never imports anything.
+     */
+    private static class RecordingResolver extends ImportResolver {
+        final List<File> missing = new ArrayList<>();
+
+        RecordingResolver() {
+            super(null, null, false, false);
+        }
+
+        @Override
+        public boolean beginImport(File file) {
+            return beginImport(file, Collections.<SortFlags> emptySet());
+        }
+
+        @Override
+        public boolean beginImport(File file, Set<SortFlags> flags) {
+            if (!file.exists())
+                missing.add(file);
+            return false;
+        }
+
+        @Override
+        public File getDestinationPath(File file) {
+            return file;
+        }
+
+        @Override
+        public String getDisplayableName() {
+            return "Recording";
+        }
+    }
+}
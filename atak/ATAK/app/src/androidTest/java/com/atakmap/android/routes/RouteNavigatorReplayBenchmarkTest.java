@@ -0,0 +1,142 @@
+package com.atakmap.android.routes;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.coremap.log.Log;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Replays a GPS track recorded along a long route through the route geometry
+ * and times locating each fix with the segment grid against scanning every
+ * segment of the route, which is the work done per fix by the spatial
+ * queries that the geometry replaced. The per-fix cost of each is logged
+ * under {@link #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RouteNavigatorReplayBenchmarkTest extends ATAKInstrumentedTest {
+
+    private static final String TAG = "RouteNavigatorReplay";
+
+    private static final int NUM_VERTICES = 20000;
+    // fixes per route segment, roughly one per second at walking speed
+    private static final int FIXES_PER_SEGMENT = 4;
+
+    private static double[] route;
+    private static double[] track;
+
+    @BeforeClass
+    public static void record() {
+        final Random r = new Random(1);
+
+        // a meandering route with vertices ~20m apart
+        route = new double[NUM_VERTICES * 2];
+        double x = -77.0d;
+        double y = 38.9d;
+        double heading = 0d;
+        for (int i = 0; i < NUM_VERTICES; i++) {
+            route[i * 2] = x;
+            route[i * 2 + 1] = y;
+            heading += r.nextGaussian() * 0.3d;
+            x += Math.cos(heading) * 0.0002d;
+            y += Math.sin(heading) * 0.0002d;
+        }
+
+        // the track follows the route with ~5m of GPS noise
+        track = new double[(NUM_VERTICES - 1) * FIXES_PER_SEGMENT * 2];
+        int idx = 0;
+        for (int i = 0; i < NUM_VERTICES - 1; i++) {
+            for (int j = 0; j < FIXES_PER_SEGMENT; j++) {
+                final double t = (double) j / FIXES_PER_SEGMENT;
+                track[idx++] = route[i * 2] + t
+                        * (route[i * 2 + 2] - route[i * 2])
+                        + r.nextGaussian() * 0.00005d;
+                track[idx++] = route[i * 2 + 1] + t
+                        * (route[i * 2 + 3] - route[i * 2 + 1])
+                        + r.nextGaussian() * 0.00005d;
+            }
+        }
+    }
+
+    @Test
+    public void replay_matches_scan() {
+        final RouteNavigatorGeometry geometry = new RouteNavigatorGeometry(
+                route, NUM_VERTICES);
+        final int numFixes = track.length / 2;
+
+        final int[] indexed = new int[numFixes];
+        long start = System.nanoTime();
+        for (int i = 0; i < numFixes; i++)
+            indexed[i] = geometry.nearestSegment(track[i * 2],
+                    track[i * 2 + 1]);
+        final long indexedNanos = System.nanoTime() - start;
+
+        // the scan is slow; sample every 50th fix
+        final int step = 50;
+        start = System.nanoTime();
+        int scanned = 0;
+        for (int i = 0; i < numFixes; i += step) {
+            assertEquals(scan(track[i * 2], track[i * 2 + 1]), indexed[i]);
+            scanned++;
+        }
+        final long scanNanos = System.nanoTime() - start;
+
+        Log.d(TAG, "grid: " + (indexedNanos / 1000000L) + "ms for "
+                + numFixes + " fixes, "
+                + ((double) indexedNanos / numFixes) + "ns/fix");
+        Log.d(TAG, "scan: " + (scanNanos / 1000000L) + "ms for "
+                + scanned + " fixes, "
+                + ((double) scanNanos / scanned) + "ns/fix");
+    }
+
+    @Test
+    public void replay_locate() {
+        final RouteNavigatorGeometry geometry = new RouteNavigatorGeometry(
+                route, NUM_VERTICES);
+        final int numFixes = track.length / 2;
+
+        double last = 0d;
+        final long start = System.nanoTime();
+        for (int i = 0; i < numFixes; i++) {
+            final double loc = geometry.locate(track[i * 2],
+                    track[i * 2 + 1]);
+            geometry.getGeodesicLength(Math.min(last, loc),
+                    Math.max(last, loc));
+            last = loc;
+        }
+        final long nanos = System.nanoTime() - start;
+        Log.d(TAG, "locate + along-route distance: " + (nanos / 1000000L)
+                + "ms for " + numFixes + " fixes, "
+                + ((double) nanos / numFixes) + "ns/fix");
+    }
+
+    private static int scan(double x, double y) {
+        int best = -1;
+        double bestDist = Double.POSITIVE_INFINITY;
+        for (int s = 0; s < NUM_VERTICES - 1; s++) {
+            final double ax = route[s * 2];
+            final double ay = route[s * 2 + 1];
+            final double dx = route[s * 2 + 2] - ax;
+            final double dy = route[s * 2 + 3] - ay;
+            final double len2 = dx * dx + dy * dy;
+            double t = (len2 > 0d) ? ((x - ax) * dx + (y - ay) * dy) / len2
+                    : 0d;
+            t = Math.max(0d, Math.min(1d, t));
+            final double ex = x - (ax + t * dx);
+            final double ey = y - (ay + t * dy);
+            final double d = ex * ex + ey * ey;
+            if (d < bestDist) {
+                bestDist = d;
+                best = s;
+            }
+        }
+        return best;
+    }
+}
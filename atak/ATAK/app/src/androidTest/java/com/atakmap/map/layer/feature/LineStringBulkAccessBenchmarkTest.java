@@ -0,0 +1,124 @@
+package com.atakmap.map.layer.feature;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.lang.Unsafe;
+import com.atakmap.map.layer.feature.geometry.LineString;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.DoubleBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Times reading the vertices of a large linestring one coordinate at a time
+ * against the bulk accessors. The per-vertex cost of each is logged under
+ * {@link #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LineStringBulkAccessBenchmarkTest extends ATAKInstrumentedTest {
+
+    private static final String TAG = "LineStringBulkAccess";
+
+    private static final int NUM_POINTS = 250000;
+    private static final int ITERATIONS = 5;
+
+    private static LineString linestring;
+    private static double checksum;
+
+    @BeforeClass
+    public static void populate() {
+        final Random r = new Random(1);
+        double[] xyz = new double[NUM_POINTS * 3];
+        for (int i = 0; i < xyz.length; i += 3) {
+            xyz[i] = r.nextDouble() * 360d - 180d;
+            xyz[i + 1] = r.nextDouble() * 180d - 90d;
+            xyz[i + 2] = r.nextDouble() * 1000d;
+        }
+        linestring = new LineString(3);
+        linestring.addPoints(xyz, 0, NUM_POINTS, 3);
+
+        checksum = 0d;
+        for (double v : xyz)
+            checksum += v;
+    }
+
+    @AfterClass
+    public static void dispose() {
+        if (linestring != null)
+            linestring.dispose();
+        linestring = null;
+    }
+
+    @Test
+    public void per_vertex() {
+        double sum = 0d;
+        final long start = System.nanoTime();
+        for (int n = 0; n < ITERATIONS; n++) {
+            sum = 0d;
+            final int numPoints = linestring.getNumPoints();
+            for (int i = 0; i < numPoints; i++) {
+                sum += linestring.getX(i);
+                sum += linestring.getY(i);
+                sum += linestring.getZ(i);
+            }
+        }
+        log("getX/getY/getZ", System.nanoTime() - start);
+        assertChecksum(sum);
+    }
+
+    @Test
+    public void bulk_array() {
+        double sum = 0d;
+        double[] xyz = new double[NUM_POINTS * 3];
+        final long start = System.nanoTime();
+        for (int n = 0; n < ITERATIONS; n++) {
+            sum = 0d;
+            linestring.getPoints(0, linestring.getNumPoints(), xyz, 0, 3);
+            for (double v : xyz)
+                sum += v;
+        }
+        log("getPoints(double[])", System.nanoTime() - start);
+        assertChecksum(sum);
+    }
+
+    @Test
+    public void bulk_direct_buffer() {
+        double sum = 0d;
+        DoubleBuffer xyz = Unsafe.allocateDirect(NUM_POINTS * 3,
+                DoubleBuffer.class);
+        try {
+            final long start = System.nanoTime();
+            for (int n = 0; n < ITERATIONS; n++) {
+                sum = 0d;
+                xyz.clear();
+                linestring.getPoints(0, linestring.getNumPoints(), xyz, 3);
+                for (int i = 0; i < NUM_POINTS * 3; i++)
+                    sum += xyz.get(i);
+            }
+            log("getPoints(DoubleBuffer)",
+                    System.nanoTime() - start);
+        } finally {
+            Unsafe.free(xyz);
+        }
+        assertChecksum(sum);
+    }
+
+    private static void log(String method, long nanos) {
+        Log.d(TAG, method + ": " + (nanos / 1000000L) + "ms for "
+                + ITERATIONS + "x" + NUM_POINTS + " points, "
+                + ((double) nanos / (ITERATIONS * NUM_POINTS))
+                + "ns/vertex");
+    }
+
+    private static void assertChecksum(double sum) {
+        assertTrue(Math.abs(sum - checksum) <= Math.abs(checksum) * 1e-9);
+    }
+}
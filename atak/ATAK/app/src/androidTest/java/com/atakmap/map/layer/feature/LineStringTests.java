@@ -10,6 +10,9 @@ import com.atakmap.map.layer.feature.geometry.Point;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
 import java.util.Random;
 
 public class LineStringTests extends AbstractGeometryTests {
@@ -726,5 +729,100 @@ public class LineStringTests extends AbstractGeometryTests {
         }
     }
 
+    @Test
+    public void LineString_2d_get_points_2d_roundtrip() {
+        Random r = RandomUtils.rng();
+        final int numPoints = 5 + r.nextInt(6);
+        double[] xy = RandomUtils.randomDoubleArray(numPoints * 2);
+        LineString linestring = new LineString(2);
+        linestring.addPoints(xy, 0, numPoints, 2);
+
+        double[] pts = new double[1 + numPoints * 2];
+        linestring.getPoints(0, numPoints, pts, 1, 2);
+        for (int i = 0; i < numPoints * 2; i++)
+            Assert.assertTrue(xy[i] == pts[i + 1]);
+        Assert.assertArrayEquals(xy, linestring.getPoints(2), 0d);
+    }
+
+    @Test
+    public void LineString_2d_get_points_3d_roundtrip() {
+        Random r = RandomUtils.rng();
+        final int numPoints = 5 + r.nextInt(6);
+        double[] xy = RandomUtils.randomDoubleArray(numPoints * 2);
+        LineString linestring = new LineString(2);
+        linestring.addPoints(xy, 0, numPoints, 2);
+
+        double[] xyz = linestring.getPoints(3);
+        Assert.assertEquals(numPoints * 3, xyz.length);
+        for (int i = 0; i < numPoints; i++) {
+            Assert.assertTrue(xy[i * 2] == xyz[i * 3]);
+            Assert.assertTrue(xy[i * 2 + 1] == xyz[i * 3 + 1]);
+            Assert.assertTrue(0d == xyz[i * 3 + 2]);
+        }
+    }
+
+    @Test
+    public void LineString_3d_get_points_range_roundtrip() {
+        Random r = RandomUtils.rng();
+        final int numPoints = 5 + r.nextInt(6);
+        double[] xyz = RandomUtils.randomDoubleArray(numPoints * 3);
+        LineString linestring = new LineString(3);
+        linestring.addPoints(xyz, 0, numPoints, 3);
+
+        double[] xy = new double[(numPoints - 2) * 2];
+        linestring.getPoints(1, numPoints - 2, xy, 0, 2);
+        for (int i = 0; i < numPoints - 2; i++) {
+            Assert.assertTrue(xyz[(i + 1) * 3] == xy[i * 2]);
+            Assert.assertTrue(xyz[(i + 1) * 3 + 1] == xy[i * 2 + 1]);
+        }
+    }
+
+    @Test
+    public void LineString_3d_get_points_buffer_roundtrip() {
+        Random r = RandomUtils.rng();
+        final int numPoints = 5 + r.nextInt(6);
+        double[] xyz = RandomUtils.randomDoubleArray(numPoints * 3);
+        LineString linestring = new LineString(3);
+        linestring.addPoints(xyz, 0, numPoints, 3);
+
+        DoubleBuffer[] buffers = new DoubleBuffer[] {
+                ByteBuffer.allocateDirect(8 * (2 + numPoints * 3))
+                        .order(ByteOrder.nativeOrder()).asDoubleBuffer(),
+                ByteBuffer.allocateDirect(8 * (2 + numPoints * 3))
+                        .order(ByteOrder.BIG_ENDIAN).asDoubleBuffer(),
+                DoubleBuffer.allocate(2 + numPoints * 3),
+        };
+        for (DoubleBuffer buffer : buffers) {
+            buffer.position(2);
+            linestring.getPoints(0, numPoints, buffer, 3);
+            Assert.assertEquals(2 + numPoints * 3, buffer.position());
+            for (int i = 0; i < numPoints * 3; i++)
+                Assert.assertTrue(xyz[i] == buffer.get(i + 2));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void LineString_get_points_out_of_bounds_throws() {
+        LineString linestring = randomLineString(2, 5, false);
+        double[] pts = new double[12];
+        linestring.getPoints(0, 6, pts, 0, 2);
+        Assert.fail();
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void LineString_get_points_array_overflow_throws() {
+        LineString linestring = randomLineString(2, 5, false);
+        double[] pts = new double[8];
+        linestring.getPoints(0, 5, pts, 0, 2);
+        Assert.fail();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void LineString_get_points_bad_dimension_throws() {
+        LineString linestring = randomLineString(2, 5, false);
+        linestring.getPoints(4);
+        Assert.fail();
+    }
+
     // WKB tests
 }
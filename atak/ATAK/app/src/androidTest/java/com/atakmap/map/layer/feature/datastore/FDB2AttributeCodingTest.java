@@ -0,0 +1,239 @@
+package com.atakmap.map.layer.feature.datastore;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.android.androidtest.util.FileUtils;
+import com.atakmap.map.layer.feature.AttributeSet;
+import com.atakmap.map.layer.feature.DataStoreException;
+import com.atakmap.map.layer.feature.Feature;
+import com.atakmap.map.layer.feature.FeatureSet;
+import com.atakmap.map.layer.feature.Utils;
+import com.atakmap.map.layer.feature.geometry.Point;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Encodes attributes into a feature database and decodes them back, both
+ * through the connection that wrote them and after reopening the database,
+ * when the schema and string dictionary are reloaded from their tables.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FDB2AttributeCodingTest extends ATAKInstrumentedTest {
+
+    @Test
+    public void all_types_round_trip() throws DataStoreException {
+        final List<AttributeSet> attrs = new ArrayList<>();
+        attrs.add(allTypes(0));
+        attrs.add(allTypes(1));
+        attrs.add(nullsAndEmpties());
+
+        // the same keys with a different type code to a secondary schema
+        final AttributeSet secondary = new AttributeSet();
+        secondary.setAttribute("int", "not an int");
+        secondary.setAttribute("string", 42L);
+        secondary.setAttribute("nested", new int[] {
+                1, 2
+        });
+        attrs.add(secondary);
+
+        assertRoundTrip(attrs);
+    }
+
+    @Test
+    public void repeated_strings_round_trip() throws DataStoreException {
+        // enough distinct values to fill the dictionary of the schema, the
+        // values past it are coded inline
+        final List<AttributeSet> attrs = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            final AttributeSet a = new AttributeSet();
+            a.setAttribute("category", "category " + (i % 5));
+            a.setAttribute("name", "feature " + i);
+            attrs.add(a);
+        }
+        assertRoundTrip(attrs);
+    }
+
+    @Test
+    public void rolled_back_strings_are_not_referenced()
+            throws DataStoreException {
+        try (FileUtils.AutoDeleteFile f = FileUtils.AutoDeleteFile
+                .createTempFile(".sqlite")) {
+            f.file.delete();
+
+            final long fid;
+            FeatureSetDatabase2 db = new FeatureSetDatabase2(f.file);
+            try {
+                final long fsid = db.insertFeatureSet(new FeatureSet("test",
+                        "test", "test", Double.MAX_VALUE, 0d));
+                db.insertFeature(new Feature(fsid, "f0", new Point(0, 0),
+                        null, category("Paved")));
+
+                // fails after a new string is added to the dictionary
+                final List<Feature> inserts = new ArrayList<>();
+                for (int i = 1; i <= 2; i++)
+                    inserts.add(new Feature(fsid, "f" + i, new Point(i, i),
+                            null, category("Gravel")));
+                try {
+                    db.insertFeatures(new ListFeatureCursor(inserts) {
+                        @Override
+                        public boolean moveToNext() {
+                            if (index == 1)
+                                throw new IllegalStateException();
+                            return super.moveToNext();
+                        }
+                    });
+                    fail();
+                } catch (IllegalStateException expected) {
+                }
+
+                fid = db.insertFeature(new Feature(fsid, "f3",
+                        new Point(3, 3), null, category("Gravel")));
+                assertEquals(category("Gravel"),
+                        Utils.getFeature(db, fid).getAttributes());
+            } finally {
+                db.dispose();
+            }
+
+            db = new FeatureSetDatabase2(f.file);
+            try {
+                assertEquals(category("Gravel"),
+                        Utils.getFeature(db, fid).getAttributes());
+            } finally {
+                db.dispose();
+            }
+        }
+    }
+
+    private static void assertRoundTrip(List<AttributeSet> attrs)
+            throws DataStoreException {
+        try (FileUtils.AutoDeleteFile f = FileUtils.AutoDeleteFile
+                .createTempFile(".sqlite")) {
+            f.file.delete();
+
+            final long[] fids = new long[attrs.size()];
+            FeatureSetDatabase2 db = new FeatureSetDatabase2(f.file);
+            try {
+                final long fsid = db.insertFeatureSet(new FeatureSet("test",
+                        "test", "test", Double.MAX_VALUE, 0d));
+                for (int i = 0; i < fids.length; i++)
+                    fids[i] = db.insertFeature(new Feature(fsid, "f" + i,
+                            new Point(i, i), null, attrs.get(i)));
+                assertAttributes(db, fids, attrs);
+            } finally {
+                db.dispose();
+            }
+
+            db = new FeatureSetDatabase2(f.file);
+            try {
+                assertAttributes(db, fids, attrs);
+            } finally {
+                db.dispose();
+            }
+        }
+    }
+
+    private static void assertAttributes(FeatureSetDatabase2 db, long[] fids,
+            List<AttributeSet> expected) throws DataStoreException {
+        for (int i = 0; i < fids.length; i++) {
+            final Feature feature = Utils.getFeature(db, fids[i]);
+            assertNotNull(feature);
+            assertEquals("feature " + i, expected.get(i),
+                    feature.getAttributes());
+        }
+    }
+
+    private static AttributeSet allTypes(int seed) {
+        final AttributeSet a = new AttributeSet();
+        a.setAttribute("int", seed == 0 ? Integer.MIN_VALUE : -1);
+        a.setAttribute("long", seed == 0 ? Long.MAX_VALUE : Long.MIN_VALUE);
+        a.setAttribute("double", seed == 0 ? Math.PI : Double.MIN_VALUE);
+        a.setAttribute("string", seed == 0 ? "Paved" : "Gravel");
+        a.setAttribute("unicode", "Straße 東京");
+        a.setAttribute("long string", longString(100 + seed));
+        a.setAttribute("binary", new byte[] {
+                (byte) seed, 0, (byte) 0xFF
+        });
+        a.setAttribute("int array", new int[] {
+                0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE
+        });
+        a.setAttribute("long array", new long[] {
+                seed, -300L, Long.MAX_VALUE, Long.MIN_VALUE
+        });
+        a.setAttribute("double array", new double[] {
+                -1.5d, Double.MAX_VALUE, Double.NEGATIVE_INFINITY
+        });
+        a.setAttribute("string array", new String[] {
+                "Paved", longString(70), "", "é"
+        });
+        a.setAttribute("binary array", new byte[][] {
+                {
+                        1, 2, 3
+                }, new byte[0]
+        });
+
+        final AttributeSet inner = new AttributeSet();
+        inner.setAttribute("string", "Paved");
+        inner.setAttribute("double array", new double[] {
+                seed
+        });
+        final AttributeSet nested = new AttributeSet();
+        nested.setAttribute("int", seed);
+        nested.setAttribute("string", "nested " + seed);
+        nested.setAttribute("inner", inner);
+        a.setAttribute("nested", nested);
+        return a;
+    }
+
+    private static AttributeSet nullsAndEmpties() {
+        final AttributeSet a = new AttributeSet();
+        a.setAttribute("int", 0);
+        a.setAttribute("long", 0L);
+        a.setAttribute("double", 0d);
+        a.setAttribute("string", (String) null);
+        a.setAttribute("empty string", "");
+        a.setAttribute("binary", (byte[]) null);
+        a.setAttribute("empty binary", new byte[0]);
+        a.setAttribute("int array", (int[]) null);
+        a.setAttribute("empty int array", new int[0]);
+        a.setAttribute("long array", (long[]) null);
+        a.setAttribute("empty long array", new long[0]);
+        a.setAttribute("double array", (double[]) null);
+        a.setAttribute("empty double array", new double[0]);
+        a.setAttribute("string array", (String[]) null);
+        a.setAttribute("empty string array", new String[0]);
+        a.setAttribute("null string elements", new String[] {
+                null, "a", null
+        });
+        a.setAttribute("binary array", (byte[][]) null);
+        a.setAttribute("empty binary array", new byte[0][]);
+        a.setAttribute("null binary elements", new byte[][] {
+                null, {
+                        7
+                }
+        });
+        a.setAttribute("nested", new AttributeSet());
+        return a;
+    }
+
+    private static AttributeSet category(String value) {
+        final AttributeSet a = new AttributeSet();
+        a.setAttribute("category", value);
+        return a;
+    }
+
+    private static String longString(int length) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++)
+            sb.append((char) ('a' + i % 26));
+        return sb.toString();
+    }
+}
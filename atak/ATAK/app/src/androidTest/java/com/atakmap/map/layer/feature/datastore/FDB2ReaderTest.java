@@ -0,0 +1,161 @@
+package com.atakmap.map.layer.feature.datastore;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.android.androidtest.util.FileUtils;
+import com.atakmap.map.layer.feature.AttributeSet;
+import com.atakmap.map.layer.feature.DataStoreException;
+import com.atakmap.map.layer.feature.Feature;
+import com.atakmap.map.layer.feature.FeatureCursor;
+import com.atakmap.map.layer.feature.FeatureDataStore2;
+import com.atakmap.map.layer.feature.FeatureSet;
+import com.atakmap.map.layer.feature.geometry.Point;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Queries a feature database while features are inserted. Each query runs
+ * on a read-only connection and sees the database as it was when the query
+ * was issued, across all of the statements of the query.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FDB2ReaderTest extends ATAKInstrumentedTest {
+
+    private static final int FEATURE_SETS = 3;
+    private static final int FEATURES = 10;
+
+    private FileUtils.AutoDeleteFile file;
+    private FeatureSetDatabase2 db;
+    private final long[] fsids = new long[FEATURE_SETS];
+    private final Set<Long> committed = new HashSet<>();
+
+    @Before
+    public void setup() throws DataStoreException {
+        file = FileUtils.AutoDeleteFile.createTempFile(".sqlite");
+        file.file.delete();
+
+        db = new FeatureSetDatabase2(file.file);
+        for (int i = 0; i < fsids.length; i++) {
+            fsids[i] = db.insertFeatureSet(new FeatureSet("test", "test",
+                    "set " + i, Double.MAX_VALUE, 0d));
+            for (int j = 0; j < FEATURES; j++)
+                committed.add(db.insertFeature(feature(fsids[i], j)));
+        }
+        // a visibility set on a feature has every feature set checked
+        // individually, so that a query has one statement per feature set
+        db.setFeatureVisible(committed.iterator().next(), true);
+    }
+
+    @After
+    public void teardown() {
+        db.dispose();
+        file.close();
+    }
+
+    @Test
+    public void query_during_bulk_insert_sees_committed_rows()
+            throws DataStoreException {
+        final List<Feature> inserts = new ArrayList<>();
+        for (int j = 0; j < FEATURES; j++) {
+            for (long fsid : fsids)
+                inserts.add(feature(fsid, FEATURES + j));
+        }
+
+        final List<Set<Long>> seen = new ArrayList<>();
+        db.insertFeatures(new ListFeatureCursor(inserts) {
+            @Override
+            public boolean moveToNext() {
+                // query between the insertions of the open transaction
+                if (index % FEATURE_SETS == 0 && index > 0)
+                    seen.add(queryVisible());
+                return super.moveToNext();
+            }
+        });
+
+        assertEquals(FEATURES, seen.size());
+        for (Set<Long> fids : seen)
+            assertEquals(committed, fids);
+        assertEquals(committed.size() + inserts.size(),
+                queryVisible().size());
+    }
+
+    @Test
+    public void query_sees_snapshot_when_issued() throws DataStoreException {
+        final FeatureCursor result = db.queryFeatures(visibleOnly());
+        try {
+            // committed after the query was issued, before it is read
+            for (long fsid : fsids)
+                db.insertFeature(feature(fsid, FEATURES));
+            assertEquals(committed, fids(result));
+        } finally {
+            result.close();
+        }
+        assertEquals(committed.size() + FEATURE_SETS, queryVisible().size());
+    }
+
+    @Test
+    public void readers_are_bounded() throws DataStoreException {
+        final List<FeatureCursor> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 10; i++)
+                results.add(db.queryFeatures(visibleOnly()));
+            assertTrue("readers " + db.getReaderCount(),
+                    db.getReaderCount() <= 3);
+            for (FeatureCursor result : results)
+                assertEquals(committed, fids(result));
+        } finally {
+            for (FeatureCursor result : results)
+                result.close();
+        }
+
+        // the readers are reused once the queries are closed
+        for (int i = 0; i < 10; i++)
+            assertEquals(committed, queryVisible());
+        assertTrue("readers " + db.getReaderCount(),
+                db.getReaderCount() <= 3);
+    }
+
+    private Set<Long> queryVisible() {
+        try {
+            final FeatureCursor result = db.queryFeatures(visibleOnly());
+            try {
+                return fids(result);
+            } finally {
+                result.close();
+            }
+        } catch (DataStoreException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static FeatureDataStore2.FeatureQueryParameters visibleOnly() {
+        final FeatureDataStore2.FeatureQueryParameters params = new FeatureDataStore2.FeatureQueryParameters();
+        params.visibleOnly = true;
+        return params;
+    }
+
+    private static Set<Long> fids(FeatureCursor result) {
+        final Set<Long> fids = new HashSet<>();
+        while (result.moveToNext())
+            assertTrue(fids.add(result.getId()));
+        return fids;
+    }
+
+    private static Feature feature(long fsid, int i) {
+        final AttributeSet attrs = new AttributeSet();
+        attrs.setAttribute("index", i);
+        return new Feature(fsid, "f" + i, new Point(i, i), null, attrs);
+    }
+}
@@ -0,0 +1,93 @@
+package com.atakmap.map.layer.feature.datastore;
+
+import com.atakmap.map.layer.feature.AttributeSet;
+import com.atakmap.map.layer.feature.Feature;
+import com.atakmap.map.layer.feature.FeatureCursor;
+import com.atakmap.map.layer.feature.FeatureDataStore2;
+import com.atakmap.map.layer.feature.FeatureDefinition;
+
+import java.util.List;
+
+/**
+ * Iterates a list of features for insertion.
+ */
+class ListFeatureCursor implements FeatureCursor {
+    final List<Feature> features;
+    int index;
+
+    ListFeatureCursor(List<Feature> features) {
+        this.features = features;
+        this.index = 0;
+    }
+
+    private Feature row() {
+        return features.get(index - 1);
+    }
+
+    @Override
+    public boolean moveToNext() {
+        if (index == features.size())
+            return false;
+        index++;
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean isClosed() {
+        return false;
+    }
+
+    @Override
+    public Object getRawGeometry() {
+        return row().getGeometry();
+    }
+
+    @Override
+    public int getGeomCoding() {
+        return FeatureDefinition.GEOM_ATAK_GEOMETRY;
+    }
+
+    @Override
+    public String getName() {
+        return row().getName();
+    }
+
+    @Override
+    public int getStyleCoding() {
+        return FeatureDefinition.STYLE_ATAK_STYLE;
+    }
+
+    @Override
+    public Object getRawStyle() {
+        return row().getStyle();
+    }
+
+    @Override
+    public AttributeSet getAttributes() {
+        return row().getAttributes();
+    }
+
+    @Override
+    public Feature get() {
+        return row();
+    }
+
+    @Override
+    public long getId() {
+        return FeatureDataStore2.FEATURE_ID_NONE;
+    }
+
+    @Override
+    public long getVersion() {
+        return FeatureDataStore2.FEATURE_VERSION_NONE;
+    }
+
+    @Override
+    public long getFsid() {
+        return row().getFeatureSetId();
+    }
+}
@@ -0,0 +1,335 @@
+package com.atakmap.map.layer.feature.datastore.caching;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.android.androidtest.util.FileUtils;
+import com.atakmap.map.layer.feature.AttributeSet;
+import com.atakmap.map.layer.feature.DataStoreException;
+import com.atakmap.map.layer.feature.Feature;
+import com.atakmap.map.layer.feature.FeatureCursor;
+import com.atakmap.map.layer.feature.FeatureSet;
+import com.atakmap.map.layer.feature.datastore.RuntimeFeatureDataStore2;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.feature.geometry.Geometry;
+import com.atakmap.map.layer.feature.geometry.LineString;
+import com.atakmap.map.layer.feature.geometry.Point;
+import com.atakmap.map.layer.feature.ogr.style.FeatureStyleParser;
+import com.atakmap.map.layer.feature.style.BasicPointStyle;
+import com.atakmap.map.layer.feature.style.BasicStrokeStyle;
+import com.atakmap.map.layer.feature.style.Style;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Writes the features of a runtime data store to a cache file, reopens the
+ * file and checks that the features, feature sets and spatial index read
+ * back match what was written.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CacheFileV2Test extends ATAKInstrumentedTest {
+
+    private static final int CLIENT_VERSION = 7;
+    private static final int LEVEL = 4;
+    private static final int INDEX = 11;
+    private static final long TIMESTAMP = 1234567890L;
+
+    // 30x30 points is enough features for a three level spatial index
+    private static final int GRID = 30;
+
+    // offsets into the file of fields in the header following the 24 byte
+    // cache file prefix
+    private static final int NUM_FEATURES_OFFSET = 24 + 8;
+    private static final int RECORDS_INDEX_OFFSET = 24 + 32;
+
+    private RuntimeFeatureDataStore2 store;
+    private final Map<Long, Feature> written = new HashMap<>();
+    private long roadsFsid;
+    private long pointsFsid;
+
+    @Before
+    public void setup() throws DataStoreException {
+        store = new RuntimeFeatureDataStore2();
+        roadsFsid = store.insertFeatureSet(new FeatureSet("test", "roads",
+                "Roads", Double.MAX_VALUE, 0d));
+        pointsFsid = store.insertFeatureSet(new FeatureSet("test", "points",
+                "Points", 5000d, 10d));
+
+        final Style[] styles = {
+                new BasicPointStyle(0xFFFF0000, 4f),
+                new BasicPointStyle(0xFF00FF00, 8f),
+                null
+        };
+        for (int y = 0; y < GRID; y++) {
+            for (int x = 0; x < GRID; x++) {
+                final AttributeSet attrs = new AttributeSet();
+                attrs.setAttribute("x", x);
+                attrs.setAttribute("label", "point " + x + "," + y);
+                insert(new Feature(pointsFsid, "p" + x + "," + y,
+                        new Point(-78d + x * 0.01d, 35d + y * 0.01d),
+                        styles[(x + y) % styles.length], attrs,
+                        Feature.AltitudeMode.ClampToGround, 0d));
+            }
+        }
+
+        final LineString road = new LineString(3);
+        road.addPoint(-78.005d, 35.005d, 100d);
+        road.addPoint(-77.955d, 35.105d, 120d);
+        road.addPoint(-77.905d, 35.055d, 140d);
+        final AttributeSet attrs = new AttributeSet();
+        final AttributeSet nested = new AttributeSet();
+        nested.setAttribute("lanes", 2L);
+        nested.setAttribute("speeds", new double[] {
+                35d, 45d
+        });
+        attrs.setAttribute("surface", "paved");
+        attrs.setAttribute("info", nested);
+        attrs.setAttribute("blob", new byte[] {
+                1, 2, 3
+        });
+        insert(new Feature(roadsFsid, "road", road,
+                new BasicStrokeStyle(0xFF0000FF, 3f), attrs,
+                Feature.AltitudeMode.Absolute, 0d));
+
+        // leave gaps in the FIDs
+        for (long fid : new HashSet<>(written.keySet())) {
+            if (fid % 7 == 3) {
+                store.deleteFeature(fid);
+                written.remove(fid);
+            }
+        }
+    }
+
+    @Test
+    public void round_trip() throws IOException, DataStoreException {
+        try (FileUtils.AutoDeleteFile f = FileUtils.AutoDeleteFile
+                .createTempFile()) {
+            final CacheFile cache = write(f.file);
+            try {
+                assertEquals(CLIENT_VERSION, cache.getClientVersion());
+                assertEquals(LEVEL, cache.getLevel());
+                assertEquals(INDEX, cache.getIndex());
+                assertEquals(TIMESTAMP, cache.getTimestamp());
+                assertEquals(written.size(), cache.getNumFeatures());
+
+                final Set<Long> fids = new HashSet<>();
+                cache.getFIDs(fids);
+                assertEquals(written.keySet(), fids);
+
+                for (Feature expected : written.values())
+                    assertFeature(expected,
+                            cache.findFeature(expected.getId()));
+                assertNull(cache.findFeature(-1L));
+                assertNull(cache.findFeature(Long.MAX_VALUE));
+
+                final Set<Long> iterated = new HashSet<>();
+                FeatureCursor result = cache.getFeatures();
+                try {
+                    while (result.moveToNext()) {
+                        final Feature feature = result.get();
+                        assertTrue(iterated.add(feature.getId()));
+                        assertFeature(written.get(feature.getId()), feature);
+                    }
+                } finally {
+                    result.close();
+                }
+                assertEquals(written.keySet(), iterated);
+
+                assertEquals(2, cache.getNumFeatureSets());
+                final Map<Long, FeatureSet> sets = new HashMap<>();
+                for (int i = 0; i < cache.getNumFeatureSets(); i++) {
+                    final FeatureSet fs = cache.getFeatureSet(i);
+                    sets.put(fs.getId(), fs);
+                }
+                assertEquals("Roads", sets.get(roadsFsid).getName());
+                assertEquals("points", sets.get(pointsFsid).getType());
+                assertEquals(5000d, sets.get(pointsFsid).getMinResolution(),
+                        0d);
+                assertEquals(10d, sets.get(pointsFsid).getMaxResolution(),
+                        0d);
+            } finally {
+                cache.dispose();
+            }
+        }
+    }
+
+    @Test
+    public void spatial_queries_match_scan()
+            throws IOException, DataStoreException {
+        try (FileUtils.AutoDeleteFile f = FileUtils.AutoDeleteFile
+                .createTempFile()) {
+            final CacheFile cache = write(f.file);
+            try {
+                final Random r = new Random(5);
+                for (int i = 0; i < 200; i++) {
+                    final double x = -78.05d + r.nextDouble() * 0.4d;
+                    final double y = 34.95d + r.nextDouble() * 0.4d;
+                    final LineString filter = new LineString(2);
+                    filter.addPoint(x, y);
+                    filter.addPoint(x + r.nextDouble() * 0.1d,
+                            y + r.nextDouble() * 0.1d);
+
+                    final Set<Long> found = new HashSet<>();
+                    assertTrue(cache.findIntersectingFeatures(found, filter));
+                    assertEquals("query " + i, scan(filter.getEnvelope()),
+                            found);
+                }
+
+                // a filter outside of all of the features
+                final Set<Long> found = new HashSet<>();
+                cache.findIntersectingFeatures(found, new Point(10d, 10d));
+                assertTrue(found.isEmpty());
+            } finally {
+                cache.dispose();
+            }
+        }
+    }
+
+    @Test
+    public void truncated_header_is_rejected()
+            throws IOException, DataStoreException {
+        try (FileUtils.AutoDeleteFile f = FileUtils.AutoDeleteFile
+                .createTempFile()) {
+            write(f.file).dispose();
+            truncate(f.file, 24 + 40);
+            try {
+                CacheFile.readCacheFile(f.file.getAbsolutePath());
+                fail("expected EOFException");
+            } catch (EOFException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void truncated_content_is_rejected()
+            throws IOException, DataStoreException {
+        try (FileUtils.AutoDeleteFile f = FileUtils.AutoDeleteFile
+                .createTempFile()) {
+            write(f.file).dispose();
+            truncate(f.file, f.file.length() - 100);
+            assertRejected(f.file);
+        }
+    }
+
+    @Test
+    public void corrupt_header_is_rejected()
+            throws IOException, DataStoreException {
+        try (FileUtils.AutoDeleteFile f = FileUtils.AutoDeleteFile
+                .createTempFile()) {
+            write(f.file).dispose();
+            try (RandomAccessFile raf = new RandomAccessFile(f.file, "rw")) {
+                raf.seek(RECORDS_INDEX_OFFSET);
+                raf.writeLong(raf.length());
+            }
+            assertRejected(f.file);
+
+            write(f.file).dispose();
+            try (RandomAccessFile raf = new RandomAccessFile(f.file, "rw")) {
+                raf.seek(NUM_FEATURES_OFFSET);
+                raf.writeInt(-1);
+            }
+            assertRejected(f.file);
+        }
+    }
+
+    @Test
+    public void bad_magic_number_is_not_read()
+            throws IOException, DataStoreException {
+        try (FileUtils.AutoDeleteFile f = FileUtils.AutoDeleteFile
+                .createTempFile()) {
+            write(f.file).dispose();
+            try (RandomAccessFile raf = new RandomAccessFile(f.file, "rw")) {
+                final int magic = raf.read();
+                raf.seek(0);
+                raf.write(~magic);
+            }
+            assertNull(CacheFile.readCacheFile(f.file.getAbsolutePath()));
+        }
+    }
+
+    private void insert(Feature feature) throws DataStoreException {
+        final long fid = store.insertFeature(feature);
+        written.put(fid, new Feature(feature.getFeatureSetId(), fid,
+                feature.getName(), feature.getGeometry(), feature.getStyle(),
+                feature.getAttributes()));
+    }
+
+    private CacheFile write(File file) throws IOException, DataStoreException {
+        CacheFile.createCacheFile(CLIENT_VERSION, LEVEL, INDEX, TIMESTAMP,
+                store, null, file.getAbsolutePath());
+        final CacheFile cache = CacheFile.readCacheFile(
+                file.getAbsolutePath());
+        assertNotNull(cache);
+        return cache;
+    }
+
+    private Set<Long> scan(Envelope filter) {
+        final Set<Long> fids = new HashSet<>();
+        for (Feature feature : written.values()) {
+            final Envelope mbb = feature.getGeometry().getEnvelope();
+            if (mbb.minX <= filter.maxX && mbb.minY <= filter.maxY
+                    && mbb.maxX >= filter.minX && mbb.maxY >= filter.minY)
+                fids.add(feature.getId());
+        }
+        return fids;
+    }
+
+    private static void assertFeature(Feature expected, Feature actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getFeatureSetId(), actual.getFeatureSetId());
+        assertEquals(expected.getName(), actual.getName());
+        assertArrayEquals(wkb(expected.getGeometry()),
+                wkb(actual.getGeometry()));
+        if (expected.getStyle() == null)
+            assertNull(actual.getStyle());
+        else
+            assertEquals(FeatureStyleParser.pack(expected.getStyle()),
+                    FeatureStyleParser.pack(actual.getStyle()));
+        assertEquals(expected.getAttributes(), actual.getAttributes());
+    }
+
+    private static byte[] wkb(Geometry geometry) {
+        final ByteBuffer buf = ByteBuffer
+                .allocate(geometry.computeWkbSize());
+        geometry.toWkb(buf);
+        return buf.array();
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+    }
+
+    private static void assertRejected(File file) {
+        try {
+            final CacheFile cache = CacheFile
+                    .readCacheFile(file.getAbsolutePath());
+            if (cache != null)
+                cache.dispose();
+            fail("expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package com.atakmap.map.layer.raster.tilematrix;
+
+import android.graphics.Bitmap;
+import android.graphics.Point;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.android.androidtest.util.FileUtils;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.map.contentservices.CacheRequest;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.feature.geometry.LineString;
+import com.atakmap.map.layer.feature.geometry.Polygon;
+import com.atakmap.map.layer.raster.osm.OSMDroidTileContainer;
+import com.atakmap.map.layer.raster.osm.OSMUtils;
+import com.atakmap.map.layer.raster.osm.OSMWebMercator;
+import com.atakmap.math.PointD;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scrapes tiles served over loopback into an OSMDroid container, cancels
+ * the scrape part way through and resumes it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TileScraperDownloadTest extends ATAKInstrumentedTest {
+
+    private static final int MIN_LEVEL = 10;
+    private static final int MAX_LEVEL = 13;
+
+    private FileUtils.AutoDeleteFile file;
+    private OSMDroidTileContainer container;
+    private TileServer server;
+
+    @Before
+    public void setup() throws IOException {
+        file = FileUtils.AutoDeleteFile.createTempFile(".sqlite");
+        file.file.delete();
+        container = (OSMDroidTileContainer) OSMDroidTileContainer
+                .openOrCreate(file.getPath(), "test", 3857);
+        server = new TileServer();
+    }
+
+    @After
+    public void teardown() {
+        server.close();
+        container.dispose();
+        ScrapeJournal.getJournalFile(file.file).delete();
+        file.close();
+    }
+
+    @Test
+    public void resumed_scrape_downloads_missing_tiles() {
+        final CacheRequest request = request();
+        final int total = TileScraper.estimateTileCount(
+                new TileServerClient(container, server.getPort(), "a"),
+                request);
+        assertTrue("tiles " + total, total > 2 * 64);
+
+        // a tile already present in the container is not downloaded
+        final PointD center = OSMWebMercator.INSTANCE
+                .forward(new GeoPoint(38.75d, -77.25d), null);
+        final Point present = TileMatrix.Util.getTileIndex(container,
+                MIN_LEVEL, center.x, center.y);
+        container.setTile(MIN_LEVEL, present.x, present.y,
+                TileServer.data(MIN_LEVEL, present.x, present.y),
+                Long.MAX_VALUE);
+        final String presentTile = TileServer.tile(MIN_LEVEL, present.x,
+                present.y);
+
+        // cancel once half of the tiles have been requested
+        server.cancelAfter("a", total / 2, request);
+        final CountingContainer sink1 = new CountingContainer(container);
+        final TileScraper scraper1 = new TileScraper(
+                new TileServerClient(container, server.getPort(), "a"),
+                sink1, request, null);
+        scraper1.run();
+        final TileScraper.Statistics stats1 = scraper1.getStatistics();
+
+        assertTrue(ScrapeJournal.getJournalFile(file.file).exists());
+        assertFalse(server.getRequests("a").contains(presentTile));
+        assertEquals(1, stats1.tilesSkipped);
+        assertEquals(0, stats1.tilesFailed);
+        assertFalse(sink1.writeOutsideTransaction);
+
+        // the tiles written before the cancel
+        final Set<String> written = new HashSet<>();
+        for (String tile : server.getRequests("a")) {
+            final int[] lxy = TileServer.parse(tile);
+            if (container.hasTile(lxy[0], lxy[1], lxy[2]))
+                written.add(tile);
+        }
+        assertEquals(stats1.tilesDownloaded, written.size());
+        assertTrue(written.size() < total - 1);
+
+        // resume
+        request.canceled = false;
+        final CountingContainer sink2 = new CountingContainer(container);
+        final TileScraper scraper2 = new TileScraper(
+                new TileServerClient(container, server.getPort(), "b"),
+                sink2, request, null);
+        scraper2.run();
+        final TileScraper.Statistics stats2 = scraper2.getStatistics();
+
+        final List<String> requested = server.getRequests("b");
+        final Set<String> fetched = new HashSet<>(requested);
+        assertEquals("tile requested more than once", requested.size(),
+                fetched.size());
+        assertFalse(fetched.contains(presentTile));
+        for (String tile : written)
+            assertFalse(tile, fetched.contains(tile));
+
+        assertEquals(total - written.size() - 1, fetched.size());
+        assertEquals(fetched.size(), stats2.tilesDownloaded);
+        assertEquals(written.size() + 1, stats2.tilesSkipped);
+        assertEquals(0, stats2.tilesFailed);
+        for (String tile : fetched) {
+            final int[] lxy = TileServer.parse(tile);
+            assertArrayEquals(tile, TileServer.data(lxy[0], lxy[1], lxy[2]),
+                    container.getTileData(lxy[0], lxy[1], lxy[2], null));
+        }
+
+        // the downloaded tiles are written in batches
+        assertFalse(sink2.writeOutsideTransaction);
+        assertTrue("transactions " + sink2.transactions,
+                sink2.transactions > 1
+                        && sink2.transactions < stats2.tilesDownloaded);
+
+        // the journal is removed once the scrape completes
+        assertFalse(ScrapeJournal.getJournalFile(file.file).exists());
+    }
+
+    private CacheRequest request() {
+        final LineString ring = new LineString(2);
+        ring.addPoint(-77.5d, 38.5d);
+        ring.addPoint(-77.0d, 38.5d);
+        ring.addPoint(-77.0d, 39.0d);
+        ring.addPoint(-77.5d, 39.0d);
+        ring.addPoint(-77.5d, 38.5d);
+
+        final CacheRequest request = new CacheRequest();
+        request.region = new Polygon(ring);
+        request.minResolution = OSMUtils.mapnikTileResolution(MIN_LEVEL)
+                * 1.5d;
+        request.maxResolution = OSMUtils.mapnikTileResolution(MAX_LEVEL)
+                / 1.5d;
+        request.cacheFile = file.file;
+        request.maxThreads = 4;
+        request.expirationOffset = 24L * 60L * 60L * 1000L;
+        return request;
+    }
+
+    /**
+     * Serves a tile for every request to <code>/prefix/level/x/y</code> and
+     * records the tiles requested for each prefix.
+     */
+    private static final class TileServer implements Runnable {
+        private final ServerSocket socket;
+        private final Thread thread;
+        private final List<String> requests = new ArrayList<>();
+
+        private String cancelPrefix;
+        private int cancelCount;
+        private CacheRequest cancelRequest;
+
+        TileServer() throws IOException {
+            socket = new ServerSocket(0, 50, InetAddress.getByName(
+                    "127.0.0.1"));
+            thread = new Thread(this, "TileServer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int getPort() {
+            return socket.getLocalPort();
+        }
+
+        synchronized void cancelAfter(String prefix, int count,
+                CacheRequest request) {
+            cancelPrefix = prefix;
+            cancelCount = count;
+            cancelRequest = request;
+        }
+
+        synchronized List<String> getRequests(String prefix) {
+            final List<String> retval = new ArrayList<>();
+            for (String request : requests) {
+                if (request.startsWith(prefix + "/"))
+                    retval.add(request.substring(prefix.length() + 1));
+            }
+            return retval;
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            try {
+                thread.join(5000L);
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!socket.isClosed()) {
+                try (Socket client = socket.accept()) {
+                    serve(client);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private void serve(Socket client) throws IOException {
+            final BufferedReader in = new BufferedReader(
+                    new InputStreamReader(client.getInputStream(),
+                            "ISO-8859-1"));
+            final String line = in.readLine();
+            if (line == null)
+                return;
+            String header;
+            do {
+                header = in.readLine();
+            } while (header != null && !header.isEmpty());
+
+            // GET /prefix/level/x/y HTTP/1.1
+            final String path = line.split(" ")[1].substring(1);
+            final String prefix = path.substring(0, path.indexOf('/'));
+            final int[] lxy = parse(path.substring(prefix.length() + 1));
+            synchronized (this) {
+                requests.add(path);
+                if (prefix.equals(cancelPrefix) && --cancelCount == 0)
+                    cancelRequest.canceled = true;
+            }
+
+            final byte[] data = data(lxy[0], lxy[1], lxy[2]);
+            final OutputStream out = client.getOutputStream();
+            out.write(("HTTP/1.1 200 OK\r\n"
+                    + "Content-Type: image/png\r\n"
+                    + "Content-Length: " + data.length + "\r\n"
+                    + "Connection: close\r\n\r\n").getBytes("ISO-8859-1"));
+            out.write(data);
+            out.flush();
+        }
+
+        static String tile(int level, int x, int y) {
+            return level + "/" + x + "/" + y;
+        }
+
+        static int[] parse(String tile) {
+            final String[] lxy = tile.split("/");
+            return new int[] {
+                    Integer.parseInt(lxy[0]), Integer.parseInt(lxy[1]),
+                    Integer.parseInt(lxy[2])
+            };
+        }
+
+        static byte[] data(int level, int x, int y) {
+            return ("tile " + tile(level, x, y)).getBytes();
+        }
+    }
+
+    /**
+     * Requests tiles in the tile matrix of the container from the loopback
+     * tile server.
+     */
+    private static final class TileServerClient extends AbstractURLTileClient {
+        private final TileMatrix matrix;
+        private final int port;
+        private final String prefix;
+
+        TileServerClient(TileMatrix matrix, int port, String prefix) {
+            super("loopback", 0L, null);
+            this.matrix = matrix;
+            this.port = port;
+            this.prefix = prefix;
+        }
+
+        @Override
+        protected URL getTileURL(int zoom, int x, int y) {
+            try {
+                return new URL("http", "127.0.0.1", port, "/" + prefix + "/"
+                        + TileServer.tile(zoom, x, y));
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public int getSRID() {
+            return matrix.getSRID();
+        }
+
+        @Override
+        public ZoomLevel[] getZoomLevel() {
+            return matrix.getZoomLevel();
+        }
+
+        @Override
+        public double getOriginX() {
+            return matrix.getOriginX();
+        }
+
+        @Override
+        public double getOriginY() {
+            return matrix.getOriginY();
+        }
+
+        @Override
+        public Envelope getBounds() {
+            return matrix.getBounds();
+        }
+
+        @Override
+        public <T> T getControl(Class<T> controlClazz) {
+            return null;
+        }
+
+        @Override
+        public void getControls(Collection<Object> controls) {
+        }
+    }
+
+    /**
+     * Counts the transactions on a container and records any tile written
+     * outside of one.
+     */
+    private static final class CountingContainer implements
+            BatchTileContainer {
+        private final BatchTileContainer impl;
+        int transactions;
+        boolean inTransaction;
+        boolean writeOutsideTransaction;
+
+        CountingContainer(BatchTileContainer impl) {
+            this.impl = impl;
+        }
+
+        @Override
+        public boolean hasTile(int level, int x, int y) {
+            return impl.hasTile(level, x, y);
+        }
+
+        @Override
+        public void beginTransaction() {
+            impl.beginTransaction();
+            transactions++;
+            inTransaction = true;
+        }
+
+        @Override
+        public void setTransactionSuccessful() {
+            impl.setTransactionSuccessful();
+        }
+
+        @Override
+        public void endTransaction() {
+            inTransaction = false;
+            impl.endTransaction();
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return impl.isReadOnly();
+        }
+
+        @Override
+        public void setTile(int level, int x, int y, byte[] data,
+                long expiration) {
+            writeOutsideTransaction |= !inTransaction;
+            impl.setTile(level, x, y, data, expiration);
+        }
+
+        @Override
+        public void setTile(int level, int x, int y, Bitmap data,
+                long expiration) throws TileEncodeException {
+            writeOutsideTransaction |= !inTransaction;
+            impl.setTile(level, x, y, data, expiration);
+        }
+
+        @Override
+        public boolean hasTileExpirationMetadata() {
+            return impl.hasTileExpirationMetadata();
+        }
+
+        @Override
+        public long getTileExpiration(int level, int x, int y) {
+            return impl.getTileExpiration(level, x, y);
+        }
+
+        @Override
+        public String getName() {
+            return impl.getName();
+        }
+
+        @Override
+        public int getSRID() {
+            return impl.getSRID();
+        }
+
+        @Override
+        public ZoomLevel[] getZoomLevel() {
+            return impl.getZoomLevel();
+        }
+
+        @Override
+        public double getOriginX() {
+            return impl.getOriginX();
+        }
+
+        @Override
+        public double getOriginY() {
+            return impl.getOriginY();
+        }
+
+        @Override
+        public Bitmap getTile(int zoom, int x, int y, Throwable[] error) {
+            return impl.getTile(zoom, x, y, error);
+        }
+
+        @Override
+        public byte[] getTileData(int zoom, int x, int y, Throwable[] error) {
+            return impl.getTileData(zoom, x, y, error);
+        }
+
+        @Override
+        public Envelope getBounds() {
+            return impl.getBounds();
+        }
+
+        @Override
+        public void dispose() {
+        }
+    }
+}
@@ -9,6 +9,7 @@ import com.atakmap.coremap.maps.time.CoordinatedTime;
 import com.atakmap.database.CursorIface;
 import com.atakmap.database.DatabaseIface;
 import com.atakmap.database.Databases;
+import com.atakmap.database.QueryIface;
 import com.atakmap.database.StatementIface;
 
 import android.net.Uri;
@@ -43,7 +44,7 @@ import android.database.DatabaseUtils;
 
 public class ChatDatabase {
     public static final String TAG = "ChatDatabase";
-    public static final int VERSION = 6;
+    public static final int VERSION = 7;
 
     private static DatabaseIface chatDb;
 
@@ -52,6 +53,7 @@ public class ChatDatabase {
 
     static final String TABLE_CHAT = "Chat";
     static final String TABLE_GROUPS = "Groups";
+    static final String TABLE_CHAT_SEARCH = "ChatSearch";
     static final String ARRAY_DELIMITER = ",";
 
     private final SharedPreferences chatPrefs;
@@ -67,7 +69,7 @@ public class ChatDatabase {
     }
 
     // By convention, make these match the names of the fields in the Bundle.
-    private static final String ID_COL_NAME = "id";
+    static final String ID_COL_NAME = "id";
     private static final String CONVO_ID_COL_NAME = "conversationId";
     private static final String CONVO_NAME_COL_NAME = "conversationName";
     private static final String MESSAGE_ID_COL_NAME = "messageId";
@@ -84,6 +86,11 @@ public class ChatDatabase {
 
     private static final String CONTACT_CALLSIGN_COL_NAME = "senderCallsign";
 
+    // The receive time, or the sent time for messages that were not
+    // received; the order of the history. Together with the id this is the
+    // key used to page through the history.
+    static final String MESSAGE_TIME_COL_NAME = "messageTime";
+
     private static String getBundleNameForColumn(String columnName) {
         return columnName;
     }
@@ -92,6 +99,9 @@ public class ChatDatabase {
     private static final String PK_COL_TYPE = "INTEGER PRIMARY KEY";
     private static final String TEXT_COL_TYPE = "TEXT";
     private static final String INTEGER_COL_TYPE = "INTEGER";
+    // derived from the receive and sent times, see addChat
+    private static final String MESSAGE_TIME_COL_TYPE = INTEGER_COL_TYPE
+            + " DEFAULT 0";
 
     private static final DBColumn[] CHAT_COLS = {
             new DBColumn(ID_COL_NAME, PK_COL_TYPE),
@@ -103,7 +113,8 @@ public class ChatDatabase {
             new DBColumn(SENT_TIME_COL_NAME, INTEGER_COL_TYPE),
             new DBColumn(SENDER_UID_COL_NAME, TEXT_COL_TYPE),
             new DBColumn(MESSAGE_COL_NAME, TEXT_COL_TYPE),
-            new DBColumn(CONTACT_CALLSIGN_COL_NAME, TEXT_COL_TYPE)
+            new DBColumn(CONTACT_CALLSIGN_COL_NAME, TEXT_COL_TYPE),
+            new DBColumn(MESSAGE_TIME_COL_NAME, MESSAGE_TIME_COL_TYPE)
     };
 
     private static final DBColumn[] GROUP_COLS = {
@@ -117,6 +128,9 @@ public class ChatDatabase {
 
     private static ChatDatabase _instance = null;
 
+    /** true if the full text index is available */
+    private boolean searchable;
+
     /**
      * Get an instance of the ChatDabase for search, retrieval and archive of chat messages.
      * @param ignored no longer used.
@@ -169,6 +183,9 @@ public class ChatDatabase {
             }
         }
 
+        searchable = newChatDb != null && Databases.getTableNames(newChatDb)
+                .contains(TABLE_CHAT_SEARCH);
+
         // swap only after the newChatDb is good to go.
         chatDb = newChatDb;
 
@@ -198,14 +215,16 @@ public class ChatDatabase {
         }
     }
 
-    private void onCreate(DatabaseIface db) {
+    static void onCreate(DatabaseIface db) {
         createTable(db, TABLE_CHAT, CHAT_COLS);
         createTable(db, TABLE_GROUPS, GROUP_COLS);
+        createIndices(db);
+        createSearchTable(db);
         db.setVersion(VERSION);
 
     }
 
-    private void createTable(DatabaseIface db, String tableName,
+    private static void createTable(DatabaseIface db, String tableName,
             DBColumn[] columns) {
         StringBuilder createGroupTable = new StringBuilder("CREATE TABLE "
                 + tableName + " (");
@@ -228,21 +247,94 @@ public class ChatDatabase {
                 db.execute("ALTER TABLE " + TABLE_CHAT + " ADD COLUMN "
                         + CONTACT_CALLSIGN_COL_NAME + " " + TEXT_COL_TYPE
                         + " DEFAULT ''", null);
-                break;
+                // fall through
             case 5:
                 // Add parent column to groups
                 db.execute("ALTER TABLE " + TABLE_GROUPS + " ADD COLUMN "
                         + GROUP_PARENT + " " + TEXT_COL_TYPE
                         + " DEFAULT ''", null);
+                // fall through
+            case 6:
+                // Add the indexed message time and the full text index
+                db.execute("ALTER TABLE " + TABLE_CHAT + " ADD COLUMN "
+                        + MESSAGE_TIME_COL_NAME + " " + MESSAGE_TIME_COL_TYPE,
+                        null);
+                db.execute("UPDATE " + TABLE_CHAT + " SET "
+                        + MESSAGE_TIME_COL_NAME + " = "
+                        + MESSAGE_TIME_EXPR, null);
+                createIndices(db);
+                createSearchTable(db);
+                db.setVersion(VERSION);
                 break;
             default:
+                db.execute("DROP TABLE IF EXISTS " + TABLE_CHAT_SEARCH, null);
                 db.execute("DROP TABLE IF EXISTS " + TABLE_CHAT, null);
                 db.execute("DROP TABLE IF EXISTS " + TABLE_GROUPS, null);
                 onCreate(db);
         }
     }
 
+    /**
+     * Computes the message time of a row in {@link #TABLE_CHAT}; matches the
+     * order of the history prior to the message time column.
+     */
+    private static final String MESSAGE_TIME_EXPR = "COALESCE("
+            + RECEIVE_TIME_COL_NAME + ", " + SENT_TIME_COL_NAME + ", 0)";
+
+    private static void createIndices(DatabaseIface db) {
+        // history by conversation; the rowid is implicitly the last column
+        db.execute("CREATE INDEX IF NOT EXISTS IdxChatConversationTime ON "
+                + TABLE_CHAT + "(" + CONVO_ID_COL_NAME + ", "
+                + MESSAGE_TIME_COL_NAME + ")", null);
+        db.execute("CREATE INDEX IF NOT EXISTS IdxChatMessageTime ON "
+                + TABLE_CHAT + "(" + MESSAGE_TIME_COL_NAME + ")", null);
+        // looked up on every add
+        db.execute("CREATE INDEX IF NOT EXISTS IdxChatMessageId ON "
+                + TABLE_CHAT + "(" + MESSAGE_ID_COL_NAME + ")", null);
+        db.execute("CREATE INDEX IF NOT EXISTS IdxGroupsConversationId ON "
+                + TABLE_GROUPS + "(" + CONVO_ID_COL_NAME + ")", null);
+    }
+
+    /**
+     * Creates the full text index over the message and sender callsign. The
+     * index holds no content of its own and is kept current via triggers on
+     * {@link #TABLE_CHAT}. If the SQLite build lacks FTS4, search falls back
+     * to a scan of the chat table.
+     */
+    private static void createSearchTable(DatabaseIface db) {
+        try {
+            db.execute("CREATE VIRTUAL TABLE " + TABLE_CHAT_SEARCH
+                    + " USING fts4(content=\"" + TABLE_CHAT + "\", "
+                    + MESSAGE_COL_NAME + ", " + CONTACT_CALLSIGN_COL_NAME
+                    + ")", null);
+        } catch (Exception e) {
+            Log.w(TAG, "full text search is not available", e);
+            return;
+        }
+
+        final String delete = "DELETE FROM " + TABLE_CHAT_SEARCH
+                + " WHERE docid = old." + ID_COL_NAME + "; END";
+        final String insert = "INSERT INTO " + TABLE_CHAT_SEARCH
+                + "(docid, " + MESSAGE_COL_NAME + ", "
+                + CONTACT_CALLSIGN_COL_NAME + ") VALUES (new." + ID_COL_NAME
+                + ", new." + MESSAGE_COL_NAME + ", new."
+                + CONTACT_CALLSIGN_COL_NAME + "); END";
+        db.execute("CREATE TRIGGER ChatSearchBeforeUpdate BEFORE UPDATE ON "
+                + TABLE_CHAT + " BEGIN " + delete, null);
+        db.execute("CREATE TRIGGER ChatSearchBeforeDelete BEFORE DELETE ON "
+                + TABLE_CHAT + " BEGIN " + delete, null);
+        db.execute("CREATE TRIGGER ChatSearchAfterUpdate AFTER UPDATE ON "
+                + TABLE_CHAT + " BEGIN " + insert, null);
+        db.execute("CREATE TRIGGER ChatSearchAfterInsert AFTER INSERT ON "
+                + TABLE_CHAT + " BEGIN " + insert, null);
+
+        // index any existing messages
+        db.execute("INSERT INTO " + TABLE_CHAT_SEARCH + "("
+                + TABLE_CHAT_SEARCH + ") VALUES ('rebuild')", null);
+    }
+
     void onDowngrade(DatabaseIface db, int oldVersion, int newVersion) {
+        db.execute("DROP TABLE IF EXISTS " + TABLE_CHAT_SEARCH, null);
         db.execute("DROP TABLE IF EXISTS " + TABLE_CHAT, null);
         db.execute("DROP TABLE IF EXISTS " + TABLE_GROUPS, null);
         // Create tables again
@@ -281,6 +373,13 @@ public class ChatDatabase {
                 }
             } // ignore other types, including PK
         }
+        // without either time, an update keeps the existing message time
+        // and an insert takes the column default
+        Long messageTime = chatValues.getAsLong(RECEIVE_TIME_COL_NAME);
+        if (messageTime == null)
+            messageTime = chatValues.getAsLong(SENT_TIME_COL_NAME);
+        if (messageTime != null)
+            chatValues.put(MESSAGE_TIME_COL_NAME, messageTime);
         ContentValues groupValues = new ContentValues();
         for (DBColumn dbColumn : GROUP_COLS) {
             String dbColName = dbColumn.key;
@@ -809,11 +908,8 @@ public class ChatDatabase {
             cursor = db.query(
                     "SELECT * FROM " + TABLE_CHAT + " WHERE "
                             + CONVO_ID_COL_NAME + "= ?"
-                            + " ORDER BY CASE"
-                            + " WHEN " + RECEIVE_TIME_COL_NAME
-                            + " IS NULL THEN " + SENT_TIME_COL_NAME
-                            + " ELSE " + RECEIVE_TIME_COL_NAME
-                            + " END",
+                            + " ORDER BY " + MESSAGE_TIME_COL_NAME + ", "
+                            + ID_COL_NAME,
                     new String[] {
                             conversationId
                     });
@@ -840,6 +936,137 @@ public class ChatDatabase {
         return ret;
     }
 
+    /**
+     * Returns the most recent messages of a given conversation.
+     * @param conversationId the chat conversation identification
+     * @param limit the maximum number of messages to return
+     * @return the messages, oldest first, in the same form as
+     * {@link #getHistory(String)}
+     */
+    public List<Bundle> getHistory(final String conversationId,
+            final int limit) {
+        return getHistory(chatDb, conversationId, Long.MAX_VALUE,
+                Long.MAX_VALUE, limit);
+    }
+
+    /**
+     * Returns the messages of a given conversation that precede the
+     * specified message. Pass the <code>messageTime</code> and
+     * <code>id</code> of the oldest message previously returned to page
+     * back through the history.
+     * @param conversationId the chat conversation identification
+     * @param messageTime the message time of the message to page back from
+     * @param id the id of the message to page back from
+     * @param limit the maximum number of messages to return
+     * @return the messages, oldest first, in the same form as
+     * {@link #getHistory(String)}; empty if there is no earlier history
+     */
+    public List<Bundle> getHistoryBefore(final String conversationId,
+            final long messageTime, final long id, final int limit) {
+        return getHistory(chatDb, conversationId, messageTime, id, limit);
+    }
+
+    static List<Bundle> getHistory(final DatabaseIface db,
+            final String conversationId, final long beforeTime,
+            final long beforeId, final int limit) {
+        LinkedList<Bundle> ret = new LinkedList<>();
+        QueryIface query = null;
+        try {
+            // walks IdxChatConversationTime backwards from the key
+            query = db.compileQuery("SELECT * FROM " + TABLE_CHAT
+                    + " WHERE " + CONVO_ID_COL_NAME + " = ? AND ("
+                    + MESSAGE_TIME_COL_NAME + " < ? OR ("
+                    + MESSAGE_TIME_COL_NAME + " = ? AND "
+                    + ID_COL_NAME + " < ?))"
+                    + " ORDER BY " + MESSAGE_TIME_COL_NAME + " DESC, "
+                    + ID_COL_NAME + " DESC LIMIT ?");
+            query.bind(1, conversationId);
+            query.bind(2, beforeTime);
+            query.bind(3, beforeTime);
+            query.bind(4, beforeId);
+            query.bind(5, limit);
+            while (query.moveToNext())
+                ret.addFirst(cursorToBundle(query));
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error retrieving chat history for "
+                    + conversationId, e);
+        } finally {
+            if (query != null)
+                query.close();
+        }
+        return ret;
+    }
+
+    /**
+     * Searches the message text and sender callsign of all conversations.
+     * Each word of the search text must be present, matching on word
+     * prefixes.
+     * @param text the search text
+     * @param limit the maximum number of messages to return
+     * @return the matching messages, most recent first, in the same form as
+     * {@link #getHistory(String)}
+     */
+    public List<Bundle> searchMessages(final String text, final int limit) {
+        return searchMessages(chatDb, searchable, text, limit);
+    }
+
+    static List<Bundle> searchMessages(final DatabaseIface db,
+            final boolean fullText, final String text, final int limit) {
+        List<Bundle> ret = new ArrayList<>();
+        final String[] terms = text.trim().split("\\s+");
+        if (terms.length == 0 || terms[0].isEmpty())
+            return ret;
+
+        QueryIface query = null;
+        try {
+            int idx = 1;
+            if (fullText) {
+                StringBuilder match = new StringBuilder();
+                for (String term : terms) {
+                    if (match.length() > 0)
+                        match.append(' ');
+                    match.append('"').append(term.replace("\"", ""))
+                            .append("*\"");
+                }
+                query = db.compileQuery("SELECT " + TABLE_CHAT + ".* FROM "
+                        + TABLE_CHAT + " JOIN " + TABLE_CHAT_SEARCH + " ON "
+                        + TABLE_CHAT + "." + ID_COL_NAME + " = "
+                        + TABLE_CHAT_SEARCH + ".docid WHERE "
+                        + TABLE_CHAT_SEARCH + " MATCH ? ORDER BY "
+                        + MESSAGE_TIME_COL_NAME + " DESC LIMIT ?");
+                query.bind(idx++, match.toString());
+            } else {
+                StringBuilder where = new StringBuilder();
+                for (int i = 0; i < terms.length; i++) {
+                    if (i > 0)
+                        where.append(" AND ");
+                    where.append("(").append(MESSAGE_COL_NAME)
+                            .append(" LIKE ? ESCAPE '\\' OR ")
+                            .append(CONTACT_CALLSIGN_COL_NAME)
+                            .append(" LIKE ? ESCAPE '\\')");
+                }
+                query = db.compileQuery("SELECT * FROM " + TABLE_CHAT
+                        + " WHERE " + where + " ORDER BY "
+                        + MESSAGE_TIME_COL_NAME + " DESC LIMIT ?");
+                for (String term : terms) {
+                    final String like = "%" + term.replace("\\", "\\\\")
+                            .replace("%", "\\%").replace("_", "\\_") + "%";
+                    query.bind(idx++, like);
+                    query.bind(idx++, like);
+                }
+            }
+            query.bind(idx, limit);
+            while (query.moveToNext())
+                ret.add(cursorToBundle(query));
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error searching chat history for " + text, e);
+        } finally {
+            if (query != null)
+                query.close();
+        }
+        return ret;
+    }
+
     /**
      * Returns a list of the persisted conversation identifiers.
      * @return the conversaiton identifiers for the system that have been persisted.
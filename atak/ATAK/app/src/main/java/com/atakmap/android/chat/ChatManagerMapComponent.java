@@ -61,6 +61,9 @@ public class ChatManagerMapComponent extends AbstractMapComponent implements
     public static final String PLUGIN_SEND_MESSAGE_EXTRA = "MESSAGE";
     private static final String OPEN_GEOCHAT = "com.atakmap.android.OPEN_GEOCHAT";
 
+    /** the number of messages loaded at a time when showing history */
+    private static final int HISTORY_PAGE_SIZE = 100;
+
     private static Map<String, ConversationFragment> fragmentMap;
     private static SharedPreferences chatPrefs;
     private MapView _mapView;
@@ -659,13 +662,7 @@ public class ChatManagerMapComponent extends AbstractMapComponent implements
                                             .getDestinations());
                         }
                     })
-                    .setHistoryBehavior(
-                            new ConversationFragment.HistoryBehavior() {
-                                @Override
-                                public List<ChatLine> onHistoryRequest() {
-                                    return getHistory(conversationId);
-                                }
-                            });
+                    .setHistoryBehavior(new PagedHistory(conversationId));
 
             // Cache the fragment in the lookup-map
             fragmentMap.put(conversationId, toDisplay);
@@ -850,14 +847,67 @@ public class ChatManagerMapComponent extends AbstractMapComponent implements
         sendMessage(msg, null);
     }
 
-    private List<ChatLine> getHistory(String conversationId) {
+    /**
+     * Loads the history of a conversation a page at a time, most recent
+     * first.
+     */
+    private class PagedHistory implements ConversationFragment.HistoryBehavior {
+        private final String conversationId;
+        private long oldestTime;
+        private long oldestId;
+        private boolean exhausted;
+
+        PagedHistory(String conversationId) {
+            this.conversationId = conversationId;
+        }
+
+        @Override
+        public List<ChatLine> onHistoryRequest() {
+            exhausted = false;
+            return getHistory(this, false);
+        }
+
+        @Override
+        public List<ChatLine> onOlderHistoryRequest() {
+            if (exhausted)
+                return new LinkedList<>();
+            return getHistory(this, true);
+        }
+
+        private void update(List<Bundle> page) {
+            if (page.size() < HISTORY_PAGE_SIZE)
+                exhausted = true;
+            if (!page.isEmpty()) {
+                Bundle oldest = page.get(0);
+                oldestTime = oldest.getLong(
+                        ChatDatabase.MESSAGE_TIME_COL_NAME, 0L);
+                oldestId = oldest.getLong(ChatDatabase.ID_COL_NAME);
+            }
+        }
+    }
+
+    /**
+     * @param paging the paging state of the conversation
+     * @param older if <code>false</code>, the most recent page of history,
+     *              otherwise the page preceding the oldest message
+     *              previously loaded
+     */
+    private List<ChatLine> getHistory(PagedHistory paging, boolean older) {
+        final String conversationId = paging.conversationId;
         List<ChatLine> ret = new LinkedList<>();
         // Add chat history...
         if (chatService != null) {
             List<Bundle> history;
             try {
-                history = chatService.getHistory(conversationId);
+                if (!older)
+                    history = chatService.getHistory(conversationId,
+                            HISTORY_PAGE_SIZE);
+                else
+                    history = chatService.getHistoryBefore(conversationId,
+                            paging.oldestTime, paging.oldestId,
+                            HISTORY_PAGE_SIZE);
                 if (history != null) {
+                    paging.update(history);
                     Iterator<Bundle> it = history.iterator();
                     while (it.hasNext()) {
                         Bundle msgBundle = it.next();
@@ -865,7 +915,7 @@ public class ChatManagerMapComponent extends AbstractMapComponent implements
                             ChatLine chatLine = ChatLine.fromBundle(msgBundle);
                             // Mark all history as READ, but the last element
                             // was potentially just added.
-                            if (it.hasNext()) {
+                            if (older || it.hasNext()) {
                                 chatLine.read = true;
                             }
                             ret.add(chatLine);
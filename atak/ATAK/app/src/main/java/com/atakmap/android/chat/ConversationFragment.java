@@ -25,6 +25,7 @@ import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.View.OnLongClickListener;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageButton;
@@ -187,9 +188,44 @@ public class ConversationFragment extends Fragment implements
                 line.acked = false;
                 getLineAdapter().addChatLine(line);
             }
+            _olderHistoryAvailable = true;
         }
     }
 
+    /**
+     * Loads the page of history preceding the oldest line shown, keeping
+     * the lines currently in view in place.
+     */
+    private void populateOlderHistory() {
+        if (onHistoryRequest == null || !_olderHistoryAvailable)
+            return;
+        List<ChatLine> older = onHistoryRequest.onOlderHistoryRequest();
+        if (older.isEmpty()) {
+            _olderHistoryAvailable = false;
+            return;
+        }
+        for (ChatLine line : older) {
+            line.read = true;
+            line.acked = false;
+        }
+
+        final int first = lineList.getFirstVisiblePosition();
+        final View firstView = lineList.getChildAt(0);
+        final int top = (firstView != null) ? firstView.getTop() : 0;
+
+        // the transcript mode would otherwise scroll to the bottom
+        lineList.setTranscriptMode(ListView.TRANSCRIPT_MODE_DISABLED);
+        getLineAdapter().addOlderChatLines(older);
+        lineList.setSelectionFromTop(first + older.size(), top);
+        lineList.post(new Runnable() {
+            @Override
+            public void run() {
+                lineList.setTranscriptMode(
+                        ListView.TRANSCRIPT_MODE_ALWAYS_SCROLL);
+            }
+        });
+    }
+
     private ChatManagerMapComponent.MessageDestination _destinations = null;
 
     public ConversationFragment setDests(
@@ -249,10 +285,20 @@ public class ConversationFragment extends Fragment implements
     }
 
     interface HistoryBehavior {
+        /**
+         * @return the most recent history, oldest first
+         */
         List<ChatLine> onHistoryRequest();
+
+        /**
+         * @return the history preceding the oldest line returned so far,
+         *         oldest first; empty if there is no earlier history
+         */
+        List<ChatLine> onOlderHistoryRequest();
     }
 
     private HistoryBehavior onHistoryRequest = null;
+    private boolean _olderHistoryAvailable = false;
 
     public ConversationFragment setHistoryBehavior(
             HistoryBehavior onHistoryRequest) {
@@ -283,6 +329,21 @@ public class ConversationFragment extends Fragment implements
         lineList.setAdapter(getLineAdapter());
         lineList.setTranscriptMode(ListView.TRANSCRIPT_MODE_ALWAYS_SCROLL);
         lineList.setStackFromBottom(true);
+        lineList.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view,
+                    int scrollState) {
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem,
+                    int visibleItemCount, int totalItemCount) {
+                // page back once the oldest line is reached
+                if (firstVisibleItem == 0 && visibleItemCount > 0
+                        && visibleItemCount < totalItemCount)
+                    populateOlderHistory();
+            }
+        });
 
         titleText = rootView
                 .findViewById(R.id.conversationTitleText);
@@ -347,6 +347,14 @@ class ConversationListAdapter extends BaseAdapter {
         notifyDataSetChanged();
     }
 
+    /**
+     * Inserts older history ahead of the lines already shown.
+     */
+    void addOlderChatLines(List<ChatLine> older) {
+        chatLines.addAll(0, older);
+        notifyDataSetChanged();
+    }
+
     private void notifyContactListAdapter(String conversationId) {
         Contact contact = Contacts.getInstance().getContactByUuid(
                 conversationId);
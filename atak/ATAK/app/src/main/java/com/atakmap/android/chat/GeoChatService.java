@@ -500,6 +500,16 @@ public final class GeoChatService implements
         return chatDb.getHistory(conversationName);
     }
 
+    List<Bundle> getHistory(String conversationName, int limit) {
+        return chatDb.getHistory(conversationName, limit);
+    }
+
+    List<Bundle> getHistoryBefore(String conversationName, long messageTime,
+            long id, int limit) {
+        return chatDb.getHistoryBefore(conversationName, messageTime, id,
+                limit);
+    }
+
     List<String> getPersistedConversationIds() {
         return chatDb.getPersistedConversationIds();
     }
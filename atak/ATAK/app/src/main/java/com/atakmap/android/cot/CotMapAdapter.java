@@ -226,10 +226,6 @@ public class CotMapAdapter {
         } else if (type.startsWith("a-f-G-E-S-rad")) {
             // exclude radsensor measurement/permissions/db events
             return ImportResult.FAILURE;
-        } else if (event.getDetail() != null
-                && event.getDetail().getFirstChildByName(0,
-                        "rad-event") != null) {
-            return ImportResult.FAILURE;
         } else if (type.equals("effects_event")) {
             // exclude Effects cot messages
             return ImportResult.FAILURE;
@@ -247,6 +243,10 @@ public class CotMapAdapter {
         } else if (type.startsWith("b-t-f")
                 || type.equals(FileTransfer.COT_TYPE)) {
             return ImportResult.FAILURE;
+        } else if (event.findDetail("rad-event") != null) {
+            // checked after the type filters so that events dropped by type
+            // never have their detail built
+            return ImportResult.FAILURE;
         } else {
             //defer to ImporterManager
             return processCotEvent(event, extra);
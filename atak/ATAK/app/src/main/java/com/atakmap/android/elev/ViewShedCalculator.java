@@ -0,0 +1,318 @@
+package com.atakmap.android.elev;
+
+import com.atakmap.coremap.concurrent.NamedThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the viewshed of one or more observers over a regular elevation
+ * grid, without any dependency on the map or the renderer.
+ *
+ * The visibility of each observer is computed with a reference plane sweep
+ * (XDraw): the cells are visited ring by ring moving away from the observer,
+ * and the horizon of each cell is interpolated from the two cells of the
+ * previous ring that lie between it and the observer. Every cell is visited
+ * once per observer. The eight octants around an observer only depend on the
+ * cells within them, so the octants of all of the observers are swept in
+ * parallel.
+ *
+ * The grid is stored in row major order. Cells are assumed to be
+ * <code>cellWidth</code> by <code>cellHeight</code> meters and elevations
+ * are in meters; NaN elevations are treated as no data, which neither block
+ * the view nor are visible.
+ */
+public final class ViewShedCalculator {
+
+    /** Count reported for cells outside the radius of every observer */
+    public static final int OUTSIDE_RANGE = -1;
+
+    private static final byte CELL_OUTSIDE = 0;
+    private static final byte CELL_UNSEEN = 1;
+    private static final byte CELL_SEEN = 2;
+
+    // horizon slope of a line of sight that is not blocked by anything
+    private static final double NO_HORIZON = -Double.MAX_VALUE;
+
+    private static final int NUM_THREADS = Math.max(1,
+            Runtime.getRuntime().availableProcessors());
+
+    private static ThreadPoolExecutor executor;
+
+    /**
+     * An observer located at a cell of the grid.
+     */
+    public static final class Observer {
+        final int column;
+        final int row;
+        final double height;
+        final double radius;
+
+        /**
+         * @param column The column of the observer's cell
+         * @param row The row of the observer's cell
+         * @param height The height of the observer above the terrain, in
+         *               meters
+         * @param radius The range of the observer in meters; use
+         *               {@link Double#POSITIVE_INFINITY} for the entire grid
+         */
+        public Observer(int column, int row, double height, double radius) {
+            this.column = column;
+            this.row = row;
+            this.height = height;
+            this.radius = radius;
+        }
+    }
+
+    private final float[] elevations;
+    private final int columns;
+    private final int rows;
+    private final double cellWidth;
+    private final double cellHeight;
+    private double targetHeight;
+
+    /**
+     * @param elevations The elevation grid, in row major order
+     * @param columns The number of columns in the grid
+     * @param rows The number of rows in the grid
+     * @param cellWidth The distance between columns, in meters
+     * @param cellHeight The distance between rows, in meters
+     */
+    public ViewShedCalculator(float[] elevations, int columns, int rows,
+            double cellWidth, double cellHeight) {
+        if (columns < 1 || rows < 1 || elevations.length < columns * rows)
+            throw new IllegalArgumentException("Invalid grid dimensions "
+                    + columns + "x" + rows);
+        if (!(cellWidth > 0d) || !(cellHeight > 0d))
+            throw new IllegalArgumentException("Invalid cell size "
+                    + cellWidth + "x" + cellHeight);
+        this.elevations = elevations;
+        this.columns = columns;
+        this.rows = rows;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+    }
+
+    /**
+     * Sets the height above the terrain that a cell is tested at. A cell is
+     * visible if a point at this height above it can be seen by the
+     * observer. Defaults to zero.
+     *
+     * @param height The target height, in meters
+     */
+    public void setTargetHeight(double height) {
+        this.targetHeight = height;
+    }
+
+    /**
+     * Computes the number of observers that can see each cell of the grid.
+     *
+     * @param observers The observers
+     * @return The number of observers that can see each cell, in row major
+     *         order. Cells outside the radius of every observer are
+     *         {@link #OUTSIDE_RANGE}. Returns <code>null</code> if the
+     *         calling thread was interrupted.
+     */
+    public int[] calculate(Observer... observers) {
+        for (Observer o : observers) {
+            if (o.column < 0 || o.column >= columns || o.row < 0
+                    || o.row >= rows)
+                throw new IllegalArgumentException("Observer at "
+                        + o.column + "," + o.row + " is outside of the grid");
+        }
+
+        final int numCells = columns * rows;
+        final byte[][] visibility = new byte[observers.length][numCells];
+
+        List<Callable<Void>> sweeps = new ArrayList<>(observers.length * 8);
+        for (int i = 0; i < observers.length; i++) {
+            for (int octant = 0; octant < 8; octant++)
+                sweeps.add(new Sweep(observers[i], octant, visibility[i]));
+        }
+        if (!invokeAll(sweeps))
+            return null;
+
+        final int[] counts = new int[numCells];
+        final int bands = Math.min(NUM_THREADS, rows);
+        List<Callable<Void>> reductions = new ArrayList<>(bands);
+        for (int b = 0; b < bands; b++) {
+            final int start = (numCells * b / bands) / columns * columns;
+            final int end = (b == bands - 1) ? numCells
+                    : (numCells * (b + 1) / bands) / columns * columns;
+            reductions.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    count(visibility, counts, start, end);
+                    return null;
+                }
+            });
+        }
+        if (!invokeAll(reductions))
+            return null;
+
+        return counts;
+    }
+
+    private static void count(byte[][] visibility, int[] counts, int start,
+            int end) {
+        for (int i = start; i < end; i++) {
+            int count = OUTSIDE_RANGE;
+            for (byte[] v : visibility) {
+                if (v[i] == CELL_OUTSIDE)
+                    continue;
+                if (count == OUTSIDE_RANGE)
+                    count = 0;
+                if (v[i] == CELL_SEEN)
+                    count++;
+            }
+            counts[i] = count;
+        }
+    }
+
+    /**
+     * Sweeps one octant around an observer. The octant is traversed in
+     * local coordinates: <code>i</code> is the ring, the distance in cells
+     * along the major axis, and <code>j</code> the offset along the minor
+     * axis, with <code>0 &lt;= j &lt;= i</code>.
+     */
+    private final class Sweep implements Callable<Void> {
+        private final Observer observer;
+        private final int signX;
+        private final int signY;
+        private final boolean swap;
+        private final byte[] visibility;
+
+        Sweep(Observer observer, int octant, byte[] visibility) {
+            this.observer = observer;
+            this.signX = (octant & 1) == 0 ? 1 : -1;
+            this.signY = (octant & 2) == 0 ? 1 : -1;
+            this.swap = (octant & 4) != 0;
+            this.visibility = visibility;
+        }
+
+        @Override
+        public Void call() {
+            final int ox = observer.column;
+            final int oy = observer.row;
+            final double radius = observer.radius;
+            final double z0 = elevations[oy * columns + ox]
+                    + observer.height;
+
+            // the cell of the observer is only filled by the first octant
+            if (!swap && signX > 0 && signY > 0 && radius >= 0d)
+                visibility[oy * columns + ox] = CELL_SEEN;
+
+            final int maxX = (signX > 0) ? columns - 1 - ox : ox;
+            final int maxY = (signY > 0) ? rows - 1 - oy : oy;
+            final int maxMajor = swap ? maxY : maxX;
+            final int maxMinor = swap ? maxX : maxY;
+            final double majorSize = swap ? cellHeight : cellWidth;
+
+            // rings past the radius are entirely out of range
+            final int maxRing = (int) Math.min(maxMajor,
+                    Math.floor(radius / majorSize));
+
+            // the axis and diagonal cells are shared with the adjacent
+            // octants; only one of them records those cells
+            final boolean ownsAxis = swap ? signX > 0 : signY > 0;
+            final boolean ownsDiagonal = !swap;
+
+            double[] prev = new double[maxRing + 2];
+            double[] cur = new double[maxRing + 2];
+            for (int i = 1; i <= maxRing; i++) {
+                if (Thread.currentThread().isInterrupted())
+                    return null;
+
+                final int lastJ = Math.min(i, maxMinor);
+                for (int j = 0; j <= lastJ; j++) {
+                    final int dx = swap ? j : i;
+                    final int dy = swap ? i : j;
+                    final int idx = (oy + signY * dy) * columns
+                            + (ox + signX * dx);
+
+                    // interpolate the horizon where the line of sight
+                    // crosses the previous ring
+                    double horizon = NO_HORIZON;
+                    if (i > 1) {
+                        final double t = (double) j * (i - 1) / i;
+                        final int j0 = (int) t;
+                        final double w = t - j0;
+                        horizon = (w == 0d) ? prev[j0]
+                                : prev[j0] + w * (prev[j0 + 1] - prev[j0]);
+                    }
+
+                    final double xm = dx * cellWidth;
+                    final double ym = dy * cellHeight;
+                    final double dist = Math.sqrt(xm * xm + ym * ym);
+
+                    final float z = elevations[idx];
+                    final boolean seen;
+                    if (Float.isNaN(z) || Double.isNaN(z0)) {
+                        cur[j] = horizon;
+                        seen = false;
+                    } else {
+                        final double slope = (z - z0) / dist;
+                        seen = (z + targetHeight - z0) / dist >= horizon;
+                        cur[j] = Math.max(horizon, slope);
+                    }
+
+                    if (dist > radius)
+                        continue;
+                    if (j == 0 && !ownsAxis)
+                        continue;
+                    if (j == i && !ownsDiagonal)
+                        continue;
+                    visibility[idx] = seen ? CELL_SEEN : CELL_UNSEEN;
+                }
+
+                final double[] swapRings = prev;
+                prev = cur;
+                cur = swapRings;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Runs the tasks on the shared pool and waits for them to complete.
+     *
+     * @return <code>false</code> if the calling thread was interrupted
+     */
+    private static boolean invokeAll(List<Callable<Void>> tasks) {
+        final ThreadPoolExecutor pool = getExecutor();
+        List<Future<Void>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<Void> task : tasks)
+                futures.add(pool.submit(task));
+            for (Future<Void> future : futures)
+                future.get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Viewshed calculation failed",
+                    e.getCause());
+        } finally {
+            for (Future<Void> future : futures)
+                future.cancel(true);
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(NUM_THREADS, NUM_THREADS,
+                    30L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new NamedThreadFactory("ViewShedCalculator"));
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+}
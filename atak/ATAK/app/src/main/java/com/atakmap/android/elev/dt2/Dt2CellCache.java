@@ -0,0 +1,338 @@
+
+package com.atakmap.android.elev.dt2;
+
+import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.coremap.log.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of DTED cells. Each cell is memory mapped and its
+ * header parsed once, after which elevation posts are read straight out of the
+ * mapped buffer. The total size of the cached cells is kept within a byte
+ * budget.
+ *
+ * Sampling methods return elevations in meters MSL, or {@link Double#NaN} if
+ * no value is available. This class is thread safe.
+ */
+public final class Dt2CellCache {
+
+    private static final String TAG = "Dt2CellCache";
+
+    /** offset into header where 4 char line count starts (4 char sample point follows) */
+    private static final int NUM_LNG_LINES_OFFSET = 47;
+    private static final int HEADER_OFFSET = 3428;
+    private static final int DATA_RECORD_PREFIX_SIZE = 8;
+    private static final int DATA_RECORD_SUFFIX_SIZE = 4;
+
+    /** Default budget; holds a handful of DTED2 cells or any number of DTED0/1 cells in view */
+    public static final long DEFAULT_MAX_BYTES = 128L * 1024L * 1024L;
+
+    private static Dt2CellCache _instance;
+
+    private final Map<String, Cell> cells = new LinkedHashMap<>(16, 0.75f,
+            true);
+    private long maxBytes;
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    public Dt2CellCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static synchronized Dt2CellCache getInstance() {
+        if (_instance == null)
+            _instance = new Dt2CellCache(DEFAULT_MAX_BYTES);
+        return _instance;
+    }
+
+    /**
+     * Sets the byte budget for the cache, evicting the least recently used
+     * cells as necessary.
+     *
+     * @param maxBytes The maximum number of bytes of DTED held by the cache
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trim(null);
+    }
+
+    public synchronized long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    /**
+     * @return The number of bytes of DTED currently held by the cache
+     */
+    public synchronized long getSize() {
+        return this.bytes;
+    }
+
+    /**
+     * @return The number of cell lookups that were served from the cache
+     */
+    public synchronized long getHitCount() {
+        return this.hits;
+    }
+
+    /**
+     * @return The number of cell lookups that required the cell to be opened
+     */
+    public synchronized long getMissCount() {
+        return this.misses;
+    }
+
+    /**
+     * Evicts all cells from the cache. Should be invoked if DTED files are
+     * modified or deleted.
+     */
+    public synchronized void clear() {
+        this.cells.clear();
+        this.bytes = 0L;
+    }
+
+    /**
+     * Evicts the specified cell from the cache.
+     *
+     * @param file The DTED file
+     */
+    public synchronized void evict(File file) {
+        final Cell cell = this.cells.remove(file.getAbsolutePath());
+        if (cell != null)
+            this.bytes -= cell.size;
+    }
+
+    /**
+     * Samples a single location.
+     *
+     * @param file The DTED file
+     * @param lat The latitude
+     * @param lng The longitude
+     * @return The elevation in meters MSL
+     */
+    public double getElevation(File file, double lat, double lng) {
+        final Cell cell = get(file);
+        if (cell == null)
+            return Double.NaN;
+        return cell.sample(lat - Math.floor(lat), lng - Math.floor(lng));
+    }
+
+    /**
+     * Samples the specified locations from a single cell. Locations outside
+     * of the cell are assigned {@link Double#NaN}.
+     *
+     * @param file The DTED file
+     * @param cellLat The latitude of the southwest corner of the cell
+     * @param cellLng The longitude of the southwest corner of the cell
+     * @param lat The latitudes
+     * @param lng The longitudes
+     * @param msl Returns the elevations, in meters MSL
+     * @param count The number of locations
+     */
+    public void getElevations(File file, double cellLat, double cellLng,
+            double[] lat, double[] lng, double[] msl, int count) {
+        final Cell cell = get(file);
+        for (int i = 0; i < count; i++) {
+            final double y = lat[i] - cellLat;
+            final double x = lng[i] - cellLng;
+            if (cell == null || y < 0d || y > 1d || x < 0d || x > 1d)
+                msl[i] = Double.NaN;
+            else
+                msl[i] = cell.sample(y, x);
+        }
+    }
+
+    private Cell get(File file) {
+        final String key = file.getAbsolutePath();
+        synchronized (this) {
+            final Cell cell = this.cells.get(key);
+            if (cell != null) {
+                this.hits++;
+                return cell;
+            }
+            this.misses++;
+        }
+
+        // open outside of the lock; on a race the first cell in wins
+        final Cell cell = open(file);
+        if (cell == null)
+            return null;
+        synchronized (this) {
+            final Cell existing = this.cells.get(key);
+            if (existing != null)
+                return existing;
+            this.cells.put(key, cell);
+            this.bytes += cell.size;
+            trim(cell);
+        }
+        return cell;
+    }
+
+    /**
+     * Evicts the least recently used cells until the budget is met. The cell
+     * that was just opened is always retained.
+     */
+    private void trim(Cell retain) {
+        final Iterator<Cell> iter = this.cells.values().iterator();
+        while (this.bytes > this.maxBytes && iter.hasNext()) {
+            final Cell cell = iter.next();
+            if (cell == retain)
+                continue;
+            iter.remove();
+            this.bytes -= cell.size;
+        }
+    }
+
+    private static Cell open(File file) {
+        FileChannel channel = null;
+        try {
+            channel = IOProviderFactory.getChannel(file, "r");
+            final long size = channel.size();
+            if (size < HEADER_OFFSET || size > Integer.MAX_VALUE)
+                throw new IOException("invalid file");
+
+            ByteBuffer buffer;
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } catch (IOException | UnsupportedOperationException e) {
+                // the I/O provider may not support mapping; read the content
+                buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining())
+                    if (channel.read(buffer, buffer.position()) < 0)
+                        throw new IOException("invalid file");
+                buffer.flip();
+            }
+
+            final int lngLines = parseCount(buffer, NUM_LNG_LINES_OFFSET);
+            final int latPoints = parseCount(buffer, NUM_LNG_LINES_OFFSET + 4);
+            if (lngLines < 2 || latPoints < 2)
+                throw new IOException("invalid file");
+            final int recordSize = DATA_RECORD_PREFIX_SIZE + (latPoints * 2)
+                    + DATA_RECORD_SUFFIX_SIZE;
+            if (HEADER_OFFSET + (long) recordSize * lngLines > size)
+                throw new IOException("invalid file");
+
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            return new Cell(buffer.asShortBuffer(), lngLines, latPoints,
+                    size);
+        } catch (Exception e) {
+            Log.e(TAG, "Error opening DTED file: " + file.getAbsolutePath(),
+                    e);
+            return null;
+        } finally {
+            if (channel != null) {
+                // an established mapping remains valid after close
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static int parseCount(ByteBuffer buffer, int offset)
+            throws IOException {
+        int retval = 0;
+        for (int i = 0; i < 4; i++) {
+            final int c = buffer.get(offset + i) - '0';
+            if (c < 0 || c > 9)
+                throw new IOException("invalid file");
+            retval = retval * 10 + c;
+        }
+        return retval;
+    }
+
+    /**
+     * Returns <code>1</code> if the raw sample is a valid post, <code>0</code>
+     * otherwise. Valid range per MIL-PRF-89020B 3.11.2.
+     */
+    private static double valid(double v) {
+        return (v >= -12000d && v <= 9000d) ? 1d : 0d;
+    }
+
+    /**
+     * Decodes a signed-magnitude sample. Null posts decode out of range.
+     */
+    private static double decode(short s) {
+        return (1 - (2 * ((s & 0x8000) >> 15))) * (s & 0x7FFF);
+    }
+
+    /**
+     * Interpolates between two posts, either of which may be invalid. If one
+     * is invalid, the other is returned; if both are invalid the result is
+     * NaN.
+     */
+    private static double lerp(double a, double va, double b, double vb,
+            double t) {
+        final double both = va * vb;
+        final double either = va * a * (1d - vb) + vb * b * (1d - va);
+        // 0/0 yields NaN when neither post is valid, 0 otherwise
+        return both * (a + (b - a) * t) + either + 0d / (va + vb);
+    }
+
+    private final static class Cell {
+        final ShortBuffer samples;
+        final int lngLines;
+        final int latPoints;
+        final int recordShorts;
+        final long size;
+
+        Cell(ShortBuffer samples, int lngLines, int latPoints, long size) {
+            this.samples = samples;
+            this.lngLines = lngLines;
+            this.latPoints = latPoints;
+            this.recordShorts = (DATA_RECORD_PREFIX_SIZE + (latPoints * 2)
+                    + DATA_RECORD_SUFFIX_SIZE) / 2;
+            this.size = size;
+        }
+
+        /**
+         * Bilinearly interpolates the posts around the location.
+         *
+         * @param latRatio The latitude offset into the cell, <code>[0,1]</code>
+         * @param lngRatio The longitude offset into the cell, <code>[0,1]</code>
+         */
+        double sample(double latRatio, double lngRatio) {
+            final double yd = latRatio * (latPoints - 1);
+            final double xd = lngRatio * (lngLines - 1);
+
+            // the posts on the north and east edges are sampled as the far
+            // side of the last interval
+            final int x = Math.min((int) xd, lngLines - 2);
+            final int y = Math.min((int) yd, latPoints - 2);
+
+            // records are longitude lines ordered west to east, each holding
+            // the posts south to north
+            final int sIdx = (HEADER_OFFSET + DATA_RECORD_PREFIX_SIZE) / 2
+                    + x * recordShorts + y;
+            final int eIdx = sIdx + recordShorts;
+
+            final double sw = decode(samples.get(sIdx));
+            final double nw = decode(samples.get(sIdx + 1));
+            final double se = decode(samples.get(eIdx));
+            final double ne = decode(samples.get(eIdx + 1));
+
+            final double vsw = valid(sw);
+            final double vnw = valid(nw);
+            final double vse = valid(se);
+            final double vne = valid(ne);
+
+            final double xr = xd - x;
+            final double mids = lerp(sw, vsw, se, vse, xr);
+            final double midn = lerp(nw, vnw, ne, vne, xr);
+            final double vs = Math.max(vsw, vse);
+            final double vn = Math.max(vnw, vne);
+            return lerp(vs > 0d ? mids : 0d, vs, vn > 0d ? midn : 0d, vn,
+                    yd - y);
+        }
+    }
+}
@@ -2,6 +2,7 @@
 package com.atakmap.android.elev.dt2;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -84,7 +85,8 @@ public class Dt2ElevationData extends AbstractElevationData {
             return Double.NaN;
         }
 
-        double altMSL = Dt2ElevationModel._fromDtXFile(file, lat, lng);
+        double altMSL = Dt2CellCache.getInstance().getElevation(file, lat,
+                lng);
 
         // Return expects elevation in meters HAE
         return EGM96.getHAE(lat, lng, altMSL);
@@ -94,9 +96,29 @@ public class Dt2ElevationData extends AbstractElevationData {
     public void getElevation(Iterator<GeoPoint> points, double[] elevations,
             Hints hints) {
 
-        Dt2ElevationModel._bulkFromDtXFile(file, this.info, points, elevations,
+        int count = 0;
+        double[] lat = new double[Math.max(elevations.length, 1)];
+        double[] lng = new double[lat.length];
+        while (points.hasNext()) {
+            final GeoPoint point = points.next();
+            if (count == lat.length) {
+                lat = Arrays.copyOf(lat, count * 2);
+                lng = Arrays.copyOf(lng, count * 2);
+            }
+            lat[count] = point.getLatitude();
+            lng[count] = point.getLongitude();
+            count++;
+        }
+
+        Dt2CellCache.getInstance().getElevations(file,
                 this.info.lowerLeft.getLatitude(),
-                this.info.lowerLeft.getLongitude());
+                this.info.lowerLeft.getLongitude(),
+                lat, lng, elevations, count);
 
+        // Return expects elevation in meters HAE
+        for (int i = 0; i < count; i++) {
+            if (!Double.isNaN(elevations[i]))
+                elevations[i] += EGM96.getOffset(lat[i], lng[i]);
+        }
     }
 }
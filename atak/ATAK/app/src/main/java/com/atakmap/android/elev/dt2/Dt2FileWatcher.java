@@ -279,6 +279,8 @@ public class Dt2FileWatcher extends Thread {
         // Make sure we can remove the original file first
         if (file.isFile() && !IOProviderFactory.delete(file))
             return false;
+        if (!file.exists())
+            Dt2CellCache.getInstance().evict(file);
 
         // Delete files within directory that match a certain DTED level
         boolean ret = true;
@@ -302,6 +304,7 @@ public class Dt2FileWatcher extends Thread {
                     if (f.isDirectory()) {
                         ret &= delete(level, f);
                     } else if (IOProviderFactory.delete(f)) {
+                        Dt2CellCache.getInstance().evict(f);
                         _totalFiles--;
                         Dt2File d = new Dt2File(f);
                         _coverages[d.level].set(
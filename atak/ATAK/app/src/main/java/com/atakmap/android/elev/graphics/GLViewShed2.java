@@ -5,6 +5,7 @@ import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.util.Arrays;
 
+import com.atakmap.android.elev.ViewShedCalculator;
 import com.atakmap.android.elev.ViewShedLayer2;
 import com.atakmap.coremap.conversions.ConversionFactors;
 import com.atakmap.coremap.maps.coords.DistanceCalculations;
@@ -33,16 +34,6 @@ public class GLViewShed2 extends GLHeatMap implements
     private GeoPoint calculatedPOI = null;
     private int calculatedOpacity = -1;
 
-    private int columnCount;
-    private int rowCount;
-    private int startX;
-    private int startY;
-    private double xSampleDist;
-    private double ySampleDist;
-    private float[] elevGrid;
-    private float[] slopeGrid;
-    private float startAlt;
-
     public GLViewShed2(MapRenderer surface, ViewShedLayer2 subject) {
         super(surface, subject);
 
@@ -151,7 +142,7 @@ public class GLViewShed2 extends GLHeatMap implements
 
     /**
      * Set up the variables so that the viewshed can be calculated, calculate the viewshed, then
-     * convert the resulting 2d array color map back to a single dimensional array.
+     * convert the resulting visibility grid to color values.
      * 
      * @param state - the viewshed info 
      * @param result - parameters for calculating the Viewshed overlay
@@ -160,232 +151,32 @@ public class GLViewShed2 extends GLHeatMap implements
     private void calculateVSD(ViewShedState2 state, HeatMapParams result,
             IntBuffer resultGrid) {
 
-        elevGrid = result.elevationData;
-
-        columnCount = result.xSampleResolution;
-        rowCount = result.ySampleResolution;
-
-        //wrap the result array that will hold the color values associated with the point being seen or unseen
-        xSampleDist = (state.radius * 2) / result.xSampleResolution;
-        ySampleDist = (state.radius * 2) / result.ySampleResolution;
-
-        startX = result.xSampleResolution / 2;
-        startY = result.ySampleResolution / 2;
-
-        startAlt = (float) state.pointOfInterest.getAltitude()
-                + elevGrid[getIndex(startX, startY)];
-
-        //        Log.d("JM", "Grid Size: " + result.xSampleResolution + " by " + result.ySampleResolution);
-        //        long time = System.currentTimeMillis();
-        calculateSlopeGrid();
-        doLevelCalc(resultGrid);
-        //        Log.d("JM", "VSD Calc completed: " + (System.currentTimeMillis() - time) + " mills");
-
-    }
-
-    private void calculateSlopeGrid() {
-        slopeGrid = new float[elevGrid.length];
-        int numStages = Math.min(startX, startY);
-        for (int stage = 1; stage <= numStages; stage++) {
-
-            int x = startX - stage;
-            int y = startY - stage;
-
-            //top quarter
-            for (int i = 0; i < stage * 2; i++) {
-                slopeGrid[getIndex(x, y)] = getSlope(x, y);
-                x++;
-            }
-
-            //right quarter
-            for (int i = 0; i < stage * 2; i++) {
-                slopeGrid[getIndex(x, y)] = getSlope(x, y);
-                y++;
-            }
-
-            //bottom quarter
-            for (int i = 0; i < stage * 2; i++) {
-                slopeGrid[getIndex(x, y)] = getSlope(x, y);
-                x--;
-            }
-
-            //left quarter
-            for (int i = 0; i < stage * 2; i++) {
-                slopeGrid[getIndex(x, y)] = getSlope(x, y);
-                y--;
-            }
-
-        }
-
-    }
-
-    private float getSlope(final int x, final int y) {
-        float pointElev = elevGrid[getIndex(x, y)];
-        double run = getSampleDist(x, y);
-        double currentAngle = Math.atan(Math.abs(startAlt - pointElev)
-                / run);
-        currentAngle = Math.toDegrees(currentAngle);
-        if (pointElev < startAlt)
-            currentAngle = 360 - currentAngle;
-        else
-            currentAngle += 360;
-
-        return (float) currentAngle;
-    }
-
-    private int getIndex(final double x, final double y) {
-        return (int) y * columnCount + (int) x;
-    }
-
-    /**
-     * Use a gridded approach to calculate the viewshed. Starting at the center point, test every point 
-     * in the elevation grid to see if it is visible using the sightline ray approach. 
-     * 
-     * @param results - a 2d array of the color values corresponding to each point's visibility
-     */
-    private void doLevelCalc(IntBuffer results) {
-        int y = 0;
-        int x;
-        for (int i = 0; i < columnCount - 1; i++) {
-            testPoint(true, i, y, results);
-        }
-
-        x = columnCount - 1;
-        //right quarter
-        for (int i = 0; i < rowCount - 1; i++) {
-            testPoint(false, x, i, results);
-        }
-
-        //bottom quarter
-        y = rowCount - 1;
-        for (int i = columnCount - 1; i > 0; i--) {
-            testPoint(true, i, y, results);
-        }
-
-        //left quarter
-        x = 0;
-        for (int i = rowCount - 1; i > 0; i--) {
-            testPoint(false, x, i, results);
-        }
-
-        //fill the center point
-        testPoint(true, startX, startY, results);
-    }
+        final int columnCount = result.xSampleResolution;
+        final int rowCount = result.ySampleResolution;
+
+        final double xSampleDist = (state.radius * 2)
+                / result.xSampleResolution;
+        final double ySampleDist = (state.radius * 2)
+                / result.ySampleResolution;
+
+        ViewShedCalculator calc = new ViewShedCalculator(
+                result.elevationData, columnCount, rowCount, xSampleDist,
+                ySampleDist);
+        final int[] counts = calc.calculate(new ViewShedCalculator.Observer(
+                columnCount / 2, rowCount / 2,
+                state.pointOfInterest.getAltitude(),
+                showCircle ? radius : Double.POSITIVE_INFINITY));
+        if (counts == null)
+            return;
 
-    /**
-     * test a point at a given stage to see if it is visible or not
-     * 
-     * @param xAxis - true if sampling at x-axis intersections
-     * @param x - the x loc of the point to be tested on the elevation grid
-     * @param y - the x loc of the point to be tested on the elevation grid
-     */
-    private void testPoint(final boolean xAxis, final int x, final int y,
-            final IntBuffer results) {
-        final int stage = Math.max(Math.abs(startX - x), Math.abs(startY - y));
         final int seen = SEEN | (0x000000FF & opacity);
         final int unseen = UNSEEN | (0x000000FF & opacity);
-
-        final double xxDist = Math.abs(startX - x) * xSampleDist;
-        final double yyDist = Math.abs(startY - y) * ySampleDist;
-        final double angle = Math.toDegrees(Math.atan(yyDist / xxDist));
-
-        final double tanAngle = Math.tan(Math.toRadians(angle));
-        float maxSlope = Float.NaN;
-
-        for (int j = 1; j < stage; j++) {
-
-            if (xAxis) {
-
-                //now that we have the angle, get the x value at the given level
-                double rise = ySampleDist * j;
-                double run = rise / tanAngle;
-                int yLevel = startY - j;
-                if (y > startY)
-                    yLevel = startY + j;
-
-                int diff = (int) Math.round(run / xSampleDist);
-                if (x < startX)
-                    diff *= -1;
-                final int idx = getIndex(startX + diff, yLevel);
-                if (showCircle) {
-                    double xDist = diff * xSampleDist;
-                    double yDist = (yLevel - startY) * ySampleDist;
-                    double dist = Math.sqrt(xDist * xDist + yDist * yDist);
-                    if (dist > radius) {
-                        return;
-                    }
-                }
-                if (Float.isNaN(maxSlope)
-                        || slopeGrid[idx] >= maxSlope) {
-                    results.put(idx, seen);
-                    maxSlope = slopeGrid[idx];
-                } else {
-                    results.put(idx, unseen);
-                }
-            } else {
-
-                //now that we have the angle, get the y value at the given level
-                double run = xSampleDist * j;
-                double rise = run * tanAngle;
-
-                int xLevel = startX + j;
-                if (x < startX)
-                    xLevel = startX - j;
-
-                int diff = (int) Math.round(rise / ySampleDist);
-                if (y < startY)
-                    diff *= -1;
-
-                final int idx = getIndex(xLevel, startY + diff);
-
-                if (showCircle) {
-                    double xDist = (xLevel - startX) * xSampleDist;
-                    double yDist = diff * ySampleDist;
-                    double dist = Math.sqrt(xDist * xDist + yDist * yDist);
-                    if (dist > radius) {
-                        return;
-                    }
-                }
-
-                if (Float.isNaN(maxSlope)
-                        || slopeGrid[idx] >= maxSlope) {
-                    results.put(idx, seen);
-                    maxSlope = slopeGrid[idx];
-                } else {
-                    results.put(idx, unseen);
-                }
-
-            }
-        }
-
-        final int idx = getIndex(x, y);
-        if (showCircle) {
-            results.put(idx, OUTSIDE_RANGE);
-            return;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == ViewShedCalculator.OUTSIDE_RANGE)
+                resultGrid.put(i, OUTSIDE_RANGE);
+            else
+                resultGrid.put(i, counts[i] > 0 ? seen : unseen);
         }
-        if (Float.isNaN(maxSlope) || slopeGrid[idx] >= maxSlope)
-            results.put(idx, seen);
-        else
-            results.put(idx, unseen);
-
-    }
-
-    /**
-     * Get the distance between the sampled points 
-     * 
-    
-     * @param toX - the x position of the dest point in the elevation grid
-     * @param toY - the y position of the dest point in the elevation grid
-     * @return - the distance in meters between the sampled points along the vector from the start point to the end point
-     */
-    private double getSampleDist(int toX, int toY) {
-        double xDist = Math.abs(startX - toX) * xSampleDist;
-        double yDist = Math.abs(startY - toY) * ySampleDist;
-
-        if (xDist == 0 || yDist == 0)
-            return xDist + yDist;
-
-        return Math.sqrt(xDist * xDist + yDist * yDist);
     }
 
     @Override
@@ -369,11 +369,7 @@ public class FeatureDataStoreDeepMapItemQuery implements DeepMapItemQuery {
         } else if (geom instanceof LineString) {
             LineString line = (LineString) geom;
 
-            GeoPointMetaData[] pts = new GeoPointMetaData[line.getNumPoints()];
-            for (int i = 0; i < line.getNumPoints(); i++) {
-                pts[i] = GeoPointMetaData
-                        .wrap(new GeoPoint(line.getY(i), line.getX(i)));
-            }
+            GeoPointMetaData[] pts = toGeoPoints(line);
 
             Polyline poly;
             if (pts.length < 1) {
@@ -400,13 +396,7 @@ public class FeatureDataStoreDeepMapItemQuery implements DeepMapItemQuery {
                 return null;
             }
 
-            GeoPointMetaData[] pts = new GeoPointMetaData[exteriorRing
-                    .getNumPoints()];
-            for (int i = 0; i < exteriorRing.getNumPoints(); i++) {
-                pts[i] = GeoPointMetaData
-                        .wrap(new GeoPoint(exteriorRing.getY(i),
-                                exteriorRing.getX(i)));
-            }
+            GeoPointMetaData[] pts = toGeoPoints(exteriorRing);
 
             Polyline poly;
             if (pts.length < 1) {
@@ -839,8 +829,19 @@ public class FeatureDataStoreDeepMapItemQuery implements DeepMapItemQuery {
 
     private static void getPoints(LineString linestring,
             Collection<GeoPoint> points) {
-        for (int i = 0; i < linestring.getNumPoints(); i++)
-            points.add(new GeoPoint(linestring.getY(i), linestring.getX(i)));
+        final double[] xy = linestring.getPoints(2);
+        for (int i = 0; i < xy.length; i += 2)
+            points.add(new GeoPoint(xy[i + 1], xy[i]));
+    }
+
+    private static GeoPointMetaData[] toGeoPoints(LineString linestring) {
+        final double[] xy = linestring.getPoints(2);
+        GeoPointMetaData[] pts = new GeoPointMetaData[xy.length / 2];
+        for (int i = 0; i < pts.length; i++) {
+            pts[i] = GeoPointMetaData
+                    .wrap(new GeoPoint(xy[i * 2 + 1], xy[i * 2]));
+        }
+        return pts;
     }
 
     private static class DeferredFeatureMetadata extends FilterMetaDataHolder {
@@ -381,12 +381,20 @@ public class FeatureDataStoreHierarchyListItem extends
 
     @Override
     public Set<HierarchyListItem> find(String terms) {
+        Set<HierarchyListItem> retval = new HashSet<>();
         FeatureDataStore.FeatureQueryParameters params = buildQueryParams();
-        if (terms.length() >= 2)
-            terms = "%" + terms + "%";
-        else
-            terms = terms + "%";
-        params.featureNames = Collections.singleton(terms);
+        List<Long> fids = FeatureNameIndex.find(this.spatialDb, terms);
+        if (fids != null) {
+            if (fids.isEmpty())
+                return retval;
+            params.featureIds = fids;
+        } else {
+            if (terms.length() >= 2)
+                terms = "%" + terms + "%";
+            else
+                terms = terms + "%";
+            params.featureNames = Collections.singleton(terms);
+        }
 
         if (this.typeFilter != null)
             params.types = Collections.singleton(this.typeFilter);
@@ -401,7 +409,6 @@ public class FeatureDataStoreHierarchyListItem extends
 
         params.limit = 250;
 
-        Set<HierarchyListItem> retval = new HashSet<>();
         FeatureCursor result = null;
         try {
             result = this.spatialDb.queryFeatures(Adapters.adapt(params, null));
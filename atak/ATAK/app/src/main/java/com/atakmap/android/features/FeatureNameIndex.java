@@ -0,0 +1,152 @@
+package com.atakmap.android.features;
+
+import android.os.SystemClock;
+
+import com.atakmap.android.hierarchy.SearchIndex;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.map.layer.feature.AttributeSet;
+import com.atakmap.map.layer.feature.DataStoreException;
+import com.atakmap.map.layer.feature.FeatureCursor;
+import com.atakmap.map.layer.feature.FeatureDataStore2;
+import com.atakmap.map.layer.feature.FeatureDefinition2;
+import com.atakmap.map.layer.feature.geometry.Geometry;
+import com.atakmap.map.layer.feature.style.Style;
+import com.atakmap.math.MathUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Search index over the feature names of a feature data store. The index is
+ * built on the first search against the data store and is updated from the
+ * data store's content change callbacks; changes that are not reported per
+ * feature cause the index to be rebuilt on the next search.
+ */
+final class FeatureNameIndex implements
+        FeatureDataStore2.OnDataStoreContentChangedListener {
+
+    private static final String TAG = "FeatureNameIndex";
+
+    // Data stores with more features than this are not indexed
+    private static final int MAX_FEATURES = 100000;
+
+    // The maximum number of feature IDs passed to a feature query
+    private static final int MAX_IDS = 900;
+
+    private static final Map<FeatureDataStore2, FeatureNameIndex> indices = new WeakHashMap<>();
+
+    private final SearchIndex<Long> index = new SearchIndex<>();
+
+    // Incremented whenever the data store reports a change that is not
+    // applied to the index directly. The callbacks do not lock on this
+    // index, as it is held while querying the data store.
+    private final AtomicInteger generation = new AtomicInteger();
+    private int builtGeneration = -1;
+    private boolean indexed;
+
+    private FeatureNameIndex() {
+    }
+
+    /**
+     * Find the features in the specified data store with a name containing
+     * the specified terms
+     *
+     * @param dataStore Feature data store
+     * @param terms Search terms (case insensitive)
+     * @return The IDs of the matching features, or <code>null</code> if the
+     *         data store should be queried directly instead
+     */
+    static List<Long> find(FeatureDataStore2 dataStore, String terms) {
+        FeatureNameIndex idx;
+        synchronized (indices) {
+            idx = indices.get(dataStore);
+            if (idx == null) {
+                idx = new FeatureNameIndex();
+                indices.put(dataStore, idx);
+                dataStore.addOnDataStoreContentChangedListener(idx);
+            }
+        }
+        return idx.findImpl(dataStore, terms);
+    }
+
+    private synchronized List<Long> findImpl(FeatureDataStore2 dataStore,
+            String terms) {
+        final int gen = this.generation.get();
+        if (this.builtGeneration != gen) {
+            this.indexed = build(dataStore);
+            this.builtGeneration = gen;
+        }
+        if (!this.indexed)
+            return null;
+        List<Long> fids = this.index.find(terms, 0);
+        return fids.size() <= MAX_IDS ? fids : null;
+    }
+
+    private boolean build(FeatureDataStore2 dataStore) {
+        final long start = SystemClock.elapsedRealtime();
+        this.index.clear();
+
+        FeatureDataStore2.FeatureQueryParameters params = new FeatureDataStore2.FeatureQueryParameters();
+        params.ignoredFeatureProperties = FeatureDataStore2.PROPERTY_FEATURE_GEOMETRY
+                | FeatureDataStore2.PROPERTY_FEATURE_STYLE
+                | FeatureDataStore2.PROPERTY_FEATURE_ATTRIBUTES;
+
+        FeatureCursor result = null;
+        try {
+            if (dataStore.queryFeaturesCount(params) > MAX_FEATURES) {
+                Log.d(TAG, "not indexing datastore: " + dataStore.getUri());
+                return false;
+            }
+            result = dataStore.queryFeatures(params);
+            while (result.moveToNext())
+                this.index.put(result.getId(), result.getName());
+        } catch (DataStoreException e) {
+            Log.e(TAG, "error occurred indexing datastore: "
+                    + dataStore.getUri(), e);
+            this.index.clear();
+            return false;
+        } finally {
+            if (result != null)
+                result.close();
+        }
+        Log.d(TAG, "indexed " + this.index.size() + " features from "
+                + dataStore.getUri() + " in "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+        return true;
+    }
+
+    /**************************************************************************/
+    // Content Changed Listener
+
+    @Override
+    public void onDataStoreContentChanged(FeatureDataStore2 dataStore) {
+        this.generation.incrementAndGet();
+    }
+
+    @Override
+    public void onFeatureInserted(FeatureDataStore2 dataStore, long fid,
+            FeatureDefinition2 def, long version) {
+        this.index.put(fid, def.getName());
+    }
+
+    @Override
+    public void onFeatureUpdated(FeatureDataStore2 dataStore, long fid,
+            int modificationMask, String name, Geometry geom, Style style,
+            AttributeSet attribs, int attribsUpdateType) {
+        if (MathUtils.hasBits(modificationMask,
+                FeatureDataStore2.PROPERTY_FEATURE_NAME))
+            this.index.put(fid, name);
+    }
+
+    @Override
+    public void onFeatureDeleted(FeatureDataStore2 dataStore, long fid) {
+        this.index.remove(fid);
+    }
+
+    @Override
+    public void onFeatureVisibilityChanged(FeatureDataStore2 dataStore,
+            long fid, boolean visible) {
+    }
+}
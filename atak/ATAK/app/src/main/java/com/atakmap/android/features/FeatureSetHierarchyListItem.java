@@ -58,6 +58,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class FeatureSetHierarchyListItem extends AbstractHierarchyListItem
@@ -510,13 +511,21 @@ public class FeatureSetHierarchyListItem extends AbstractHierarchyListItem
         FeatureDataStore.FeatureQueryParameters params = new FeatureDataStore.FeatureQueryParameters();
         prepareQueryParams(params);
         params.ignoredFields = FeatureQueryParameters.FIELD_ATTRIBUTES;
-        if (terms.length() >= 2)
-            terms = "%" + terms + "%";
-        else
-            terms = terms + "%";
-        params.featureNames = Collections.singleton(terms);
 
         Set<HierarchyListItem> retval = new HashSet<>();
+        List<Long> fids = FeatureNameIndex.find(this.spatialDb, terms);
+        if (fids != null) {
+            if (fids.isEmpty())
+                return retval;
+            params.featureIds = fids;
+        } else {
+            if (terms.length() >= 2)
+                terms = "%" + terms + "%";
+            else
+                terms = terms + "%";
+            params.featureNames = Collections.singleton(terms);
+        }
+
         FeatureCursor result = null;
         try {
             result = this.spatialDb.queryFeatures(Adapters.adapt(params, null));
@@ -7,6 +7,7 @@ import com.atakmap.android.geofence.data.GeoFence;
 import com.atakmap.android.maps.MapView;
 import com.atakmap.android.maps.Marker;
 import com.atakmap.android.maps.PointMapItem;
+import com.atakmap.android.maps.Shape;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.coremap.maps.coords.DistanceCalculations;
@@ -29,6 +30,31 @@ class CircleGeoFenceMonitor extends GeoFenceMonitor {
     CircleGeoFenceMonitor(MapView view, GeoFence fence, DrawingCircle item) {
         super(view, fence, item);
         _circle = item;
+        _circle.addOnPointsChangedListener(_circleChanged);
+        _circle.addOnRadiusChangedListener(_circleChanged);
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        _circle.removeOnPointsChangedListener(_circleChanged);
+        _circle.removeOnRadiusChangedListener(_circleChanged);
+    }
+
+    private final CircleChangedListener _circleChanged = new CircleChangedListener();
+
+    private class CircleChangedListener implements
+            Shape.OnPointsChangedListener,
+            DrawingCircle.OnRadiusChangedListener {
+        @Override
+        public void onPointsChanged(Shape shape) {
+            invalidate();
+        }
+
+        @Override
+        public void onRadiusChanged(DrawingCircle circle, double oldRadius) {
+            invalidate();
+        }
     }
 
     @Override
@@ -84,11 +110,10 @@ class CircleGeoFenceMonitor extends GeoFenceMonitor {
                     continue;
                 }
 
-                //get distance of point from circle center
-                double distanceMeters = DistanceCalculations
-                        .metersFromAtSourceTarget(center.get(), point);
-                boolean bInside = inElevationRange(point)
-                        && distanceMeters <= radiusMeters;
+                //quick reject by bounds before the distance computation
+                boolean bInside = inElevationRange(point) && inBounds(point)
+                        && DistanceCalculations.metersFromAtSourceTarget(
+                                center.get(), point) <= radiusMeters;
 
                 //now check if we should alert based on trigger
                 if (bCheckPrevious) {
@@ -8,6 +8,7 @@ import android.content.Intent;
 import android.content.res.Resources;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Pair;
 import android.widget.Toast;
 
@@ -76,6 +77,14 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
      */
     private long _monitorIteration;
 
+    /**
+     * Duration of the last and the slowest monitor pass, and the number of
+     * items checked by the last pass. Read without holding the manager lock
+     */
+    private volatile long _lastMonitorMillis;
+    private volatile long _maxMonitorMillis;
+    private volatile int _lastMonitorCount;
+
     /**
      * Spatial Calc not thread safe, but we check all monitors on a single thread, so we resuse
      * a single SpatialCalculator instance
@@ -107,7 +116,9 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
         _component.addGeoFenceChangedListener(this);
         _toRemove = new ArrayList<>();
         _deferredAdds = new HashMap<>();
-        _spatialCalc = new SpatialCalculator(true);
+        // the monitors only create, move and test geometries, all of which
+        // are evaluated in-heap
+        _spatialCalc = new SpatialCalculator.Builder().inHeap().build();
         _monitorIteration = 0;
         initialize();
     }
@@ -131,6 +142,30 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
         return _alerting;
     }
 
+    /**
+     * Get the duration of the last monitor pass
+     * @return duration in milliseconds
+     */
+    public long getLastMonitorLatency() {
+        return _lastMonitorMillis;
+    }
+
+    /**
+     * Get the duration of the slowest monitor pass
+     * @return duration in milliseconds
+     */
+    public long getMaxMonitorLatency() {
+        return _maxMonitorMillis;
+    }
+
+    /**
+     * Get the number of items checked, across all monitors, by the last
+     * monitor pass
+     */
+    public int getLastMonitorCount() {
+        return _lastMonitorCount;
+    }
+
     @Override
     public void onFenceAdded(GeoFence fence, MapItem item) {
         if (fence == null || !fence.isTracking()) {
@@ -520,11 +555,14 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
 
     /**
      * Run periodically in a thread to monitor the GeoFences.
+     * Only items which moved since the previous pass are checked, see
+     * GeoFenceMonitor.checkChanged
      * Also (less) periodically re-scans the "search space" for new/moved items which should
      * now be monitored
      */
     private synchronized void monitor() {
-        //long start = android.os.SystemClock.elapsedRealtime();
+        long start = SystemClock.elapsedRealtime();
+        int checked = 0;
         _monitorIteration++;
 
         //TODO we could make this a pref, but may be confusing b/c I think we'd want to never
@@ -548,8 +586,7 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
 
             //sanity check for GeoFence shape Map Item still exists
             //Note, we also have this check due to inconsistent behavior across Shapes...
-            if (_group.deepFindItem("uid",
-                    monitor.getItem().getUID()) == null) {
+            if (_group.deepFindUID(monitor.getItem().getUID()) == null) {
                 Log.w(TAG, "Fence no longer exists: " + monitor.toString());
                 _toRemove.add(monitor);
                 continue;
@@ -559,7 +596,8 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
                 rescan(monitor);
             }
 
-            List<GeoFenceAlerting.Alert> toAlert = monitor.check();
+            List<GeoFenceAlerting.Alert> toAlert = monitor.checkChanged();
+            checked += monitor.getLastCheckCount();
             if (!FileSystemUtils.isEmpty(toAlert)) {
                 //TODO combine alerts for all monitors and alert all at once?
                 _alerting.alert(monitor, toAlert, bAutoDismissAlerts);
@@ -582,9 +620,14 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
             _toRemove.clear();
         }
 
-        //long stop = android.os.SystemClock.elapsedRealtime();
-        //Log.d(TAG, "Checked " + _monitors.size() + " monitors in seconds: "
-        //        + ((double) stop - start) / 1000D);
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        _lastMonitorMillis = elapsed;
+        _lastMonitorCount = checked;
+        if (elapsed > _maxMonitorMillis)
+            _maxMonitorMillis = elapsed;
+        if (elapsed > MONITOR_RATE / 2)
+            Log.w(TAG, "Checked " + checked + " items for " + _monitors.size()
+                    + " monitors in " + elapsed + "ms");
     }
 
     /**
@@ -12,11 +12,13 @@ import com.atakmap.android.maps.MapGroup;
 import com.atakmap.android.maps.MapItem;
 import com.atakmap.android.maps.MapView;
 import com.atakmap.android.maps.PointMapItem;
+import com.atakmap.android.maps.Shape;
 import com.atakmap.android.util.ATAKUtilities;
 import com.atakmap.app.R;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.coremap.maps.conversion.EGM96;
+import com.atakmap.coremap.maps.coords.GeoBounds;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 import com.atakmap.coremap.maps.coords.GeoPointMetaData;
 import com.atakmap.spatial.SpatialCalculator;
@@ -28,11 +30,18 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class GeoFenceMonitor {
 
     private static final String TAG = "GeoFenceMonitor";
 
+    /**
+     * Padding applied to the fence bounds, in degrees, so the quick bounds
+     * test never rejects a point the exact test would accept
+     */
+    private static final double BOUNDS_PADDING = 1e-4;
+
     /**
      * Cache fence and its corresponding shape
      */
@@ -62,6 +71,40 @@ public abstract class GeoFenceMonitor {
      */
     protected final Map<String, Boolean> _uidsLastState;
 
+    /**
+     * UIDs of tracked items whose location changed since they were last checked
+     * Updated from the thread moving the item, so not guarded by 'this'
+     */
+    private final Set<String> _uidsMoved;
+
+    /**
+     * UIDs of tracked items which have not been checked since being added
+     */
+    private final Set<String> _uidsPending;
+
+    /**
+     * True if every tracked item should be checked on the next pass e.g. the
+     * fence geometry or the last state changed
+     */
+    private boolean _checkAll;
+
+    /**
+     * Cached bounds of the fence geometry, null if not yet computed
+     */
+    private GeoBounds _bounds;
+
+    /**
+     * Number of items checked by the last call to checkChanged
+     */
+    private int _lastCheckCount;
+
+    private final PointMapItem.OnPointChangedListener _pointChanged = new PointMapItem.OnPointChangedListener() {
+        @Override
+        public void onPointChanged(PointMapItem item) {
+            _uidsMoved.add(item.getUID());
+        }
+    };
+
     public GeoFenceMonitor(MapView view, GeoFence fence, MapItem item) {
         _fence = fence;
         _item = item;
@@ -70,6 +113,10 @@ public abstract class GeoFenceMonitor {
         _uidsLastState = new HashMap<>();
         _itemsToTrack = new ArrayList<>();
         _uidsToTrack = new ArrayList<>();
+        _uidsMoved = Collections
+                .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        _uidsPending = new HashSet<>();
+        _checkAll = true;
     }
 
     /**
@@ -96,6 +143,111 @@ public abstract class GeoFenceMonitor {
         return check(trigger, getItems(), true);
     }
 
+    /**
+     * Check only the tracked items which moved, or have not yet been checked,
+     * since the last pass. An item which has not moved keeps its last state
+     * so it cannot breach the Geo Fence. All items are checked after the
+     * fence geometry or the last state changes
+     *
+     * @return alerts, or null if the fence is not tracking
+     */
+    public List<GeoFenceAlerting.Alert> checkChanged() {
+        if (!_fence.isTracking())
+            return null;
+
+        List<PointMapItem> items;
+        synchronized (this) {
+            if (_checkAll) {
+                _checkAll = false;
+                _uidsMoved.clear();
+                items = getItems();
+            } else {
+                items = new ArrayList<>();
+                for (PointMapItem item : _itemsToTrack) {
+                    String uid = item.getUID();
+                    boolean moved = _uidsMoved.remove(uid);
+                    if (_uidsPending.contains(uid) || moved)
+                        items.add(item);
+                }
+            }
+            _uidsPending.clear();
+            _lastCheckCount = items.size();
+        }
+
+        if (items.isEmpty())
+            return new ArrayList<>();
+
+        return check(_fence.getTrigger(), items, true);
+    }
+
+    /**
+     * Get the number of items checked by the last call to {@link #checkChanged()}
+     */
+    public synchronized int getLastCheckCount() {
+        return _lastCheckCount;
+    }
+
+    /**
+     * Mark the fence geometry as changed so the bounds are recomputed and all
+     * tracked items are checked on the next pass
+     */
+    protected synchronized void invalidate() {
+        _bounds = null;
+        _checkAll = true;
+    }
+
+    /**
+     * Quick rejection test against the bounds of the fence geometry
+     * Subclasses should invoke this before the exact test
+     *
+     * @param point
+     * @return false if the point is definitely outside the fence
+     */
+    protected boolean inBounds(GeoPoint point) {
+        GeoBounds bounds;
+        synchronized (this) {
+            if (_bounds == null)
+                _bounds = computeBounds();
+            bounds = _bounds;
+        }
+
+        // no usable bounds, defer to the exact test
+        if (bounds == null)
+            return true;
+
+        return bounds.contains(point);
+    }
+
+    /**
+     * Get the padded bounds of the fence geometry
+     *
+     * @return the bounds, or null if the geometry has no usable bounds e.g.
+     *      it is empty or crosses the IDL
+     */
+    private GeoBounds computeBounds() {
+        if (!(_item instanceof Shape))
+            return null;
+
+        GeoBounds bounds = ((Shape) _item).getBounds(null);
+        if (bounds == null || Double.isNaN(bounds.getNorth())
+                || Double.isNaN(bounds.getWest())
+                || bounds.getEast() - bounds.getWest() > 180)
+            return null;
+
+        //empty e.g. a circle without rings
+        if (bounds.getNorth() <= bounds.getSouth()
+                || bounds.getEast() <= bounds.getWest())
+            return null;
+
+        double padLat = (bounds.getNorth() - bounds.getSouth()) * 0.01
+                + BOUNDS_PADDING;
+        double padLng = (bounds.getEast() - bounds.getWest()) * 0.01
+                + BOUNDS_PADDING;
+        return new GeoBounds(bounds.getSouth() - padLat,
+                bounds.getWest() - padLng, bounds.getNorth() + padLat,
+                bounds.getEast() + padLng);
+    }
+
     /**
      * Check if the item has breached the Geo Fence
      *
@@ -184,7 +336,10 @@ public abstract class GeoFenceMonitor {
         return (_fence.hashCode() + _item.getUID()).hashCode();
     }
 
-    public void dispose() {
+    public synchronized void dispose() {
+        for (PointMapItem item : _itemsToTrack)
+            item.removeOnPointChangedListener(_pointChanged);
+        _uidsMoved.clear();
     }
 
     /**
@@ -220,10 +375,12 @@ public abstract class GeoFenceMonitor {
             Map<String, Boolean> uidsLastState) {
         this._uidsLastState.clear();
         this._uidsLastState.putAll(uidsLastState);
+        _checkAll = true;
     }
 
     public synchronized void clearUidsLastState() {
         _uidsLastState.clear();
+        _checkAll = true;
     }
 
     /**
@@ -233,8 +390,13 @@ public abstract class GeoFenceMonitor {
      * @param items
      */
     public synchronized void setSelectItems(List<PointMapItem> items) {
+        for (PointMapItem item : _itemsToTrack)
+            item.removeOnPointChangedListener(_pointChanged);
         _itemsToTrack = items;
+        for (PointMapItem item : _itemsToTrack)
+            item.addOnPointChangedListener(_pointChanged);
         _uidsToIgnore.clear();
+        _checkAll = true;
     }
 
     public synchronized void clearSelectItems() {
@@ -254,6 +416,8 @@ public abstract class GeoFenceMonitor {
     public synchronized boolean checkSelectedItem(PointMapItem item) {
         if (_uidsToTrack.remove(item.getUID())) {
             _itemsToTrack.add(item);
+            item.addOnPointChangedListener(_pointChanged);
+            _uidsPending.add(item.getUID());
             return true;
         }
         return false;
@@ -323,7 +487,9 @@ public abstract class GeoFenceMonitor {
             if (toRemove >= 0) {
                 Log.d(TAG, "No longer tracking: " + item.getUID()
                         + " for fence: " + toString());
-                _itemsToTrack.remove(toRemove);
+                _itemsToTrack.remove(toRemove)
+                        .removeOnPointChangedListener(_pointChanged);
+                _uidsMoved.remove(item.getUID());
             } else {
                 Log.d(TAG, "Already not explicitly tracking: " + item.getUID()
                         + ", type: " + item.getType()
@@ -373,10 +539,12 @@ public abstract class GeoFenceMonitor {
         } else {
             //add to tracked list
             _itemsToTrack.add(item);
+            item.addOnPointChangedListener(_pointChanged);
         }
 
-        //don't ignore if previously done so
+        //don't ignore if previously done so, and check on the next pass
         _uidsToIgnore.remove(item.getUID());
+        _uidsPending.add(item.getUID());
 
         //check if currently inside & set initial state. For "Both" fences set opposite from
         //current state, so we alert immediately
@@ -150,6 +150,7 @@ class RectangleGeoFenceMonitor extends GeoFenceMonitor {
                         points[1],
                         points[2], points[3]);
             }
+            invalidate();
         }
     };
 
@@ -223,61 +224,66 @@ class RectangleGeoFenceMonitor extends GeoFenceMonitor {
                         continue;
                     }
 
-                    Pair<GeoPoint, Long> lastPoint = _lastPoints.get(item
-                            .getUID());
-                    long pointHandle = -1;
-                    if (lastPoint == null) {
-                        //no last point, insert
-                        //Log.d(TAG, "Inserting point: " + item.getUID());
-                        //s2 = android.os.SystemClock.elapsedRealtime();
-                        synchronized (_spatialCalc) {
-                            pointHandle = _spatialCalc.createPoint(point);
-                        }
-                        //insertTally += (android.os.SystemClock.elapsedRealtime() - s2);
-
-                        if (pointHandle < 1) {
-                            Log.w(TAG,
-                                    "Failed to insert point into SpatialCalculator");
-                            continue;
-                        }
-
-                        _lastPoints.put(item.getUID(),
-                                new Pair<>(point, pointHandle));
+                    boolean bInside;
+                    if (!inElevationRange(point) || !inBounds(point)) {
+                        //quick reject, no need to touch the spatial calculator
+                        bInside = false;
                     } else {
-                        //see if map item has moved
-                        pointHandle = lastPoint.second;
-                        double moved = DistanceCalculations
-                                .metersFromAtSourceTarget(lastPoint.first,
-                                        point);
-                        if (moved >= METERS_THRESHOLD_TO_UPDATE_POINT) {
-                            //Log.d(TAG, "Updating point: " + item.getUID());
+                        Pair<GeoPoint, Long> lastPoint = _lastPoints.get(item
+                                .getUID());
+                        long pointHandle = -1;
+                        if (lastPoint == null) {
+                            //no last point, insert
+                            //Log.d(TAG, "Inserting point: " + item.getUID());
                             //s2 = android.os.SystemClock.elapsedRealtime();
                             synchronized (_spatialCalc) {
-                                _spatialCalc.updatePoint(pointHandle, point);
+                                pointHandle = _spatialCalc.createPoint(point);
                             }
-                            _lastPoints
-                                    .put(item.getUID(),
-                                            new Pair<>(point,
-                                                    pointHandle));
-                            //updateTally += (android.os.SystemClock.elapsedRealtime() - s2);
+                            //insertTally += (android.os.SystemClock.elapsedRealtime() - s2);
+
+                            if (pointHandle < 1) {
+                                Log.w(TAG,
+                                        "Failed to insert point into SpatialCalculator");
+                                continue;
+                            }
+
+                            _lastPoints.put(item.getUID(),
+                                    new Pair<>(point, pointHandle));
                         } else {
-                            //no -op just use current location
-                            //Log.d(TAG, "Reusing point: " + item.getUID());
+                            //see if map item has moved
+                            pointHandle = lastPoint.second;
+                            double moved = DistanceCalculations
+                                    .metersFromAtSourceTarget(lastPoint.first,
+                                            point);
+                            if (moved >= METERS_THRESHOLD_TO_UPDATE_POINT) {
+                                //Log.d(TAG, "Updating point: " + item.getUID());
+                                //s2 = android.os.SystemClock.elapsedRealtime();
+                                synchronized (_spatialCalc) {
+                                    _spatialCalc.updatePoint(pointHandle, point);
+                                }
+                                _lastPoints
+                                        .put(item.getUID(),
+                                                new Pair<>(point,
+                                                        pointHandle));
+                                //updateTally += (android.os.SystemClock.elapsedRealtime() - s2);
+                            } else {
+                                //no -op just use current location
+                                //Log.d(TAG, "Reusing point: " + item.getUID());
+                            }
                         }
-                    }
 
-                    if (pointHandle < 1) {
-                        Log.w(TAG,
-                                "Failed to insert or update point into SpatialCalculator");
-                        continue;
-                    }
+                        if (pointHandle < 1) {
+                            Log.w(TAG,
+                                    "Failed to insert or update point into SpatialCalculator");
+                            continue;
+                        }
 
-                    //let SpatialCalculator do it's magic
-                    //s2 = android.os.SystemClock.elapsedRealtime();
-                    boolean bInside;
-                    synchronized (_spatialCalc) {
-                        bInside = inElevationRange(point) && _spatialCalc
-                                .contains(_fenceHandle, pointHandle);
+                        //let SpatialCalculator do it's magic
+                        //s2 = android.os.SystemClock.elapsedRealtime();
+                        synchronized (_spatialCalc) {
+                            bInside = _spatialCalc.contains(_fenceHandle,
+                                    pointHandle);
+                        }
                     }
                     //containsTally += (android.os.SystemClock.elapsedRealtime() - s2);
 
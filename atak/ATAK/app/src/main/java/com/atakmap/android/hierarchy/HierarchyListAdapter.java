@@ -376,15 +376,13 @@ public class HierarchyListAdapter extends BaseAdapter implements
 
             final MapGroup rootGroup = mapView.getRootGroup();
 
-            Map<String, String> meta = new HashMap<>();
-
             MapItem impl;
             HierarchyListItem item;
             for (Location hit : results) {
                 item = null;
                 if (hit.getUID() != null) {
-                    meta.put("uid", hit.getUID());
-                    impl = rootGroup.deepFindItem(meta);
+                    // resolved via the root group UID index
+                    impl = rootGroup.deepFindUID(hit.getUID());
 
                     if (impl != null)
                         item = new MapItemHierarchyListItem(mapView, impl);
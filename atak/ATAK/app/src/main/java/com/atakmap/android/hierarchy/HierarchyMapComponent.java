@@ -19,9 +19,13 @@ import java.util.ArrayList;
 public class HierarchyMapComponent extends AbstractWidgetMapComponent {
 
     protected HierarchyListReceiver _hierarchyListReceiver;
+    protected MapItemSearchIndex _searchIndex;
 
     @Override
     public void onCreateWidgets(Context context, Intent intent, MapView view) {
+        _searchIndex = new MapItemSearchIndex(view);
+        MapItemSearchIndex.setInstance(_searchIndex);
+
         DocumentedIntentFilter f = new DocumentedIntentFilter();
         f.addAction(HierarchyListReceiver.MANAGE_HIERARCHY,
                 "Open the Overlay Manager drop-down",
@@ -87,5 +91,8 @@ public class HierarchyMapComponent extends AbstractWidgetMapComponent {
         _hierarchyListReceiver.dispose();
         _hierarchyListReceiver = null;
         HierarchyListReceiver.setInstance(null);
+        MapItemSearchIndex.setInstance(null);
+        _searchIndex.dispose();
+        _searchIndex = null;
     }
 }
@@ -0,0 +1,147 @@
+package com.atakmap.android.hierarchy;
+
+import android.os.SystemClock;
+
+import com.atakmap.android.maps.MapEvent;
+import com.atakmap.android.maps.MapEventDispatcher;
+import com.atakmap.android.maps.MapGroup;
+import com.atakmap.android.maps.MapItem;
+import com.atakmap.android.maps.MapView;
+import com.atakmap.coremap.log.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Search index over the title, callsign, shape name and remarks of every
+ * item on the map. The index is kept up to date as items are added, removed or have
+ * their searchable metadata changed, so searches do not need to walk the
+ * map groups.
+ */
+public class MapItemSearchIndex implements
+        MapEventDispatcher.MapEventDispatchListener,
+        MapItem.OnMetadataChangedListener {
+
+    private static final String TAG = "MapItemSearchIndex";
+
+    private static MapItemSearchIndex _instance;
+
+    private final MapView _mapView;
+    private final SearchIndex<MapItem> _index = new SearchIndex<>();
+
+    public MapItemSearchIndex(MapView mapView) {
+        _mapView = mapView;
+
+        MapEventDispatcher dispatcher = mapView.getMapEventDispatcher();
+        dispatcher.addMapEventListener(MapEvent.ITEM_ADDED, this);
+        dispatcher.addMapEventListener(MapEvent.ITEM_REMOVED, this);
+        dispatcher.addMapEventListener(MapEvent.ITEM_REFRESH, this);
+
+        final long start = SystemClock.elapsedRealtime();
+        mapView.getRootGroup().deepForEachItem(
+                new MapGroup.MapItemsCallback() {
+                    @Override
+                    public boolean onItemFunction(MapItem item) {
+                        add(item);
+                        return false;
+                    }
+                });
+        Log.d(TAG, "indexed " + _index.size() + " items in "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+    }
+
+    public static MapItemSearchIndex getInstance() {
+        return _instance;
+    }
+
+    static void setInstance(MapItemSearchIndex index) {
+        _instance = index;
+    }
+
+    public void dispose() {
+        MapEventDispatcher dispatcher = _mapView.getMapEventDispatcher();
+        dispatcher.removeMapEventListener(MapEvent.ITEM_ADDED, this);
+        dispatcher.removeMapEventListener(MapEvent.ITEM_REMOVED, this);
+        dispatcher.removeMapEventListener(MapEvent.ITEM_REFRESH, this);
+        for (MapItem item : _index.keys())
+            item.removeOnMetadataChangedListener(this);
+        _index.clear();
+    }
+
+    /**
+     * Find map items with a title, callsign, shape name or remarks
+     * containing the specified terms
+     *
+     * @param terms Search terms (case insensitive)
+     * @param limit Maximum number of results; zero or less for no limit
+     * @return Matching items, best matches first
+     */
+    public List<MapItem> find(String terms, int limit) {
+        return _index.find(terms, limit);
+    }
+
+    /**
+     * Find map items within the specified group (or any of its descendants)
+     * with a title, callsign, shape name or remarks containing the specified
+     * terms
+     *
+     * @param group Map group
+     * @param terms Search terms (case insensitive)
+     * @return Matching items, best matches first
+     */
+    public List<MapItem> find(MapGroup group, String terms) {
+        List<MapItem> results = _index.find(terms, 0);
+        List<MapItem> retval = new ArrayList<>(results.size());
+        for (MapItem item : results) {
+            if (isDescendant(item, group))
+                retval.add(item);
+        }
+        return retval;
+    }
+
+    @Override
+    public void onMapEvent(MapEvent event) {
+        final MapItem item = event.getItem();
+        if (item == null)
+            return;
+        final String type = event.getType();
+        if (MapEvent.ITEM_REMOVED.equals(type)) {
+            item.removeOnMetadataChangedListener(this);
+            _index.remove(item);
+        } else if (MapEvent.ITEM_ADDED.equals(type)) {
+            add(item);
+        } else if (_index.contains(item)) {
+            update(item);
+        }
+    }
+
+    @Override
+    public void onMetadataChanged(MapItem item, String field) {
+        // no-op if none of the indexed fields changed
+        update(item);
+    }
+
+    private void add(MapItem item) {
+        item.removeOnMetadataChangedListener(this);
+        item.addOnMetadataChangedListener(this);
+        update(item);
+    }
+
+    private void update(MapItem item) {
+        _index.put(item,
+                item.getTitle(),
+                item.getMetaString("callsign", null),
+                item.getMetaString("shapeName", null),
+                item.getRemarks());
+    }
+
+    private static boolean isDescendant(MapItem item, MapGroup group) {
+        MapGroup g = item.getGroup();
+        while (g != null) {
+            if (g == group)
+                return true;
+            g = g.getParentGroup();
+        }
+        return false;
+    }
+}
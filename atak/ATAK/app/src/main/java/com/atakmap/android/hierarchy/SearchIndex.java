@@ -0,0 +1,301 @@
+package com.atakmap.android.hierarchy;
+
+import com.atakmap.coremap.locale.LocaleUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory text index supporting prefix and substring queries over one or
+ * more text fields per key. Terms of 3 or more characters are resolved
+ * through a trigram index; shorter terms are matched by scanning.
+ *
+ * Results are ranked by the best match across the fields of an entry:
+ * exact match, then prefix match, then word prefix match, then substring
+ * match. For matches of the same kind, earlier fields rank higher.
+ *
+ * This class is thread-safe.
+ *
+ * @param <K> The key type
+ */
+public class SearchIndex<K> {
+
+    private static final int GRAM_LENGTH = 3;
+
+    // postings are compacted once the number of replaced or removed entries
+    // exceeds both this value and the number of live entries
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    private static final int MATCH_EXACT = 0;
+    private static final int MATCH_PREFIX = 1;
+    private static final int MATCH_WORD_PREFIX = 2;
+    private static final int MATCH_SUBSTRING = 3;
+
+    private static final class Entry<K> {
+        final K key;
+        final String[] fields;
+        final int slot;
+
+        Entry(K key, String[] fields, int slot) {
+            this.key = key;
+            this.fields = fields;
+            this.slot = slot;
+        }
+    }
+
+    private static final class Postings {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            if (size == slots.length)
+                slots = Arrays.copyOf(slots, size * 2);
+            slots[size++] = slot;
+        }
+    }
+
+    private static final class Hit<K> implements Comparable<Hit<K>> {
+        final Entry<K> entry;
+        final int score;
+        final int length;
+
+        Hit(Entry<K> entry, int score, int length) {
+            this.entry = entry;
+            this.score = score;
+            this.length = length;
+        }
+
+        @Override
+        public int compareTo(Hit<K> other) {
+            if (score != other.score)
+                return score < other.score ? -1 : 1;
+            if (length != other.length)
+                return length < other.length ? -1 : 1;
+            return entry.slot < other.entry.slot ? -1
+                    : (entry.slot == other.entry.slot ? 0 : 1);
+        }
+    }
+
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final List<Entry<K>> slots = new ArrayList<>();
+    private int stale;
+
+    /**
+     * Adds or replaces the entry for the specified key.
+     *
+     * @param key The key
+     * @param fields The text fields for the key, in order of priority.
+     *               <code>null</code> fields are ignored.
+     */
+    public synchronized void put(K key, String... fields) {
+        final String[] normalized = new String[fields.length];
+        for (int i = 0; i < fields.length; i++)
+            normalized[i] = normalize(fields[i]);
+
+        Entry<K> entry = this.entries.get(key);
+        if (entry != null) {
+            if (Arrays.equals(entry.fields, normalized))
+                return;
+            this.slots.set(entry.slot, null);
+            this.stale++;
+        }
+
+        entry = new Entry<>(key, normalized, this.slots.size());
+        this.entries.put(key, entry);
+        this.slots.add(entry);
+        index(entry);
+
+        compactIfNecessary();
+    }
+
+    /**
+     * Removes the entry for the specified key.
+     *
+     * @param key The key
+     */
+    public synchronized void remove(K key) {
+        final Entry<K> entry = this.entries.remove(key);
+        if (entry == null)
+            return;
+        this.slots.set(entry.slot, null);
+        this.stale++;
+        compactIfNecessary();
+    }
+
+    /**
+     * Returns <code>true</code> if the index contains an entry for the
+     * specified key.
+     */
+    public synchronized boolean contains(K key) {
+        return this.entries.containsKey(key);
+    }
+
+    /**
+     * Returns a snapshot of the keys in the index.
+     */
+    public synchronized List<K> keys() {
+        return new ArrayList<>(this.entries.keySet());
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+        this.postings.clear();
+        this.slots.clear();
+        this.stale = 0;
+    }
+
+    /**
+     * Find the keys with any field that contains the specified term.
+     *
+     * @param term The search term (case insensitive)
+     * @param limit The maximum number of results; zero or less for no limit
+     * @return The matching keys, best matches first
+     */
+    public synchronized List<K> find(String term, int limit) {
+        term = normalize(term);
+        if (term == null || term.isEmpty())
+            return Collections.emptyList();
+
+        List<Hit<K>> hits = new ArrayList<>();
+        if (term.length() < GRAM_LENGTH) {
+            for (Entry<K> entry : this.slots) {
+                if (entry != null)
+                    match(entry, term, hits);
+            }
+        } else {
+            // the candidates are the entries posted for the least common
+            // trigram of the term; each candidate is then verified against
+            // its text, which also discards stale postings
+            Postings candidates = null;
+            for (int i = 0; i <= term.length() - GRAM_LENGTH; i++) {
+                final Postings p = this.postings.get(gram(term, i));
+                if (p == null)
+                    return Collections.emptyList();
+                if (candidates == null || p.size < candidates.size)
+                    candidates = p;
+            }
+            final BitSet visited = new BitSet(this.slots.size());
+            for (int i = 0; i < candidates.size; i++) {
+                final int slot = candidates.slots[i];
+                if (visited.get(slot))
+                    continue;
+                visited.set(slot);
+                final Entry<K> entry = this.slots.get(slot);
+                if (entry != null)
+                    match(entry, term, hits);
+            }
+        }
+
+        Collections.sort(hits);
+        final int count = (limit > 0) ? Math.min(limit, hits.size())
+                : hits.size();
+        List<K> retval = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            retval.add(hits.get(i).entry.key);
+        return retval;
+    }
+
+    private static <K> void match(Entry<K> entry, String term,
+            List<Hit<K>> hits) {
+        int best = Integer.MAX_VALUE;
+        int length = 0;
+        final String[] fields = entry.fields;
+        for (int i = 0; i < fields.length; i++) {
+            final String field = fields[i];
+            if (field == null)
+                continue;
+            final int idx = field.indexOf(term);
+            if (idx < 0)
+                continue;
+            final int kind;
+            if (idx == 0)
+                kind = field.length() == term.length() ? MATCH_EXACT
+                        : MATCH_PREFIX;
+            else if (isWordStart(field, idx, term))
+                kind = MATCH_WORD_PREFIX;
+            else
+                kind = MATCH_SUBSTRING;
+            final int score = (kind << 16) | i;
+            if (score < best) {
+                best = score;
+                length = field.length();
+            }
+        }
+        if (best != Integer.MAX_VALUE)
+            hits.add(new Hit<>(entry, best, length));
+    }
+
+    private static boolean isWordStart(String field, int idx, String term) {
+        // look for an occurrence of the term that starts a word
+        while (idx > 0) {
+            if (!Character.isLetterOrDigit(field.charAt(idx - 1)))
+                return true;
+            idx = field.indexOf(term, idx + 1);
+            if (idx < 0)
+                return false;
+        }
+        return idx == 0;
+    }
+
+    private void index(Entry<K> entry) {
+        Set<Long> grams = new HashSet<>();
+        for (String field : entry.fields) {
+            if (field == null)
+                continue;
+            for (int i = 0; i <= field.length() - GRAM_LENGTH; i++)
+                grams.add(gram(field, i));
+        }
+        for (Long g : grams) {
+            Postings p = this.postings.get(g);
+            if (p == null)
+                this.postings.put(g, p = new Postings());
+            p.add(entry.slot);
+        }
+    }
+
+    private void compactIfNecessary() {
+        if (this.stale < COMPACT_THRESHOLD
+                || this.stale < this.entries.size())
+            return;
+
+        List<Entry<K>> live = new ArrayList<>(this.entries.size());
+        for (Entry<K> entry : this.slots) {
+            if (entry != null)
+                live.add(entry);
+        }
+        this.slots.clear();
+        this.postings.clear();
+        this.stale = 0;
+        for (Entry<K> entry : live) {
+            final Entry<K> compacted = new Entry<>(entry.key, entry.fields,
+                    this.slots.size());
+            this.entries.put(entry.key, compacted);
+            this.slots.add(compacted);
+            index(compacted);
+        }
+    }
+
+    private static long gram(String s, int off) {
+        return ((long) s.charAt(off) << 32)
+                | ((long) s.charAt(off + 1) << 16)
+                | s.charAt(off + 2);
+    }
+
+    private static String normalize(String s) {
+        if (s == null)
+            return null;
+        return s.trim().toLowerCase(LocaleUtil.getCurrent());
+    }
+}
@@ -8,6 +8,7 @@ import com.atakmap.android.hierarchy.HierarchyListAdapter;
 import com.atakmap.android.hierarchy.HierarchyListFilter;
 import com.atakmap.android.hierarchy.HierarchyListItem;
 import com.atakmap.android.hierarchy.HierarchyListItem2;
+import com.atakmap.android.hierarchy.MapItemSearchIndex;
 import com.atakmap.android.hierarchy.action.Delete;
 import com.atakmap.android.hierarchy.action.Export;
 import com.atakmap.android.hierarchy.action.Search;
@@ -309,6 +310,10 @@ public class MapGroupHierarchyListItem extends AbstractHierarchyListItem2
 
     @Override
     public Set<HierarchyListItem> find(String terms) {
+        MapItemSearchIndex index = MapItemSearchIndex.getInstance();
+        if (index != null)
+            return find(index, terms);
+
         terms = "*" + terms + "*";
 
         Set<Long> found = new HashSet<>();
@@ -330,6 +335,37 @@ public class MapGroupHierarchyListItem extends AbstractHierarchyListItem2
         return retval;
     }
 
+    private Set<HierarchyListItem> find(MapItemSearchIndex index,
+            String terms) {
+        Set<HierarchyListItem> retval = new HashSet<>();
+        List<MapItem> results = index.find(this.group, terms);
+        if (results.isEmpty())
+            return retval;
+
+        // Resolve the list contents once rather than per result
+        Set<String> contained = new HashSet<>();
+        getContainedUIDs(contained);
+        for (MapItem item : results) {
+            if (contained.contains(item.getUID()))
+                retval.add(new MapItemHierarchyListItem(this.mapView, item));
+        }
+        return retval;
+    }
+
+    /**
+     * Get the UIDs of all map items in the children list
+     * @param uids Set to add the UIDs to
+     */
+    private void getContainedUIDs(Set<String> uids) {
+        List<HierarchyListItem> children = getChildren();
+        for (HierarchyListItem hli : children) {
+            if (hli instanceof MapItemHierarchyListItem)
+                uids.add(hli.getUID());
+            else if (hli instanceof MapGroupHierarchyListItem)
+                ((MapGroupHierarchyListItem) hli).getContainedUIDs(uids);
+        }
+    }
+
     /**
      * Check whether a map item is in the children list
      * Used with find to avoid re-filtering
@@ -73,6 +73,14 @@ public class ImportAlternateContactSort extends ImportResolver {
         return false;
     }
 
+    @Override
+    public boolean match(ImportSniff sniff) {
+        if (!super.match(sniff.getFile()))
+            return false;
+        return isContact(
+                sniff.getHeaderString(FileSystemUtils.CHARBUFFERSIZE));
+    }
+
     private static boolean isContact(InputStream stream, char[] buffer)
             throws IOException {
 
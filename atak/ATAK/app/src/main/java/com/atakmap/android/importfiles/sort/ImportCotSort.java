@@ -73,6 +73,18 @@ public class ImportCotSort extends ImportResolver {
         return false;
     }
 
+    @Override
+    public boolean match(final ImportSniff sniff) {
+        if (!super.match(sniff.getFile()))
+            return false;
+        final String content = sniff.getHeaderString(PROBE_SIZE);
+        if (content.isEmpty()) {
+            Log.d(TAG, "Failed to read .cot stream");
+            return false;
+        }
+        return isCoT(content);
+    }
+
     private static boolean isCoT(final InputStream stream,
             final char[] buffer) {
         try {
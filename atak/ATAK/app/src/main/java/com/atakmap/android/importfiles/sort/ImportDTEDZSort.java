@@ -18,6 +18,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Set;
 import java.util.zip.ZipInputStream;
 
@@ -79,6 +80,22 @@ public class ImportDTEDZSort extends ImportInPlaceResolver {
         _context = context;
     }
 
+    @Override
+    public boolean match(ImportSniff sniff) {
+        if (!super.match(sniff.getFile()))
+            return false;
+
+        // the zip central directory has already been read by the sniff
+        final List<String> entries = sniff.getZipEntries();
+        if (entries == null)
+            return false;
+        for (String name : entries) {
+            if (containsDT(name))
+                return match(sniff.getFile());
+        }
+        return false;
+    }
+
     @Override
     public boolean match(File file) {
         if (!super.match(file))
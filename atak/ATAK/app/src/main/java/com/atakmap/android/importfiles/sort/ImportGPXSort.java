@@ -65,6 +65,13 @@ public class ImportGPXSort extends ImportInPlaceResolver {
         return false;
     }
 
+    @Override
+    public boolean match(ImportSniff sniff) {
+        if (!super.match(sniff.getFile()))
+            return false;
+        return isGpx(sniff.getHeaderString(1024));
+    }
+
     private static boolean isGpx(InputStream stream) {
         try {
             // read first few hundred bytes and search for known GPX strings
@@ -79,19 +86,22 @@ public class ImportGPXSort extends ImportInPlaceResolver {
                 return false;
             }
 
-            String content = String.valueOf(buffer, 0, numRead);
-            boolean match = content.contains(GPXMATCH);
-            if (!match) {
-                Log.d(TAG, "Failed to match gpx content");
-            }
-
-            return match;
+            return isGpx(String.valueOf(buffer, 0, numRead));
         } catch (Exception e) {
             Log.d(TAG, "Failed to match .gpx", e);
             return false;
         }
     }
 
+    private static boolean isGpx(String content) {
+        boolean match = content.contains(GPXMATCH);
+        if (!match) {
+            Log.d(TAG, "Failed to match gpx content");
+        }
+
+        return match;
+    }
+
     @Override
     public Pair<String, String> getContentMIME() {
         return new Pair<>(GpxFileSpatialDb.GPX_CONTENT_TYPE,
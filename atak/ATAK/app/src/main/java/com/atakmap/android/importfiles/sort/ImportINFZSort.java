@@ -14,6 +14,7 @@ import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.log.Log;
 
 import java.io.File;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -35,6 +36,18 @@ public class ImportINFZSort extends ImportInternalSDResolver {
                 context.getDrawable(R.drawable.ic_menu_plugins));
     }
 
+    @Override
+    public boolean match(ImportSniff sniff) {
+        if (!super.match(sniff.getFile()))
+            return false;
+
+        // only read the index of zips that have one
+        final List<String> entries = sniff.getZipEntries();
+        return entries != null
+                && entries.contains(AppMgmtUtils.REPO_INDEX_FILENAME)
+                && match(sniff.getFile());
+    }
+
     @Override
     public boolean match(File file) {
         if (!super.match(file))
@@ -46,6 +46,13 @@ public class ImportJSONPrefSort extends ImportInternalSDResolver {
         }
     }
 
+    @Override
+    public boolean match(ImportSniff sniff) {
+        if (!super.match(sniff.getFile()))
+            return false;
+        return isPreference(sniff.getHeaderString(64));
+    }
+
     public boolean isPreference(InputStream stream) {
         try {
             char[] buffer = new char[64];
@@ -65,15 +72,18 @@ public class ImportJSONPrefSort extends ImportInternalSDResolver {
                 return false;
             }
 
-            String content = String.valueOf(buffer, 0, numRead);
-            return content.startsWith("{") && content.contains(
-                    JSONPreferenceControl.PREFERENCE_CONTROL);
+            return isPreference(String.valueOf(buffer, 0, numRead));
         } catch (Exception e) {
             Log.d(TAG, "Failed to match .pref", e);
             return false;
         }
     }
 
+    private static boolean isPreference(String content) {
+        return content.startsWith("{") && content.contains(
+                JSONPreferenceControl.PREFERENCE_CONTROL);
+    }
+
     @Override
     protected void onFileSorted(File src, File dst, Set<SortFlags> flags) {
         super.onFileSorted(src, dst, flags);
@@ -61,6 +61,13 @@ public class ImportKMLSort extends ImportInPlaceResolver {
         return false;
     }
 
+    @Override
+    public boolean match(ImportSniff sniff) {
+        if (!super.match(sniff.getFile()))
+            return false;
+        return isKml(sniff.getHeaderString(1024));
+    }
+
     static boolean isKml(InputStream stream) {
         try {
             // read first few hundred bytes and search for known KML strings
@@ -75,19 +82,22 @@ public class ImportKMLSort extends ImportInPlaceResolver {
                 return false;
             }
 
-            String content = String.valueOf(buffer, 0, numRead);
-            boolean match = content.contains(KMLMATCH);
-            if (!match) {
-                Log.d(TAG, "Failed to match kml content");
-            }
-
-            return match;
+            return isKml(String.valueOf(buffer, 0, numRead));
         } catch (Exception e) {
             Log.d(TAG, "Failed to match .kml", e);
             return false;
         }
     }
 
+    private static boolean isKml(String content) {
+        boolean match = content.contains(KMLMATCH);
+        if (!match) {
+            Log.d(TAG, "Failed to match kml content");
+        }
+
+        return match;
+    }
+
     @Override
     public Pair<String, String> getContentMIME() {
         return new Pair<>(KmlFileSpatialDb.KML_CONTENT_TYPE,
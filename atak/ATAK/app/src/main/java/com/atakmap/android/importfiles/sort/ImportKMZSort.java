@@ -56,6 +56,15 @@ public class ImportKMZSort extends ImportInPlaceResolver {
         _bStrict = bStrict;
     }
 
+    @Override
+    public boolean match(ImportSniff sniff) {
+        if (!super.match(sniff.getFile()))
+            return false;
+
+        // only open zips that have a .kml entry
+        return sniff.hasZipEntryEndingWith(".kml") && match(sniff.getFile());
+    }
+
     @Override
     public boolean match(File file) {
         if (!super.match(file))
@@ -92,6 +92,27 @@ public class ImportMissionPackageSort extends ImportInternalSDResolver {
         _bStrict = bStrict;
     }
 
+    @Override
+    public boolean match(final ImportSniff sniff) {
+        if (!super.match(sniff.getFile()))
+            return false;
+
+        // the zip central directory has already been read by the sniff
+        if (sniff.getZipEntries() == null)
+            return false;
+        if (!_bStrict) {
+            Log.d(TAG, "(Non-strict) processing zip file");
+            return true;
+        }
+
+        // only read the manifest of zips that have one
+        if (!sniff.hasZipEntryEndingWith("manifest.xml")) {
+            Log.d(TAG, "(Strict) manifest not found");
+            return false;
+        }
+        return match(sniff.getFile());
+    }
+
     @Override
     public boolean match(final File file) {
         if (!super.match(file))
@@ -61,7 +61,6 @@ public class ImportPrefSort extends ImportInternalSDResolver {
             AtakAuthenticationCredentials.TYPE_caPassword,
             "certificateLocation",
             "caLocation", "networkMeshKey");
-    private boolean containsEntryToDelete = false;
     private List<String> prefFilesToCleanup = new ArrayList<>();
 
     public ImportPrefSort(Context context, boolean validateExt,
@@ -87,6 +86,13 @@ public class ImportPrefSort extends ImportInternalSDResolver {
         }
     }
 
+    @Override
+    public boolean match(ImportSniff sniff) {
+        if (!super.match(sniff.getFile()))
+            return false;
+        return isPreference(sniff.getHeaderString(8192));
+    }
+
     public boolean isPreference(InputStream stream) {
         try {
             char[] buffer = new char[8192];
@@ -107,38 +113,48 @@ public class ImportPrefSort extends ImportInternalSDResolver {
                 return false;
             }
 
-            String content = String.valueOf(buffer, 0, numRead);
-            boolean match = content.contains(MATCH_XML)
-                    &&
-                    (content.contains(MATCH_XML1) || content
-                            .contains(MATCH_XML2));
-            if (!match) {
-                Log.d(TAG, "Failed to match content from .pref: ");
-            }
-
-            // record whether the current file contains entries that need to be scrubbed
-            containsEntryToDelete = false;
-            for (String entryToDelete : entrysToDelete) {
-                if (content.contains(entryToDelete)) {
-                    containsEntryToDelete = true;
-                    break;
-                }
-            }
-
-            return match;
+            return isPreference(String.valueOf(buffer, 0, numRead));
         } catch (Exception e) {
             Log.d(TAG, "Failed to match .pref", e);
             return false;
         }
     }
 
+    private static boolean isPreference(String content) {
+        boolean match = content.contains(MATCH_XML)
+                &&
+                (content.contains(MATCH_XML1) || content
+                        .contains(MATCH_XML2));
+        if (!match) {
+            Log.d(TAG, "Failed to match content from .pref: ");
+        }
+        return match;
+    }
+
+    /**
+     * Check whether the file contains entries that need to be scrubbed.
+     * Checked once the file is sorted, rather than recorded when it is
+     * matched, so that the sorter holds no state between the two.
+     *
+     * @param file the sorted preference file
+     * @return true if the start of the file contains an entry to delete
+     */
+    private boolean containsEntryToDelete(File file) {
+        final String content = new ImportSniff(file).getHeaderString(8192);
+        for (String entryToDelete : entrysToDelete) {
+            if (content.contains(entryToDelete))
+                return true;
+        }
+        return false;
+    }
+
     @Override
     protected void onFileSorted(File src, File dst, Set<SortFlags> flags) {
         super.onFileSorted(src, dst, flags);
 
         try {
             // store of the path to the current file if it needs to be scrubbed
-            if (containsEntryToDelete) {
+            if (containsEntryToDelete(dst)) {
                 prefFilesToCleanup.add(dst.getCanonicalPath());
             }
 
@@ -127,6 +127,18 @@ public abstract class ImportResolver {
         return _filter.accept(file);
     }
 
+    /**
+     * Return true if this sort matches the specified file. Resolvers that
+     * inspect file content should override this method and use the header
+     * and zip entries read by the sniff, rather than opening the file again.
+     *
+     * @param sniff the content of the file to be sorted
+     * @return true if the import resolver is capable of handling the file.
+     */
+    public boolean match(final ImportSniff sniff) {
+        return match(sniff.getFile());
+    }
+
     /**
      * Provides for a capability by which a set of resolvers can be trimmed by a found sorter
      * implementation.    This provides great power to the sorter to force itself to be used over
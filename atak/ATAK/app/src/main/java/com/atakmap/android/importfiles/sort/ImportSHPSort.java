@@ -30,6 +30,10 @@ public class ImportSHPSort extends ImportInPlaceResolver {
     private static final String TAG = "ImportSHPSort";
 
     private static final int MAGIC_NUMBER = 9994;
+    private static final byte[] MAGIC_BYTES = {
+            (byte) (MAGIC_NUMBER >> 24), (byte) (MAGIC_NUMBER >> 16),
+            (byte) (MAGIC_NUMBER >> 8), (byte) MAGIC_NUMBER
+    };
 
     public ImportSHPSort(Context context, boolean validateExt,
             boolean copyFile, boolean importInPlace) {
@@ -64,6 +68,20 @@ public class ImportSHPSort extends ImportInPlaceResolver {
         return false;
     }
 
+    @Override
+    public boolean match(ImportSniff sniff) {
+        final File file = sniff.getFile();
+        if (!super.match(file)) {
+            Log.d(TAG, "No match: " + file.getAbsolutePath());
+            return false;
+        }
+
+        boolean b = sniff.startsWith(MAGIC_BYTES);
+        Log.d(TAG, (b ? "Matched Shapefile: " + file.getAbsolutePath()
+                : "Not a Shapefile: " + file.getAbsolutePath()));
+        return b;
+    }
+
     static boolean isShp(InputStream in) {
         try {
             // first field (4 bytes) should be a known value
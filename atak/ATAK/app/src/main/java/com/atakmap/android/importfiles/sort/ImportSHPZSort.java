@@ -37,6 +37,15 @@ public class ImportSHPZSort extends ImportInPlaceResolver {
         _context = context;
     }
 
+    @Override
+    public boolean match(ImportSniff sniff) {
+        if (!super.match(sniff.getFile()))
+            return false;
+
+        // only open zips that have a .shp entry
+        return sniff.hasZipEntryEndingWith(".shp") && match(sniff.getFile());
+    }
+
     @Override
     public boolean match(File file) {
         if (!super.match(file))
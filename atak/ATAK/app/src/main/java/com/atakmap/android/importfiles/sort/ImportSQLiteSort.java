@@ -26,6 +26,9 @@ public class ImportSQLiteSort extends ImportInternalSDResolver {
 
     private static final String TAG = "ImportSQLiteSort";
 
+    private static final byte[] SQLITE_MAGIC = "SQLite format 3\u0000"
+            .getBytes(FileSystemUtils.UTF8_CHARSET);
+
     /**
      * Enumeration of supported ATAK databases including a sample (not an exhaustive listing) of
      * expected tables for each database
@@ -85,6 +88,15 @@ public class ImportSQLiteSort extends ImportInternalSDResolver {
      * @param file
      * @return
      */
+    @Override
+    public boolean match(ImportSniff sniff) {
+        if (!super.match(sniff.getFile()))
+            return false;
+
+        // only open files that have a SQLite header
+        return sniff.startsWith(SQLITE_MAGIC) && match(sniff.getFile());
+    }
+
     @Override
     public boolean match(File file) {
         if (!super.match(file))
@@ -0,0 +1,192 @@
+package com.atakmap.android.importfiles.sort;
+
+import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.coremap.locale.LocaleUtil;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.util.zip.ZipEntry;
+import com.atakmap.util.zip.ZipFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * The content of a file being sorted that is of interest to the import
+ * resolvers. The header of the file and the entry names of a zip file are
+ * each read once, on first use, and shared by all of the resolvers matching
+ * the file.
+ *
+ * Instances are not thread-safe. The content may be read ahead of matching
+ * on another thread, via {@link #read()}, and the instance then handed to
+ * the matching thread.
+ */
+public class ImportSniff {
+
+    private static final String TAG = "ImportSniff";
+
+    /** Number of bytes read from the start of the file */
+    public static final int HEADER_SIZE = 8192;
+
+    private final File _file;
+    private byte[] _header;
+    private String _headerString;
+    private List<String> _zipEntries;
+    private boolean _zipRead;
+
+    public ImportSniff(File file) {
+        _file = file;
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    /**
+     * Reads the header and, for a zip file, the entry names, so that the
+     * resolvers matching the file do not wait on I/O
+     * @return This instance
+     */
+    public ImportSniff read() {
+        getZipEntries();
+        return this;
+    }
+
+    /**
+     * Get up to the first {@link #HEADER_SIZE} bytes of the file
+     * @return The header bytes; empty if the file could not be read
+     */
+    public byte[] getHeader() {
+        if (_header == null)
+            _header = readHeader(_file);
+        return _header;
+    }
+
+    /**
+     * Get the start of the file decoded as UTF-8 text
+     * @param maxChars Maximum number of characters to return
+     * @return The header text; empty if the file could not be read
+     */
+    public String getHeaderString(int maxChars) {
+        if (_headerString == null)
+            _headerString = new String(getHeader(),
+                    StandardCharsets.UTF_8);
+        return _headerString.length() > maxChars
+                ? _headerString.substring(0, maxChars)
+                : _headerString;
+    }
+
+    /**
+     * Check whether the file starts with the specified bytes
+     * @param magic The expected bytes
+     * @return True if the header begins with the magic bytes
+     */
+    public boolean startsWith(byte[] magic) {
+        final byte[] header = getHeader();
+        if (header.length < magic.length)
+            return false;
+        for (int i = 0; i < magic.length; i++) {
+            if (header[i] != magic[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the file starts with a zip local file header or, for an
+     * empty archive, the end of central directory record
+     * @return True if the file appears to be a zip file
+     */
+    public boolean isZip() {
+        final byte[] header = getHeader();
+        return header.length >= 4 && header[0] == 'P' && header[1] == 'K'
+                && (header[2] == 3 && header[3] == 4
+                        || header[2] == 5 && header[3] == 6);
+    }
+
+    /**
+     * Get the names of the entries in the zip central directory
+     * @return The entry names, or null if the file is not a readable zip
+     */
+    public List<String> getZipEntries() {
+        if (!_zipRead) {
+            _zipRead = true;
+            if (isZip())
+                _zipEntries = readZipEntries(_file);
+        }
+        return _zipEntries;
+    }
+
+    /**
+     * Check whether the file is a zip with an entry name ending with the
+     * specified suffix (case insensitive)
+     * @param suffix Entry name suffix (i.e. ".kml")
+     * @return True if a matching entry was found
+     */
+    public boolean hasZipEntryEndingWith(String suffix) {
+        final List<String> entries = getZipEntries();
+        if (entries == null)
+            return false;
+        suffix = suffix.toLowerCase(LocaleUtil.getCurrent());
+        for (String name : entries) {
+            if (name.toLowerCase(LocaleUtil.getCurrent()).endsWith(suffix))
+                return true;
+        }
+        return false;
+    }
+
+    private static byte[] readHeader(File file) {
+        InputStream is = null;
+        try {
+            is = IOProviderFactory.getInputStream(file);
+            byte[] buf = new byte[HEADER_SIZE];
+            int len = 0;
+            int read;
+            while (len < buf.length
+                    && (read = is.read(buf, len, buf.length - len)) > 0)
+                len += read;
+            if (len < buf.length) {
+                byte[] header = new byte[len];
+                System.arraycopy(buf, 0, header, 0, len);
+                return header;
+            }
+            return buf;
+        } catch (IOException e) {
+            Log.d(TAG, "Failed to read header: " + file.getAbsolutePath(), e);
+            return new byte[0];
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    private static List<String> readZipEntries(File file) {
+        ZipFile zip = null;
+        try {
+            zip = new ZipFile(file);
+            List<String> names = new ArrayList<>(zip.size());
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
+                names.add(entries.nextElement().getName());
+            return Collections.unmodifiableList(names);
+        } catch (Exception e) {
+            Log.d(TAG, "Not a zip file: " + file.getAbsolutePath(), e);
+            return null;
+        } finally {
+            if (zip != null) {
+                try {
+                    zip.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+}
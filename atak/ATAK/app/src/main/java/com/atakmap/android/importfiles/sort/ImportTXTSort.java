@@ -135,6 +135,13 @@ final public class ImportTXTSort extends ImportInternalSDResolver {
         return t != null;
     }
 
+    @Override
+    public boolean match(ImportSniff sniff) {
+        if (!super.match(sniff.getFile()))
+            return false;
+        return getType(sniff.getHeaderString(1024)) != null;
+    }
+
     public static TxtType getType(InputStream stream) {
         try {
             // read first few hundred bytes and search for known strings
@@ -149,22 +156,25 @@ final public class ImportTXTSort extends ImportInternalSDResolver {
                 return null;
             }
 
-            String content = String.valueOf(buffer, 0, numRead);
-            for (TxtType t : types) {
-                if (content.contains(t.signature)) {
-                    Log.d(TAG, "Match ATAK TXT content: " + t.toString());
-                    return t;
-                }
-            }
-
-            Log.d(TAG, "Failed to match ATAK TXT content");
-            return null;
+            return getType(String.valueOf(buffer, 0, numRead));
         } catch (Exception e) {
             Log.d(TAG, "Failed to match txt", e);
             return null;
         }
     }
 
+    private static TxtType getType(String content) {
+        for (TxtType t : types) {
+            if (content.contains(t.signature)) {
+                Log.d(TAG, "Match ATAK TXT content: " + t.toString());
+                return t;
+            }
+        }
+
+        Log.d(TAG, "Failed to match ATAK TXT content");
+        return null;
+    }
+
     /**
      * Move to new location on same SD card Defer to TxtType for the relative path
      */
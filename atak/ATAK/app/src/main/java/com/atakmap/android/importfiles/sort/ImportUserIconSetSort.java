@@ -42,6 +42,16 @@ public class ImportUserIconSetSort extends ImportInPlaceResolver {
                 context.getDrawable(R.drawable.cot_icon_sugp));
     }
 
+    @Override
+    public boolean match(ImportSniff sniff) {
+        if (!super.match(sniff.getFile()))
+            return false;
+
+        // only open zips that have an iconset.xml entry
+        return sniff.hasZipEntryEndingWith(ICONSET_XML)
+                && match(sniff.getFile());
+    }
+
     @Override
     public boolean match(File file) {
         if (!super.match(file))
@@ -14,6 +14,7 @@ import android.widget.TextView;
 
 import com.atakmap.android.image.ImageGalleryReceiver;
 import com.atakmap.android.importfiles.sort.ImportResolver;
+import com.atakmap.android.importfiles.sort.ImportSniff;
 import com.atakmap.android.importfiles.sort.ImportResolver.SortFlags;
 import com.atakmap.app.R;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
@@ -261,13 +262,16 @@ public class ImportFileTask extends
 
         boolean isDirectory = IOProviderFactory.isDirectory(file);
 
+        // file content is read once and shared by the sorters
+        final ImportSniff sniff = isDirectory ? null : new ImportSniff(file);
+
         final List<ImportResolver> matchingSorters = new ArrayList<>();
         for (ImportResolver sorter : sorters) {
             if (isDirectory && !sorter.directoriesSupported()) {
                 continue;
             }
             try {
-                if (sorter.match(file)) {
+                if (sniff != null ? sorter.match(sniff) : sorter.match(file)) {
                     matchingSorters.add(sorter);
                 }
             } catch (Exception ioe) {
@@ -3,6 +3,7 @@ package com.atakmap.android.importfiles.task;
 
 import android.content.Context;
 import android.os.AsyncTask;
+import android.os.SystemClock;
 
 import com.atakmap.android.importexport.ImportExportMapComponent;
 import com.atakmap.android.importfiles.sort.ImportAPKSort;
@@ -27,11 +28,13 @@ import com.atakmap.android.importfiles.sort.ImportSHPSort;
 import com.atakmap.android.importfiles.sort.ImportSHPZSort;
 import com.atakmap.android.importfiles.sort.ImportDTEDZSort;
 import com.atakmap.android.importfiles.sort.ImportSQLiteSort;
+import com.atakmap.android.importfiles.sort.ImportSniff;
 import com.atakmap.android.importfiles.sort.ImportSupportInfoSort;
 import com.atakmap.android.importfiles.sort.ImportTXTSort;
 import com.atakmap.android.importfiles.sort.ImportTilesetSort;
 import com.atakmap.android.importfiles.sort.ImportUserIconSetSort;
 import com.atakmap.android.importfiles.sort.ImportVideoSort;
+import com.atakmap.coremap.concurrent.NamedThreadFactory;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.log.Log;
@@ -44,6 +47,11 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Background task to parse a directory and move files to other directories, which are watched by
@@ -145,6 +153,15 @@ public class ImportFilesTask extends AsyncTask<Void, Void, Integer> {
 
     private final Context _context;
 
+    // Maximum number of files read concurrently
+    private static final int MAX_SNIFF_THREADS = 4;
+
+    private ExecutorService _sniffExecutor;
+
+    // Time spent in, and number of files checked by, each sorter
+    private long[] _matchNanos;
+    private int[] _matchCounts;
+
     public ImportFilesTask(Context context) {
         this._context = context;
         this._sortedFiles = new HashSet<>();
@@ -169,20 +186,63 @@ public class ImportFilesTask extends AsyncTask<Void, Void, Integer> {
             return 0;
         }
 
+        final int threads = startSniffing(sorters);
+        final long start = SystemClock.elapsedRealtime();
         int numberSorted = 0;
-        for (String dir : atakRoots) {
-            if (dir == null || dir.length() < 1)
-                continue;
+        try {
+            for (String dir : atakRoots) {
+                if (dir == null || dir.length() < 1)
+                    continue;
 
-            File importDir = new File(_context.getCacheDir(),
-                    FileSystemUtils.ATAKDATA);
-            numberSorted += sort(importDir, sorters);
+                File importDir = new File(_context.getCacheDir(),
+                        FileSystemUtils.ATAKDATA);
+                numberSorted += sort(importDir, sorters);
+            }
+        } finally {
+            _sniffExecutor.shutdownNow();
         }
 
+        logMatchTimes(sorters);
+        Log.d(TAG, "Sorted in " + (SystemClock.elapsedRealtime() - start)
+                + "ms using " + threads + " threads");
+
         Log.d(TAG, "Importing from atakroots numberSorted: " + numberSorted);
         return numberSorted;
     }
 
+    /**
+     * Sorts the files in the directory and its subdirectories.
+     *
+     * @param dir the directory
+     * @param sorters the sorters, in order of precedence
+     * @return the number of files sorted
+     */
+    int sortDirectory(File dir, List<ImportResolver> sorters) {
+        startSniffing(sorters);
+        try {
+            return sort(dir, sorters);
+        } finally {
+            _sniffExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Starts the pool that reads the content of the files to be matched,
+     * bounded by the number of cores. The sorters are not required to be
+     * thread-safe, so matching is done on the sorting thread.
+     *
+     * @return the number of threads
+     */
+    private int startSniffing(List<ImportResolver> sorters) {
+        final int threads = Math.max(1, Math.min(MAX_SNIFF_THREADS,
+                Runtime.getRuntime().availableProcessors()));
+        _sniffExecutor = Executors.newFixedThreadPool(threads,
+                new NamedThreadFactory("ImportFilesSniff"));
+        _matchNanos = new long[sorters.size()];
+        _matchCounts = new int[sorters.size()];
+        return threads;
+    }
+
     /**
      * Get list of sorters for supported file types, with the specified configuration settings
      * 
@@ -319,6 +379,8 @@ public class ImportFilesTask extends AsyncTask<Void, Void, Integer> {
         int numberSorted = 0;
         File[] files = IOProviderFactory.listFiles(dir);
         if (files != null && files.length > 0) {
+            // read the files in this directory in the background
+            List<Future<ImportSniff>> sniffs = new ArrayList<>(files.length);
             for (File file : files) {
                 if (file == null || !IOProviderFactory.exists(file))
                     continue;
@@ -329,47 +391,76 @@ public class ImportFilesTask extends AsyncTask<Void, Void, Integer> {
                     continue;
                 }
 
-                // otherwise attempt to sort the file
+                sniffs.add(_sniffExecutor.submit(new SniffTask(file)));
+            }
+
+            // match and sort the files one at a time, in order, as sorting
+            // moves files and updates the state of the sorters
+            for (Future<ImportSniff> future : sniffs) {
+                final ImportSniff sniff;
+                try {
+                    sniff = future.get();
+                } catch (InterruptedException e) {
+                    Log.w(TAG, "Interrupted while matching files");
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Failed to read file", e.getCause());
+                    continue;
+                }
+
+                // sorting an earlier file may have moved this one, e.g. the
+                // sidecar files of a shapefile
+                final File file = sniff.getFile();
+                if (!IOProviderFactory.exists(file)) {
+                    Log.d(TAG, "Skipping file moved by an earlier import: "
+                            + file.getAbsolutePath());
+                    continue;
+                }
+
                 boolean sorted = false;
-                for (ImportResolver sorter : sorters) {
-                    // see if this sorter can handle the current file
-                    if (sorter.match(file)) {
-                        // do not overwrite is we've already imported a file to the anticipated
-                        // location
-                        File destPath = sorter.getDestinationPath(file);
-                        if (destPath == null) {
-                            Log.w(TAG,
-                                    sorter.toString()
-                                            + ", Unable to determine destination path for: "
-                                            + file.getAbsolutePath());
-                            continue;
-                        }
+                int index = findMatch(sniff, sorters, 0);
+                while (index >= 0) {
+                    final ImportResolver sorter = sorters.get(index);
+
+                    // do not overwrite is we've already imported a file to the anticipated
+                    // location
+                    File destPath = sorter.getDestinationPath(file);
+                    if (destPath == null) {
+                        Log.w(TAG,
+                                sorter.toString()
+                                        + ", Unable to determine destination path for: "
+                                        + file.getAbsolutePath());
+                        index = findMatch(sniff, sorters, index + 1);
+                        continue;
+                    }
 
-                        if (_sortedFiles.contains(destPath.getAbsolutePath())) {
-                            Log.w(TAG,
-                                    sorter.toString()
-                                            + ", Matched, but destination path already exists: "
-                                            + destPath.getAbsolutePath());
-                            break;
-                        }
+                    if (_sortedFiles.contains(destPath.getAbsolutePath())) {
+                        Log.w(TAG,
+                                sorter.toString()
+                                        + ", Matched, but destination path already exists: "
+                                        + destPath.getAbsolutePath());
+                        break;
+                    }
+
+                    // now attempt to sort (i.e. move the file to proper location)
+                    sorted = sorter.beginImport(file);
+                    if (sorted) {
+                        numberSorted++;
+                        _sortedFiles.add(destPath.getAbsolutePath());
+                        Log.d(TAG,
+                                sorter.toString() + ", Sorted: "
+                                        + file.getAbsolutePath()
+                                        + " to "
+                                        + destPath.getAbsolutePath());
+                        break;
+                    }
 
-                        // now attempt to sort (i.e. move the file to proper location)
-                        sorted = sorter.beginImport(file);
-                        if (sorted) {
-                            numberSorted++;
-                            _sortedFiles.add(destPath.getAbsolutePath());
-                            Log.d(TAG,
-                                    sorter.toString() + ", Sorted: "
-                                            + file.getAbsolutePath()
-                                            + " to "
-                                            + destPath.getAbsolutePath());
-                            break;
-                        } else
-                            Log.w(TAG,
-                                    sorter.toString()
-                                            + ", Matched, but did not sort: "
-                                            + file.getAbsolutePath());
-                    } // end if sorter match was found
+                    Log.w(TAG,
+                            sorter.toString()
+                                    + ", Matched, but did not sort: "
+                                    + file.getAbsolutePath());
+                    index = findMatch(sniff, sorters, index + 1);
                 }
 
                 if (!sorted) {
@@ -397,4 +488,58 @@ public class ImportFilesTask extends AsyncTask<Void, Void, Integer> {
 
         return numberSorted;
     }
+
+    /**
+     * Find the first sorter, starting at the specified index, that matches
+     * the file. The time spent in each sorter is recorded.
+     *
+     * @param sniff the file content
+     * @param sorters the sorters
+     * @param start the index of the first sorter to check
+     * @return the index of the matching sorter or -1 if none match
+     */
+    private int findMatch(ImportSniff sniff, List<ImportResolver> sorters,
+            int start) {
+        for (int i = start; i < sorters.size(); i++) {
+            final long begin = System.nanoTime();
+            boolean matched;
+            try {
+                matched = sorters.get(i).match(sniff);
+            } catch (Exception e) {
+                Log.e(TAG, sorters.get(i).toString() + ", Failed to match: "
+                        + sniff.getFile().getAbsolutePath(), e);
+                matched = false;
+            }
+            _matchNanos[i] += System.nanoTime() - begin;
+            _matchCounts[i]++;
+            if (matched)
+                return i;
+        }
+        return -1;
+    }
+
+    private void logMatchTimes(List<ImportResolver> sorters) {
+        for (int i = 0; i < sorters.size(); i++) {
+            final int count = _matchCounts[i];
+            if (count == 0)
+                continue;
+            final ImportResolver sorter = sorters.get(i);
+            Log.d(TAG, sorter.getClass().getSimpleName() + " ("
+                    + sorter.getExt() + "): checked " + count + " files in "
+                    + (_matchNanos[i] / 1000000L) + "ms");
+        }
+    }
+
+    private static final class SniffTask implements Callable<ImportSniff> {
+        private final File _file;
+
+        SniffTask(File file) {
+            _file = file;
+        }
+
+        @Override
+        public ImportSniff call() {
+            return new ImportSniff(_file).read();
+        }
+    }
 }
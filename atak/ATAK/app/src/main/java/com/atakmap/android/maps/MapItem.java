@@ -305,6 +305,11 @@ public abstract class MapItem extends FilterMetaDataHolder implements
         }
 
         super.setMetaString(k, dv);
+
+        // fields shown in search results
+        if (k.equals("title") || k.equals("callsign")
+                || k.equals("shapeName"))
+            notifyMetadataChanged(k);
     }
 
     @Override
@@ -878,6 +883,8 @@ public abstract class MapItem extends FilterMetaDataHolder implements
         // Update internal hashtags
         _hashtags.clear();
         _hashtags.addAll(newTags);
+
+        notifyMetadataChanged(getRemarksKey());
     }
 
     public String getRemarks() {
@@ -0,0 +1,251 @@
+package com.atakmap.android.maps;
+
+import com.atakmap.android.hierarchy.filters.FOVFilter;
+import com.atakmap.coremap.maps.coords.GeoBounds;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.spatial.GeoPointIndex;
+import com.atakmap.util.Filter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps a spatial index of all point items that have been added to the map so
+ * that location based queries do not need to visit every item. The index is
+ * kept current via the {@link MapEvent#ITEM_ADDED},
+ * {@link MapEvent#ITEM_REMOVED} and {@link MapEvent#GROUP_REMOVED} events and
+ * the point changed callbacks of the indexed items.
+ *
+ * Items that are not located by a single point (shapes, anchored items, items
+ * that supply their own {@link FOVFilter.Filterable} implementation) are
+ * tracked separately and scanned linearly.
+ */
+final class MapItemSpatialIndex implements
+        MapEventDispatcher.MapEventDispatchListener,
+        PointMapItem.OnPointChangedListener {
+
+    private final static GeoPointIndex.Locator<PointMapItem> LOCATOR = new GeoPointIndex.Locator<PointMapItem>() {
+        @Override
+        public boolean getLocation(PointMapItem item, GeoPoint location) {
+            final GeoPoint point = item.getPoint();
+            if (point == null)
+                return false;
+            location.set(point);
+            return true;
+        }
+    };
+
+    private final static GeoPointIndex.Metric<MapItem> DISTANCE = new GeoPointIndex.Metric<MapItem>() {
+        @Override
+        public double distance(MapItem item, GeoPoint location) {
+            return MapItem.computeDistance(item, location);
+        }
+    };
+
+    private final GeoPointIndex<PointMapItem> points;
+    private final Set<MapItem> others;
+
+    MapItemSpatialIndex() {
+        this.points = new GeoPointIndex<>(LOCATOR);
+        this.others = Collections
+                .newSetFromMap(new IdentityHashMap<MapItem, Boolean>());
+    }
+
+    @Override
+    public void onMapEvent(final MapEvent event) {
+        final String etype = event.getType();
+        if (etype.equals(MapEvent.ITEM_ADDED)
+                || etype.equals(MapEvent.ITEM_GROUP_CHANGED)) {
+            add(event.getItem());
+        } else if (etype.equals(MapEvent.ITEM_REMOVED)) {
+            remove(event.getItem());
+        } else if (etype.equals(MapEvent.GROUP_REMOVED)) {
+            // items are not individually removed with their group
+            final MapGroup group = event.getGroup();
+            if (group != null) {
+                group.deepForEachItem(new MapGroup.MapItemsCallback() {
+                    @Override
+                    public boolean onItemFunction(MapItem item) {
+                        remove(item);
+                        return false;
+                    }
+                });
+            }
+        }
+    }
+
+    @Override
+    public void onPointChanged(PointMapItem item) {
+        synchronized (this) {
+            this.points.refresh(item);
+        }
+    }
+
+    private static boolean isIndexable(MapItem item) {
+        return (item instanceof PointMapItem)
+                && !(item instanceof FOVFilter.Filterable);
+    }
+
+    void add(MapItem item) {
+        if (item == null)
+            return;
+        if (isIndexable(item)) {
+            final PointMapItem pmi = (PointMapItem) item;
+            // register first so that no change is missed between the
+            // location being captured and the listener being installed
+            pmi.addOnPointChangedListener(this);
+            synchronized (this) {
+                this.points.add(pmi);
+            }
+        } else {
+            synchronized (this) {
+                this.others.add(item);
+            }
+        }
+    }
+
+    void remove(MapItem item) {
+        if (item == null)
+            return;
+        if (isIndexable(item)) {
+            final PointMapItem pmi = (PointMapItem) item;
+            pmi.removeOnPointChangedListener(this);
+            synchronized (this) {
+                this.points.remove(pmi);
+            }
+        } else {
+            synchronized (this) {
+                this.others.remove(item);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        this.points.clear();
+        this.others.clear();
+    }
+
+    /**
+     * Finds the closest item to the specified location, within the threshold.
+     *
+     * @param location The location
+     * @param threshold The search threshold, in meters
+     * @param filter Only items accepted by the filter are considered
+     * @return The closest item or <code>null</code> if no item is within the
+     *         threshold
+     */
+    MapItem findClosestItem(GeoPoint location, double threshold,
+            final MapGroup.MapItemsCallback filter) {
+        if (location == null)
+            return null;
+
+        // consistent with DefaultMapGroup: NaN excludes nothing
+        if (Double.isNaN(threshold))
+            threshold = Double.POSITIVE_INFINITY;
+
+        final List<PointMapItem> nearest = new ArrayList<>(1);
+        final List<MapItem> unindexed;
+        synchronized (this) {
+            this.points.nearest(location, 1, threshold, DISTANCE,
+                    new Filter<MapItem>() {
+                        @Override
+                        public boolean accept(MapItem item) {
+                            return filter.onItemFunction(item);
+                        }
+                    }, nearest);
+            unindexed = new ArrayList<>(this.others);
+        }
+
+        MapItem candidate = null;
+        double candidateDistance = Double.NaN;
+        if (!nearest.isEmpty()) {
+            candidate = nearest.get(0);
+            candidateDistance = MapItem.computeDistance(candidate, location);
+        }
+
+        double distance;
+        for (MapItem i : unindexed) {
+            distance = MapItem.computeDistance(i, location);
+            if (Double.isNaN(distance) || distance > threshold)
+                continue;
+            if (!Double.isNaN(candidateDistance)
+                    && distance >= candidateDistance)
+                continue;
+            if (!filter.onItemFunction(i))
+                continue;
+            candidate = i;
+            candidateDistance = distance;
+        }
+        return candidate;
+    }
+
+    /**
+     * Finds all items within the radius around the specified location.
+     *
+     * @param location The location
+     * @param radius The search radius, in meters
+     * @param filter Only items accepted by the filter are returned
+     */
+    Collection<MapItem> findItems(GeoPoint location, double radius,
+            MapGroup.MapItemsCallback filter) {
+        final Collection<MapItem> retval = new LinkedList<>();
+        if (location == null)
+            return retval;
+
+        final List<MapItem> candidates = new ArrayList<>();
+        synchronized (this) {
+            if (Double.isNaN(radius))
+                this.points.get(90d, -180d, -90d, 180d, candidates);
+            else
+                this.points.get(location, radius, candidates);
+            candidates.addAll(this.others);
+        }
+
+        double distance;
+        for (MapItem i : candidates) {
+            distance = MapItem.computeDistance(i, location);
+            if (Double.isNaN(distance) || distance > radius)
+                continue;
+            if (!filter.onItemFunction(i))
+                continue;
+            retval.add(i);
+        }
+        return retval;
+    }
+
+    /**
+     * Finds all items within the specified bounds.
+     *
+     * @param bounds The bounds
+     * @param filter Only items accepted by the filter are returned
+     */
+    Collection<MapItem> findItems(GeoBounds bounds,
+            MapGroup.MapItemsCallback filter) {
+        final List<MapItem> candidates = new ArrayList<>();
+        synchronized (this) {
+            if (bounds.crossesIDL())
+                this.points.get(bounds.getNorth(), bounds.getEast(),
+                        bounds.getSouth(), bounds.getWest(), candidates);
+            else
+                this.points.get(bounds.getNorth(), bounds.getWest(),
+                        bounds.getSouth(), bounds.getEast(), candidates);
+            candidates.addAll(this.others);
+        }
+
+        final FOVFilter boundsfilter = new FOVFilter(bounds);
+        final Collection<MapItem> retval = new LinkedList<>();
+        for (MapItem i : candidates) {
+            if (!boundsfilter.accept(i))
+                continue;
+            if (!filter.onItemFunction(i))
+                continue;
+            retval.add(i);
+        }
+        return retval;
+    }
+}
@@ -2,12 +2,12 @@
 package com.atakmap.android.maps;
 
 import com.atakmap.coremap.log.Log;
+import com.atakmap.coremap.maps.coords.GeoBounds;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -18,6 +18,8 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class RootMapGroup extends DefaultMapGroup {
 
@@ -27,35 +29,48 @@ public final class RootMapGroup extends DefaultMapGroup {
 
     private final Map<DeepMapItemQuery, DeepQuerySpec> deepQueryFunctions;
     private final FastUIDLookup uidIndex;
+    private final MapItemSpatialIndex spatialIndex;
 
     RootMapGroup() {
         super("Root");
 
         this.deepQueryFunctions = new IdentityHashMap<>();
         this.uidIndex = new FastUIDLookup();
+        this.spatialIndex = new MapItemSpatialIndex();
     }
 
     FastUIDLookup getUidIndex() {
         return this.uidIndex;
     }
 
+    MapItemSpatialIndex getSpatialIndex() {
+        return this.spatialIndex;
+    }
+
     synchronized void dispose() {
         this._groups.clear();
         this._items.clear();
+        this.spatialIndex.clear();
     }
 
     /************************************************************************/
     // DEEP QUERY FUNCTIONS
 
     /**
-     * Stock implementation of searching for a UID.
+     * Stock implementation of searching for a UID. Items that have been added
+     * to the map are resolved via the UID index without acquiring the lock on
+     * this group; only UIDs that are not in the index are searched for via
+     * the registered deep queries.
      */
     @Override
-    public synchronized MapItem deepFindUID(final String uid) {
+    public MapItem deepFindUID(final String uid) {
         final MapItem byUid = this.uidIndex.get(uid);
         if (byUid != null)
             return byUid;
-        return deepFindItemImpl(Collections.singletonMap("uid", uid), true);
+        synchronized (this) {
+            return deepFindItemImpl(Collections.singletonMap("uid", uid),
+                    true);
+        }
     }
 
     @Override
@@ -71,14 +86,22 @@ public final class RootMapGroup extends DefaultMapGroup {
         // XXX - MapItem.computeDistance is not well-defined over future
         // derivatives of MapItem
 
-        result = this.findClosestItem(location, threshold, metadata);
+        // items belonging to this group and the groups that query themselves
+        result = this.spatialIndex.findClosestItem(location, threshold,
+                this.getSpatialIndexFilter(metadata, true));
         if (result != null) {
             distance = MapItem.computeDistance(result, location);
             if (!Double.isNaN(distance))
                 candidates.put(distance, result);
         }
 
-        for (DeepMapItemQuery query : this.deepQueryFunctions.keySet()) {
+        DeepMapItemQuery query;
+        for (Map.Entry<DeepMapItemQuery, DeepQuerySpec> entry : this.deepQueryFunctions
+                .entrySet()) {
+            if (entry.getValue().identity)
+                continue;
+
+            query = entry.getKey();
             try {
                 result = query.deepFindClosestItem(location, threshold,
                         metadata);
@@ -106,8 +129,15 @@ public final class RootMapGroup extends DefaultMapGroup {
             GeoPoint location, double radius,
             Map<String, String> metadata) {
         List<MapItem> retval = new LinkedList<>(
-                this.findItems(location, radius, metadata));
-        for (DeepMapItemQuery query : this.deepQueryFunctions.keySet())
+                this.spatialIndex.findItems(location, radius,
+                        this.getSpatialIndexFilter(metadata, true)));
+        DeepMapItemQuery query;
+        for (Map.Entry<DeepMapItemQuery, DeepQuerySpec> entry : this.deepQueryFunctions
+                .entrySet()) {
+            if (entry.getValue().identity)
+                continue;
+
+            query = entry.getKey();
             try {
                 retval.addAll(query.deepFindItems(location, radius, metadata));
             } catch (RuntimeException e) {
@@ -116,9 +146,46 @@ public final class RootMapGroup extends DefaultMapGroup {
                 if (DEBUGGING)
                     throw e;
             }
+        }
         return retval;
     }
 
+    @Override
+    public synchronized final Collection<MapItem> deepFindItems(
+            GeoBounds bounds, Map<String, String> metadata) {
+        if (bounds == null)
+            return super.deepFindItems(bounds, metadata);
+        return this.spatialIndex.findItems(bounds,
+                this.getSpatialIndexFilter(metadata, false));
+    }
+
+    /**
+     * Returns the filter applied to the results of the spatial index. Only
+     * items that are still attached to this group are accepted.
+     *
+     * @param metadata The metadata that matching items must have
+     * @param identityOnly If <code>true</code>, only items directly in this
+     *            group, or under a child group that was added without a
+     *            separate {@link DeepMapItemQuery}, are accepted
+     */
+    private MapGroup.MapItemsCallback getSpatialIndexFilter(
+            Map<String, String> metadata, boolean identityOnly) {
+        Set<MapGroup> groups = null;
+        if (identityOnly) {
+            groups = Collections
+                    .newSetFromMap(new IdentityHashMap<MapGroup, Boolean>());
+            for (DeepQuerySpec spec : this.deepQueryFunctions.values())
+                if (spec.identity)
+                    groups.addAll(spec.targets);
+        }
+        final MapGroup.MapItemsCallback scope = new AttachedItemFilter(this,
+                groups);
+        if (metadata == null || metadata.isEmpty())
+            return scope;
+        return new MapGroup.MapItemsCallback.And(scope,
+                new MetaDataMapItemFilter(metadata));
+    }
+
     @Override
     public synchronized final MapItem deepHitTest(int xpos, int ypos,
             GeoPoint point, MapView view) {
@@ -193,9 +260,15 @@ public final class RootMapGroup extends DefaultMapGroup {
     }
 
     @Override
-    public synchronized final MapItem deepFindItem(
-            Map<String, String> metadata) {
-        return this.deepFindItemImpl(metadata, false);
+    public final MapItem deepFindItem(Map<String, String> metadata) {
+        if (metadata.size() == 1) {
+            final String uid = metadata.get("uid");
+            if (uid != null)
+                return this.deepFindUID(uid);
+        }
+        synchronized (this) {
+            return this.deepFindItemImpl(metadata, false);
+        }
     }
 
     private MapItem deepFindItemImpl(Map<String, String> metadata,
@@ -205,6 +278,10 @@ public final class RootMapGroup extends DefaultMapGroup {
         final String uid = metadata.get("uid");
         final boolean isUIDOnlyQuery = (uid != null) && (metadata.size() == 1);
 
+        // the groups that query themselves need to be searched only if the
+        // item may be a duplicate UID, which is not reflected by the index
+        boolean skipIdentityQueries = isUIDOnlyQuery;
+
         // if metadata includes UID, try to use the index
         if (!ignoreUidIndex && uid != null) {
             result = this.uidIndex.get(uid);
@@ -218,12 +295,20 @@ public final class RootMapGroup extends DefaultMapGroup {
                     return result;
 
                 // XXX - fall through appropriate???
+            } else {
+                skipIdentityQueries = true;
             }
         }
 
+        if (uid != null)
+            this.uidIndex.fallbacks.incrementAndGet();
+
         result = this.findItem(metadata);
-        if (result != null)
+        if (result != null) {
+            if (uid != null)
+                this.uidIndex.fallbackHits.incrementAndGet();
             return result;
+        }
 
         DeepMapItemQuery query;
         for (Map.Entry<DeepMapItemQuery, DeepQuerySpec> entry : this.deepQueryFunctions
@@ -231,14 +316,17 @@ public final class RootMapGroup extends DefaultMapGroup {
 
             // XXX - pretty bad, but not any worse that the capability being
             //       completely regressed
-            if (isUIDOnlyQuery && entry.getValue().identity)
+            if (skipIdentityQueries && entry.getValue().identity)
                 continue;
 
             query = entry.getKey();
             try {
                 result = query.deepFindItem(metadata);
-                if (result != null)
+                if (result != null) {
+                    if (uid != null)
+                        this.uidIndex.fallbackHits.incrementAndGet();
                     return result;
+                }
             } catch (RuntimeException e) {
                 Log.e(TAG,
                         query.getClass().getSimpleName() + ": " + e.getClass());
@@ -253,7 +341,7 @@ public final class RootMapGroup extends DefaultMapGroup {
      * Get all items with a registered UID
      * @return List of all map items on the map
      */
-    public synchronized Collection<MapItem> getAllItems() {
+    public Collection<MapItem> getAllItems() {
         return uidIndex.getItems();
     }
 
@@ -333,6 +421,37 @@ public final class RootMapGroup extends DefaultMapGroup {
         }
     }
 
+    /**
+     * Accepts items that are reachable from the root, optionally restricted
+     * to the subtrees of a set of top level groups.
+     */
+    private static class AttachedItemFilter implements
+            MapGroup.MapItemsCallback {
+        private final MapGroup root;
+        private final Set<MapGroup> groups;
+
+        AttachedItemFilter(MapGroup root, Set<MapGroup> groups) {
+            this.root = root;
+            this.groups = groups;
+        }
+
+        @Override
+        public boolean onItemFunction(MapItem item) {
+            MapGroup group = item.getGroup();
+            if (group == null)
+                return false;
+            if (group == this.root)
+                return true;
+            MapGroup parent;
+            while ((parent = group.getParentGroup()) != this.root) {
+                if (parent == null)
+                    return false;
+                group = parent;
+            }
+            return this.groups == null || this.groups.contains(group);
+        }
+    }
+
     /**************************************************************************/
 
     // XXX - generic FastLookup for arbitrary metadata, signaled on
@@ -340,28 +459,49 @@ public final class RootMapGroup extends DefaultMapGroup {
 
     /**
      * Keeps a cache of all items that have been added to the map for fast UID lookup.
+     * Lookups do not block; the index is updated synchronously as items are
+     * added to or removed from any group attached to the root.
      */
     public static class FastUIDLookup implements
             MapEventDispatcher.MapEventDispatchListener {
-        final Map<String, MapItem> map = new HashMap<>();
+        final ConcurrentHashMap<String, MapItem> map = new ConcurrentHashMap<>();
+
+        final AtomicLong hits = new AtomicLong(0L);
+        final AtomicLong misses = new AtomicLong(0L);
+        final AtomicLong fallbacks = new AtomicLong(0L);
+        final AtomicLong fallbackHits = new AtomicLong(0L);
 
         @Override
         public void onMapEvent(final MapEvent event) {
             final String etype = event.getType();
+            if (etype.equals(MapEvent.GROUP_REMOVED)) {
+                // items are not individually removed with their group
+                final MapGroup group = event.getGroup();
+                if (group != null) {
+                    group.deepForEachItem(new MapGroup.MapItemsCallback() {
+                        @Override
+                        public boolean onItemFunction(MapItem item) {
+                            map.remove(item.getUID(), item);
+                            return false;
+                        }
+                    });
+                }
+                return;
+            }
+
             final MapItem mi = event.getItem();
             final String uid = mi.getUID();
-            final boolean added = etype.equals(MapEvent.ITEM_ADDED);
-            final boolean removed = etype.equals(MapEvent.ITEM_REMOVED);
+            if (uid == null)
+                return;
 
             // See ATAK-10160
-            // Without synchronization some items do not get mapped properly
             // Map events can be dispatched from any thread
-            synchronized (this) {
-                if (added)
-                    map.put(uid, mi);
-                else if (removed)
-                    map.remove(uid);
-            }
+            if (etype.equals(MapEvent.ITEM_ADDED))
+                map.put(uid, mi);
+            else if (etype.equals(MapEvent.ITEM_REMOVED))
+                // only remove the mapping if it refers to this item, a
+                // different item with a duplicate UID may have replaced it
+                map.remove(uid, mi);
         }
 
         /**
@@ -369,12 +509,57 @@ public final class RootMapGroup extends DefaultMapGroup {
          * @return null if there is no map item.
          */
         public MapItem get(String uid) {
-            // No need to synchronize get - this seems to work as expected
-            return map.get(uid);
+            if (uid == null)
+                return null;
+            final MapItem retval = map.get(uid);
+            if (retval != null)
+                hits.incrementAndGet();
+            else
+                misses.incrementAndGet();
+            return retval;
         }
 
-        public synchronized List<MapItem> getItems() {
+        public List<MapItem> getItems() {
             return new ArrayList<>(map.values());
         }
+
+        /**
+         * @return the number of lookups that were resolved by the index
+         */
+        public long getHitCount() {
+            return hits.get();
+        }
+
+        /**
+         * @return the number of lookups that were not resolved by the index
+         */
+        public long getMissCount() {
+            return misses.get();
+        }
+
+        /**
+         * @return the number of UID queries that had to fall back to
+         *         searching the root group and the registered deep queries
+         */
+        public long getFallbackCount() {
+            return fallbacks.get();
+        }
+
+        /**
+         * @return the number of fallback searches that found an item. Items
+         *         found this way are either provided by a deep query that
+         *         does not add them to the map or have a duplicate UID.
+         */
+        public long getFallbackHitCount() {
+            return fallbackHits.get();
+        }
+
+        @Override
+        public String toString() {
+            return "FastUIDLookup {size=" + map.size() + ", hits="
+                    + hits.get() + ", misses=" + misses.get()
+                    + ", fallbacks=" + fallbacks.get()
+                    + ", fallbackHits=" + fallbackHits.get() + "}";
+        }
     }
 }
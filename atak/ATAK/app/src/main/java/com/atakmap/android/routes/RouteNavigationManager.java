@@ -89,11 +89,7 @@ public final class RouteNavigationManager {
     public RouteNavigationManager(final Route route) {
         this.route = route;
 
-        try {
-            engine = new RouteNavigatorEngine();
-        } catch (Exception ex) {
-            throw new RuntimeException("Engine failed to initialize", ex);
-        }
+        engine = new RouteNavigatorEngine();
 
         Thread t = new Thread("route initialization") {
             @Override
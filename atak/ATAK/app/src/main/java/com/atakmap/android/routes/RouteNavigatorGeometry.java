@@ -0,0 +1,389 @@
+
+package com.atakmap.android.routes;
+
+import com.atakmap.coremap.maps.coords.GeoCalculations;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.math.MathUtils;
+
+/**
+ * In-memory geometry of a route line used by the {@link RouteNavigatorEngine}.
+ * Positions along the route are expressed as the fraction of the planar
+ * (degree) length of the line, consistent with SpatiaLite's
+ * ST_Line_Locate_Point and Line_Substring.
+ *
+ * The segments of the line are bucketed into a uniform grid so that locating
+ * a point only visits the segments in the cells around it. For a point near
+ * the route, such as a GPS fix, the search typically terminates after
+ * visiting the cell containing the point.
+ *
+ * Instances are immutable once constructed and may be shared between threads.
+ */
+final class RouteNavigatorGeometry {
+
+    // web mercator sphere radius and latitude limit (EPSG:3857)
+    private static final double MERCATOR_RADIUS = 6378137d;
+    private static final double MERCATOR_MAX_LAT = 85.0511287798066d;
+
+    private final int numVertices;
+    private final double[] xy;
+
+    // cumulative planar lengths (degrees) and geodesic lengths (meters) at
+    // each vertex
+    private final double[] planar;
+    private final double[] geodesic;
+    private final double mercatorLength;
+
+    // segment grid; the segments in cell (c, r) are
+    // cellSegs[cellStart[r*cols+c] .. cellStart[r*cols+c+1])
+    private final double minX, minY, maxX, maxY;
+    private final double cellWidth, cellHeight;
+    private final int cols, rows;
+    private final int[] cellStart;
+    private final int[] cellSegs;
+
+    /**
+     * Creates the geometry for the specified line.
+     *
+     * @param lonLat The vertices of the line, as interleaved longitude,
+     *               latitude pairs
+     * @param numVertices The number of vertices; must be at least one
+     */
+    RouteNavigatorGeometry(double[] lonLat, int numVertices) {
+        if (numVertices < 1 || lonLat.length < numVertices * 2)
+            throw new IllegalArgumentException();
+
+        this.numVertices = numVertices;
+        this.xy = new double[numVertices * 2];
+        System.arraycopy(lonLat, 0, this.xy, 0, numVertices * 2);
+
+        this.planar = new double[numVertices];
+        this.geodesic = new double[numVertices];
+        double merc = 0d;
+        double minX = xy[0], minY = xy[1], maxX = xy[0], maxY = xy[1];
+        GeoPoint last = new GeoPoint(xy[1], xy[0]);
+        for (int i = 1; i < numVertices; i++) {
+            final double x0 = xy[(i - 1) * 2];
+            final double y0 = xy[(i - 1) * 2 + 1];
+            final double x1 = xy[i * 2];
+            final double y1 = xy[i * 2 + 1];
+            final GeoPoint cur = new GeoPoint(y1, x1);
+
+            planar[i] = planar[i - 1] + MathUtils.distance(x0, y0, x1, y1);
+            geodesic[i] = geodesic[i - 1]
+                    + GeoCalculations.distanceTo(last, cur);
+            merc += MathUtils.distance(mercatorX(x0), mercatorY(y0),
+                    mercatorX(x1), mercatorY(y1));
+            last = cur;
+
+            minX = Math.min(minX, x1);
+            minY = Math.min(minY, y1);
+            maxX = Math.max(maxX, x1);
+            maxY = Math.max(maxY, y1);
+        }
+        this.mercatorLength = merc;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+
+        // roughly one segment per cell
+        final int numSegments = numVertices - 1;
+        final int side = Math.max(1,
+                (int) Math.ceil(Math.sqrt(numSegments)));
+        this.cols = (maxX > minX) ? side : 1;
+        this.rows = (maxY > minY) ? side : 1;
+        this.cellWidth = (maxX > minX) ? (maxX - minX) / cols : 1d;
+        this.cellHeight = (maxY > minY) ? (maxY - minY) / rows : 1d;
+
+        this.cellStart = new int[cols * rows + 1];
+        for (int s = 0; s < numSegments; s++) {
+            final int c0 = col(Math.min(xy[s * 2], xy[s * 2 + 2]));
+            final int c1 = col(Math.max(xy[s * 2], xy[s * 2 + 2]));
+            final int r0 = row(Math.min(xy[s * 2 + 1], xy[s * 2 + 3]));
+            final int r1 = row(Math.max(xy[s * 2 + 1], xy[s * 2 + 3]));
+            for (int r = r0; r <= r1; r++)
+                for (int c = c0; c <= c1; c++)
+                    cellStart[r * cols + c + 1]++;
+        }
+        for (int i = 1; i < cellStart.length; i++)
+            cellStart[i] += cellStart[i - 1];
+        this.cellSegs = new int[cellStart[cellStart.length - 1]];
+        final int[] fill = new int[cols * rows];
+        for (int s = 0; s < numSegments; s++) {
+            final int c0 = col(Math.min(xy[s * 2], xy[s * 2 + 2]));
+            final int c1 = col(Math.max(xy[s * 2], xy[s * 2 + 2]));
+            final int r0 = row(Math.min(xy[s * 2 + 1], xy[s * 2 + 3]));
+            final int r1 = row(Math.max(xy[s * 2 + 1], xy[s * 2 + 3]));
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    final int cell = r * cols + c;
+                    cellSegs[cellStart[cell] + fill[cell]++] = s;
+                }
+            }
+        }
+    }
+
+    int getNumVertices() {
+        return numVertices;
+    }
+
+    double getX(int i) {
+        return xy[i * 2];
+    }
+
+    double getY(int i) {
+        return xy[i * 2 + 1];
+    }
+
+    /**
+     * @return The length of the line in web mercator meters
+     */
+    double getMercatorLength() {
+        return mercatorLength;
+    }
+
+    /**
+     * Returns the location of the point on the line closest to the specified
+     * point, as a fraction of the line between 0 and 1.
+     */
+    double locate(double lon, double lat) {
+        final int numSegments = numVertices - 1;
+        if (numSegments == 0 || planar[numSegments] == 0d)
+            return 0d;
+        final int s = nearestSegment(lon, lat);
+        final double t = segmentParameter(s, lon, lat);
+        return (planar[s] + t * (planar[s + 1] - planar[s]))
+                / planar[numSegments];
+    }
+
+    /**
+     * Returns the point on the line closest to the specified point.
+     */
+    GeoPoint closestPoint(double lon, double lat) {
+        if (numVertices == 1)
+            return new GeoPoint(xy[1], xy[0]);
+        final int s = nearestSegment(lon, lat);
+        final double t = segmentParameter(s, lon, lat);
+        return new GeoPoint(xy[s * 2 + 1] + t * (xy[s * 2 + 3] - xy[s * 2 + 1]),
+                xy[s * 2] + t * (xy[s * 2 + 2] - xy[s * 2]));
+    }
+
+    /**
+     * Returns the portion of the line between the specified fractions.
+     *
+     * @param start The start fraction
+     * @param end The end fraction, not less than <code>start</code>
+     * @return The vertices of the substring, as interleaved longitude,
+     *         latitude pairs. A single vertex is returned if the start and
+     *         end coincide.
+     */
+    double[] substring(double start, double end) {
+        start = MathUtils.clamp(start, 0d, 1d);
+        end = MathUtils.clamp(end, start, 1d);
+
+        final int s0 = segmentAt(start);
+        final int s1 = segmentAt(end);
+        final int inner = Math.max(s1 - s0, 0);
+        final double[] retval = new double[(inner + 2) * 2];
+        int idx = pointAt(start, s0, retval, 0);
+        if (start == end)
+            return new double[] {
+                    retval[0], retval[1]
+            };
+        final double total = planar[numVertices - 1];
+        for (int i = s0 + 1; i <= s1; i++) {
+            // skip vertices coincident with the interpolated ends
+            final double d = planar[i];
+            if (d <= start * total || d >= end * total)
+                continue;
+            retval[idx++] = xy[i * 2];
+            retval[idx++] = xy[i * 2 + 1];
+        }
+        idx = pointAt(end, s1, retval, idx);
+        if (idx == retval.length)
+            return retval;
+        final double[] trimmed = new double[idx];
+        System.arraycopy(retval, 0, trimmed, 0, idx);
+        return trimmed;
+    }
+
+    /**
+     * Returns the geodesic length of the line between the specified
+     * fractions, in meters.
+     */
+    double getGeodesicLength(double start, double end) {
+        if (numVertices == 1)
+            return 0d;
+        start = MathUtils.clamp(start, 0d, 1d);
+        end = MathUtils.clamp(end, start, 1d);
+
+        final int s0 = segmentAt(start);
+        final int s1 = segmentAt(end);
+        final double[] pts = new double[4];
+        pointAt(start, s0, pts, 0);
+        pointAt(end, s1, pts, 2);
+        final GeoPoint p0 = new GeoPoint(pts[1], pts[0]);
+        final GeoPoint p1 = new GeoPoint(pts[3], pts[2]);
+        if (s0 == s1)
+            return GeoCalculations.distanceTo(p0, p1);
+
+        return GeoCalculations.distanceTo(p0,
+                new GeoPoint(xy[s0 * 2 + 3], xy[s0 * 2 + 2]))
+                + (geodesic[s1] - geodesic[s0 + 1])
+                + GeoCalculations.distanceTo(
+                        new GeoPoint(xy[s1 * 2 + 1], xy[s1 * 2]), p1);
+    }
+
+    /**
+     * Returns the index of the segment nearest to the specified point. Ties
+     * are resolved to the lowest segment index.
+     */
+    int nearestSegment(double x, double y) {
+        int best = -1;
+        double bestDist = Double.POSITIVE_INFINITY;
+
+        // the nearest point of the grid bounds. Any point within the bounds
+        // is at least as far from (x, y) as its distance from (cx, cy) plus
+        // the distance from (cx, cy) to (x, y)
+        final double cx = MathUtils.clamp(x, minX, maxX);
+        final double cy = MathUtils.clamp(y, minY, maxY);
+        final double outside = (x - cx) * (x - cx) + (y - cy) * (y - cy);
+        final int col = col(cx);
+        final int row = row(cy);
+        final int maxRing = Math.max(Math.max(col, cols - 1 - col),
+                Math.max(row, rows - 1 - row));
+
+        for (int r = 0; r <= maxRing; r++) {
+            if (r > 0) {
+                // distance from (cx, cy) to the cells in ring r is at least
+                // its distance to the edges of the square of rings < r that
+                // border other cells
+                double edge = Double.POSITIVE_INFINITY;
+                if (col - r >= 0)
+                    edge = Math.min(edge, cx - (minX + (col - r + 1)
+                            * cellWidth));
+                if (col + r < cols)
+                    edge = Math.min(edge, (minX + (col + r) * cellWidth)
+                            - cx);
+                if (row - r >= 0)
+                    edge = Math.min(edge, cy - (minY + (row - r + 1)
+                            * cellHeight));
+                if (row + r < rows)
+                    edge = Math.min(edge, (minY + (row + r) * cellHeight)
+                            - cy);
+                edge = Math.max(edge, 0d);
+                if (bestDist < outside + edge * edge)
+                    break;
+            }
+
+            final int c0 = Math.max(col - r, 0);
+            final int c1 = Math.min(col + r, cols - 1);
+            final int r0 = Math.max(row - r, 0);
+            final int r1 = Math.min(row + r, rows - 1);
+            for (int cr = r0; cr <= r1; cr++) {
+                final boolean edgeRow = (cr == row - r || cr == row + r);
+                for (int cc = c0; cc <= c1; cc++) {
+                    if (!edgeRow && cc != col - r && cc != col + r)
+                        continue;
+                    final int cell = cr * cols + cc;
+                    for (int i = cellStart[cell]; i < cellStart[cell
+                            + 1]; i++) {
+                        final int s = cellSegs[i];
+                        final double d = segmentDistanceSq(s, x, y);
+                        if (d < bestDist || (d == bestDist && s < best)) {
+                            bestDist = d;
+                            best = s;
+                        }
+                    }
+                }
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Returns the parameter of the point on segment <code>s</code> closest
+     * to the specified point, between 0 and 1.
+     */
+    private double segmentParameter(int s, double x, double y) {
+        final double ax = xy[s * 2];
+        final double ay = xy[s * 2 + 1];
+        final double dx = xy[s * 2 + 2] - ax;
+        final double dy = xy[s * 2 + 3] - ay;
+        final double len2 = dx * dx + dy * dy;
+        if (len2 == 0d)
+            return 0d;
+        return MathUtils.clamp(((x - ax) * dx + (y - ay) * dy) / len2, 0d,
+                1d);
+    }
+
+    private double segmentDistanceSq(int s, double x, double y) {
+        final double t = segmentParameter(s, x, y);
+        final double px = xy[s * 2] + t * (xy[s * 2 + 2] - xy[s * 2]);
+        final double py = xy[s * 2 + 1] + t * (xy[s * 2 + 3] - xy[s * 2 + 1]);
+        return (x - px) * (x - px) + (y - py) * (y - py);
+    }
+
+    /**
+     * Returns the index of the segment containing the specified fraction.
+     */
+    private int segmentAt(double fraction) {
+        final int numSegments = numVertices - 1;
+        if (numSegments == 0)
+            return 0;
+        final double d = fraction * planar[numSegments];
+        int lo = 0;
+        int hi = numSegments - 1;
+        while (lo < hi) {
+            final int mid = (lo + hi + 1) >>> 1;
+            if (planar[mid] <= d)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        return lo;
+    }
+
+    /**
+     * Writes the point at the specified fraction, which lies on segment
+     * <code>s</code>, to <code>dst</code>.
+     *
+     * @return The index following the written point
+     */
+    private int pointAt(double fraction, int s, double[] dst, int off) {
+        if (numVertices == 1) {
+            dst[off] = xy[0];
+            dst[off + 1] = xy[1];
+            return off + 2;
+        }
+        final double len = planar[s + 1] - planar[s];
+        final double t = (len > 0d)
+                ? MathUtils.clamp(
+                        (fraction * planar[numVertices - 1] - planar[s])
+                                / len,
+                        0d, 1d)
+                : 0d;
+        dst[off] = xy[s * 2] + t * (xy[s * 2 + 2] - xy[s * 2]);
+        dst[off + 1] = xy[s * 2 + 1] + t * (xy[s * 2 + 3] - xy[s * 2 + 1]);
+        return off + 2;
+    }
+
+    private int col(double x) {
+        return MathUtils.clamp((int) ((x - minX) / cellWidth), 0, cols - 1);
+    }
+
+    private int row(double y) {
+        return MathUtils.clamp((int) ((y - minY) / cellHeight), 0, rows - 1);
+    }
+
+    private static double mercatorX(double lon) {
+        return MERCATOR_RADIUS * Math.toRadians(lon);
+    }
+
+    private static double mercatorY(double lat) {
+        lat = Math.toRadians(MathUtils.clamp(lat, -MERCATOR_MAX_LAT,
+                MERCATOR_MAX_LAT));
+        return MERCATOR_RADIUS * Math.log(Math.tan(Math.PI / 4d + lat / 2d));
+    }
+}
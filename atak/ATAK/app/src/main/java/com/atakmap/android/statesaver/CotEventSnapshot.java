@@ -0,0 +1,215 @@
+package com.atakmap.android.statesaver;
+
+import com.atakmap.coremap.cot.event.CotAttribute;
+import com.atakmap.coremap.cot.event.CotDetail;
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.cot.event.CotPoint;
+import com.atakmap.coremap.maps.time.CoordinatedTime;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Compact binary form of a persisted CoT event, stored next to the XML so
+ * that the state saver can restore an item without parsing the XML.
+ *
+ * <PRE>
+ *   version [1 byte]
+ *   uid, type, version, how, opex, qos, access [string]
+ *   lat, lon, hae, ce, le [8 bytes each]
+ *   time, start, stale [8 bytes each, millis; Long.MIN_VALUE if unset]
+ *   detail [node; absent if the first byte is 0]
+ *
+ *   string: length [4 bytes; -1 if null], UTF-8 bytes
+ *   node: 1 [1 byte], name [string], attribute count [4 bytes],
+ *         attribute name/value [string x 2], child count [4 bytes],
+ *         children [node], or inner text [string] if there are no children
+ * </PRE>
+ */
+final class CotEventSnapshot {
+
+    /** the current version of the snapshot format */
+    final static int VERSION = 1;
+
+    private final static long NO_TIME = Long.MIN_VALUE;
+
+    private CotEventSnapshot() {
+    }
+
+    /**
+     * Encodes the specified event.
+     *
+     * @param event the event
+     * @return the snapshot
+     */
+    static byte[] encode(CotEvent event) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            writeString(out, event.getUID());
+            writeString(out, event.getType());
+            writeString(out, event.getVersion());
+            writeString(out, event.getHow());
+            writeString(out, event.getOpex());
+            writeString(out, event.getQos());
+            writeString(out, event.getAccess());
+
+            final CotPoint point = event.getCotPoint();
+            out.writeDouble(point.getLat());
+            out.writeDouble(point.getLon());
+            out.writeDouble(point.getHae());
+            out.writeDouble(point.getCe());
+            out.writeDouble(point.getLe());
+
+            writeTime(out, event.getTime());
+            writeTime(out, event.getStart());
+            writeTime(out, event.getStale());
+
+            final CotDetail detail = event.getDetail();
+            if (detail != null)
+                writeDetail(out, detail);
+            else
+                out.writeByte(0);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // not thrown by a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decodes a snapshot created by {@link #encode(CotEvent)}.
+     *
+     * @param snapshot the snapshot
+     * @return the event or <code>null</code> if the snapshot is of an
+     *         unsupported version
+     * @throws IOException if the snapshot is malformed
+     */
+    static CotEvent decode(byte[] snapshot) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(snapshot));
+        if (in.readUnsignedByte() != VERSION)
+            return null;
+
+        final String uid = readString(in);
+        final String type = readString(in);
+        final String vers = readString(in);
+        final String how = readString(in);
+        final String opex = readString(in);
+        final String qos = readString(in);
+        final String access = readString(in);
+
+        final CotPoint point = new CotPoint(in.readDouble(),
+                in.readDouble(),
+                in.readDouble(),
+                in.readDouble(),
+                in.readDouble());
+
+        final CoordinatedTime time = readTime(in);
+        final CoordinatedTime start = readTime(in);
+        final CoordinatedTime stale = readTime(in);
+
+        final CotDetail detail = readDetail(in);
+
+        // the field constructor assigns the fields directly, bypassing the
+        // validation in the setters, so an event that was persisted
+        // incomplete is restored as it was. the detail was decoded into a
+        // new instance and is set without the copy the constructor makes
+        CotEvent event = new CotEvent(uid, type, vers, point, time, start,
+                stale, how, null, opex, qos, access);
+        if (detail != null)
+            event.setDetail(detail);
+        return event;
+    }
+
+    private static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(b.length);
+            out.write(b);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final int len = in.readInt();
+        if (len < 0)
+            return null;
+        final byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTime(DataOutputStream out, CoordinatedTime t)
+            throws IOException {
+        out.writeLong(t != null ? t.getMilliseconds() : NO_TIME);
+    }
+
+    private static CoordinatedTime readTime(DataInputStream in)
+            throws IOException {
+        final long t = in.readLong();
+        return (t != NO_TIME) ? new CoordinatedTime(t) : null;
+    }
+
+    private static void writeDetail(DataOutputStream out, CotDetail detail)
+            throws IOException {
+        out.writeByte(1);
+        writeString(out, detail.getElementName());
+
+        final CotAttribute[] attrs = detail.getAttributes();
+        out.writeInt(attrs.length);
+        for (CotAttribute attr : attrs) {
+            writeString(out, attr.getName());
+            writeString(out, attr.getValue());
+        }
+
+        final List<CotDetail> children = detail.getChildren();
+        out.writeInt(children.size());
+        if (children.isEmpty()) {
+            writeString(out, detail.getInnerText());
+        } else {
+            for (CotDetail child : children)
+                writeDetail(out, child);
+        }
+    }
+
+    private static CotDetail readDetail(DataInputStream in)
+            throws IOException {
+        if (in.readUnsignedByte() == 0)
+            return null;
+
+        CotDetail detail = new CotDetail();
+        final String name = readString(in);
+        if (name != null)
+            detail.setElementName(name);
+
+        int attrCount = in.readInt();
+        while (attrCount-- > 0) {
+            final String attrName = readString(in);
+            detail.setAttribute(attrName, readString(in));
+        }
+
+        int childCount = in.readInt();
+        if (childCount == 0) {
+            final String text = readString(in);
+            if (text != null)
+                detail.setInnerText(text);
+        } else {
+            while (childCount-- > 0) {
+                final CotDetail child = readDetail(in);
+                if (child != null)
+                    detail.addChild(child);
+            }
+        }
+        return detail;
+    }
+}
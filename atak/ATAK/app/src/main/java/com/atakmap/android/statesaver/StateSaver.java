@@ -49,9 +49,11 @@ public class StateSaver extends AbstractMapComponent {
     public final static String COLUMN_ID = "_id";
     final static String COLUMN_QUERY_ORDER = "queryOrder";
     public final static String COLUMN_POINT_GEOM = "point_geom";
+    /** binary form of the event, see {@link CotEventSnapshot} */
+    final static String COLUMN_SNAPSHOT = "snapshot";
 
     /** the current version of the StateSaver database */
-    private static final int VERSION = 5;
+    private static final int VERSION = 6;
 
     public final static String ADD_CLASSIFICATION_ACTION = "com.atakmap.android.statesaver.ADD_CLASSIFICATION";
 
@@ -249,7 +251,15 @@ public class StateSaver extends AbstractMapComponent {
 
     private static void upgradeDatabase(DatabaseIface db) {
 
-        if (db.getVersion() != VERSION) {
+        if (db.getVersion() == 5 && Databases.getTableNames(db).contains(
+                TABLE_COTEVENTS)) {
+            // v6 only adds the snapshot column; the snapshots are filled in
+            // by the publisher as the events are restored
+            Log.d(TAG, "Upgrading from v5 to v" + VERSION);
+            db.execute("ALTER TABLE " + TABLE_COTEVENTS + " ADD COLUMN "
+                    + COLUMN_SNAPSHOT + " BLOB", null);
+            db.setVersion(VERSION);
+        } else if (db.getVersion() != VERSION) {
             Log.d(TAG, "Upgrading from v" + db.getVersion()
                     + " to v" + VERSION);
             // drop the transition table
@@ -323,7 +333,8 @@ public class StateSaver extends AbstractMapComponent {
                 + COLUMN_JSON + " TEXT, "
                 + COLUMN_VISIBLE + " INTEGER, "
                 + COLUMN_LAST_UPDATE + " INTEGER, "
-                + COLUMN_QUERY_ORDER + " INTEGER)", null);
+                + COLUMN_QUERY_ORDER + " INTEGER, "
+                + COLUMN_SNAPSHOT + " BLOB)", null);
     }
 
     /**
@@ -367,9 +378,11 @@ public class StateSaver extends AbstractMapComponent {
                             + ", "
                             + COLUMN_QUERY_ORDER
                             + ", "
+                            + COLUMN_SNAPSHOT
+                            + ", "
                             + COLUMN_POINT_GEOM
                             + ") "
-                            + "VALUES (?, ?, ?, ?, ?, ?, ?, MakePoint(?, ?, 4326))");
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, MakePoint(?, ?, 4326))");
 
             result = db.query("SELECT event FROM event_xfer",
                     null);
@@ -385,10 +398,11 @@ public class StateSaver extends AbstractMapComponent {
                     insertStmt.bind(5, 1);
                     insertStmt.bind(6, event.getTime().getMilliseconds());
                     insertStmt.bind(7, getQueryOrderNoSync(event.getType()));
+                    insertStmt.bind(8, CotEventSnapshot.encode(event));
 
                     CotPoint pt = event.getCotPoint();
-                    insertStmt.bind(8, pt.getLon());
-                    insertStmt.bind(9, pt.getLat());
+                    insertStmt.bind(9, pt.getLon());
+                    insertStmt.bind(10, pt.getLat());
 
                     insertStmt.execute();
                 } finally {
@@ -12,6 +12,7 @@ import com.atakmap.android.maps.MapView;
 import com.atakmap.android.maps.Marker;
 import com.atakmap.coremap.concurrent.NamedThreadFactory;
 import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.cot.event.CotPoint;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.database.CursorIface;
 import com.atakmap.database.DatabaseIface;
@@ -58,6 +59,7 @@ public class StateSaverListener implements
                 EventRecord record;
                 String xml;
                 String json;
+                byte[] snapshot;
                 boolean updateOnly;
                 synchronized (StateSaver.dbWriteLock) {
                     try {
@@ -102,6 +104,7 @@ public class StateSaverListener implements
                                             && record.json.length() > 0) {
                                         xml = "";
                                         json = record.json;
+                                        snapshot = null;
                                     } else if (record.event != null) {
                                         json = "";
                                         if (sb.length() > 0)
@@ -112,6 +115,8 @@ public class StateSaverListener implements
                                             continue;
 
                                         xml = sb.toString();
+                                        snapshot = CotEventSnapshot
+                                                .encode(record.event);
                                     } else {
                                         throw new IllegalStateException();
                                     }
@@ -161,7 +166,12 @@ public class StateSaverListener implements
                                                             + StateSaver.COLUMN_LAST_UPDATE
                                                             + " = ?, "
                                                             + StateSaver.COLUMN_QUERY_ORDER
-                                                            + " = ?" +
+                                                            + " = ?, "
+                                                            + StateSaver.COLUMN_SNAPSHOT
+                                                            + " = ?, "
+                                                            + StateSaver.COLUMN_POINT_GEOM
+                                                            + " = MakePoint(?, ?, 4326)"
+                                                            +
                                                             " WHERE uid = ?");
                                         }
 
@@ -186,11 +196,15 @@ public class StateSaverListener implements
                                                                     + StateSaver.COLUMN_LAST_UPDATE
                                                                     + ", "
                                                                     + StateSaver.COLUMN_QUERY_ORDER
+                                                                    + ", "
+                                                                    + StateSaver.COLUMN_SNAPSHOT
+                                                                    + ", "
+                                                                    + StateSaver.COLUMN_POINT_GEOM
                                                                     + ","
                                                                     + StateSaver.COLUMN_UID
                                                                     + ")"
                                                                     +
-                                                                    " VALUES (?, ?, ?, ?,  ?, ?, ?)");
+                                                                    " VALUES (?, ?, ?, ?,  ?, ?, ?, MakePoint(?, ?, 4326), ?)");
                                         }
 
                                         insertUpdateStmt = insertStmt;
@@ -212,6 +226,24 @@ public class StateSaverListener implements
                                                         StateSaver
                                                                 .getQueryOrder(
                                                                         record.etype));
+                                        if (snapshot != null)
+                                            insertUpdateStmt.bind(idx++,
+                                                    snapshot);
+                                        else
+                                            insertUpdateStmt.bindNull(idx++);
+                                        // the location drives the order in
+                                        // which the publisher restores items
+                                        if (record.event != null) {
+                                            final CotPoint pt = record.event
+                                                    .getCotPoint();
+                                            insertUpdateStmt.bind(idx++,
+                                                    pt.getLon());
+                                            insertUpdateStmt.bind(idx++,
+                                                    pt.getLat());
+                                        } else {
+                                            insertUpdateStmt.bindNull(idx++);
+                                            insertUpdateStmt.bindNull(idx++);
+                                        }
                                         insertUpdateStmt.bind(idx++,
                                                 record.euid);
 
@@ -12,25 +12,38 @@ import com.atakmap.android.maps.MapView;
 import com.atakmap.android.maps.Marker;
 import com.atakmap.coremap.concurrent.NamedThreadFactory;
 import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.cot.event.CotPoint;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.log.Log;
+import com.atakmap.coremap.maps.coords.GeoBounds;
+import com.atakmap.coremap.maps.coords.GeoPoint;
 import com.atakmap.comms.CommsMapComponent.ImportResult;
 import com.atakmap.database.CursorIface;
 import com.atakmap.database.DatabaseIface;
+import com.atakmap.database.StatementIface;
 
 import java.io.IOException;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 public class StateSaverPublisher implements Runnable {
     public static final String TAG = "StateSaverPublisher";
     public static final String FROM_STATESAVER = "StateSaver";
     public static final String STATESAVER_COMPLETE_LOAD = "com.atakmap.android.statesaver.statesaver_complete_load";
+    /**
+     * Sent periodically while restoring, with the <code>int</code> extras
+     * <code>restored</code> and <code>total</code>
+     */
+    public static final String STATESAVER_PROGRESS = "com.atakmap.android.statesaver.statesaver_progress";
+
+    private final static long PROGRESS_INTERVAL = 500L;
+    private final static int BACKFILL_BATCH_SIZE = 250;
 
     private final ExecutorService pool = Executors.newFixedThreadPool(10,
             new NamedThreadFactory(
@@ -43,7 +56,13 @@ public class StateSaverPublisher implements Runnable {
     private final ArrayList<Pair<CotEvent, Bundle>> deferred = new ArrayList<>();
 
     private static boolean stateSaverLoaded = false;
-    private boolean cancelled = false;
+    private volatile boolean cancelled = false;
+
+    /** guards the restore counts */
+    private final Object restoreLock = new Object();
+    private int pending;
+    private int restored;
+    private int total;
 
     public StateSaverPublisher(DatabaseIface stateSaverDatabase, MapView view) {
         this.stateSaverDatabase = stateSaverDatabase;
@@ -52,54 +71,129 @@ public class StateSaverPublisher implements Runnable {
 
     private void dispatchEvent(final String event, final Bundle extras) {
         try {
-            /**
-             * XXX: see AbstractInput for a current duplicate of this code.
-             */
             final CotEvent cotEvent = CotEvent.parse(event);
+            if (cotEvent != null)
+                dispatchEvent(cotEvent, extras);
+        } catch (Exception e) {
+            Log.d(TAG, "XXX bad failed import of: " + event, e);
+        }
+    }
 
-            if (cotEvent != null) {
-                ImportResult retval = ImportResult.FAILURE;
-                final CotMapComponent cmc = CotMapComponent.getInstance();
+    private void dispatchEvent(final CotEvent cotEvent, final Bundle extras) {
+        /**
+         * XXX: see AbstractInput for a current duplicate of this code.
+         */
+        ImportResult retval = ImportResult.FAILURE;
+        final CotMapComponent cmc = CotMapComponent.getInstance();
 
-                if (cmc != null) {
-                    //Log.d(TAG, "received for processing: " + cotEvent);
-                    retval = cmc.processCotEvent(cotEvent, extras);
-                }
-                if (retval == ImportResult.DEFERRED) {
-                    //Log.d(TAG, "deferred event: " + cotEvent);
-                    synchronized (deferred) {
-                        deferred.add(
-                                new Pair<>(cotEvent, extras));
-                    }
-                } else if (retval == ImportResult.FAILURE) {
-                    Log.d(TAG, "failed to properly process: " + cotEvent);
-                }
+        if (cmc != null) {
+            //Log.d(TAG, "received for processing: " + cotEvent);
+            retval = cmc.processCotEvent(cotEvent, extras);
+        }
+        if (retval == ImportResult.DEFERRED) {
+            //Log.d(TAG, "deferred event: " + cotEvent);
+            synchronized (deferred) {
+                deferred.add(
+                        new Pair<>(cotEvent, extras));
             }
-        } catch (Exception e) {
-            Log.d(TAG, "XXX bad failed import of: " + event, e);
-        } finally {
+        } else if (retval == ImportResult.FAILURE) {
+            Log.d(TAG, "failed to properly process: " + cotEvent);
         }
     }
 
     public void cancel() {
         cancelled = true;
+        synchronized (restoreLock) {
+            restoreLock.notifyAll();
+        }
     }
 
     void resetStateSaverLoaded() {
         stateSaverLoaded = false;
     }
 
+    /**
+     * Restores the persisted items in two passes. The first pass restores the
+     * items within the last viewport and around the self marker; the
+     * remainder is restored by the second pass, with progress reported via
+     * {@link #STATESAVER_PROGRESS}. Items are restored in query order
+     * within each pass; only items of the lowest query order are eligible
+     * for the first pass so that no item is restored ahead of an item it
+     * may depend on.
+     */
     @Override
     public void run() {
         long start = SystemClock.elapsedRealtime();
+
+        total = count();
+        restored = 0;
+
+        final Set<Long> restoredIds = new HashSet<>();
+        final List<Pair<Long, CotEvent>> backfill = new ArrayList<>();
+
+        // restore the items in view first
+        final String priorityRegion = getPriorityRegion();
+        if (priorityRegion != null) {
+            publish(" WHERE " + StateSaver.COLUMN_QUERY_ORDER
+                    + " = (SELECT MIN(" + StateSaver.COLUMN_QUERY_ORDER
+                    + ") FROM " + StateSaver.TABLE_COTEVENTS + ") AND "
+                    + StateSaver.COLUMN_POINT_GEOM + " IS NOT NULL AND ("
+                    + priorityRegion + ")",
+                    null, restoredIds, backfill);
+            if (!awaitPending())
+                return;
+            Log.d(TAG, "restored " + restoredIds.size()
+                    + " priority items in "
+                    + (SystemClock.elapsedRealtime() - start) + "ms");
+            sendProgress();
+        }
+
+        // everything else
+        publish("", restoredIds, null, backfill);
+        if (!awaitPending())
+            return;
+
+        pool.shutdown();
+
+        this.legacy();
+
+        // Handle deferred CoT events
+        processDeferredEvents();
+
+        //Let components know we're done
+        stateSaverLoaded = true;
+        Intent completeIntent = new Intent(STATESAVER_COMPLETE_LOAD);
+        AtakBroadcast.getInstance().sendBroadcast(completeIntent);
+        Log.d(TAG, "Took " + (SystemClock.elapsedRealtime() - start)
+                + "ms to finish.");
+
+        backfillSnapshots(backfill);
+    }
+
+    /**
+     * Submits the restore of each item matching the specified clause.
+     *
+     * @param where         The <code>WHERE</code> clause, may be empty
+     * @param exclude       If non-<code>null</code>, the IDs of items to
+     *                      skip
+     * @param restoredIds   If non-<code>null</code>, receives the IDs of the
+     *                      restored items
+     * @param backfill      Receives the events of items that do not have a
+     *                      snapshot
+     */
+    private void publish(String where, Set<Long> exclude,
+            Set<Long> restoredIds, List<Pair<Long, CotEvent>> backfill) {
         CursorIface result = null;
         try {
             result = this.stateSaverDatabase.query("SELECT "
+                    + StateSaver.COLUMN_ID + ", "
                     + StateSaver.COLUMN_EVENT + ", "
                     + StateSaver.COLUMN_JSON + ", "
                     + StateSaver.COLUMN_VISIBLE + ", "
-                    + StateSaver.COLUMN_LAST_UPDATE + " FROM "
+                    + StateSaver.COLUMN_LAST_UPDATE + ", "
+                    + StateSaver.COLUMN_SNAPSHOT + " FROM "
                     + StateSaver.TABLE_COTEVENTS
+                    + where
                     + " ORDER BY " + StateSaver.COLUMN_QUERY_ORDER + " ASC",
                     null);
             while (result.moveToNext()) {
@@ -108,11 +202,21 @@ public class StateSaverPublisher implements Runnable {
                     return;
                 }
 
-                final String res = result.getString(0);
-                final String json = result.getString(1);
-                final boolean vis = (result.getInt(2) == 1);
-                final long lastUpdateTime = result.getLong(3);
+                final long id = result.getLong(0);
+                if (exclude != null && exclude.contains(id))
+                    continue;
+                if (restoredIds != null)
+                    restoredIds.add(id);
+
+                final String res = result.getString(1);
+                final String json = result.getString(2);
+                final boolean vis = (result.getInt(3) == 1);
+                final long lastUpdateTime = result.getLong(4);
+                final byte[] snapshot = result.getBlob(5);
 
+                synchronized (restoreLock) {
+                    pending++;
+                }
                 pool.execute(new Runnable() {
                     @Override
                     public void run() {
@@ -130,12 +234,29 @@ public class StateSaverPublisher implements Runnable {
                                     Log.d(TAG,
                                             "restored marker: " + m.getUID());
                             } else {
-                                dispatchEvent(res, extras);
+                                CotEvent event = decode(snapshot);
+                                if (event == null) {
+                                    event = CotEvent.parse(res);
+                                    if (event != null) {
+                                        synchronized (backfill) {
+                                            backfill.add(
+                                                    new Pair<>(id, event));
+                                        }
+                                    }
+                                }
+                                if (event != null)
+                                    dispatchEvent(event, extras);
                             }
                         } catch (Exception e) {
                             Log.d(TAG,
                                     "unexpected error occurred reading from the database");
                             Log.e(TAG, "error: ", e);
+                        } finally {
+                            synchronized (restoreLock) {
+                                pending--;
+                                restored++;
+                                restoreLock.notifyAll();
+                            }
                         }
                     }
                 });
@@ -144,27 +265,170 @@ public class StateSaverPublisher implements Runnable {
             if (result != null)
                 result.close();
         }
+    }
 
-        // Wait for publish tasks to finish (timeout after 10 seconds)
-        pool.shutdown();
+    private static CotEvent decode(byte[] snapshot) {
+        if (snapshot == null)
+            return null;
         try {
-            pool.awaitTermination(10, TimeUnit.SECONDS);
+            return CotEventSnapshot.decode(snapshot);
         } catch (Exception e) {
-            Log.e(TAG, "Failed to wait for thread pool to terminate", e);
-            pool.shutdownNow();
+            Log.w(TAG, "failed to decode snapshot, falling back to XML", e);
+            return null;
         }
+    }
 
-        this.legacy();
+    /**
+     * Waits for all submitted restore tasks to complete, periodically
+     * reporting progress.
+     *
+     * @return <code>false</code> if the publisher was cancelled
+     */
+    private boolean awaitPending() {
+        while (true) {
+            synchronized (restoreLock) {
+                if (cancelled) {
+                    pool.shutdownNow();
+                    return false;
+                }
+                if (pending == 0)
+                    return true;
+                try {
+                    restoreLock.wait(PROGRESS_INTERVAL);
+                } catch (InterruptedException e) {
+                    Log.e(TAG, "Interrupted waiting for restore to complete",
+                            e);
+                    pool.shutdownNow();
+                    return false;
+                }
+            }
+            sendProgress();
+        }
+    }
 
-        // Handle deferred CoT events
-        processDeferredEvents();
+    private void sendProgress() {
+        final int restored;
+        synchronized (restoreLock) {
+            restored = this.restored;
+        }
+        Intent progress = new Intent(STATESAVER_PROGRESS);
+        progress.putExtra("restored", restored);
+        progress.putExtra("total", total);
+        AtakBroadcast.getInstance().sendBroadcast(progress);
+    }
 
-        //Let components know we're done
-        stateSaverLoaded = true;
-        Intent completeIntent = new Intent(STATESAVER_COMPLETE_LOAD);
-        AtakBroadcast.getInstance().sendBroadcast(completeIntent);
-        Log.d(TAG, "Took " + (SystemClock.elapsedRealtime() - start)
-                + "ms to finish.");
+    private int count() {
+        CursorIface result = null;
+        try {
+            result = this.stateSaverDatabase.query("SELECT Count(1) FROM "
+                    + StateSaver.TABLE_COTEVENTS, null);
+            return result.moveToNext() ? result.getInt(0) : 0;
+        } finally {
+            if (result != null)
+                result.close();
+        }
+    }
+
+    /**
+     * Returns the SQL predicate selecting the points within the current
+     * viewport, which is restored before the state saver is loaded, and
+     * within a region of the same size centered on the self marker.
+     *
+     * @return the predicate or <code>null</code> if there is no region to
+     *         prioritize
+     */
+    private String getPriorityRegion() {
+        if (_mapView == null)
+            return null;
+        final GeoBounds bounds = _mapView.getBounds();
+        if (bounds == null || Double.isNaN(bounds.getNorth())
+                || Double.isNaN(bounds.getWest())
+                || Double.isNaN(bounds.getSouth())
+                || Double.isNaN(bounds.getEast()))
+            return null;
+
+        StringBuilder sql = new StringBuilder();
+        if (bounds.crossesIDL()) {
+            appendBox(sql, bounds.getSouth(), bounds.getEast(),
+                    bounds.getNorth(), 180d);
+            sql.append(" OR ");
+            appendBox(sql, bounds.getSouth(), -180d,
+                    bounds.getNorth(), bounds.getWest());
+        } else {
+            appendBox(sql, bounds.getSouth(), bounds.getWest(),
+                    bounds.getNorth(), bounds.getEast());
+        }
+
+        final Marker self = _mapView.getSelfMarker();
+        final GeoPoint selfPoint = (self != null) ? self.getPoint() : null;
+        if (selfPoint != null && selfPoint.isValid()) {
+            final double halfLat = (bounds.getNorth() - bounds.getSouth())
+                    / 2d;
+            final double halfLng = Math.abs(bounds.getEast()
+                    - bounds.getWest()) / 2d;
+            sql.append(" OR ");
+            appendBox(sql, selfPoint.getLatitude() - halfLat,
+                    selfPoint.getLongitude() - halfLng,
+                    selfPoint.getLatitude() + halfLat,
+                    selfPoint.getLongitude() + halfLng);
+        }
+        return sql.toString();
+    }
+
+    private static void appendBox(StringBuilder sql, double south,
+            double west, double north, double east) {
+        sql.append("(X(").append(StateSaver.COLUMN_POINT_GEOM)
+                .append(") BETWEEN ").append(west).append(" AND ")
+                .append(east).append(" AND Y(")
+                .append(StateSaver.COLUMN_POINT_GEOM).append(") BETWEEN ")
+                .append(south).append(" AND ").append(north).append(")");
+    }
+
+    /**
+     * Stores the snapshot and location of items restored from XML so that
+     * subsequent restores can skip the parse.
+     */
+    private void backfillSnapshots(List<Pair<Long, CotEvent>> backfill) {
+        for (int i = 0; i < backfill.size(); i += BACKFILL_BATCH_SIZE) {
+            if (cancelled)
+                return;
+            final int end = Math.min(i + BACKFILL_BATCH_SIZE,
+                    backfill.size());
+            synchronized (StateSaver.dbWriteLock) {
+                StatementIface stmt = null;
+                this.stateSaverDatabase.beginTransaction();
+                try {
+                    stmt = this.stateSaverDatabase.compileStatement("UPDATE "
+                            + StateSaver.TABLE_COTEVENTS + " SET "
+                            + StateSaver.COLUMN_SNAPSHOT + " = ?, "
+                            + StateSaver.COLUMN_POINT_GEOM
+                            + " = MakePoint(?, ?, 4326) WHERE "
+                            + StateSaver.COLUMN_ID + " = ? AND "
+                            + StateSaver.COLUMN_SNAPSHOT + " IS NULL");
+                    for (int j = i; j < end; j++) {
+                        final Pair<Long, CotEvent> p = backfill.get(j);
+                        final CotPoint pt = p.second.getCotPoint();
+                        try {
+                            stmt.bind(1, CotEventSnapshot.encode(p.second));
+                            stmt.bind(2, pt.getLon());
+                            stmt.bind(3, pt.getLat());
+                            stmt.bind(4, p.first);
+                            stmt.execute();
+                        } finally {
+                            stmt.clearBindings();
+                        }
+                    }
+                    this.stateSaverDatabase.setTransactionSuccessful();
+                } catch (Exception e) {
+                    Log.w(TAG, "failed to store snapshots", e);
+                    return;
+                } finally {
+                    if (stmt != null)
+                        stmt.close();
+                    this.stateSaverDatabase.endTransaction();
+                }
+            }
+        }
     }
 
     private void processDeferredEvents() {
@@ -108,6 +108,8 @@ public class BreadcrumbReceiver extends BroadcastReceiver implements
 
         logCrumbs = prefs.getBoolean("toggle_log_tracks", true);
         bPersistentSelfTrack = prefs.getBoolean("track_infinite", false);
+        crumbDatabase.setCompactStorage(
+                prefs.getBoolean("track_compact_storage", true));
 
         // save crumbs from last execution of ATAK out to new track segment KML
         createTrackSegment(getTrackTitle(prefs), this.view.getDeviceCallsign(),
@@ -136,6 +138,10 @@ public class BreadcrumbReceiver extends BroadcastReceiver implements
             } else {
                 clearPersistentSelfTrack(true);
             }
+        } else if (key.equals("track_compact_storage")) {
+            if (crumbDatabase != null)
+                crumbDatabase.setCompactStorage(
+                        sharedPreferences.getBoolean(key, true));
         }
     }
 
@@ -656,5 +662,10 @@ public class BreadcrumbReceiver extends BroadcastReceiver implements
         prefs.unregisterOnSharedPreferenceChangeListener(this);
         _disposed = true;
         _createTracks.dispose(false);
+
+        // write out any crumbs still queued
+        if (crumbDatabase != null) {
+            crumbDatabase.close();
+        }
     }
 }
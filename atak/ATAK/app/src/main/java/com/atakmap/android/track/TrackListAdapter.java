@@ -85,7 +85,8 @@ public class TrackListAdapter extends BaseAdapter implements
         setMultiSelectEnabled(false);
         if (user != null) {
             new GetTrackHistoryTask(mapView.getContext(),
-                    user.getUid(), bHideTemp, bDisplayAll, this).execute();
+                    user.getUid(), bHideTemp, bDisplayAll,
+                    mapView.getMapResolution(), this).execute();
         }
     }
 
@@ -112,7 +113,8 @@ public class TrackListAdapter extends BaseAdapter implements
         setMultiSelectEnabled(false);
 
         new GetTrackHistoryTask(mapView.getContext(),
-                user.getUid(), trackIDs, this).execute();
+                user.getUid(), trackIDs, mapView.getMapResolution(), this)
+                        .execute();
     }
 
     public TrackUser getCurrentUser() {
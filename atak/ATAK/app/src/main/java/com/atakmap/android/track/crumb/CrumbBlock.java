@@ -0,0 +1,406 @@
+package com.atakmap.android.track.crumb;
+
+import com.atakmap.coremap.maps.coords.GeoPoint;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Packs a time ordered run of crumbs into a compact block for storage. Each
+ * value is stored as the zig-zag varint encoded difference from the previous
+ * crumb, quantized as follows, and the result is deflated.
+ *
+ * <UL>
+ *   <LI>timestamp, milliseconds</LI>
+ *   <LI>latitude and longitude, 1e-7 degrees</LI>
+ *   <LI>altitude, centimeters</LI>
+ *   <LI>ce and le, decimeters</LI>
+ *   <LI>speed, centimeters per second</LI>
+ *   <LI>bearing, hundredths of a degree</LI>
+ * </UL>
+ *
+ * The point and altitude sources are written once per block and referenced
+ * by index. Unknown values are preserved.
+ */
+final class CrumbBlock {
+
+    private static final int VERSION = 1;
+
+    private static final int FLAG_ALT = 0x01;
+    private static final int FLAG_CE = 0x02;
+    private static final int FLAG_LE = 0x04;
+    private static final int FLAG_SPEED = 0x08;
+    private static final int FLAG_BEARING = 0x10;
+
+    private static final double LATLNG_SCALE = 1e7;
+    private static final double ALT_SCALE = 100d;
+    private static final double ERROR_SCALE = 10d;
+    private static final double SPEED_SCALE = 100d;
+    private static final double BEARING_SCALE = 100d;
+
+    /** meters per degree of latitude, on the mean sphere */
+    private static final double METERS_PER_DEGREE = 111194.93;
+
+    private CrumbBlock() {
+    }
+
+    /**
+     * Encodes the crumbs, which are expected to be in timestamp order.
+     *
+     * @param points The crumbs
+     * @return The packed block
+     */
+    static byte[] encode(List<CrumbPoint> points) {
+        final Map<String, Integer> strings = new HashMap<>();
+        final List<String> table = new ArrayList<>();
+        for (CrumbPoint p : points) {
+            intern(p.gpm.getGeopointSource(), strings, table);
+            intern(p.gpm.getAltitudeSource(), strings, table);
+        }
+
+        final Writer w = new Writer(32 + points.size() * 16);
+        w.varint(VERSION);
+        w.varint(points.size());
+        w.varint(table.size());
+        for (String s : table) {
+            final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            w.varint(b.length);
+            w.bytes(b);
+        }
+
+        long ts = 0, lat = 0, lng = 0, alt = 0, speed = 0, bearing = 0;
+        for (CrumbPoint p : points) {
+            final double a = p.gp.getAltitude();
+            final double ce = p.gp.getCE();
+            final double le = p.gp.getLE();
+
+            int flags = 0;
+            if (isFinite(a))
+                flags |= FLAG_ALT;
+            if (isFinite(ce))
+                flags |= FLAG_CE;
+            if (isFinite(le))
+                flags |= FLAG_LE;
+            if (isFinite(p.speed))
+                flags |= FLAG_SPEED;
+            if (isFinite(p.bearing))
+                flags |= FLAG_BEARING;
+            w.varint(flags);
+
+            w.zigzag(p.timestamp - ts);
+            ts = p.timestamp;
+
+            final long qlat = Math.round(p.gp.getLatitude() * LATLNG_SCALE);
+            final long qlng = Math.round(p.gp.getLongitude() * LATLNG_SCALE);
+            w.zigzag(qlat - lat);
+            w.zigzag(qlng - lng);
+            lat = qlat;
+            lng = qlng;
+
+            if ((flags & FLAG_ALT) != 0) {
+                final long q = Math.round(a * ALT_SCALE);
+                w.zigzag(q - alt);
+                alt = q;
+            }
+            if ((flags & FLAG_CE) != 0)
+                w.zigzag(Math.round(ce * ERROR_SCALE));
+            if ((flags & FLAG_LE) != 0)
+                w.zigzag(Math.round(le * ERROR_SCALE));
+            if ((flags & FLAG_SPEED) != 0) {
+                final long q = Math.round(p.speed * SPEED_SCALE);
+                w.zigzag(q - speed);
+                speed = q;
+            }
+            if ((flags & FLAG_BEARING) != 0) {
+                final long q = Math.round(p.bearing * BEARING_SCALE);
+                w.zigzag(q - bearing);
+                bearing = q;
+            }
+
+            w.varint(index(p.gpm.getGeopointSource(), strings));
+            w.varint(index(p.gpm.getAltitudeSource(), strings));
+        }
+
+        final Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(w.buf, 0, w.len);
+            deflater.finish();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    w.len / 2 + 16);
+            final byte[] chunk = new byte[4096];
+            while (!deflater.finished()) {
+                final int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decodes a block produced by {@link #encode(List)}.
+     *
+     * @param block The packed block
+     * @return The crumbs, in timestamp order
+     * @throws IllegalArgumentException if the block is malformed
+     */
+    static List<CrumbPoint> decode(byte[] block) {
+        final Reader r = new Reader(inflate(block));
+        if (r.varint() != VERSION)
+            throw new IllegalArgumentException("Unsupported crumb block");
+
+        final int count = (int) r.varint();
+        final String[] table = new String[(int) r.varint()];
+        for (int i = 0; i < table.length; i++) {
+            final int n = (int) r.varint();
+            table[i] = new String(r.buf, r.pos, n, StandardCharsets.UTF_8);
+            r.pos += n;
+        }
+
+        final List<CrumbPoint> points = new ArrayList<>(count);
+        long ts = 0, lat = 0, lng = 0, alt = 0, speed = 0, bearing = 0;
+        for (int i = 0; i < count; i++) {
+            final int flags = (int) r.varint();
+            ts += r.zigzag();
+            lat += r.zigzag();
+            lng += r.zigzag();
+
+            double a = GeoPoint.UNKNOWN;
+            double ce = GeoPoint.UNKNOWN;
+            double le = GeoPoint.UNKNOWN;
+            float s = (float) GeoPoint.UNKNOWN;
+            float b = (float) GeoPoint.UNKNOWN;
+            if ((flags & FLAG_ALT) != 0) {
+                alt += r.zigzag();
+                a = alt / ALT_SCALE;
+            }
+            if ((flags & FLAG_CE) != 0)
+                ce = r.zigzag() / ERROR_SCALE;
+            if ((flags & FLAG_LE) != 0)
+                le = r.zigzag() / ERROR_SCALE;
+            if ((flags & FLAG_SPEED) != 0) {
+                speed += r.zigzag();
+                s = (float) (speed / SPEED_SCALE);
+            }
+            if ((flags & FLAG_BEARING) != 0) {
+                bearing += r.zigzag();
+                b = (float) (bearing / BEARING_SCALE);
+            }
+
+            final String ptsource = lookup(table, (int) r.varint());
+            final String altsource = lookup(table, (int) r.varint());
+            points.add(new CrumbPoint(lat / LATLNG_SCALE, lng / LATLNG_SCALE,
+                    a, ce, le, s, b, ts, altsource, ptsource));
+        }
+        return points;
+    }
+
+    /**
+     * Reduces the crumbs using the Douglas-Peucker algorithm. The first and
+     * last crumb are always retained so that adjacent blocks remain
+     * connected.
+     *
+     * @param points The crumbs
+     * @param tolerance The maximum distance, in meters, of any discarded
+     *            crumb from the simplified line
+     * @return The retained crumbs
+     */
+    static List<CrumbPoint> simplify(List<CrumbPoint> points,
+            double tolerance) {
+        final int n = points.size();
+        if (n < 3 || !(tolerance > 0d))
+            return new ArrayList<>(points);
+
+        // project onto a local plane about the first crumb
+        final double lat0 = points.get(0).gp.getLatitude();
+        final double lng0 = points.get(0).gp.getLongitude();
+        final double lngScale = Math.cos(Math.toRadians(lat0))
+                * METERS_PER_DEGREE;
+        final double[] x = new double[n];
+        final double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            double dlng = points.get(i).gp.getLongitude() - lng0;
+            if (dlng > 180d)
+                dlng -= 360d;
+            else if (dlng < -180d)
+                dlng += 360d;
+            x[i] = dlng * lngScale;
+            y[i] = (points.get(i).gp.getLatitude() - lat0)
+                    * METERS_PER_DEGREE;
+        }
+
+        final boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+
+        final double tolerance2 = tolerance * tolerance;
+        final int[] stack = new int[2 * n];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        while (top > 0) {
+            final int last = stack[--top];
+            final int first = stack[--top];
+
+            double max = -1d;
+            int index = -1;
+            for (int i = first + 1; i < last; i++) {
+                final double d = distanceSq(x[i], y[i], x[first], y[first],
+                        x[last], y[last]);
+                if (d > max) {
+                    max = d;
+                    index = i;
+                }
+            }
+            if (index < 0 || max <= tolerance2)
+                continue;
+
+            keep[index] = true;
+            stack[top++] = first;
+            stack[top++] = index;
+            stack[top++] = index;
+            stack[top++] = last;
+        }
+
+        final List<CrumbPoint> retval = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            if (keep[i])
+                retval.add(points.get(i));
+        return retval;
+    }
+
+    /**
+     * Squared distance from the point to the segment
+     */
+    private static double distanceSq(double px, double py, double ax,
+            double ay, double bx, double by) {
+        final double dx = bx - ax;
+        final double dy = by - ay;
+        final double len2 = dx * dx + dy * dy;
+        double t = 0d;
+        if (len2 > 0d)
+            t = Math.max(0d,
+                    Math.min(1d, ((px - ax) * dx + (py - ay) * dy) / len2));
+        final double ex = px - (ax + t * dx);
+        final double ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+
+    private static boolean isFinite(double v) {
+        return !Double.isNaN(v) && !Double.isInfinite(v);
+    }
+
+    private static void intern(String s, Map<String, Integer> strings,
+            List<String> table) {
+        if (s != null && !strings.containsKey(s)) {
+            strings.put(s, table.size());
+            table.add(s);
+        }
+    }
+
+    /** index into the string table, offset by one to reserve null */
+    private static int index(String s, Map<String, Integer> strings) {
+        return (s == null) ? 0 : strings.get(s) + 1;
+    }
+
+    private static String lookup(String[] table, int index) {
+        return (index == 0) ? null : table[index - 1];
+    }
+
+    private static byte[] inflate(byte[] block) {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(block);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    block.length * 3);
+            final byte[] chunk = new byte[4096];
+            while (!inflater.finished()) {
+                final int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput()
+                        || inflater.needsDictionary()))
+                    throw new IllegalArgumentException(
+                            "Truncated crumb block");
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt crumb block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static final class Writer {
+        byte[] buf;
+        int len;
+
+        Writer(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void varint(long v) {
+            if (len + 10 > buf.length) {
+                final byte[] b = new byte[buf.length * 2];
+                System.arraycopy(buf, 0, b, 0, len);
+                buf = b;
+            }
+            while ((v & ~0x7FL) != 0) {
+                buf[len++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[len++] = (byte) v;
+        }
+
+        void zigzag(long v) {
+            varint((v << 1) ^ (v >> 63));
+        }
+
+        void bytes(byte[] b) {
+            for (byte x : b) {
+                if (len == buf.length) {
+                    final byte[] g = new byte[buf.length * 2];
+                    System.arraycopy(buf, 0, g, 0, len);
+                    buf = g;
+                }
+                buf[len++] = x;
+            }
+        }
+    }
+
+    private static final class Reader {
+        final byte[] buf;
+        int pos;
+
+        Reader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        long varint() {
+            long v = 0;
+            int shift = 0;
+            while (true) {
+                if (pos >= buf.length || shift > 63)
+                    throw new IllegalArgumentException(
+                            "Malformed crumb block");
+                final byte b = buf[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return v;
+                shift += 7;
+            }
+        }
+
+        long zigzag() {
+            final long v = varint();
+            return (v >>> 1) ^ -(v & 1);
+        }
+    }
+}
@@ -17,6 +17,7 @@ import com.atakmap.android.track.task.TrackProgress;
 import com.atakmap.android.track.ui.TrackUser;
 import com.atakmap.android.util.ATAKUtilities;
 import com.atakmap.annotations.DeprecatedApi;
+import com.atakmap.coremap.concurrent.NamedThreadFactory;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.io.IOProvider;
 import com.atakmap.coremap.io.IOProviderFactory;
@@ -41,14 +42,23 @@ import com.ekito.simpleKML.model.Track;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class CrumbDatabase {
     public static final String TAG = "CrumbDatabase";
-    public static final int DATABASE_VERSION = 5;
+    public static final int DATABASE_VERSION = 6;
 
     private static final int DEFAULT_NUMBER_TRACKS = 15;
     private static final double TEMP_TRACK_THRESHOLD_MILLIS = 1000 * 60 * 10; //10 minutes
@@ -79,6 +89,13 @@ public class CrumbDatabase {
      */
     private static final String SEGMENT_TABLE_NAME = "segment";
 
+    /**
+     * This table contains crumbs packed into compressed blocks, one block per segment,
+     * time bucket and level of detail. Crumbs are moved here from the breadcrumb table once
+     * their time bucket has closed, see {@link #compact()}
+     */
+    private static final String BLOCK_TABLE_NAME = "crumb_block";
+
     //breadcrumb table columns
     public final static String COLUMN_ID = "_id"; // unique id field
     private final static String COLUMN_SEGMENT_ID = "_sid"; // unique id of the corresponding segment
@@ -111,6 +128,14 @@ public class CrumbDatabase {
     private static final int COLUMN_INDEX = 11;
     private static final int COLUMN_POINT_GEOM_INDEX = 12;
 
+    //block table columns
+    private final static String BLOCK_COLUMN_SEGMENT_ID = "_sid"; // unique id of the corresponding segment
+    private final static String BLOCK_COLUMN_LOD = "lod"; // level of detail, 0 is full resolution
+    private final static String BLOCK_COLUMN_START = "tstart"; // start of the time bucket, in milliseconds since January 1, 1970
+    private final static String BLOCK_COLUMN_END = "tend"; // timestamp of the last crumb in the block
+    private final static String BLOCK_COLUMN_COUNT = "npoints"; // number of crumbs in the block
+    private final static String BLOCK_COLUMN_DATA = "data"; // packed crumbs, see CrumbBlock
+
     //segment table columns
     private final static String SEG_COLUMN_ID = "_id"; // unique id field
     public final static String SEG_COLUMN_TIMESTAMP = "timestamp"; // the UTC time of this fix, in milliseconds since January 1, 1970
@@ -139,10 +164,120 @@ public class CrumbDatabase {
     public final static long STALE = CoordinatedTime.currentDate().getTime()
             - (31 * 24L * 60L * 60L * 1000L);
 
+    /**
+     * Crumbs are queued and written in a single transaction at most this many
+     * milliseconds after they are received
+     */
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Queue depth at which the caller writes the pending crumbs itself rather
+     * than waiting on the next scheduled flush
+     */
+    private static final int MAX_PENDING_CRUMBS = 5000;
+
+    /**
+     * Time to wait on close for a flush or compaction that is in progress
+     */
+    private static final long FLUSH_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Duration of the time buckets that crumbs are packed into
+     */
+    private static final long BLOCK_DURATION_MILLIS = 60L * 60L * 1000L;
+
+    /**
+     * A bucket is packed once it has been closed for at least this long, to allow for late
+     * arriving crumbs
+     */
+    private static final long COMPACT_DELAY_MILLIS = 10L * 60L * 1000L;
+
+    private static final long COMPACT_INTERVAL_MILLIS = 15L * 60L * 1000L;
+
+    /**
+     * Simplification tolerance, in meters, of each level of detail. Level 0 is full resolution.
+     */
+    private static final double[] LOD_TOLERANCES = {
+            0d, 5d, 20d, 80d, 320d
+    };
+
+    /**
+     * A level of detail is only stored if it retains less than this fraction of the crumbs of
+     * the next finer level that was stored
+     */
+    private static final double LOD_MIN_REDUCTION = 0.8d;
+
+    private static final Comparator<CrumbPoint> TIMESTAMP_ORDER = new Comparator<CrumbPoint>() {
+        @Override
+        public int compare(CrumbPoint a, CrumbPoint b) {
+            return Long.compare(a.timestamp, b.timestamp);
+        }
+    };
+
+    private static final Comparator<Crumb> CRUMB_TIMESTAMP_ORDER = new Comparator<Crumb>() {
+        @Override
+        public int compare(Crumb a, Crumb b) {
+            return Long.compare(a.timestamp, b.timestamp);
+        }
+    };
+
+    private static final String INSERT_CRUMB_SQL = "INSERT INTO "
+            + BREADCRUMB_TABLE_NAME2 +
+            "(" + COLUMN_SEGMENT_ID + ", " +
+            COLUMN_TIMESTAMP + ", " +
+            COLUMN_LAT + ", " +
+            COLUMN_LON + ", " +
+            COLUMN_ALT + ", " +
+            COLUMN_CE + ", " +
+            COLUMN_LE + ", " +
+            COLUMN_BEARING + ", " +
+            COLUMN_SPEED + ", " +
+            COLUMN_POINT_SOURCE + ", " +
+            COLUMN_ALTITUDE_SOURCE + ", " +
+            COLUMN_POINT_GEOM + ") " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, MakePoint(?,?,4326))";
+
     private DatabaseIface crumbdb;
 
     private static CrumbDatabase instance;
 
+    /* write-behind queue, guarded by pendingLock */
+    private final Object pendingLock = new Object();
+    private List<PendingCrumb> pending = new ArrayList<>();
+    private boolean flushScheduled;
+    private final ScheduledExecutorService flushExecutor = Executors
+            .newSingleThreadScheduledExecutor(
+                    new NamedThreadFactory("CrumbDatabaseFlush"));
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (pendingLock) {
+                flushScheduled = false;
+            }
+            flush();
+        }
+    };
+
+    private ScheduledFuture<?> compactFuture;
+    private final Runnable compactTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                compact();
+            } catch (Exception e) {
+                Log.w(TAG, "error occurred compacting breadcrumbs", e);
+            }
+        }
+    };
+
+    /* most recent segment id per user UID, guarded by this */
+    private final Map<String, Integer> segmentIds = new HashMap<>();
+
+    /* flush statistics, written while holding this */
+    private volatile long lastFlushMillis;
+    private volatile long maxFlushMillis;
+    private volatile long flushCount;
+
     public static synchronized CrumbDatabase instance() {
         if (instance == null) {
             instance = new CrumbDatabase();
@@ -392,6 +527,12 @@ public class CrumbDatabase {
             }
         }
 
+        if (oldVersion == 5) {
+            // v6 only adds the block table, created below
+            Log.d(TAG, "Upgrading db from VERSION=5");
+            db.setVersion(DATABASE_VERSION);
+        }
+
         //if v4 upgrade failed or older version, then drop tables
         if (db.getVersion() != DATABASE_VERSION) {
             deleteAll(db);
@@ -446,6 +587,25 @@ public class CrumbDatabase {
             final String sql = "DELETE FROM " + BREADCRUMB_TABLE_NAME2 +
                     " WHERE " + COLUMN_TIMESTAMP + " <= " + STALE;
             db.execute(sql, null);
+
+            if (Databases.getTableNames(db).contains(BLOCK_TABLE_NAME))
+                db.execute("DELETE FROM " + BLOCK_TABLE_NAME + " WHERE "
+                        + BLOCK_COLUMN_END + " <= " + STALE, null);
+        }
+
+        if (!Databases.getTableNames(db).contains(BLOCK_TABLE_NAME)) {
+            Log.d(TAG, "creating a new table: " + BLOCK_TABLE_NAME);
+            db.execute("CREATE TABLE " + BLOCK_TABLE_NAME +
+                    " (" + BLOCK_COLUMN_SEGMENT_ID + " INTEGER, "
+                    + BLOCK_COLUMN_LOD + " INTEGER, "
+                    + BLOCK_COLUMN_START + " INTEGER, "
+                    + BLOCK_COLUMN_END + " INTEGER, "
+                    + BLOCK_COLUMN_COUNT + " INTEGER, "
+                    + BLOCK_COLUMN_DATA + " BLOB)", null);
+            db.execute("CREATE INDEX " + BLOCK_TABLE_NAME + "_idx ON "
+                    + BLOCK_TABLE_NAME + "(" + BLOCK_COLUMN_SEGMENT_ID + ", "
+                    + BLOCK_COLUMN_LOD + ", " + BLOCK_COLUMN_START + ")",
+                    null);
         }
 
         //now setup segment table
@@ -474,6 +634,9 @@ public class CrumbDatabase {
                     + SEGMENT_TABLE_NAME + "." + SEG_COLUMN_ID +
                     " NOT IN (" + " SELECT " + BREADCRUMB_TABLE_NAME2 + "."
                     + COLUMN_SEGMENT_ID + " FROM " + BREADCRUMB_TABLE_NAME2
+                    + ") AND " + SEGMENT_TABLE_NAME + "." + SEG_COLUMN_ID +
+                    " NOT IN (" + " SELECT " + BLOCK_TABLE_NAME + "."
+                    + BLOCK_COLUMN_SEGMENT_ID + " FROM " + BLOCK_TABLE_NAME
                     + ")";
             db.execute(sql, null);
         }
@@ -485,7 +648,11 @@ public class CrumbDatabase {
      */
     @Deprecated
     @DeprecatedApi(since = "4.1")
-    public void deleteAll() {
+    public synchronized void deleteAll() {
+        synchronized (pendingLock) {
+            pending.clear();
+        }
+        segmentIds.clear();
         deleteAll(crumbdb);
         crumbdb.close();
         crumbdb = null;
@@ -517,6 +684,13 @@ public class CrumbDatabase {
                 Log.w(TAG, "Failed to delete segments table", e);
             }
 
+            try {
+                db.execute("DROP TABLE IF EXISTS " + BLOCK_TABLE_NAME,
+                        null);
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to delete crumb block table", e);
+            }
+
         }
     }
 
@@ -526,6 +700,11 @@ public class CrumbDatabase {
      * @return the current segment id based on the uid passed in.
      */
     public int getCurrentSegmentId(String uid, String orderBy) {
+        flush();
+        return querySegmentId(uid, orderBy);
+    }
+
+    private int querySegmentId(String uid, String orderBy) {
 
         CursorIface result = null;
         int mostRecentSegment_id = -1;
@@ -553,12 +732,15 @@ public class CrumbDatabase {
     }
 
     /**
-     * Writes the crumb for a PointMapItem to the database.
+     * Queues the crumb for a PointMapItem to be written to the database.
+     * Queued crumbs are written in batches, see {@link #flush()}; all of the
+     * query methods flush the queue first so that queued crumbs are visible
+     * to them.
      * @param m
      * @param timestamp
      * @param prefs
      */
-    public synchronized void persist(final PointMapItem m,
+    public void persist(final PointMapItem m,
             final long timestamp, final SharedPreferences prefs) {
 
         double speed = m.getMetaDouble("Speed", Double.NaN);
@@ -578,12 +760,410 @@ public class CrumbDatabase {
         if (Double.isNaN(bearing))
             bearing = VALUE_UNKNOWN;
 
-        persist(m.getPoint(), m.getUID(), title, timestamp, speed, bearing, -1,
+        final GeoPoint point = m.getPoint();
+        if (point == null)
+            return;
+
+        final PendingCrumb c = new PendingCrumb(new GeoPoint(point),
+                m.getUID(), title, timestamp, speed, bearing,
                 m.getMetaString(GeoPointMetaData.GEOPOINT_SOURCE,
                         GeoPointMetaData.UNKNOWN),
                 m.getMetaString(GeoPointMetaData.ALTITUDE_SOURCE,
                         GeoPointMetaData.UNKNOWN),
                 prefs);
+
+        final int depth;
+        synchronized (pendingLock) {
+            if (flushExecutor.isShutdown()) {
+                Log.w(TAG, "database closed, dropping crumb: " + timestamp);
+                return;
+            }
+            pending.add(c);
+            depth = pending.size();
+            if (!flushScheduled) {
+                flushScheduled = true;
+                flushExecutor.schedule(flushTask, FLUSH_INTERVAL_MILLIS,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+
+        // the writer is falling behind, apply backpressure
+        if (depth >= MAX_PENDING_CRUMBS)
+            flush();
+    }
+
+    /**
+     * Writes all queued crumbs to the database in a single transaction and
+     * notifies the crumb listeners. Invoked periodically, before every query
+     * and on shutdown.
+     */
+    public synchronized void flush() {
+        final List<PendingCrumb> batch;
+        synchronized (pendingLock) {
+            if (pending.isEmpty())
+                return;
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+
+        if (crumbdb == null) {
+            Log.w(TAG, "database closed, dropping " + batch.size()
+                    + " crumbs");
+            return;
+        }
+
+        final long start = System.nanoTime();
+        final List<Crumb> written = new ArrayList<>(batch.size());
+
+        // the batch may be flushed from within the transaction of a caller
+        final boolean ownTransaction = !crumbdb.inTransaction();
+        StatementIface insertStmt = null;
+        try {
+            if (ownTransaction)
+                crumbdb.beginTransaction();
+            insertStmt = crumbdb.compileStatement(INSERT_CRUMB_SQL);
+            for (PendingCrumb p : batch) {
+                try {
+                    final int trackId = getSegmentId(p.userUid, p.userTitle,
+                            p.timestamp, p.prefs);
+                    insertStmt.clearBindings();
+                    bindCrumb(insertStmt, trackId, p.point, p.timestamp,
+                            p.speed, p.bearing, p.geopointSource,
+                            p.altitudeSource);
+                    insertStmt.execute();
+                    written.add(newCrumb(p.point, trackId, p.timestamp,
+                            p.speed, p.bearing));
+                } catch (Exception e) {
+                    Log.w(TAG, "error occurred saving breadcrumb: "
+                            + p.timestamp, e);
+                }
+            }
+            if (ownTransaction)
+                crumbdb.setTransactionSuccessful();
+        } catch (Exception e) {
+            Log.w(TAG, "error occurred saving " + batch.size()
+                    + " breadcrumbs", e);
+            written.clear();
+        } finally {
+            if (insertStmt != null)
+                insertStmt.close();
+            if (ownTransaction)
+                crumbdb.endTransaction();
+        }
+
+        final long elapsed = (System.nanoTime() - start) / 1000000L;
+        lastFlushMillis = elapsed;
+        if (elapsed > maxFlushMillis)
+            maxFlushMillis = elapsed;
+        flushCount++;
+
+        // Notify listeners
+        for (Crumb c : written)
+            fireOnCrumbAdded(c.trackDBID, c);
+    }
+
+    /**
+     * Stops the background flush and compaction, writes out any queued
+     * crumbs and closes the database. Crumbs persisted after the database is
+     * closed are dropped; the next call to {@link #instance()} reopens it.
+     */
+    public void close() {
+        synchronized (CrumbDatabase.class) {
+            if (instance == this)
+                instance = null;
+        }
+
+        setCompactStorage(false);
+        synchronized (pendingLock) {
+            flushExecutor.shutdown();
+        }
+        // a scheduled flush or compaction may be running, which needs the
+        // lock on this database
+        try {
+            if (!flushExecutor.awaitTermination(FLUSH_TIMEOUT_MILLIS,
+                    TimeUnit.MILLISECONDS))
+                Log.w(TAG, "timed out waiting for the crumb writer");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            flush();
+            if (crumbdb != null) {
+                crumbdb.close();
+                crumbdb = null;
+            }
+        }
+    }
+
+    /**
+     * @return the number of crumbs queued but not yet written
+     */
+    public int getPendingCount() {
+        synchronized (pendingLock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * @return the duration of the most recent flush, in milliseconds
+     */
+    public long getLastFlushLatency() {
+        return lastFlushMillis;
+    }
+
+    /**
+     * @return the longest duration of any flush, in milliseconds
+     */
+    public long getMaxFlushLatency() {
+        return maxFlushMillis;
+    }
+
+    /**
+     * @return the number of batches written
+     */
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    /**
+     * Enables or disables packing of crumbs into compressed blocks. When
+     * enabled, crumbs are moved from the breadcrumb table into blocks
+     * periodically, once their time bucket has closed. Crumbs that have
+     * already been packed remain readable either way.
+     */
+    public synchronized void setCompactStorage(boolean enabled) {
+        if (enabled == (compactFuture != null))
+            return;
+        if (enabled) {
+            compactFuture = flushExecutor.scheduleWithFixedDelay(compactTask,
+                    COMPACT_DELAY_MILLIS, COMPACT_INTERVAL_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            compactFuture.cancel(false);
+            compactFuture = null;
+        }
+    }
+
+    /**
+     * Packs the crumbs of every closed time bucket into compressed blocks,
+     * along with downsampled levels of detail, and removes them from the
+     * breadcrumb table. Each bucket is packed in its own transaction so that
+     * readers and writers are not held off for the whole pass.
+     */
+    public void compact() {
+        final long cutoff = ((new CoordinatedTime().getMilliseconds()
+                - COMPACT_DELAY_MILLIS) / BLOCK_DURATION_MILLIS)
+                * BLOCK_DURATION_MILLIS;
+
+        final List<long[]> buckets = new ArrayList<>();
+        synchronized (this) {
+            if (crumbdb == null)
+                return;
+            flush();
+
+            String sql = "SELECT DISTINCT " + COLUMN_SEGMENT_ID + ", "
+                    + COLUMN_TIMESTAMP + " / " + BLOCK_DURATION_MILLIS +
+                    " FROM " + BREADCRUMB_TABLE_NAME2 +
+                    " WHERE " + COLUMN_TIMESTAMP + " >= 0 AND "
+                    + COLUMN_TIMESTAMP + " < " + cutoff;
+            CursorIface result = null;
+            try {
+                result = crumbdb.query(sql, null);
+                while (result.moveToNext())
+                    buckets.add(new long[] {
+                            result.getLong(0),
+                            result.getLong(1) * BLOCK_DURATION_MILLIS
+                    });
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to find breadcrumbs to compact", e);
+                return;
+            } finally {
+                if (result != null)
+                    result.close();
+            }
+        }
+
+        if (buckets.isEmpty())
+            return;
+
+        final long start = System.nanoTime();
+        int packed = 0;
+        for (long[] bucket : buckets) {
+            synchronized (this) {
+                if (crumbdb == null)
+                    return;
+                packed += compactBucket((int) bucket[0], bucket[1]);
+            }
+        }
+        Log.d(TAG, "packed " + packed + " crumbs into " + buckets.size()
+                + " blocks in " + (System.nanoTime() - start) / 1000000L
+                + "ms");
+    }
+
+    /**
+     * Packs the crumbs of a segment within the time bucket, merging them
+     * with any crumbs already packed for that bucket.
+     *
+     * @return the number of crumbs removed from the breadcrumb table
+     */
+    private int compactBucket(int trackDbId, long bucketStart) {
+        final long bucketEnd = bucketStart + BLOCK_DURATION_MILLIS;
+        final String rowFilter = " WHERE " + COLUMN_SEGMENT_ID + " = "
+                + trackDbId + " AND " + COLUMN_TIMESTAMP + " >= "
+                + bucketStart + " AND " + COLUMN_TIMESTAMP + " < " + bucketEnd;
+        final String blockFilter = " WHERE " + BLOCK_COLUMN_SEGMENT_ID + " = "
+                + trackDbId + " AND " + BLOCK_COLUMN_START + " = "
+                + bucketStart;
+
+        final List<CrumbPoint> points = new ArrayList<>();
+        int rows = 0;
+        CursorIface result = null;
+        try {
+            result = crumbdb.query("SELECT " + BLOCK_COLUMN_DATA + " FROM "
+                    + BLOCK_TABLE_NAME + blockFilter + " AND "
+                    + BLOCK_COLUMN_LOD + " = 0", null);
+            if (result.moveToNext())
+                points.addAll(decodeBlock(result.getBlob(0)));
+            result.close();
+
+            result = crumbdb.query(
+                    "SELECT _id, _sid, timestamp, lat, lon, alt, ce, le,"
+                            + " bearing, speed, ptsource, altsource" +
+                            " FROM " + BREADCRUMB_TABLE_NAME2 + rowFilter +
+                            " ORDER BY " + COLUMN_TIMESTAMP + " ASC",
+                    null);
+            CrumbPoint c;
+            while (result.moveToNext()) {
+                rows++;
+                c = crumbPointFromCursor(result);
+                // invalid crumbs are never returned by the queries
+                if (c.gp.isValid())
+                    points.add(c);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to read breadcrumbs for segment "
+                    + trackDbId, e);
+            return 0;
+        } finally {
+            if (result != null)
+                result.close();
+        }
+        Collections.sort(points, TIMESTAMP_ORDER);
+
+        final boolean ownTransaction = !crumbdb.inTransaction();
+        StatementIface insertStmt = null;
+        try {
+            if (ownTransaction)
+                crumbdb.beginTransaction();
+            crumbdb.execute("DELETE FROM " + BLOCK_TABLE_NAME + blockFilter,
+                    null);
+
+            if (!points.isEmpty()) {
+                insertStmt = crumbdb.compileStatement("INSERT INTO "
+                        + BLOCK_TABLE_NAME + "(" + BLOCK_COLUMN_SEGMENT_ID
+                        + ", " + BLOCK_COLUMN_LOD + ", " + BLOCK_COLUMN_START
+                        + ", " + BLOCK_COLUMN_END + ", " + BLOCK_COLUMN_COUNT
+                        + ", " + BLOCK_COLUMN_DATA + ") "
+                        + "VALUES (?, ?, ?, ?, ?, ?)");
+                final long lastTimestamp = points
+                        .get(points.size() - 1).timestamp;
+                int stored = Integer.MAX_VALUE;
+                for (int lod = 0; lod < LOD_TOLERANCES.length; lod++) {
+                    final List<CrumbPoint> lodPoints = CrumbBlock
+                            .simplify(points, LOD_TOLERANCES[lod]);
+                    if (lod > 0 && lodPoints.size() >= stored
+                            * LOD_MIN_REDUCTION)
+                        continue;
+                    insertStmt.clearBindings();
+                    insertStmt.bind(1, trackDbId);
+                    insertStmt.bind(2, lod);
+                    insertStmt.bind(3, bucketStart);
+                    insertStmt.bind(4, lastTimestamp);
+                    insertStmt.bind(5, lodPoints.size());
+                    insertStmt.bind(6, CrumbBlock.encode(lodPoints));
+                    insertStmt.execute();
+                    stored = lodPoints.size();
+                }
+            }
+
+            crumbdb.execute("DELETE FROM " + BREADCRUMB_TABLE_NAME2
+                    + rowFilter, null);
+            if (ownTransaction)
+                crumbdb.setTransactionSuccessful();
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to pack breadcrumbs for segment "
+                    + trackDbId, e);
+            return 0;
+        } finally {
+            if (insertStmt != null)
+                insertStmt.close();
+            if (ownTransaction)
+                crumbdb.endTransaction();
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the current segment for the user, creating one if none exists
+     * and preferences are provided. Segment ids are cached per user as they
+     * only change when segments are created or deleted.
+     */
+    private int getSegmentId(String userUid, String userTitle,
+            long timestamp, SharedPreferences prefs) {
+        final Integer cached = segmentIds.get(userUid);
+        if (cached != null)
+            return cached;
+
+        int trackId = querySegmentId(userUid, SEG_COLUMN_TIMESTAMP);
+
+        // auto create a track segment as necessary
+        if (trackId < 0 && prefs != null)
+            trackId = createSegment(timestamp, userTitle, userUid, prefs);
+
+        if (trackId >= 0)
+            segmentIds.put(userUid, trackId);
+        return trackId;
+    }
+
+    /**
+     * Drops all cached segment ids that refer to the specified segment
+     */
+    private void invalidateSegmentId(int trackId) {
+        final Iterator<Integer> it = segmentIds.values().iterator();
+        while (it.hasNext()) {
+            if (it.next() == trackId)
+                it.remove();
+        }
+    }
+
+    private static void bindCrumb(StatementIface stmt, int trackId,
+            GeoPoint gp, long timestamp, double speed, double bearing,
+            String geopointSource, String altitudeSource) {
+        stmt.bind(1, trackId);
+        stmt.bind(2, timestamp);
+        stmt.bind(3, gp.getLatitude());
+        stmt.bind(4, gp.getLongitude());
+        stmt.bind(5, gp.getAltitude());
+        stmt.bind(6, gp.getCE());
+        stmt.bind(7, gp.getLE());
+        stmt.bind(8, bearing);
+        stmt.bind(9, speed);
+        stmt.bind(10, geopointSource);
+        stmt.bind(11, altitudeSource);
+        stmt.bind(12, gp.getLongitude());
+        stmt.bind(13, gp.getLatitude());
+    }
+
+    private static Crumb newCrumb(GeoPoint gp, int trackId, long timestamp,
+            double speed, double bearing) {
+        Crumb c = new Crumb(gp, UUID.randomUUID().toString());
+        c.setDirection(bearing);
+        c.timestamp = timestamp;
+        c.speed = (float) speed;
+        c.bearing = (float) bearing;
+        c.trackDBID = trackId;
+        return c;
     }
 
     /**
@@ -608,7 +1188,7 @@ public class CrumbDatabase {
             //see if we were provided a track ID
             if (trackId < 0) {
                 //just use most recent
-                trackId = getCurrentSegmentId(userUid, SEG_COLUMN_TIMESTAMP);
+                trackId = querySegmentId(userUid, SEG_COLUMN_TIMESTAMP);
             }
 
             // auto create a track segment as necessary
@@ -619,44 +1199,13 @@ public class CrumbDatabase {
             //Log.d(TAG, "creating crumb: " + userUid + ", " + timestamp +
             //    ", with segment id: " + trackId);
 
-            Crumb c = new Crumb(gp, UUID.randomUUID().toString());
-            c.setDirection(bearing);
-            c.timestamp = timestamp;
-            c.speed = (float) speed;
-            c.bearing = (float) bearing;
-            c.trackDBID = trackId;
+            Crumb c = newCrumb(gp, trackId, timestamp, speed, bearing);
 
             StatementIface insertStmt = null;
             try {
-                insertStmt = crumbdb.compileStatement(
-                        "INSERT INTO " + BREADCRUMB_TABLE_NAME2 +
-                                "(" + COLUMN_SEGMENT_ID + ", " +
-                                COLUMN_TIMESTAMP + ", " +
-                                COLUMN_LAT + ", " +
-                                COLUMN_LON + ", " +
-                                COLUMN_ALT + ", " +
-                                COLUMN_CE + ", " +
-                                COLUMN_LE + ", " +
-                                COLUMN_BEARING + ", " +
-                                COLUMN_SPEED + ", " +
-                                COLUMN_POINT_SOURCE + ", " +
-                                COLUMN_ALTITUDE_SOURCE + ", " +
-                                COLUMN_POINT_GEOM + ") " +
-                                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, MakePoint(?,?,4326))");
-
-                insertStmt.bind(1, trackId);
-                insertStmt.bind(2, timestamp);
-                insertStmt.bind(3, gp.getLatitude());
-                insertStmt.bind(4, gp.getLongitude());
-                insertStmt.bind(5, gp.getAltitude());
-                insertStmt.bind(6, gp.getCE());
-                insertStmt.bind(7, gp.getLE());
-                insertStmt.bind(8, bearing);
-                insertStmt.bind(9, speed);
-                insertStmt.bind(10, geopointSource);
-                insertStmt.bind(11, altitudeSource);
-                insertStmt.bind(12, gp.getLongitude());
-                insertStmt.bind(13, gp.getLatitude());
+                insertStmt = crumbdb.compileStatement(INSERT_CRUMB_SQL);
+                bindCrumb(insertStmt, trackId, gp, timestamp, speed, bearing,
+                        geopointSource, altitudeSource);
                 insertStmt.execute();
             } finally {
                 if (insertStmt != null)
@@ -682,11 +1231,11 @@ public class CrumbDatabase {
      */
     private int createSegment(long timestamp, String userTitle, String userUid,
             final SharedPreferences prefs) {
-        createSegment(timestamp, BreadcrumbReceiver.getNextColor(prefs),
+        createSegmentImpl(timestamp, BreadcrumbReceiver.getNextColor(prefs),
                 BreadcrumbReceiver.getTrackTitle(prefs),
                 BreadcrumbReceiver.DEFAULT_LINE_STYLE, userTitle, userUid,
                 false);
-        return getCurrentSegmentId(userUid, SEG_COLUMN_TIMESTAMP);
+        return querySegmentId(userUid, SEG_COLUMN_TIMESTAMP);
     }
 
     /**
@@ -706,6 +1255,15 @@ public class CrumbDatabase {
             final int color,
             String title, final String style, String userTitle, String userUid,
             boolean bStitch) {
+        // queued crumbs belong to the previous segment
+        flush();
+        createSegmentImpl(timestamp, color, title, style, userTitle, userUid,
+                bStitch);
+    }
+
+    private void createSegmentImpl(final long timestamp, final int color,
+            String title, final String style, String userTitle, String userUid,
+            boolean bStitch) {
 
         if (FileSystemUtils.isEmpty(title) || timestamp < 0) {
             Log.w(TAG, "Unable to create segment w/out title and timestamp");
@@ -726,7 +1284,8 @@ public class CrumbDatabase {
 
         try {
             Log.d(TAG, "creating segment: " + title + ", for " + userUid);
-            int previousSegmentId = getCurrentSegmentId(userUid,
+            segmentIds.remove(userUid);
+            int previousSegmentId = querySegmentId(userUid,
                     SEG_COLUMN_TIMESTAMP);
 
             StatementIface insertStmt = null;
@@ -753,13 +1312,15 @@ public class CrumbDatabase {
                     insertStmt.close();
             }
 
+            segmentIds.remove(userUid);
+
             if (bStitch && previousSegmentId >= 0) {
                 try {
                     Log.d(TAG,
                             "Stitching new segment with previous segment for UID: "
                                     + userUid);
                     //get last point from previous segment
-                    CrumbPoint c = getLastCrumb(previousSegmentId);
+                    CrumbPoint c = queryLastCrumb(previousSegmentId);
                     if (c != null && c.gp.isValid()) {
                         //add last point to new segment
                         persist(c.gp, userUid, userTitle, c.timestamp,
@@ -789,11 +1350,17 @@ public class CrumbDatabase {
             return;
         }
 
+        flush();
+        invalidateSegmentId(track_dbid);
         try {
             String sql = "DELETE FROM " + BREADCRUMB_TABLE_NAME2 +
                     " WHERE " + COLUMN_SEGMENT_ID + " = " + track_dbid;
             crumbdb.execute(sql, null);
 
+            sql = "DELETE FROM " + BLOCK_TABLE_NAME +
+                    " WHERE " + BLOCK_COLUMN_SEGMENT_ID + " = " + track_dbid;
+            crumbdb.execute(sql, null);
+
             //remove segment
             sql = "DELETE FROM " + SEGMENT_TABLE_NAME +
                     " WHERE " + SEG_COLUMN_ID + " = " + track_dbid;
@@ -810,6 +1377,11 @@ public class CrumbDatabase {
      * @return Last crumb point
      */
     public synchronized CrumbPoint getLastCrumb(int trackDbId) {
+        flush();
+        return queryLastCrumb(trackDbId);
+    }
+
+    private CrumbPoint queryLastCrumb(int trackDbId) {
         if (trackDbId < 0) {
             Log.w(TAG, "Unable to get crumbs w/out trackID");
             return null;
@@ -821,16 +1393,39 @@ public class CrumbDatabase {
                 " WHERE " + COLUMN_SEGMENT_ID + " = " + trackDbId +
                 " ORDER BY " + COLUMN_TIMESTAMP + " DESC LIMIT 1";
 
+        CrumbPoint last = null;
         CursorIface result = null;
         try {
             result = crumbdb.query(sql, null);
             if (result.moveToNext())
-                return crumbPointFromCursor(result);
+                last = crumbPointFromCursor(result);
+        } finally {
+            if (result != null)
+                result.close();
+        }
+
+        // late crumbs may have been packed after the newest row
+        sql = "SELECT " + BLOCK_COLUMN_DATA + " FROM " + BLOCK_TABLE_NAME +
+                " WHERE " + BLOCK_COLUMN_SEGMENT_ID + " = " + trackDbId +
+                " AND " + BLOCK_COLUMN_LOD + " = 0" +
+                " ORDER BY " + BLOCK_COLUMN_END + " DESC LIMIT 1";
+        result = null;
+        try {
+            result = crumbdb.query(sql, null);
+            if (result.moveToNext()) {
+                final List<CrumbPoint> packed = decodeBlock(
+                        result.getBlob(0));
+                if (!packed.isEmpty()) {
+                    final CrumbPoint c = packed.get(packed.size() - 1);
+                    if (last == null || c.timestamp > last.timestamp)
+                        last = c;
+                }
+            }
         } finally {
             if (result != null)
                 result.close();
         }
-        return null;
+        return last;
     }
 
     /**
@@ -842,6 +1437,7 @@ public class CrumbDatabase {
     @Deprecated
     @DeprecatedApi(since = "4.1", forRemoval = false)
     public synchronized List<Crumb> getCrumbs(int trackDbId) {
+        flush();
         List<Crumb> crumbs = new ArrayList<>();
         if (trackDbId < 0) {
             Log.w(TAG, "Unable to get crumbs w/out trackID");
@@ -854,6 +1450,15 @@ public class CrumbDatabase {
                 " WHERE " + COLUMN_SEGMENT_ID + " = " + trackDbId +
                 " ORDER BY " + COLUMN_TIMESTAMP + " ASC";
 
+        final List<CrumbPoint> packed = new ArrayList<>();
+        queryBlocks(trackDbId, 0, packed);
+        for (CrumbPoint p : packed) {
+            Crumb c = newCrumb(p.gp, trackDbId, p.timestamp, p.speed,
+                    p.bearing);
+            c.crumbDBID = -1;
+            crumbs.add(c);
+        }
+
         CursorIface result = null;
         try {
             result = crumbdb.query(sql, null);
@@ -869,15 +1474,29 @@ public class CrumbDatabase {
                 result.close();
         }
 
+        if (!packed.isEmpty()) {
+            Collections.sort(crumbs, CRUMB_TIMESTAMP_ORDER);
+        }
         return crumbs;
     }
 
     public synchronized List<CrumbPoint> getCrumbPoints(int trackDbId) {
-        List<CrumbPoint> points = new ArrayList<>();
+        flush();
         if (trackDbId < 0) {
             Log.w(TAG, "Unable to get crumbs w/out trackID");
-            return points;
+            return new ArrayList<>();
         }
+        return queryCrumbPoints(trackDbId, 0);
+    }
+
+    /**
+     * Get the crumbs of a track at full resolution, packed and unpacked, in
+     * timestamp order
+     */
+    private List<CrumbPoint> queryCrumbPoints(int trackDbId, int lod) {
+        List<CrumbPoint> points = new ArrayList<>();
+        queryBlocks(trackDbId, lod, points);
+        final int packed = points.size();
 
         String sql = "SELECT _id, _sid, timestamp, lat, lon, alt, ce, le,"
                 + " bearing, speed, ptsource, altsource" +
@@ -889,52 +1508,151 @@ public class CrumbDatabase {
         try {
             result = crumbdb.query(sql, null);
 
+            List<CrumbPoint> unpacked = new ArrayList<>();
             CrumbPoint c;
             while (result.moveToNext()) {
                 c = crumbPointFromCursor(result);
                 if (c.gp.isValid())
-                    points.add(c);
+                    unpacked.add(c);
             }
+            if (lod > 0)
+                unpacked = CrumbBlock.simplify(unpacked, LOD_TOLERANCES[lod]);
+            points.addAll(unpacked);
         } finally {
             if (result != null)
                 result.close();
         }
 
+        // rows normally follow the packed crumbs, unless they arrived late
+        if (packed > 0 && packed < points.size()
+                && points.get(packed).timestamp < points
+                        .get(packed - 1).timestamp)
+            Collections.sort(points, TIMESTAMP_ORDER);
         return points;
     }
 
     public synchronized void getCrumbPoints(int trackDbId,
             TrackPolyline track) {
+        getCrumbPoints(trackDbId, track, 0d);
+    }
+
+    /**
+     * Populate the track with its crumbs, at the coarsest level of detail
+     * whose error does not exceed the specified resolution
+     *
+     * @param trackDbId Track database ID
+     * @param track The track to populate
+     * @param resolution The resolution, in meters, that the track will be
+     *            displayed at. Specify <code>0</code> for all crumbs.
+     */
+    public synchronized void getCrumbPoints(int trackDbId,
+            TrackPolyline track, double resolution) {
+        flush();
         if (trackDbId < 0) {
             Log.w(TAG, "Unable to get crumbs w/out trackID");
             return;
         }
 
-        String sql = "SELECT _id, _sid, timestamp, lat, lon, alt, ce, le,"
-                + " bearing, speed, ptsource, altsource" +
-                " FROM " + BREADCRUMB_TABLE_NAME2 +
-                " WHERE " + COLUMN_SEGMENT_ID + " = " + trackDbId +
-                " ORDER BY " + COLUMN_TIMESTAMP + " ASC";
-
         CrumbPoint last = null;
+        for (CrumbPoint c : queryCrumbPoints(trackDbId,
+                getLevelOfDetail(resolution))) {
+            track.addPoint(c.gpm, false);
+            last = c;
+        }
+        if (last != null)
+            track.setMetaLong("lastcrumbtime", last.timestamp);
+        track.refreshPoints();
+    }
+
+    /**
+     * @return the coarsest level of detail whose error does not exceed the
+     *         resolution
+     */
+    private static int getLevelOfDetail(double resolution) {
+        int lod = 0;
+        while (lod + 1 < LOD_TOLERANCES.length
+                && LOD_TOLERANCES[lod + 1] <= resolution)
+            lod++;
+        return lod;
+    }
+
+    /**
+     * Reads the packed crumbs of a track. For each time bucket, the coarsest
+     * stored level of detail not exceeding <code>lod</code> is used.
+     */
+    private void queryBlocks(int trackDbId, int lod, List<CrumbPoint> points) {
+        String sql = "SELECT " + BLOCK_COLUMN_START + ", "
+                + BLOCK_COLUMN_DATA + " FROM " + BLOCK_TABLE_NAME +
+                " WHERE " + BLOCK_COLUMN_SEGMENT_ID + " = " + trackDbId +
+                " AND " + BLOCK_COLUMN_LOD + " <= " + lod +
+                " ORDER BY " + BLOCK_COLUMN_START + " ASC, "
+                + BLOCK_COLUMN_LOD + " DESC";
+
         CursorIface result = null;
         try {
             result = crumbdb.query(sql, null);
-            CrumbPoint c;
+            long bucket = Long.MIN_VALUE;
             while (result.moveToNext()) {
-                c = crumbPointFromCursor(result);
-                if (c.gp.isValid()) {
-                    track.addPoint(c.gpm, false);
-                    last = c;
+                if (result.getLong(0) == bucket)
+                    continue;
+                bucket = result.getLong(0);
+                points.addAll(decodeBlock(result.getBlob(1)));
+            }
+        } finally {
+            if (result != null)
+                result.close();
+        }
+    }
+
+    /**
+     * Reads the full resolution packed crumbs of all tracks for the user,
+     * within the time range
+     */
+    private void queryBlocks(String uid, long startTime, long endTime,
+            SparseArray<List<CrumbPoint>> crumbMap) {
+        String sql = "SELECT blktab." + BLOCK_COLUMN_SEGMENT_ID + ", " +
+                "blktab." + BLOCK_COLUMN_DATA +
+                " FROM " + BLOCK_TABLE_NAME + " blktab" +
+                " INNER JOIN " + SEGMENT_TABLE_NAME
+                + " segtab ON blktab._sid=segtab._id" +
+                " WHERE segtab." + SEG_COLUMN_USER_UID + " = ?" +
+                " AND blktab." + BLOCK_COLUMN_LOD + " = 0" +
+                " AND blktab." + BLOCK_COLUMN_END + " >= " + startTime;
+        if (endTime > 0)
+            sql += " AND blktab." + BLOCK_COLUMN_START + " <= " + endTime;
+
+        CursorIface result = null;
+        try {
+            result = crumbdb.query(sql, new String[] {
+                    uid
+            });
+            while (result.moveToNext()) {
+                final int trackId = result.getInt(0);
+                List<CrumbPoint> crumbs = crumbMap.get(trackId);
+                for (CrumbPoint c : decodeBlock(result.getBlob(1))) {
+                    if (c.timestamp < startTime
+                            || (endTime > 0 && c.timestamp > endTime))
+                        continue;
+                    if (crumbs == null) {
+                        crumbs = new ArrayList<>();
+                        crumbMap.put(trackId, crumbs);
+                    }
+                    crumbs.add(c);
                 }
             }
         } finally {
             if (result != null)
                 result.close();
         }
-        if (last != null)
-            track.setMetaLong("lastcrumbtime", last.timestamp);
-        track.refreshPoints();
+    }
+
+    private static List<CrumbPoint> decodeBlock(byte[] data) {
+        try {
+            return CrumbBlock.decode(data);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Skipping unreadable crumb block", e);
+            return new ArrayList<>();
+        }
     }
 
     /**
@@ -947,6 +1665,7 @@ public class CrumbDatabase {
      */
     public synchronized List<TrackPolyline> getTracks(String uid,
             long startTime, long endTime, TrackProgress progress) {
+        flush();
         List<TrackPolyline> tracks = new ArrayList<>();
         if (FileSystemUtils.isEmpty(uid)) {
             Log.w(TAG, "Unable to get crumbs w/out user UID");
@@ -1019,9 +1738,12 @@ public class CrumbDatabase {
                 result.close();
         }
 
+        queryBlocks(uid, startTime, endTime, crumbMap);
+
         for (int i = 0; i < crumbMap.size(); i++) {
             int trackDBID = crumbMap.keyAt(i);
             List<CrumbPoint> crumbs = crumbMap.valueAt(i);
+            Collections.sort(crumbs, TIMESTAMP_ORDER);
             if (progress != null && progress.cancelled())
                 break;
             TrackPolyline track = getTrack(trackDBID, crumbs);
@@ -1052,6 +1774,7 @@ public class CrumbDatabase {
      */
     public synchronized List<Crumb> getCrumbs(String uid, long startTime,
             long endTime) {
+        flush();
         List<Crumb> crumbs = new ArrayList<>();
         if (FileSystemUtils.isEmpty(uid)) {
             Log.w(TAG, "Unable to get crumbs w/out user UID");
@@ -1087,6 +1810,17 @@ public class CrumbDatabase {
 
         Log.d(TAG, "getCrumbs: " + sql);
 
+        SparseArray<List<CrumbPoint>> packed = new SparseArray<>();
+        queryBlocks(uid, startTime, endTime, packed);
+        for (int i = 0; i < packed.size(); i++) {
+            for (CrumbPoint p : packed.valueAt(i)) {
+                Crumb c = newCrumb(p.gp, packed.keyAt(i), p.timestamp,
+                        p.speed, p.bearing);
+                c.crumbDBID = -1;
+                crumbs.add(c);
+            }
+        }
+
         CursorIface result = null;
         try {
             result = crumbdb.query(sql, null);
@@ -1102,6 +1836,9 @@ public class CrumbDatabase {
                 result.close();
         }
 
+        if (packed.size() > 0) {
+            Collections.sort(crumbs, CRUMB_TIMESTAMP_ORDER);
+        }
         return crumbs;
     }
 
@@ -1236,6 +1973,7 @@ public class CrumbDatabase {
      * @return
      */
     public TrackPolyline getTrack(int trackDbId, List<CrumbPoint> points) {
+        flush();
         if (trackDbId < 0) {
             Log.w(TAG, "Cannot get track for id: " + trackDbId);
             return null;
@@ -1288,6 +2026,7 @@ public class CrumbDatabase {
     }
 
     public TrackPolyline getTrack(int trackDbId, boolean bPoints) {
+        flush();
         if (trackDbId < 0) {
             Log.w(TAG, "Cannot get track for id: " + trackDbId);
             return null;
@@ -1338,6 +2077,7 @@ public class CrumbDatabase {
      * @return
      */
     public TrackPolyline getTrackByCallsign(String callsign, String uid) {
+        flush();
         String sql = "SELECT * FROM " + SEGMENT_TABLE_NAME +
                 " WHERE " + SEG_COLUMN_USER_TITLE + "= ?  AND "
                 + SEG_COLUMN_USER_UID + "= ? LIMIT 1";
@@ -1347,7 +2087,7 @@ public class CrumbDatabase {
         TrackPolyline track = null;
         CursorIface result = null;
         try {
-            int currentTrackId = getCurrentSegmentId(uid, SEG_COLUMN_TIMESTAMP);
+            int currentTrackId = querySegmentId(uid, SEG_COLUMN_TIMESTAMP);
 
             result = crumbdb.query(sql, new String[] {
                     callsign, uid
@@ -1378,6 +2118,7 @@ public class CrumbDatabase {
      */
     public TrackPolyline getTrackByTrackTitle(final String title,
             final String uid) {
+        flush();
         String sql = "SELECT * FROM " + SEGMENT_TABLE_NAME +
                 " WHERE " + SEG_COLUMN_TITLE + "= ? AND " + SEG_COLUMN_USER_UID
                 + "= ? LIMIT 1";
@@ -1387,7 +2128,7 @@ public class CrumbDatabase {
         TrackPolyline track = null;
         CursorIface result = null;
         try {
-            int currentTrackId = getCurrentSegmentId(uid, SEG_COLUMN_TIMESTAMP);
+            int currentTrackId = querySegmentId(uid, SEG_COLUMN_TIMESTAMP);
 
             result = crumbdb.query(sql, new String[] {
                     title, uid
@@ -1426,6 +2167,20 @@ public class CrumbDatabase {
      */
     public synchronized List<TrackPolyline> getTracks(final String uid,
             boolean bHideTemp, boolean bDisplayAll, TrackProgress progress) {
+        return getTracks(uid, bHideTemp, bDisplayAll, progress, 0d);
+    }
+
+    /**
+     * Get tracks for the specified user UID, see
+     * {@link #getTracks(String, boolean, boolean, TrackProgress)}
+     *
+     * @param resolution The resolution, in meters, that the tracks will be
+     *            displayed at. Specify <code>0</code> for all crumbs.
+     */
+    public synchronized List<TrackPolyline> getTracks(final String uid,
+            boolean bHideTemp, boolean bDisplayAll, TrackProgress progress,
+            double resolution) {
+        flush();
         //query all segments, mapped by ID. Note Polyline point lists are currently immutable so we
         //also track list of points here
         List<TrackPolyline> tracks = new ArrayList<>();
@@ -1434,7 +2189,7 @@ public class CrumbDatabase {
         //select all segments, sort by timestamp
         CursorIface result = null;
         try {
-            int currentTrackId = getCurrentSegmentId(uid, SEG_COLUMN_TIMESTAMP);
+            int currentTrackId = querySegmentId(uid, SEG_COLUMN_TIMESTAMP);
 
             //now get list of segments
             String sql = "SELECT * FROM " + SEGMENT_TABLE_NAME +
@@ -1485,7 +2240,7 @@ public class CrumbDatabase {
             TrackPolyline track = tracks.get(i);
             int trackId = track.getMetaInteger(CrumbDatabase.META_TRACK_DBID,
                     -1);
-            getCrumbPoints(trackId, track);
+            getCrumbPoints(trackId, track, resolution);
             totalCrumbs += track.getNumPoints();
 
             if (bDisplayAll) {
@@ -1530,6 +2285,20 @@ public class CrumbDatabase {
      */
     public synchronized List<TrackPolyline> getTracks(final int[] trackIds,
             TrackProgress progress) {
+        return getTracks(trackIds, progress, 0d);
+    }
+
+    /**
+     * Get tracks for the specified track IDs
+     *
+     * @param trackIds the list of track id's
+     * @param progress the progress callback for getting the tracks.
+     * @param resolution The resolution, in meters, that the tracks will be
+     *            displayed at. Specify <code>0</code> for all crumbs.
+     * @return a list of tracks for a given set of track ids.
+     */
+    public synchronized List<TrackPolyline> getTracks(final int[] trackIds,
+            TrackProgress progress, double resolution) {
         if (trackIds == null || trackIds.length < 1) {
             Log.w(TAG, "Cannot create tracks w/out track IDs");
             return null;
@@ -1547,11 +2316,12 @@ public class CrumbDatabase {
                 progress.onProgress((int) (Math.round(i * percentPerTrack)));
             }
 
-            TrackPolyline track = getTrack(trackIds[i], true);
+            TrackPolyline track = getTrack(trackIds[i], false);
             if (track == null) {
                 Log.w(TAG, "Cannot create track for id: " + trackIds[i]);
                 continue;
             }
+            getCrumbPoints(trackIds[i], track, resolution);
 
             Log.d(TAG, "Adding track: " + trackIds[i]);
             toReturn.add(track);
@@ -1567,6 +2337,7 @@ public class CrumbDatabase {
      * @return
      */
     public synchronized List<TrackUser> getUserList() {
+        flush();
         //query all segments
         List<TrackUser> trackUsers = new ArrayList<>();
 
@@ -1642,7 +2413,7 @@ public class CrumbDatabase {
             String tempUid = p.getMetaString(CrumbDatabase.META_TRACK_NODE_UID,
                     null);
             if (!FileSystemUtils.isEmpty(tempUid)) {
-                mostRecentTrackForUID = getCurrentSegmentId(tempUid,
+                mostRecentTrackForUID = querySegmentId(tempUid,
                         SEG_COLUMN_TIMESTAMP);
             }
         }
@@ -1750,8 +2521,8 @@ public class CrumbDatabase {
      * @param track
      * @return
      */
-    public int setServerTrack(String callsign, String uid, long startTime,
-            Track track,
+    public synchronized int setServerTrack(String callsign, String uid,
+            long startTime, Track track,
             SharedPreferences prefs) {
         if (FileSystemUtils.isEmpty(callsign) || FileSystemUtils.isEmpty(uid)) {
             Log.w(TAG, "Cannot set server track without callsign/uid");
@@ -1787,11 +2558,17 @@ public class CrumbDatabase {
                     Log.d(TAG,
                             "Deleting previous server track with segment id: "
                                     + trackId);
+                    invalidateSegmentId(trackId);
 
                     String sql = "DELETE FROM " + BREADCRUMB_TABLE_NAME2 +
                             " WHERE " + COLUMN_SEGMENT_ID + "=" + trackId;
                     crumbdb.execute(sql, null);
 
+                    sql = "DELETE FROM " + BLOCK_TABLE_NAME +
+                            " WHERE " + BLOCK_COLUMN_SEGMENT_ID + "="
+                            + trackId;
+                    crumbdb.execute(sql, null);
+
                     sql = "DELETE FROM " + SEGMENT_TABLE_NAME +
                             " WHERE " + SEG_COLUMN_ID + "=" + trackId;
                     crumbdb.execute(sql, null);
@@ -1801,11 +2578,11 @@ public class CrumbDatabase {
             }
 
             //wrap new segment with title & uid
-            createSegment(startTime, BreadcrumbReceiver.getNextColor(prefs),
+            createSegmentImpl(startTime, BreadcrumbReceiver.getNextColor(prefs),
                     segTitle,
                     BreadcrumbReceiver.DEFAULT_LINE_STYLE, callsign, uid,
                     false);
-            trackId = getCurrentSegmentId(uid, SEG_COLUMN_ID);
+            trackId = querySegmentId(uid, SEG_COLUMN_ID);
             if (trackId < 0) {
                 Log.w(TAG, "Failed to create server track");
                 return -1;
@@ -2006,4 +2783,34 @@ public class CrumbDatabase {
     public interface OnCrumbListener {
         void onCrumbAdded(int trackId, Crumb c);
     }
+
+    /**
+     * A crumb that has been queued but not yet written
+     */
+    private static final class PendingCrumb {
+        final GeoPoint point;
+        final String userUid;
+        final String userTitle;
+        final long timestamp;
+        final double speed;
+        final double bearing;
+        final String geopointSource;
+        final String altitudeSource;
+        final SharedPreferences prefs;
+
+        PendingCrumb(GeoPoint point, String userUid, String userTitle,
+                long timestamp, double speed, double bearing,
+                String geopointSource, String altitudeSource,
+                SharedPreferences prefs) {
+            this.point = point;
+            this.userUid = userUid;
+            this.userTitle = userTitle;
+            this.timestamp = timestamp;
+            this.speed = speed;
+            this.bearing = bearing;
+            this.geopointSource = geopointSource;
+            this.altitudeSource = altitudeSource;
+            this.prefs = prefs;
+        }
+    }
 }
@@ -31,6 +31,7 @@ public class GetTrackHistoryTask extends AsyncTask<Void, Integer, Void>
     private final Context _context;
     private final boolean _bHideTemp;
     private final boolean _bDisplayAll;
+    private final double _resolution;
     private boolean _cancelled = false;
 
     /**
@@ -41,21 +42,44 @@ public class GetTrackHistoryTask extends AsyncTask<Void, Integer, Void>
     public GetTrackHistoryTask(Context context, String uid,
             final boolean bHideTemp, final boolean bDisplayAll,
             Callback cb) {
+        this(context, uid, bHideTemp, bDisplayAll, 0d, cb);
+    }
+
+    /**
+     * @param resolution The resolution, in meters, that the tracks will be
+     *            displayed at. Tracks are loaded at the coarsest level of
+     *            detail that does not exceed it.
+     */
+    public GetTrackHistoryTask(Context context, String uid,
+            final boolean bHideTemp, final boolean bDisplayAll,
+            double resolution, Callback cb) {
         this.uid = uid;
         this.callback = cb;
         this._context = context;
         this._bHideTemp = bHideTemp;
         this._bDisplayAll = bDisplayAll;
+        this._resolution = resolution;
         this._trackIds = null;
     }
 
     public GetTrackHistoryTask(Context context, String uid,
             final int[] trackIds, Callback cb) {
+        this(context, uid, trackIds, 0d, cb);
+    }
+
+    /**
+     * @param resolution The resolution, in meters, that the tracks will be
+     *            displayed at. Tracks are loaded at the coarsest level of
+     *            detail that does not exceed it.
+     */
+    public GetTrackHistoryTask(Context context, String uid,
+            final int[] trackIds, double resolution, Callback cb) {
         this.uid = uid;
         this.callback = cb;
         this._context = context;
         this._bHideTemp = true;
         this._bDisplayAll = false;
+        this._resolution = resolution;
         this._trackIds = trackIds;
     }
 
@@ -87,10 +111,11 @@ public class GetTrackHistoryTask extends AsyncTask<Void, Integer, Void>
 
         if (_trackIds != null && _trackIds.length > 0) {
             Log.d(TAG, "Executing GetTrackHistoryTask track Ids: " + uid);
-            tracks = db.getTracks(_trackIds, this);
+            tracks = db.getTracks(_trackIds, this, _resolution);
         } else {
             Log.d(TAG, "Executing GetTrackHistoryTask by UID: " + uid);
-            tracks = db.getTracks(uid, _bHideTemp, _bDisplayAll, this);
+            tracks = db.getTracks(uid, _bHideTemp, _bDisplayAll, this,
+                    _resolution);
         }
 
         onProgress(99);
@@ -436,17 +436,14 @@ public class ContourLinesOverlay extends AbstractHierarchyListItem
                             polyLine.setMaxRenderResolution(300d);
                             List<GeoPointMetaData> pts = new ArrayList<>();
 
-                            if (lineString.getNumPoints() > 1) {
+                            final double[] xy = lineString.getPoints(2);
+                            if (xy.length > 2) {
                                 if (isCancelled.get()) {
                                     return;
                                 }
-                                for (int i = 0; i < lineString
-                                        .getNumPoints(); i++) {
+                                for (int i = 0; i < xy.length; i += 2) {
                                     pts.add(new GeoPointMetaData(
-                                            new GeoPoint(
-                                                    lineString.getY(i),
-                                                    lineString
-                                                            .getX(i),
+                                            new GeoPoint(xy[i + 1], xy[i],
                                                     ele)));
                                 }
                             }
@@ -161,6 +161,10 @@ public class CommsMapComponent extends AbstractMapComponent implements
     // should not be used for anything more than that.
     private final ConcurrentLinkedQueue<CommsLogger> loggers = new ConcurrentLinkedQueue<>();
 
+    // parses and dispatches inbound CoT off of the receiving thread
+    private CotIngestPipeline inboundPipeline;
+    private static final int INBOUND_CAPACITY = 8192;
+
     private static class HwAddress {
         public final byte[] addr;
 
@@ -336,6 +340,23 @@ public class CommsMapComponent extends AbstractMapComponent implements
 
         this.outboundLogger = new OutboundLogger(context);
         loggers.add(this.outboundLogger);
+
+        this.inboundPipeline = new CotIngestPipeline(
+                new CotIngestPipeline.Handler() {
+                    @Override
+                    public void dispatch(String message,
+                            String rxEndpointId) {
+                        processMessage(message, rxEndpointId);
+                    }
+
+                    @Override
+                    public void log(String message, String rxEndpointId) {
+                        logMessage(message, rxEndpointId);
+                    }
+                },
+                Math.max(1, Math.min(4,
+                        Runtime.getRuntime().availableProcessors() / 2)),
+                INBOUND_CAPACITY);
         try {
             Log.d(TAG,
                     "acquire the multicast lock so the wifi does not deep sleep");
@@ -914,6 +935,9 @@ public class CommsMapComponent extends AbstractMapComponent implements
 
         AtakBroadcast.getInstance().unregisterSystemReceiver(rescanReceiver);
 
+        if (inboundPipeline != null)
+            inboundPipeline.dispose();
+
         // dispose of the registered loggers
         for (CommsLogger logger : loggers) {
             try {
@@ -1829,6 +1853,9 @@ public class CommsMapComponent extends AbstractMapComponent implements
      * is provided without modification. Some basic validity checking
      * is done prior to passing it off to listeners, but it is limited
      * and should not be relied upon for anything specific.
+     * The message is parsed and dispatched asynchronously by the
+     * {@link CotIngestPipeline}; this method only blocks when the
+     * pipeline is backed up.
      *
      * @param message the CoT message that was received
      * @param rxEndpointId identifier of NetworkInterface upon which
@@ -1850,7 +1877,27 @@ public class CommsMapComponent extends AbstractMapComponent implements
             }
         }
 
-        CotEvent cotEvent = CotEvent.parse(message);
+        inboundPipeline.submit(message, rxEndpointId);
+    }
+
+    /**
+     * Returns the pipeline processing inbound CoT messages, which reports
+     * queue depth, coalescing and backpressure metrics.
+     *
+     * @return the inbound pipeline
+     */
+    public CotIngestPipeline getInboundPipeline() {
+        return inboundPipeline;
+    }
+
+    private void processMessage(final String message,
+            final String rxEndpointId) {
+        // most inbound events are filtered or deduplicated on uid, type and
+        // point alone; only build the detail for those that need it
+        CotEvent cotEvent = CotEvent.parseLazy(message);
+        if (cotEvent == null)
+            return;
+
         Bundle extras = new Bundle();
         extras.putString("from", cotEvent.getUID());
         if (rxEndpointId != null) {
@@ -1861,21 +1908,33 @@ public class CommsMapComponent extends AbstractMapComponent implements
             }
         }
 
-        if (cotEvent != null)
-            sendCoTInternally(cotEvent, extras);
+        sendCoTInternally(cotEvent, extras);
+    }
 
+    private void logMessage(final String message, final String rxEndpointId) {
+        boolean parsed = false;
+        CotEvent cotEvent = null;
+        String appsStreamEndpoint = null;
         for (CommsLogger logger : loggers) {
+            // the network traffic log is always registered but rarely
+            // enabled; only parse the message for a logger that will use it
+            if (logger == outboundLogger && !outboundLogger.isLogging())
+                continue;
+            if (!parsed) {
+                parsed = true;
+                cotEvent = CotEvent.parseLazy(message);
+                if (rxEndpointId != null) {
+                    synchronized (streamPorts) {
+                        appsStreamEndpoint = streamKeys.get(rxEndpointId);
+                    }
+                }
+            }
             try {
-
-                String appsStreamEndpoint = (rxEndpointId != null)
-                        ? streamKeys.get(rxEndpointId)
-                        : null;
                 logger.logReceive(cotEvent, rxEndpointId, appsStreamEndpoint);
             } catch (Exception err) {
                 Log.e(TAG, "error occurred with a logger", err);
             }
         }
-
     }
 
     public void sendCoTInternally(final CotEvent cotEvent, Bundle extras) {
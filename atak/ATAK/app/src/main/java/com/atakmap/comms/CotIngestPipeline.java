@@ -0,0 +1,452 @@
+
+package com.atakmap.comms;
+
+import com.atakmap.coremap.log.Log;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Staged processing of inbound CoT messages. Messages are accepted from the
+ * receiving thread and handed to a fixed number of workers for parsing and
+ * dispatch, with a separate lane feeding the {@link CommsLogger}s.
+ *
+ * <P>Messages are partitioned over the workers by UID, so all of the messages
+ * for a given UID are processed sequentially in the order they were received.
+ * A delete (an event of type <code>t-x-d-d</code>) is partitioned by the UID
+ * it links to, so it is ordered with the updates for the item it deletes.
+ * While a position update (an event of type <code>a-*</code>) is waiting to be
+ * processed, a subsequent position update of the same type and UID replaces it
+ * in place, so a burst of updates for one entity costs a single dispatch and
+ * the latest position is never queued behind its own predecessors.
+ *
+ * <P>Each worker's queue is bounded. When a queue is full, {@link #submit}
+ * blocks the receiving thread until space is available. The logger lane is
+ * also bounded, but drops messages rather than holding up ingest.
+ */
+public class CotIngestPipeline {
+
+    private static final String TAG = "CotIngestPipeline";
+
+    private static final String DELETE_TYPE = "t-x-d-d";
+
+    /**
+     * Receives the messages once they leave the pipeline.
+     */
+    public interface Handler {
+        /**
+         * Parses and dispatches the message. Invoked on a worker thread;
+         * invocations for the same UID are never concurrent.
+         *
+         * @param message The CoT message
+         * @param rxEndpointId The endpoint the message was received on, may be
+         *            <code>null</code>
+         */
+        void dispatch(String message, String rxEndpointId);
+
+        /**
+         * Logs the message. Invoked on the logger thread for every message
+         * submitted, including those that were coalesced.
+         *
+         * @param message The CoT message
+         * @param rxEndpointId The endpoint the message was received on, may be
+         *            <code>null</code>
+         */
+        void log(String message, String rxEndpointId);
+    }
+
+    private final Handler handler;
+    private final Lane[] lanes;
+    private final Worker[] workers;
+    private final LoggerLane loggerLane;
+    private final AtomicInteger nextLane = new AtomicInteger(0);
+    private volatile boolean disposed;
+
+    private final AtomicLong submitted = new AtomicLong(0L);
+    private final AtomicLong coalesced = new AtomicLong(0L);
+    private final AtomicLong dispatched = new AtomicLong(0L);
+    private final AtomicLong blocked = new AtomicLong(0L);
+    private final AtomicLong blockedTime = new AtomicLong(0L);
+    private final AtomicLong latency = new AtomicLong(0L);
+    private final AtomicLong loggerDropped = new AtomicLong(0L);
+
+    /**
+     * @param handler The handler for the messages
+     * @param numWorkers The number of workers
+     * @param capacity The total number of messages that may be queued for
+     *            dispatch; the logger lane has the same capacity
+     */
+    public CotIngestPipeline(Handler handler, int numWorkers, int capacity) {
+        if (numWorkers < 1 || capacity < numWorkers)
+            throw new IllegalArgumentException();
+
+        this.handler = handler;
+        this.lanes = new Lane[numWorkers];
+        this.workers = new Worker[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            this.lanes[i] = new Lane(capacity / numWorkers);
+            this.workers[i] = new Worker(i);
+            this.workers[i].setPriority(Thread.NORM_PRIORITY - 1);
+            this.workers[i].start();
+        }
+
+        this.loggerLane = new LoggerLane(capacity);
+        this.loggerLane.setPriority(Thread.MIN_PRIORITY);
+        this.loggerLane.start();
+    }
+
+    /**
+     * Submits a message for processing. Blocks if the queue for the message's
+     * UID is full, unless invoked from a worker.
+     *
+     * @param message The CoT message
+     * @param rxEndpointId The endpoint the message was received on, may be
+     *            <code>null</code>
+     */
+    public void submit(String message, String rxEndpointId) {
+        if (disposed || message == null)
+            return;
+
+        submitted.incrementAndGet();
+        loggerLane.offer(message, rxEndpointId);
+
+        final int tagStart = message.indexOf("<event");
+        final int tagEnd = tagEnd(message, tagStart);
+        final String type = attribute(message, tagStart, tagEnd, "type");
+        final String uid;
+        if (DELETE_TYPE.equals(type)) {
+            final int linkStart = message.indexOf("<link", tagEnd);
+            uid = attribute(message, linkStart,
+                    tagEnd(message, linkStart), "uid");
+        } else {
+            uid = attribute(message, tagStart, tagEnd, "uid");
+        }
+        final Lane lane;
+        if (uid != null)
+            lane = lanes[(uid.hashCode() & 0x7FFFFFFF) % lanes.length];
+        else
+            lane = lanes[(nextLane.getAndIncrement() & 0x7FFFFFFF)
+                    % lanes.length];
+
+        final boolean position = (type != null && type.startsWith("a-"));
+        synchronized (lane) {
+            // coalesce with the most recent pending message for the UID if
+            // both are position updates of the same type
+            if (uid != null && position) {
+                final Entry last = lane.lastByUid.get(uid);
+                if (last != null && last.position && type.equals(last.type)) {
+                    last.message = message;
+                    last.rxEndpointId = rxEndpointId;
+                    coalesced.incrementAndGet();
+                    return;
+                }
+            }
+
+            // never block a worker, a handler may submit messages
+            if (lane.queue.size() >= lane.capacity
+                    && !(Thread.currentThread() instanceof Worker)) {
+                final long start = System.nanoTime();
+                blocked.incrementAndGet();
+                while (!disposed && lane.queue.size() >= lane.capacity) {
+                    try {
+                        lane.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                blockedTime.addAndGet(System.nanoTime() - start);
+                if (disposed)
+                    return;
+            }
+
+            final Entry entry = new Entry(message, rxEndpointId, uid, type,
+                    position);
+            lane.queue.add(entry);
+            if (uid != null)
+                lane.lastByUid.put(uid, entry);
+            lane.notifyAll();
+        }
+    }
+
+    private void runLane(Lane lane) {
+        while (true) {
+            final Entry entry;
+            synchronized (lane) {
+                while (!disposed && lane.queue.isEmpty()) {
+                    try {
+                        lane.wait();
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+                if (disposed)
+                    break;
+                entry = lane.queue.poll();
+                if (entry.uid != null && lane.lastByUid.get(entry.uid) == entry)
+                    lane.lastByUid.remove(entry.uid);
+                // wake any blocked submitters
+                lane.notifyAll();
+            }
+
+            latency.addAndGet(System.nanoTime() - entry.enqueued);
+            try {
+                handler.dispatch(entry.message, entry.rxEndpointId);
+            } catch (Exception e) {
+                Log.e(TAG, "error dispatching message", e);
+            }
+            dispatched.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stops the workers. Messages that have not been processed are discarded.
+     */
+    public void dispose() {
+        disposed = true;
+        for (Lane lane : lanes) {
+            synchronized (lane) {
+                lane.queue.clear();
+                lane.lastByUid.clear();
+                lane.notifyAll();
+            }
+        }
+        synchronized (loggerLane) {
+            loggerLane.queue.clear();
+            loggerLane.notifyAll();
+        }
+    }
+
+    /**
+     * @return The number of messages awaiting dispatch
+     */
+    public int getQueueDepth() {
+        int retval = 0;
+        for (Lane lane : lanes) {
+            synchronized (lane) {
+                retval += lane.queue.size();
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * @return The number of messages awaiting logging
+     */
+    public int getLoggerQueueDepth() {
+        synchronized (loggerLane) {
+            return loggerLane.queue.size();
+        }
+    }
+
+    /**
+     * @return The number of messages submitted
+     */
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    /**
+     * @return The number of messages that were superseded by a subsequent
+     *         position update before being dispatched
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return The number of messages dispatched
+     */
+    public long getDispatchedCount() {
+        return dispatched.get();
+    }
+
+    /**
+     * @return The number of times a submitting thread was blocked on a full
+     *         queue
+     */
+    public long getBlockedCount() {
+        return blocked.get();
+    }
+
+    /**
+     * @return The total time, in milliseconds, submitting threads spent
+     *         blocked on a full queue
+     */
+    public long getBlockedTime() {
+        return blockedTime.get() / 1000000L;
+    }
+
+    /**
+     * @return The mean time, in milliseconds, a message spends queued before
+     *         it is dispatched
+     */
+    public double getAverageLatency() {
+        final long n = dispatched.get();
+        return (n > 0L) ? (latency.get() / (double) n) / 1000000d : 0d;
+    }
+
+    /**
+     * @return The number of messages not logged due to the logger lane being
+     *         full
+     */
+    public long getLoggerDroppedCount() {
+        return loggerDropped.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CotIngestPipeline {queued=" + getQueueDepth()
+                + ",submitted=" + getSubmittedCount()
+                + ",coalesced=" + getCoalescedCount()
+                + ",dispatched=" + getDispatchedCount()
+                + ",blocked=" + getBlockedCount()
+                + ",blockedTime=" + getBlockedTime()
+                + "ms,avgLatency=" + getAverageLatency()
+                + "ms,loggerDropped=" + getLoggerDroppedCount() + "}";
+    }
+
+    /**
+     * Returns the index of the end of the start tag beginning at
+     * <code>tagStart</code>, or <code>-1</code> if it cannot be found.
+     */
+    private static int tagEnd(String message, int tagStart) {
+        if (tagStart < 0)
+            return -1;
+        return message.indexOf('>', tagStart);
+    }
+
+    /**
+     * Extracts the value of an attribute of a start tag without parsing the
+     * message. Whitespace is allowed around the <code>=</code>.
+     *
+     * @param message The message
+     * @param tagStart The index of the <code>&lt;</code> opening the tag
+     * @param tagEnd The index of the <code>&gt;</code> closing the tag
+     * @param name The attribute name
+     * @return The attribute value, or <code>null</code> if the tag does not
+     *         have the attribute
+     */
+    static String attribute(String message, int tagStart, int tagEnd,
+            String name) {
+        if (tagStart < 0 || tagEnd < 0)
+            return null;
+        int idx = tagStart;
+        while ((idx = message.indexOf(name, idx + 1)) >= 0 && idx < tagEnd) {
+            // must be a whole attribute name
+            if (!isWhitespace(message.charAt(idx - 1)))
+                continue;
+            int open = skipWhitespace(message, idx + name.length(), tagEnd);
+            if (message.charAt(open) != '=')
+                continue;
+            open = skipWhitespace(message, open + 1, tagEnd);
+            final char quote = message.charAt(open);
+            if (quote != '"' && quote != '\'')
+                return null;
+            final int close = message.indexOf(quote, open + 1);
+            if (close < 0 || close > tagEnd)
+                return null;
+            return message.substring(open + 1, close);
+        }
+        return null;
+    }
+
+    private static int skipWhitespace(String message, int idx, int end) {
+        while (idx < end && isWhitespace(message.charAt(idx)))
+            idx++;
+        return idx;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private final class Worker extends Thread {
+        final int lane;
+
+        Worker(int lane) {
+            super(TAG + "-" + lane);
+            this.lane = lane;
+        }
+
+        @Override
+        public void run() {
+            runLane(lanes[lane]);
+        }
+    }
+
+    private static final class Entry {
+        String message;
+        String rxEndpointId;
+        final String uid;
+        final String type;
+        final boolean position;
+        final long enqueued;
+
+        Entry(String message, String rxEndpointId, String uid, String type,
+                boolean position) {
+            this.message = message;
+            this.rxEndpointId = rxEndpointId;
+            this.uid = uid;
+            this.type = type;
+            this.position = position;
+            this.enqueued = System.nanoTime();
+        }
+    }
+
+    private static final class Lane {
+        final int capacity;
+        final ArrayDeque<Entry> queue = new ArrayDeque<>();
+        final Map<String, Entry> lastByUid = new HashMap<>();
+
+        Lane(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    private final class LoggerLane extends Thread {
+        final int capacity;
+        final ArrayDeque<String[]> queue = new ArrayDeque<>();
+
+        LoggerLane(int capacity) {
+            super(TAG + "-logger");
+            this.capacity = capacity;
+        }
+
+        synchronized void offer(String message, String rxEndpointId) {
+            if (queue.size() >= capacity) {
+                loggerDropped.incrementAndGet();
+                return;
+            }
+            queue.add(new String[] {
+                    message, rxEndpointId
+            });
+            notify();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                final String[] msg;
+                synchronized (this) {
+                    while (!disposed && queue.isEmpty()) {
+                        try {
+                            wait();
+                        } catch (InterruptedException ignored) {
+                        }
+                    }
+                    if (disposed)
+                        break;
+                    msg = queue.poll();
+                }
+                try {
+                    handler.log(msg[0], msg[1]);
+                } catch (Exception e) {
+                    Log.e(TAG, "error logging message", e);
+                }
+            }
+        }
+    }
+}
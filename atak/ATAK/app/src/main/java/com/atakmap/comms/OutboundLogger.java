@@ -25,7 +25,7 @@ class OutboundLogger implements CommsLogger,
     private static final String DELIMITER = "\t";
     private static final String LINE_SEPARATOR = System
             .getProperty("line.separator");
-    private boolean log;
+    private volatile boolean log;
     private boolean shuttingDown = false;
     private Writer writer = null;
 
@@ -72,6 +72,13 @@ class OutboundLogger implements CommsLogger,
         }
     }
 
+    /**
+     * @return <code>true</code> if network traffic is being logged to file
+     */
+    boolean isLogging() {
+        return log;
+    }
+
     @Override
     public void logSend(CotEvent msg, String destination) {
         if (log) {
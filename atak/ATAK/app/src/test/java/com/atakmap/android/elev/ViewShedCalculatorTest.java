@@ -0,0 +1,167 @@
+package com.atakmap.android.elev;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ViewShedCalculatorTest {
+
+    @Test
+    public void flat_terrain() {
+        final int size = 101;
+        final float[] grid = new float[size * size];
+        ViewShedCalculator calc = new ViewShedCalculator(grid, size, size,
+                10d, 10d);
+        final int[] counts = calc.calculate(
+                new ViewShedCalculator.Observer(50, 50, 2d, 400d));
+
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                final double d = Math.hypot((x - 50) * 10d, (y - 50) * 10d);
+                assertEquals(x + "," + y,
+                        d <= 400d ? 1 : ViewShedCalculator.OUTSIDE_RANGE,
+                        counts[y * size + x]);
+            }
+        }
+    }
+
+    @Test
+    public void wall_blocks_view() {
+        final int size = 61;
+        final float[] grid = new float[size * size];
+        // a 100m wall two cells east of the observer
+        for (int y = 0; y < size; y++)
+            grid[y * size + 32] = 100f;
+
+        ViewShedCalculator calc = new ViewShedCalculator(grid, size, size,
+                30d, 30d);
+        final int[] counts = calc.calculate(new ViewShedCalculator.Observer(
+                30, 30, 2d, Double.POSITIVE_INFINITY));
+
+        for (int y = 0; y < size; y++) {
+            // everything west of the wall and the wall itself is visible
+            for (int x = 0; x <= 32; x++)
+                assertEquals(x + "," + y, 1, counts[y * size + x]);
+            // the ground behind the wall, near the observer's row, is not
+            if (Math.abs(y - 30) <= 10) {
+                for (int x = 33; x < size; x++)
+                    assertEquals(x + "," + y, 0, counts[y * size + x]);
+            }
+        }
+
+        // a tall enough target behind the wall is visible
+        calc.setTargetHeight(1000d);
+        final int[] tall = calc.calculate(new ViewShedCalculator.Observer(
+                30, 30, 2d, Double.POSITIVE_INFINITY));
+        assertEquals(1, tall[30 * size + 40]);
+    }
+
+    @Test
+    public void observers_are_counted() {
+        final int size = 129;
+        final float[] grid = terrain(size, new Random(3));
+        ViewShedCalculator calc = new ViewShedCalculator(grid, size, size,
+                30d, 30d);
+
+        final ViewShedCalculator.Observer[] observers = {
+                new ViewShedCalculator.Observer(10, 10, 2d, 2000d),
+                new ViewShedCalculator.Observer(64, 64, 10d, 1500d),
+                new ViewShedCalculator.Observer(120, 30, 2d,
+                        Double.POSITIVE_INFINITY),
+                new ViewShedCalculator.Observer(0, 128, 50d, 3000d),
+        };
+        final int[] combined = calc.calculate(observers);
+
+        final int[] expected = new int[size * size];
+        Arrays.fill(expected, ViewShedCalculator.OUTSIDE_RANGE);
+        for (ViewShedCalculator.Observer o : observers) {
+            final int[] single = calc.calculate(o);
+            for (int i = 0; i < single.length; i++) {
+                if (single[i] == ViewShedCalculator.OUTSIDE_RANGE)
+                    continue;
+                expected[i] = Math.max(expected[i], 0) + single[i];
+            }
+        }
+        for (int i = 0; i < expected.length; i++)
+            assertEquals(String.valueOf(i), expected[i], combined[i]);
+    }
+
+    @Test
+    public void matches_line_of_sight() {
+        final int size = 201;
+        final float[] grid = terrain(size, new Random(5));
+        ViewShedCalculator calc = new ViewShedCalculator(grid, size, size,
+                30d, 30d);
+        final int ox = 87;
+        final int oy = 112;
+        final double height = 5d;
+        final int[] counts = calc.calculate(new ViewShedCalculator.Observer(
+                ox, oy, height, Double.POSITIVE_INFINITY));
+
+        // compare against densely sampled sight lines to random cells
+        final Random r = new Random(11);
+        final double z0 = grid[oy * size + ox] + height;
+        int agree = 0;
+        final int samples = 2000;
+        for (int n = 0; n < samples; n++) {
+            final int x = r.nextInt(size);
+            final int y = r.nextInt(size);
+            final double z = grid[y * size + x];
+            final int steps = 4 * Math.max(Math.abs(x - ox),
+                    Math.abs(y - oy));
+            boolean visible = true;
+            for (int s = 1; s < steps; s++) {
+                final double t = (double) s / steps;
+                final double h = bilinear(grid, size, ox + t * (x - ox),
+                        oy + t * (y - oy));
+                if (h > z0 + t * (z - z0)) {
+                    visible = false;
+                    break;
+                }
+            }
+            if (visible == (counts[y * size + x] == 1))
+                agree++;
+        }
+        assertTrue("agreement " + agree + "/" + samples,
+                agree >= samples * 0.95);
+    }
+
+    /**
+     * Generates rolling terrain from a sum of randomly oriented waves.
+     */
+    private static float[] terrain(int size, Random r) {
+        final float[] grid = new float[size * size];
+        for (int k = 0; k < 8; k++) {
+            final double amplitude = 200d / (k + 1);
+            final double frequency = 0.01d * (k + 1);
+            final double theta = r.nextDouble() * Math.PI;
+            final double phase = r.nextDouble() * Math.PI * 2d;
+            final double cos = Math.cos(theta);
+            final double sin = Math.sin(theta);
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    grid[y * size + x] += (float) (amplitude * Math.sin(
+                            frequency * (x * cos + y * sin) + phase));
+                }
+            }
+        }
+        return grid;
+    }
+
+    private static double bilinear(float[] grid, int size, double x,
+            double y) {
+        final int x0 = Math.min((int) x, size - 2);
+        final int y0 = Math.min((int) y, size - 2);
+        final double fx = x - x0;
+        final double fy = y - y0;
+        final double top = grid[y0 * size + x0] * (1 - fx)
+                + grid[y0 * size + x0 + 1] * fx;
+        final double bottom = grid[(y0 + 1) * size + x0] * (1 - fx)
+                + grid[(y0 + 1) * size + x0 + 1] * fx;
+        return top * (1 - fy) + bottom * fy;
+    }
+}
@@ -0,0 +1,134 @@
+package com.atakmap.android.elev.dt2;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class Dt2CellCacheTest {
+
+    private static final int POSTS = 121;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes a DTED0 cell where the post at (x, y) has the elevation
+     * <code>base + 10x + y</code>. The posts listed in <code>nulls</code>
+     * (pairs of x, y) are written as null posts.
+     */
+    private File writeCell(String name, int base, int... nulls)
+            throws IOException {
+        final File file = folder.newFile(name);
+        try (DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(file))) {
+            final byte[] header = new byte[3428];
+            final byte[] counts = String.format("%04d%04d", POSTS, POSTS)
+                    .getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(counts, 0, header, 47, counts.length);
+            out.write(header);
+            for (int x = 0; x < POSTS; x++) {
+                out.write(new byte[8]);
+                for (int y = 0; y < POSTS; y++) {
+                    boolean isNull = false;
+                    for (int i = 0; i < nulls.length; i += 2)
+                        isNull |= (nulls[i] == x && nulls[i + 1] == y);
+                    final int v = base + 10 * x + y;
+                    // signed-magnitude
+                    out.writeShort(isNull ? 0xFFFF
+                            : (v < 0 ? (0x8000 | -v) : v));
+                }
+                out.write(new byte[4]);
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void bilinear_sampling() throws IOException {
+        final File file = writeCell("n35.dt0", -50);
+        final Dt2CellCache cache = new Dt2CellCache(
+                Dt2CellCache.DEFAULT_MAX_BYTES);
+
+        // posts are exact
+        assertEquals(-50 + 10 * 3 + 7,
+                cache.getElevation(file, 35 + 7d / 120d, -79 + 3d / 120d),
+                1e-9);
+        // the surface is planar, so interpolation is exact
+        final double lat = 35.123456;
+        final double lng = -78.654321;
+        final double expected = -50
+                + 10 * (lng - Math.floor(lng)) * 120
+                + (lat - Math.floor(lat)) * 120;
+        assertEquals(expected, cache.getElevation(file, lat, lng), 1e-6);
+
+        // north east corner of the cell
+        final double[] lats = {
+                36d, 34.5d, 35.5d
+        };
+        final double[] lngs = {
+                -78d, -78.5d, -78.5d
+        };
+        final double[] msl = new double[3];
+        cache.getElevations(file, 35d, -79d, lats, lngs, msl, 3);
+        assertEquals(-50 + 10 * 120 + 120, msl[0], 1e-9);
+        assertTrue(Double.isNaN(msl[1]));
+        assertEquals(-50 + 10 * 60 + 60, msl[2], 1e-9);
+
+        assertEquals(1L, cache.getMissCount());
+        assertEquals(2L, cache.getHitCount());
+    }
+
+    @Test
+    public void null_posts() throws IOException {
+        // null post at the north west of the interval
+        final File file = writeCell("n35.dt0", 100, 0, 1, 5, 5, 5, 6, 6, 5, 6,
+                6);
+        final Dt2CellCache cache = new Dt2CellCache(
+                Dt2CellCache.DEFAULT_MAX_BYTES);
+
+        // the missing post is substituted by its row neighbor
+        final double xr = 0.25;
+        final double yr = 0.5;
+        final double s = 100 + 10 * xr;
+        final double n = 100 + 10 + 1;
+        assertEquals(s + (n - s) * yr,
+                cache.getElevation(file, 35 + yr / 120d, -79 + xr / 120d),
+                1e-9);
+
+        // all four posts missing
+        assertTrue(Double.isNaN(cache.getElevation(file, 35 + 5.5 / 120d,
+                -79 + 5.5 / 120d)));
+    }
+
+    @Test
+    public void budget_evicts_least_recently_used() throws IOException {
+        final File a = writeCell("a.dt0", 0);
+        final File b = writeCell("b.dt0", 0);
+        final File c = writeCell("c.dt0", 0);
+        final Dt2CellCache cache = new Dt2CellCache(a.length() * 2);
+
+        cache.getElevation(a, 35.5, -79.5);
+        cache.getElevation(b, 35.5, -79.5);
+        cache.getElevation(a, 35.5, -79.5);
+        cache.getElevation(c, 35.5, -79.5); // evicts b
+        assertEquals(a.length() * 2, cache.getSize());
+        assertEquals(3L, cache.getMissCount());
+
+        cache.getElevation(a, 35.5, -79.5);
+        assertEquals(3L, cache.getMissCount());
+        cache.getElevation(b, 35.5, -79.5);
+        assertEquals(4L, cache.getMissCount());
+
+        cache.setMaxBytes(0L);
+        assertEquals(0L, cache.getSize());
+    }
+}
@@ -0,0 +1,118 @@
+package com.atakmap.android.hierarchy;
+
+import android.os.SystemClock;
+
+import com.atakmap.android.maps.MapEventDispatcher;
+import com.atakmap.android.maps.MapGroup;
+import com.atakmap.android.maps.MapItem;
+import com.atakmap.android.maps.MapView;
+import com.atakmap.coremap.log.Log;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({
+        Log.class, SystemClock.class
+})
+public class MapItemSearchIndexTest {
+
+    private final List<MapItem> items = new ArrayList<>();
+    private MapView mapView;
+
+    @Before
+    public void doSetup() {
+        PowerMockito.mockStatic(Log.class);
+        PowerMockito.mockStatic(SystemClock.class);
+
+        final MapGroup root = mock(MapGroup.class);
+        when(root.deepForEachItem(any(MapGroup.MapItemsCallback.class)))
+                .thenAnswer(new Answer<Boolean>() {
+                    @Override
+                    public Boolean answer(InvocationOnMock invocation) {
+                        final MapGroup.MapItemsCallback cb = (MapGroup.MapItemsCallback) invocation
+                                .getArguments()[0];
+                        for (MapItem item : items) {
+                            if (cb.onItemFunction(item))
+                                return true;
+                        }
+                        return false;
+                    }
+                });
+
+        mapView = mock(MapView.class);
+        when(mapView.getRootGroup()).thenReturn(root);
+        when(mapView.getMapEventDispatcher())
+                .thenReturn(mock(MapEventDispatcher.class));
+    }
+
+    @Test
+    public void indexes_searchable_fields() {
+        final MapItem marker = item("Rally Point", "BRAVO-6", null,
+                "north of the bridge");
+        final MapItem shape = item(null, null, "Parcel Boundary", null);
+        items.addAll(Arrays.asList(marker, shape));
+
+        final MapItemSearchIndex index = new MapItemSearchIndex(mapView);
+        assertEquals(Collections.singletonList(marker),
+                index.find("rally", 0));
+        assertEquals(Collections.singletonList(marker),
+                index.find("bravo", 0));
+        assertEquals(Collections.singletonList(marker),
+                index.find("bridge", 0));
+        assertEquals(Collections.singletonList(shape),
+                index.find("parcel", 0));
+
+        // shape names are updated through the metadata listener
+        when(shape.getMetaString("shapeName", null)).thenReturn("Lot 12");
+        index.onMetadataChanged(shape, "shapeName");
+        assertTrue(index.find("parcel", 0).isEmpty());
+        assertEquals(Collections.singletonList(shape),
+                index.find("lot 12", 0));
+    }
+
+    @Test
+    public void dispose_removes_item_listeners() {
+        items.add(item("Checkpoint 1", null, null, null));
+        items.add(item(null, null, "Route Alpha", null));
+
+        final MapItemSearchIndex index = new MapItemSearchIndex(mapView);
+        for (MapItem item : items)
+            verify(item).addOnMetadataChangedListener(index);
+
+        // adding an item also removes any earlier registration
+        index.dispose();
+        for (MapItem item : items)
+            verify(item, times(2)).removeOnMetadataChangedListener(index);
+        assertTrue(index.find("checkpoint", 0).isEmpty());
+    }
+
+    private static MapItem item(String title, String callsign,
+            String shapeName, String remarks) {
+        final MapItem item = mock(MapItem.class);
+        when(item.getTitle()).thenReturn(title);
+        when(item.getMetaString("callsign", null)).thenReturn(callsign);
+        when(item.getMetaString("shapeName", null)).thenReturn(shapeName);
+        when(item.getRemarks()).thenReturn(remarks);
+        return item;
+    }
+}
@@ -0,0 +1,117 @@
+package com.atakmap.android.hierarchy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SearchIndexTest {
+
+    private static final String[] WORDS = {
+            "alpha", "bravo", "charlie", "delta", "echo", "foxtrot",
+            "checkpoint", "rally", "point", "route", "overwatch", "grid"
+    };
+
+    @Test
+    public void ranking() {
+        SearchIndex<String> index = new SearchIndex<>();
+        index.put("substring", "Subroute");
+        index.put("word", "North Route Alpha");
+        index.put("prefix", "Routes");
+        index.put("exact", "route");
+        index.put("second_field", "Unrelated", "route");
+        index.put("none", "Checkpoint");
+
+        assertEquals(Arrays.asList("exact", "second_field", "prefix", "word",
+                "substring"), index.find("ROUTE", 0));
+        assertEquals(Arrays.asList("exact", "second_field"),
+                index.find("route", 2));
+    }
+
+    @Test
+    public void short_terms() {
+        SearchIndex<String> index = new SearchIndex<>();
+        index.put("a", "Alpha");
+        index.put("b", "Bravo");
+        index.put("c", "Charlie");
+
+        assertEquals(Arrays.asList("a", "b", "c"), index.find("a", 0));
+        assertEquals(Collections.singletonList("c"), index.find("ch", 0));
+        assertTrue(index.find("  ", 0).isEmpty());
+    }
+
+    @Test
+    public void update_and_remove() {
+        SearchIndex<String> index = new SearchIndex<>();
+        index.put("item", "Rally Point");
+        assertEquals(1, index.find("rally", 0).size());
+
+        index.put("item", "Checkpoint", null);
+        assertTrue(index.find("rally", 0).isEmpty());
+        assertEquals(Collections.singletonList("item"),
+                index.find("checkpoint", 0));
+
+        index.remove("item");
+        assertFalse(index.contains("item"));
+        assertTrue(index.find("checkpoint", 0).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void matches_scan() {
+        final Random r = new Random(7);
+        SearchIndex<Integer> index = new SearchIndex<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            final String name = randomName(r);
+            names.add(name);
+            index.put(i, name);
+        }
+        // replace and remove enough entries to force compaction
+        for (int i = 0; i < 4000; i++) {
+            final int key = r.nextInt(names.size());
+            if (r.nextBoolean()) {
+                names.set(key, null);
+                index.remove(key);
+            } else {
+                final String name = randomName(r);
+                names.set(key, name);
+                index.put(key, name);
+            }
+        }
+
+        for (String term : new String[] {
+                "e", "ch", "rally", "oint 1", "delta-9", "x"
+        }) {
+            Set<Integer> expected = new HashSet<>();
+            for (int i = 0; i < names.size(); i++) {
+                final String name = names.get(i);
+                if (name != null
+                        && name.toLowerCase(Locale.US).contains(term))
+                    expected.add(i);
+            }
+            final List<Integer> found = index.find(term, 0);
+            assertEquals(term, expected.size(), found.size());
+            assertEquals(term, expected, new HashSet<>(found));
+        }
+    }
+
+    private static String randomName(Random r) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(WORDS[r.nextInt(WORDS.length)]);
+        sb.append(r.nextBoolean() ? ' ' : '-');
+        sb.append(WORDS[r.nextInt(WORDS.length)].toUpperCase(Locale.US));
+        sb.append(' ').append(r.nextInt(100));
+        return sb.toString();
+    }
+}
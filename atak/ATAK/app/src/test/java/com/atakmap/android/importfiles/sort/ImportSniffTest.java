@@ -0,0 +1,77 @@
+package com.atakmap.android.importfiles.sort;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ImportSniffTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void header() throws IOException {
+        File file = folder.newFile("test.kml");
+        StringBuilder content = new StringBuilder("<?xml?><kml>");
+        while (content.length() < ImportSniff.HEADER_SIZE * 2)
+            content.append("<Placemark/>");
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(content.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        ImportSniff sniff = new ImportSniff(file);
+        assertEquals(ImportSniff.HEADER_SIZE, sniff.getHeader().length);
+        assertEquals("<?xml?>", sniff.getHeaderString(7));
+        assertTrue(sniff.getHeaderString(1024).contains("<kml"));
+        assertTrue(sniff.startsWith("<?xml".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(sniff.isZip());
+        assertNull(sniff.getZipEntries());
+        assertFalse(sniff.hasZipEntryEndingWith(".kml"));
+    }
+
+    @Test
+    public void zip() throws IOException {
+        File file = folder.newFile("test.kmz");
+        try (ZipOutputStream zos = new ZipOutputStream(
+                new FileOutputStream(file))) {
+            for (String name : new String[] {
+                    "doc.kml", "files/icon.png"
+            }) {
+                zos.putNextEntry(new ZipEntry(name));
+                zos.write(name.getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+
+        ImportSniff sniff = new ImportSniff(file);
+        assertTrue(sniff.isZip());
+        List<String> entries = sniff.getZipEntries();
+        assertEquals(Arrays.asList("doc.kml", "files/icon.png"), entries);
+        assertTrue(sniff.hasZipEntryEndingWith(".KML"));
+        assertFalse(sniff.hasZipEntryEndingWith(".shp"));
+    }
+
+    @Test
+    public void empty() throws IOException {
+        ImportSniff empty = new ImportSniff(folder.newFile("empty.zip"));
+        assertEquals(0, empty.getHeader().length);
+        assertEquals("", empty.getHeaderString(64));
+        assertFalse(empty.isZip());
+        assertNull(empty.getZipEntries());
+        assertFalse(empty.hasZipEntryEndingWith(".kml"));
+    }
+}
@@ -0,0 +1,176 @@
+package com.atakmap.android.routes;
+
+import android.location.Location;
+import android.os.SystemClock;
+import android.util.Pair;
+
+import com.atakmap.android.maps.MapItem;
+import com.atakmap.android.maps.PointMapItem;
+import com.atakmap.android.routes.nav.NavigationCue;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.coremap.maps.coords.GeoCalculations;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Navigates a route of five waypoints spaced 0.01 degrees apart along the
+ * equator. The middle waypoint has cues triggered 100 and 400 meters
+ * before it.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({
+        Log.class, SystemClock.class, Location.class, GeoCalculations.class,
+        MapItem.class, PointMapItem.class, Route.class,
+        RouteNavigatorEngine.class
+})
+public class RouteNavigatorEngineTest {
+
+    private static final int NUM_WAYPOINTS = 5;
+    private static final int CUE_WAYPOINT = 2;
+
+    private RouteNavigatorEngine engine;
+
+    @Before
+    public void doSetup() throws Exception {
+        PowerMockito.mockStatic(Log.class);
+        PowerMockito.mockStatic(SystemClock.class);
+        PowerMockito.mockStatic(Location.class);
+        RouteNavigatorGeometryTest.mockDistances();
+
+        // android.util.Pair is not available outside of the device
+        PowerMockito.whenNew(Pair.class).withAnyArguments()
+                .thenAnswer(new Answer<Pair<?, ?>>() {
+                    @Override
+                    public Pair<?, ?> answer(InvocationOnMock invocation) {
+                        final Pair<?, ?> pair = PowerMockito
+                                .mock(Pair.class);
+                        Whitebox.setInternalState(pair, "first",
+                                invocation.getArguments()[0]);
+                        Whitebox.setInternalState(pair, "second",
+                                invocation.getArguments()[1]);
+                        return pair;
+                    }
+                });
+
+        final NavigationCue cue = new NavigationCue("cue", "Turn Left",
+                "Turn Left");
+        cue.addCue(NavigationCue.TriggerMode.DISTANCE, 400);
+        cue.addCue(NavigationCue.TriggerMode.DISTANCE, 100);
+
+        final Route route = PowerMockito.mock(Route.class);
+        final List<PointMapItem> points = new ArrayList<>();
+        for (int i = 0; i < NUM_WAYPOINTS; i++) {
+            final PointMapItem point = PowerMockito.mock(PointMapItem.class);
+            when(point.getPoint()).thenReturn(new GeoPoint(0d, i * 0.01d));
+            when(point.getType()).thenReturn("b-m-p-w");
+            when(point.getUID()).thenReturn("wp" + i);
+            when(route.getIndexOfMarker(point)).thenReturn(i);
+            points.add(point);
+        }
+        when(route.getNumPoints()).thenReturn(NUM_WAYPOINTS);
+        when(route.getPointMapItems()).thenReturn(points);
+        when(route.getCueForPoint("wp" + CUE_WAYPOINT)).thenReturn(cue);
+
+        engine = new RouteNavigatorEngine();
+        engine.beginMarkerTransaction();
+        engine.addRoutePoints(route);
+        engine.setMarkerTransactionSuccessful();
+        engine.endMarkerTransaction();
+    }
+
+    @Test
+    public void locates_points_along_route() {
+        assertEquals(0.375d, engine.getLocationOfPointAlongRoute(
+                new GeoPoint(0.001d, 0.015d)), 1e-9);
+        assertEquals(0d, engine.getLocationOfPointAlongRoute(
+                new GeoPoint(0d, -1d)), 1e-9);
+        assertEquals(1d, engine.getLocationOfPointAlongRoute(
+                new GeoPoint(0d, 1d)), 1e-9);
+
+        final double expected = RouteNavigatorGeometryTest.distance(
+                new GeoPoint(0d, 0.005d), new GeoPoint(0d, 0.035d));
+        assertEquals(expected, engine.getDistanceBetweenTwoPointsAlongRoute(
+                new GeoPoint(0.0005d, 0.035d),
+                new GeoPoint(-0.0005d, 0.005d)), 1e-6);
+    }
+
+    @Test
+    public void distance_from_route() throws Exception {
+        final GeoPoint pt = new GeoPoint(0.001d, 0.025d);
+        assertEquals(RouteNavigatorGeometryTest.distance(pt,
+                new GeoPoint(0d, 0.025d)), engine.findDistanceFromRoute(pt),
+                1e-6);
+    }
+
+    @Test
+    public void trigger_hits() {
+        // 100 meters is about 0.0009 degrees along the equator
+        final Pair<Integer, Integer> near = engine.findTriggerHit(
+                new GeoPoint(0d, 0.0195d));
+        assertEquals(CUE_WAYPOINT, (int) near.first);
+        assertEquals(1, (int) near.second);
+
+        final Pair<Integer, Integer> far = engine.findTriggerHit(
+                new GeoPoint(0d, 0.017d));
+        assertEquals(CUE_WAYPOINT, (int) far.first);
+        assertEquals(0, (int) far.second);
+
+        assertNull(engine.findTriggerHit(new GeoPoint(0d, 0.012d)));
+        assertNull(engine.findTriggerHit(new GeoPoint(0d, 0.025d)));
+    }
+
+    @Test
+    public void waypoint_lookups() throws Exception {
+        assertEquals(CUE_WAYPOINT, engine.findNextClosestIndexWithTrigger(
+                new GeoPoint(0d, 0.005d)));
+        assertEquals(-1, engine.findNextClosestIndexWithTrigger(
+                new GeoPoint(0d, 0.025d)));
+
+        assertEquals(2, engine.findNextClosestWaypoint(
+                new GeoPoint(0.001d, 0.015d)));
+        // waypoints at the point are included
+        assertEquals(3, engine.findNextClosestWaypoint(
+                new GeoPoint(0d, 0.03d)));
+        assertEquals(NUM_WAYPOINTS - 1, engine.findNextClosestWaypoint(
+                new GeoPoint(0d, 0.05d)));
+
+        assertEquals(1, engine.findIndexOfClosestPoint(
+                new GeoPoint(0.002d, 0.0126d)));
+
+        final List<Pair<Integer, Boolean>> near = engine
+                .findIndexOfPointsWithinDistance(new GeoPoint(0d, 0.0195d),
+                        100d, 100d);
+        assertEquals(1, near.size());
+        assertEquals(CUE_WAYPOINT, (int) near.get(0).first);
+        assertTrue(near.get(0).second);
+
+        final List<Pair<Integer, Boolean>> passed = engine
+                .findIndexOfPointsWithinDistance(new GeoPoint(0d, 0.0205d),
+                        100d, 100d);
+        assertEquals(1, passed.size());
+        assertEquals(CUE_WAYPOINT, (int) passed.get(0).first);
+        assertEquals(Boolean.FALSE, passed.get(0).second);
+
+        assertEquals(Collections.<Pair<Integer, Boolean>> emptyList(),
+                engine.findIndexOfPointsWithinDistance(
+                        new GeoPoint(0d, 0.015d), 100d, 100d));
+    }
+}
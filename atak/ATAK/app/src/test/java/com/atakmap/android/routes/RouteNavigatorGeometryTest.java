@@ -0,0 +1,211 @@
+package com.atakmap.android.routes;
+
+import com.atakmap.coremap.maps.coords.GeoCalculations;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({
+        GeoCalculations.class
+})
+public class RouteNavigatorGeometryTest {
+
+    private static final double EPSILON = 1e-9;
+
+    // an L shaped line, two degrees long
+    private static final double[] ELL = {
+            0d, 0d, 1d, 0d, 1d, 1d
+    };
+
+    @Before
+    public void doSetup() {
+        mockDistances();
+    }
+
+    /**
+     * Replaces the native geodesic distance with the spherical distance.
+     */
+    static void mockDistances() {
+        PowerMockito.mockStatic(GeoCalculations.class, new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation)
+                    throws Throwable {
+                if (!invocation.getMethod().getName().equals("distanceTo"))
+                    return Mockito.RETURNS_DEFAULTS.answer(invocation);
+                final Object[] args = invocation.getArguments();
+                return distance((GeoPoint) args[0], (GeoPoint) args[1]);
+            }
+        });
+    }
+
+    static double distance(GeoPoint a, GeoPoint b) {
+        final double lat1 = Math.toRadians(a.getLatitude());
+        final double lat2 = Math.toRadians(b.getLatitude());
+        final double dLat = lat2 - lat1;
+        final double dLon = Math.toRadians(b.getLongitude()
+                - a.getLongitude());
+        final double h = Math.sin(dLat / 2d) * Math.sin(dLat / 2d)
+                + Math.cos(lat1) * Math.cos(lat2) * Math.sin(dLon / 2d)
+                        * Math.sin(dLon / 2d);
+        return 2d * 6371e3 * Math.asin(Math.sqrt(h));
+    }
+
+    @Test
+    public void locate() {
+        final RouteNavigatorGeometry g = new RouteNavigatorGeometry(ELL, 3);
+        assertEquals(0.25d, g.locate(0.5d, 0.1d), EPSILON);
+        assertEquals(0.5d, g.locate(1.2d, -0.2d), EPSILON);
+        assertEquals(0.75d, g.locate(1.3d, 0.5d), EPSILON);
+
+        // points beyond the ends locate to the ends
+        assertEquals(0d, g.locate(-1d, -1d), EPSILON);
+        assertEquals(1d, g.locate(1d, 5d), EPSILON);
+
+        final GeoPoint closest = g.closestPoint(1.3d, 0.5d);
+        assertEquals(1d, closest.getLongitude(), EPSILON);
+        assertEquals(0.5d, closest.getLatitude(), EPSILON);
+    }
+
+    @Test
+    public void substring() {
+        final RouteNavigatorGeometry g = new RouteNavigatorGeometry(ELL, 3);
+        assertArrayEquals(new double[] {
+                0.5d, 0d, 1d, 0d, 1d, 0.5d
+        }, g.substring(0.25d, 0.75d), EPSILON);
+        assertArrayEquals(new double[] {
+                0.2d, 0d, 0.6d, 0d
+        }, g.substring(0.1d, 0.3d), EPSILON);
+
+        // the whole line, with the fractions clamped to it
+        assertArrayEquals(ELL, g.substring(0d, 1d), EPSILON);
+        assertArrayEquals(ELL, g.substring(-1d, 2d), EPSILON);
+
+        // coincident ends and ends on a vertex
+        assertArrayEquals(new double[] {
+                1d, 0d
+        }, g.substring(0.5d, 0.5d), EPSILON);
+        assertArrayEquals(new double[] {
+                1d, 0d, 1d, 1d
+        }, g.substring(0.5d, 1d), EPSILON);
+    }
+
+    @Test
+    public void geodesic_length() {
+        final RouteNavigatorGeometry g = new RouteNavigatorGeometry(ELL, 3);
+        final GeoPoint origin = new GeoPoint(0d, 0d);
+        final GeoPoint corner = new GeoPoint(0d, 1d);
+        final GeoPoint end = new GeoPoint(1d, 1d);
+
+        assertEquals(distance(origin, corner) + distance(corner, end),
+                g.getGeodesicLength(0d, 1d), 1e-6);
+        assertEquals(distance(new GeoPoint(0d, 0.2d),
+                new GeoPoint(0d, 0.6d)), g.getGeodesicLength(0.1d, 0.3d),
+                1e-6);
+        assertEquals(distance(new GeoPoint(0d, 0.5d), corner)
+                + distance(corner, new GeoPoint(0.5d, 1d)),
+                g.getGeodesicLength(0.25d, 0.75d), 1e-6);
+        assertEquals(0d, g.getGeodesicLength(0.4d, 0.4d), EPSILON);
+
+        // the length is additive along the line
+        assertEquals(g.getGeodesicLength(0d, 1d),
+                g.getGeodesicLength(0d, 0.3d)
+                        + g.getGeodesicLength(0.3d, 0.8d)
+                        + g.getGeodesicLength(0.8d, 1d),
+                1e-6);
+    }
+
+    @Test
+    public void single_vertex() {
+        final RouteNavigatorGeometry g = new RouteNavigatorGeometry(
+                new double[] {
+                        -77d, 38d
+                }, 1);
+        assertEquals(0d, g.locate(-76d, 39d), EPSILON);
+        assertEquals(0d, g.getGeodesicLength(0d, 1d), EPSILON);
+        assertArrayEquals(new double[] {
+                -77d, 38d
+        }, g.substring(0.3d, 0.3d), EPSILON);
+    }
+
+    @Test
+    public void nearest_segment_matches_scan() {
+        final Random r = new Random(3);
+        for (int trial = 0; trial < 50; trial++) {
+            final int n = 2 + r.nextInt(trial < 25 ? 30 : 2000);
+            final double[] xy = new double[n * 2];
+            double x = -77d;
+            double y = 38d;
+            for (int i = 0; i < n; i++) {
+                // repeat some vertices and flatten some lines
+                if (trial % 7 != 0 || i % 3 != 0) {
+                    x += (r.nextDouble() - 0.3d) * 0.01d;
+                    y += (r.nextDouble() - 0.5d) * 0.01d;
+                }
+                if (trial % 11 == 0)
+                    y = 38d;
+                xy[i * 2] = x;
+                xy[i * 2 + 1] = y;
+            }
+
+            final RouteNavigatorGeometry g = new RouteNavigatorGeometry(xy,
+                    n);
+            for (int q = 0; q < 200; q++) {
+                final double px;
+                final double py;
+                if (q % 2 == 0) {
+                    // near the line
+                    final int s = r.nextInt(n - 1);
+                    final double t = r.nextDouble();
+                    px = xy[s * 2] + t * (xy[s * 2 + 2] - xy[s * 2])
+                            + r.nextGaussian() * 0.0005d;
+                    py = xy[s * 2 + 1] + t * (xy[s * 2 + 3] - xy[s * 2 + 1])
+                            + r.nextGaussian() * 0.0005d;
+                } else {
+                    // anywhere, including far outside of the line's bounds
+                    px = -77d + (r.nextDouble() - 0.5d)
+                            * (q % 3 == 0 ? 50d : 2d);
+                    py = 38d + (r.nextDouble() - 0.5d) * 2d;
+                }
+                assertEquals("trial " + trial, scan(xy, n, px, py),
+                        g.nearestSegment(px, py));
+            }
+        }
+    }
+
+    private static int scan(double[] xy, int n, double x, double y) {
+        int best = -1;
+        double bestDist = Double.POSITIVE_INFINITY;
+        for (int s = 0; s < n - 1; s++) {
+            final double ax = xy[s * 2];
+            final double ay = xy[s * 2 + 1];
+            final double dx = xy[s * 2 + 2] - ax;
+            final double dy = xy[s * 2 + 3] - ay;
+            final double len2 = dx * dx + dy * dy;
+            double t = (len2 > 0d) ? ((x - ax) * dx + (y - ay) * dy) / len2
+                    : 0d;
+            t = Math.max(0d, Math.min(1d, t));
+            final double ex = x - (ax + t * dx);
+            final double ey = y - (ay + t * dy);
+            final double d = ex * ex + ey * ey;
+            if (d < bestDist) {
+                bestDist = d;
+                best = s;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,85 @@
+package com.atakmap.android.statesaver;
+
+import com.atakmap.coremap.cot.event.CotDetail;
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.cot.event.CotPoint;
+import com.atakmap.coremap.maps.time.CoordinatedTime;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CotEventSnapshotTest {
+
+    private static CotEvent createEvent() {
+        CotEvent event = new CotEvent();
+        event.setUID("ANDROID-test");
+        event.setType("a-f-G-U-C");
+        event.setHow("h-e");
+        event.setPoint(new CotPoint(38.5, -77.25, 120d, 5d,
+                CotPoint.UNKNOWN));
+        event.setTime(new CoordinatedTime(1600000000000L));
+        event.setStart(new CoordinatedTime(1600000000000L));
+        event.setStale(new CoordinatedTime(1600000060000L));
+
+        CotDetail detail = new CotDetail("detail");
+        CotDetail contact = new CotDetail("contact");
+        contact.setAttribute("callsign", "J\u00f6rg & <co>");
+        detail.addChild(contact);
+        CotDetail remarks = new CotDetail("remarks");
+        remarks.setInnerText("line one\nline two");
+        detail.addChild(remarks);
+        CotDetail link = new CotDetail("link");
+        link.setAttribute("uid", "parent");
+        link.setAttribute("relation", "p-p");
+        detail.addChild(link);
+        event.setDetail(detail);
+        return event;
+    }
+
+    @Test
+    public void round_trip() throws IOException {
+        final CotEvent event = createEvent();
+        final CotEvent decoded = CotEventSnapshot
+                .decode(CotEventSnapshot.encode(event));
+
+        assertNotNull(decoded);
+        assertEquals(event.toString(), decoded.toString());
+        assertEquals(event.getCotPoint().getHae(),
+                decoded.getCotPoint().getHae(), 0d);
+        assertEquals(event.getStale().getMilliseconds(),
+                decoded.getStale().getMilliseconds());
+        assertEquals("line one\nline two",
+                decoded.getDetail().getFirstChildByName(0, "remarks")
+                        .getInnerText());
+    }
+
+    @Test
+    public void round_trip_without_detail() throws IOException {
+        final CotEvent event = createEvent();
+        event.setDetail(null);
+        final CotEvent decoded = CotEventSnapshot
+                .decode(CotEventSnapshot.encode(event));
+
+        assertNotNull(decoded);
+        assertNull(decoded.getDetail());
+        assertEquals(event.toString(), decoded.toString());
+    }
+
+    @Test
+    public void unsupported_version() throws IOException {
+        final byte[] snapshot = CotEventSnapshot.encode(createEvent());
+        snapshot[0] = (byte) (CotEventSnapshot.VERSION + 1);
+        assertNull(CotEventSnapshot.decode(snapshot));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncated() throws IOException {
+        final byte[] snapshot = CotEventSnapshot.encode(createEvent());
+        CotEventSnapshot.decode(Arrays.copyOf(snapshot,
+                snapshot.length / 2));
+    }
+}
@@ -0,0 +1,126 @@
+package com.atakmap.android.track.crumb;
+
+import com.atakmap.coremap.maps.coords.GeoPoint;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CrumbBlockTest {
+
+    private static List<CrumbPoint> walk(int count, long seed) {
+        final Random r = new Random(seed);
+        final List<CrumbPoint> points = new ArrayList<>();
+        double lat = 35.76, lng = -78.64, alt = 120;
+        long ts = 1604600000000L;
+        for (int i = 0; i < count; i++) {
+            lat += (r.nextDouble() - 0.3) * 1e-4;
+            lng += (r.nextDouble() - 0.3) * 1e-4;
+            alt += r.nextGaussian();
+            ts += 1000 + r.nextInt(50);
+            points.add(new CrumbPoint(lat, lng, alt, 4.9, 9.7,
+                    (float) (r.nextDouble() * 10),
+                    (float) (r.nextDouble() * 360), ts, "DTED0",
+                    "GPS"));
+        }
+        return points;
+    }
+
+    @Test
+    public void round_trip_within_quantization() {
+        final List<CrumbPoint> points = walk(3600, 20201105L);
+        final byte[] block = CrumbBlock.encode(points);
+        final List<CrumbPoint> decoded = CrumbBlock.decode(block);
+
+        assertEquals(points.size(), decoded.size());
+        for (int i = 0; i < points.size(); i++) {
+            final CrumbPoint a = points.get(i);
+            final CrumbPoint b = decoded.get(i);
+            assertEquals(a.timestamp, b.timestamp);
+            assertEquals(a.gp.getLatitude(), b.gp.getLatitude(), 1e-7);
+            assertEquals(a.gp.getLongitude(), b.gp.getLongitude(), 1e-7);
+            assertEquals(a.gp.getAltitude(), b.gp.getAltitude(), 0.01);
+            assertEquals(a.gp.getCE(), b.gp.getCE(), 0.1);
+            assertEquals(a.gp.getLE(), b.gp.getLE(), 0.1);
+            assertEquals(a.speed, b.speed, 0.01);
+            assertEquals(a.bearing, b.bearing, 0.01);
+            assertEquals("GPS", b.gpm.getGeopointSource());
+            assertEquals("DTED0", b.gpm.getAltitudeSource());
+        }
+
+        // a full row is roughly 100 bytes
+        assertTrue(block.length < points.size() * 16);
+    }
+
+    @Test
+    public void unknown_values_are_preserved() {
+        final List<CrumbPoint> points = new ArrayList<>();
+        points.add(new CrumbPoint(new GeoPoint(10, 20), Float.NaN,
+                Float.NaN, 5L, null, null));
+        points.add(new CrumbPoint(-10.5, -179.9999999, 3, GeoPoint.UNKNOWN,
+                GeoPoint.UNKNOWN, 1.5f, 90f, 4L, "USER", "USER"));
+
+        final List<CrumbPoint> decoded = CrumbBlock
+                .decode(CrumbBlock.encode(points));
+        assertEquals(2, decoded.size());
+        assertTrue(Double.isNaN(decoded.get(0).gp.getAltitude()));
+        assertTrue(Float.isNaN(decoded.get(0).speed));
+        assertTrue(Float.isNaN(decoded.get(0).bearing));
+        assertEquals(points.get(0).gpm.getGeopointSource(),
+                decoded.get(0).gpm.getGeopointSource());
+        assertEquals(5L, decoded.get(0).timestamp);
+        assertEquals(4L, decoded.get(1).timestamp);
+        assertTrue(Double.isNaN(decoded.get(1).gp.getCE()));
+        assertEquals(-179.9999999, decoded.get(1).gp.getLongitude(), 1e-9);
+        assertEquals("USER", decoded.get(1).gpm.getAltitudeSource());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void corrupt_block_is_rejected() {
+        final byte[] block = CrumbBlock.encode(walk(10, 1L));
+        final byte[] truncated = new byte[block.length / 2];
+        System.arraycopy(block, 0, truncated, 0, truncated.length);
+        CrumbBlock.decode(truncated);
+    }
+
+    @Test
+    public void simplify_respects_tolerance() {
+        final List<CrumbPoint> points = walk(3600, 42L);
+        final double tolerance = 20d;
+        final List<CrumbPoint> simplified = CrumbBlock.simplify(points,
+                tolerance);
+
+        assertTrue(simplified.size() < points.size() / 4);
+        assertSame(points.get(0), simplified.get(0));
+        assertSame(points.get(points.size() - 1),
+                simplified.get(simplified.size() - 1));
+
+        // every discarded crumb lies within the tolerance of the retained
+        // segment spanning it
+        final double mpd = 111194.93;
+        final double lngScale = Math.cos(Math.toRadians(35.76)) * mpd;
+        int s = 0;
+        for (CrumbPoint p : points) {
+            while (simplified.get(s + 1).timestamp < p.timestamp)
+                s++;
+            final CrumbPoint a = simplified.get(s);
+            final CrumbPoint b = simplified.get(s + 1);
+            final double ax = a.gp.getLongitude() * lngScale;
+            final double ay = a.gp.getLatitude() * mpd;
+            final double dx = b.gp.getLongitude() * lngScale - ax;
+            final double dy = b.gp.getLatitude() * mpd - ay;
+            final double px = p.gp.getLongitude() * lngScale - ax;
+            final double py = p.gp.getLatitude() * mpd - ay;
+            final double t = Math.max(0, Math.min(1,
+                    (px * dx + py * dy) / (dx * dx + dy * dy)));
+            final double d = Math.hypot(px - t * dx, py - t * dy);
+            assertTrue(d <= tolerance + 0.5);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.atakmap.comms;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CotIngestPipelineTest {
+
+    private static String event(String uid, String type, int seq) {
+        return "<?xml version='1.0' encoding='UTF-8' standalone='yes'?>"
+                + "<event version='2.0' uid='" + uid + "' type='" + type
+                + "' how='m-g' time='2020-11-05T00:00:00Z'>"
+                + "<point lat='35' lon='-79' hae='0' ce='9' le='9'/>"
+                + "<detail><seq n='" + seq + "'/></detail></event>";
+    }
+
+    private static String delete(String uid, String target, int seq) {
+        return "<?xml version='1.0' encoding='UTF-8' standalone='yes'?>"
+                + "<event version='2.0' uid='" + uid
+                + "' type='t-x-d-d' how='m-g' time='2020-11-05T00:00:00Z'>"
+                + "<point lat='35' lon='-79' hae='0' ce='9' le='9'/>"
+                + "<detail><link uid='" + target
+                + "' relation='none' type='none'/><__forcedelete/>"
+                + "<seq n='" + seq + "'/></detail></event>";
+    }
+
+    private static int seq(String message) {
+        final int idx = message.indexOf("<seq n='") + 8;
+        return Integer.parseInt(message.substring(idx,
+                message.indexOf('\'', idx)));
+    }
+
+    /**
+     * Records the dispatched messages; the first dispatch is held until
+     * released so that subsequent messages queue up.
+     */
+    private static class RecordingHandler implements CotIngestPipeline.Handler {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch dispatched;
+        final CountDownLatch logged;
+        final List<String> messages = new ArrayList<>();
+
+        RecordingHandler(int expectedDispatches, int expectedLogs) {
+            dispatched = new CountDownLatch(expectedDispatches);
+            logged = new CountDownLatch(expectedLogs);
+        }
+
+        @Override
+        public void dispatch(String message, String rxEndpointId) {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+            synchronized (messages) {
+                messages.add(message);
+            }
+            dispatched.countDown();
+        }
+
+        @Override
+        public void log(String message, String rxEndpointId) {
+            logged.countDown();
+        }
+    }
+
+    @Test
+    public void sniff_event_attributes() {
+        final String msg = event("ANDROID-1", "a-f-G-U-C", 0);
+        final int tagStart = msg.indexOf("<event");
+        final int tagEnd = msg.indexOf('>', tagStart);
+        assertEquals("ANDROID-1",
+                CotIngestPipeline.attribute(msg, tagStart, tagEnd, "uid"));
+        assertEquals("a-f-G-U-C",
+                CotIngestPipeline.attribute(msg, tagStart, tagEnd, "type"));
+        // attributes of child elements are not considered
+        assertNull(CotIngestPipeline.attribute(msg, tagStart, tagEnd, "lat"));
+        // nor are attribute names that end with the name
+        assertNull(CotIngestPipeline.attribute("<event xuid='a'>", 0, 15,
+                "uid"));
+    }
+
+    @Test
+    public void sniff_attributes_with_whitespace() {
+        for (String tag : new String[] {
+                "<event\tuid='u1' type='a-f-G'>",
+                "<event\n  uid=\"u1\"\n  type='a-f-G'>",
+                "<event uid = 'u1' type\t=\t'a-f-G'>",
+                "<event version='2.0'\r\nuid='u1'\r\ntype='a-f-G'>",
+        }) {
+            final int tagEnd = tag.indexOf('>');
+            assertEquals(tag, "u1",
+                    CotIngestPipeline.attribute(tag, 0, tagEnd, "uid"));
+            assertEquals(tag, "a-f-G",
+                    CotIngestPipeline.attribute(tag, 0, tagEnd, "type"));
+        }
+    }
+
+    @Test
+    public void position_updates_are_coalesced_in_order()
+            throws InterruptedException {
+        // one lane so that every message queues behind the held dispatch
+        final RecordingHandler handler = new RecordingHandler(4, 7);
+        final CotIngestPipeline pipeline = new CotIngestPipeline(handler, 1,
+                64);
+        try {
+            pipeline.submit(event("held", "a-f-G", 0), null);
+            // wait for the first message to be taken by the worker
+            while (pipeline.getQueueDepth() > 0)
+                Thread.sleep(1);
+
+            pipeline.submit(event("u1", "a-f-G", 1), null);
+            pipeline.submit(event("u1", "a-f-G", 2), null);
+            // a delete of u1 must not be reordered with the updates around
+            // it, although its own UID differs
+            pipeline.submit(delete("delete-1", "u1", 3), null);
+            pipeline.submit(event("u1", "a-f-G", 4), null);
+            pipeline.submit(event("u1", "a-f-G", 5), null);
+            pipeline.submit(event("u1", "a-f-G", 6), null);
+            assertEquals(3, pipeline.getQueueDepth());
+            assertEquals(3L, pipeline.getCoalescedCount());
+
+            handler.release.countDown();
+            assertTrue(handler.dispatched.await(5, TimeUnit.SECONDS));
+            assertTrue(handler.logged.await(5, TimeUnit.SECONDS));
+
+            synchronized (handler.messages) {
+                assertEquals(4, handler.messages.size());
+                assertEquals(0, seq(handler.messages.get(0)));
+                assertEquals(2, seq(handler.messages.get(1)));
+                assertEquals(3, seq(handler.messages.get(2)));
+                assertEquals(6, seq(handler.messages.get(3)));
+            }
+            assertEquals(7L, pipeline.getSubmittedCount());
+        } finally {
+            pipeline.dispose();
+        }
+    }
+
+    @Test
+    public void per_uid_order_is_preserved_across_workers()
+            throws InterruptedException {
+        final int uids = 16;
+        final int perUid = 100;
+        final RecordingHandler handler = new RecordingHandler(uids * perUid,
+                0);
+        handler.release.countDown();
+        final CotIngestPipeline pipeline = new CotIngestPipeline(handler, 4,
+                64);
+        try {
+            // chat messages are never coalesced
+            for (int i = 0; i < perUid; i++)
+                for (int u = 0; u < uids; u++)
+                    pipeline.submit(event("uid-" + u, "b-t-f", i), null);
+            assertTrue(handler.dispatched.await(10, TimeUnit.SECONDS));
+
+            final int[] last = new int[uids];
+            Arrays.fill(last, -1);
+            synchronized (handler.messages) {
+                for (String msg : handler.messages) {
+                    final int u = Integer.parseInt(msg.substring(
+                            msg.indexOf("uid='uid-") + 9,
+                            msg.indexOf("' type")));
+                    final int s = seq(msg);
+                    assertEquals(last[u] + 1, s);
+                    last[u] = s;
+                }
+            }
+            assertEquals(0L, pipeline.getCoalescedCount());
+        } finally {
+            pipeline.dispose();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.atakmap.coremap.cot.event;
+
+import com.atakmap.coremap.maps.time.CoordinatedTime;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class CotStreamParserTest {
+
+    private static final String PLI = "<?xml version='1.0' encoding='UTF-8' standalone='yes'?>"
+            + "<event version='2.0' uid='ANDROID-358188070000000' type='a-f-G-U-C' "
+            + "time='2020-11-05T14:41:23.617Z' start='2020-11-05T14:41:23.617Z' "
+            + "stale='2020-11-05T14:47:38.617Z' how='h-e'>"
+            + "<point lat='35.7725981' lon='-78.7801289' hae='89.137' ce='9.9' le='9999999.0'/>"
+            + "<detail><takv os='28' version='4.1.0.231' device='SAMSUNG SM-G970U1' platform='ATAK-CIV'/>"
+            + "<contact endpoint='*:-1:stcp' callsign='JUMPER'/>"
+            + "<uid Droid='JUMPER'/><precisionlocation altsrc='GPS' geopointsrc='GPS'/>"
+            + "<__group role='Team Member' name='Cyan'/><status battery='74'/>"
+            + "<track course='243.65' speed='0.0'/></detail></event>";
+
+    private static final String CHAT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<event version=\"2.0\" uid=\"GeoChat.ANDROID-1.All Chat Rooms.0f8b\" type=\"b-t-f\"\n"
+            + "    time=\"2020-11-05T14:41:23Z\" start=\"2020-11-05T14:41:23.6Z\"\n"
+            + "    stale=\"2020-11-06T14:41:23.61Z\" how=\"h-g-i-g-o\">\n"
+            + "  <point lat=\"0.0\" lon=\"0.0\" hae=\"NaN\" ce=\"NaN\" le=\"bogus\"/>\n"
+            + "  <detail>\n"
+            + "    <__chat parent=\"RootContactGroup\" chatroom=\"All Chat Rooms\" id=\"All Chat Rooms\">\n"
+            + "      <chatgrp uid0=\"ANDROID-1\" uid1=\"All Chat Rooms\" id=\"All Chat Rooms\"/>\n"
+            + "    </__chat>\n"
+            + "    <!-- a comment -->\n"
+            + "    <remarks source=\"BAO.F.ATAK.ANDROID-1\" time=\"2020-11-05T14:41:23.617Z\">"
+            + "Café au lait</remarks>\n"
+            + "    <link url=\"http://example.com/?a=1&amp;b=2&#10;\" relation=\"r\tx\r\ny\"/>\n"
+            + "    <note><![CDATA[raw <text> here]]></note>\n"
+            + "  </detail>\n"
+            + "</event>\n";
+
+    private static final String EXPONENTS = "<event version='2.0' uid='u' type='a-h-G' "
+            + "time='2020-02-29T23:59:59.999Z' start='2020-02-29T23:59:59.9Z' "
+            + "stale='2021-01-01T00:00:00.000Z' how='m-g' opex='e' qos='1-r-c' access='Unclassified'>"
+            + "<point lat='-1.0000000000000002E-5' lon='+179.99999999999999999' "
+            + "hae='1e400' ce='.5' le='5.'/></event>";
+
+    private static final String MISSING_UID = "<event version='2.0' type='a-f-G' "
+            + "time='2020-11-05T14:41:23.617Z' start='2020-11-05T14:41:23.617Z' "
+            + "stale='2020-11-05T14:47:38.617Z' how='h-e'>"
+            + "<point lat='1' lon='2'/></event>";
+
+    private static final String BAD_LAT = "<event version='2.0' uid='x' type='a-f-G' "
+            + "time='2020-11-05T14:41:23.617Z' start='2020-11-05T14:41:23.617Z' "
+            + "stale='2020-11-05T14:47:38.617Z' how='h-e'>"
+            + "<point lat='north' lon='2'/><detail/></event>";
+
+    private static final String NESTED_DETAIL = "<event version='2.0' uid='x' type='u-d-f' "
+            + "time='2020-11-05T14:41:23.617Z' start='2020-11-05T14:41:23.617Z' "
+            + "stale='2020-11-05T14:47:38.617Z' how='h-e'>"
+            + "<point lat='1' lon='2'/><detail><link point='1,2'/><link point='3,4'/>"
+            + "<detail inner='yes'><point lat='9' lon='9'/></detail></detail>"
+            + "<detail second='ignored'/></event>";
+
+    private static void assertSameEvent(String xml) throws Exception {
+        CotEvent expected = new CotContentHandler().parseXML(xml);
+        CotEvent actual = new CotStreamParser().parse(xml);
+        assertSameEvent(expected, actual);
+
+        byte[] utf8 = xml.getBytes(StandardCharsets.UTF_8);
+        byte[] padded = new byte[utf8.length + 7];
+        System.arraycopy(utf8, 0, padded, 3, utf8.length);
+        assertSameEvent(expected,
+                new CotStreamParser().parse(padded, 3, utf8.length));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(utf8.length);
+        direct.put(utf8);
+        direct.flip();
+        assertSameEvent(expected, new CotStreamParser().parse(direct));
+        assertEquals(0, direct.position());
+    }
+
+    private static void assertSameTime(CoordinatedTime expected,
+            CoordinatedTime actual) {
+        if (expected == null)
+            assertNull(actual);
+        else
+            assertEquals(expected.getMilliseconds(), actual.getMilliseconds());
+    }
+
+    private static void assertSameEvent(CotEvent expected, CotEvent actual) {
+        assertEquals(expected.getUID(), actual.getUID());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getHow(), actual.getHow());
+        assertEquals(expected.getOpex(), actual.getOpex());
+        assertEquals(expected.getQos(), actual.getQos());
+        assertEquals(expected.getAccess(), actual.getAccess());
+        assertSameTime(expected.getTime(), actual.getTime());
+        assertSameTime(expected.getStart(), actual.getStart());
+        assertSameTime(expected.getStale(), actual.getStale());
+        assertEquals(expected.isValid(), actual.isValid());
+
+        CotPoint ep = expected.getCotPoint();
+        CotPoint ap = actual.getCotPoint();
+        assertEquals(Double.doubleToLongBits(ep.getLat()),
+                Double.doubleToLongBits(ap.getLat()));
+        assertEquals(Double.doubleToLongBits(ep.getLon()),
+                Double.doubleToLongBits(ap.getLon()));
+        assertEquals(Double.doubleToLongBits(ep.getHae()),
+                Double.doubleToLongBits(ap.getHae()));
+        assertEquals(Double.doubleToLongBits(ep.getCe()),
+                Double.doubleToLongBits(ap.getCe()));
+        assertEquals(Double.doubleToLongBits(ep.getLe()),
+                Double.doubleToLongBits(ap.getLe()));
+
+        if (expected.getDetail() == null)
+            assertNull(actual.getDetail());
+        else
+            assertEquals(expected.getDetail().toString(),
+                    actual.getDetail().toString());
+    }
+
+    @Test
+    public void position_report_matches_sax() throws Exception {
+        assertSameEvent(PLI);
+    }
+
+    @Test
+    public void whitespace_comments_and_cdata_match_sax() throws Exception {
+        assertSameEvent(CHAT);
+    }
+
+    @Test
+    public void numbers_and_times_match_sax() throws Exception {
+        assertSameEvent(EXPONENTS);
+    }
+
+    @Test
+    public void nested_and_repeated_detail_match_sax() throws Exception {
+        assertSameEvent(NESTED_DETAIL);
+    }
+
+    @Test
+    public void schema_violations_match_sax() throws Exception {
+        assertSameEvent(MISSING_UID);
+        assertSameEvent(BAD_LAT);
+        assertFalse(CotEvent.parse(MISSING_UID).isValid());
+    }
+
+    @Test
+    public void decimal_values_are_exact() throws Exception {
+        CotStreamParser parser = new CotStreamParser();
+        String[] values = {
+                "0", "-0", "1.5", "35.7725981", "-78.7801289", "0.1",
+                "123456789012345", "1234567890123456789", "9999999.0",
+                "4.9e-324", "1.7976931348623157e308", "2.5E-3", "  7 "
+        };
+        for (String v : values) {
+            String xml = "<event uid='u' type='t' how='m-g'><point lat='" + v
+                    + "' lon='" + v + "'/></event>";
+            CotEvent e = parser.parse(xml);
+            assertEquals(v, Double.doubleToLongBits(Double.parseDouble(v)),
+                    Double.doubleToLongBits(e.getCotPoint().getLat()));
+        }
+    }
+
+    @Test
+    public void text_entities_are_resolved() throws Exception {
+        CotEvent e = new CotStreamParser().parse(
+                "<event uid='u' type='t' how='m-g'><point lat='1' lon='2'/>"
+                        + "<detail><remarks>a &amp; &lt;b&gt; &#x1F600;&#10;c\r\nd"
+                        + "</remarks></detail></event>");
+        assertEquals("a & <b> 😀\nc\nd",
+                e.findDetail("remarks").getInnerText());
+    }
+
+    @Test(expected = CotStreamParser.UnsupportedContentException.class)
+    public void doctype_is_unsupported() throws Exception {
+        new CotStreamParser().parse(
+                "<!DOCTYPE event [<!ENTITY x 'y'>]><event uid='&x;'/>");
+    }
+
+    @Test(expected = CotStreamParser.UnsupportedContentException.class)
+    public void mismatched_tags_are_unsupported() throws Exception {
+        new CotStreamParser().parse(
+                "<event uid='u' type='t'><detail></event></detail>");
+    }
+
+    @Test
+    public void unsupported_content_falls_back_to_sax() {
+        String xml = PLI.replace("<detail>", "<detail><!DOCTYPE>");
+        assertEquals(new CotContentHandler().parseXML(xml).getUID(),
+                CotEvent.parse(xml).getUID());
+    }
+
+    @Test
+    public void lazy_detail_matches_eager() throws Exception {
+        for (String xml : new String[] {
+                PLI, CHAT, NESTED_DETAIL, BAD_LAT
+        }) {
+            CotEvent expected = new CotContentHandler().parseXML(xml);
+            CotEvent lazy = CotEvent.parseLazy(xml);
+            assertEquals(expected.getDetail() != null, lazy.hasDetail());
+            assertSameEvent(expected, lazy);
+
+            byte[] utf8 = xml.getBytes(StandardCharsets.UTF_8);
+            assertSameEvent(expected,
+                    CotEvent.parseLazy(utf8, 0, utf8.length));
+        }
+        assertFalse(CotEvent.parseLazy(EXPONENTS).hasDetail());
+        assertNull(CotEvent.parseLazy(EXPONENTS).getDetail());
+    }
+
+    @Test
+    public void lazy_detail_is_copied_verbatim() {
+        String detail = "<detail>\n  <contact callsign=\"A &amp; B\"/>"
+                + "<!-- keep --><remarks>x</remarks>\n</detail>";
+        String xml = "<event version='2.0' uid='u' type='a-f-G' how='m-g' "
+                + "time='2020-11-05T14:41:23.617Z' start='2020-11-05T14:41:23.617Z' "
+                + "stale='2020-11-05T14:47:38.617Z'><point lat='1' lon='2'/>"
+                + detail + "</event>";
+        CotEvent lazy = CotEvent.parseLazy(xml);
+        assertTrue(lazy.toString().contains(detail));
+
+        // copies share the serialized detail
+        CotEvent copy = new CotEvent(lazy);
+        assertTrue(copy.toString().contains(detail));
+
+        // once accessed, the tree is authoritative
+        lazy.getDetail().getFirstChildByName(0, "contact")
+                .setAttribute("callsign", "C");
+        assertTrue(lazy.toString().contains("callsign='C'"));
+        assertEquals("A & B", copy.findDetail("contact")
+                .getAttribute("callsign"));
+
+        copy.setDetail(null);
+        assertFalse(copy.hasDetail());
+        assertFalse(copy.toString().contains("<detail"));
+    }
+
+    @Test
+    public void lazy_detail_with_unsupported_content_uses_sax() {
+        String xml = PLI.replace("<status battery='74'/>",
+                "<status battery='74'><![CDATA[x]]></status><x>&nbsp;</x>");
+        CotEvent lazy = CotEvent.parseLazy(xml);
+        assertEquals("74", lazy.findDetail("status").getAttribute("battery"));
+    }
+}
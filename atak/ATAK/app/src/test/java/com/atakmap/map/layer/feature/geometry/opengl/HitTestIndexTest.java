@@ -0,0 +1,135 @@
+package com.atakmap.map.layer.feature.geometry.opengl;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HitTestIndexTest {
+
+    private static int[] toArray(HitTestIndex.Candidates c) {
+        c.sortDescending();
+        final int[] retval = new int[c.size];
+        System.arraycopy(c.ids, 0, retval, 0, c.size);
+        return retval;
+    }
+
+    private static int[] bruteForce(double[] bounds, int count, double minX,
+            double minY, double maxX, double maxY) {
+        final HitTestIndex.Candidates c = new HitTestIndex.Candidates();
+        for (int i = 0; i < count; i++) {
+            if (bounds[i * 4] <= maxX && bounds[i * 4 + 1] <= maxY
+                    && bounds[i * 4 + 2] >= minX && bounds[i * 4 + 3] >= minY)
+                c.add(i);
+        }
+        return toArray(c);
+    }
+
+    @Test
+    public void rtree_matches_linear_scan() {
+        final Random r = new Random(20201105L);
+        for (int count : new int[] {
+                0, 1, 16, 17, 5000
+        }) {
+            // line bounds around a region, a few unwrapped across the IDL
+            final double[] bounds = new double[count * 4];
+            for (int i = 0; i < count; i++) {
+                final double x = 170 + r.nextDouble() * 20;
+                final double y = 30 + r.nextDouble() * 10;
+                final double w = r.nextDouble() * r.nextDouble() * 2;
+                final double h = r.nextDouble() * r.nextDouble() * 2;
+                bounds[i * 4] = x;
+                bounds[i * 4 + 1] = y;
+                bounds[i * 4 + 2] = x + w;
+                bounds[i * 4 + 3] = y + h;
+            }
+            if (count > 1) {
+                // no geometry
+                bounds[4] = Double.NaN;
+                bounds[5] = Double.NaN;
+                bounds[6] = Double.NaN;
+                bounds[7] = Double.NaN;
+            }
+
+            final HitTestIndex.RTree tree = new HitTestIndex.RTree(bounds,
+                    count);
+            for (int q = 0; q < 200; q++) {
+                final double x = 169 + r.nextDouble() * 23;
+                final double y = 29 + r.nextDouble() * 13;
+                final double d = r.nextDouble() * 0.1;
+                final HitTestIndex.Candidates c = new HitTestIndex.Candidates();
+                tree.query(x - d, y - d, x + d, y + d, c);
+                assertArrayEquals(
+                        bruteForce(bounds, count, x - d, y - d, x + d, y + d),
+                        toArray(c));
+            }
+        }
+    }
+
+    @Test
+    public void grid_returns_all_points_in_box() {
+        final Random r = new Random(20201105L);
+        final int count = 10000;
+        final float[] xy = new float[count * 2];
+        for (int i = 0; i < count; i++) {
+            xy[i * 2] = r.nextFloat() * 1920;
+            xy[i * 2 + 1] = r.nextFloat() * 1080;
+        }
+        // never drawn
+        xy[0] = Float.NaN;
+        xy[1] = Float.NaN;
+        // left behind far off screen
+        xy[2] = -1e6f;
+        xy[3] = 5e5f;
+
+        final HitTestIndex.Grid grid = new HitTestIndex.Grid(xy, count);
+        for (int q = 0; q < 500; q++) {
+            final double x = r.nextDouble() * 2000 - 40;
+            final double y = r.nextDouble() * 1160 - 40;
+            final double d = 2 + r.nextDouble() * 40;
+
+            final HitTestIndex.Candidates c = new HitTestIndex.Candidates();
+            grid.query(x - d, y - d, x + d, y + d, c);
+            final int[] candidates = toArray(c);
+
+            int expected = 0;
+            int found = 0;
+            for (int i = 0; i < count; i++) {
+                if (!(xy[i * 2] >= x - d && xy[i * 2] <= x + d
+                        && xy[i * 2 + 1] >= y - d && xy[i * 2 + 1] <= y + d))
+                    continue;
+                expected++;
+                for (int id : candidates) {
+                    if (id == i) {
+                        found++;
+                        break;
+                    }
+                }
+            }
+            assertEquals(expected, found);
+            // only the cells overlapping the box are visited
+            assertTrue(candidates.length < count / 4);
+        }
+
+        final HitTestIndex.Candidates c = new HitTestIndex.Candidates();
+        grid.query(-1e6 - 1, 5e5 - 1, -1e6 + 1, 5e5 + 1, c);
+        assertArrayEquals(new int[] {
+                1
+        }, toArray(c));
+    }
+
+    @Test
+    public void candidates_sorted_descending_without_duplicates() {
+        final HitTestIndex.Candidates c = new HitTestIndex.Candidates();
+        for (int i : new int[] {
+                3, 1, 4, 1, 5, 9, 2, 6, 5, 3, 5, 8, 9, 7, 9, 3, 2, 3, 8, 4
+        })
+            c.add(i);
+        assertArrayEquals(new int[] {
+                9, 8, 7, 6, 5, 4, 3, 2, 1
+        }, toArray(c));
+    }
+}
@@ -0,0 +1,174 @@
+package com.atakmap.map.layer.raster.tilematrix;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TileScraperTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void journal_resumes_completed_tiles() throws IOException {
+        final File file = ScrapeJournal
+                .getJournalFile(new File(folder.getRoot(), "cache.sqlite"));
+
+        ScrapeJournal journal = ScrapeJournal.open(file, 42L);
+        assertEquals(0, journal.size());
+        journal.append(new long[] {
+                ScrapeJournal.key(3, 1, 2), ScrapeJournal.key(18, 200000, 100000)
+        }, 2);
+        journal.close();
+
+        // interrupted while appending a record
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(raf.length());
+        raf.write(new byte[] {
+                1, 2, 3
+        });
+        raf.close();
+
+        journal = ScrapeJournal.open(file, 42L);
+        assertEquals(2, journal.size());
+        assertTrue(journal.contains(3, 1, 2));
+        assertTrue(journal.contains(18, 200000, 100000));
+        assertFalse(journal.contains(3, 2, 1));
+        journal.append(new long[] {
+                ScrapeJournal.key(3, 2, 1)
+        }, 1);
+        journal.close();
+        journal = ScrapeJournal.open(file, 42L);
+        assertEquals(3, journal.size());
+        journal.close();
+
+        // a different request starts over
+        journal = ScrapeJournal.open(file, 43L);
+        assertEquals(0, journal.size());
+        journal.delete();
+        assertFalse(file.exists());
+    }
+
+    /**
+     * Simulates eight threads requesting through the throttle from a host
+     * that rejects requests beyond its capacity. Each step of the simulated
+     * clock, every thread that obtains a permit issues one request and all
+     * of the requests complete before the next step. Without the throttle
+     * most of the requests would be rejected.
+     */
+    @Test
+    public void throttle_adapts_to_host_capacity() {
+        final int capacity = 3;
+        final int threads = 8;
+        final int total = threads * 50;
+        final ManualClockThrottle throttle = new ManualClockThrottle(threads,
+                10L);
+
+        final List<HostThrottle.Host> permits = new ArrayList<>();
+        int requests = 0;
+        int rejected = 0;
+        int steps = 0;
+        while (requests < total) {
+            while (permits.size() < threads
+                    && requests + permits.size() < total) {
+                final HostThrottle.Host permit = throttle.tryAcquire("host");
+                if (permit == null)
+                    break;
+                permits.add(permit);
+            }
+            for (int i = 0; i < permits.size(); i++) {
+                final boolean success = (i < capacity);
+                throttle.release(permits.get(i), success);
+                requests++;
+                if (!success)
+                    rejected++;
+            }
+            permits.clear();
+            throttle.now += 5L;
+            assertTrue(++steps < total * 10);
+        }
+
+        assertEquals(total, requests);
+        assertTrue("rejected " + rejected, rejected < requests / 4);
+    }
+
+    @Test
+    public void throttle_backs_off_after_failure() {
+        final ManualClockThrottle throttle = new ManualClockThrottle(4, 10L);
+        throttle.release(throttle.tryAcquire("a"), false);
+        assertNull(throttle.tryAcquire("a"));
+        // other hosts are not backed off
+        throttle.release(throttle.tryAcquire("b"), true);
+
+        throttle.now += 9L;
+        assertNull(throttle.tryAcquire("a"));
+        throttle.now += 1L;
+        HostThrottle.Host permit = throttle.tryAcquire("a");
+        assertNotNull(permit);
+        throttle.release(permit, false);
+
+        // the back off grows with the consecutive failures
+        throttle.now += 10L;
+        assertNull(throttle.tryAcquire("a"));
+        throttle.now += 10L;
+        permit = throttle.tryAcquire("a");
+        assertNotNull(permit);
+
+        // a single permit is issued until a request succeeds
+        assertNull(throttle.tryAcquire("a"));
+        throttle.release(permit, true);
+        permit = throttle.tryAcquire("a");
+        assertNotNull(permit);
+        assertNotNull(throttle.tryAcquire("a"));
+    }
+
+    @Test
+    public void throttle_cancel_releases_waiters() throws Exception {
+        final HostThrottle throttle = new HostThrottle(1);
+        final HostThrottle.Host permit = throttle.acquire("a");
+        final Object[] result = new Object[] {
+                permit
+        };
+        final Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result[0] = throttle.acquire("a");
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        t.start();
+        // other hosts are not limited by "a"
+        throttle.release(throttle.acquire("b"), true);
+        throttle.cancel();
+        t.join(5000);
+        assertFalse(t.isAlive());
+        assertEquals(null, result[0]);
+    }
+
+    private static class ManualClockThrottle extends HostThrottle {
+        long now;
+
+        ManualClockThrottle(int maxPermits, long backoffStep) {
+            super(maxPermits, backoffStep);
+        }
+
+        @Override
+        long currentTimeMillis() {
+            return now;
+        }
+    }
+}
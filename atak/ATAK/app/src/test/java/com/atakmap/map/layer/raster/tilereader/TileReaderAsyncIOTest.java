@@ -0,0 +1,304 @@
+package com.atakmap.map.layer.raster.tilereader;
+
+import android.os.SystemClock;
+
+import com.atakmap.coremap.log.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Services requests with a single worker. The first request blocks the
+ * worker so that the requests that follow are queued, then the order in
+ * which the queued requests are started is checked.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({
+        Log.class, SystemClock.class
+})
+public class TileReaderAsyncIOTest {
+
+    private static final long TIMEOUT = 5000L;
+
+    private TileReader.AsynchronousIO io;
+    private BlockingReader reader;
+    private Listener listener;
+
+    @Before
+    public void doSetup() throws InterruptedException {
+        PowerMockito.mockStatic(Log.class);
+        PowerMockito.mockStatic(SystemClock.class);
+
+        io = new TileReader.AsynchronousIO(null, 0L, 1);
+        reader = new BlockingReader(io);
+        listener = new Listener();
+    }
+
+    @After
+    public void doTeardown() {
+        reader.release.countDown();
+        io.release();
+    }
+
+    @Test
+    public void high_resolution_requests_first_then_lifo()
+            throws InterruptedException {
+        block();
+        final int[] levels = {
+                1, 3, 2, 3, 1
+        };
+        final int[] ids = new int[levels.length];
+        for (int i = 0; i < levels.length; i++)
+            ids[i] = read(levels[i], i);
+
+        reader.release.countDown();
+        awaitIdle();
+        assertEquals(Arrays.asList(ids[4], ids[0], ids[2], ids[3], ids[1]),
+                listener.queuedStarted());
+    }
+
+    @Test
+    public void prioritizer_orders_requests_with_a_single_sort()
+            throws InterruptedException {
+        final AtomicInteger comparisons = new AtomicInteger();
+        io.setReadRequestPrioritizer(reader,
+                new Comparator<TileReader.ReadRequest>() {
+                    @Override
+                    public int compare(TileReader.ReadRequest a,
+                            TileReader.ReadRequest b) {
+                        comparisons.incrementAndGet();
+                        return Long.compare(a.tileColumn, b.tileColumn);
+                    }
+                });
+        block();
+
+        final int count = 64;
+        final List<Long> columns = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            columns.add((long) i);
+        Collections.shuffle(columns, new Random(11));
+        final Map<Integer, Long> columnById = new ConcurrentHashMap<>();
+        for (long column : columns)
+            columnById.put(read(2, column), column);
+
+        reader.release.countDown();
+        awaitIdle();
+
+        final List<Long> started = new ArrayList<>();
+        for (int id : listener.queuedStarted())
+            started.add(columnById.get(id));
+        final List<Long> expected = new ArrayList<>(columns);
+        Collections.sort(expected, Collections.<Long> reverseOrder());
+        assertEquals(expected, started);
+
+        // one sort of the queue, rather than one per request queued or
+        // serviced, which would be over count*count/2 comparisons
+        assertTrue("comparisons " + comparisons.get(),
+                comparisons.get() < count * 8);
+    }
+
+    @Test
+    public void canceled_requests_are_not_started()
+            throws InterruptedException {
+        block();
+        final int[] ids = new int[6];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = read(1, i);
+        listener.requests.get(ids[0]).cancel();
+        listener.requests.get(ids[3]).cancel();
+        listener.requests.get(ids[5]).cancel();
+
+        reader.release.countDown();
+        awaitIdle();
+        assertEquals(Arrays.asList(ids[4], ids[2], ids[1]),
+                listener.queuedStarted());
+    }
+
+    @Test
+    public void lowest_priority_requests_are_dropped_past_max_depth()
+            throws InterruptedException {
+        io.setMaxQueueDepth(reader, 2);
+        block();
+        final int[] ids = new int[4];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = read(3 - i, i);
+
+        // the requests for the lowest resolution levels are canceled
+        assertEquals(new HashSet<>(Arrays.asList(ids[0], ids[1])),
+                listener.canceled);
+
+        reader.release.countDown();
+        awaitIdle();
+        assertEquals(Arrays.asList(ids[3], ids[2]), listener.queuedStarted());
+        assertEquals(2L, io.getStatistics(reader).dropped);
+    }
+
+    @Test
+    public void aborted_requests_are_canceled() throws InterruptedException {
+        final int first = block();
+        final int[] ids = new int[3];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = read(1, i);
+
+        io.abortRequests(reader);
+        assertEquals(new HashSet<>(Arrays.asList(first, ids[0], ids[1],
+                ids[2])), listener.canceled);
+
+        reader.release.countDown();
+        awaitIdle();
+        assertEquals(Collections.<Integer> emptyList(),
+                listener.queuedStarted());
+    }
+
+    /**
+     * Queues a request that blocks the worker until
+     * {@link BlockingReader#release} is released.
+     */
+    private int block() throws InterruptedException {
+        final int id = read(0, 0);
+        assertTrue(reader.blocked.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        return id;
+    }
+
+    private int read(int level, long column) {
+        final int id = listener.created.get();
+        reader.asyncRead(level, column, 0, listener);
+        return id;
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        final long timeout = System.currentTimeMillis() + TIMEOUT;
+        while (true) {
+            final TileReader.AsynchronousIO.Statistics stats = io
+                    .getStatistics(reader);
+            if (stats.queueDepth == 0 && stats.executing == 0)
+                break;
+            assertTrue(System.currentTimeMillis() < timeout);
+            Thread.sleep(10L);
+        }
+    }
+
+    private static class BlockingReader extends TileReader {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        BlockingReader(AsynchronousIO io) {
+            super("test", null, Integer.MAX_VALUE, io);
+        }
+
+        @Override
+        public long getWidth() {
+            return 1L << 16;
+        }
+
+        @Override
+        public long getHeight() {
+            return 1L << 16;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return 16;
+        }
+
+        @Override
+        public int getTileHeight() {
+            return 16;
+        }
+
+        @Override
+        public ReadResult read(long srcX, long srcY, long srcW, long srcH,
+                int dstW, int dstH, byte[] buf) {
+            if (blocked.getCount() > 0) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    return ReadResult.CANCELED;
+                }
+            }
+            return ReadResult.SUCCESS;
+        }
+
+        @Override
+        public Format getFormat() {
+            return Format.MONOCHROME;
+        }
+
+        @Override
+        public Interleave getInterleave() {
+            return Interleave.BIP;
+        }
+    }
+
+    private static class Listener
+            implements TileReader.AsynchronousReadRequestListener {
+        final AtomicInteger created = new AtomicInteger(1);
+        final Map<Integer, TileReader.ReadRequest> requests = new ConcurrentHashMap<>();
+        final List<Integer> started = Collections
+                .synchronizedList(new ArrayList<Integer>());
+        final Set<Integer> canceled = Collections
+                .synchronizedSet(new HashSet<Integer>());
+
+        /**
+         * Returns the IDs of the started requests, excluding the request
+         * that blocked the worker.
+         */
+        List<Integer> queuedStarted() {
+            synchronized (started) {
+                return new ArrayList<>(started.subList(1, started.size()));
+            }
+        }
+
+        @Override
+        public void requestCreated(TileReader.ReadRequest request) {
+            requests.put(request.id, request);
+            created.incrementAndGet();
+        }
+
+        @Override
+        public void requestStarted(int id) {
+            started.add(id);
+        }
+
+        @Override
+        public void requestUpdate(int id, byte[] data, int dstX, int dstY,
+                int dstW, int dstH) {
+        }
+
+        @Override
+        public void requestCompleted(int id) {
+        }
+
+        @Override
+        public void requestCanceled(int id) {
+            canceled.add(id);
+        }
+
+        @Override
+        public void requestError(int id, Throwable error) {
+        }
+    }
+}
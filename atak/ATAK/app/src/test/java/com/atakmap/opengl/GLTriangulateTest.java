@@ -0,0 +1,406 @@
+package com.atakmap.opengl;
+
+import org.junit.Test;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GLTriangulateTest {
+
+    /**
+     * Star shaped ring with a random radius per vertex, counter-clockwise.
+     */
+    private static double[] star(Random r, int n, double cx, double cy,
+            double radius) {
+        final double[] retval = new double[n * 2];
+        for (int i = 0; i < n; i++) {
+            final double a = 2 * Math.PI * i / n;
+            final double d = radius * (0.3 + 0.7 * r.nextDouble());
+            retval[i * 2] = cx + d * Math.cos(a);
+            retval[i * 2 + 1] = cy + d * Math.sin(a);
+        }
+        return retval;
+    }
+
+    private static double[] reverse(double[] ring) {
+        final double[] retval = new double[ring.length];
+        for (int i = 0; i < ring.length; i += 2) {
+            retval[ring.length - 2 - i] = ring[i];
+            retval[ring.length - 1 - i] = ring[i + 1];
+        }
+        return retval;
+    }
+
+    private static double[] concat(double[]... rings) {
+        int n = 0;
+        for (double[] ring : rings)
+            n += ring.length;
+        final double[] retval = new double[n];
+        int off = 0;
+        for (double[] ring : rings) {
+            System.arraycopy(ring, 0, retval, off, ring.length);
+            off += ring.length;
+        }
+        return retval;
+    }
+
+    private static double area(double[] xy, int off, int n) {
+        double retval = 0d;
+        for (int i = 0; i < n; i++) {
+            final int j = (i + 1) % n;
+            retval += xy[(off + i) * 2] * xy[(off + j) * 2 + 1]
+                    - xy[(off + j) * 2] * xy[(off + i) * 2 + 1];
+        }
+        return retval / 2d;
+    }
+
+    private static boolean inside(double[] xy, int off, int n, double x,
+            double y) {
+        boolean retval = false;
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            final double xi = xy[(off + i) * 2], yi = xy[(off + i) * 2 + 1];
+            final double xj = xy[(off + j) * 2], yj = xy[(off + j) * 2 + 1];
+            if ((yi > y) != (yj > y)
+                    && x < (xj - xi) * (y - yi) / (yj - yi) + xi)
+                retval = !retval;
+        }
+        return retval;
+    }
+
+    /**
+     * Asserts that the triangles are counter-clockwise, cover the polygon
+     * area and lie within the polygon.
+     */
+    private static void assertCovers(double[] xy, int[] rings, int[] tris) {
+        double expected = 0d;
+        int off = 0;
+        for (int r = 0; r < rings.length; r++) {
+            expected += (r == 0 ? 1 : -1) * Math.abs(area(xy, off, rings[r]));
+            off += rings[r];
+        }
+
+        double actual = 0d;
+        for (int i = 0; i < tris.length; i += 3) {
+            final double ax = xy[tris[i] * 2], ay = xy[tris[i] * 2 + 1];
+            final double bx = xy[tris[i + 1] * 2], by = xy[tris[i + 1] * 2 + 1];
+            final double cx = xy[tris[i + 2] * 2], cy = xy[tris[i + 2] * 2 + 1];
+            final double a = ((bx - ax) * (cy - ay) - (by - ay) * (cx - ax))
+                    / 2d;
+            assertTrue(a >= 0d);
+            actual += a;
+
+            // the centroid test is quadratic, skip it for large polygons
+            if (a > 1e-9 * expected && tris.length < 10000) {
+                final double mx = (ax + bx + cx) / 3d;
+                final double my = (ay + by + cy) / 3d;
+                assertTrue(inside(xy, 0, rings[0], mx, my));
+                off = rings[0];
+                for (int r = 1; r < rings.length; r++) {
+                    assertFalse(inside(xy, off, rings[r], mx, my));
+                    off += rings[r];
+                }
+            }
+        }
+        assertEquals(expected, actual, 1e-6 * expected);
+    }
+
+    private static int[] toArray(IntBuffer indices) {
+        indices.flip();
+        final int[] retval = new int[indices.remaining()];
+        indices.get(retval);
+        return retval;
+    }
+
+    @Test
+    public void concave_polygon() {
+        final Random r = new Random(20201105L);
+        for (int n : new int[] {
+                4, 5, 16, 257, 2048
+        }) {
+            final double[] xy = star(r, n, -78.6, 35.7, 0.01);
+            final IntBuffer indices = IntBuffer.allocate((n - 2) * 3);
+            final int mode = GLTriangulate.triangulate(DoubleBuffer.wrap(xy),
+                    2, n, indices);
+            if (mode == GLTriangulate.TRIANGLE_FAN)
+                continue;
+            assertEquals(GLTriangulate.INDEXED, mode);
+            assertEquals((n - 2) * 3, indices.position());
+            assertCovers(xy, new int[] {
+                    n
+            }, toArray(indices));
+
+            // clockwise input
+            final double[] cw = reverse(xy);
+            indices.clear();
+            assertEquals(GLTriangulate.INDEXED, GLTriangulate.triangulate(
+                    DoubleBuffer.wrap(cw), 2, n, indices));
+            assertCovers(cw, new int[] {
+                    n
+            }, toArray(indices));
+        }
+    }
+
+    @Test
+    public void comb() {
+        // teeth pointing down and up, the gaps between them are split and
+        // merge vertices
+        final int teeth = 100;
+        final int n = teeth * 4 + 2;
+        final double[] ring = new double[n * 2];
+        int i = 0;
+        for (int t = 0; t < teeth; t++) {
+            ring[i++] = t * 2;
+            ring[i++] = -1;
+            ring[i++] = t * 2 + 1;
+            ring[i++] = -11;
+        }
+        ring[i++] = teeth * 2;
+        ring[i++] = -1;
+        for (int t = teeth - 1; t >= 0; t--) {
+            ring[i++] = t * 2 + 2;
+            ring[i++] = 0;
+            ring[i++] = t * 2 + 1;
+            ring[i++] = 10;
+        }
+        ring[i++] = 0;
+        ring[i++] = 0;
+        final IntBuffer indices = IntBuffer.allocate((n - 2) * 3);
+        assertEquals(GLTriangulate.INDEXED, GLTriangulate
+                .triangulate(DoubleBuffer.wrap(ring), 2, n, indices));
+        assertCovers(ring, new int[] {
+                n
+        }, toArray(indices));
+    }
+
+    @Test
+    public void polygon_with_holes() {
+        final double[] exterior = {
+                0, 0, 10, 0, 10, 10, 0, 10, 0, 0
+        };
+        final double[] hole1 = {
+                2, 2, 4, 2, 3, 4, 2, 2
+        };
+        // counter-clockwise, with an axis aligned edge level with the first
+        final double[] hole2 = reverse(new double[] {
+                6, 2, 8, 2, 8, 8, 6, 8
+        });
+        final double[] xy = concat(exterior, hole1, hole2);
+        final int[] rings = {
+                5, 4, 4
+        };
+        final IntBuffer indices = IntBuffer.allocate(64);
+        assertEquals(GLTriangulate.INDEXED, GLTriangulate
+                .triangulate(DoubleBuffer.wrap(xy), 2, rings, indices));
+        // closing points are dropped; 4 + 3 + 4 vertices, 2 holes
+        assertEquals((11 + 2 * 2 - 2) * 3, indices.position());
+        assertCovers(xy, rings, toArray(indices));
+
+        final Random r = new Random(20201105L);
+        final double[] outer = star(r, 500, 0, 0, 100);
+        final double[] inner = reverse(star(r, 300, 0, 0, 25));
+        final double[] xy2 = concat(outer, inner);
+        final int[] rings2 = {
+                500, 300
+        };
+        final IntBuffer indices2 = IntBuffer.allocate((800 + 2 - 2) * 3);
+        assertEquals(GLTriangulate.INDEXED, GLTriangulate
+                .triangulate(DoubleBuffer.wrap(xy2), 2, rings2, indices2));
+        assertCovers(xy2, rings2, toArray(indices2));
+    }
+
+    @Test
+    public void vertex_count_exceeds_short_indices() {
+        final int n = 70000;
+        final double[] xy = star(new Random(1L), n, 0, 0, 1);
+
+        final ShortBuffer shorts = ShortBuffer.allocate((n - 2) * 3);
+        assertEquals(GLTriangulate.STENCIL, GLTriangulate
+                .triangulate(DoubleBuffer.wrap(xy), 2, n, shorts));
+
+        final IntBuffer ints = IntBuffer.allocate((n - 2) * 3);
+        assertEquals(GLTriangulate.INDEXED, GLTriangulate
+                .triangulate(DoubleBuffer.wrap(xy), 2, n, ints));
+        assertCovers(xy, new int[] {
+                n
+        }, toArray(ints));
+    }
+
+    @Test
+    public void self_intersecting_uses_stencil() {
+        final IntBuffer indices = IntBuffer.allocate(64);
+        // bow tie
+        assertEquals(GLTriangulate.STENCIL,
+                GLTriangulate.triangulate(DoubleBuffer.wrap(new double[] {
+                        0, 0, 1, 1, 1, 0, 0, 1
+                }), 2, 4, indices));
+        // lopsided bow tie, the signed area is not zero
+        assertEquals(GLTriangulate.STENCIL,
+                GLTriangulate.triangulate(DoubleBuffer.wrap(new double[] {
+                        0, 0, 2, 2, 2, 0, 0, 1
+                }), 2, 4, indices));
+        assertEquals(GLTriangulate.TRIANGLE_FAN,
+                GLTriangulate.triangulate(DoubleBuffer.wrap(new double[] {
+                        0, 0, 1, 0, 1, 1, 0, 1
+                }), 2, 4, indices));
+    }
+
+    @Test
+    public void crossing_quad_uses_stencil() {
+        // the edges 1-2 and 3-0 cross
+        final double[] xy = {
+                5.274, 5.531, 4.8165, 5.6775, -0.6469, 1.4581, -3.562, 6.378
+        };
+        assertEquals(GLTriangulate.STENCIL, GLTriangulate.triangulate(
+                DoubleBuffer.wrap(xy), 2, 4, IntBuffer.allocate(64)));
+        assertEquals(GLTriangulate.STENCIL, GLTriangulate.triangulate(
+                DoubleBuffer.wrap(xy), 2, 4, ShortBuffer.allocate(64)));
+        assertEquals(GLTriangulate.STENCIL, new GLTriangulate.Cache(100)
+                .get(DoubleBuffer.wrap(xy), 2, new int[] {
+                        4
+                }).mode);
+    }
+
+    @Test
+    public void random_self_intersecting_uses_stencil() {
+        final Random r = new Random(20201105L);
+        int tested = 0;
+        while (tested < 2000) {
+            final int n = 4 + r.nextInt(12);
+            final double[] xy = new double[n * 2];
+            for (int i = 0; i < xy.length; i++)
+                xy[i] = r.nextDouble() * 20d - 10d;
+            if (!crossesItself(xy, n))
+                continue;
+            tested++;
+            final IntBuffer indices = IntBuffer.allocate((n - 2) * 3);
+            assertEquals(GLTriangulate.STENCIL, GLTriangulate
+                    .triangulate(DoubleBuffer.wrap(xy), 2, n, indices));
+        }
+
+        // a simple star with one vertex pulled across the ring
+        for (int i = 0; i < 200; i++) {
+            final int n = 16 + r.nextInt(100);
+            final double[] xy = star(r, n, 0, 0, 1);
+            final int v = r.nextInt(n);
+            xy[v * 2] = -3d * xy[v * 2];
+            xy[v * 2 + 1] = -3d * xy[v * 2 + 1];
+            if (!crossesItself(xy, n))
+                continue;
+            final IntBuffer indices = IntBuffer.allocate((n - 2) * 3);
+            assertEquals(GLTriangulate.STENCIL, GLTriangulate
+                    .triangulate(DoubleBuffer.wrap(xy), 2, n, indices));
+        }
+    }
+
+    /**
+     * Tests every pair of edges of the ring for a proper crossing.
+     */
+    private static boolean crossesItself(double[] xy, int n) {
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 2; j < n; j++) {
+                if (i == 0 && j == n - 1)
+                    continue;
+                final int i1 = (i + 1) % n;
+                final int j1 = (j + 1) % n;
+                if (side(xy, i, i1, j) * side(xy, i, i1, j1) < 0
+                        && side(xy, j, j1, i) * side(xy, j, j1, i1) < 0)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static int side(double[] xy, int a, int b, int c) {
+        return (int) Math.signum((xy[b * 2] - xy[a * 2])
+                * (xy[c * 2 + 1] - xy[a * 2 + 1])
+                - (xy[b * 2 + 1] - xy[a * 2 + 1])
+                        * (xy[c * 2] - xy[a * 2]));
+    }
+
+    @Test
+    public void cache_retains_triangulation() {
+        final GLTriangulate.Cache cache = new GLTriangulate.Cache(100);
+        final double[] xyz = {
+                0, 0, 1, 4, 0, 1, 2, 1, 1, 4, 4, 1, 0, 4, 1
+        };
+        final int[] rings = {
+                5
+        };
+        final GLTriangulate.Triangles a = cache
+                .get(DoubleBuffer.wrap(xyz), 3, rings);
+        assertEquals(GLTriangulate.INDEXED, a.mode);
+        assertEquals(9, a.getNumIndices());
+        assertEquals(GLES20FixedPipeline.GL_UNSIGNED_SHORT, a.indexType);
+        final ShortBuffer indices = a.getShortIndices();
+        final int[] tris = new int[indices.remaining()];
+        for (int i = 0; i < tris.length; i++)
+            tris[i] = indices.get(i);
+        final double[] xy = {
+                0, 0, 4, 0, 2, 1, 4, 4, 0, 4
+        };
+        assertCovers(xy, rings, tris);
+
+        // the same geometry, restyled
+        assertSame(a, cache.get(DoubleBuffer.wrap(xyz.clone()), 3, rings));
+
+        // the geometry changes
+        final double[] moved = xyz.clone();
+        moved[6] = 2.5;
+        final GLTriangulate.Triangles b = cache.get(DoubleBuffer.wrap(moved),
+                3, rings);
+        assertNotSame(a, b);
+
+        // evicted once the limit is exceeded
+        for (int i = 0; i < 20; i++) {
+            final double[] other = xyz.clone();
+            other[6] = 1d + i / 100d;
+            cache.get(DoubleBuffer.wrap(other), 3, rings);
+        }
+        assertNotSame(a, cache.get(DoubleBuffer.wrap(xyz), 3, rings));
+
+        final GLTriangulate.Triangles square = cache.get(
+                DoubleBuffer.wrap(new double[] {
+                        0, 0, 0, 1, 0, 0, 1, 1, 0
+                }), 3, new int[] {
+                        3
+                });
+        assertEquals(GLTriangulate.TRIANGLE_FAN, square.mode);
+        assertNull(square.getIndices());
+        assertEquals(0, square.getNumIndices());
+    }
+
+    @Test
+    public void cache_compares_coordinates() {
+        final GLTriangulate.Cache cache = new GLTriangulate.Cache(1000);
+        final int[] rings = {
+                5
+        };
+        final double[] xy = {
+                0, 0, 4, 0, 2, 1, 4, 4, 0, 4
+        };
+        final GLTriangulate.Triangles a = cache.get(DoubleBuffer.wrap(xy), 2,
+                rings);
+        assertSame(a, cache.get(DoubleBuffer.wrap(xy.clone()), 2, rings));
+
+        // a mirrored copy has different coordinates, whatever its hash
+        final double[] mirrored = new double[xy.length];
+        for (int i = 0; i < xy.length; i += 2) {
+            mirrored[i] = -xy[i];
+            mirrored[i + 1] = xy[i + 1];
+        }
+        final GLTriangulate.Triangles b = cache
+                .get(DoubleBuffer.wrap(mirrored), 2, rings);
+        assertNotSame(a, b);
+        assertSame(a, cache.get(DoubleBuffer.wrap(xy), 2, rings));
+        assertSame(b, cache.get(DoubleBuffer.wrap(mirrored), 2, rings));
+    }
+}
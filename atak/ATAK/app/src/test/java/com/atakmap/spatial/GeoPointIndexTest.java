@@ -0,0 +1,210 @@
+package com.atakmap.spatial;
+
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.util.Filter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GeoPointIndexTest {
+
+    private static final class Item {
+        final GeoPoint point = GeoPoint.createMutable();
+    }
+
+    private static final GeoPointIndex.Locator<Item> LOCATOR = new GeoPointIndex.Locator<Item>() {
+        @Override
+        public boolean getLocation(Item object, GeoPoint location) {
+            location.set(object.point);
+            return true;
+        }
+    };
+
+    /** spherical distance, mean earth radius */
+    private static final GeoPointIndex.Metric<Item> HAVERSINE = new GeoPointIndex.Metric<Item>() {
+        @Override
+        public double distance(Item object, GeoPoint location) {
+            return haversine(object.point, location);
+        }
+    };
+
+    private static double haversine(GeoPoint a, GeoPoint b) {
+        final double dlat = Math.toRadians(b.getLatitude() - a.getLatitude());
+        final double dlng = Math
+                .toRadians(b.getLongitude() - a.getLongitude());
+        final double h = Math.sin(dlat / 2) * Math.sin(dlat / 2)
+                + Math.cos(Math.toRadians(a.getLatitude()))
+                        * Math.cos(Math.toRadians(b.getLatitude()))
+                        * Math.sin(dlng / 2) * Math.sin(dlng / 2);
+        return 2 * 6371008.8 * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+
+    private static void randomize(Random r, Item item) {
+        switch (r.nextInt(4)) {
+            case 0:
+                // clustered, as contacts typically are
+                item.point.set(35.7 + r.nextDouble() * 0.2,
+                        -78.8 + r.nextDouble() * 0.2);
+                break;
+            case 1:
+                // straddling the antimeridian
+                item.point.set(-10 + r.nextDouble() * 20,
+                        r.nextBoolean() ? 179.5 + r.nextDouble() * 0.5
+                                : -180 + r.nextDouble() * 0.5);
+                break;
+            case 2:
+                // near the pole
+                item.point.set(89 + r.nextDouble(),
+                        -180 + r.nextDouble() * 360);
+                break;
+            default:
+                item.point.set(-90 + r.nextDouble() * 180,
+                        -180 + r.nextDouble() * 360);
+                break;
+        }
+    }
+
+    private static List<Item> bruteForceNearest(List<Item> items,
+            final GeoPoint center, int k, double max, Filter<Item> filter) {
+        List<Item> retval = new ArrayList<>();
+        for (Item i : items)
+            if (haversine(i.point, center) <= max
+                    && (filter == null || filter.accept(i)))
+                retval.add(i);
+        Collections.sort(retval, new Comparator<Item>() {
+            @Override
+            public int compare(Item a, Item b) {
+                return Double.compare(haversine(a.point, center),
+                        haversine(b.point, center));
+            }
+        });
+        return retval.subList(0, Math.min(k, retval.size()));
+    }
+
+    @Test
+    public void queries_match_brute_force_under_churn() {
+        final Random r = new Random(20201105L);
+        final GeoPointIndex<Item> index = new GeoPointIndex<>(LOCATOR);
+        final List<Item> items = new ArrayList<>();
+
+        final double[] radii = {
+                0, 50, 1000, 25000, 500000, 5000000, 25000000
+        };
+        final Filter<Item> even = new Filter<Item>() {
+            @Override
+            public boolean accept(Item arg) {
+                return (System.identityHashCode(arg) & 1) == 0;
+            }
+        };
+
+        for (int round = 0; round < 20; round++) {
+            // churn: add, move and remove
+            for (int i = 0; i < 500; i++) {
+                Item item = new Item();
+                randomize(r, item);
+                items.add(item);
+                assertTrue(index.add(item));
+            }
+            for (int i = 0; i < 300; i++) {
+                Item item = items.get(r.nextInt(items.size()));
+                if (r.nextBoolean())
+                    randomize(r, item);
+                else
+                    item.point.set(item.point.getLatitude() + 0.001,
+                            item.point.getLongitude());
+                assertTrue(index.refresh(item));
+            }
+            for (int i = 0; i < 200; i++) {
+                Item item = items.remove(r.nextInt(items.size()));
+                assertTrue(index.remove(item));
+                assertFalse(index.contains(item));
+            }
+            assertEquals(items.size(), index.size());
+
+            for (int q = 0; q < 20; q++) {
+                Item c = new Item();
+                randomize(r, c);
+                final GeoPoint center = c.point;
+                final double radius = radii[r.nextInt(radii.length)];
+
+                // radius
+                Set<Item> candidates = new HashSet<>();
+                index.get(center, radius, candidates);
+                for (Item i : items)
+                    if (haversine(i.point, center) <= radius)
+                        assertTrue(candidates.contains(i));
+                for (Item i : candidates)
+                    assertTrue(items.contains(i));
+
+                // nearest
+                final int k = 1 + r.nextInt(8);
+                final double max = r.nextBoolean()
+                        ? Double.POSITIVE_INFINITY
+                        : radius;
+                final Filter<Item> filter = r.nextBoolean() ? even : null;
+                List<Item> nearest = new ArrayList<>();
+                index.nearest(center, k, max, HAVERSINE, filter, nearest);
+                List<Item> expected = bruteForceNearest(items, center, k, max,
+                        filter);
+                assertEquals(expected.size(), nearest.size());
+                for (int i = 0; i < expected.size(); i++)
+                    assertEquals(haversine(expected.get(i).point, center),
+                            haversine(nearest.get(i).point, center), 0d);
+            }
+        }
+    }
+
+    @Test
+    public void bounds_query_handles_antimeridian() {
+        final GeoPointIndex<Item> index = new GeoPointIndex<>(LOCATOR);
+        final Item east = new Item();
+        east.point.set(1, 179.9);
+        final Item west = new Item();
+        west.point.set(1, -179.9);
+        final Item prime = new Item();
+        prime.point.set(1, 0);
+        index.add(east);
+        index.add(west);
+        index.add(prime);
+
+        Set<Item> hits = new HashSet<>();
+        index.get(2, 179, 0, -179, hits);
+        assertEquals(2, hits.size());
+        assertTrue(hits.contains(east) && hits.contains(west));
+
+        hits.clear();
+        index.get(2, -1, 0, 1, hits);
+        assertEquals(Collections.singleton(prime), hits);
+    }
+
+    @Test
+    public void invalid_locations_are_tracked_but_not_returned() {
+        final GeoPointIndex<Item> index = new GeoPointIndex<>(LOCATOR);
+        final Item item = new Item();
+        item.point.set(Double.NaN, Double.NaN);
+        assertTrue(index.add(item));
+        assertFalse(index.add(item));
+
+        List<Item> hits = new ArrayList<>();
+        index.nearest(new GeoPoint(0, 0), 1, Double.POSITIVE_INFINITY,
+                HAVERSINE, null, hits);
+        assertTrue(hits.isEmpty());
+
+        item.point.set(0.001, 0.001);
+        index.refresh(item);
+        index.nearest(new GeoPoint(0, 0), 1, Double.POSITIVE_INFINITY,
+                HAVERSINE, null, hits);
+        assertEquals(Collections.singletonList(item), hits);
+    }
+}
@@ -0,0 +1,220 @@
+package com.atakmap.spatial;
+
+import com.atakmap.coremap.maps.coords.GeoPoint;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HeapGeometryEngineTest {
+
+    private static List<GeoPoint> ring(double... lnglat) {
+        final List<GeoPoint> retval = new ArrayList<>();
+        for (int i = 0; i < lnglat.length; i += 2)
+            retval.add(new GeoPoint(lnglat[i + 1], lnglat[i]));
+        return retval;
+    }
+
+    private static HeapGeometryEngine.Geom polygon(double... lnglat) {
+        return HeapGeometryEngine.polygon(ring(lnglat),
+                Collections.<Collection<GeoPoint>> emptySet());
+    }
+
+    private static HeapGeometryEngine.Geom point(double x, double y) {
+        return HeapGeometryEngine.point(x, y, 0d, 2);
+    }
+
+    private static HeapGeometryEngine.Geom line(double... lnglat) {
+        final List<GeoPoint> pts = ring(lnglat);
+        return HeapGeometryEngine.lineString(pts.size(), pts.iterator());
+    }
+
+    /** 10x10 square with a 2x2 hole in the middle */
+    private static HeapGeometryEngine.Geom squareWithHole() {
+        final Collection<Collection<GeoPoint>> holes = new ArrayList<>();
+        holes.add(ring(4, 4, 6, 4, 6, 6, 4, 6, 4, 4));
+        return HeapGeometryEngine.polygon(ring(0, 0, 10, 0, 10, 10, 0, 10, 0, 0),
+                holes);
+    }
+
+    @Test
+    public void point_predicates() {
+        final HeapGeometryEngine.Geom a = squareWithHole();
+        assertTrue(HeapGeometryEngine.contains(a, point(1, 1)));
+        assertTrue(HeapGeometryEngine.intersects(a, point(1, 1)));
+        // within the hole
+        assertFalse(HeapGeometryEngine.contains(a, point(5, 5)));
+        assertFalse(HeapGeometryEngine.intersects(a, point(5, 5)));
+        // on the boundary
+        assertFalse(HeapGeometryEngine.contains(a, point(0, 5)));
+        assertTrue(HeapGeometryEngine.intersects(a, point(0, 5)));
+        assertTrue(HeapGeometryEngine.intersects(a, point(4, 5)));
+        assertFalse(HeapGeometryEngine.contains(a, point(11, 5)));
+        assertFalse(HeapGeometryEngine.intersects(point(11, 5), a));
+        assertTrue(HeapGeometryEngine.contains(point(1, 2), point(1, 2)));
+    }
+
+    @Test
+    public void polygon_predicates() {
+        final HeapGeometryEngine.Geom a = squareWithHole();
+        assertTrue(HeapGeometryEngine.contains(a, polygon(1, 1, 3, 1, 3, 3, 1, 1)));
+        // covers the hole
+        assertFalse(HeapGeometryEngine.contains(a, polygon(3, 3, 7, 3, 7, 7, 3, 7, 3, 3)));
+        assertTrue(HeapGeometryEngine.intersects(a, polygon(3, 3, 7, 3, 7, 7, 3, 7, 3, 3)));
+        // within the hole
+        assertFalse(HeapGeometryEngine.intersects(a, polygon(4.5, 4.5, 5.5, 4.5, 5.5, 5.5, 4.5, 4.5)));
+        // overlaps the exterior
+        assertFalse(HeapGeometryEngine.contains(a, polygon(8, 8, 12, 8, 12, 12, 8, 8)));
+        assertTrue(HeapGeometryEngine.intersects(a, polygon(8, 8, 12, 8, 12, 12, 8, 8)));
+        // touches at a corner
+        assertTrue(HeapGeometryEngine.intersects(a, polygon(10, 10, 12, 10, 12, 12, 10, 10)));
+        assertFalse(HeapGeometryEngine.intersects(a, polygon(11, 11, 12, 11, 12, 12, 11, 11)));
+        // contains itself
+        final HeapGeometryEngine.Geom b = polygon(0, 0, 10, 0, 10, 10, 0, 10, 0, 0);
+        assertTrue(HeapGeometryEngine.contains(b, polygon(0, 0, 10, 0, 10, 10, 0, 10, 0, 0)));
+        // the larger polygon contains the smaller
+        assertTrue(HeapGeometryEngine.contains(polygon(-1, -1, 11, -1, 11, 11, -1, 11, -1, -1), a));
+        assertFalse(HeapGeometryEngine.contains(a, polygon(-1, -1, 11, -1, 11, 11, -1, 11, -1, -1)));
+    }
+
+    @Test
+    public void concave_polygon() {
+        // U shape, open to the north
+        final HeapGeometryEngine.Geom u = polygon(0, 0, 10, 0, 10, 10, 7, 10,
+                7, 3, 3, 3, 3, 10, 0, 10, 0, 0);
+        // spans the gap between the arms
+        assertFalse(HeapGeometryEngine.contains(u, line(1, 8, 9, 8)));
+        assertTrue(HeapGeometryEngine.intersects(u, line(1, 8, 9, 8)));
+        assertFalse(HeapGeometryEngine.intersects(u, line(4, 8, 6, 8)));
+        assertTrue(HeapGeometryEngine.contains(u, line(1, 1, 9, 1)));
+        // from one arm to the other along the bottom of the gap
+        assertFalse(HeapGeometryEngine.contains(u, polygon(1, 2, 9, 2, 9, 5, 1, 5, 1, 2)));
+        assertTrue(HeapGeometryEngine.intersects(line(5, 11, 5, 2), u));
+    }
+
+    @Test
+    public void prepared_polygon_matches_reference() {
+        // a star with many vertices exercises the strip index
+        final int n = 2000;
+        final double[] coords = new double[(n + 1) * 2];
+        for (int i = 0; i <= n; i++) {
+            final double theta = 2 * Math.PI * (i % n) / n;
+            final double r = (i % 2 == 0) ? 1d : 0.6d;
+            coords[i * 2] = r * Math.cos(theta);
+            coords[i * 2 + 1] = r * Math.sin(theta);
+        }
+        final HeapGeometryEngine.Geom star = polygon(coords);
+
+        final Random random = new Random(20201105L);
+        for (int i = 0; i < 5000; i++) {
+            final double x = random.nextDouble() * 2.2 - 1.1;
+            final double y = random.nextDouble() * 2.2 - 1.1;
+            assertEquals(evenOdd(coords, x, y),
+                    HeapGeometryEngine.contains(star, point(x, y)));
+        }
+        assertNotNull(star.prepared);
+        assertTrue(star.prepared.numStrips > 1);
+    }
+
+    private static boolean evenOdd(double[] ring, double x, double y) {
+        boolean inside = false;
+        for (int i = 0, j = ring.length / 2 - 1; i < ring.length / 2; j = i++) {
+            final double xi = ring[i * 2], yi = ring[i * 2 + 1];
+            final double xj = ring[j * 2], yj = ring[j * 2 + 1];
+            if ((yi > y) != (yj > y)
+                    && x < (xj - xi) * (y - yi) / (yj - yi) + xi)
+                inside = !inside;
+        }
+        return inside;
+    }
+
+    @Test
+    public void blob_round_trip() {
+        final HeapGeometryEngine.Geom a = squareWithHole();
+        final HeapGeometryEngine.Geom b = HeapGeometryEngine
+                .fromBlob(HeapGeometryEngine.toBlob(a));
+        assertEquals(SpatialCalculator.GEOM_TYPE_POLYGON, b.type);
+        assertEquals(2, b.parts[0].length);
+        assertArrayEquals(a.parts[0][0], b.parts[0][0], 0d);
+        assertArrayEquals(a.parts[0][1], b.parts[0][1], 0d);
+        assertEquals(10d, b.maxX, 0d);
+
+        // blobs of the 2D polygons created by the SQLite path
+        final byte[] quad = new QuadBlob().getBlob(new GeoPoint(0, 0),
+                new GeoPoint(0, 1), new GeoPoint(1, 1), new GeoPoint(1, 0));
+        final HeapGeometryEngine.Geom c = HeapGeometryEngine.fromBlob(quad);
+        assertArrayEquals(HeapGeometryEngine.quad(new GeoPoint(0, 0),
+                new GeoPoint(0, 1), new GeoPoint(1, 1), new GeoPoint(1, 0))
+                .parts[0][0], c.parts[0][0], 0d);
+        assertArrayEquals(quad, HeapGeometryEngine.toBlob(c));
+
+        final HeapGeometryEngine.Geom p = HeapGeometryEngine.point(1, 2, 3, 3);
+        final HeapGeometryEngine.Geom q = HeapGeometryEngine
+                .fromBlob(HeapGeometryEngine.toBlob(p));
+        assertEquals(3, q.dimension);
+        assertArrayEquals(new double[] {
+                1, 2, 3
+        }, q.parts[0][0], 0d);
+    }
+
+    @Test
+    public void wkt() {
+        assertEquals("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), "
+                + "(4 4, 6 4, 6 6, 4 6, 4 4))",
+                HeapGeometryEngine.toWkt(squareWithHole()));
+        assertEquals("POINT Z(1.5 -2 3)", HeapGeometryEngine
+                .toWkt(HeapGeometryEngine.point(1.5, -2, 3, 3)));
+    }
+
+    @Test
+    public void simplify() {
+        final HeapGeometryEngine.Geom l = line(0, 0, 1, 0.01, 2, -0.01, 3, 5,
+                4, 6, 5, 7);
+        final HeapGeometryEngine.Geom s = HeapGeometryEngine.simplify(l, 0.1);
+        assertArrayEquals(new double[] {
+                0, 0, 2, -0.01, 3, 5, 5, 7
+        }, s.parts[0][0], 0d);
+
+        // the polygon collapses
+        assertNull(HeapGeometryEngine.simplify(
+                polygon(0, 0, 1, 0.01, 2, 0, 1, -0.01, 0, 0), 0.1));
+    }
+
+    @Test
+    public void batch_rollback() {
+        final HeapGeometryEngine engine = new HeapGeometryEngine();
+        final long a = engine.create(point(1, 1));
+        final long b = engine.create(point(2, 2));
+
+        engine.beginBatch();
+        engine.update(a, point(3, 3));
+        engine.delete(b);
+        final long c = engine.create(point(4, 4));
+        engine.endBatch(false);
+
+        assertArrayEquals(new double[] {
+                1, 1
+        }, engine.get(a).parts[0][0], 0d);
+        assertNotNull(engine.get(b));
+        assertNull(engine.get(c));
+        // handles are reissued as they would be by the database
+        assertEquals(c, engine.create(point(4, 4)));
+
+        engine.beginBatch();
+        engine.clear();
+        engine.endBatch(true);
+        assertNull(engine.get(a));
+        assertNull(engine.get(b));
+    }
+}
@@ -402,6 +402,44 @@ JNIEXPORT void JNICALL Java_com_atakmap_map_layer_feature_geometry_Geometry_Line
   if(ATAKMapEngineJNI_checkOrThrow(env, code))
       return;
 }
+JNIEXPORT void JNICALL Java_com_atakmap_map_layer_feature_geometry_Geometry_Linestring_1getPoints
+  (JNIEnv *env, jclass clazz, jobject jpointer, jint off, jint count, jdoubleArray jarr, jint arrOff, jint ptsDim)
+{
+  Geometry2 *geom = Pointer_get<Geometry2>(env, jpointer);
+  if(!geom) {
+      ATAKMapEngineJNI_checkOrThrow(env, TE_InvalidArg);
+      return;
+  }
+
+  TAKErr code(TE_Ok);
+  LineString2 &linestring = static_cast<LineString2 &>(*geom);
+  // the copy does not call back into the VM, so the array may be pinned
+  void *arr = env->GetPrimitiveArrayCritical(jarr, NULL);
+  if(!arr) {
+      ATAKMapEngineJNI_checkOrThrow(env, TE_OutOfMemory);
+      return;
+  }
+  code = linestring.getPoints(static_cast<double *>(arr)+arrOff, off, count, ptsDim);
+  env->ReleasePrimitiveArrayCritical(jarr, arr, (code == TE_Ok) ? 0 : JNI_ABORT);
+  if(ATAKMapEngineJNI_checkOrThrow(env, code))
+      return;
+}
+JNIEXPORT void JNICALL Java_com_atakmap_map_layer_feature_geometry_Geometry_Linestring_1getPointsBuffer
+  (JNIEnv *env, jclass clazz, jobject jpointer, jint off, jint count, jobject jbuffer, jint bufOff, jint ptsDim)
+{
+  Geometry2 *geom = Pointer_get<Geometry2>(env, jpointer);
+  double *buffer = GET_BUFFER_POINTER(double, jbuffer);
+  if(!geom || !buffer) {
+      ATAKMapEngineJNI_checkOrThrow(env, TE_InvalidArg);
+      return;
+  }
+
+  TAKErr code(TE_Ok);
+  LineString2 &linestring = static_cast<LineString2 &>(*geom);
+  code = linestring.getPoints(buffer+bufOff, off, count, ptsDim);
+  if(ATAKMapEngineJNI_checkOrThrow(env, code))
+      return;
+}
 
 /*****************************************************************************/
 // Polygon
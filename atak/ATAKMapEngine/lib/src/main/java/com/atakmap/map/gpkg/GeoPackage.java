@@ -812,7 +812,7 @@ public class GeoPackage {
         }
     }
     
-    private boolean containsTile(String tileTable, int zoom, int column, int row) {
+    public boolean containsTile(String tileTable, int zoom, int column, int row) {
         QueryIface result = null;
         try {
             StringBuilder sql = new StringBuilder();
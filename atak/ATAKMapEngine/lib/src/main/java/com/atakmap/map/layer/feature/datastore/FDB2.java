@@ -6,8 +6,11 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -22,6 +25,7 @@ import android.util.Pair;
 
 import com.atakmap.content.BindArgument;
 import com.atakmap.content.WhereClauseBuilder;
+import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.io.DatabaseInformation;
 import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.log.Log;
@@ -56,6 +60,7 @@ import com.atakmap.map.layer.feature.ogr.style.FeatureStyleParser;
 import com.atakmap.map.layer.raster.osm.OSMUtils;
 import com.atakmap.math.MathUtils;
 import com.atakmap.util.Disposable;
+import com.atakmap.util.ResourcePool;
 import com.atakmap.util.StringIgnoreCaseComparator;
 
 abstract class FDB2 extends AbstractFeatureDataStore3 {
@@ -81,7 +86,17 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
             VISIBILITY_SETTINGS_FEATURESET |
             VISIBILITY_SETTINGS_FEATURE;
     
-    private final static int DATABASE_VERSION = 4;
+    private final static int DATABASE_VERSION = 5;
+
+    /** leading byte of attribute blobs in the compact coding */
+    private final static int ATTRIBS_CODING_COMPACT = 0x02;
+    /** maximum number of dictionary strings retained per attribute schema */
+    private final static int MAX_DICTIONARY_SIZE = 256;
+    /** strings longer than this are always coded inline */
+    private final static int MAX_DICTIONARY_STRING_LENGTH = 64;
+
+    /** maximum number of idle read-only connections retained */
+    private final static int READER_POOL_SIZE = 3;
 
     final String databaseFile;
 
@@ -89,6 +104,21 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
 
     DatabaseIface database;
 
+    /**
+     * Idle read-only connections. <code>null</code> if the database does not
+     * use a write-ahead log, in which case queries run on the writer while
+     * holding the lock.
+     */
+    private final ResourcePool<DatabaseIface> readers;
+    private volatile boolean readersClosed;
+    /** open read-only connections, idle or in use; guarded by readers */
+    private int numReaders;
+
+    /** time spent by queries waiting to acquire the lock */
+    private volatile long lockWaitCount;
+    private volatile long lockWaitNanos;
+    private volatile long maxLockWaitNanos;
+
     private static class FeatureSetDefn {
         boolean visible;
         int visibleVersion;
@@ -112,9 +142,19 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
     int maxLod;
     boolean lodCheck;
     
-    final Map<Long, AttributeSpec> idToAttrSchema;
     final Map<String, AttributeSpec> keyToAttrSchema;
-    boolean attrSchemaDirty;
+    volatile boolean attrSchemaDirty;
+
+    /**
+     * Attribute schema, indexed by schema ID. Grown under the lock and
+     * republished so that cursors may decode without it.
+     */
+    volatile AttributeSpec[] attrSchemaById;
+    /**
+     * Shared attribute string values, indexed by dictionary ID. Grown under
+     * the lock and republished so that cursors may decode without it.
+     */
+    volatile String[] attrDictionary;
     
     protected FDB2(File db,
                    int modificationFlags,
@@ -145,16 +185,29 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
             this.spatialIndexEnabled = (Databases.getTableNames(this.database).contains("idx_features_geometry"));
 
             int version = database.getVersion();
-            if (version < DATABASE_VERSION) {
+            if (version < 4) {
                 database.execute("ALTER TABLE features ADD COLUMN altitude_mode INTEGER DEFAULT 0", null);
                 database.execute("ALTER TABLE features ADD COLUMN extrude REAL DEFAULT 0.0", null);
-                database.setVersion(DATABASE_VERSION);
             }
+            // existing attribute blobs remain in the legacy coding and are
+            // recoded in the compact coding as they are updated
+            if (version < 5)
+                this.createAttributeDictionaryNoSync();
+            if (version < DATABASE_VERSION)
+                database.setVersion(DATABASE_VERSION);
 
         }
+
+        // with a write-ahead log, readers see the last committed state and
+        // are not blocked by a bulk insertion on the writer
+        if(dbFile != null && this.enableWriteAheadLog())
+            this.readers = new ResourcePool<DatabaseIface>(READER_POOL_SIZE);
+        else
+            this.readers = null;
         
-        this.idToAttrSchema = new HashMap<Long, AttributeSpec>();
         this.keyToAttrSchema = new HashMap<String, AttributeSpec>();
+        this.attrSchemaById = new AttributeSpec[16];
+        this.attrDictionary = new String[16];
         
         this.attrSchemaDirty = true;
 
@@ -163,6 +216,150 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         this.refreshImpl();
     }
     
+    private boolean enableWriteAheadLog() {
+        CursorIface result = null;
+        try {
+            result = this.database.query("PRAGMA journal_mode = WAL", null);
+            return result.moveToNext() && "wal".equalsIgnoreCase(result.getString(0));
+        } catch(Throwable t) {
+            Log.w(ABS_TAG, "Failed to enable write-ahead log for " + this.databaseFile, t);
+            return false;
+        } finally {
+            if(result != null)
+                result.close();
+        }
+    }
+
+    /**
+     * Returns a connection for a query. If the database does not use a
+     * write-ahead log, the writer is returned and the caller must hold the
+     * lock. Returns <code>null</code> if all of the readers are in use, in
+     * which case the caller should run the query on the writer while holding
+     * the lock.
+     */
+    private DatabaseIface acquireReader() {
+        if(this.readers == null)
+            return this.database;
+        DatabaseIface reader = this.readers.get();
+        if(reader != null)
+            return reader;
+        synchronized(this.readers) {
+            if(this.numReaders >= READER_POOL_SIZE)
+                return null;
+            this.numReaders++;
+        }
+        reader = IOProviderFactory.createDatabase(new File(this.databaseFile), DatabaseInformation.OPTION_READONLY);
+        if(reader == null) {
+            synchronized(this.readers) {
+                this.numReaders--;
+            }
+            throw new IllegalStateException("Failed to open reader for " + this.databaseFile);
+        }
+        return reader;
+    }
+
+    private void releaseReader(DatabaseIface reader) {
+        if(this.readers == null || reader == this.database)
+            return;
+        if(this.readersClosed || !this.readers.put(reader)) {
+            this.closeReader(reader);
+            return;
+        }
+        // the data store may have been disposed while the reader was in use
+        if(this.readersClosed)
+            this.closeReaders();
+    }
+
+    private void closeReaders() {
+        DatabaseIface reader;
+        while((reader = this.readers.get()) != null)
+            this.closeReader(reader);
+    }
+
+    private void closeReader(DatabaseIface reader) {
+        reader.close();
+        synchronized(this.readers) {
+            this.numReaders--;
+        }
+    }
+
+    /**
+     * Returns the number of read-only connections that are open, whether
+     * idle or in use by a query.
+     */
+    public int getReaderCount() {
+        if(this.readers == null)
+            return 0;
+        synchronized(this.readers) {
+            return this.numReaders;
+        }
+    }
+
+    private int queryCount(String sql, LinkedList<BindArgument> args) {
+        final DatabaseIface reader = this.acquireReader();
+        if(reader == null) {
+            // all of the readers are in use
+            synchronized(this) {
+                if(this.database == null)
+                    return 0;
+                return queryCount(this.database, sql, args);
+            }
+        }
+        try {
+            return queryCount(reader, sql, args);
+        } finally {
+            this.releaseReader(reader);
+        }
+    }
+
+    private static int queryCount(DatabaseIface reader, String sql, LinkedList<BindArgument> args) {
+        CursorIface result = null;
+        try {
+            result = BindArgument.query(reader, sql, (args == null || args.isEmpty()) ? null : args);
+            if(!result.moveToNext())
+                return 0;
+            return result.getInt(0);
+        } finally {
+            if(result != null)
+                result.close();
+        }
+    }
+
+    /**
+     * Records the time elapsed since <code>start</code>. Invoked on
+     * acquiring the lock.
+     */
+    private void recordLockWait(long start) {
+        final long wait = System.nanoTime() - start;
+        this.lockWaitCount++;
+        this.lockWaitNanos += wait;
+        if(wait > this.maxLockWaitNanos)
+            this.maxLockWaitNanos = wait;
+    }
+
+    /**
+     * Returns the number of queries that have acquired the lock.
+     */
+    public long getLockWaitCount() {
+        return this.lockWaitCount;
+    }
+
+    /**
+     * Returns the total time, in nanoseconds, that queries have spent
+     * waiting to acquire the lock.
+     */
+    public long getLockWaitNanos() {
+        return this.lockWaitNanos;
+    }
+
+    /**
+     * Returns the longest time, in nanoseconds, that a query has spent
+     * waiting to acquire the lock.
+     */
+    public long getMaxLockWaitNanos() {
+        return this.maxLockWaitNanos;
+    }
+
     private void buildTables(boolean indices) {
         CursorIface result;
 
@@ -243,6 +440,8 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                               "     coding INTEGER)",
                               null);
 
+        this.createAttributeDictionaryNoSync();
+
         this.createTriggersNoSync();
         if(indices)
             this.createIndicesNoSync();
@@ -250,6 +449,14 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         this.database.setVersion(DATABASE_VERSION);
     }
     
+    private void createAttributeDictionaryNoSync() {
+        this.database.execute("CREATE TABLE IF NOT EXISTS attribs_dict" +
+                              "    (id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                              "     schema_id INTEGER," +
+                              "     value TEXT)",
+                              null);
+    }
+
     private void createIndicesNoSync() {
         this.database
                 .execute(
@@ -382,7 +589,12 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
     }
     
     private void validateAttributeSchema() {
-        if(this.attrSchemaDirty) {
+        if(!this.attrSchemaDirty)
+            return;
+        synchronized(this) {
+            if(!this.attrSchemaDirty)
+                return;
+
             CursorIface result = null;
             try {
                 result = this.database.query("SELECT id, name, coding FROM attribs_schema", null);
@@ -397,7 +609,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                     coding = result.getInt(2);
                     
                     schemaSpec = new AttributeSpec(name, id, coding);
-                    this.idToAttrSchema.put(Long.valueOf(id), schemaSpec);
+                    this.registerAttrSchema(schemaSpec);
                     
                     parentSpec = this.keyToAttrSchema.get(name);
                     if(parentSpec != null)
@@ -410,9 +622,76 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                     result.close();
             }
 
+            result = null;
+            try {
+                result = this.database.query("SELECT id, schema_id, value FROM attribs_dict", null);
+                long id;
+                AttributeSpec schemaSpec;
+                while(result.moveToNext()) {
+                    id = result.getLong(0);
+                    schemaSpec = getAttrSchema(this.attrSchemaById, result.getLong(1));
+                    if(schemaSpec == null)
+                        continue;
+                    schemaSpec.dictionary.put(result.getString(2), Long.valueOf(id));
+                    this.registerDictionaryString(id, result.getString(2));
+                }
+            } finally {
+                if(result != null)
+                    result.close();
+            }
+
             this.attrSchemaDirty = false;
         }
     }
+
+    private void registerAttrSchema(AttributeSpec spec) {
+        this.attrSchemaById = put(this.attrSchemaById, spec.id, spec);
+    }
+
+    private void registerDictionaryString(long id, String value) {
+        this.attrDictionary = put(this.attrDictionary, id, value);
+    }
+
+    /**
+     * Adds the dictionary strings inserted through the context to the
+     * dictionaries of their schemas. Invoked once the transaction that
+     * inserted the strings has committed.
+     */
+    void commitDictionary(InsertContext ctx) {
+        for(Map.Entry<AttributeSpec, Map<String, Long>> entry : ctx.dictionaryInserts.entrySet())
+            entry.getKey().dictionary.putAll(entry.getValue());
+        ctx.dictionaryInserts.clear();
+    }
+
+    /**
+     * Discards the dictionary strings inserted through the context by a
+     * transaction that did not commit; does nothing following
+     * {@link #commitDictionary(InsertContext)}.
+     */
+    void rollbackDictionary(InsertContext ctx) {
+        final String[] dictionary = this.attrDictionary;
+        for(Map<String, Long> inserts : ctx.dictionaryInserts.values()) {
+            for(Map.Entry<String, Long> entry : inserts.entrySet()) {
+                final long id = entry.getValue().longValue();
+                if(id < dictionary.length && entry.getKey().equals(dictionary[(int)id]))
+                    dictionary[(int)id] = null;
+            }
+        }
+        ctx.dictionaryInserts.clear();
+    }
+
+    private static <T> T[] put(T[] arr, long idx, T value) {
+        if(idx < 0L || idx >= Integer.MAX_VALUE)
+            throw new IllegalArgumentException("ID out of range: " + idx);
+        if(idx >= arr.length)
+            arr = Arrays.copyOf(arr, Math.max((int)idx+1, arr.length*2));
+        arr[(int)idx] = value;
+        return arr;
+    }
+
+    private static AttributeSpec getAttrSchema(AttributeSpec[] schema, long id) {
+        return (id >= 0L && id < schema.length) ? schema[(int)id] : null;
+    }
     
     protected static boolean isCompatible(FeatureSetDefn defn, FeatureSetQueryParameters params) {
         if(params == null)
@@ -637,10 +916,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
     }
 
     @Override
-    public synchronized FeatureCursor queryFeatures(FeatureQueryParameters params) throws DataStoreException {
-        if(this.database == null)
-            throw new DataStoreException("Datastore is closed");
-
+    public FeatureCursor queryFeatures(FeatureQueryParameters params) throws DataStoreException {
         final int ignoredFields = (params == null) ? 0 : params.ignoredFeatureProperties;
 
         final int idCol = 0;
@@ -717,33 +993,57 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         if(!MathUtils.hasBits(ignoredFields, PROPERTY_FEATURE_ATTRIBUTES))
             sql.append(" LEFT JOIN attributes ON features.attribs_id = attributes.id");
         
-        if(params == null) {
-            CursorIface result = null;
-            try {
-                result = BindArgument.query(this.database, sql.toString(), args.isEmpty() ? null : args);
-
-                final FeatureCursor retval = 
-                       new FeatureCursorImpl(result,
-                                             idCol,
-                                             fsidCol,
-                                             versionCol,
-                                             nameCol,
-                                             geomCol,
-                                             styleCol,
-                                             attribsCol,
-                                             altitudeModeCol,
-                                             extrudeCol);
-                result = null;
-                return retval;
-            } finally {
-                if(result != null)
-                    result.close();
+        final FeatureQuery query = new FeatureQuery(idCol,
+                                                    fsidCol,
+                                                    versionCol,
+                                                    nameCol,
+                                                    geomCol,
+                                                    styleCol,
+                                                    attribsCol,
+                                                    altitudeModeCol,
+                                                    extrudeCol);
+
+        // capture the statements while holding the lock. with a write-ahead
+        // log they run on a reader connection once the lock is released
+        final long waitStart = System.nanoTime();
+        synchronized(this) {
+            this.recordLockWait(waitStart);
+            if(this.database == null)
+                throw new DataStoreException("Datastore is closed");
+
+            if(params == null) {
+                query.sql.add(sql.toString());
+                query.args.add(args);
+            } else {
+                this.buildFeatureQueriesNoSync(params, sql, args, query);
             }
+
+            if(this.readers == null)
+                return this.queryFeaturesImpl(params, query, new QueryReader(this.database, false));
         }
-        
+
+        final DatabaseIface reader = this.acquireReader();
+        if(reader == null) {
+            // all of the readers are in use; rather than opening connections
+            // without bound, run on the writer
+            synchronized(this) {
+                if(this.database == null)
+                    throw new DataStoreException("Datastore is closed");
+                return this.queryFeaturesImpl(params, query, new QueryReader(this.database, false));
+            }
+        }
+        // a single statement is its own snapshot
+        return this.queryFeaturesImpl(params, query, new QueryReader(reader, query.sql.size() > 1));
+    }
+
+    /**
+     * Captures the statements for a feature query. Must be invoked while
+     * holding the lock; the statements may then be run without it.
+     */
+    private void buildFeatureQueriesNoSync(FeatureQueryParameters params, StringBuilder sql, LinkedList<BindArgument> args, FeatureQuery query) throws DataStoreException {
         Collection<FeatureSetDefn> fsNoCheck = this.filterNoSync(params, true);
         if(fsNoCheck.isEmpty())
-            return new MultiplexingFeatureCursor(Collections.<FeatureCursor>emptySet(), null);
+            return;
 
         Collection<FeatureSetDefn> fsCheck = new LinkedList<FeatureSetDefn>();
         if(params.visibleOnly) {
@@ -773,7 +1073,6 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
             }
         }
         
-        LinkedList<FeatureCursor> retval = new LinkedList<FeatureCursor>();
         if(fsCheck != null) {
             for(FeatureSetDefn fs : fsCheck) {
                 StringBuilder subsql = new StringBuilder();
@@ -814,25 +1113,8 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                     }
                 }
                 
-                CursorIface result = null;
-                try {
-                    result = BindArgument.query(this.database, subsql.toString(), subargs.isEmpty() ? null : subargs);
-
-                    retval.add(new FeatureCursorImpl(result,
-                                                     idCol,
-                                                     fsidCol,
-                                                     versionCol,
-                                                     nameCol,
-                                                     geomCol,
-                                                     styleCol,
-                                                     attribsCol,
-                                                     altitudeModeCol,
-                                                     extrudeCol));
-                    result = null;
-                } finally {
-                    if(result != null)
-                        result.close();
-                }
+                query.sql.add(subsql.toString());
+                query.args.add(subargs);
             }
         }
 
@@ -876,28 +1158,30 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                     }
                 }
                 
-                CursorIface result = null;
-                try {
-                    result = BindArgument.query(this.database, subsql.toString(), subargs.isEmpty() ? null : subargs);
-
-                    retval.add(new FeatureCursorImpl(result,
-                                                     idCol,
-                                                     fsidCol,
-                                                     versionCol,
-                                                     nameCol,
-                                                     geomCol,
-                                                     styleCol,
-                                                     attribsCol,
-                                                     altitudeModeCol,
-                                                     extrudeCol));
-                    result = null;
-                } finally {
-                    if(result != null)
-                        result.close();
-                }
+                query.sql.add(subsql.toString());
+                query.args.add(subargs);
             } while(false);
         }
-        
+    }
+
+    private FeatureCursor queryFeaturesImpl(FeatureQueryParameters params, FeatureQuery query, QueryReader reader) {
+        LinkedList<FeatureCursor> retval = new LinkedList<FeatureCursor>();
+        // the reference held for the duration of this method keeps the
+        // transaction open until all of the statements have been issued
+        reader.acquire();
+        try {
+            reader.begin();
+            Iterator<LinkedList<BindArgument>> args = query.args.iterator();
+            for(String sql : query.sql)
+                retval.add(this.queryFeaturesImpl(sql, args.next(), query, reader));
+        } catch(RuntimeException e) {
+            for(FeatureCursor cursor : retval)
+                cursor.close();
+            throw e;
+        } finally {
+            reader.release();
+        }
+
         if(retval.size() == 1) {
             return retval.getFirst();
         } else {
@@ -914,23 +1198,40 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         }
     }
 
+    private FeatureCursor queryFeaturesImpl(String sql, LinkedList<BindArgument> args, FeatureQuery query, QueryReader reader) {
+        CursorIface result = null;
+        try {
+            result = BindArgument.query(reader.database, sql, args.isEmpty() ? null : args);
+
+            final FeatureCursor retval =
+                   new FeatureCursorImpl(result,
+                                         reader,
+                                         query.idCol,
+                                         query.fsidCol,
+                                         query.versionCol,
+                                         query.nameCol,
+                                         query.geomCol,
+                                         query.styleCol,
+                                         query.attribsCol,
+                                         query.altitudeModeCol,
+                                         query.extrudeCol);
+            result = null;
+            return retval;
+        } finally {
+            if(result != null)
+                result.close();
+        }
+    }
+
     @Override
     public int queryFeaturesCount(FeatureQueryParameters params) throws DataStoreException {
-        if(params == null) {
-            CursorIface result = null;
-            try {
-                result = this.database.query("SELECT Count(1) FROM features", null);
-                if(!result.moveToNext())
-                    return 0;
-                return result.getInt(0);
-            } finally {
-                if(result != null)
-                    result.close();
-            }
-        }
+        if(params == null)
+            return this.queryCount("SELECT Count(1) FROM features", null);
 
         Collection<FeatureSetDefn> fsNoCheck;
+        final long waitStart = System.nanoTime();
         synchronized(this) {
+            this.recordLockWait(waitStart);
             fsNoCheck = this.filterNoSync(params, true);
         }
         if(fsNoCheck.isEmpty())
@@ -1025,15 +1326,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                     subsql.append(")");
                 }
                 
-                CursorIface result = null;
-                try {
-                    result = BindArgument.query(this.database, subsql.toString(), subargs.isEmpty() ? null : subargs);
-                    if(result.moveToNext())
-                        retval += result.getInt(0);
-                } finally {
-                    if(result != null)
-                        result.close();
-                }
+                retval += this.queryCount(subsql.toString(), subargs);
             }
         }
 
@@ -1080,15 +1373,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                     subsql.append(")");
                 }
                 
-                CursorIface result = null;
-                try {
-                    result = BindArgument.query(this.database, subsql.toString(), subargs.isEmpty() ? null : subargs);
-                    if(result.moveToNext())
-                        retval += result.getInt(0);
-                } finally {
-                    if(result != null)
-                        result.close();
-                }
+                retval += this.queryCount(subsql.toString(), subargs);
             } while(false);
         }
 
@@ -1223,8 +1508,13 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
 
 
     @Override
-    public synchronized FeatureSetCursor queryFeatureSets(FeatureSetQueryParameters params) throws DataStoreException {
-        Collection<FeatureSetDefn> retval = this.filterNoSync(params, false);
+    public FeatureSetCursor queryFeatureSets(FeatureSetQueryParameters params) throws DataStoreException {
+        Collection<FeatureSetDefn> retval;
+        final long waitStart = System.nanoTime();
+        synchronized(this) {
+            this.recordLockWait(waitStart);
+            retval = this.filterNoSync(params, false);
+        }
         Map<String, FeatureSetDefn> sorted = new TreeMap<String, FeatureSetDefn>(StringIgnoreCaseComparator.INSTANCE);
         for(FeatureSetDefn fs : retval)
             sorted.put(fs.name, fs);
@@ -1232,8 +1522,12 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
     }
 
     @Override
-    public synchronized int queryFeatureSetsCount(FeatureSetQueryParameters params) throws DataStoreException {
-        return this.filterNoSync(params, false).size();
+    public int queryFeatureSetsCount(FeatureSetQueryParameters params) throws DataStoreException {
+        final long waitStart = System.nanoTime();
+        synchronized(this) {
+            this.recordLockWait(waitStart);
+            return this.filterNoSync(params, false).size();
+        }
     }
 
     private boolean isFeatureVisibleImpl(long fid) throws DataStoreException {
@@ -1327,6 +1621,10 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
 
     @Override
     public synchronized void dispose() {
+        if(this.readers != null) {
+            this.readersClosed = true;
+            this.closeReaders();
+        }
         if(this.database != null) {
             this.database.close();
             this.database = null;
@@ -1785,15 +2083,21 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         
         internalAcquireModifyLock(this, true, true);
         try {
-            this.database.beginTransaction();
+            InsertContext ctx = new InsertContext();
             try {
-                InsertContext ctx = new InsertContext();
-                final FeatureDefinition2 def = Adapters.adapt(features);
-                while(features.moveToNext())
-                    this.insertFeatureImpl(ctx, features.getFsid(), features.getId(), def, features.getVersion());
-                this.database.setTransactionSuccessful();
+                this.database.beginTransaction();
+                try {
+                    final FeatureDefinition2 def = Adapters.adapt(features);
+                    while(features.moveToNext())
+                        this.insertFeatureImpl(ctx, features.getFsid(), features.getId(), def, features.getVersion());
+                    this.database.setTransactionSuccessful();
+                } finally {
+                    this.database.endTransaction();
+                }
+                this.commitDictionary(ctx);
             } finally {
-                this.database.endTransaction();
+                this.rollbackDictionary(ctx);
+                ctx.dispose();
             }
         } finally {
             this.releaseModifyLock();
@@ -2521,71 +2825,259 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
     }
 
     protected static void encodeAttributes(FDB2 impl, InsertContext ctx, AttributeSet metadata) {
-        DataOutputStream dos = null;
-        try {
-            dos = new DataOutputStream(ctx.codedAttribs);
-            
-            Set<String> keys = metadata.getAttributeNames();
-            
-            dos.writeInt(1); // version
-            dos.writeInt(keys.size()); // number of entries
+        impl.validateAttributeSchema();
 
-            AttributeSpec schemaSpec;
-            for(String key : keys) {
-                schemaSpec = impl.keyToAttrSchema.get(key);
-                if(schemaSpec == null) {
-                    schemaSpec = insertAttrSchema(ctx, impl.database, key, metadata);
-                    if(schemaSpec == null)
-                        continue;
-                    impl.keyToAttrSchema.put(key, schemaSpec);
-                    impl.idToAttrSchema.put(Long.valueOf(schemaSpec.id), schemaSpec);
-                } else {
-                    Class<?> type = metadata.getAttributeType(key);
-                    Integer typeCode = ATTRIB_TYPES.get(type);
-                    if(typeCode == null) {
-                        Log.w(ABS_TAG, "Skipping attribute " + key + " with unsupported type " + type);
-                        continue;
-                    }
-                    
-                    // add a secondary type for the key as a new schema row
-                    if(schemaSpec.type != typeCode.intValue()) {
-                        AttributeSpec secondarySchema = schemaSpec.secondaryDefs.get(typeCode);
-                        if(secondarySchema == null) {
-                            secondarySchema = insertAttrSchema(ctx, impl.database, key, metadata);
-                            if(secondarySchema == null)
-                                continue;
-                            schemaSpec.secondaryDefs.put(typeCode, secondarySchema);
-                            impl.idToAttrSchema.put(Long.valueOf(secondarySchema.id), secondarySchema);
+        ctx.codedAttribs.write(ATTRIBS_CODING_COMPACT);
+        encodeAttributesImpl(impl, ctx, metadata);
+    }
 
-                            schemaSpec = secondarySchema;
-                        }
+    /**
+     * Appends the compact coding of the attributes: the number of entries
+     * followed by the schema ID and value of each entry. Integers and lengths
+     * are coded as varints and strings that repeat for a schema reference the
+     * shared dictionary.
+     */
+    private static void encodeAttributesImpl(FDB2 impl, InsertContext ctx, AttributeSet metadata) {
+        final Set<String> keys = metadata.getAttributeNames();
+        final ArrayList<String> codedKeys = new ArrayList<String>(keys.size());
+        final ArrayList<AttributeSpec> codedSpecs = new ArrayList<AttributeSpec>(keys.size());
+
+        AttributeSpec schemaSpec;
+        for(String key : keys) {
+            schemaSpec = impl.keyToAttrSchema.get(key);
+            if(schemaSpec == null) {
+                schemaSpec = insertAttrSchema(ctx, impl.database, key, metadata);
+                if(schemaSpec == null)
+                    continue;
+                impl.keyToAttrSchema.put(key, schemaSpec);
+                impl.registerAttrSchema(schemaSpec);
+            } else {
+                Class<?> type = metadata.getAttributeType(key);
+                Integer typeCode = ATTRIB_TYPES.get(type);
+                if(typeCode == null) {
+                    Log.w(ABS_TAG, "Skipping attribute " + key + " with unsupported type " + type);
+                    continue;
+                }
+                
+                // add a secondary type for the key as a new schema row
+                if(schemaSpec.type != typeCode.intValue()) {
+                    AttributeSpec secondarySchema = schemaSpec.secondaryDefs.get(typeCode);
+                    if(secondarySchema == null) {
+                        secondarySchema = insertAttrSchema(ctx, impl.database, key, metadata);
+                        if(secondarySchema == null)
+                            continue;
+                        schemaSpec.secondaryDefs.put(typeCode, secondarySchema);
+                        impl.registerAttrSchema(secondarySchema);
                     }
+                    schemaSpec = secondarySchema;
                 }
+            }
+            codedKeys.add(key);
+            codedSpecs.add(schemaSpec);
+        }
 
-                dos.writeInt((int)schemaSpec.id);
-                if(schemaSpec.type != 5) {
-                    schemaSpec.coder.encode(dos, metadata, key);
-                } else {
-                    // recurse
-                    dos.flush();
-                    encodeAttributes(impl, ctx, metadata.getAttributeSetAttribute(key));
-                    dos = new DataOutputStream(ctx.codedAttribs);
-                }
+        final ByteArrayOutputStream out = ctx.codedAttribs;
+        writeVarint(out, codedKeys.size());
+        for(int i = 0; i < codedKeys.size(); i++) {
+            final String key = codedKeys.get(i);
+            schemaSpec = codedSpecs.get(i);
+            writeVarint(out, schemaSpec.id);
+            try {
+                encodeCompactValue(impl, ctx, schemaSpec, metadata, key);
+            } catch(RuntimeException e) {
+                // values are fully read before anything is written
+                Log.w(ABS_TAG, "Failed to code attribute [" + key + "], type is " + metadata.getAttributeType(key));
+                if(schemaSpec.type == 2)
+                    writeDouble(out, 0d);
+                else
+                    writeVarint(out, 0L);
             }
-        } catch(IOException e) {
-            Log.e(ABS_TAG, "Failed to encode feature metadata", e);
-        } finally {
-            if(dos != null)
-                try {
-                    dos.flush();
-                } catch(IOException ignored) {}
         }
     }
-    
-    private static AttributeSet decodeAttributes(byte[] attribsBlob, Map<Long, AttributeSpec> schema) {
-        if(attribsBlob == null)
+
+    private static void encodeCompactValue(FDB2 impl, InsertContext ctx, AttributeSpec schemaSpec, AttributeSet metadata, String key) {
+        final ByteArrayOutputStream out = ctx.codedAttribs;
+        switch(schemaSpec.type) {
+            case 0 :
+                writeVarint(out, zigzag(metadata.getIntAttribute(key)));
+                break;
+            case 1 :
+                writeVarint(out, zigzag(metadata.getLongAttribute(key)));
+                break;
+            case 2 :
+                writeDouble(out, metadata.getDoubleAttribute(key));
+                break;
+            case 3 :
+                encodeString(impl, ctx, schemaSpec, metadata.getStringAttribute(key));
+                break;
+            case 4 :
+                writeBlob(out, metadata.getBinaryAttribute(key));
+                break;
+            case 5 :
+                encodeAttributesImpl(impl, ctx, metadata.getAttributeSetAttribute(key));
+                break;
+            case 6 : {
+                final int[] arr = metadata.getIntArrayAttribute(key);
+                writeVarint(out, (arr != null) ? arr.length+1 : 0);
+                if(arr != null)
+                    for(int v : arr)
+                        writeVarint(out, zigzag(v));
+                break;
+            }
+            case 7 : {
+                final long[] arr = metadata.getLongArrayAttribute(key);
+                writeVarint(out, (arr != null) ? arr.length+1 : 0);
+                if(arr != null)
+                    for(long v : arr)
+                        writeVarint(out, zigzag(v));
+                break;
+            }
+            case 8 : {
+                final double[] arr = metadata.getDoubleArrayAttribute(key);
+                writeVarint(out, (arr != null) ? arr.length+1 : 0);
+                if(arr != null)
+                    for(double v : arr)
+                        writeDouble(out, v);
+                break;
+            }
+            case 9 : {
+                final String[] arr = metadata.getStringArrayAttribute(key);
+                writeVarint(out, (arr != null) ? arr.length+1 : 0);
+                if(arr != null)
+                    for(String v : arr)
+                        writeInlineString(out, v);
+                break;
+            }
+            case 10 : {
+                final byte[][] arr = metadata.getBinaryArrayAttribute(key);
+                writeVarint(out, (arr != null) ? arr.length+1 : 0);
+                if(arr != null)
+                    for(byte[] v : arr)
+                        writeBlob(out, v);
+                break;
+            }
+            default :
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Codes a string value either as a reference into the shared dictionary
+     * (odd tag) or inline (even tag). Short values are added to the
+     * dictionary of the schema until it is full, so enumerated columns are
+     * coded in one or two bytes per feature. Strings added within a
+     * transaction are held on the context until it commits.
+     */
+    private static void encodeString(FDB2 impl, InsertContext ctx, AttributeSpec schemaSpec, String value) {
+        if(value == null) {
+            writeInlineString(ctx.codedAttribs, null);
+            return;
+        }
+        Long dictId = schemaSpec.dictionary.get(value);
+        Map<String, Long> inserts = ctx.dictionaryInserts.get(schemaSpec);
+        if(dictId == null && inserts != null)
+            dictId = inserts.get(value);
+        if(dictId == null &&
+           value.length() <= MAX_DICTIONARY_STRING_LENGTH &&
+           schemaSpec.dictionary.size()+((inserts != null) ? inserts.size() : 0) < MAX_DICTIONARY_SIZE) {
+
+            try {
+                if(ctx.insertAttributeDictionaryStatement == null)
+                    ctx.insertAttributeDictionaryStatement = impl.database.compileStatement("INSERT INTO attribs_dict (schema_id, value) VALUES (?, ?)");
+                ctx.insertAttributeDictionaryStatement.bind(1, schemaSpec.id);
+                ctx.insertAttributeDictionaryStatement.bind(2, value);
+                ctx.insertAttributeDictionaryStatement.execute();
+            } finally {
+                if(ctx.insertAttributeDictionaryStatement != null)
+                    ctx.insertAttributeDictionaryStatement.clearBindings();
+            }
+            dictId = Long.valueOf(Databases.lastInsertRowId(impl.database));
+            // readers may decode the string as soon as the row commits
+            impl.registerDictionaryString(dictId.longValue(), value);
+            if(impl.database.inTransaction()) {
+                if(inserts == null)
+                    ctx.dictionaryInserts.put(schemaSpec, inserts = new HashMap<String, Long>());
+                inserts.put(value, dictId);
+            } else {
+                schemaSpec.dictionary.put(value, dictId);
+            }
+        }
+
+        if(dictId != null)
+            writeVarint(ctx.codedAttribs, (dictId.longValue()<<1L)|0x1L);
+        else
+            writeInlineString(ctx.codedAttribs, value);
+    }
+
+    /**
+     * Codes a string inline as its length plus one, or zero for
+     * <code>null</code>, followed by the UTF-8 bytes.
+     */
+    private static void writeInlineString(ByteArrayOutputStream out, String value) {
+        if(value == null) {
+            writeVarint(out, 0L);
+            return;
+        }
+        final byte[] utf8 = value.getBytes(FileSystemUtils.UTF8_CHARSET);
+        writeVarint(out, (utf8.length+1L)<<1L);
+        out.write(utf8, 0, utf8.length);
+    }
+
+    private static void writeBlob(ByteArrayOutputStream out, byte[] blob) {
+        writeVarint(out, (blob != null) ? blob.length+1 : 0);
+        if(blob != null)
+            out.write(blob, 0, blob.length);
+    }
+
+    private static void writeDouble(ByteArrayOutputStream out, double value) {
+        final long bits = Double.doubleToRawLongBits(value);
+        for(int shift = 56; shift >= 0; shift -= 8)
+            out.write((int)(bits>>>shift)&0xFF);
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while((value&~0x7FL) != 0L) {
+            out.write((int)((value&0x7FL)|0x80L));
+            value >>>= 7;
+        }
+        out.write((int)value);
+    }
+
+    static long readVarint(ByteBuffer buf) {
+        long value = 0L;
+        for(int shift = 0; shift < 64; shift += 7) {
+            final int b = buf.get()&0xFF;
+            value |= (long)(b&0x7F)<<shift;
+            if((b&0x80) == 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    static long zigzag(long value) {
+        return (value<<1)^(value>>63);
+    }
+
+    static long unzigzag(long value) {
+        return (value>>>1)^-(value&0x1L);
+    }
+
+    private static AttributeSet decodeAttributes(byte[] attribsBlob, AttributeSpec[] schema, String[] dictionary) {
+        if(attribsBlob == null || attribsBlob.length == 0)
             return null;
 
+        // legacy blobs lead with a 32-bit big-endian version of 1
+        if((attribsBlob[0]&0xFF) == ATTRIBS_CODING_COMPACT) {
+            final ByteBuffer buf = ByteBuffer.wrap(attribsBlob);
+            buf.position(1);
+            try {
+                return decodeCompactAttributes(buf, schema, dictionary);
+            } catch(BufferUnderflowException | IllegalArgumentException e) {
+                Log.e(ABS_TAG, "Failed to decode feature metadata", e);
+                return null;
+            }
+        }
+
         DataInputStream dis = null;
         try {
             dis = new DataInputStream(new ByteArrayInputStream(attribsBlob));
@@ -2598,7 +3090,137 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         }
     }
 
-    private static AttributeSet decodeAttributesImpl(DataInputStream dis, Map<Long, AttributeSpec> schema) {
+    private static AttributeSet decodeCompactAttributes(ByteBuffer buf, AttributeSpec[] schema, String[] dictionary) {
+        final int numKeys = (int)readVarint(buf);
+
+        AttributeSet retval = new AttributeSet();
+
+        AttributeSpec schemaSpec;
+        for(int i = 0; i < numKeys; i++) {
+            final long schemaSpecId = readVarint(buf);
+            schemaSpec = getAttrSchema(schema, schemaSpecId);
+            if(schemaSpec == null) {
+                Log.e(ABS_TAG,  "Unable to located AttributeSpec schema ID " + schemaSpecId);
+                return null;
+            }
+
+            final String key = schemaSpec.key;
+            switch(schemaSpec.type) {
+                case 0 :
+                    retval.setAttribute(key, (int)unzigzag(readVarint(buf)));
+                    break;
+                case 1 :
+                    retval.setAttribute(key, unzigzag(readVarint(buf)));
+                    break;
+                case 2 :
+                    retval.setAttribute(key, buf.getDouble());
+                    break;
+                case 3 :
+                    retval.setAttribute(key, readString(buf, dictionary));
+                    break;
+                case 4 :
+                    retval.setAttribute(key, readBlob(buf));
+                    break;
+                case 5 : {
+                    final AttributeSet nested = decodeCompactAttributes(buf, schema, dictionary);
+                    if(nested == null)
+                        return null;
+                    retval.setAttribute(key, nested);
+                    break;
+                }
+                case 6 : {
+                    final int len = (int)readVarint(buf)-1;
+                    int[] arr = null;
+                    if(len >= 0) {
+                        arr = new int[len];
+                        for(int j = 0; j < len; j++)
+                            arr[j] = (int)unzigzag(readVarint(buf));
+                    }
+                    retval.setAttribute(key, arr);
+                    break;
+                }
+                case 7 : {
+                    final int len = (int)readVarint(buf)-1;
+                    long[] arr = null;
+                    if(len >= 0) {
+                        arr = new long[len];
+                        for(int j = 0; j < len; j++)
+                            arr[j] = unzigzag(readVarint(buf));
+                    }
+                    retval.setAttribute(key, arr);
+                    break;
+                }
+                case 8 : {
+                    final int len = (int)readVarint(buf)-1;
+                    double[] arr = null;
+                    if(len >= 0) {
+                        arr = new double[len];
+                        for(int j = 0; j < len; j++)
+                            arr[j] = buf.getDouble();
+                    }
+                    retval.setAttribute(key, arr);
+                    break;
+                }
+                case 9 : {
+                    final int len = (int)readVarint(buf)-1;
+                    String[] arr = null;
+                    if(len >= 0) {
+                        arr = new String[len];
+                        for(int j = 0; j < len; j++)
+                            arr[j] = readString(buf, dictionary);
+                    }
+                    retval.setAttribute(key, arr);
+                    break;
+                }
+                case 10 : {
+                    final int len = (int)readVarint(buf)-1;
+                    byte[][] arr = null;
+                    if(len >= 0) {
+                        arr = new byte[len][];
+                        for(int j = 0; j < len; j++)
+                            arr[j] = readBlob(buf);
+                    }
+                    retval.setAttribute(key, arr);
+                    break;
+                }
+                default :
+                    Log.e(ABS_TAG, "Bad AttributeSpec coding: " + schemaSpec.type);
+                    return null;
+            }
+        }
+
+        return retval;
+    }
+
+    private static String readString(ByteBuffer buf, String[] dictionary) {
+        final long tag = readVarint(buf);
+        if((tag&0x1L) == 0x1L) {
+            final long dictId = tag>>>1;
+            final String value = (dictId < dictionary.length) ? dictionary[(int)dictId] : null;
+            if(value == null)
+                throw new IllegalArgumentException("Unknown dictionary ID " + dictId);
+            return value;
+        }
+        final int len = (int)(tag>>>1)-1;
+        if(len < 0)
+            return null;
+        if(len > buf.remaining())
+            throw new BufferUnderflowException();
+        final String value = new String(buf.array(), buf.arrayOffset()+buf.position(), len, FileSystemUtils.UTF8_CHARSET);
+        buf.position(buf.position()+len);
+        return value;
+    }
+
+    private static byte[] readBlob(ByteBuffer buf) {
+        final int len = (int)readVarint(buf)-1;
+        if(len < 0)
+            return null;
+        final byte[] blob = new byte[len];
+        buf.get(blob);
+        return blob;
+    }
+
+    private static AttributeSet decodeAttributesImpl(DataInputStream dis, AttributeSpec[] schema) {
         try {
             final int version = dis.readInt(); // version
             if(version != 1) {
@@ -2613,7 +3235,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
             AttributeSpec schemaSpec;
             for(int i = 0; i < numKeys; i++) {
                 final int schemaSpecId = dis.readInt();
-                schemaSpec = schema.get(Long.valueOf(schemaSpecId));
+                schemaSpec = getAttrSchema(schema, schemaSpecId);
                 if(schemaSpec == null) {
                     Log.e(ABS_TAG,  "Unable to located AttributeSpec schema ID " + schemaSpecId);
                     return null;
@@ -2662,6 +3284,8 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         final AttributeCoder coder;
         
         final Map<Integer, AttributeSpec> secondaryDefs;
+        /** dictionary ID by string value, accessed only under the lock */
+        final Map<String, Long> dictionary;
         
         AttributeSpec(String key, long id, int type) {
             this.key = key;
@@ -2670,6 +3294,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
             this.coder = TYPECODE_TO_CODER.get(Integer.valueOf(type));
             
             this.secondaryDefs = new HashMap<Integer, AttributeSpec>();
+            this.dictionary = new HashMap<String, Long>();
         }
     }
     
@@ -2980,6 +3605,8 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
 
     private final class FeatureCursorImpl extends CursorWrapper implements FeatureCursor, FeatureDefinition3 {
 
+        private final QueryReader reader;
+        private boolean closed;
         private final int idCol;
         private final int fsidCol;
         private final int nameCol;
@@ -2991,10 +3618,16 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         private final int extrudeCol;
         
         private Feature row;
+        /** attributes of the current row, decoded on first request */
+        private AttributeSet rowAttribs;
+        private boolean rowAttribsDecoded;
 
-        protected FeatureCursorImpl(CursorIface filter, int idCol, int fsidCol, int versionCol, int nameCol, int geomCol, int styleCol, int attribsCol, int altidueModeCol, int extrudeCol) {
+        protected FeatureCursorImpl(CursorIface filter, QueryReader reader, int idCol, int fsidCol, int versionCol, int nameCol, int geomCol, int styleCol, int attribsCol, int altidueModeCol, int extrudeCol) {
             super(filter);
             
+            this.reader = reader;
+            this.reader.acquire();
+            this.closed = false;
             this.idCol = idCol;
             this.fsidCol = fsidCol;
             this.versionCol = versionCol;
@@ -3007,6 +3640,8 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
 
             
             this.row = null;
+            this.rowAttribs = null;
+            this.rowAttribsDecoded = false;
         }
 
         @Override
@@ -3076,8 +3711,12 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
             if(this.attribsCol == -1)
                 return null;
             
-            FDB2.this.validateAttributeSchema();
-            return decodeAttributes(this.getBlob(this.attribsCol), FDB2.this.idToAttrSchema);
+            if(!this.rowAttribsDecoded) {
+                FDB2.this.validateAttributeSchema();
+                this.rowAttribs = decodeAttributes(this.getBlob(this.attribsCol), FDB2.this.attrSchemaById, FDB2.this.attrDictionary);
+                this.rowAttribsDecoded = true;
+            }
+            return this.rowAttribs;
         }
 
         @Override
@@ -3100,9 +3739,20 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         @Override
         public boolean moveToNext() {
             this.row = null;
+            this.rowAttribs = null;
+            this.rowAttribsDecoded = false;
             return super.moveToNext();
         }
 
+        @Override
+        public void close() {
+            super.close();
+            if(!this.closed) {
+                this.closed = true;
+                this.reader.release();
+            }
+        }
+
         @Override
         public long getTimestamp() { return 0; }
 
@@ -3121,6 +3771,38 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
 
     }
 
+    /**************************************************************************/
+    // FeatureQuery
+
+    /**
+     * The statements for a feature query, captured while holding the lock.
+     */
+    private static final class FeatureQuery {
+        final LinkedList<String> sql = new LinkedList<String>();
+        final LinkedList<LinkedList<BindArgument>> args = new LinkedList<LinkedList<BindArgument>>();
+        final int idCol;
+        final int fsidCol;
+        final int versionCol;
+        final int nameCol;
+        final int geomCol;
+        final int styleCol;
+        final int attribsCol;
+        final int altitudeModeCol;
+        final int extrudeCol;
+
+        FeatureQuery(int idCol, int fsidCol, int versionCol, int nameCol, int geomCol, int styleCol, int attribsCol, int altitudeModeCol, int extrudeCol) {
+            this.idCol = idCol;
+            this.fsidCol = fsidCol;
+            this.versionCol = versionCol;
+            this.nameCol = nameCol;
+            this.geomCol = geomCol;
+            this.styleCol = styleCol;
+            this.attribsCol = attribsCol;
+            this.altitudeModeCol = altitudeModeCol;
+            this.extrudeCol = extrudeCol;
+        }
+    }
+
     /**************************************************************************/
     // FeatureSetCursorImpl
 
@@ -3165,6 +3847,68 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         }        
     }
     
+    /**************************************************************************/
+    // QueryReader
+
+    /**
+     * The connection shared by the cursors of a query. If the query has more
+     * than one statement, the statements run in a single read transaction so
+     * that they all see the same snapshot of the database. The transaction
+     * is ended and the reader returned once the last cursor is closed.
+     */
+    private final class QueryReader {
+        final DatabaseIface database;
+        private final boolean transaction;
+        private boolean inTransaction;
+        private int references;
+
+        QueryReader(DatabaseIface database, boolean transaction) {
+            this.database = database;
+            this.transaction = transaction;
+            this.inTransaction = false;
+            this.references = 0;
+        }
+
+        synchronized void acquire() {
+            this.references++;
+        }
+
+        synchronized void begin() {
+            if(!this.transaction)
+                return;
+            // a deferred transaction never acquires a write lock. it takes
+            // its snapshot on the first read, which is made now rather than
+            // when the first cursor is stepped
+            this.database.execute("BEGIN DEFERRED", null);
+            this.inTransaction = true;
+            CursorIface result = null;
+            try {
+                result = this.database.query("SELECT 1 FROM featuresets LIMIT 1", null);
+                result.moveToNext();
+            } finally {
+                if(result != null)
+                    result.close();
+            }
+        }
+
+        synchronized void release() {
+            if(--this.references > 0)
+                return;
+            if(this.inTransaction) {
+                this.inTransaction = false;
+                try {
+                    this.database.execute("COMMIT", null);
+                } catch(RuntimeException e) {
+                    // don't return a reader that may still hold a snapshot
+                    Log.w(ABS_TAG, "Failed to end read transaction on " + FDB2.this.databaseFile, e);
+                    FDB2.this.closeReader(this.database);
+                    return;
+                }
+            }
+            FDB2.this.releaseReader(this.database);
+        }
+    }
+
     /**************************************************************************/
     // InsertContext
 
@@ -3176,11 +3920,15 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         StatementIface insertStyleStatement;
         StatementIface insertAttributesStatement;
         StatementIface insertAttributeSchemaStatement;
+        StatementIface insertAttributeDictionaryStatement;
         BindArgument insertGeomArg;
         ByteArrayOutputStream codedAttribs;
+        /** dictionary strings inserted in the open transaction, by schema */
+        Map<AttributeSpec, Map<String, Long>> dictionaryInserts;
         
         public InsertContext() {
             this.styleIds = new HashMap<String, Long>();
+            this.dictionaryInserts = new HashMap<AttributeSpec, Map<String, Long>>();
             this.insertGeomArg = new BindArgument();
             this.codedAttribs = new ByteArrayOutputStream(8);
         }
@@ -3212,8 +3960,13 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
                 this.insertAttributeSchemaStatement.close();
                 this.insertAttributeSchemaStatement = null;
             }
+            if(this.insertAttributeDictionaryStatement != null) {
+                this.insertAttributeDictionaryStatement.close();
+                this.insertAttributeDictionaryStatement = null;
+            }
             this.insertGeomArg = null;
             this.codedAttribs = null;
+            this.dictionaryInserts = null;
         }
     }
     
@@ -3254,9 +4007,15 @@ abstract class FDB2 extends AbstractFeatureDataStore3 {
         public void endBulkInsertion(boolean commit) throws DataStoreException {
             if(this.done)
                 throw new IllegalStateException();
-            if(commit)
-                this.db.database.setTransactionSuccessful();
-            this.db.database.endTransaction();
+            try {
+                if(commit)
+                    this.db.database.setTransactionSuccessful();
+                this.db.database.endTransaction();
+                if(commit)
+                    this.db.commitDictionary(this.ctx);
+            } finally {
+                this.db.rollbackDictionary(this.ctx);
+            }
         }
 
         protected long insertFeatureSet(String provider, String type, String name, double minResolution, double maxResolution) throws DataStoreException {
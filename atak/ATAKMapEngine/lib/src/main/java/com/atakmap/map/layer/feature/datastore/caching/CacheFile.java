@@ -13,7 +13,6 @@ import java.util.Map;
 import java.util.Set;
 
 import com.atakmap.coremap.io.IOProviderFactory;
-import com.atakmap.map.layer.feature.AttributeSet;
 import com.atakmap.map.layer.feature.DataStoreException;
 import com.atakmap.map.layer.feature.Feature;
 import com.atakmap.map.layer.feature.FeatureCursor;
@@ -78,11 +77,12 @@ public final class CacheFile implements Disposable {
         public void writeCache(FileChannel channel, ByteOrder endian, int level, int index, long timestamp, FeatureDataStore2 features, FeatureQueryParameters params) throws IOException, DataStoreException;
     }
 
-    private final static int CURRENT_VERSION = 2;
+    private final static int CURRENT_VERSION = 3;
     private final static Map<Integer, Format> FORMATS = new HashMap<Integer, Format>();
     static {
         FORMATS.put(1, CacheFileV1.INSTANCE);
         FORMATS.put(2, CacheFileV1.INSTANCE);
+        FORMATS.put(3, CacheFileV2.INSTANCE);
     }
 
     private int clientVersion;
@@ -137,81 +137,7 @@ public final class CacheFile implements Disposable {
     }
     
     public FeatureCursor getFeatures() throws IOException {
-        return new FeatureCursor() {
-            int rowIdx = 0;
-            Feature row = null;
-
-            @Override
-            public boolean moveToNext() {
-                this.row = null;
-                if(rowIdx >= getNumFeatures())
-                    return false;
-                try {
-                    row = getFeature(rowIdx++);
-                    return true;
-                } catch(IOException e) {
-                    return false;
-                }
-            }
-
-            @Override
-            public void close() {}
-
-            @Override
-            public boolean isClosed() {
-                return false;
-            }
-
-            @Override
-            public Object getRawGeometry() {
-                return this.row.getGeometry();
-            }
-
-            @Override
-            public int getGeomCoding() {
-                return GEOM_ATAK_GEOMETRY;
-            }
-
-            @Override
-            public String getName() {
-                return this.row.getName();
-            }
-
-            @Override
-            public int getStyleCoding() {
-                return STYLE_ATAK_STYLE;
-            }
-
-            @Override
-            public Object getRawStyle() {
-                return this.row.getStyle();
-            }
-
-            @Override
-            public AttributeSet getAttributes() {
-                return this.row.getAttributes();
-            }
-
-            @Override
-            public Feature get() {
-                return this.row;
-            }
-
-            @Override
-            public long getId() {
-                return this.row.getId();
-            }
-
-            @Override
-            public long getVersion() {
-                return this.row.getVersion();
-            }
-
-            @Override
-            public long getFsid() {
-                return this.row.getFeatureSetId();
-            }
-        };
+        return this.format.getFeatures(this.context);
     }
     
     public Feature findFeature(long fid) throws IOException {
@@ -660,7 +660,7 @@ class CacheFileV1 implements CacheFile.Format {
             throw new EOFException();
     }
     
-    private static void flushIfNecessary(Context ctx, int required) throws IOException {
+    static void flushIfNecessary(Context ctx, int required) throws IOException {
         if(required > ctx.buf.capacity()) {
             // flush the buffer contents to the channel
             ctx.buf.flip();
@@ -688,7 +688,7 @@ class CacheFileV1 implements CacheFile.Format {
             throw new IllegalStateException();
     }
     
-    private static String readUTF8String(Context ctx) throws IOException {
+    static String readUTF8String(Context ctx) throws IOException {
         fillIfNecessary(ctx, 2);
         final int strLen = ctx.buf.getShort()&0xFFFF;
         if(strLen < 1)
@@ -703,7 +703,7 @@ class CacheFileV1 implements CacheFile.Format {
         return retval.toString();
     }
     
-    private static void writeUTF8String(Context ctx, String str) throws IOException {
+    static void writeUTF8String(Context ctx, String str) throws IOException {
         if(str == null) {
             flushIfNecessary(ctx, 2);
             ctx.buf.putShort((short)0);
@@ -717,7 +717,7 @@ class CacheFileV1 implements CacheFile.Format {
         }
     }
     
-    private static void decodeAttribute(Context ctx, AttributeSet attr) throws IOException {
+    static void decodeAttribute(Context ctx, AttributeSet attr) throws IOException {
         final String key = readUTF8String(ctx);
         fillIfNecessary(ctx, 1);
         final int type = ctx.buf.get()&0xFF;
@@ -825,7 +825,7 @@ class CacheFileV1 implements CacheFile.Format {
         }
     }
     
-    private static void encodeAttribute(Context ctx, AttributeSet attr, String key) throws IOException {
+    static void encodeAttribute(Context ctx, AttributeSet attr, String key) throws IOException {
         writeUTF8String(ctx, key);
        
         final Class<?> attrType = attr.getAttributeType(key);
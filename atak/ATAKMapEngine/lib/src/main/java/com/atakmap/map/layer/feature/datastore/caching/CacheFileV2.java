@@ -0,0 +1,840 @@
+package com.atakmap.map.layer.feature.datastore.caching;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.atakmap.map.layer.feature.Adapters;
+import com.atakmap.map.layer.feature.AttributeSet;
+import com.atakmap.map.layer.feature.DataStoreException;
+import com.atakmap.map.layer.feature.Feature;
+import com.atakmap.map.layer.feature.FeatureCursor;
+import com.atakmap.map.layer.feature.FeatureDataStore2;
+import com.atakmap.map.layer.feature.FeatureDefinition2;
+import com.atakmap.map.layer.feature.FeatureSet;
+import com.atakmap.map.layer.feature.FeatureSetCursor;
+import com.atakmap.map.layer.feature.FeatureDataStore2.FeatureSetQueryParameters;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.feature.geometry.Geometry;
+import com.atakmap.map.layer.feature.geometry.GeometryFactory;
+import com.atakmap.map.layer.feature.ogr.style.FeatureStyleParser;
+import com.atakmap.nio.Buffers;
+
+/**
+ * Memory mapped cache file. Records are read in place; the cursor hands out
+ * the WKB geometry and OGR style of each record without decoding them, and
+ * the spatial index is walked directly in the mapped file.
+ *
+ * <P>Strings and attributes are encoded as for {@link CacheFileV1}.
+ *
+ * <PRE>
+ * Header
+ *   timestamp [8 bytes]
+ *   number of features [4 bytes]
+ *   number of feature sets [4 bytes]
+ *   level [4 bytes]
+ *   index [4 bytes]
+ *   terminal [1 byte]
+ *   reserved [3 bytes]
+ *   number of styles [4 bytes]
+ *   feature records index offset [8 bytes]
+ *   feature set index offset [8 bytes]
+ *   style index offset [8 bytes]
+ *   spatial index offset [8 bytes]
+ *
+ * Feature Records Table
+ *   record 1...n
+ *
+ * Feature Records Table Record
+ *   FSID [8 bytes]
+ *   FID [8 bytes]
+ *   version [8 bytes]
+ *   timestamp [8 bytes]
+ *   style index [4 bytes], -1 if no style
+ *   name [varying]
+ *   geometry WKB length [4 bytes]
+ *   geometry WKB [varying]
+ *   attributes [varying]
+ *
+ * Feature Records Index, sorted by FID
+ *   FID [8 bytes]
+ *   file offset [8 bytes]
+ *
+ * Feature Set Records Table
+ *   feature set record 1...n, as for V1
+ *
+ * Feature Set Index
+ *   FSID [8 bytes]
+ *   file offset [8 bytes]
+ *
+ * Style Records Table
+ *   OGR style 1...n [varying]
+ *
+ * Style Index
+ *   file offset [8 bytes]
+ *
+ * Spatial Index, packed R-tree
+ *   number of levels [4 bytes]
+ *   number of nodes [4 bytes]
+ *   exclusive end node of each level [4 bytes], leaves first
+ *   reserved [4 bytes], if the number of levels is odd
+ *   node bounds [32 bytes] x nodes, minX, minY, maxX, maxY
+ *   feature records index entry of each leaf [4 bytes]
+ * </PRE>
+ */
+final class CacheFileV2 implements CacheFile.Format {
+    public final static CacheFile.Format INSTANCE = new CacheFileV2();
+
+    private final static int HEADER_SIZE = 64;
+    private final static int NODE_SIZE = 16;
+
+    static class Context {
+        ByteBuffer buf;
+        int headerOffset;
+        CacheFile.Metadata metadata;
+        int numStyles;
+        int recordsIndexOffset;
+        int featureSetIndexOffset;
+        int styleIndexOffset;
+        int spatialIndexOffset;
+        /** decoded styles, shared by all records that reference them */
+        String[] styles;
+    }
+
+    private CacheFileV2() {}
+
+    @Override
+    public Object openFormatContext(FileChannel channel, ByteOrder endian) throws IOException {
+        final long size = channel.size();
+        if(size > Integer.MAX_VALUE)
+            return null;
+
+        Context retval = new Context();
+        retval.headerOffset = (int)channel.position();
+        try {
+            retval.buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch(UnsupportedOperationException | IOException e) {
+            // the IO provider may not support mapping; read the file
+            retval.buf = ByteBuffer.allocate((int)size);
+            channel.position(0);
+            while(retval.buf.hasRemaining()) {
+                if(channel.read(retval.buf) < 0)
+                    throw new EOFException();
+            }
+            retval.buf.flip();
+        }
+        retval.buf.order(endian);
+        return retval;
+    }
+
+    @Override
+    public void closeFormatContext(Object context) {
+        // the mapping is released once unreachable
+        ((Context)context).buf = null;
+    }
+
+    @Override
+    public CacheFile.Metadata readCacheMetadata(Object context) throws IOException {
+        Context ctx = (Context)context;
+        if(ctx.metadata == null) {
+            if(ctx.buf.limit() < ctx.headerOffset+HEADER_SIZE)
+                throw new EOFException();
+
+            final ByteBuffer buf = ctx.buf.duplicate().order(ctx.buf.order());
+            buf.position(ctx.headerOffset);
+
+            CacheFile.Metadata metadata = new CacheFile.Metadata();
+            metadata.timestamp = buf.getLong();
+            metadata.numFeatures = buf.getInt();
+            metadata.numFeatureSets = buf.getInt();
+            metadata.level = buf.getInt();
+            metadata.index = buf.getInt();
+            metadata.terminal = (buf.get() != 0x00);
+            Buffers.skip(buf, 3);
+            final int numStyles = buf.getInt();
+            final long recordsIndexOffset = buf.getLong();
+            final long featureSetIndexOffset = buf.getLong();
+            final long styleIndexOffset = buf.getLong();
+            final long spatialIndexOffset = buf.getLong();
+
+            // the indices are read in place, make sure that they are within
+            // the file
+            final int start = ctx.headerOffset+HEADER_SIZE;
+            final int end = ctx.buf.limit();
+            if(!isTable(recordsIndexOffset, metadata.numFeatures, 16, start, end) ||
+               !isTable(featureSetIndexOffset, metadata.numFeatureSets, 16, start, end) ||
+               !isTable(styleIndexOffset, numStyles, 8, start, end) ||
+               !isTable(spatialIndexOffset, 2, 4, start, end)) {
+
+                throw new IOException("Corrupt cache file header");
+            }
+            final int numLevels = ctx.buf.getInt((int)spatialIndexOffset);
+            final int numNodes = ctx.buf.getInt((int)spatialIndexOffset+4);
+            final long levelsOffset = spatialIndexOffset+8;
+            final long boundsOffset = levelsOffset + ((numLevels+1L)&~1L)*4L;
+            if(numLevels < 0 || numNodes < 0 ||
+               !isTable(levelsOffset, (numLevels+1L)&~1L, 4, start, end) ||
+               !isTable(boundsOffset, numNodes, 32, start, end)) {
+
+                throw new IOException("Corrupt cache file spatial index");
+            }
+            final int numLeaves = (numLevels > 0) ? ctx.buf.getInt((int)levelsOffset) : 0;
+            if(numLeaves > numNodes || !isTable(boundsOffset+numNodes*32L, numLeaves, 4, start, end))
+                throw new IOException("Corrupt cache file spatial index");
+
+            ctx.numStyles = numStyles;
+            ctx.recordsIndexOffset = (int)recordsIndexOffset;
+            ctx.featureSetIndexOffset = (int)featureSetIndexOffset;
+            ctx.styleIndexOffset = (int)styleIndexOffset;
+            ctx.spatialIndexOffset = (int)spatialIndexOffset;
+            ctx.styles = new String[ctx.numStyles];
+            ctx.metadata = metadata;
+        }
+        return ctx.metadata;
+    }
+
+    @Override
+    public Feature getFeature(Object context, int recordIdx) throws IOException {
+        final Context ctx = (Context)context;
+        if(recordIdx < 0 || recordIdx >= ctx.metadata.numFeatures)
+            throw new IllegalArgumentException();
+        final RecordCursor record = new RecordCursor(ctx);
+        record.moveTo(recordIdx);
+        return record.get();
+    }
+
+    @Override
+    public FeatureCursor getFeatures(Object context) throws IOException {
+        return new RecordCursor((Context)context);
+    }
+
+    @Override
+    public Feature findFeature(Object context, long fid) throws IOException {
+        final Context ctx = (Context)context;
+
+        // binary search of the records index
+        int lo = 0;
+        int hi = ctx.metadata.numFeatures-1;
+        while(lo <= hi) {
+            final int mid = (lo+hi) >>> 1;
+            final long midFid = ctx.buf.getLong(ctx.recordsIndexOffset + mid*16);
+            if(midFid < fid) {
+                lo = mid+1;
+            } else if(midFid > fid) {
+                hi = mid-1;
+            } else {
+                return this.getFeature(context, mid);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void getFIDs(Object context, Set<Long> fids) throws IOException {
+        final Context ctx = (Context)context;
+        for(int i = 0; i < ctx.metadata.numFeatures; i++)
+            fids.add(Long.valueOf(ctx.buf.getLong(ctx.recordsIndexOffset + i*16)));
+    }
+
+    /**
+     * Returns the features whose minimum bounding box intersects that of the
+     * filter.
+     */
+    @Override
+    public boolean findIntersectingFeatures(Object context, Set<Long> fids, Geometry filter) {
+        final Context ctx = (Context)context;
+        final Envelope mbb = filter.getEnvelope();
+        final ByteBuffer buf = ctx.buf;
+
+        final int numLevels = buf.getInt(ctx.spatialIndexOffset);
+        if(numLevels == 0)
+            return true;
+        final int numNodes = buf.getInt(ctx.spatialIndexOffset+4);
+        final int levelsOffset = ctx.spatialIndexOffset + 8;
+        final int boundsOffset = levelsOffset + ((numLevels+1)&~1)*4;
+        final int leavesOffset = boundsOffset + numNodes*32;
+
+        // node index and level of each pending node
+        final int[] stack = new int[numLevels*NODE_SIZE*2];
+        int top = 0;
+        stack[top++] = numNodes-1;
+        stack[top++] = numLevels-1;
+        while(top > 0) {
+            final int level = stack[--top];
+            final int node = stack[--top];
+            final int box = boundsOffset + node*32;
+            if(buf.getDouble(box) > mbb.maxX || buf.getDouble(box+8) > mbb.maxY ||
+               buf.getDouble(box+16) < mbb.minX || buf.getDouble(box+24) < mbb.minY) {
+
+                continue;
+            }
+            if(level == 0) {
+                final int recordIdx = buf.getInt(leavesOffset + node*4);
+                fids.add(Long.valueOf(buf.getLong(ctx.recordsIndexOffset + recordIdx*16)));
+                continue;
+            }
+            final int levelStart = (level > 1) ? buf.getInt(levelsOffset + (level-2)*4) : 0;
+            final int childLevelEnd = buf.getInt(levelsOffset + (level-1)*4);
+            final int child = levelStart + (node-childLevelEnd)*NODE_SIZE;
+            final int last = Math.min(child+NODE_SIZE, childLevelEnd);
+            for(int j = child; j < last; j++) {
+                stack[top++] = j;
+                stack[top++] = level-1;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public FeatureSet getFeatureSet(Object context, int index) throws IOException {
+        final Context ctx = (Context)context;
+        if(index < 0 || index >= ctx.metadata.numFeatureSets)
+            throw new IllegalArgumentException();
+
+        final CacheFileV1.Context reader = reader(ctx, (int)ctx.buf.getLong(ctx.featureSetIndexOffset + index*16 + 8));
+        final long fsid = reader.buf.getLong();
+        final long version = reader.buf.getLong();
+        final String provider = CacheFileV1.readUTF8String(reader);
+        final String type = CacheFileV1.readUTF8String(reader);
+        final String name = CacheFileV1.readUTF8String(reader);
+        final double minRes = reader.buf.getDouble();
+        final double maxRes = reader.buf.getDouble();
+
+        return new FeatureSet(fsid, provider, type, name, minRes, maxRes, version);
+    }
+
+    @Override
+    public void writeCache(FileChannel channel, ByteOrder endian, int level, int index, long timestamp, FeatureDataStore2 features, FeatureDataStore2.FeatureQueryParameters params) throws IOException, DataStoreException {
+        FeatureSetQueryParameters fsParams = new FeatureSetQueryParameters();
+        fsParams.ids = new HashSet<Long>();
+
+        final long headerOff = channel.position();
+
+        int limit = Integer.MAX_VALUE;
+        if(params != null && params.limit > 0 && params.limit < Integer.MAX_VALUE) {
+            params = new FeatureDataStore2.FeatureQueryParameters(params);
+            params.limit++;
+            limit = params.limit;
+        }
+
+        CacheFileV1.Context writeCtx = new CacheFileV1.Context();
+        writeCtx.endian = endian;
+        writeCtx.buf = ByteBuffer.allocate(10240);
+        writeCtx.buf.order(endian);
+        writeCtx.channel = channel;
+
+        // write the records
+        channel.position(headerOff + HEADER_SIZE);
+        writeCtx.seeks++;
+
+        int numFeatureRecords = 0;
+        long[] fids = new long[64];
+        long[] offsets = new long[64];
+        double[] bounds = new double[64*4];
+        Map<String, Integer> styleIndices = new HashMap<String, Integer>();
+
+        FeatureCursor results = null;
+        try {
+            results = features.queryFeatures(params);
+            final FeatureDefinition2 defn2 = Adapters.adapt(results);
+            while(results.moveToNext()) {
+                if(numFeatureRecords == fids.length) {
+                    fids = Arrays.copyOf(fids, numFeatureRecords*2);
+                    offsets = Arrays.copyOf(offsets, numFeatureRecords*2);
+                    bounds = Arrays.copyOf(bounds, numFeatureRecords*2*4);
+                }
+                fids[numFeatureRecords] = results.getId();
+                offsets[numFeatureRecords] = channel.position()+writeCtx.buf.position();
+
+                fsParams.ids.add(results.getFsid());
+
+                // style
+                String ogrStyle = null;
+                if(results.getRawStyle() == null)
+                    ogrStyle = null;
+                else if(results.getStyleCoding() == FeatureCursor.STYLE_OGR)
+                    ogrStyle = (String)results.getRawStyle();
+                else
+                    ogrStyle = FeatureStyleParser.pack(results.get().getStyle());
+                int styleIndex = -1;
+                if(ogrStyle != null) {
+                    Integer idx = styleIndices.get(ogrStyle);
+                    if(idx == null) {
+                        idx = Integer.valueOf(styleIndices.size());
+                        styleIndices.put(ogrStyle, idx);
+                    }
+                    styleIndex = idx.intValue();
+                }
+
+                CacheFileV1.flushIfNecessary(writeCtx, 36);
+                writeCtx.buf.putLong(results.getFsid());
+                writeCtx.buf.putLong(results.getId());
+                writeCtx.buf.putLong(results.getVersion());
+                writeCtx.buf.putLong(defn2.getTimestamp());
+                writeCtx.buf.putInt(styleIndex);
+
+                // name
+                CacheFileV1.writeUTF8String(writeCtx, results.getName());
+
+                // geometry, the bounds are recorded for the spatial index
+                Geometry geometry = null;
+                byte[] wkb = null;
+                if(results.getRawGeometry() == null) {
+                    // no geometry
+                } else if(results.getGeomCoding() == FeatureCursor.GEOM_WKB) {
+                    wkb = (byte[])results.getRawGeometry();
+                    geometry = GeometryFactory.parseWkb(wkb);
+                } else {
+                    geometry = results.get().getGeometry();
+                }
+                if(geometry != null) {
+                    final Envelope mbb = geometry.getEnvelope();
+                    bounds[numFeatureRecords*4] = mbb.minX;
+                    bounds[numFeatureRecords*4+1] = mbb.minY;
+                    bounds[numFeatureRecords*4+2] = mbb.maxX;
+                    bounds[numFeatureRecords*4+3] = mbb.maxY;
+                } else {
+                    Arrays.fill(bounds, numFeatureRecords*4, numFeatureRecords*4+4, Double.NaN);
+                }
+                if(wkb != null) {
+                    CacheFileV1.flushIfNecessary(writeCtx, 4 + wkb.length);
+                    writeCtx.buf.putInt(wkb.length);
+                    writeCtx.buf.put(wkb);
+                } else if(geometry != null) {
+                    final int wkbSize = geometry.computeWkbSize();
+                    CacheFileV1.flushIfNecessary(writeCtx, 4 + wkbSize);
+                    writeCtx.buf.putInt(wkbSize);
+                    geometry.toWkb(writeCtx.buf);
+                } else {
+                    CacheFileV1.flushIfNecessary(writeCtx, 4);
+                    writeCtx.buf.putInt(0);
+                }
+
+                // attributes
+                AttributeSet attr = results.getAttributes();
+                if(attr != null) {
+                    Set<String> keys = attr.getAttributeNames();
+                    CacheFileV1.flushIfNecessary(writeCtx, 4);
+                    writeCtx.buf.putInt(keys.size());
+                    for(String key : keys) {
+                        CacheFileV1.encodeAttribute(writeCtx, attr, key);
+                    }
+                } else {
+                    CacheFileV1.flushIfNecessary(writeCtx, 4);
+                    writeCtx.buf.putInt(0);
+                }
+
+                numFeatureRecords++;
+            }
+        } finally {
+            if(results != null)
+                results.close();
+        }
+
+        // write the features records index, sorted on FID
+        final long recordsIndexOff = channel.position()+writeCtx.buf.position();
+        final Integer[] order = new Integer[numFeatureRecords];
+        for(int i = 0; i < numFeatureRecords; i++)
+            order[i] = Integer.valueOf(i);
+        final long[] sortFids = fids;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                final long fa = sortFids[a.intValue()];
+                final long fb = sortFids[b.intValue()];
+                return (fa < fb) ? -1 : ((fa > fb) ? 1 : 0);
+            }
+        });
+        for(int i = 0; i < numFeatureRecords; i++) {
+            CacheFileV1.flushIfNecessary(writeCtx, 16);
+            writeCtx.buf.putLong(fids[order[i].intValue()]);
+            writeCtx.buf.putLong(offsets[order[i].intValue()]);
+        }
+
+        // write the feature set records
+        long[] fsids = new long[fsParams.ids.size()];
+        long[] fsOffsets = new long[fsParams.ids.size()];
+        int numFeatureSets = 0;
+        FeatureSetCursor fsResult = null;
+        try {
+            fsResult = features.queryFeatureSets(fsParams);
+            while(fsResult.moveToNext()) {
+                FeatureSet fs = fsResult.get();
+                if(numFeatureSets == fsids.length) {
+                    fsids = Arrays.copyOf(fsids, numFeatureSets+1);
+                    fsOffsets = Arrays.copyOf(fsOffsets, numFeatureSets+1);
+                }
+                fsids[numFeatureSets] = fs.getId();
+                fsOffsets[numFeatureSets] = channel.position()+writeCtx.buf.position();
+                numFeatureSets++;
+
+                CacheFileV1.flushIfNecessary(writeCtx, 16);
+                writeCtx.buf.putLong(fs.getId());
+                writeCtx.buf.putLong(fs.getVersion());
+                CacheFileV1.writeUTF8String(writeCtx, fs.getProvider());
+                CacheFileV1.writeUTF8String(writeCtx, fs.getType());
+                CacheFileV1.writeUTF8String(writeCtx, fs.getName());
+                CacheFileV1.flushIfNecessary(writeCtx, 16);
+                writeCtx.buf.putDouble(fs.getMinResolution());
+                writeCtx.buf.putDouble(fs.getMaxResolution());
+            }
+        } finally {
+            if(fsResult != null)
+                fsResult.close();
+        }
+
+        // write the feature set index
+        final long featureSetIndexOff = channel.position()+writeCtx.buf.position();
+        for(int i = 0; i < numFeatureSets; i++) {
+            CacheFileV1.flushIfNecessary(writeCtx, 16);
+            writeCtx.buf.putLong(fsids[i]);
+            writeCtx.buf.putLong(fsOffsets[i]);
+        }
+
+        // write the styles and the style index
+        final long[] styleOffsets = new long[styleIndices.size()];
+        for(Map.Entry<String, Integer> entry : styleIndices.entrySet()) {
+            styleOffsets[entry.getValue().intValue()] = channel.position()+writeCtx.buf.position();
+            CacheFileV1.writeUTF8String(writeCtx, entry.getKey());
+        }
+        final long styleIndexOff = channel.position()+writeCtx.buf.position();
+        for(int i = 0; i < styleOffsets.length; i++) {
+            CacheFileV1.flushIfNecessary(writeCtx, 8);
+            writeCtx.buf.putLong(styleOffsets[i]);
+        }
+
+        // write the spatial index over the records index entries
+        final long spatialIndexOff = channel.position()+writeCtx.buf.position();
+        final double[] sortedBounds = new double[numFeatureRecords*4];
+        for(int i = 0; i < numFeatureRecords; i++)
+            System.arraycopy(bounds, order[i].intValue()*4, sortedBounds, i*4, 4);
+        writeSpatialIndex(writeCtx, sortedBounds, numFeatureRecords);
+
+        // flush any outstanding data
+        if(writeCtx.buf.position() > 0) {
+            writeCtx.buf.flip();
+            while(writeCtx.buf.hasRemaining())
+                channel.write(writeCtx.buf);
+            writeCtx.writes++;
+        }
+
+        // write the header
+        channel.position(headerOff);
+        writeCtx.seeks++;
+        writeCtx.buf.clear();
+
+        writeCtx.buf.putLong(timestamp); // 8
+        writeCtx.buf.putInt(numFeatureRecords); // 12
+        writeCtx.buf.putInt(numFeatureSets); // 16
+        writeCtx.buf.putInt(level); // 20
+        writeCtx.buf.putInt(index); // 24
+        writeCtx.buf.put((numFeatureRecords < limit) ?
+                                    (byte)0x01 : (byte)0x00); // 25
+        Buffers.skip(writeCtx.buf, 3); // 28
+        writeCtx.buf.putInt(styleOffsets.length); // 32
+        writeCtx.buf.putLong(recordsIndexOff); // 40
+        writeCtx.buf.putLong(featureSetIndexOff); // 48
+        writeCtx.buf.putLong(styleIndexOff); // 56
+        writeCtx.buf.putLong(spatialIndexOff); // 64
+        writeCtx.buf.flip();
+
+        while(writeCtx.buf.hasRemaining())
+            channel.write(writeCtx.buf);
+        writeCtx.writes++;
+    }
+
+    /**************************************************************************/
+
+    /**
+     * Writes a packed R-tree over the specified bounds. The leaves are
+     * ordered by Sort-Tile-Recursive and grouped {@link #NODE_SIZE} at a
+     * time, level by level.
+     */
+    private static void writeSpatialIndex(CacheFileV1.Context ctx, double[] bounds, int count) throws IOException {
+        int numLeaves = 0;
+        for(int i = 0; i < count; i++)
+            if(!Double.isNaN(bounds[i*4]))
+                numLeaves++;
+
+        final int[] leaves = new int[numLeaves];
+        numLeaves = 0;
+        for(int i = 0; i < count; i++)
+            if(!Double.isNaN(bounds[i*4]))
+                leaves[numLeaves++] = i;
+
+        // sort into vertical slices on X, then each slice on Y
+        final int numLeafNodes = (numLeaves+NODE_SIZE-1) / NODE_SIZE;
+        final int sliceSize = (int)Math.ceil(Math.sqrt(numLeafNodes)) * NODE_SIZE;
+        sortOnCenter(leaves, 0, numLeaves, bounds, 0);
+        for(int i = 0; i < numLeaves; i += sliceSize)
+            sortOnCenter(leaves, i, Math.min(i+sliceSize, numLeaves), bounds, 1);
+
+        int numLevels = (numLeaves > 0) ? 1 : 0;
+        int numNodes = numLeaves;
+        for(int c = numLeaves; c > 1; c = (c+NODE_SIZE-1) / NODE_SIZE) {
+            numNodes += (c+NODE_SIZE-1) / NODE_SIZE;
+            numLevels++;
+        }
+
+        final double[] boxes = new double[numNodes*4];
+        for(int i = 0; i < numLeaves; i++)
+            System.arraycopy(bounds, leaves[i]*4, boxes, i*4, 4);
+        final int[] levelEnd = new int[numLevels];
+        int levelStart = 0;
+        int end = numLeaves;
+        if(numLevels > 0)
+            levelEnd[0] = end;
+        for(int level = 1; level < numLevels; level++) {
+            int node = end;
+            for(int child = levelStart; child < end; child += NODE_SIZE) {
+                final int last = Math.min(child+NODE_SIZE, end);
+                boxes[node*4] = Double.POSITIVE_INFINITY;
+                boxes[node*4+1] = Double.POSITIVE_INFINITY;
+                boxes[node*4+2] = Double.NEGATIVE_INFINITY;
+                boxes[node*4+3] = Double.NEGATIVE_INFINITY;
+                for(int j = child; j < last; j++) {
+                    boxes[node*4] = Math.min(boxes[node*4], boxes[j*4]);
+                    boxes[node*4+1] = Math.min(boxes[node*4+1], boxes[j*4+1]);
+                    boxes[node*4+2] = Math.max(boxes[node*4+2], boxes[j*4+2]);
+                    boxes[node*4+3] = Math.max(boxes[node*4+3], boxes[j*4+3]);
+                }
+                node++;
+            }
+            levelStart = end;
+            end = node;
+            levelEnd[level] = end;
+        }
+
+        CacheFileV1.flushIfNecessary(ctx, 8);
+        ctx.buf.putInt(numLevels);
+        ctx.buf.putInt(numNodes);
+        for(int i = 0; i < ((numLevels+1)&~1); i++) {
+            CacheFileV1.flushIfNecessary(ctx, 4);
+            ctx.buf.putInt((i < numLevels) ? levelEnd[i] : 0);
+        }
+        for(int i = 0; i < boxes.length; i++) {
+            CacheFileV1.flushIfNecessary(ctx, 8);
+            ctx.buf.putDouble(boxes[i]);
+        }
+        for(int i = 0; i < numLeaves; i++) {
+            CacheFileV1.flushIfNecessary(ctx, 4);
+            ctx.buf.putInt(leaves[i]);
+        }
+    }
+
+    private static void sortOnCenter(int[] ids, int from, int to, final double[] bounds, final int axis) {
+        final Integer[] sort = new Integer[to-from];
+        for(int i = 0; i < sort.length; i++)
+            sort[i] = Integer.valueOf(ids[from+i]);
+        Arrays.sort(sort, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                final double ca = bounds[a.intValue()*4+axis] + bounds[a.intValue()*4+axis+2];
+                final double cb = bounds[b.intValue()*4+axis] + bounds[b.intValue()*4+axis+2];
+                return Double.compare(ca, cb);
+            }
+        });
+        for(int i = 0; i < sort.length; i++)
+            ids[from+i] = sort[i].intValue();
+    }
+
+    /**
+     * Returns <code>true</code> if a table of <code>count</code> entries of
+     * <code>size</code> bytes at <code>offset</code> lies within
+     * <code>[start, end)</code>.
+     */
+    private static boolean isTable(long offset, long count, int size, int start, int end) {
+        return offset >= start && count >= 0 && offset+count*size <= end;
+    }
+
+    /**
+     * Returns a {@link CacheFileV1} reader positioned at the specified offset
+     * of the file. The file is fully mapped so the reader never fills.
+     */
+    private static CacheFileV1.Context reader(Context ctx, int offset) {
+        CacheFileV1.Context retval = new CacheFileV1.Context();
+        retval.endian = ctx.buf.order();
+        retval.buf = ctx.buf.duplicate().order(ctx.buf.order());
+        retval.buf.position(offset);
+        return retval;
+    }
+
+    private static String getStyle(Context ctx, int styleIdx) throws IOException {
+        if(styleIdx < 0)
+            return null;
+        String retval = ctx.styles[styleIdx];
+        if(retval == null) {
+            final CacheFileV1.Context reader = reader(ctx, (int)ctx.buf.getLong(ctx.styleIndexOffset + styleIdx*8));
+            retval = CacheFileV1.readUTF8String(reader);
+            ctx.styles[styleIdx] = retval;
+        }
+        return retval;
+    }
+
+    /**
+     * Flyweight cursor over the records, in FID order. Fixed fields are read
+     * in place; the name, geometry and attributes are only decoded on
+     * request and the OGR style strings are shared between records.
+     */
+    final static class RecordCursor implements FeatureCursor, FeatureDefinition2 {
+        final Context ctx;
+        int idx;
+        int record;
+        /** offset of the geometry WKB length, or -1 if not yet found */
+        int geometry;
+        Feature row;
+
+        RecordCursor(Context ctx) {
+            this.ctx = ctx;
+            this.idx = -1;
+            this.record = -1;
+        }
+
+        void moveTo(int idx) {
+            this.idx = idx;
+            this.record = (int)this.ctx.buf.getLong(this.ctx.recordsIndexOffset + idx*16 + 8);
+            this.geometry = -1;
+            this.row = null;
+        }
+
+        /**
+         * Returns a read-only view of the geometry WKB of the current record,
+         * or <code>null</code> if the record has no geometry.
+         */
+        ByteBuffer getGeometryBuffer() {
+            final int wkb = this.geometryOffset();
+            final int len = this.ctx.buf.getInt(wkb);
+            if(len < 1)
+                return null;
+            final ByteBuffer retval = this.ctx.buf.asReadOnlyBuffer();
+            retval.position(wkb+4);
+            retval.limit(wkb+4+len);
+            return retval.slice();
+        }
+
+        private int geometryOffset() {
+            if(this.geometry < 0) {
+                // skip the name
+                final int name = this.record + 36;
+                this.geometry = name + 2 + (this.ctx.buf.getShort(name)&0xFFFF);
+            }
+            return this.geometry;
+        }
+
+        @Override
+        public boolean moveToNext() {
+            if(this.idx+1 >= this.ctx.metadata.numFeatures)
+                return false;
+            this.moveTo(this.idx+1);
+            return true;
+        }
+
+        @Override
+        public void close() {}
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+
+        @Override
+        public Object getRawGeometry() {
+            final ByteBuffer wkb = this.getGeometryBuffer();
+            if(wkb == null)
+                return null;
+            final byte[] retval = new byte[wkb.remaining()];
+            wkb.get(retval);
+            return retval;
+        }
+
+        @Override
+        public int getGeomCoding() {
+            return GEOM_WKB;
+        }
+
+        @Override
+        public String getName() {
+            try {
+                return CacheFileV1.readUTF8String(reader(this.ctx, this.record+36));
+            } catch(IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public int getStyleCoding() {
+            return STYLE_OGR;
+        }
+
+        @Override
+        public Object getRawStyle() {
+            try {
+                return getStyle(this.ctx, this.ctx.buf.getInt(this.record+32));
+            } catch(IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public AttributeSet getAttributes() {
+            final int wkb = this.geometryOffset();
+            final CacheFileV1.Context reader = reader(this.ctx, wkb + 4 + Math.max(this.ctx.buf.getInt(wkb), 0));
+            final int numAttributes = reader.buf.getInt();
+            if(numAttributes < 1)
+                return null;
+            try {
+                AttributeSet attr = new AttributeSet();
+                for(int i = 0; i < numAttributes; i++)
+                    CacheFileV1.decodeAttribute(reader, attr);
+                return attr;
+            } catch(IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public Feature get() {
+            if(this.row == null) {
+                final ByteBuffer wkb = this.getGeometryBuffer();
+                final String ogrStyle = (String)this.getRawStyle();
+                this.row = new Feature(this.getFsid(),
+                                       this.getId(),
+                                       this.getName(),
+                                       (wkb != null) ? GeometryFactory.parseWkb(wkb) : null,
+                                       (ogrStyle != null) ? FeatureStyleParser.parse2(ogrStyle) : null,
+                                       this.getAttributes(),
+                                       this.getTimestamp(),
+                                       this.getVersion());
+            }
+            return this.row;
+        }
+
+        @Override
+        public long getId() {
+            return this.ctx.buf.getLong(this.record+8);
+        }
+
+        @Override
+        public long getVersion() {
+            return this.ctx.buf.getLong(this.record+16);
+        }
+
+        @Override
+        public long getFsid() {
+            return this.ctx.buf.getLong(this.record);
+        }
+
+        @Override
+        public long getTimestamp() {
+            return this.ctx.buf.getLong(this.record+24);
+        }
+    }
+}
@@ -6,9 +6,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import android.graphics.Point;
 import android.util.LruCache;
@@ -679,15 +681,12 @@ public class CachingFeatureDataStore extends AbstractReadOnlyFeatureDataStore2 i
                     cacheResult.close();
                     cacheResult = null;
                     
-                    FeatureQueryParameters params = new FeatureQueryParameters();
-                    params.ignoredFeatureProperties = PROPERTY_FEATURE_ATTRIBUTES|
-                                                      PROPERTY_FEATURE_GEOMETRY|
-                                                      PROPERTY_FEATURE_NAME|
-                                                      PROPERTY_FEATURE_STYLE;
-                    cacheResult = swap.queryFeatures(params);
-                    while(cacheResult.moveToNext()) {
-                        fidBuffer.insert(cacheResult.getId(), timestamp, node.level, node.index);
-                    }
+                    // FIDs are preserved on insert, read them from the cache
+                    // file index rather than querying the swap
+                    Set<Long> fids = new HashSet<Long>();
+                    cached.getFIDs(fids);
+                    for(Long fid : fids)
+                        fidBuffer.insert(fid.longValue(), timestamp, node.level, node.index);
                 } finally {
                     swap.releaseModifyLock();
                     
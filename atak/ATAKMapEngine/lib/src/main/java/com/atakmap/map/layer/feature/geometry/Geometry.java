@@ -7,6 +7,7 @@ import com.atakmap.lang.ref.Cleaner;
 import com.atakmap.util.Disposable;
 import com.atakmap.util.ReadWriteLock;
 
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
 public abstract class Geometry implements Disposable {
@@ -210,6 +211,8 @@ public abstract class Geometry implements Disposable {
     static native void Linestring_setX(Pointer pointer, int idx, double x);
     static native void Linestring_setY(Pointer pointer, int idx, double y);
     static native void Linestring_setZ(Pointer pointer, int idx, double z);
+    static native void Linestring_getPoints(Pointer pointer, int off, int count, double[] dst, int dstOff, int dstDim);
+    static native void Linestring_getPointsBuffer(Pointer pointer, int off, int count, Buffer dst, int dstOff, int dstDim);
 
     static native Pointer Polygon_create(int dimension);
     static native Pointer Polygon_setExteriorRing(Pointer polygon, Pointer ring);
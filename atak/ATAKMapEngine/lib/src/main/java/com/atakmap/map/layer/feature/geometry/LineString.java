@@ -2,6 +2,10 @@ package com.atakmap.map.layer.feature.geometry;
 
 import com.atakmap.interop.Pointer;
 
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.ReadOnlyBufferException;
+
 public final class LineString extends Geometry {
 
     public LineString(int dimension) {
@@ -75,6 +79,104 @@ public final class LineString extends Geometry {
         }
     }
     
+    /**
+     * Copies a range of points into the specified array, interleaved by
+     * component. The points are copied with a single call into the native
+     * geometry, which is significantly cheaper than calling
+     * {@link #getX(int)}, {@link #getY(int)} and {@link #getZ(int)} for
+     * each point.
+     *
+     * @param off       The index of the first point
+     * @param count     The number of points
+     * @param dst       Returns the points
+     * @param dstOff    The index in <code>dst</code> of the first value
+     * @param dstDim    The dimension of the returned points, <code>2</code>
+     *                  or <code>3</code>. If <code>3</code> and the
+     *                  linestring is 2D, the z-coordinate is <code>0</code>.
+     */
+    public void getPoints(int off, int count, double[] dst, int dstOff, int dstDim) {
+        checkDimension(dstDim);
+        if(dstOff < 0 || count < 0 || dstOff+(count*dstDim) > dst.length)
+            throw new ArrayIndexOutOfBoundsException();
+        if(count == 0)
+            return;
+        this.rwlock.acquireRead();
+        try {
+            Linestring_getPoints(this.pointer, off, count, dst, dstOff, dstDim);
+        } finally {
+            this.rwlock.releaseRead();
+        }
+    }
+
+    /**
+     * Copies a range of points into the specified buffer, interleaved by
+     * component. The points are written starting at the buffer's current
+     * position, and the position is advanced past the last value written.
+     * Direct buffers in native byte order are filled by the native geometry
+     * in place.
+     *
+     * @param off       The index of the first point
+     * @param count     The number of points
+     * @param dst       Returns the points
+     * @param dstDim    The dimension of the returned points, <code>2</code>
+     *                  or <code>3</code>. If <code>3</code> and the
+     *                  linestring is 2D, the z-coordinate is <code>0</code>.
+     */
+    public void getPoints(int off, int count, DoubleBuffer dst, int dstDim) {
+        checkDimension(dstDim);
+        if(dst.isReadOnly())
+            throw new ReadOnlyBufferException();
+        if(count < 0 || count*dstDim > dst.remaining())
+            throw new IndexOutOfBoundsException();
+        if(count == 0)
+            return;
+
+        final int pos = dst.position();
+        if(dst.isDirect() && dst.order() == ByteOrder.nativeOrder()) {
+            this.rwlock.acquireRead();
+            try {
+                Linestring_getPointsBuffer(this.pointer, off, count, dst, pos, dstDim);
+            } finally {
+                this.rwlock.releaseRead();
+            }
+        } else if(dst.hasArray()) {
+            this.getPoints(off, count, dst.array(), dst.arrayOffset()+pos, dstDim);
+        } else {
+            double[] tmp = new double[count*dstDim];
+            this.getPoints(off, count, tmp, 0, dstDim);
+            dst.put(tmp);
+            return;
+        }
+        dst.position(pos+(count*dstDim));
+    }
+
+    /**
+     * Returns all points of the linestring, interleaved by component.
+     *
+     * @param dstDim    The dimension of the returned points, <code>2</code>
+     *                  or <code>3</code>
+     *
+     * @return  The points
+     */
+    public double[] getPoints(int dstDim) {
+        checkDimension(dstDim);
+        this.rwlock.acquireRead();
+        try {
+            final int numPoints = Linestring_getNumPoints(this.pointer);
+            double[] retval = new double[numPoints*dstDim];
+            if(numPoints > 0)
+                Linestring_getPoints(this.pointer, 0, numPoints, retval, 0, dstDim);
+            return retval;
+        } finally {
+            this.rwlock.releaseRead();
+        }
+    }
+
+    private static void checkDimension(int dim) {
+        if(dim != 2 && dim != 3)
+            throw new IllegalArgumentException("Unsupported dimension: " + dim);
+    }
+
     public void get(Point point, int i) {
         point.setDimension(this.getDimension());
         if(this.getDimension() == 3)
@@ -5,6 +5,7 @@ import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -196,6 +197,17 @@ public class GLBatchGeometryRenderer implements GLMapRenderable, GLMapRenderable
 
     private SortInfo sortInfo = new SortInfo();
 
+    private HitTestList labelsHitTest = new HitTestList(labels, true);
+    private HitTestList batchPoints2HitTest = new HitTestList(batchPoints2, true);
+    private HitTestList surfaceLinesHitTest = new HitTestList(surfaceLines, false);
+    private HitTestList spriteLinesHitTest = new HitTestList(spriteLines, false);
+    private HitTestList polysHitTest = new HitTestList(polys, false);
+    private HitTestList extrudedPolysHitTest = new HitTestList(extrudedPolys, false);
+    private int batchVersion = 0;
+    private int spritesVersion = 0;
+    private int screenVersion = 0;
+    private int screenDrawVersion = -1;
+
     private final MapRenderer renderCtx;
     private RenderBuffers buffers;
     private FloatBuffer pointsBuffer;
@@ -310,16 +322,17 @@ public class GLBatchGeometryRenderer implements GLMapRenderable, GLMapRenderable
         params.screenPoint = screenPoint;
         params.screenRadius = screenRadius;
         params.limit = limit;
+        params.candidates = new HitTestIndex.Candidates();
 
         // Points
-        fids.addAll(hitTestGeometry(this.labels, params));
-        fids.addAll(hitTestGeometry(this.batchPoints2, params));
+        fids.addAll(hitTestGeometry(this.labelsHitTest, params));
+        fids.addAll(hitTestGeometry(this.batchPoints2HitTest, params));
 
         // Lines
-        fids.addAll(hitTestGeometry(this.surfaceLines, params));
-        fids.addAll(hitTestGeometry(this.spriteLines, params));
-        fids.addAll(hitTestGeometry(this.polys, params));
-        fids.addAll(hitTestGeometry(this.extrudedPolys, params));
+        fids.addAll(hitTestGeometry(this.surfaceLinesHitTest, params));
+        fids.addAll(hitTestGeometry(this.spriteLinesHitTest, params));
+        fids.addAll(hitTestGeometry(this.polysHitTest, params));
+        fids.addAll(hitTestGeometry(this.extrudedPolysHitTest, params));
     }
 
     private static class HitTestQueryParams {
@@ -331,6 +344,98 @@ public class GLBatchGeometryRenderer implements GLMapRenderable, GLMapRenderable
         PointF screenPoint;
         float screenRadius;
         int limit, count;
+        HitTestIndex.Candidates candidates;
+    }
+
+    /**
+     * Index over one of the hit-testable lists. Lines and polygons are
+     * indexed on their geodetic bounds once per batch. Points are indexed on
+     * their screen location, which is only known once they have been drawn,
+     * so the index is rebuilt on the first hit test following a draw that
+     * moved them.
+     */
+    private final class HitTestList {
+        final LinkedList<? extends GLBatchGeometry> list;
+        final boolean points;
+
+        GLBatchGeometry[] items;
+        HitTestIndex.RTree bounds;
+        HitTestIndex.Grid screen;
+        /** lines that are not clamped to the ground, sorted ascending */
+        int[] floating;
+        int validBatch = -1;
+        int validSprites = -1;
+        int validScreen = -1;
+
+        HitTestList(LinkedList<? extends GLBatchGeometry> list, boolean points) {
+            this.list = list;
+            this.points = points;
+        }
+
+        /**
+         * Adds the positions of the items that may satisfy the query.
+         */
+        void query(HitTestQueryParams params, HitTestIndex.Candidates result) {
+            // points with loaded icons join the list during draw
+            if(this.validBatch != batchVersion || (this.points && this.validSprites != spritesVersion)) {
+                this.items = this.list.toArray(new GLBatchGeometry[0]);
+                this.bounds = null;
+                this.screen = null;
+                this.floating = null;
+                this.validBatch = batchVersion;
+                this.validSprites = spritesVersion;
+            }
+            if(this.points && this.validScreen != screenVersion) {
+                this.screen = null;
+                this.validScreen = screenVersion;
+            }
+            if(this.items.length == 0)
+                return;
+
+            if(this.points) {
+                if(this.screen == null) {
+                    final float[] xy = new float[this.items.length*2];
+                    for(int i = 0; i < this.items.length; i++) {
+                        final GLBatchPoint point = (GLBatchPoint)this.items[i];
+                        xy[i*2] = point.screenX;
+                        xy[i*2+1] = point.screenY;
+                    }
+                    this.screen = new HitTestIndex.Grid(xy, this.items.length);
+                }
+
+                final Rectangle hitBox = params.hitBox;
+                this.screen.query(hitBox.X, hitBox.Y, hitBox.X+hitBox.Width, hitBox.Y+hitBox.Height, result);
+            } else {
+                if(this.bounds == null) {
+                    final double[] mbbs = new double[this.items.length*4];
+                    int numFloating = 0;
+                    int[] floating = new int[this.items.length];
+                    for(int i = 0; i < this.items.length; i++) {
+                        final GLBatchLineString line = (GLBatchLineString)this.items[i];
+                        mbbs[i*4] = line.mbb.minX;
+                        mbbs[i*4+1] = line.mbb.minY;
+                        mbbs[i*4+2] = line.mbb.maxX;
+                        mbbs[i*4+3] = line.mbb.maxY;
+                        if(line.altitudeMode != Feature.AltitudeMode.ClampToGround)
+                            floating[numFloating++] = i;
+                    }
+                    this.bounds = new HitTestIndex.RTree(mbbs, this.items.length);
+                    this.floating = Arrays.copyOf(floating, numFloating);
+                }
+
+                // lines may be unwrapped across the IDL, see testOrthoHit
+                final Envelope e = params.hitEnvelope;
+                this.bounds.query(e.minX, e.minY, e.maxX, e.maxY, result);
+                this.bounds.query(e.minX+360d, e.minY, e.maxX+360d, e.maxY, result);
+                this.bounds.query(e.minX-360d, e.minY, e.maxX-360d, e.maxY, result);
+
+                // lines off the ground are tested in screen space when tilted
+                if(params.view != null && params.view.drawTilt != 0) {
+                    for(int i : this.floating)
+                        result.add(i);
+                }
+            }
+        }
     }
 
     public void setBatch(Collection<GLBatchGeometry> geoms) {
@@ -346,6 +451,8 @@ public class GLBatchGeometryRenderer implements GLMapRenderable, GLMapRenderable
         batchPoints2.clear();
         labels.clear();
 
+        batchVersion++;
+
         this.fillBatchLists(geoms);
         
         // 
@@ -472,8 +579,14 @@ public class GLBatchGeometryRenderer implements GLMapRenderable, GLMapRenderable
         
         if(MathUtils.hasBits(renderPass, GLMapView.RENDER_PASS_SURFACE))
             this.renderSurface(view);
-        if(MathUtils.hasBits(renderPass, GLMapView.RENDER_PASS_SPRITES))
+        if(MathUtils.hasBits(renderPass, GLMapView.RENDER_PASS_SPRITES)) {
+            // point screen locations move with the view and the batch
+            if(screenDrawVersion != view.drawVersion || MathUtils.hasBits(rebuildBatchBuffers, GLMapView.RENDER_PASS_SPRITES)) {
+                screenVersion++;
+                screenDrawVersion = view.drawVersion;
+            }
             this.renderSprites(view);
+        }
 
         rebuildBatchBuffers &= ~renderPass;
     }
@@ -584,6 +697,7 @@ public class GLBatchGeometryRenderer implements GLMapRenderable, GLMapRenderable
                 this.batchPoints2.add(point);
                 iter.remove();
                 rebuildBatchBuffers |= GLMapView.RENDER_PASS_SPRITES;
+                spritesVersion++;
             }
         }
 
@@ -1079,6 +1193,8 @@ public class GLBatchGeometryRenderer implements GLMapRenderable, GLMapRenderable
         this.batchPoints2.clear();
         this.loadingPoints.clear();
         this.labels.clear();
+
+        this.batchVersion++;
         
         if(batch != null) {
             this.batch.release();
@@ -1117,7 +1233,7 @@ public class GLBatchGeometryRenderer implements GLMapRenderable, GLMapRenderable
      * @return List of hit FIDs
      */
     private static List<Long> hitTestGeometry(
-            LinkedList<? extends GLBatchGeometry> list,
+            HitTestList list,
             HitTestQueryParams params) {
         List<Long> fids = new ArrayList<>();
 
@@ -1125,9 +1241,14 @@ public class GLBatchGeometryRenderer implements GLMapRenderable, GLMapRenderable
         if (params.count >= params.limit)
             return fids;
 
-        Iterator<? extends GLBatchGeometry> iter = list.descendingIterator();
-        while (iter.hasNext()) {
-            GLBatchGeometry item = iter.next();
+        // Candidates from the index, tested in reverse draw order
+        HitTestIndex.Candidates candidates = params.candidates;
+        candidates.clear();
+        list.query(params, candidates);
+        candidates.sortDescending();
+
+        for (int c = 0; c < candidates.size; c++) {
+            GLBatchGeometry item = list.items[candidates.ids[c]];
 
             boolean hit = false;
 
@@ -1336,7 +1457,7 @@ public class GLBatchGeometryRenderer implements GLMapRenderable, GLMapRenderable
             lx += 360;
         } else if (mbr.minX < -180 && mbr.maxX < t2.minX) {
             t2.minX -= 360;
-            t2.minX -= 360;
+            t2.maxX -= 360;
             lx -= 360;
         }
 
@@ -338,9 +338,16 @@ public class GLBatchLineString extends GLBatchGeometry {
             long pointsPtr = Unsafe.getBufferPointer(this.points);
             int pointsPos = 0;
 
-            double x = blob != null ? blob.getDouble() : ls.getX(0);
-            double y = blob != null ? blob.getDouble() : ls.getY(0);
-            double z = (dim > 2) ? (blob != null ? blob.getDouble() : ls.getZ(0)) : 0d;
+            // copy the linestring in a single call; the points are then
+            // read back from the buffer in place
+            if (blob == null) {
+                ls.getPoints(0, this.numPoints, this.points, 3);
+                this.points.clear();
+            }
+
+            double x = blob != null ? blob.getDouble() : this.points.get(0);
+            double y = blob != null ? blob.getDouble() : this.points.get(1);
+            double z = blob != null ? ((dim > 2) ? blob.getDouble() : 0d) : this.points.get(2);
 
             if (skip > 0)
                 blob.position(blob.position() + skip);
@@ -373,13 +380,13 @@ public class GLBatchLineString extends GLBatchGeometry {
                     y = ny;
                     z = (dim > 2) ? blob.getDouble() : 0d;
                 } else {
-                    final double nx = ls.getX(i);
-                    final double ny = ls.getY(i);
+                    final double nx = this.points.get(i*3);
+                    final double ny = this.points.get(i*3+1);
                     dx = nx - x;
                     dy = ny - y;
                     x = nx;
                     y = ny;
-                    z = (dim > 2) ? ls.getZ(i) : 0d;
+                    z = this.points.get(i*3+2);
                 }
 
                 // approximate different in lat,lng between current and last point
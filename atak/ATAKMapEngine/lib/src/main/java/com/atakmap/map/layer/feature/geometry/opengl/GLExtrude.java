@@ -9,7 +9,6 @@ import com.atakmap.map.layer.feature.geometry.GeometryCollection;
 import com.atakmap.map.layer.feature.geometry.GeometryFactory;
 import com.atakmap.map.layer.feature.geometry.GeometryFactory.ExtrusionHints;
 import com.atakmap.map.layer.feature.geometry.LineString;
-import com.atakmap.map.layer.feature.geometry.Point;
 import com.atakmap.map.layer.feature.geometry.Polygon;
 import com.atakmap.opengl.GLTriangulate;
 
@@ -160,15 +159,7 @@ public class GLExtrude {
      */
     private static void triangulatePolygon(final List<Double> verts, final Polygon polygon) {
         LineString exterior = polygon.getExteriorRing();
-        double[] tmp = new double[exterior.getNumPoints() * 3];
-        // Don't add the last vertex since it's really the first vertex again
-        for (int i = exterior.getNumPoints() - 1; i > -1; i--) {
-            Point p = new Point(0, 0, 0);
-            exterior.get(p, i);
-            tmp[i * 3] = p.getX();
-            tmp[(i * 3) + 1] = p.getY();
-            tmp[(i * 3) + 2] = p.getZ();
-        }
+        double[] tmp = exterior.getPoints(3);
         DoubleBuffer vertBuffer = DoubleBuffer.wrap(tmp);
         ShortBuffer indexBuffer = ShortBuffer.wrap(new short[(exterior.getNumPoints() - 2) * 3]);
         int triangleType = GLTriangulate.triangulate(vertBuffer, 3, exterior.getNumPoints(),
@@ -41,10 +41,8 @@ public final class GLLineString extends GLGeometry {
         buf.order(ByteOrder.nativeOrder());
         this.pixels = buf.asFloatBuffer();
         
-        for(int i = 0; i < numPoints; i++) {
-            this.points.put(i*2, lineString.getX(i));
-            this.points.put(i*2+1, lineString.getY(i));
-        }
+        lineString.getPoints(0, this.numPoints, this.points, 2);
+        this.points.clear();
     }
 
     public FloatBuffer getVertices(GLMapView view, int vertexType) {
@@ -68,17 +68,11 @@ public final class GLPolygon extends GLGeometry {
         
         idx = 0;
         final LineString exterior = polygon.getExteriorRing();
-        for(int i = 0; i < exterior.getNumPoints(); i++) {
-            this.points.put(idx++, exterior.getX(i));
-            this.points.put(idx++, exterior.getY(i));
-        }
+        exterior.getPoints(0, this.ringVerts[idx++], this.points, 2);
 
-        for(LineString inner : polygon.getInteriorRings()) {
-            for(int i = 0; i < inner.getNumPoints(); i++) {
-                this.points.put(idx++, inner.getX(i));
-                this.points.put(idx++, inner.getY(i));
-            }
-        }
+        for(LineString inner : polygon.getInteriorRings())
+            inner.getPoints(0, this.ringVerts[idx++], this.points, 2);
+        this.points.clear();
     }
 
     public FloatBuffer getVertices(GLMapView view, int vertexType, int ring) {
@@ -0,0 +1,301 @@
+package com.atakmap.map.layer.feature.geometry.opengl;
+
+import java.util.Arrays;
+
+/**
+ * Spatial indices used by {@link GLBatchGeometryRenderer} to select the
+ * candidates for a hit test. Items are identified by their position in the
+ * list that was indexed; the exact hit test is left to the caller.
+ */
+final class HitTestIndex {
+
+    private HitTestIndex() {}
+
+    /**
+     * Packed R-tree over axis aligned boxes. The boxes are ordered along a
+     * Hilbert curve and grouped {@link #NODE_SIZE} at a time, level by level,
+     * so the tree is built in a single sort and stored in flat arrays.
+     */
+    final static class RTree {
+        final static int NODE_SIZE = 16;
+
+        private final static int HILBERT_ORDER = 1<<15;
+
+        /** minX, minY, maxX, maxY for every node, leaves first */
+        private final double[] boxes;
+        /** the item id of each leaf */
+        private final int[] ids;
+        /** the exclusive end node index of each level */
+        private final int[] levelEnd;
+
+        /**
+         * @param bounds    minX, minY, maxX, maxY for each item. Items with
+         *                  <code>NaN</code> bounds are not indexed.
+         * @param count     the number of items
+         */
+        RTree(double[] bounds, int count) {
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            int numLeaves = 0;
+            for(int i = 0; i < count; i++) {
+                if(isNaN(bounds, i))
+                    continue;
+                minX = Math.min(minX, bounds[i*4]);
+                minY = Math.min(minY, bounds[i*4+1]);
+                maxX = Math.max(maxX, bounds[i*4+2]);
+                maxY = Math.max(maxY, bounds[i*4+3]);
+                numLeaves++;
+            }
+
+            // sort the leaves on the Hilbert index of their centers; the key
+            // occupies the upper 30 bits, the item id the lower 32
+            final double scaleX = (maxX > minX) ? (HILBERT_ORDER-1) / (maxX-minX) : 0d;
+            final double scaleY = (maxY > minY) ? (HILBERT_ORDER-1) / (maxY-minY) : 0d;
+            final long[] order = new long[numLeaves];
+            int n = 0;
+            for(int i = 0; i < count; i++) {
+                if(isNaN(bounds, i))
+                    continue;
+                final int hx = (int)(((bounds[i*4]+bounds[i*4+2])/2d - minX) * scaleX);
+                final int hy = (int)(((bounds[i*4+1]+bounds[i*4+3])/2d - minY) * scaleY);
+                order[n++] = (hilbert(hx, hy)<<32L) | (i&0xFFFFFFFFL);
+            }
+            Arrays.sort(order);
+
+            int numNodes = numLeaves;
+            int numLevels = 1;
+            for(int c = numLeaves; c > 1; c = (c+NODE_SIZE-1) / NODE_SIZE) {
+                numNodes += (c+NODE_SIZE-1) / NODE_SIZE;
+                numLevels++;
+            }
+
+            this.boxes = new double[numNodes*4];
+            this.ids = new int[numLeaves];
+            this.levelEnd = new int[numLevels];
+
+            for(int i = 0; i < numLeaves; i++) {
+                final int id = (int)order[i];
+                this.ids[i] = id;
+                System.arraycopy(bounds, id*4, this.boxes, i*4, 4);
+            }
+
+            int levelStart = 0;
+            int end = numLeaves;
+            this.levelEnd[0] = end;
+            for(int level = 1; level < numLevels; level++) {
+                int node = end;
+                for(int child = levelStart; child < end; child += NODE_SIZE) {
+                    final int last = Math.min(child+NODE_SIZE, end);
+                    double nMinX = Double.POSITIVE_INFINITY;
+                    double nMinY = Double.POSITIVE_INFINITY;
+                    double nMaxX = Double.NEGATIVE_INFINITY;
+                    double nMaxY = Double.NEGATIVE_INFINITY;
+                    for(int j = child; j < last; j++) {
+                        nMinX = Math.min(nMinX, this.boxes[j*4]);
+                        nMinY = Math.min(nMinY, this.boxes[j*4+1]);
+                        nMaxX = Math.max(nMaxX, this.boxes[j*4+2]);
+                        nMaxY = Math.max(nMaxY, this.boxes[j*4+3]);
+                    }
+                    this.boxes[node*4] = nMinX;
+                    this.boxes[node*4+1] = nMinY;
+                    this.boxes[node*4+2] = nMaxX;
+                    this.boxes[node*4+3] = nMaxY;
+                    node++;
+                }
+                levelStart = end;
+                end = node;
+                this.levelEnd[level] = end;
+            }
+        }
+
+        /**
+         * Adds the ids of all items whose bounds intersect the specified
+         * box, boundaries inclusive.
+         */
+        void query(double minX, double minY, double maxX, double maxY, Candidates result) {
+            if(this.ids.length == 0)
+                return;
+
+            // node index and level of each pending node
+            int[] stack = new int[(this.levelEnd.length)*NODE_SIZE*2];
+            int top = 0;
+            stack[top++] = this.levelEnd[this.levelEnd.length-1]-1;
+            stack[top++] = this.levelEnd.length-1;
+            while(top > 0) {
+                final int level = stack[--top];
+                final int node = stack[--top];
+                if(!intersects(this.boxes, node, minX, minY, maxX, maxY))
+                    continue;
+                if(level == 0) {
+                    result.add(this.ids[node]);
+                    continue;
+                }
+                final int levelStart = (level > 1) ? this.levelEnd[level-2] : 0;
+                final int child = levelStart + (node-this.levelEnd[level-1])*NODE_SIZE;
+                final int last = Math.min(child+NODE_SIZE, this.levelEnd[level-1]);
+                for(int j = child; j < last; j++) {
+                    stack[top++] = j;
+                    stack[top++] = level-1;
+                }
+            }
+        }
+
+        private static boolean isNaN(double[] bounds, int i) {
+            return Double.isNaN(bounds[i*4]) || Double.isNaN(bounds[i*4+1]) ||
+                   Double.isNaN(bounds[i*4+2]) || Double.isNaN(bounds[i*4+3]);
+        }
+
+        private static boolean intersects(double[] boxes, int node, double minX, double minY, double maxX, double maxY) {
+            return boxes[node*4] <= maxX && boxes[node*4+1] <= maxY &&
+                   boxes[node*4+2] >= minX && boxes[node*4+3] >= minY;
+        }
+
+        private static long hilbert(int x, int y) {
+            long d = 0L;
+            for(int s = HILBERT_ORDER/2; s > 0; s /= 2) {
+                final int rx = ((x&s) > 0) ? 1 : 0;
+                final int ry = ((y&s) > 0) ? 1 : 0;
+                d += (long)s * s * ((3*rx) ^ ry);
+                if(ry == 0) {
+                    if(rx == 1) {
+                        x = HILBERT_ORDER-1 - x;
+                        y = HILBERT_ORDER-1 - y;
+                    }
+                    final int t = x;
+                    x = y;
+                    y = t;
+                }
+            }
+            return d;
+        }
+    }
+
+    /**
+     * Grid over points, stored as a list of item ids per cell. The cells are
+     * hashed into a table sized to the number of points, so points left far
+     * off screen do not stretch the grid.
+     */
+    final static class Grid {
+        /** cell size, in pixels */
+        final static double CELL_SIZE = 64d;
+
+        /** the first index into {@link #ids} of each bucket, and the end */
+        private final int[] bucketStart;
+        private final int[] ids;
+        private final int mask;
+
+        /**
+         * @param xy    x, y for each item. Items with <code>NaN</code>
+         *              coordinates are not indexed.
+         * @param count the number of items
+         */
+        Grid(float[] xy, int count) {
+            int numBuckets = 1;
+            while(numBuckets < count)
+                numBuckets <<= 1;
+            this.mask = numBuckets-1;
+
+            // counting sort of the ids into their buckets
+            final int[] buckets = new int[count];
+            this.bucketStart = new int[numBuckets+1];
+            int numPoints = 0;
+            for(int i = 0; i < count; i++) {
+                if(Float.isNaN(xy[i*2]) || Float.isNaN(xy[i*2+1])) {
+                    buckets[i] = -1;
+                    continue;
+                }
+                buckets[i] = this.bucket(cell(xy[i*2]), cell(xy[i*2+1]));
+                this.bucketStart[buckets[i]+1]++;
+                numPoints++;
+            }
+            for(int i = 1; i < this.bucketStart.length; i++)
+                this.bucketStart[i] += this.bucketStart[i-1];
+            this.ids = new int[numPoints];
+            final int[] fill = Arrays.copyOf(this.bucketStart, numBuckets);
+            for(int i = 0; i < count; i++) {
+                if(buckets[i] >= 0)
+                    this.ids[fill[buckets[i]]++] = i;
+            }
+        }
+
+        /**
+         * Adds the ids of all points in the cells that intersect the
+         * specified box. All points within the box, boundaries inclusive,
+         * are included.
+         */
+        void query(double minX, double minY, double maxX, double maxY, Candidates result) {
+            if(this.ids.length == 0)
+                return;
+
+            final double numCells = (Math.floor(maxX/CELL_SIZE)-Math.floor(minX/CELL_SIZE)+1) *
+                                    (Math.floor(maxY/CELL_SIZE)-Math.floor(minY/CELL_SIZE)+1);
+            if(!(numCells <= this.mask+1)) {
+                // the box covers more cells than there are buckets
+                for(int i = 0; i < this.ids.length; i++)
+                    result.add(this.ids[i]);
+                return;
+            }
+
+            final long c0 = cell(minX);
+            final long c1 = cell(maxX);
+            final long r0 = cell(minY);
+            final long r1 = cell(maxY);
+            for(long r = r0; r <= r1; r++) {
+                for(long c = c0; c <= c1; c++) {
+                    final int b = this.bucket(c, r);
+                    for(int i = this.bucketStart[b]; i < this.bucketStart[b+1]; i++)
+                        result.add(this.ids[i]);
+                }
+            }
+        }
+
+        private int bucket(long col, long row) {
+            long h = (col*0x9E3779B97F4A7C15L) ^ (row*0xC2B2AE3D27D4EB4FL);
+            h ^= (h>>>31);
+            return (int)h & this.mask;
+        }
+
+        private static long cell(double v) {
+            return (long)Math.floor(v / CELL_SIZE);
+        }
+    }
+
+
+    /**
+     * The item ids returned by a query.
+     */
+    final static class Candidates {
+        int[] ids = new int[16];
+        int size;
+
+        void add(int id) {
+            if(this.size == this.ids.length)
+                this.ids = Arrays.copyOf(this.ids, this.size*2);
+            this.ids[this.size++] = id;
+        }
+
+        void clear() {
+            this.size = 0;
+        }
+
+        /**
+         * Sorts the ids in descending order and removes duplicates.
+         */
+        void sortDescending() {
+            Arrays.sort(this.ids, 0, this.size);
+            int n = 0;
+            for(int i = 0; i < this.size; i++) {
+                if(n == 0 || this.ids[n-1] != this.ids[i])
+                    this.ids[n++] = this.ids[i];
+            }
+            for(int i = 0; i < n/2; i++) {
+                final int t = this.ids[i];
+                this.ids[i] = this.ids[n-1-i];
+                this.ids[n-1-i] = t;
+            }
+            this.size = n;
+        }
+    }
+}
@@ -439,7 +439,8 @@ public class GLFeatureLayer extends GLAsynchronousLayer<Collection<Feature>> imp
             return false;
         }
 
-        final int numPoints = linestring.getNumPoints();
+        final double[] xy = linestring.getPoints(2);
+        final int numPoints = xy.length/2;
         
         final double px = point.getLongitude();
         final double py = point.getLatitude();
@@ -451,10 +452,10 @@ public class GLFeatureLayer extends GLAsynchronousLayer<Collection<Feature>> imp
         double x1;
         double y1;
         for (int i = 0; i < numPoints-1; ++i) {
-            x0 = linestring.getX(i);
-            y0 = linestring.getY(i);
-            x1 = linestring.getX(i+1);
-            y1 = linestring.getY(i+1);
+            x0 = xy[i*2];
+            y0 = xy[i*2+1];
+            x1 = xy[i*2+2];
+            y1 = xy[i*2+3];
             
             // construct the minimum bounding box for the segment
             minibounds.minX = Math.min(x0, x1);
@@ -1,7 +1,5 @@
 package com.atakmap.map.layer.feature.style.opengl;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 
@@ -50,6 +48,9 @@ public abstract class GLBasicFillStyle extends GLStyle {
         }
     };
 
+    /** triangulations survive restyling and recreation of the renderers */
+    private final static GLTriangulate.Cache triangulations = new GLTriangulate.Cache(1024*1024);
+
     protected final float fillColorR;
     protected final float fillColorG;
     protected final float fillColorB;
@@ -76,16 +77,15 @@ public abstract class GLBasicFillStyle extends GLStyle {
 
     private static class PolygonFillContext extends StyleRenderContext {
         final int fillMode;
-        ShortBuffer indices;
+        final GLTriangulate.Triangles triangles;
+        /** 16-bit indices for batching, if available */
+        final ShortBuffer indices;
         
         public PolygonFillContext(GLPolygon poly) {
             // XXX - holes
-            ByteBuffer buf = com.atakmap.lang.Unsafe.allocateDirect((poly.getNumVertices(0)-2)*3*2);
-            buf.order(ByteOrder.nativeOrder());
-            this.indices = buf.asShortBuffer();
-            this.fillMode = GLTriangulate.triangulate(poly.getPoints(0), poly.getNumVertices(0), this.indices);
-            if(this.fillMode != GLTriangulate.INDEXED)
-                this.indices = null;
+            this.triangles = triangulations.get(poly.getPoints(0), 2, new int[] {poly.getNumVertices(0)});
+            this.fillMode = this.triangles.mode;
+            this.indices = this.triangles.getShortIndices();
         }
     }
     public static final class Polygon extends GLBasicFillStyle {
@@ -191,7 +191,7 @@ public abstract class GLBasicFillStyle extends GLStyle {
                     GLES20FixedPipeline.glDrawArrays(GLES20FixedPipeline.GL_TRIANGLE_FAN, 0, geometry.getNumVertices(0));
                     break;
                 case GLTriangulate.INDEXED :
-                    GLES20FixedPipeline.glDrawElements(GLES20FixedPipeline.GL_TRIANGLES, context.indices.remaining(), GLES20FixedPipeline.GL_UNSIGNED_SHORT, context.indices);
+                    GLES20FixedPipeline.glDrawElements(GLES20FixedPipeline.GL_TRIANGLES, context.triangles.getNumIndices(), context.triangles.indexType, context.triangles.getIndices());
                     break;
                 case GLTriangulate.STENCIL :
                 default :
@@ -219,7 +219,17 @@ public abstract class GLBasicFillStyle extends GLStyle {
                     batch.addTriangleFan(vertices, this.fillColorR, this.fillColorG, this.fillColorB, this.fillColorA);
                     break;
                 case GLTriangulate.INDEXED :
-                    batch.addTriangles(vertices, context.indices, this.fillColorR, this.fillColorG, this.fillColorB, this.fillColorA);
+                    if(context.indices != null) {
+                        batch.addTriangles(vertices, context.indices, this.fillColorR, this.fillColorG, this.fillColorB, this.fillColorA);
+                    } else {
+                        // 32-bit indices are not supported by the batch
+                        batch.end();
+                        try {
+                            this.drawImpl(view, geometry, context);
+                        } finally {
+                            batch.begin();
+                        }
+                    }
                     break;
                 case GLTriangulate.STENCIL :
                     batch.end();
@@ -240,7 +250,8 @@ public abstract class GLBasicFillStyle extends GLStyle {
                 return false;
 
             final PolygonFillContext context = (PolygonFillContext)ctx;
-            return (context.fillMode != GLTriangulate.STENCIL);
+            return (context.fillMode == GLTriangulate.TRIANGLE_FAN) ||
+                   (context.fillMode == GLTriangulate.INDEXED && context.indices != null);
         }
     }
 }
@@ -17,6 +17,7 @@ import com.atakmap.map.gpkg.TileTable;
 import com.atakmap.map.gpkg.TileTable.TileMatrixSet;
 import com.atakmap.map.gpkg.TileTable.ZoomLevelRow;
 import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.raster.tilematrix.BatchTileContainer;
 import com.atakmap.map.layer.raster.tilematrix.TileContainer;
 import com.atakmap.map.layer.raster.tilematrix.TileContainerSpi;
 import com.atakmap.map.layer.raster.tilematrix.TileEncodeException;
@@ -24,7 +25,7 @@ import com.atakmap.map.layer.raster.tilematrix.TileMatrix;
 import com.atakmap.math.PointD;
 import com.atakmap.math.Rectangle;
 
-public class GeoPackageTileContainer implements TileContainer {
+public class GeoPackageTileContainer implements BatchTileContainer {
 
     public static final String TAG = "GeoPackageTileContainer";
 
@@ -393,6 +394,26 @@ public class GeoPackageTileContainer implements TileContainer {
                                       this.bounds.maxX, this.bounds.maxY);
     }
 
+    @Override
+    public boolean hasTile(int level, int x, int y) {
+        return this.gpkg.containsTile(tileTableName, level, x, y);
+    }
+
+    @Override
+    public void beginTransaction() {
+        this.gpkg.getDatabase().beginTransaction();
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        this.gpkg.getDatabase().setTransactionSuccessful();
+    }
+
+    @Override
+    public void endTransaction() {
+        this.gpkg.getDatabase().endTransaction();
+    }
+
     @Override
     public void setTile(int level, int x, int y, Bitmap data, long expiration)
             throws TileEncodeException {
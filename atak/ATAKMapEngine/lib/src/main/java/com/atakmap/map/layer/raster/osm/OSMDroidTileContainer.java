@@ -21,6 +21,7 @@ import com.atakmap.database.Databases;
 import com.atakmap.database.QueryIface;
 import com.atakmap.database.StatementIface;
 import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.raster.tilematrix.BatchTileContainer;
 import com.atakmap.map.layer.raster.tilematrix.TileContainer;
 import com.atakmap.map.layer.raster.tilematrix.TileContainerSpi;
 import com.atakmap.map.layer.raster.tilematrix.TileEncodeException;
@@ -32,7 +33,7 @@ import com.atakmap.math.PointD;
 import com.atakmap.util.Collections2;
 import com.atakmap.util.Disposable;
 
-public final class OSMDroidTileContainer implements TileContainer {
+public final class OSMDroidTileContainer implements BatchTileContainer {
 
     private final static int MAX_NUM_LEVELS = 30;
     
@@ -212,7 +213,8 @@ public final class OSMDroidTileContainer implements TileContainer {
         }
     }
 
-    private boolean hasTile(int level, int x, int y) {
+    @Override
+    public synchronized boolean hasTile(int level, int x, int y) {
         final PrecompiledStatements stmts = getPrecompiledStmts();
         
         QueryIface result = null;
@@ -365,6 +367,21 @@ public final class OSMDroidTileContainer implements TileContainer {
         }
     }
 
+    @Override
+    public void beginTransaction() {
+        this.db.beginTransaction();
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        this.db.setTransactionSuccessful();
+    }
+
+    @Override
+    public void endTransaction() {
+        this.db.endTransaction();
+    }
+
     @Override
     public void setTile(int level, int x, int y, Bitmap data, long expiration) throws TileEncodeException {
         // convert bitmap to byte array
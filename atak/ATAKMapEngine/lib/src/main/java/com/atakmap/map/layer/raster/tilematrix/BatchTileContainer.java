@@ -0,0 +1,36 @@
+package com.atakmap.map.layer.raster.tilematrix;
+
+/**
+ * A {@link TileContainer} that can group tile writes into a transaction and
+ * cheaply test for the presence of a tile. Transactions follow the semantics
+ * of {@link com.atakmap.database.DatabaseIface}; all calls for a transaction
+ * must be made on the same thread.
+ */
+public interface BatchTileContainer extends TileContainer {
+    /**
+     * Returns <code>true</code> if the container holds data for the specified
+     * tile.
+     *
+     * @param level The zoom level
+     * @param x     The tile column
+     * @param y     The tile row
+     *
+     * @return  <code>true</code> if the container holds data for the tile,
+     *          <code>false</code> otherwise.
+     */
+    public boolean hasTile(int level, int x, int y);
+    /**
+     * Begins a transaction. Tiles set before the matching call to
+     * {@link #endTransaction()} are committed together.
+     */
+    public void beginTransaction();
+    /**
+     * Marks the current transaction as successful. The transaction is rolled
+     * back on {@link #endTransaction()} if this method has not been invoked.
+     */
+    public void setTransactionSuccessful();
+    /**
+     * Ends the current transaction.
+     */
+    public void endTransaction();
+}
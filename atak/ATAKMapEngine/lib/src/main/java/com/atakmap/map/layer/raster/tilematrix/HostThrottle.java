@@ -0,0 +1,141 @@
+package com.atakmap.map.layer.raster.tilematrix;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Limits the number of concurrent requests issued to each host. The limit
+ * for a host grows by one for every <I>limit</I> successful requests made
+ * while the host is at its limit and is halved on failure, at which point
+ * requests to the host are also held off for a period that grows with the
+ * number of consecutive failures.
+ */
+class HostThrottle {
+    private final static long BACKOFF_STEP = 1000L;
+    private final static long MAX_BACKOFF = 30000L;
+
+    final static class Host {
+        final String name;
+        int limit;
+        int inFlight;
+        int successes;
+        int failures;
+        long resumeAt;
+
+        Host(String name) {
+            this.name = name;
+            this.limit = 1;
+        }
+    }
+
+    private final int maxPermits;
+    private final long backoffStep;
+    private final Map<String, Host> hosts;
+    private boolean cancelled;
+
+    /**
+     * @param maxPermits    The maximum number of concurrent requests to any
+     *                      single host
+     */
+    HostThrottle(int maxPermits) {
+        this(maxPermits, BACKOFF_STEP);
+    }
+
+    HostThrottle(int maxPermits, long backoffStep) {
+        if(maxPermits < 1)
+            throw new IllegalArgumentException();
+        this.maxPermits = maxPermits;
+        this.backoffStep = backoffStep;
+        this.hosts = new HashMap<String, Host>();
+        this.cancelled = false;
+    }
+
+    /**
+     * Blocks until a request may be issued to the specified host.
+     *
+     * @return  The permit, to be returned via
+     *          {@link #release(Host, boolean)}, or <code>null</code> if the
+     *          throttle was cancelled while waiting.
+     */
+    synchronized Host acquire(String host) throws InterruptedException {
+        final Host h = this.getHost(host);
+        while(!this.cancelled) {
+            final long wait = h.resumeAt-this.currentTimeMillis();
+            if(wait > 0L) {
+                this.wait(wait);
+            } else if(h.inFlight >= h.limit) {
+                this.wait();
+            } else {
+                h.inFlight++;
+                return h;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Obtains a permit for the specified host without blocking.
+     *
+     * @return  The permit, to be returned via
+     *          {@link #release(Host, boolean)}, or <code>null</code> if the
+     *          host is at its limit or backed off, or the throttle was
+     *          cancelled.
+     */
+    synchronized Host tryAcquire(String host) {
+        final Host h = this.getHost(host);
+        if(this.cancelled || h.resumeAt > this.currentTimeMillis() || h.inFlight >= h.limit)
+            return null;
+        h.inFlight++;
+        return h;
+    }
+
+    /**
+     * Returns a permit obtained from {@link #acquire(String)}.
+     *
+     * @param success   <code>true</code> if the request succeeded,
+     *                  <code>false</code> if it failed in a manner that
+     *                  indicates the host is unavailable or overloaded.
+     */
+    synchronized void release(Host h, boolean success) {
+        // the limit only grows while it is being used
+        final boolean saturated = (h.inFlight >= h.limit);
+        h.inFlight--;
+        if(success) {
+            h.failures = 0;
+            if(saturated && ++h.successes >= h.limit && h.limit < this.maxPermits) {
+                h.limit++;
+                h.successes = 0;
+            }
+        } else {
+            h.successes = 0;
+            h.failures++;
+            h.limit = Math.max(h.limit/2, 1);
+            h.resumeAt = this.currentTimeMillis() + Math.min(this.backoffStep*h.failures, MAX_BACKOFF);
+        }
+        this.notifyAll();
+    }
+
+    /**
+     * Releases all threads blocked in {@link #acquire(String)}; subsequent
+     * calls return <code>null</code> immediately.
+     */
+    synchronized void cancel() {
+        this.cancelled = true;
+        this.notifyAll();
+    }
+
+    /**
+     * Returns the time used to schedule the back off, in milliseconds.
+     * Overridden by tests to control the clock.
+     */
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private Host getHost(String host) {
+        Host h = this.hosts.get(host);
+        if(h == null)
+            this.hosts.put(host, h = new Host(host));
+        return h;
+    }
+}
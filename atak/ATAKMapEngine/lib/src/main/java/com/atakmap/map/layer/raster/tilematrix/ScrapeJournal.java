@@ -0,0 +1,150 @@
+package com.atakmap.map.layer.raster.tilematrix;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.atakmap.coremap.io.IOProviderFactory;
+
+/**
+ * Records the tiles completed by a {@link TileScraper} so that an interrupted
+ * scrape may be resumed. The journal is bound to the set of tiles being
+ * scraped via a fingerprint; a journal with a different fingerprint is
+ * discarded on open.
+ *
+ * <PRE>
+ * Header
+ *   magic [4 bytes]
+ *   version [4 bytes]
+ *   fingerprint [8 bytes]
+ *
+ * Records
+ *   tile key [8 bytes] x n
+ * </PRE>
+ */
+final class ScrapeJournal {
+    private final static int MAGIC = 0x54534A4C; // TSJL
+    private final static int VERSION = 1;
+    private final static int HEADER_SIZE = 16;
+
+    private final File file;
+    private final Set<Long> completed;
+    private DataOutputStream out;
+
+    private ScrapeJournal(File file) {
+        this.file = file;
+        this.completed = new HashSet<Long>();
+    }
+
+    /**
+     * Returns <code>true</code> if the journal records the specified tile as
+     * completed.
+     */
+    boolean contains(int level, int x, int y) {
+        return this.completed.contains(Long.valueOf(key(level, x, y)));
+    }
+
+    int size() {
+        return this.completed.size();
+    }
+
+    /**
+     * Records the specified tiles as completed. The records are flushed to
+     * the file before this method returns.
+     *
+     * @param keys  The tile keys, as returned by {@link #key(int, int, int)}
+     * @param count The number of keys
+     */
+    void append(long[] keys, int count) throws IOException {
+        for(int i = 0; i < count; i++) {
+            this.out.writeLong(keys[i]);
+            this.completed.add(Long.valueOf(keys[i]));
+        }
+        this.out.flush();
+    }
+
+    void close() {
+        if(this.out != null) {
+            try {
+                this.out.close();
+            } catch(IOException ignored) {}
+            this.out = null;
+        }
+    }
+
+    /**
+     * Closes and deletes the journal; to be invoked once the scrape has
+     * completed.
+     */
+    void delete() {
+        this.close();
+        IOProviderFactory.delete(this.file);
+    }
+
+    /**************************************************************************/
+
+    static long key(int level, int x, int y) {
+        return ((long)level<<58L) | ((x&0x1FFFFFFFL)<<29L) | (y&0x1FFFFFFFL);
+    }
+
+    static File getJournalFile(File cacheFile) {
+        return new File(cacheFile.getParentFile(), cacheFile.getName() + ".scrape");
+    }
+
+    /**
+     * Opens the journal at the specified path. Completed tiles are loaded if
+     * the existing journal has a matching fingerprint, otherwise a new
+     * journal is started.
+     */
+    static ScrapeJournal open(File file, long fingerprint) throws IOException {
+        ScrapeJournal retval = new ScrapeJournal(file);
+
+        long valid = 0L;
+        if(IOProviderFactory.exists(file)) {
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(IOProviderFactory.getInputStream(file)));
+                if(in.readInt() == MAGIC &&
+                   in.readInt() == VERSION &&
+                   in.readLong() == fingerprint) {
+
+                    valid = HEADER_SIZE;
+                    while(true) {
+                        retval.completed.add(Long.valueOf(in.readLong()));
+                        valid += 8;
+                    }
+                }
+            } catch(EOFException ignored) {
+                // a partially written record is discarded
+            } finally {
+                if(in != null)
+                    in.close();
+            }
+        }
+
+        if(valid > 0L) {
+            RandomAccessFile raf = IOProviderFactory.getRandomAccessFile(file, "rw");
+            try {
+                raf.setLength(valid);
+            } finally {
+                raf.close();
+            }
+            retval.out = new DataOutputStream(new BufferedOutputStream(IOProviderFactory.getOutputStream(file, true)));
+        } else {
+            retval.completed.clear();
+            retval.out = new DataOutputStream(new BufferedOutputStream(IOProviderFactory.getOutputStream(file, false)));
+            retval.out.writeInt(MAGIC);
+            retval.out.writeInt(VERSION);
+            retval.out.writeLong(fingerprint);
+            retval.out.flush();
+        }
+        return retval;
+    }
+}
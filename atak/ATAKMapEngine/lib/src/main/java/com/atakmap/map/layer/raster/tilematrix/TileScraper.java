@@ -1,12 +1,18 @@
 package com.atakmap.map.layer.raster.tilematrix;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -23,6 +29,18 @@ import com.atakmap.map.layer.feature.geometry.LineString;
 import com.atakmap.map.layer.feature.geometry.Polygon;
 import com.atakmap.spatial.GeometryTransformer;
 
+/**
+ * Downloads the tiles of a {@link TileMatrix} intersecting a region into a
+ * {@link TileContainer}.
+ *
+ * <P>Tiles are downloaded on <code>request.maxThreads</code> threads; the
+ * number of concurrent requests to each host adapts to failures via a
+ * {@link HostThrottle}. Downloaded tiles are written to the container in
+ * batches, within a transaction if the container is a
+ * {@link BatchTileContainer}, and recorded in a journal alongside the cache
+ * file. A scrape that is cancelled or interrupted resumes from the journal;
+ * tiles already present and unexpired in the container are not downloaded.
+ */
 public final class TileScraper {
 
     private final static String TAG = "TileScraper";
@@ -43,16 +61,23 @@ public final class TileScraper {
 
     private final static int DOWNLOAD_ATTEMPTS = 2;
 
+    /** the number of tiles written to the container per transaction */
+    private final static int BATCH_SIZE = 64;
+    /** the maximum time a downloaded tile waits to be written, in ms */
+    private final static long BATCH_INTERVAL = 1000L;
+
     private final TileMatrix client;
     private final TileContainer sink;
     private final CacheRequest request;
     private final CacheRequestListener callback;
+    private final Statistics statistics;
     
     public TileScraper(TileMatrix client, TileContainer sink, CacheRequest request, CacheRequestListener callback) {
         this.client = client;
         this.sink = sink;
         this.request = request;
         this.callback = callback;
+        this.statistics = new Statistics();
         
         if(this.sink.isReadOnly())
             throw new IllegalArgumentException();
@@ -61,23 +86,66 @@ public final class TileScraper {
     }
     
     public void run() {
-        Downloader downloader;
-        if(request.maxThreads > 1)
-            downloader = new MultiThreadDownloader(request.maxThreads);
-        else
-            downloader = new LegacyDownloader();
-        
-        
-        downloader.download(new ScrapeContext(client, sink, request));
+        new Job(new ScrapeContext(client, sink, request)).run();
+    }
+
+    /**
+     * Returns the statistics for the most recent invocation of
+     * {@link #run()}.
+     */
+    public Statistics getStatistics() {
+        synchronized(this.statistics) {
+            return new Statistics(this.statistics);
+        }
     }
 
     public static int estimateTileCount(TileClient client, CacheRequest request) {
         ScrapeContext ctx = new ScrapeContext(client, null, request);
         return ctx.totalTiles;
     }
-    
+
     /**************************************************************************/
 
+    public final static class Statistics {
+        /** the number of tiles downloaded and written to the container */
+        public int tilesDownloaded;
+        /** the number of tiles already present in the container */
+        public int tilesSkipped;
+        /** the number of tiles that failed to download */
+        public int tilesFailed;
+        /** the number of bytes downloaded */
+        public long bytesDownloaded;
+        /** the elapsed time, in milliseconds */
+        public long elapsed;
+
+        Statistics() {}
+
+        Statistics(Statistics other) {
+            this.tilesDownloaded = other.tilesDownloaded;
+            this.tilesSkipped = other.tilesSkipped;
+            this.tilesFailed = other.tilesFailed;
+            this.bytesDownloaded = other.bytesDownloaded;
+            this.elapsed = other.elapsed;
+        }
+
+        public double getTilesPerSecond() {
+            return (this.elapsed > 0L) ? this.tilesDownloaded*1000d/this.elapsed : 0d;
+        }
+
+        public double getBytesPerSecond() {
+            return (this.elapsed > 0L) ? this.bytesDownloaded*1000d/this.elapsed : 0d;
+        }
+
+        @Override
+        public String toString() {
+            return "downloaded " + this.tilesDownloaded + " tiles (" +
+                   this.bytesDownloaded + " bytes) in " + this.elapsed + "ms, " +
+                   String.format("%.1f", this.getTilesPerSecond()) + " tiles/sec, " +
+                   String.format("%.0f", this.getBytesPerSecond()) + " bytes/sec, " +
+                   this.tilesSkipped + " skipped, " + this.tilesFailed + " failed";
+        }
+    }
+
     private static class TilePoint {
         int r, c;
 
@@ -87,55 +155,22 @@ public final class TileScraper {
         }
     }
 
-    private static class DownloadTask implements Runnable {
-        private final ScrapeContext context;
-        private final int tileX;
-        private final int tileY;
-        private final int tileZ;
-
-        public DownloadTask(ScrapeContext context, int tileZ, int tileX,
-                int tileY) {
-            this.context = context;
-            this.tileX = tileX;
-            this.tileY = tileY;
-            this.tileZ = tileZ;
-        }
-
-        @Override
-        public void run() {
-            boolean success = false;
-            try {
-                Throwable[] err = new Throwable[1];
-
-                // attempt to download the tile
-                int attempts = 0;
-                while (attempts < DOWNLOAD_ATTEMPTS) {
-                    // clear the error for the attempt
-                    err[0] = null;
-                    // load the tile
-                    byte[] d = this.context.client.getTileData(this.tileZ,
-                                                               this.tileX,
-                                                               this.tileY,
-                                                               err);
-                    if(d != null) {
-                        // valid entry in cache
-                        this.context.sink.setTile(this.tileZ, this.tileX, this.tileY, d, System.currentTimeMillis()+context.request.expirationOffset);
-                        success = true;
-                        break;
-                    } else if(err[0] == null) {
-                        // there was no exception raised during which means that
-                        // the client is unable to download
-                        break;
-                    } else {
-                        attempts++;
-                    }
-                }
-                
-                // set the error if necessary
-                this.context.downloadError |= (err[0] != null); 
-            } finally {
-                this.context.downloadComplete(success);
-            }
+    /**
+     * A tile to be downloaded, addressed in the client tile matrix.
+     */
+    private static class Tile {
+        final int levelIdx;
+        final int level;
+        final int x;
+        final int y;
+        byte[] data;
+        long expiration;
+
+        Tile(int levelIdx, int level, int x, int y) {
+            this.levelIdx = levelIdx;
+            this.level = level;
+            this.x = x;
+            this.y = y;
         }
     }
 
@@ -145,10 +180,6 @@ public final class TileScraper {
         public final CacheRequest request;
         public final String uri;
         public final int[] levels;
-        public int currentLevelIdx;
-        public int totalTilesCurrentLevel;
-        private boolean downloadError;
-        private int tilesDownloaded;
         private int totalTiles;
         private Map<Integer, List<TilePoint>> tiles = new HashMap<>();
         private int minLevel = 0, maxLevel = 0;
@@ -186,10 +217,6 @@ public final class TileScraper {
             for (int i = 0; i < this.levels.length; i++)
                 this.levels[i] = lvlArray.keyAt(i);
 
-            this.currentLevelIdx = 0;
-
-            this.downloadError = false;
-            this.tilesDownloaded = 0;
             this.totalTiles = 0;
 
             Geometry geo = GeometryTransformer.transform(request.region, 4326,
@@ -305,273 +332,449 @@ public final class TileScraper {
             v.y = client.getOriginY() - (r * z.pixelSizeY * z.tileHeight);
         }
 
-        public synchronized void downloadComplete(boolean success) {
-            if (success) {
-                this.tilesDownloaded++;
-            } else {
-                this.downloadError = true;
-            }
-        }
-
-        public synchronized boolean downloadError() {
-            return this.downloadError;
-        }
-
-        public synchronized int tilesDownloaded() {
-            return this.tilesDownloaded;
+        /**
+         * Returns the tiles to be scraped at the specified level, never
+         * <code>null</code>.
+         */
+        public List<TilePoint> getLevelTiles(int level) {
+            List<TilePoint> retval = this.tiles.get(level);
+            if(retval == null)
+                retval = Collections.emptyList();
+            return retval;
         }
     }
 
-    private abstract class Downloader {
-
-        private int levelStartTiles;
-
-        protected void reportStatus(ScrapeContext downloadContext) {
-            final int numDownload = downloadContext.tilesDownloaded();
-            
-            if(TileScraper.this.callback != null) {
-                callback.onRequestProgress(downloadContext.currentLevelIdx,
-                                           downloadContext.levels.length,
-                                           numDownload-this.levelStartTiles,
-                                           downloadContext.totalTilesCurrentLevel,
-                                           numDownload,
-                                           downloadContext.totalTiles);
-            }            
-        }
+    private final class Job {
+        final ScrapeContext context;
+        final int numThreads;
+        final HostThrottle throttle;
+        final BlockingQueue<Tile> work;
+        final AtomicInteger outstanding;
+        final AtomicInteger consecutiveFailures;
 
-        protected void onDownloadEnter(final ScrapeContext context) {
-        }
+        /** downloaded tiles awaiting write; guarded by <code>this</code> */
+        final List<Tile> pending;
+        final int[] levelTotal;
+        final int[] levelDone;
+        int totalDone;
 
-        protected void onDownloadExit(final ScrapeContext context, final int jobStatus) {
-        }
+        ScrapeJournal journal;
 
-        /**
-         * Return <code>true</code> if ready to download the next tile,
-         * <code>false</code> if the downloader should wait and check again
-         * later.
-         * 
-         * @param context   The current download context
-         * 
-         * @return  <code>true</code> if ready to download the next tile
-         *          immediately, <code>false</code> if the download should be
-         *          delayed.
-         */
-        protected boolean checkReadyForDownload(ScrapeContext context) {
-            return true;
-        }
+        /** producer state, accessed on the scraping thread only */
+        int levelIdx;
+        int tileIdx;
+        int tile180X;
 
-        protected void onLevelDownloadComplete(ScrapeContext context) {
-        }
+        volatile boolean producing;
+        volatile boolean aborted;
 
-        protected void onLevelDownloadStart(ScrapeContext context) {
+        Job(ScrapeContext context) {
+            this.context = context;
+            this.numThreads = Math.max(request.maxThreads, 1);
+            this.throttle = new HostThrottle(this.numThreads);
+            this.work = new ArrayBlockingQueue<Tile>(this.numThreads*4);
+            this.outstanding = new AtomicInteger(0);
+            this.consecutiveFailures = new AtomicInteger(0);
+            this.pending = new ArrayList<Tile>(BATCH_SIZE);
+            this.levelTotal = new int[context.levels.length];
+            this.levelDone = new int[context.levels.length];
+            for(int l = 0; l < context.levels.length; l++)
+                this.levelTotal[l] = context.getLevelTiles(context.levels[l]).size();
+
+            this.levelIdx = 0;
+            this.tileIdx = 0;
+            this.tile180X = this.computeTile180X(0);
+            this.producing = true;
+            this.aborted = false;
         }
 
-        protected abstract void downloadTileImpl(ScrapeContext context,
-                int tileLevel, int tileX, int tileY);
-
-
-
         /**
          * kicks off a download of the selected layers at the selected levels in the selected rectangle
          */
-        public boolean download(ScrapeContext downloadContext) {
+        boolean run() {
             Log.d(TAG, "Starting download of " + client.getName() + " cache...");
-            int retries = 0;
 
             if(callback != null)
                 callback.onRequestStarted();
 
+            synchronized(statistics) {
+                statistics.tilesDownloaded = 0;
+                statistics.tilesSkipped = 0;
+                statistics.tilesFailed = 0;
+                statistics.bytesDownloaded = 0L;
+                statistics.elapsed = 0L;
+            }
+
+            final long start = System.currentTimeMillis();
+            ExecutorService downloadService = null;
             try {
-                reportStatus(downloadContext);
-                
-                this.onDownloadEnter(downloadContext);
-
-                for (int l = 0; l < downloadContext.levels.length; l++) {
-                    downloadContext.currentLevelIdx = l;
-                    int currentLevel = downloadContext.levels[l];
-
-                    TileMatrix.ZoomLevel zoom = TileMatrix.Util
-                            .findZoomLevel(client, currentLevel);
-
-                    int tile180X = zoom != null ? (int) ((client.getOriginX() * -2)
-                            / (zoom.pixelSizeX * zoom.tileWidth)) : -1;
-
-                    List<TilePoint> tiles = downloadContext.tiles.get(downloadContext.levels[l]);
-                    downloadContext.totalTilesCurrentLevel = tiles.size();
-                    this.levelStartTiles = downloadContext.tilesDownloaded();
-
-                    this.onLevelDownloadStart(downloadContext);
-
-                    for (TilePoint tile : tiles) {
-                        while (true) {
-
-                            // check for cancel
-                            if (checkRequestCancelled())
-                                return false;
-
-                            // check for error
-                            if (downloadContext.downloadError()) {
-                                retries++;
-                                if (retries > MAX_RETRIES) {
-                                    if (callback != null)
-                                        callback.onRequestError(null, null, true);
-
-                                    Log.d(TAG,
-                                            "Lost network connection during map download.");
-
-                                    return false;
-                                } else {
-                                    Log.d(TAG, "attempting retry[" + retries + "], failed download for " + tile.c + ", " + tile.r +  " backing off for " + (1000 * retries) + "ms");
-                                    // don't consider it an error just yet.
-                                    downloadContext.downloadError = false;
-                                    try {
-                                        Thread.sleep(1000 * retries);
-                                    } catch (InterruptedException ignored) {
-                                    }
-                                }
-                            } else {
-                                retries = 0;
-                            }
-
-                            // Check again for cancle before potentially
-                            // sleeping another 50 ms
-                            if (checkRequestCancelled())
-                                return false;
-
-                            // report status
-                            this.reportStatus(downloadContext);
-
-                            // check if we should sleep for a little bit
-                            // before proceeding to initiate download of
-                            // the next tile
-                            if (!this
-                                    .checkReadyForDownload(downloadContext)) {
-                                try {
-                                    Thread.sleep(50);
-                                } catch (InterruptedException ignored) {
-                                }
-                                continue;
-                            }
-
-                            // proceed to download
-                            break;
+                this.journal = this.openJournal();
+                this.reportStatus();
+
+                downloadService = Executors.newFixedThreadPool(this.numThreads, DOWNLOAD_SERVICE_THREAD_FACTORY);
+                for(int i = 0; i < this.numThreads; i++) {
+                    downloadService.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            Job.this.download();
                         }
+                    });
+                }
+
+                long lastWrite = System.currentTimeMillis();
+                while(true) {
+                    // check for cancel
+                    if(request.canceled) {
+                        this.abort();
+                        this.writePending();
+                        if(callback != null)
+                            callback.onRequestCanceled();
+                        return false;
+                    }
+
+                    // check for error; hosts are backed off on failure so
+                    // consecutive failures span the retry interval
+                    if(this.consecutiveFailures.get() > MAX_RETRIES+this.numThreads) {
+                        this.abort();
+                        this.writePending();
+                        if(callback != null)
+                            callback.onRequestError(null, null, true);
+
+                        Log.d(TAG, "Lost network connection during map download.");
+                        return false;
+                    }
+
+                    // keep the download threads busy
+                    while(this.producing && this.work.remainingCapacity() > 0) {
+                        final Tile tile = this.nextTile();
+                        if(tile == null) {
+                            this.producing = false;
+                        } else if(this.isComplete(tile)) {
+                            this.tileComplete(tile, true);
+                        } else {
+                            this.outstanding.incrementAndGet();
+                            this.work.add(tile);
+                        }
+                    }
 
-                        // One last cancel check before starting download
-                        if (checkRequestCancelled())
-                            return false;
+                    final boolean done = !this.producing && this.outstanding.get() == 0;
 
-                        // download
-                        if (tile180X > -1 && tile.c >= tile180X)
-                            downloadTileImpl(downloadContext, currentLevel, tile.c - tile180X, tile.r);
-                        else
-                            downloadTileImpl(downloadContext, currentLevel, tile.c, tile.r);
+                    // write the downloaded tiles
+                    final long now = System.currentTimeMillis();
+                    final int numPending;
+                    synchronized(this) {
+                        numPending = this.pending.size();
+                    }
+                    if(done || numPending >= BATCH_SIZE || (numPending > 0 && (now-lastWrite) >= BATCH_INTERVAL)) {
+                        this.writePending();
+                        lastWrite = now;
+                    }
 
-                        this.onLevelDownloadComplete(downloadContext);
+                    this.reportStatus();
+                    if(done)
+                        break;
+
+                    synchronized(this) {
+                        if(this.pending.size() < BATCH_SIZE) {
+                            try {
+                                this.wait(50);
+                            } catch(InterruptedException ignored) {}
+                        }
                     }
                 }
-                
+
+                if(this.journal != null) {
+                    this.journal.delete();
+                    this.journal = null;
+                }
+
                 if(callback != null)
                     callback.onRequestComplete();
 
                 return true;
             } catch (Exception e) {
                 Log.e(TAG, "Error while trying to download from "
-                        + downloadContext.uri, e);
+                        + this.context.uri, e);
+                this.abort();
                 return false;
             } finally {
-                this.onDownloadExit(downloadContext, 0);
+                if(downloadService != null)
+                    downloadService.shutdown();
+                if(this.journal != null)
+                    this.journal.close();
+
+                synchronized(statistics) {
+                    statistics.elapsed = System.currentTimeMillis()-start;
+                    Log.d(TAG, "Finished download of " + client.getName() + " cache, " + statistics);
+                }
             }
         }
 
-        private boolean checkRequestCancelled() {
-            if (request.canceled) {
-                if (callback != null)
-                    callback.onRequestCanceled();
-                return true;
+        private void abort() {
+            this.aborted = true;
+            this.producing = false;
+            this.work.clear();
+            this.throttle.cancel();
+            synchronized(this) {
+                this.notifyAll();
             }
-            return false;
         }
-    }
 
-    private class MultiThreadDownloader extends Downloader {
-        private ThreadPoolExecutor downloadService;
-        private LinkedBlockingQueue<Runnable> queue;
-
-        public MultiThreadDownloader(int numDownloadThreads) {
-            if (numDownloadThreads <= 1)
-                throw new IllegalArgumentException();
-            this.queue = new LinkedBlockingQueue<>();
-
-            this.downloadService = new ThreadPoolExecutor(
-                    request.maxThreads,
-                    request.maxThreads,
-                    500,
-                    TimeUnit.MILLISECONDS,
-                    this.queue,
-                    DOWNLOAD_SERVICE_THREAD_FACTORY);
+        private ScrapeJournal openJournal() {
+            if(request.cacheFile == null)
+                return null;
+
+            // the journal is bound to the tiles to be scraped
+            long fingerprint = client.getName().hashCode();
+            for(int l = 0; l < this.context.levels.length; l++) {
+                final int level = this.context.levels[l];
+                fingerprint = 31L*fingerprint + level;
+                for(TilePoint tile : this.context.getLevelTiles(level))
+                    fingerprint = 31L*fingerprint + ScrapeJournal.key(level, tile.c, tile.r);
+            }
+
+            final File file = ScrapeJournal.getJournalFile(request.cacheFile);
+            try {
+                final ScrapeJournal retval = ScrapeJournal.open(file, fingerprint);
+                if(retval.size() > 0)
+                    Log.d(TAG, "Resuming download of " + client.getName() + " cache, " + retval.size() + " tiles complete");
+                return retval;
+            } catch(IOException e) {
+                Log.w(TAG, "Unable to open download journal " + file + ", download will not be resumable", e);
+                return null;
+            }
         }
 
-        private void flush(ScrapeContext downloadContext, boolean reportStatus) {
+        private int computeTile180X(int levelIdx) {
+            if(levelIdx >= this.context.levels.length)
+                return -1;
+            TileMatrix.ZoomLevel zoom = TileMatrix.Util
+                    .findZoomLevel(client, this.context.levels[levelIdx]);
 
-            // wait for queue to empty 
-            while (this.queue.size() > 0) {
-                // check for cancel
-                if (request.canceled)
-                    break;
+            return zoom != null ? (int) ((client.getOriginX() * -2)
+                    / (zoom.pixelSizeX * zoom.tileWidth)) : -1;
+        }
 
-                try {
-                    Thread.sleep(50);
-                } catch (InterruptedException ignored) {
+        /**
+         * Returns the next tile to be scraped, in level order, or
+         * <code>null</code> if all tiles have been produced.
+         */
+        private Tile nextTile() {
+            while(this.levelIdx < this.context.levels.length) {
+                final int level = this.context.levels[this.levelIdx];
+                final List<TilePoint> tiles = this.context.getLevelTiles(level);
+                if(this.tileIdx < tiles.size()) {
+                    final TilePoint tile = tiles.get(this.tileIdx++);
+                    if(this.tile180X > -1 && tile.c >= this.tile180X)
+                        return new Tile(this.levelIdx, level, tile.c - this.tile180X, tile.r);
+                    else
+                        return new Tile(this.levelIdx, level, tile.c, tile.r);
                 }
+                this.levelIdx++;
+                this.tileIdx = 0;
+                this.tile180X = this.computeTile180X(this.levelIdx);
+            }
+            return null;
+        }
+
+        /**
+         * Returns <code>true</code> if the tile was completed by a previous
+         * scrape or is otherwise present and unexpired in the container.
+         */
+        private boolean isComplete(Tile tile) {
+            if(this.journal != null && this.journal.contains(tile.level, tile.x, tile.y))
+                return true;
+            if(sink.hasTileExpirationMetadata())
+                return sink.getTileExpiration(tile.level, tile.x, tile.y) > System.currentTimeMillis();
+            if(sink instanceof BatchTileContainer)
+                return ((BatchTileContainer)sink).hasTile(tile.level, tile.x, tile.y);
+            return false;
+        }
 
-                // report status
-                if (reportStatus)
-                    this.reportStatus(downloadContext);
+        private void tileComplete(Tile tile, boolean skipped) {
+            this.tileDone(tile);
+            synchronized(statistics) {
+                if(skipped)
+                    statistics.tilesSkipped++;
+                else
+                    statistics.tilesDownloaded++;
             }
         }
 
-        @Override
-        protected void onDownloadExit(ScrapeContext context, int jobStatus) {
-            this.flush(context, false);
-            if (!this.downloadService.isShutdown())
-                this.downloadService.shutdown();
+        /**
+         * Counts a tile that could not be downloaded toward the progress of
+         * its level; the tile is not journaled and is retried if the scrape
+         * is resumed.
+         */
+        private void tileFailed(Tile tile) {
+            this.tileDone(tile);
+            synchronized(statistics) {
+                statistics.tilesFailed++;
+            }
         }
 
-        @Override
-        protected boolean checkReadyForDownload(ScrapeContext context) {
-            return (this.queue.size() < (3 * this.downloadService
-                    .getMaximumPoolSize()));
+        private void tileDone(Tile tile) {
+            synchronized(this) {
+                this.levelDone[tile.levelIdx]++;
+                this.totalDone++;
+            }
         }
 
-        @Override
-        protected void onLevelDownloadStart(ScrapeContext downloadContext) {
+        /**
+         * Writes the downloaded tiles to the container and records them in
+         * the journal. Invoked on the scraping thread only; all container
+         * access is confined to that thread.
+         */
+        private void writePending() throws IOException {
+            final Tile[] batch;
+            synchronized(this) {
+                if(this.pending.isEmpty())
+                    return;
+                batch = this.pending.toArray(new Tile[0]);
+                this.pending.clear();
+                this.notifyAll();
+            }
+
+            final BatchTileContainer transactional = (sink instanceof BatchTileContainer) ?
+                    (BatchTileContainer)sink : null;
+            if(transactional != null)
+                transactional.beginTransaction();
+            try {
+                for(Tile tile : batch) {
+                    if(tile.data != null)
+                        sink.setTile(tile.level, tile.x, tile.y, tile.data, tile.expiration);
+                }
+                if(transactional != null)
+                    transactional.setTransactionSuccessful();
+            } finally {
+                if(transactional != null)
+                    transactional.endTransaction();
+            }
+
+            // a tile the client returned no data for is not journaled, so
+            // that it is retried if the scrape is resumed
+            if(this.journal != null) {
+                final long[] keys = new long[batch.length];
+                int numKeys = 0;
+                for(Tile tile : batch) {
+                    if(tile.data != null)
+                        keys[numKeys++] = ScrapeJournal.key(tile.level, tile.x, tile.y);
+                }
+                if(numKeys > 0)
+                    this.journal.append(keys, numKeys);
+            }
+
+            for(Tile tile : batch) {
+                if(tile.data != null)
+                    this.tileComplete(tile, false);
+                else
+                    this.tileFailed(tile);
+            }
         }
 
-        @Override
-        protected void onLevelDownloadComplete(ScrapeContext downloadContext) {
-            this.flush(downloadContext, true);
+        /**
+         * Download thread loop.
+         */
+        private void download() {
+            try {
+                while(!this.aborted) {
+                    final Tile tile = this.work.poll(50, TimeUnit.MILLISECONDS);
+                    if(tile == null) {
+                        if(!this.producing)
+                            break;
+                        continue;
+                    }
+                    try {
+                        this.download(tile);
+                    } finally {
+                        this.outstanding.decrementAndGet();
+                    }
+                }
+            } catch(InterruptedException ignored) {}
         }
 
-        @Override
-        protected void downloadTileImpl(ScrapeContext context, int tileLevel,
-                int tileX, int tileY) {
-            // enqueue
-            downloadService.execute(new DownloadTask(context, tileLevel, tileX,
-                    tileY));
+        private void download(Tile tile) throws InterruptedException {
+            final String host = this.getHost(tile);
+
+            Throwable[] err = new Throwable[1];
+            byte[] d = null;
+
+            // attempt to download the tile
+            int attempts = 0;
+            while (attempts < DOWNLOAD_ATTEMPTS) {
+                final HostThrottle.Host permit = this.throttle.acquire(host);
+                if(permit == null)
+                    return;
+                // clear the error for the attempt
+                err[0] = null;
+                try {
+                    // load the tile
+                    d = client.getTileData(tile.level, tile.x, tile.y, err);
+                } finally {
+                    this.throttle.release(permit, (d != null || err[0] == null));
+                }
+                if(d != null || err[0] == null) {
+                    // valid entry, or there was no exception raised which
+                    // means that the client is unable to download
+                    break;
+                } else {
+                    attempts++;
+                }
+            }
+
+            if(d == null && err[0] != null) {
+                this.consecutiveFailures.incrementAndGet();
+                this.tileFailed(tile);
+                return;
+            }
+            this.consecutiveFailures.set(0);
+
+            tile.data = d;
+            tile.expiration = System.currentTimeMillis()+request.expirationOffset;
+            if(d != null) {
+                synchronized(statistics) {
+                    statistics.bytesDownloaded += d.length;
+                }
+            }
+            synchronized(this) {
+                this.pending.add(tile);
+                if(this.pending.size() >= BATCH_SIZE)
+                    this.notifyAll();
+                // bound the memory held by tiles awaiting write
+                while(this.pending.size() >= 4*BATCH_SIZE && !this.aborted)
+                    this.wait(50);
+            }
         }
-    }
 
-    private class LegacyDownloader extends Downloader {
+        private String getHost(Tile tile) {
+            if(client instanceof AbstractURLTileClient) {
+                final URL url = ((AbstractURLTileClient)client).getTileURL(tile.level, tile.x, tile.y);
+                if(url != null && url.getHost() != null)
+                    return url.getHost();
+            }
+            return client.getName();
+        }
 
-        @Override
-        protected void downloadTileImpl(ScrapeContext context, int tileLevel,
-                int tileX, int tileY) {
-            
-            DownloadTask t = new DownloadTask(context, tileLevel, tileX, tileY);
-            t.run();
+        private void reportStatus() {
+            if(callback == null)
+                return;
+
+            // the first level that is not yet complete
+            int current = 0;
+            final int levelProgress;
+            final int totalProgress;
+            synchronized(this) {
+                while(current < this.levelDone.length-1 && this.levelDone[current] >= this.levelTotal[current])
+                    current++;
+                levelProgress = (this.levelDone.length > 0) ? this.levelDone[current] : 0;
+                totalProgress = this.totalDone;
+            }
+            callback.onRequestProgress(current,
+                                       this.context.levels.length,
+                                       levelProgress,
+                                       (this.levelTotal.length > 0) ? this.levelTotal[current] : 0,
+                                       totalProgress,
+                                       this.context.totalTiles);
         }
     }
-
-   
 }
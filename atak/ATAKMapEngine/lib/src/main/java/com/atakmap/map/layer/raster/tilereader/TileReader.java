@@ -20,6 +20,8 @@ import android.os.SystemClock;
 
 import com.atakmap.coremap.log.Log;
 import com.atakmap.map.layer.control.Controls;
+import com.atakmap.math.MathUtils;
+import com.atakmap.util.ConfigOptions;
 
 /**
  * Provides tile-based access to raster data. Synchronous and asynchronous data
@@ -885,9 +887,17 @@ public abstract class TileReader implements Controls {
         }
     }
 
+    /**
+     * Returns the shared {@link AsynchronousIO} instance. The number of
+     * workers is obtained from the <code>tilereader.io-workers</code> option
+     * and defaults to half of the available processors, up to four.
+     */
     public static synchronized AsynchronousIO getMasterIOThread() {
-        if (masterIOThread == null)
-            masterIOThread = new TileReader.AsynchronousIO();
+        if (masterIOThread == null) {
+            final int defaultWorkers = MathUtils.clamp(Runtime.getRuntime().availableProcessors()/2, 1, 4);
+            final int numWorkers = ConfigOptions.getOption("tilereader.io-workers", defaultWorkers);
+            masterIOThread = new TileReader.AsynchronousIO(null, 0L, Math.max(numWorkers, 1));
+        }
         return masterIOThread;
     }
 
@@ -1145,7 +1155,7 @@ public abstract class TileReader implements Controls {
     } // AsynchronousReadRequestListener
 
     /**
-     * The asynchronous I/O thread for use by one or more
+     * The asynchronous I/O scheduler for use by one or more
      * <code>TileReader</code> instances. The same instance can be utilized by
      * multiple <code>TileReader</code> objects to ensure data reading and
      * delivery in series rather than in parallel. Forcing request servicing
@@ -1153,17 +1163,27 @@ public abstract class TileReader implements Controls {
      * constrained environments when trying to render virtual mosaics from
      * multiple files/tile readers onto a single canvas.
      * 
+     * <P>Requests are serviced by a pool of worker threads; by default the
+     * pool has a single worker, preserving the serial behavior described
+     * above. When more than one worker is configured, the workers are shared
+     * fairly among the readers in a round-robin fashion and the number of
+     * requests that will be serviced concurrently for any one reader is
+     * limited (see {@link #setMaxConcurrentRequests(TileReader, int)}). Note
+     * that reads for a reader are additionally serialized on its
+     * {@link TileReader#readLock}.
+     * 
      * @author Developer
      */
     public final static class AsynchronousIO {
         private Map<TileReader, RequestQueue> tasks;
-        private Task executing;
+        private ArrayList<RequestQueue> schedule;
+        private int scheduleIndex;
         private final Object syncOn;
         private boolean dead;
-        private boolean started;
         private final long maxIdle;
-
-        private byte[] readBuffer;
+        private final int maxWorkers;
+        private int workers;
+        private int idleWorkers;
 
         public AsynchronousIO() {
             this(null, 0L);
@@ -1178,33 +1198,65 @@ public abstract class TileReader implements Controls {
         }
 
         public AsynchronousIO(Object syncOn, long maxIdle) {
+            this(syncOn, maxIdle, 1);
+        }
+
+        /**
+         * Creates a new instance.
+         * 
+         * @param syncOn        The object to synchronize on; if
+         *                      <code>null</code>, the new instance is used
+         * @param maxIdle       The amount of time, in milliseconds, that a
+         *                      worker may remain idle before it exits. If
+         *                      <code>0L</code>, workers never idle out.
+         * @param numWorkers    The maximum number of worker threads that will
+         *                      service requests concurrently
+         */
+        public AsynchronousIO(Object syncOn, long maxIdle, int numWorkers) {
             if (syncOn == null)
                 syncOn = this;
+            if (numWorkers < 1)
+                throw new IllegalArgumentException();
             this.syncOn = syncOn;
             this.tasks = new HashMap<>();
+            this.schedule = new ArrayList<>();
+            this.scheduleIndex = 0;
             this.dead = true;
-            this.started = false;
             this.maxIdle = maxIdle;
+            this.maxWorkers = numWorkers;
+            this.workers = 0;
+            this.idleWorkers = 0;
+        }
 
-            this.readBuffer = null;
+        /**
+         * Returns the maximum number of worker threads that will service
+         * requests concurrently.
+         */
+        public int getNumWorkers() {
+            return this.maxWorkers;
         }
 
         private byte[] getReadBuffer(int size) {
-            if (this.readBuffer == null || this.readBuffer.length < size)
-                this.readBuffer = new byte[size];
-            return this.readBuffer;
+            final Thread t = Thread.currentThread();
+            if (!(t instanceof Worker) || ((Worker)t).owner != this)
+                return new byte[size];
+            final Worker worker = (Worker)t;
+            if (worker.readBuffer == null || worker.readBuffer.length < size)
+                worker.readBuffer = new byte[size];
+            return worker.readBuffer;
         }
 
         /**
-         * Aborts all unserviced tasks and kills the thread. If a task is
-         * currently being serviced, it will complete before the thread exits.
-         * The thread may be restarted by queueing a new task.
+         * Aborts all unserviced tasks and kills the worker threads. If tasks
+         * are currently being serviced, they will complete before the
+         * associated threads exit. The threads may be restarted by queueing a
+         * new task.
          */
         public void release() {
             synchronized (this.syncOn) {
                 this.abortRequests(null);
                 this.dead = true;
-                this.syncOn.notify();
+                this.syncOn.notifyAll();
             }
         }
 
@@ -1216,130 +1268,294 @@ public abstract class TileReader implements Controls {
          */
         public void abortRequests(TileReader reader) {
             synchronized (this.syncOn) {
-                if(this.executing != null && executing.reader == reader) {
-                    if (this.executing.action instanceof Cancelable)
-                        ((Cancelable) this.executing.action).cancel();
-                }
-
                 if(reader != null) {
-                    final RequestQueue queue = this.tasks.remove(reader);
-                    while (queue != null) {
-                        Task t = queue.get();
-                        if (t == null)
-                            break;
+                    final RequestQueue queue = this.tasks.get(reader);
+                    if(queue == null)
+                        return;
+                    for(Task t : queue.executing) {
                         if (t.action instanceof Cancelable)
                             ((Cancelable) t.action).cancel();
                     }
+                    queue.abort();
+                    // if there are tasks in flight, the queue is retained so
+                    // that tasks subsequently queued for the reader are not
+                    // started until the in flight tasks have completed
+                    if(queue.executing.isEmpty())
+                        this.removeQueue(queue);
                 } else {
-                    for(Map.Entry<TileReader, RequestQueue> entry : tasks.entrySet()) {
-                        while (true) {
-                            Task t = entry.getValue().get();
-                            if (t == null)
-                                break;
-                            if (t.action instanceof Cancelable)
-                                ((Cancelable) t.action).cancel();
-                        }
-                    }
-                    tasks.clear();
+                    for(RequestQueue queue : this.schedule)
+                        queue.abort();
+                    for(int i = this.schedule.size()-1; i >= 0; i--)
+                        if(this.schedule.get(i).executing.isEmpty())
+                            this.removeQueue(this.schedule.get(i));
                 }
             }
         }
 
+        /**
+         * Sets the prioritizer for the read requests of the specified reader.
+         * Queued requests are reordered when the prioritizer is set; if the
+         * order imposed by the prioritizer changes, it should be set again.
+         *
+         * @param reader        The reader
+         * @param prioritizer   The prioritizer, sorting requests from low to
+         *                      high priority
+         */
         public void setReadRequestPrioritizer(TileReader reader, Comparator<ReadRequest> prioritizer) {
             synchronized(this.syncOn) {
-                RequestQueue queue = this.tasks.get(reader);
-                if(queue == null)
-                    this.tasks.put(reader, queue=new RequestQueue());
+                final RequestQueue queue = this.getQueue(reader);
                 queue.requestPrioritizer = prioritizer;
+                queue.invalidate();
             }
         }
 
+        /**
+         * Sets the maximum number of requests for the specified reader that
+         * may be serviced concurrently. Defaults to <code>1</code>.
+         * 
+         * <P>Requests are only serviced in parallel if the reader specifies a
+         * {@link TileReader#readLock} that permits concurrent reads.
+         * 
+         * @param reader    The reader
+         * @param limit     The maximum number of concurrent requests
+         */
+        public void setMaxConcurrentRequests(TileReader reader, int limit) {
+            if(limit < 1)
+                throw new IllegalArgumentException();
+            synchronized(this.syncOn) {
+                this.getQueue(reader).maxConcurrent = limit;
+                this.syncOn.notifyAll();
+            }
+        }
+
+        /**
+         * Sets the maximum number of read requests that will be queued for the
+         * specified reader. When the limit is exceeded, the requests with the
+         * lowest priority per the reader's prioritizer (see
+         * {@link #setReadRequestPrioritizer(TileReader, Comparator)}) are
+         * considered stale and are canceled. Defaults to
+         * {@link Integer#MAX_VALUE}.
+         * 
+         * @param reader    The reader
+         * @param limit     The maximum number of queued read requests
+         */
+        public void setMaxQueueDepth(TileReader reader, int limit) {
+            if(limit < 0)
+                throw new IllegalArgumentException();
+            synchronized(this.syncOn) {
+                final RequestQueue queue = this.getQueue(reader);
+                queue.maxDepth = limit;
+                queue.prune();
+            }
+        }
+
+        /**
+         * Returns the scheduling statistics for the specified reader.
+         * 
+         * @param reader    The reader
+         * 
+         * @return  The statistics for the reader. Statistics are discarded
+         *          once the requests for the reader have been aborted and
+         *          none remain in flight.
+         */
+        public Statistics getStatistics(TileReader reader) {
+            synchronized(this.syncOn) {
+                final RequestQueue queue = this.tasks.get(reader);
+                if(queue == null)
+                    return new Statistics(0, 0, 0L, 0L, 0L, 0L);
+                return new Statistics(queue.tasks.size(),
+                                      queue.executing.size(),
+                                      queue.serviced,
+                                      queue.dropped,
+                                      queue.waitTime,
+                                      queue.readTime);
+            }
+        }
+
+        private RequestQueue getQueue(TileReader reader) {
+            RequestQueue queue = this.tasks.get(reader);
+            if(queue == null) {
+                queue = new RequestQueue();
+                this.tasks.put(reader, queue);
+                this.schedule.add(queue);
+            }
+            return queue;
+        }
+
+        private void removeQueue(RequestQueue queue) {
+            final int idx = this.schedule.indexOf(queue);
+            if(idx < 0)
+                return;
+            this.schedule.remove(idx);
+            if(idx < this.scheduleIndex)
+                this.scheduleIndex--;
+            this.tasks.values().remove(queue);
+        }
+
         private void runLater(TileReader reader, Runnable r) {
             synchronized (this.syncOn) {
-                RequestQueue queue = this.tasks.get(reader);
-                if(queue == null)
-                    this.tasks.put(reader, queue=new RequestQueue());
-                queue.enqueue(new Task(reader, r));
-                this.syncOn.notify();
+                this.getQueue(reader).enqueue(new Task(reader, r));
 
                 this.dead = false;
-                if (!this.started) {
-                    Thread t = new Thread() {
-                        @Override
-                        public void run() {
-                            AsynchronousIO.this.runImpl();
-                        }
-                    };
+                if (this.idleWorkers == 0 && this.workers < this.maxWorkers) {
+                    Worker t = new Worker(this);
                     t.setPriority(Thread.MIN_PRIORITY);
-                    t.setName("tilereader-async-io-thread@" + Integer.toString(this.hashCode(), 16));
+                    t.setName("tilereader-async-io-thread@" + Integer.toString(this.hashCode(), 16) + "-" + this.workers);
 
-                    this.started = true;
+                    this.workers++;
                     t.start();
+                } else {
+                    this.syncOn.notify();
                 }
             }
         }
 
+        /**
+         * Selects the next task to be serviced. Queues are visited in
+         * round-robin order so that no one reader can monopolize the workers.
+         * Must be invoked while synchronized on <code>syncOn</code>.
+         */
+        private RequestQueue select() {
+            final int numQueues = this.schedule.size();
+            for(int i = 0; i < numQueues; i++) {
+                final int idx = (this.scheduleIndex+i)%numQueues;
+                final RequestQueue queue = this.schedule.get(idx);
+                if(!queue.isReady())
+                    continue;
+                this.scheduleIndex = (idx+1)%numQueues;
+                return queue;
+            }
+            return null;
+        }
+
         private void runImpl() {
             Task task;
+            RequestQueue rq;
             while (true) {
                 synchronized (this.syncOn) {
-                    this.executing = null;
                     if (this.dead) {
-                        this.started = false;
+                        this.workers--;
                         break;
                     }
 
-                    // iterate all request queues and select the oldest task.
-                    // oldest task is used here to prevent starvation
-                    RequestQueue rq = null;
-                    int candidateId = Integer.MAX_VALUE;
-                    for(RequestQueue queue : tasks.values()) {
-                        final Task t = queue.peek();
-                        if(t == null)
-                            continue;
-                        if(t.id < candidateId) {
-                            rq = queue;
-                            candidateId = t.id;
-                        }
-                    }
-
+                    rq = this.select();
                     if (rq == null) {
                         final long startIdle = SystemClock.elapsedRealtime();
-                        this.readBuffer = null;
+                        ((Worker)Thread.currentThread()).readBuffer = null;
+                        this.idleWorkers++;
                         try {
                             this.syncOn.wait(this.maxIdle);
                         } catch (InterruptedException ignored) {
+                        } finally {
+                            this.idleWorkers--;
                         }
                         final long stopIdle = SystemClock.elapsedRealtime();
-                        // check if the thread has idle'd out
-                        if(this.maxIdle > 0L && (stopIdle-startIdle) >= this.maxIdle)
-                            this.dead = true;
+                        // check if the worker has idle'd out
+                        if(this.maxIdle > 0L && (stopIdle-startIdle) >= this.maxIdle) {
+                            this.workers--;
+                            break;
+                        }
                         // wake up and re-run the sync block
                         continue;
                     }
 
                     task = rq.get();
-                    this.executing = task;
+                    rq.executing.add(task);
+                    task.started = System.nanoTime();
+                    rq.waitTime += (task.started-task.queued);
                 }
 
                 try {
                     task.action.run();
                 } catch (RuntimeException e) {
                     Log.e(TAG, "error: ", e);
+                } finally {
+                    synchronized(this.syncOn) {
+                        rq.executing.remove(task);
+                        rq.serviced++;
+                        rq.readTime += (System.nanoTime()-task.started);
+                        if(rq.aborted && rq.executing.isEmpty() && rq.tasks.isEmpty())
+                            this.removeQueue(rq);
+                        // the queue may have been blocked on this task
+                        this.syncOn.notifyAll();
+                    }
                 }
             }
         }
 
+        /**
+         * Scheduling statistics for a single reader. Times are in
+         * nanoseconds.
+         */
+        public final static class Statistics {
+            /** The number of requests awaiting service */
+            public final int queueDepth;
+            /** The number of requests currently being serviced */
+            public final int executing;
+            /** The number of requests that have been serviced */
+            public final long serviced;
+            /** The number of requests that were dropped as stale */
+            public final long dropped;
+            /** The total time serviced requests spent queued */
+            public final long waitTime;
+            /** The total time spent servicing requests */
+            public final long readTime;
+
+            Statistics(int queueDepth, int executing, long serviced, long dropped, long waitTime, long readTime) {
+                this.queueDepth = queueDepth;
+                this.executing = executing;
+                this.serviced = serviced;
+                this.dropped = dropped;
+                this.waitTime = waitTime;
+                this.readTime = readTime;
+            }
+
+            /** Returns the mean time, in milliseconds, a request waits to be serviced */
+            public double getAverageWaitMillis() {
+                return (serviced > 0L) ? (waitTime / (double)serviced) / 1000000d : 0d;
+            }
+
+            /** Returns the mean time, in milliseconds, to service a request */
+            public double getAverageReadMillis() {
+                return (serviced > 0L) ? (readTime / (double)serviced) / 1000000d : 0d;
+            }
+
+            @Override
+            public String toString() {
+                return "Statistics {queueDepth=" + queueDepth + ",executing=" + executing
+                        + ",serviced=" + serviced + ",dropped=" + dropped
+                        + ",avgWait=" + getAverageWaitMillis() + "ms,avgRead="
+                        + getAverageReadMillis() + "ms}";
+            }
+        }
+
+        final static class Worker extends Thread {
+            final AsynchronousIO owner;
+            byte[] readBuffer;
+
+            Worker(AsynchronousIO owner) {
+                this.owner = owner;
+            }
+
+            @Override
+            public void run() {
+                this.owner.runImpl();
+            }
+        }
+
         final static class Task {
             final static AtomicInteger idGenerator = new AtomicInteger(0);
             public final TileReader reader;
             public final Runnable action;
             public final int id;
+            final long queued;
+            long started;
 
             public Task(TileReader reader, Runnable action) {
                 this.reader = reader;
                 this.action = action;
                 this.id = idGenerator.getAndIncrement();
+                this.queued = System.nanoTime();
             }
         }
     } // AsynchronousIO
@@ -1349,6 +1565,17 @@ public abstract class TileReader implements Controls {
         // sort order for tasks is LO => HI priority
         ArrayList<AsynchronousIO.Task> tasks = new ArrayList<>(64);
         Comparator<ReadRequest> requestPrioritizer;
+        ArrayList<AsynchronousIO.Task> executing = new ArrayList<>(4);
+        int maxConcurrent = 1;
+        int maxDepth = Integer.MAX_VALUE;
+        boolean aborted;
+        /** <code>true</code> if tasks were added since the last sort */
+        boolean unsorted;
+
+        long serviced;
+        long dropped;
+        long waitTime;
+        long readTime;
 
         AsynchronousIO.Task peek() {
             if(tasks.isEmpty())
@@ -1362,9 +1589,50 @@ public abstract class TileReader implements Controls {
             return tasks.remove(tasks.size()-1);
         }
 
+        /**
+         * Returns <code>true</code> if the next task may be serviced. Tasks
+         * that are not read requests (e.g. release hooks) are serviced
+         * exclusively of any other tasks for the reader.
+         */
+        boolean isReady() {
+            if(executing.size() >= maxConcurrent)
+                return false;
+            if(!executing.isEmpty() && !(executing.get(0).action instanceof ReadRequestTask))
+                return false;
+            // tasks are only sorted if they have changed since the last sort
+            prune();
+            final AsynchronousIO.Task t = peek();
+            if(t == null)
+                return false;
+            return executing.isEmpty() || (t.action instanceof ReadRequestTask);
+        }
+
         void enqueue(AsynchronousIO.Task task) {
+            aborted = false;
             tasks.add(task);
-            Collections.sort(tasks, this);
+            unsorted = true;
+            if(tasks.size() > maxDepth)
+                prune();
+        }
+
+        /**
+         * Marks the queue for reordering, e.g. following a change to the
+         * request prioritizer.
+         */
+        void invalidate() {
+            unsorted = true;
+        }
+
+        /**
+         * Sorts the queue if it has changed, drops canceled requests that are
+         * next in line and, if the queue exceeds its maximum depth, cancels
+         * the lowest priority read requests.
+         */
+        void prune() {
+            if(unsorted) {
+                Collections.sort(tasks, this);
+                unsorted = false;
+            }
             while(!tasks.isEmpty()) {
                 final int idx = tasks.size()-1;
                 final AsynchronousIO.Task t = tasks.get(idx);
@@ -1373,6 +1641,22 @@ public abstract class TileReader implements Controls {
                 else
                     break;
             }
+            // non read requests sort HI, so any read requests are at the head
+            while(tasks.size() > maxDepth && tasks.get(0).action instanceof ReadRequestTask) {
+                ((ReadRequestTask)tasks.remove(0).action).cancel();
+                dropped++;
+            }
+        }
+
+        void abort() {
+            while (true) {
+                AsynchronousIO.Task t = get();
+                if (t == null)
+                    break;
+                if (t.action instanceof Cancelable)
+                    ((Cancelable) t.action).cancel();
+            }
+            aborted = true;
         }
 
                 @Override
@@ -3,25 +3,38 @@ package com.atakmap.opengl;
 
 import android.util.Pair;
 
-import com.atakmap.coremap.log.Log;
 import com.atakmap.coremap.maps.coords.Vector2D;
 
 import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
- * Simple polygon triangulation, based on Triangulation by Ear Clipping by David Eberly.
- * <P>
- * http://www.geometrictools.com/Documentation/TriangulationByEarClipping.pdf
+ * Polygon triangulation by monotone partitioning, per chapter 3 of
+ * <I>Computational Geometry: Algorithms and Applications</I> (de Berg et al).
+ * A plane sweep inserts the diagonals that split the polygon into y-monotone
+ * pieces, which are then triangulated in linear time, for O(n log n) overall.
+ * Polygons may have holes; the triangle indices reference the vertices of all
+ * rings, exterior first.
+ *
+ * <P>Polygons that cannot be triangulated, generally because they are
+ * self-intersecting, are reported as {@link #STENCIL}.
  * 
  * @author Developer
  */
@@ -31,6 +44,9 @@ public class GLTriangulate {
     public final static int INDEXED = 1;
     public final static int STENCIL = 2;
 
+    /** the maximum number of vertices addressable by 16-bit indices */
+    public final static int MAX_SHORT_INDEXED_VERTICES = 0x10000;
+
     /**
      *
      * @param verts     The vertices, XY pairs. Does not expect
@@ -48,13 +64,7 @@ public class GLTriangulate {
     }
 
     public static int triangulate(FloatBuffer verts, int size, int numVerts, ShortBuffer indices) {
-        Polygon poly = new Polygon(verts, size, numVerts);
-        if (poly.convex)
-            return TRIANGLE_FAN;
-        if (triangulate(poly, indices))
-            return INDEXED;
-        else
-            return STENCIL;
+        return triangulate(new Polygon(verts, size, new int[] {numVerts}), indices);
     }
 
     /**
@@ -84,263 +94,1095 @@ public class GLTriangulate {
      * @param indices   Should have a capacity of at least
      *                  <code>(numVerts-2)*3</code>
      * @return  One of {@link #TRIANGLE_FAN}, {@link #INDEXED} or
-     *          {@link #STENCIL}
+     *          {@link #STENCIL}. Polygons with more than
+     *          {@link #MAX_SHORT_INDEXED_VERTICES} vertices are not
+     *          triangulated.
      */
     public static int triangulate(DoubleBuffer verts, int size, int numVerts, ShortBuffer indices) {
-        Polygon poly = new Polygon(verts, size, numVerts);
-        if (poly.convex)
-            return TRIANGLE_FAN;
-        if (triangulate(poly, indices))
-            return INDEXED;
-        else
-            return STENCIL;
+        return triangulate(new Polygon(verts, size, new int[] {numVerts}), indices);
     }
-    
-    private static boolean triangulate(Polygon poly, ShortBuffer indices) {
-        Vertex iter = poly.vertices;
-        Vertex start = iter;
-        while (poly.numVertices > 3) {
-            if (isConvex(iter, poly.winding) && isEar(iter, poly.vertices)) {
-                Vertex v = iter;
-
-                indices.put((short) v.previous.index);
-                indices.put((short) v.index);
-                indices.put((short) v.next.index);
-
-                // remove from the linked list
-                v.previous.next = v.next;
-                v.next.previous = v.previous;
-                // recompute convexness
-                v.previous.convex = isConvex(v.previous, poly.winding);
-                v.next.convex = isConvex(v.next, poly.winding);
-
-                // if we removed the head of the list, update the head
-                if (iter == poly.vertices)
-                    poly.vertices = iter.next;
-
-                // decrement the vertices
-                poly.numVertices--;
-
-                // move back to the previous vertex since its convexness may
-                // have changed
-                iter = v.previous;
-                start = iter;
-            } else {
-                iter = iter.next;
-                // XXX - THIS NEEDS TO BE FIXED !!!
-                // we're going to enter an infinite loop so indicate that
-                // legacy fill should be used.
-                if (iter == start)
-                    return false;
-
-            }
-        }
 
-        // three vertices left, make the final triangle
-        indices.put((short) poly.vertices.previous.index);
-        indices.put((short) poly.vertices.index);
-        indices.put((short) poly.vertices.next.index);
+    /**
+     * Triangulates a polygon without a 16-bit limit on the vertex count.
+     *
+     * @param verts     The vertices. Does not expect first-point-as-last
+     * @param size      The number of components per vertex. Use <code>2</code>
+     *                  for XY or <code>3</code> for XYZ
+     * @param numVerts  The vertex count
+     * @param indices   Should have a capacity of at least
+     *                  <code>(numVerts-2)*3</code>
+     * @return  One of {@link #TRIANGLE_FAN}, {@link #INDEXED} or
+     *          {@link #STENCIL}
+     */
+    public static int triangulate(FloatBuffer verts, int size, int numVerts, IntBuffer indices) {
+        return triangulate(new Polygon(verts, size, new int[] {numVerts}), indices);
+    }
 
-        return true;
+    /**
+     * Triangulates a polygon without a 16-bit limit on the vertex count.
+     *
+     * @param verts     The vertices. Does not expect first-point-as-last
+     * @param size      The number of components per vertex. Use <code>2</code>
+     *                  for XY or <code>3</code> for XYZ
+     * @param numVerts  The vertex count
+     * @param indices   Should have a capacity of at least
+     *                  <code>(numVerts-2)*3</code>
+     * @return  One of {@link #TRIANGLE_FAN}, {@link #INDEXED} or
+     *          {@link #STENCIL}
+     */
+    public static int triangulate(DoubleBuffer verts, int size, int numVerts, IntBuffer indices) {
+        return triangulate(new Polygon(verts, size, new int[] {numVerts}), indices);
     }
 
-    private static boolean isEar(Vertex test, Vertex vertices) {
-        Vertex iter = vertices;
-        Vertex v;
-        do {
-            v = iter;
-            iter = iter.next;
-            if (v == test || v == test.previous || v == test.next)
-                continue;
-            if (PointInTriangle(v, test.previous, test, test.next))
-                return false;
-        } while (iter != vertices);
-        return true;
+    /**
+     * Triangulates a polygon with holes.
+     *
+     * @param verts     The vertices of the exterior ring followed by the
+     *                  vertices of each interior ring. A ring may repeat its
+     *                  first point as last.
+     * @param size      The number of components per vertex. Use <code>2</code>
+     *                  for XY or <code>3</code> for XYZ
+     * @param ringVerts The vertex count of each ring, exterior first
+     * @param indices   Should have a capacity of at least
+     *                  <code>(numVerts+2*numHoles-2)*3</code>
+     * @return  {@link #INDEXED} or {@link #STENCIL}; a convex polygon without
+     *          holes may be reported as {@link #TRIANGLE_FAN}
+     */
+    public static int triangulate(DoubleBuffer verts, int size, int[] ringVerts, IntBuffer indices) {
+        return triangulate(new Polygon(verts, size, ringVerts), indices);
     }
 
-    private static float sign(Vertex p1, Vertex p2, Vertex p3)
-    {
-        return (p1.x - p3.x) * (p2.y - p3.y) - (p2.x - p3.x) * (p1.y - p3.y);
+    /**
+     * Triangulates a polygon with holes.
+     *
+     * @param verts     The vertices of the exterior ring followed by the
+     *                  vertices of each interior ring. A ring may repeat its
+     *                  first point as last.
+     * @param size      The number of components per vertex. Use <code>2</code>
+     *                  for XY or <code>3</code> for XYZ
+     * @param ringVerts The vertex count of each ring, exterior first
+     * @param indices   Should have a capacity of at least
+     *                  <code>(numVerts+2*numHoles-2)*3</code>
+     * @return  {@link #INDEXED} or {@link #STENCIL}; a convex polygon without
+     *          holes may be reported as {@link #TRIANGLE_FAN}
+     */
+    public static int triangulate(FloatBuffer verts, int size, int[] ringVerts, IntBuffer indices) {
+        return triangulate(new Polygon(verts, size, ringVerts), indices);
     }
 
-    private static boolean PointInTriangle(Vertex pt, Vertex v1, Vertex v2, Vertex v3)
-    {
-        boolean b1, b2, b3;
+    private static int triangulate(Polygon poly, ShortBuffer indices) {
+        if (poly.convex)
+            return TRIANGLE_FAN;
+        if (poly.x.length > MAX_SHORT_INDEXED_VERTICES)
+            return STENCIL;
+        final int[] triangles = poly.triangulate();
+        if (triangles == null)
+            return STENCIL;
+        for (int i = 0; i < triangles.length; i++)
+            indices.put((short) triangles[i]);
+        return INDEXED;
+    }
 
-        b1 = sign(pt, v1, v2) < 0.0f;
-        b2 = sign(pt, v2, v3) < 0.0f;
-        b3 = sign(pt, v3, v1) < 0.0f;
+    private static int triangulate(Polygon poly, IntBuffer indices) {
+        if (poly.convex)
+            return TRIANGLE_FAN;
+        final int[] triangles = poly.triangulate();
+        if (triangles == null)
+            return STENCIL;
+        indices.put(triangles);
+        return INDEXED;
+    }
 
-        return ((b1 == b2) && (b2 == b3));
+    /**
+     * Returns <code>true</code> if vertex <code>a</code> precedes vertex
+     * <code>b</code> in the sweep; the sweep proceeds from greatest to least
+     * y, then least to greatest x.
+     */
+    private static boolean above(double[] x, double[] y, int a, int b) {
+        return (y[a] > y[b]) || (y[a] == y[b] && x[a] < x[b]);
     }
 
-    private static boolean isConvex(Vertex vertex, int winding) {
-        final Vertex a = vertex.previous;
-        final Vertex b = vertex;
-        final Vertex c = vertex.next;
+    private static double cross(double[] x, double[] y, int a, int b, int c) {
+        return (x[b] - x[a]) * (y[c] - y[b]) - (y[b] - y[a]) * (x[c] - x[b]);
+    }
 
-        // counter-clockwise, polygon interior is on left; clockwise, polygon
-        // interior is on right
+    private static class Polygon {
+        final static byte START = 0;
+        final static byte END = 1;
+        final static byte SPLIT = 2;
+        final static byte MERGE = 3;
+        final static byte REGULAR = 4;
+
+        final double[] x;
+        final double[] y;
+        /** the next vertex on the ring, interior on the left; -1 if unused */
+        final int[] next;
+        final int[] previous;
+        /** the number of vertices on the rings, excluding duplicates */
+        int numVertices;
+        int numHoles;
+        /** twice the area of the polygon, less the holes */
+        double area;
+        boolean convex;
+        /** <code>false</code> if a ring has no area, e.g. a bow tie */
+        boolean simple = true;
 
-        // side greater than zero, point to left of line; side less than zero,
-        // point to right of line
-        final float side = (c.x - a.x) * (b.y - a.y) - (c.y - a.y) * (b.x - a.x);
+        Polygon(FloatBuffer verts, int size, int[] ringVerts) {
+            this(coordinates(verts, size, ringVerts), ringVerts);
+        }
 
-        if (winding == Polygon.WINDING_COUNTER_CLOCKWISE && side > 0)
-            return false;
-        else if (winding == Polygon.WINDING_CLOCKWISE && side < 0)
-            return false;
-        return true;
-    }
+        Polygon(DoubleBuffer verts, int size, int[] ringVerts) {
+            this(coordinates(verts, size, ringVerts), ringVerts);
+        }
 
-    private static class Polygon {
-        final static int WINDING_CLOCKWISE = 0;
-        final static int WINDING_COUNTER_CLOCKWISE = 1;
+        private Polygon(double[][] xy, int[] ringVerts) {
+            this.x = xy[0];
+            this.y = xy[1];
+            this.next = new int[this.x.length];
+            this.previous = new int[this.x.length];
+            Arrays.fill(this.next, -1);
+            Arrays.fill(this.previous, -1);
+
+            int offset = 0;
+            for (int r = 0; r < ringVerts.length; r++) {
+                final int count = ringVerts[r];
+                final boolean linked = link(offset, count, r == 0);
+                offset += count;
+                if (r == 0 && !linked) {
+                    this.numVertices = 0;
+                    return;
+                } else if (r > 0 && linked) {
+                    this.numHoles++;
+                }
+            }
 
-        private Vertex vertices;
-        private int numVertices;
-        boolean convex;
-        int winding;
+            this.convex = (this.numHoles == 0 && isConvex(ringVerts[0]));
+        }
 
-        public Polygon(FloatBuffer verts, int size, int numVerts) {
-            this.numVertices = numVerts;
-            switch(size) {
-                case 2 :
-                case 3 :
-                    break;
-                default :
-                    throw new IllegalArgumentException();
+        /**
+         * Links the distinct vertices of the ring, oriented so that the
+         * polygon interior is on the left.
+         *
+         * @return <code>false</code> if the ring is degenerate and was not
+         *         linked
+         */
+        private boolean link(int offset, int count, boolean exterior) {
+            int first = -1;
+            int last = -1;
+            int n = 0;
+            for (int i = offset; i < offset + count; i++) {
+                if (last >= 0 && x[i] == x[last] && y[i] == y[last])
+                    continue;
+                if (last >= 0) {
+                    next[last] = i;
+                    previous[i] = last;
+                } else {
+                    first = i;
+                }
+                last = i;
+                n++;
+            }
+            // the ring may repeat the first point as last
+            if (n > 1 && x[last] == x[first] && y[last] == y[first]) {
+                final int closing = last;
+                last = previous[closing];
+                next[last] = -1;
+                previous[closing] = -1;
+                n--;
             }
 
-            int vIdx = 0;
+            double ringArea = 0d;
+            if (n >= 3) {
+                next[last] = first;
+                previous[first] = last;
+                int v = first;
+                do {
+                    ringArea += x[v] * y[next[v]] - x[next[v]] * y[v];
+                    v = next[v];
+                } while (v != first);
+            }
+            if (ringArea == 0d) {
+                // fewer than three points, or self-intersecting
+                if (n >= 3)
+                    this.simple = false;
+                // unlink
+                for (int i = offset; i < offset + count; i++) {
+                    next[i] = -1;
+                    previous[i] = -1;
+                }
+                return false;
+            }
 
-            int idx = 0;
-            this.vertices = new Vertex(verts.get(vIdx++), verts.get(vIdx++));
-            if(size == 3)
-                vIdx++;
+            // the exterior is counter-clockwise, holes are clockwise
+            if ((ringArea < 0d) == exterior) {
+                int v = first;
+                do {
+                    final int t = next[v];
+                    next[v] = previous[v];
+                    previous[v] = t;
+                    v = t;
+                } while (v != first);
+            }
 
-            this.vertices.index = idx++;
+            this.numVertices += n;
+            this.area += exterior ? Math.abs(ringArea) : -Math.abs(ringArea);
+            return true;
+        }
 
+        private boolean isConvex(int count) {
             int convexness = 0;
+            // a ring that turns one way but winds more than once, e.g. a
+            // pentagram, reverses direction in y more than twice
+            int reversals = 0;
+            double lastDy = 0d;
+            for (int v = 0; v < count; v++) {
+                if (next[v] < 0)
+                    continue;
+                final double side = cross(x, y, previous[v], v, next[v]);
+                if (side > 0d)
+                    convexness |= 0x01;
+                else if (side < 0d)
+                    convexness |= 0x02;
+                final double dy = y[next[v]] - y[v];
+                if (dy != 0d) {
+                    if ((dy > 0d) != (lastDy > 0d) && lastDy != 0d)
+                        reversals++;
+                    lastDy = dy;
+                }
+            }
+            return (convexness < 3) && (reversals <= 2);
+        }
 
-            float edgeSum = 0.0f;
-            float dx;
-            float dy;
+        /**
+         * Triangulates the polygon.
+         *
+         * @return  The triangle indices, counter-clockwise, or
+         *          <code>null</code> if the polygon could not be
+         *          triangulated
+         */
+        int[] triangulate() {
+            if (!this.simple)
+                return null;
+            if (this.numVertices == 0)
+                return new int[0];
+
+            final int[] order = new int[this.numVertices];
+            int n = 0;
+            for (int v = 0; v < this.x.length; v++)
+                if (next[v] >= 0)
+                    order[n++] = v;
+            sort(order, new int[n], 0, n);
+            if (isSelfIntersecting(order))
+                return null;
+
+            final Diagonals diagonals = new Diagonals(this.x.length);
+            if (!partition(order, diagonals))
+                return null;
+
+            final int[] triangles = new int[(this.numVertices + 2 * this.numHoles - 2) * 3];
+            final int count = triangulateMonotone(order, diagonals, triangles);
+            if (count != triangles.length)
+                return null;
+
+            // a self-intersecting polygon will not be covered exactly
+            double triangleArea = 0d;
+            for (int i = 0; i < count; i += 3)
+                triangleArea += cross(x, y, triangles[i], triangles[i + 1], triangles[i + 2]);
+            if (Math.abs(triangleArea - this.area) > 1e-6 * this.area)
+                return null;
+
+            return triangles;
+        }
 
-            int order = WINDING_COUNTER_CLOCKWISE;
+        /**
+         * Sweeps the polygon, testing each edge against its neighbors on the
+         * sweep line as they change (Shamos-Hoey). The monotone partition
+         * assumes the rings do not cross, and may silently produce
+         * overlapping pieces if they do.
+         *
+         * @param order The vertices in sweep order
+         * @return  <code>true</code> if any two edges cross or touch
+         */
+        private boolean isSelfIntersecting(int[] order) {
+            final CrossingStatus status = new CrossingStatus(this);
+            for (int k = 0; k < order.length; k++) {
+                final int v = order[k];
+                final int p = previous[v];
+
+                // the edges ending at v
+                for (int i = 0; i < 2; i++) {
+                    final int e = (i == 0) ? p : v;
+                    if (!above(x, y, (i == 0) ? p : next[v], v))
+                        continue;
+                    final Integer lower = status.edges.lower(e);
+                    final Integer higher = status.edges.higher(e);
+                    // the order only goes stale past a crossing
+                    if (!status.edges.remove(e))
+                        return true;
+                    if (lower != null && higher != null && crosses(lower, higher))
+                        return true;
+                }
 
-            Vertex pointer = this.vertices;
-            for (; idx < this.numVertices; idx++) {
-                pointer.next = new Vertex(verts.get(vIdx++), verts.get(vIdx++));
-                if(size == 3)
-                    vIdx++;
-                pointer.next.index = idx;
-                pointer.next.previous = pointer;
+                // the edges starting at v
+                for (int i = 0; i < 2; i++) {
+                    final int e = (i == 0) ? p : v;
+                    if (!above(x, y, v, (i == 0) ? p : next[v]))
+                        continue;
+                    status.edges.add(e);
+                    final Integer lower = status.edges.lower(e);
+                    final Integer higher = status.edges.higher(e);
+                    if ((lower != null && crosses(lower, e)) || (higher != null && crosses(e, higher)))
+                        return true;
+                }
+            }
+            return false;
+        }
 
-                pointer = pointer.next;
+        /**
+         * Returns <code>true</code> if the edges leaving <code>a</code> and
+         * <code>b</code> cross at a point interior to both.
+         */
+        private boolean crosses(int a, int b) {
+            final int a1 = next[a];
+            final int b1 = next[b];
+            if (a == b || a == b1 || a1 == b || a1 == b1)
+                return false;
+            final double d0 = cross(x, y, a, a1, b);
+            final double d1 = cross(x, y, a, a1, b1);
+            if (!((d0 > 0d && d1 < 0d) || (d0 < 0d && d1 > 0d)))
+                return false;
+            final double d2 = cross(x, y, b, b1, a);
+            final double d3 = cross(x, y, b, b1, a1);
+            return (d2 > 0d && d3 < 0d) || (d2 < 0d && d3 > 0d);
+        }
 
-                if (idx > 1) {
-                    pointer.previous.convex = isConvex(pointer.previous, order);
-                    convexness |= pointer.previous.convex ? 0x01 : 0x02;
+        /**
+         * Sweeps the polygon, recording the diagonals that partition it into
+         * y-monotone pieces.
+         */
+        private boolean partition(int[] order, Diagonals diagonals) {
+            final byte[] type = new byte[this.x.length];
+            final int[] helper = new int[this.x.length];
+            final SweepStatus status = new SweepStatus(this);
+
+            for (int k = 0; k < order.length; k++) {
+                final int v = order[k];
+                final int p = previous[v];
+                final int q = next[v];
+                status.sweepX = x[v];
+                status.sweepY = y[v];
+
+                final boolean pBelow = above(x, y, v, p);
+                final boolean qBelow = above(x, y, v, q);
+                final boolean reflex = cross(x, y, p, v, q) < 0d;
+                if (pBelow && qBelow) {
+                    if (reflex) {
+                        type[v] = SPLIT;
+                        final Integer left = status.floor(SweepStatus.PROBE);
+                        if (left == null)
+                            return false;
+                        diagonals.add(v, helper[left]);
+                        helper[left] = v;
+                    } else {
+                        type[v] = START;
+                    }
+                    status.add(v);
+                    helper[v] = v;
+                } else if (!pBelow && !qBelow) {
+                    type[v] = reflex ? MERGE : END;
+                    if (type[helper[p]] == MERGE)
+                        diagonals.add(v, helper[p]);
+                    if (!status.remove(p))
+                        return false;
+                    if (reflex) {
+                        final Integer left = status.floor(SweepStatus.PROBE);
+                        if (left == null)
+                            return false;
+                        if (type[helper[left]] == MERGE)
+                            diagonals.add(v, helper[left]);
+                        helper[left] = v;
+                    }
+                } else if (qBelow) {
+                    // left chain, the interior is to the right
+                    type[v] = REGULAR;
+                    if (type[helper[p]] == MERGE)
+                        diagonals.add(v, helper[p]);
+                    if (!status.remove(p))
+                        return false;
+                    status.add(v);
+                    helper[v] = v;
+                } else {
+                    // right chain, the interior is to the left
+                    type[v] = REGULAR;
+                    final Integer left = status.floor(SweepStatus.PROBE);
+                    if (left == null)
+                        return false;
+                    if (type[helper[left]] == MERGE)
+                        diagonals.add(v, helper[left]);
+                    helper[left] = v;
                 }
+            }
+            return status.isEmpty();
+        }
 
-                dx = pointer.previous.x + pointer.x;
-                dy = pointer.previous.y - pointer.y;
+        /**
+         * Walks the faces formed by the ring edges and the diagonals,
+         * triangulating each.
+         *
+         * @return  The number of indices written
+         */
+        private int triangulateMonotone(int[] order, Diagonals diagonals, int[] triangles) {
+            final int numVerts = this.x.length;
+            final int numDiagonals = diagonals.count;
+
+            // half edges: [0,numVerts) are the ring edges v->next[v]; each
+            // diagonal i contributes numVerts+2i (a->b) and numVerts+2i+1
+            // (b->a). The diagonals leaving each vertex are ordered
+            // clockwise, starting from the edge to the previous vertex.
+            final int[] offsets = new int[numVerts + 1];
+            for (int i = 0; i < numDiagonals; i++) {
+                offsets[diagonals.a[i] + 1]++;
+                offsets[diagonals.b[i] + 1]++;
+            }
+            for (int v = 0; v < numVerts; v++)
+                offsets[v + 1] += offsets[v];
+            final int[] outgoing = new int[numDiagonals * 2];
+            final double[] angles = new double[numDiagonals * 2];
+            final int[] fill = Arrays.copyOf(offsets, numVerts);
+            for (int h = numVerts; h < numVerts + numDiagonals * 2; h++) {
+                final int from = origin(diagonals, h);
+                final int to = origin(diagonals, twin(numVerts, h));
+                final int slot = fill[from]++;
+                outgoing[slot] = h;
+                angles[slot] = clockwise(from, previous[from], to);
+            }
+            final int[] position = new int[numDiagonals * 2];
+            for (int v = 0; v < numVerts; v++) {
+                // insertion sort, few vertices have more than a couple
+                for (int i = offsets[v] + 1; i < offsets[v + 1]; i++) {
+                    final int h = outgoing[i];
+                    final double a = angles[i];
+                    int j = i - 1;
+                    while (j >= offsets[v] && angles[j] > a) {
+                        outgoing[j + 1] = outgoing[j];
+                        angles[j + 1] = angles[j];
+                        j--;
+                    }
+                    outgoing[j + 1] = h;
+                    angles[j + 1] = a;
+                }
+                for (int i = offsets[v]; i < offsets[v + 1]; i++)
+                    position[outgoing[i] - numVerts] = i;
+            }
 
-                edgeSum += dx * dy;
+            final int numHalfEdges = numVerts + numDiagonals * 2;
+            final boolean[] visited = new boolean[numHalfEdges];
+            final Face face = new Face(this, this.numVertices + numDiagonals * 2);
+            int count = 0;
+            for (int start = 0; start < numHalfEdges; start++) {
+                if (visited[start] || (start < numVerts && next[start] < 0))
+                    continue;
+                face.size = 0;
+                int h = start;
+                do {
+                    if (visited[h] || face.size == face.vertices.length)
+                        return -1;
+                    visited[h] = true;
+                    face.vertices[face.size++] = (h < numVerts) ? h : origin(diagonals, h);
+
+                    // the next edge is the first leaving the destination
+                    // clockwise from the reverse of this edge
+                    final int to = (h < numVerts) ? next[h] : origin(diagonals, twin(numVerts, h));
+                    final int first = (h < numVerts) ? offsets[to] : position[twin(numVerts, h) - numVerts] + 1;
+                    h = (first < offsets[to + 1]) ? outgoing[first] : to;
+                } while (h != start);
+
+                count = face.triangulate(triangles, count);
+                if (count < 0)
+                    return -1;
             }
+            return count;
+        }
 
-            // link the tail to the head
-            pointer.next = this.vertices;
-            this.vertices.previous = pointer;
+        private static int twin(int numVerts, int h) {
+            return numVerts + ((h - numVerts) ^ 0x01);
+        }
 
-            // compute the convexness of the first two vertices
-            this.vertices.convex = isConvex(this.vertices, order);
-            convexness |= this.vertices.convex ? 0x01 : 0x02;
-            pointer.convex = isConvex(pointer, order);
-            convexness |= pointer.convex ? 0x01 : 0x02;
+        private static int origin(Diagonals diagonals, int h) {
+            final int i = (h - diagonals.numVerts) >> 1;
+            return ((h - diagonals.numVerts) & 0x01) == 0 ? diagonals.a[i] : diagonals.b[i];
+        }
 
-            // compute overall polygon convexness
-            this.convex = (convexness < 3);
+        /**
+         * Returns the clockwise angle at <code>v</code> from the direction of
+         * <code>ref</code> to the direction of <code>to</code>, in
+         * <code>[0, 2PI)</code>.
+         */
+        private double clockwise(int v, int ref, int to) {
+            final double rx = x[ref] - x[v];
+            final double ry = y[ref] - y[v];
+            final double tx = x[to] - x[v];
+            final double ty = y[to] - y[v];
+            final double ccw = Math.atan2(rx * ty - ry * tx, rx * tx + ry * ty);
+            return (ccw <= 0d) ? -ccw : 2d * Math.PI - ccw;
+        }
 
-            // sum the last edge
-            dx = this.vertices.previous.x + this.vertices.x;
-            dy = this.vertices.previous.y - this.vertices.y;
+        /**
+         * Merge sorts <code>a[lo,hi)</code> into sweep order.
+         */
+        private void sort(int[] a, int[] scratch, int lo, int hi) {
+            if (hi - lo < 16) {
+                for (int i = lo + 1; i < hi; i++) {
+                    final int v = a[i];
+                    int j = i - 1;
+                    while (j >= lo && above(x, y, v, a[j])) {
+                        a[j + 1] = a[j];
+                        j--;
+                    }
+                    a[j + 1] = v;
+                }
+                return;
+            }
+            final int mid = (lo + hi) >>> 1;
+            sort(a, scratch, lo, mid);
+            sort(a, scratch, mid, hi);
+            if (!above(x, y, a[mid], a[mid - 1]))
+                return;
+            System.arraycopy(a, lo, scratch, lo, hi - lo);
+            int i = lo;
+            int j = mid;
+            for (int k = lo; k < hi; k++) {
+                if (j >= hi || (i < mid && !above(x, y, scratch[j], scratch[i])))
+                    a[k] = scratch[i++];
+                else
+                    a[k] = scratch[j++];
+            }
+        }
 
-            edgeSum += dx * dy;
+        private static double[][] coordinates(FloatBuffer verts, int size, int[] ringVerts) {
+            checkSize(size);
+            final int n = sum(ringVerts);
+            final double[][] xy = new double[2][n];
+            final int base = verts.position();
+            for (int i = 0; i < n; i++) {
+                xy[0][i] = verts.get(base + i * size);
+                xy[1][i] = verts.get(base + i * size + 1);
+            }
+            return xy;
+        }
 
-            // determine polygon winding
-            winding = (edgeSum >= 0) ? WINDING_CLOCKWISE : WINDING_COUNTER_CLOCKWISE;
+        private static double[][] coordinates(DoubleBuffer verts, int size, int[] ringVerts) {
+            checkSize(size);
+            final int n = sum(ringVerts);
+            final double[][] xy = new double[2][n];
+            final int base = verts.position();
+            for (int i = 0; i < n; i++) {
+                xy[0][i] = verts.get(base + i * size);
+                xy[1][i] = verts.get(base + i * size + 1);
+            }
+            return xy;
         }
 
-        public Polygon(DoubleBuffer verts, int size, int numVerts) {
-            this.numVertices = numVerts;
-            switch(size) {
+        private static void checkSize(int size) {
+            switch (size) {
                 case 2 :
                 case 3 :
                     break;
                 default :
                     throw new IllegalArgumentException();
             }
+        }
 
-            int idx = 0;
-            this.vertices = new Vertex((float) verts.get(idx),
-                    (float) verts.get(idx+1));
-            this.vertices.index = idx++;
+        private static int sum(int[] counts) {
+            int retval = 0;
+            for (int c : counts)
+                retval += c;
+            return retval;
+        }
+    }
 
-            int convexness = 0;
+    private static class Diagonals {
+        final int numVerts;
+        int[] a = new int[16];
+        int[] b = new int[16];
+        int count;
+
+        Diagonals(int numVerts) {
+            this.numVerts = numVerts;
+        }
+
+        void add(int v0, int v1) {
+            if (count == a.length) {
+                a = Arrays.copyOf(a, count * 2);
+                b = Arrays.copyOf(b, count * 2);
+            }
+            a[count] = v0;
+            b[count] = v1;
+            count++;
+        }
+    }
+
+    /**
+     * The edges crossing the sweep line, ordered left to right. An edge is
+     * identified by the vertex it leaves; {@link #PROBE} stands in for the
+     * current sweep position.
+     */
+    private static class SweepStatus implements Comparator<Integer> {
+        final static Integer PROBE = -1;
+
+        final Polygon poly;
+        final TreeSet<Integer> edges;
+        double sweepX;
+        double sweepY;
+
+        SweepStatus(Polygon poly) {
+            this.poly = poly;
+            this.edges = new TreeSet<Integer>(this);
+        }
+
+        void add(int edge) {
+            this.edges.add(edge);
+        }
 
-            float edgeSum = 0.0f;
-            float dx;
-            float dy;
+        boolean remove(int edge) {
+            return this.edges.remove(edge);
+        }
 
-            int order = WINDING_COUNTER_CLOCKWISE;
+        /**
+         * Returns the edge immediately left of the sweep position.
+         */
+        Integer floor(Integer probe) {
+            return this.edges.floor(probe);
+        }
 
-            Vertex pointer = this.vertices;
-            for (; idx < this.numVertices; idx++) {
-                pointer.next = new Vertex((float) verts.get(idx*size),
-                        (float) verts.get(idx*size+1));
-                pointer.next.index = idx;
-                pointer.next.previous = pointer;
+        boolean isEmpty() {
+            return this.edges.isEmpty();
+        }
 
-                pointer = pointer.next;
+        private double xAt(int edge) {
+            if (edge < 0)
+                return sweepX;
+            final int v = poly.next[edge];
+            final double x0 = poly.x[edge];
+            final double y0 = poly.y[edge];
+            final double x1 = poly.x[v];
+            final double y1 = poly.y[v];
+            if (y0 == y1)
+                return Math.min(x0, x1);
+            return x0 + (sweepY - y0) * (x1 - x0) / (y1 - y0);
+        }
 
-                if (idx > 1) {
-                    pointer.previous.convex = isConvex(pointer.previous, order);
-                    convexness |= pointer.previous.convex ? 0x01 : 0x02;
+        /**
+         * Returns the change in x per unit descent along the edge.
+         */
+        private double run(int edge) {
+            final int v = poly.next[edge];
+            final int upper = above(poly.x, poly.y, edge, v) ? edge : v;
+            final int lower = (upper == edge) ? v : edge;
+            final double dy = poly.y[upper] - poly.y[lower];
+            if (dy == 0d)
+                return Double.POSITIVE_INFINITY;
+            return (poly.x[lower] - poly.x[upper]) / dy;
+        }
+
+        @Override
+        public int compare(Integer a, Integer b) {
+            final int ea = a.intValue();
+            final int eb = b.intValue();
+            if (ea == eb)
+                return 0;
+            final int c = Double.compare(xAt(ea), xAt(eb));
+            if (c != 0)
+                return c;
+            // an edge through the sweep position is left of it
+            if (ea < 0)
+                return 1;
+            else if (eb < 0)
+                return -1;
+            // edges meeting at the sweep position are ordered below it
+            final int r = Double.compare(run(ea), run(eb));
+            return (r != 0) ? r : (ea < eb ? -1 : 1);
+        }
+    }
+
+    /**
+     * All of the edges crossing the sweep line, ordered left to right, for
+     * {@link Polygon#isSelfIntersecting(int[])}. Two edges are ordered by
+     * which side of the earlier edge the later one starts on, which needs no
+     * sweep position and is exact for edges that do not cross.
+     */
+    private static class CrossingStatus implements Comparator<Integer> {
+        final Polygon poly;
+        final TreeSet<Integer> edges;
+        /** the upper and lower vertex of each edge */
+        final int[] upper;
+        final int[] lower;
+
+        CrossingStatus(Polygon poly) {
+            this.poly = poly;
+            this.edges = new TreeSet<Integer>(this);
+            this.upper = new int[poly.x.length];
+            this.lower = new int[poly.x.length];
+            for (int e = 0; e < poly.x.length; e++) {
+                final int v = poly.next[e];
+                if (v < 0)
+                    continue;
+                final boolean down = above(poly.x, poly.y, e, v);
+                this.upper[e] = down ? e : v;
+                this.lower[e] = down ? v : e;
+            }
+        }
+
+        @Override
+        public int compare(Integer a, Integer b) {
+            final int ea = a.intValue();
+            final int eb = b.intValue();
+            if (ea == eb)
+                return 0;
+            final double[] x = poly.x;
+            final double[] y = poly.y;
+            final int ua = upper[ea];
+            final int la = lower[ea];
+            final int ub = upper[eb];
+            final int lb = lower[eb];
+
+            // walking down an edge, counter-clockwise is to the east
+            if (above(x, y, ub, ua)) {
+                double side = cross(x, y, ub, lb, ua);
+                if (side == 0d)
+                    side = cross(x, y, ub, lb, la);
+                if (side != 0d)
+                    return (side > 0d) ? 1 : -1;
+            } else {
+                double side = cross(x, y, ua, la, ub);
+                if (side == 0d)
+                    side = cross(x, y, ua, la, lb);
+                if (side != 0d)
+                    return (side > 0d) ? -1 : 1;
+            }
+            return (ea < eb) ? -1 : 1;
+        }
+    }
+
+    /**
+     * A y-monotone piece of the partitioned polygon.
+     */
+    private static class Face {
+        final Polygon poly;
+        /** the vertices, counter-clockwise */
+        final int[] vertices;
+        int size;
+
+        /** the vertices in sweep order and whether each is on the left chain */
+        final int[] sorted;
+        final boolean[] left;
+        final int[] stack;
+
+        Face(Polygon poly, int capacity) {
+            this.poly = poly;
+            this.vertices = new int[capacity];
+            this.sorted = new int[capacity];
+            this.left = new boolean[capacity];
+            this.stack = new int[capacity];
+        }
+
+        /**
+         * Triangulates the face.
+         *
+         * @return  The updated number of indices, or <code>-1</code> if the
+         *          face is degenerate
+         */
+        int triangulate(int[] triangles, int count) {
+            final int m = this.size;
+            if (m < 3)
+                return -1;
+            if (m == 3)
+                return emit(triangles, count, vertices[0], vertices[1], vertices[2]);
+
+            final double[] x = poly.x;
+            final double[] y = poly.y;
+
+            int top = 0;
+            int bottom = 0;
+            for (int i = 1; i < m; i++) {
+                if (above(x, y, vertices[i], vertices[top]))
+                    top = i;
+                if (above(x, y, vertices[bottom], vertices[i]))
+                    bottom = i;
+            }
+
+            // both chains must descend from the top to the bottom, otherwise
+            // the partition was not monotone (e.g. a self-intersecting ring)
+            for (int i = top; i != bottom; i = (i + 1) % m)
+                if (!above(x, y, vertices[i], vertices[(i + 1) % m]))
+                    return -1;
+            for (int i = top; i != bottom; i = (i + m - 1) % m)
+                if (!above(x, y, vertices[i], vertices[(i + m - 1) % m]))
+                    return -1;
+
+            // merge the chains; counter-clockwise from the top descends the
+            // left chain
+            int l = (top + 1) % m;
+            int r = (top + m - 1) % m;
+            sorted[0] = vertices[top];
+            for (int k = 1; k < m; k++) {
+                final boolean takeLeft;
+                if (l == bottom)
+                    takeLeft = (r == bottom);
+                else if (r == bottom)
+                    takeLeft = true;
+                else
+                    takeLeft = above(x, y, vertices[l], vertices[r]);
+                if (takeLeft) {
+                    sorted[k] = vertices[l];
+                    left[k] = true;
+                    l = (l + 1) % m;
+                } else {
+                    sorted[k] = vertices[r];
+                    left[k] = false;
+                    r = (r + m - 1) % m;
                 }
+            }
 
-                dx = pointer.previous.x + pointer.x;
-                dy = pointer.previous.y - pointer.y;
+            int sp = 0;
+            stack[sp++] = 0;
+            stack[sp++] = 1;
+            for (int k = 2; k < m - 1; k++) {
+                if (left[k] != left[stack[sp - 1]]) {
+                    // opposite chains, fan to everything on the stack
+                    while (sp > 1) {
+                        count = emit(triangles, count, sorted[k], sorted[stack[sp - 1]], sorted[stack[sp - 2]]);
+                        if (count < 0)
+                            return -1;
+                        sp--;
+                    }
+                    sp = 0;
+                    stack[sp++] = k - 1;
+                    stack[sp++] = k;
+                } else {
+                    // same chain, cut off convex vertices
+                    int last = stack[--sp];
+                    while (sp > 0) {
+                        final double side = cross(x, y, sorted[stack[sp - 1]], sorted[last], sorted[k]);
+                        if (left[k] ? (side <= 0d) : (side >= 0d))
+                            break;
+                        count = emit(triangles, count, sorted[k], sorted[last], sorted[stack[sp - 1]]);
+                        if (count < 0)
+                            return -1;
+                        last = stack[--sp];
+                    }
+                    stack[sp++] = last;
+                    stack[sp++] = k;
+                }
+            }
+            while (sp > 1) {
+                count = emit(triangles, count, sorted[m - 1], sorted[stack[sp - 1]], sorted[stack[sp - 2]]);
+                if (count < 0)
+                    return -1;
+                sp--;
+            }
+            return count;
+        }
 
-                edgeSum += dx * dy;
+        private int emit(int[] triangles, int count, int a, int b, int c) {
+            if (count < 0 || count + 3 > triangles.length)
+                return -1;
+            triangles[count++] = a;
+            if (cross(poly.x, poly.y, a, b, c) < 0d) {
+                triangles[count++] = c;
+                triangles[count++] = b;
+            } else {
+                triangles[count++] = b;
+                triangles[count++] = c;
             }
+            return count;
+        }
+    }
 
-            // link the tail to the head
-            pointer.next = this.vertices;
-            this.vertices.previous = pointer;
+    /**
+     * A triangulated polygon.
+     */
+    public final static class Triangles {
+        /** One of {@link #TRIANGLE_FAN}, {@link #INDEXED} or {@link #STENCIL} */
+        public final int mode;
+        /**
+         * The type of the indices, <code>GL_UNSIGNED_SHORT</code> if the
+         * polygon has no more than {@link #MAX_SHORT_INDEXED_VERTICES}
+         * vertices, otherwise <code>GL_UNSIGNED_INT</code>
+         */
+        public final int indexType;
+
+        private final Buffer indices;
+
+        Triangles(int mode, int numVertices, int[] triangles) {
+            this.mode = mode;
+            if (triangles == null) {
+                this.indexType = GLES20FixedPipeline.GL_UNSIGNED_SHORT;
+                this.indices = null;
+            } else if (numVertices <= MAX_SHORT_INDEXED_VERTICES) {
+                final ShortBuffer buf = ByteBuffer.allocateDirect(triangles.length * 2)
+                        .order(ByteOrder.nativeOrder())
+                        .asShortBuffer();
+                for (int i = 0; i < triangles.length; i++)
+                    buf.put(i, (short) triangles[i]);
+                this.indexType = GLES20FixedPipeline.GL_UNSIGNED_SHORT;
+                this.indices = buf;
+            } else {
+                final IntBuffer buf = ByteBuffer.allocateDirect(triangles.length * 4)
+                        .order(ByteOrder.nativeOrder())
+                        .asIntBuffer();
+                buf.put(triangles);
+                buf.clear();
+                this.indexType = GLES20FixedPipeline.GL_UNSIGNED_INT;
+                this.indices = buf;
+            }
+        }
 
-            // compute the convexness of the first two vertices
-            this.vertices.convex = isConvex(this.vertices, order);
-            convexness |= this.vertices.convex ? 0x01 : 0x02;
-            pointer.convex = isConvex(pointer, order);
-            convexness |= pointer.convex ? 0x01 : 0x02;
+        /**
+         * @return  The number of indices, <code>0</code> unless the mode is
+         *          {@link #INDEXED}
+         */
+        public int getNumIndices() {
+            return (this.indices != null) ? this.indices.capacity() : 0;
+        }
+
+        /**
+         * @return  The triangle indices, of {@link #indexType}, or
+         *          <code>null</code> if the mode is not {@link #INDEXED}
+         */
+        public Buffer getIndices() {
+            if (this.indices instanceof ShortBuffer)
+                return ((ShortBuffer) this.indices).duplicate();
+            else if (this.indices instanceof IntBuffer)
+                return ((IntBuffer) this.indices).duplicate();
+            return null;
+        }
 
-            // compute overall polygon convexness
-            this.convex = (convexness < 3);
+        /**
+         * @return  The triangle indices, or <code>null</code> if the mode is
+         *          not {@link #INDEXED} or the indices are not 16-bit
+         */
+        public ShortBuffer getShortIndices() {
+            if (this.indices instanceof ShortBuffer)
+                return ((ShortBuffer) this.indices).duplicate();
+            return null;
+        }
+    }
 
-            // sum the last edge
-            dx = this.vertices.previous.x + this.vertices.x;
-            dy = this.vertices.previous.y - this.vertices.y;
+    /**
+     * Retains triangulations keyed on the polygon's coordinates, so a
+     * polygon is only triangulated again when its geometry changes, not when
+     * it is restyled or its renderer is recreated. Least recently used
+     * triangulations are evicted once the retained indices exceed the limit.
+     */
+    public final static class Cache {
+        private final int limit;
+        private final LinkedHashMap<Key, Triangles> entries;
+        /** the indices and key vertices retained */
+        private int retained;
+
+        /**
+         * @param limit The maximum number of indices to retain, including one
+         *              per vertex of each cached polygon for its key
+         */
+        public Cache(int limit) {
+            this.limit = limit;
+            this.entries = new LinkedHashMap<Key, Triangles>(16, 0.75f, true);
+        }
 
-            edgeSum += dx * dy;
+        /**
+         * Returns the triangulation of the polygon.
+         *
+         * @param verts     The vertices of the exterior ring followed by the
+         *                  vertices of each interior ring
+         * @param size      The number of components per vertex. Use
+         *                  <code>2</code> for XY or <code>3</code> for XYZ
+         * @param ringVerts The vertex count of each ring, exterior first
+         */
+        public Triangles get(DoubleBuffer verts, int size, int[] ringVerts) {
+            final Key key = new Key(verts, size, ringVerts);
+            synchronized (this) {
+                final Triangles cached = this.entries.get(key);
+                if (cached != null)
+                    return cached;
+            }
 
-            // determine polygon winding
-            winding = (edgeSum >= 0) ? WINDING_CLOCKWISE : WINDING_COUNTER_CLOCKWISE;
+            final Polygon poly = new Polygon(verts, size, ringVerts);
+            final Triangles retval;
+            if (poly.convex) {
+                retval = new Triangles(TRIANGLE_FAN, poly.x.length, null);
+            } else {
+                final int[] triangles = poly.triangulate();
+                retval = new Triangles((triangles != null) ? INDEXED : STENCIL, poly.x.length, triangles);
+            }
+
+            synchronized (this) {
+                final Triangles evicted = this.entries.put(key, retval);
+                if (evicted != null)
+                    this.retained -= size(key, evicted);
+                this.retained += size(key, retval);
+                final Iterator<Map.Entry<Key, Triangles>> it = this.entries.entrySet().iterator();
+                while (this.retained > this.limit && this.entries.size() > 1) {
+                    final Map.Entry<Key, Triangles> entry = it.next();
+                    this.retained -= size(entry.getKey(), entry.getValue());
+                    it.remove();
+                }
+            }
+            return retval;
+        }
+
+        public synchronized void clear() {
+            this.entries.clear();
+            this.retained = 0;
+        }
+
+        private static int size(Key key, Triangles triangles) {
+            return triangles.getNumIndices() + key.coords.length / 2;
+        }
+    }
+
+    private final static class Key {
+        final long hash;
+        final int[] ringVerts;
+        /** the x,y of each vertex; the hash alone may collide */
+        final double[] coords;
+
+        Key(DoubleBuffer verts, int size, int[] ringVerts) {
+            final int n = Polygon.sum(ringVerts);
+            final int base = verts.position();
+            this.coords = new double[n * 2];
+            long h = 0xCBF29CE484222325L;
+            for (int i = 0; i < n; i++) {
+                final double x = verts.get(base + i * size);
+                final double y = verts.get(base + i * size + 1);
+                this.coords[i * 2] = x;
+                this.coords[i * 2 + 1] = y;
+                h = (h ^ Double.doubleToLongBits(x)) * 0x9E3779B97F4A7C15L;
+                h ^= (h >>> 29);
+                h = (h ^ Double.doubleToLongBits(y)) * 0x9E3779B97F4A7C15L;
+                h ^= (h >>> 29);
+            }
+            this.hash = h;
+            this.ringVerts = ringVerts.clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            final Key other = (Key) o;
+            return this.hash == other.hash
+                    && Arrays.equals(this.ringVerts, other.ringVerts)
+                    && Arrays.equals(this.coords, other.coords);
         }
 
+        @Override
+        public int hashCode() {
+            return (int) (this.hash ^ (this.hash >>> 32));
+        }
     }
 
+
     /*************************************************************************/
     // fill drawing implementation
 
@@ -441,24 +1283,6 @@ public class GLTriangulate {
     }
 
     /**************************************************************************/
-    
-    private static class Vertex {
-        float x;
-        float y;
-        Vertex next;
-        Vertex previous;
-        int index;
-        boolean convex;
-
-        Vertex(float x, float y) {
-            this.x = x;
-            this.y = y;
-            this.next = null;
-            this.previous = null;
-            this.index = -1;
-            this.convex = false;
-        }
-    }
 
     public static class Segment {
         public Vector2D start;
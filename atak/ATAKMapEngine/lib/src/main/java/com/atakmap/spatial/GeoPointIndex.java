@@ -0,0 +1,349 @@
+package com.atakmap.spatial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.math.PointD;
+import com.atakmap.util.Filter;
+import com.atakmap.util.Quadtree;
+
+/**
+ * Incrementally maintained spatial index over objects that have a single
+ * geodetic location. Supports bounding box, radius and k-nearest queries
+ * without visiting every object.
+ *
+ * <P>The location of each object is captured when it is added or refreshed;
+ * the owner is responsible for calling {@link #refresh(Object)} whenever the
+ * location of an object changes. Objects without a valid location are tracked
+ * but will not be returned by any query until refreshed with a valid
+ * location.
+ *
+ * <P>Radius and nearest queries operate in meters against a caller supplied
+ * {@link Metric}. The search area is derived from a sphere with the minimum
+ * radius of curvature of the WGS84 ellipsoid, so that any geodesic metric on
+ * the ellipsoid or on a sphere of mean radius will never fall outside of it.
+ *
+ * <P>This class is NOT thread-safe.
+ *
+ * @param <T>
+ */
+public final class GeoPointIndex<T> {
+
+    /**
+     * Minimum radius of curvature of the WGS84 ellipsoid (meridional, at the
+     * equator), slightly reduced to absorb rounding.
+     */
+    private final static double MIN_EARTH_RADIUS = 6335000d;
+
+    private final static double INITIAL_SEARCH_RADIUS = 1000d;
+    private final static double SEARCH_RADIUS_GROWTH = 4d;
+
+    private final static int NODE_LIMIT = 32;
+
+    private final Locator<? super T> locator;
+    private final Map<T, Entry<T>> entries;
+    private final Quadtree<Entry<T>> tree;
+    private final GeoPoint scratch;
+
+    public GeoPointIndex(Locator<? super T> locator) {
+        if(locator == null)
+            throw new NullPointerException();
+        this.locator = locator;
+        this.entries = new IdentityHashMap<T, Entry<T>>();
+        this.tree = new Quadtree<Entry<T>>(new Quadtree.Function<Entry<T>>() {
+            @Override
+            public void getBounds(Entry<T> object, PointD min, PointD max) {
+                min.x = object.longitude;
+                min.y = object.latitude;
+                max.x = object.longitude;
+                max.y = object.latitude;
+            }
+        }, NODE_LIMIT, -180d, -90d, 180d, 90d);
+        this.scratch = GeoPoint.createMutable();
+    }
+
+    /**
+     * Starts tracking the specified object.
+     *
+     * @param object    An object
+     *
+     * @return  <code>true</code> if the object was not previously tracked,
+     *          <code>false</code> otherwise.
+     */
+    public boolean add(T object) {
+        if(this.entries.containsKey(object))
+            return false;
+        final Entry<T> entry = new Entry<T>(object);
+        this.entries.put(object, entry);
+        if(this.locate(entry))
+            this.tree.add(entry);
+        return true;
+    }
+
+    /**
+     * Stops tracking the specified object.
+     *
+     * @param object    An object
+     *
+     * @return  <code>true</code> if the object was tracked,
+     *          <code>false</code> otherwise.
+     */
+    public boolean remove(T object) {
+        final Entry<T> entry = this.entries.remove(object);
+        if(entry == null)
+            return false;
+        if(entry.indexed)
+            this.tree.remove(entry);
+        return true;
+    }
+
+    /**
+     * Updates the location of the specified object in the index.
+     *
+     * @param object    An object
+     *
+     * @return  <code>true</code> if the object is tracked,
+     *          <code>false</code> otherwise.
+     */
+    public boolean refresh(T object) {
+        final Entry<T> entry = this.entries.get(object);
+        if(entry == null)
+            return false;
+        final boolean wasIndexed = entry.indexed;
+        final boolean isIndexed = this.locate(entry);
+        if(wasIndexed && isIndexed)
+            this.tree.refresh(entry);
+        else if(wasIndexed)
+            this.tree.remove(entry);
+        else if(isIndexed)
+            this.tree.add(entry);
+        return true;
+    }
+
+    public boolean contains(T object) {
+        return this.entries.containsKey(object);
+    }
+
+    /**
+     * Returns the number of tracked objects, including those without a valid
+     * location.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    public void clear() {
+        this.entries.clear();
+        this.tree.clear();
+    }
+
+    /**
+     * Returns all objects located within the specified bounding box. If
+     * <code>west</code> is greater than <code>east</code>, the box is assumed
+     * to cross the 180th meridian.
+     */
+    public void get(double north, double west, double south, double east, Collection<? super T> retval) {
+        final ArrayList<Entry<T>> hits = new ArrayList<Entry<T>>();
+        if(west > east) {
+            this.tree.get(west, south, 180d, north, hits);
+            this.tree.get(-180d, south, east, north, hits);
+        } else {
+            this.tree.get(west, south, east, north, hits);
+        }
+        for(Entry<T> e : hits)
+            retval.add(e.object);
+    }
+
+    /**
+     * Returns all objects that may lie within <code>radius</code> meters of
+     * the specified location. The result is a superset of the objects within
+     * the radius; callers are expected to apply the exact distance test.
+     */
+    public void get(GeoPoint center, double radius, Collection<? super T> retval) {
+        final ArrayList<Entry<T>> hits = new ArrayList<Entry<T>>();
+        this.query(center, radius, hits);
+        for(Entry<T> e : hits)
+            retval.add(e.object);
+    }
+
+    /**
+     * Returns up to <code>k</code> objects nearest to the specified location,
+     * in order of increasing distance.
+     *
+     * @param center        The query location
+     * @param k             The maximum number of objects to return
+     * @param maxDistance   The maximum distance, in meters, of any result.
+     *                      Specify {@link Double#POSITIVE_INFINITY} for no
+     *                      limit.
+     * @param metric        Computes the distance between an object and the
+     *                      query location. Objects for which the metric
+     *                      returns <code>NaN</code> are excluded.
+     * @param filter        If non-<code>null</code>, only objects accepted by
+     *                      the filter are returned
+     * @param retval        Receives the results
+     */
+    public void nearest(GeoPoint center, int k, double maxDistance, Metric<? super T> metric, Filter<? super T> filter, List<? super T> retval) {
+        if(k < 1 || !(maxDistance >= 0d) || this.tree.size() == 0)
+            return;
+
+        final ArrayList<Entry<T>> hits = new ArrayList<Entry<T>>();
+        double radius = Math.min(INITIAL_SEARCH_RADIUS, maxDistance);
+        while(true) {
+            hits.clear();
+            final boolean everything = this.query(center, radius, hits);
+
+            // collect the candidates within the search radius. any object
+            // outside of the search area is further away than all of these
+            Neighbor[] found = new Neighbor[hits.size()];
+            int count = 0;
+            for(Entry<T> e : hits) {
+                final double d = metric.distance(e.object, center);
+                if(Double.isNaN(d) || d > radius)
+                    continue;
+                if(filter != null && !filter.accept(e.object))
+                    continue;
+                found[count++] = new Neighbor(d, e.object);
+            }
+
+            if(count >= k || radius >= maxDistance || everything) {
+                Arrays.sort(found, 0, count);
+                for(int i = 0; i < Math.min(k, count); i++) {
+                    @SuppressWarnings("unchecked")
+                    final T object = (T)found[i].object;
+                    retval.add(object);
+                }
+                return;
+            }
+
+            radius = Math.min(radius*SEARCH_RADIUS_GROWTH, maxDistance);
+        }
+    }
+
+    /**
+     * Captures the current location of the entry's object.
+     *
+     * @return  <code>true</code> if the object has a valid location
+     */
+    private boolean locate(Entry<T> entry) {
+        entry.indexed = this.locator.getLocation(entry.object, this.scratch) &&
+                        this.scratch.isValid();
+        if(entry.indexed) {
+            entry.latitude = this.scratch.getLatitude();
+            entry.longitude = normalizeLongitude(this.scratch.getLongitude());
+        }
+        return entry.indexed;
+    }
+
+    /**
+     * Queries all entries within the area covering the circle with the
+     * specified radius about the center.
+     *
+     * @return  <code>true</code> if the area covered the entire globe
+     */
+    private boolean query(GeoPoint center, double radius, Collection<Entry<T>> hits) {
+        if(!(radius >= 0d))
+            return false;
+
+        // angular radius on the conservative sphere
+        final double angle = radius / MIN_EARTH_RADIUS;
+        if(angle >= Math.PI) {
+            this.tree.get(-180d, -90d, 180d, 90d, hits);
+            return true;
+        }
+
+        final double lat = Math.toRadians(center.getLatitude());
+        final double lng = normalizeLongitude(center.getLongitude());
+
+        final double south = Math.toDegrees(lat - angle);
+        final double north = Math.toDegrees(lat + angle);
+
+        // the circle contains a pole; all longitudes are in range
+        if(north >= 90d || south <= -90d) {
+            this.tree.get(-180d, Math.max(south, -90d), 180d, Math.min(north, 90d), hits);
+            return false;
+        }
+
+        // maximum longitudinal extent of the circle
+        final double ratio = Math.sin(angle) / Math.cos(lat);
+        if(ratio >= 1d) {
+            this.tree.get(-180d, south, 180d, north, hits);
+            return false;
+        }
+        final double dlng = Math.toDegrees(Math.asin(ratio));
+
+        final double west = lng - dlng;
+        final double east = lng + dlng;
+        if(west < -180d) {
+            this.tree.get(west+360d, south, 180d, north, hits);
+            this.tree.get(-180d, south, east, north, hits);
+        } else if(east > 180d) {
+            this.tree.get(west, south, 180d, north, hits);
+            this.tree.get(-180d, south, east-360d, north, hits);
+        } else {
+            this.tree.get(west, south, east, north, hits);
+        }
+        return false;
+    }
+
+    private static double normalizeLongitude(double lng) {
+        if(lng < -180d || lng > 180d)
+            lng = ((lng+180d)%360d + 360d)%360d - 180d;
+        return lng;
+    }
+
+    /**************************************************************************/
+
+    /**
+     * Obtains the location of an object.
+     */
+    public static interface Locator<T> {
+        /**
+         * Obtains the location of the specified object.
+         *
+         * @param object    An object
+         * @param location  Receives the location
+         *
+         * @return  <code>true</code> if the object has a location,
+         *          <code>false</code> otherwise
+         */
+        public boolean getLocation(T object, GeoPoint location);
+    }
+
+    /**
+     * Computes the distance, in meters, between an object and a location.
+     */
+    public static interface Metric<T> {
+        public double distance(T object, GeoPoint location);
+    }
+
+    private final static class Entry<T> {
+        final T object;
+        double latitude;
+        double longitude;
+        boolean indexed;
+
+        Entry(T object) {
+            this.object = object;
+        }
+    }
+
+    private final static class Neighbor implements Comparable<Neighbor> {
+        final double distance;
+        final Object object;
+
+        Neighbor(double distance, Object object) {
+            this.distance = distance;
+            this.object = object;
+        }
+
+        @Override
+        public int compareTo(Neighbor other) {
+            return Double.compare(this.distance, other.distance);
+        }
+    }
+}
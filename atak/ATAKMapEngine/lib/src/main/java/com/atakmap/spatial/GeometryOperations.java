@@ -43,17 +43,20 @@ public class GeometryOperations {
     private static int winding(LineString ls, double px, double py){
         int result = 0;
 
+        final double[] xy = ls.getPoints(2);
+        final int numPoints = xy.length / 2;
+
         // loop through all edges of the polygon
-        for (int i = 0; i < ls.getNumPoints(); i++) {
-            double v0x = ls.getX(i);
-            double v0y = ls.getY(i);
+        for (int i = 0; i < numPoints; i++) {
+            double v0x = xy[i*2];
+            double v0y = xy[i*2+1];
             double v1x, v1y;
-            if(i == (ls.getNumPoints() -1)){
-                v1x = ls.getX(0);
-                v1y = ls.getY(0);
+            if(i == (numPoints -1)){
+                v1x = xy[0];
+                v1y = xy[1];
             }else{
-                v1x = ls.getX(i + 1);
-                v1y = ls.getY(i + 1);
+                v1x = xy[i*2+2];
+                v1y = xy[i*2+3];
             }
             
             if (v0y <= py) {
@@ -61,14 +61,19 @@ public final class GeometryTransformer {
             PointD proj = new PointD(0d, 0d);
             GeoPoint geo = GeoPoint.createMutable();
             
-            LineString dst = new LineString(src.getDimension());
-            for(int i = 0; i < linestring.getNumPoints(); i++) {
-                proj.x = linestring.getX(i);
-                proj.y = linestring.getY(i);
+            final double[] xy = linestring.getPoints(2);
+            final int numPoints = xy.length/2;
+            for(int i = 0; i < numPoints; i++) {
+                proj.x = xy[i*2];
+                proj.y = xy[i*2+1];
                 srcProj.inverse(proj, geo);
                 dstProj.forward(geo, proj);
-                dst.addPoint(proj.x, proj.y);
+                xy[i*2] = proj.x;
+                xy[i*2+1] = proj.y;
             }
+
+            LineString dst = new LineString(src.getDimension());
+            dst.addPoints(xy, 0, numPoints, 2);
             return dst;            
         } else if(src instanceof Polygon) {
             Polygon polygon = (Polygon)src;
@@ -103,13 +108,18 @@ public final class GeometryTransformer {
             PointD proj = new PointD(0d, 0d);
             GeoPoint geo = GeoPoint.createMutable();
             
-            LineString dst = new LineString(src.getDimension());
-            for(int i = 0; i < linestring.getNumPoints(); i++) {
-                proj.x = linestring.getX(i);
-                proj.y = linestring.getY(i);
+            final double[] xy = linestring.getPoints(2);
+            final int numPoints = xy.length/2;
+            for(int i = 0; i < numPoints; i++) {
+                proj.x = xy[i*2];
+                proj.y = xy[i*2+1];
                 srcProj.inverse(proj, geo);
-                dst.addPoint(geo.getLongitude(), geo.getLatitude());
+                xy[i*2] = geo.getLongitude();
+                xy[i*2+1] = geo.getLatitude();
             }
+
+            LineString dst = new LineString(src.getDimension());
+            dst.addPoints(xy, 0, numPoints, 2);
             return dst;            
         } else if(src instanceof Polygon) {
             Polygon polygon = (Polygon)src;
@@ -144,12 +154,17 @@ public final class GeometryTransformer {
             PointD proj = new PointD(0d, 0d);
             GeoPoint geo = GeoPoint.createMutable();
             
-            LineString dst = new LineString(src.getDimension());
-            for(int i = 0; i < linestring.getNumPoints(); i++) {
-                geo.set(linestring.getY(i), linestring.getX(i));
+            final double[] xy = linestring.getPoints(2);
+            final int numPoints = xy.length/2;
+            for(int i = 0; i < numPoints; i++) {
+                geo.set(xy[i*2+1], xy[i*2]);
                 dstProj.forward(geo, proj);
-                dst.addPoint(proj.x, proj.y);
+                xy[i*2] = proj.x;
+                xy[i*2+1] = proj.y;
             }
+
+            LineString dst = new LineString(src.getDimension());
+            dst.addPoints(xy, 0, numPoints, 2);
             return dst;            
         } else if(src instanceof Polygon) {
             Polygon polygon = (Polygon)src;
@@ -185,15 +200,21 @@ public final class GeometryTransformer {
             PointD proj = new PointD(0d, 0d);
             GeoPoint geo = GeoPoint.createMutable();
             
-            LineString dst = new LineString(src.getDimension());
-            for(int i = 0; i < linestring.getNumPoints(); i++) {
-                proj.x = linestring.getX(i);
-                proj.y = linestring.getY(i);
-                proj.z = linestring.getZ(i);
+            final double[] xyz = linestring.getPoints(3);
+            final int numPoints = xyz.length/3;
+            for(int i = 0; i < numPoints; i++) {
+                proj.x = xyz[i*3];
+                proj.y = xyz[i*3+1];
+                proj.z = xyz[i*3+2];
                 srcProj.inverse(proj, geo);
                 dstProj.forward(geo, proj);
-                dst.addPoint(proj.x, proj.y, proj.z);
+                xyz[i*3] = proj.x;
+                xyz[i*3+1] = proj.y;
+                xyz[i*3+2] = proj.z;
             }
+
+            LineString dst = new LineString(src.getDimension());
+            dst.addPoints(xyz, 0, numPoints, 3);
             return dst;            
         } else if(src instanceof Polygon) {
             Polygon polygon = (Polygon)src;
@@ -228,14 +249,20 @@ public final class GeometryTransformer {
             PointD proj = new PointD(0d, 0d);
             GeoPoint geo = GeoPoint.createMutable();
             
-            LineString dst = new LineString(src.getDimension());
-            for(int i = 0; i < linestring.getNumPoints(); i++) {
-                proj.x = linestring.getX(i);
-                proj.y = linestring.getY(i);
-                proj.z = linestring.getZ(i);
+            final double[] xyz = linestring.getPoints(3);
+            final int numPoints = xyz.length/3;
+            final double[] xy = new double[numPoints*2];
+            for(int i = 0; i < numPoints; i++) {
+                proj.x = xyz[i*3];
+                proj.y = xyz[i*3+1];
+                proj.z = xyz[i*3+2];
                 srcProj.inverse(proj, geo);
-                dst.addPoint(geo.getLongitude(), geo.getLatitude());
+                xy[i*2] = geo.getLongitude();
+                xy[i*2+1] = geo.getLatitude();
             }
+
+            LineString dst = new LineString(src.getDimension());
+            dst.addPoints(xy, 0, numPoints, 2);
             return dst;            
         } else if(src instanceof Polygon) {
             Polygon polygon = (Polygon)src;
@@ -274,13 +301,19 @@ public final class GeometryTransformer {
             PointD proj = new PointD(0d, 0d);
             GeoPoint geo = GeoPoint.createMutable();
             
-            LineString dst = new LineString(src.getDimension());
-            for(int i = 0; i < linestring.getNumPoints(); i++) {
-                geo.set(linestring.getY(i), linestring.getX(i));
-                geo.set(linestring.getZ(i));
+            final double[] xyz = linestring.getPoints(3);
+            final int numPoints = xyz.length/3;
+            final double[] xy = new double[numPoints*2];
+            for(int i = 0; i < numPoints; i++) {
+                geo.set(xyz[i*3+1], xyz[i*3]);
+                geo.set(xyz[i*3+2]);
                 dstProj.forward(geo, proj);
-                dst.addPoint(proj.x, proj.y);
+                xy[i*2] = proj.x;
+                xy[i*2+1] = proj.y;
             }
+
+            LineString dst = new LineString(src.getDimension());
+            dst.addPoints(xy, 0, numPoints, 2);
             return dst;            
         } else if(src instanceof Polygon) {
             Polygon polygon = (Polygon)src;
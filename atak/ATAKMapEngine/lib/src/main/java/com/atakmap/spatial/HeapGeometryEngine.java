@@ -0,0 +1,1205 @@
+package com.atakmap.spatial;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.map.layer.feature.geometry.Geometry;
+import com.atakmap.map.layer.feature.geometry.GeometryCollection;
+import com.atakmap.map.layer.feature.geometry.GeometryFactory;
+import com.atakmap.map.layer.feature.geometry.LineString;
+import com.atakmap.map.layer.feature.geometry.Point;
+import com.atakmap.map.layer.feature.geometry.Polygon;
+import com.atakmap.math.MathUtils;
+
+/**
+ * In-heap memory for a {@link SpatialCalculator} built with
+ * {@link SpatialCalculator.Builder#inHeap()}. Geometries are held as
+ * coordinate arrays keyed by handle, so creating, updating and testing them
+ * does not involve SQL statements, blob marshaling or JNI transitions.
+ *
+ * <P>Geometries are immutable once created; an update replaces the geometry
+ * associated with the handle. This allows a geometry to be <I>prepared</I>
+ * the first time it is the subject of {@link #intersects(Geom, Geom)} or
+ * {@link #contains(Geom, Geom)}: its edges are bucketed into horizontal
+ * strips so that subsequent tests against it only visit the edges in the
+ * strips spanned by the other geometry. The prepared form is discarded with
+ * the geometry.
+ *
+ * <P>This class is NOT thread-safe.
+ */
+final class HeapGeometryEngine {
+
+    final static int EXTERIOR = -1;
+    final static int BOUNDARY = 0;
+    final static int INTERIOR = 1;
+
+    /** number of segments per quadrant when buffering points */
+    private final static int BUFFER_QUADRANT_SEGMENTS = 30;
+    /** upper bound on the number of strips of a prepared geometry */
+    private final static int MAX_STRIPS = 1024;
+
+    /** marks handles created during a batch in the undo journal */
+    private final static Geom ABSENT = new Geom(SpatialCalculator.GEOM_TYPE_GEOMETRYCOLLECTION, 2, new int[0], new double[0][][]);
+
+    private final Map<Long, Geom> geometries = new HashMap<Long, Geom>();
+    private long nextHandle = 1L;
+
+    /** the prior state of the handles modified during the current batch */
+    private Map<Long, Geom> undo;
+    private long undoNextHandle;
+    private int batchDepth;
+    private boolean batchFailed;
+
+    /**************************************************************************/
+    // memory
+
+    long create(Geom geom) {
+        final long handle = this.nextHandle++;
+        this.journal(handle);
+        this.geometries.put(Long.valueOf(handle), geom);
+        return handle;
+    }
+
+    void update(long handle, Geom geom) {
+        final Long key = Long.valueOf(handle);
+        if(!this.geometries.containsKey(key))
+            return;
+        this.journal(handle);
+        this.geometries.put(key, geom);
+    }
+
+    Geom get(long handle) {
+        return this.geometries.get(Long.valueOf(handle));
+    }
+
+    void delete(long handle) {
+        final Long key = Long.valueOf(handle);
+        if(!this.geometries.containsKey(key))
+            return;
+        this.journal(handle);
+        this.geometries.remove(key);
+    }
+
+    void clear() {
+        if(this.undo != null) {
+            for(Long handle : this.geometries.keySet())
+                this.journal(handle.longValue());
+        }
+        this.geometries.clear();
+    }
+
+    /**
+     * Discards the prepared form of all geometries.
+     */
+    void clearCache() {
+        for(Geom geom : this.geometries.values()) {
+            if(geom != null)
+                geom.prepared = null;
+        }
+    }
+
+    void dispose() {
+        this.geometries.clear();
+        this.undo = null;
+        this.batchDepth = 0;
+    }
+
+    void beginBatch() {
+        if(this.batchDepth++ > 0)
+            return;
+        this.undo = new HashMap<Long, Geom>();
+        this.undoNextHandle = this.nextHandle;
+        this.batchFailed = false;
+    }
+
+    void endBatch(boolean commit) {
+        if(this.batchDepth == 0)
+            throw new IllegalStateException("No batch in progress");
+        // as with nested transactions, the batch is undone if any of the
+        // nested batches fails
+        this.batchFailed |= !commit;
+        if(--this.batchDepth > 0)
+            return;
+
+        final Map<Long, Geom> journal = this.undo;
+        this.undo = null;
+        if(!this.batchFailed)
+            return;
+        for(Map.Entry<Long, Geom> entry : journal.entrySet()) {
+            if(entry.getValue() == ABSENT)
+                this.geometries.remove(entry.getKey());
+            else
+                this.geometries.put(entry.getKey(), entry.getValue());
+        }
+        this.nextHandle = this.undoNextHandle;
+    }
+
+    private void journal(long handle) {
+        if(this.undo == null)
+            return;
+        final Long key = Long.valueOf(handle);
+        if(this.undo.containsKey(key))
+            return;
+        if(this.geometries.containsKey(key))
+            this.undo.put(key, this.geometries.get(key));
+        else
+            this.undo.put(key, ABSENT);
+    }
+
+    /**************************************************************************/
+    // construction
+
+    static Geom point(double x, double y, double z, int dimension) {
+        final double[] xyz = (dimension == 3) ? new double[] {x, y, z} : new double[] {x, y};
+        return single(SpatialCalculator.GEOM_TYPE_POINT, dimension, xyz);
+    }
+
+    static Geom lineString(int numPoints, Iterator<GeoPoint> points) {
+        final double[] coords = new double[numPoints*2];
+        int idx = 0;
+        while(points.hasNext() && idx < coords.length) {
+            final GeoPoint geo = points.next();
+            coords[idx++] = geo.getLongitude();
+            coords[idx++] = geo.getLatitude();
+        }
+        return single(SpatialCalculator.GEOM_TYPE_LINESTRING, 2, (idx == coords.length) ? coords : Arrays.copyOf(coords, idx));
+    }
+
+    static Geom polygon(Collection<GeoPoint> points, Collection<Collection<GeoPoint>> innerRings) {
+        final double[][] rings = new double[1+innerRings.size()][];
+        rings[0] = ring(points);
+        int idx = 1;
+        for(Collection<GeoPoint> inner : innerRings)
+            rings[idx++] = ring(inner);
+        return new Geom(SpatialCalculator.GEOM_TYPE_POLYGON, 2, new int[] {SpatialCalculator.GEOM_TYPE_POLYGON}, new double[][][] {rings});
+    }
+
+    static Geom quad(GeoPoint a, GeoPoint b, GeoPoint c, GeoPoint d) {
+        final double[] ring = new double[] {
+            a.getLongitude(), a.getLatitude(),
+            b.getLongitude(), b.getLatitude(),
+            c.getLongitude(), c.getLatitude(),
+            d.getLongitude(), d.getLatitude(),
+            a.getLongitude(), a.getLatitude(),
+        };
+        return new Geom(SpatialCalculator.GEOM_TYPE_POLYGON, 2, new int[] {SpatialCalculator.GEOM_TYPE_POLYGON}, new double[][][] {{ring}});
+    }
+
+    private static double[] ring(Collection<GeoPoint> points) {
+        final double[] retval = new double[points.size()*2];
+        int idx = 0;
+        for(GeoPoint geo : points) {
+            retval[idx++] = geo.getLongitude();
+            retval[idx++] = geo.getLatitude();
+        }
+        return retval;
+    }
+
+    private static Geom single(int type, int dimension, double[] coords) {
+        return new Geom(type, dimension, new int[] {type}, new double[][][] {{coords}});
+    }
+
+    /**************************************************************************/
+    // conversion
+
+    static Geom fromGeometry(Geometry geometry) {
+        final int dimension = geometry.getDimension();
+        if(geometry instanceof GeometryCollection) {
+            final Collection<Geometry> children = new ArrayList<Geometry>();
+            flatten((GeometryCollection)geometry, children);
+            final int[] kinds = new int[children.size()];
+            final double[][][] parts = new double[kinds.length][][];
+            int idx = 0;
+            for(Geometry child : children) {
+                kinds[idx] = kind(child);
+                parts[idx] = rings(child, dimension);
+                idx++;
+            }
+            return new Geom(SpatialCalculator.GEOM_TYPE_GEOMETRYCOLLECTION, dimension, kinds, parts);
+        }
+        final int kind = kind(geometry);
+        return new Geom(kind, dimension, new int[] {kind}, new double[][][] {rings(geometry, dimension)});
+    }
+
+    private static void flatten(GeometryCollection c, Collection<Geometry> children) {
+        for(Geometry g : c.getGeometries()) {
+            if(g instanceof GeometryCollection)
+                flatten((GeometryCollection)g, children);
+            else
+                children.add(g);
+        }
+    }
+
+    private static int kind(Geometry geometry) {
+        if(geometry instanceof Point)
+            return SpatialCalculator.GEOM_TYPE_POINT;
+        else if(geometry instanceof LineString)
+            return SpatialCalculator.GEOM_TYPE_LINESTRING;
+        else if(geometry instanceof Polygon)
+            return SpatialCalculator.GEOM_TYPE_POLYGON;
+        else
+            throw new IllegalStateException();
+    }
+
+    private static double[][] rings(Geometry geometry, int dimension) {
+        if(geometry instanceof Point) {
+            final Point p = (Point)geometry;
+            return new double[][] {(dimension == 3) ? new double[] {p.getX(), p.getY(), p.getZ()} : new double[] {p.getX(), p.getY()}};
+        } else if(geometry instanceof LineString) {
+            return new double[][] {coords((LineString)geometry, dimension)};
+        } else if(geometry instanceof Polygon) {
+            final Polygon polygon = (Polygon)geometry;
+            final Collection<LineString> inner = polygon.getInteriorRings();
+            final LineString exterior = polygon.getExteriorRing();
+            final double[][] retval = new double[((exterior != null) ? 1 : 0)+inner.size()][];
+            int idx = 0;
+            if(exterior != null)
+                retval[idx++] = coords(exterior, dimension);
+            for(LineString ring : inner)
+                retval[idx++] = coords(ring, dimension);
+            return retval;
+        } else {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static double[] coords(LineString linestring, int dimension) {
+        return linestring.getPoints(dimension);
+    }
+
+    static Geometry toGeometry(Geom geom) {
+        if(geom == null)
+            return null;
+        if(geom.type == SpatialCalculator.GEOM_TYPE_POINT ||
+           geom.type == SpatialCalculator.GEOM_TYPE_LINESTRING ||
+           geom.type == SpatialCalculator.GEOM_TYPE_POLYGON) {
+
+            return toGeometry(geom.kinds[0], geom.dimension, geom.parts[0]);
+        }
+
+        final GeometryCollection retval = new GeometryCollection(geom.dimension);
+        for(int i = 0; i < geom.kinds.length; i++)
+            retval.addGeometry(toGeometry(geom.kinds[i], geom.dimension, geom.parts[i]));
+        return retval;
+    }
+
+    private static Geometry toGeometry(int kind, int dimension, double[][] rings) {
+        switch(kind) {
+            case SpatialCalculator.GEOM_TYPE_POINT :
+                if(dimension == 3)
+                    return new Point(rings[0][0], rings[0][1], rings[0][2]);
+                return new Point(rings[0][0], rings[0][1]);
+            case SpatialCalculator.GEOM_TYPE_LINESTRING :
+                return toLineString(rings[0], dimension);
+            case SpatialCalculator.GEOM_TYPE_POLYGON :
+                final Polygon polygon = new Polygon(dimension);
+                for(double[] ring : rings)
+                    polygon.addRing(toLineString(ring, dimension));
+                return polygon;
+            default :
+                throw new IllegalStateException();
+        }
+    }
+
+    private static LineString toLineString(double[] coords, int dimension) {
+        final LineString retval = new LineString(dimension);
+        retval.addPoints(coords, 0, coords.length/dimension, dimension);
+        return retval;
+    }
+
+    /**
+     * Parses a SpatiaLite geometry blob.
+     *
+     * @see <a href=http://www.gaia-gis.it/gaia-sins/BLOB-Geometry.html>BLOB-Geometry</a>
+     */
+    static Geom fromBlob(byte[] array) {
+        if(array == null)
+            return null;
+
+        final ByteBuffer blob = ByteBuffer.wrap(array);
+        switch(blob.get(1)&0xFF) {
+            case 0x00 :
+                blob.order(ByteOrder.BIG_ENDIAN);
+                break;
+            case 0x01 :
+                blob.order(ByteOrder.LITTLE_ENDIAN);
+                break;
+            default :
+                throw new IllegalStateException();
+        }
+
+        final int classType = blob.getInt(39);
+        // compressed classes are uncommon; defer to the native parser
+        if(classType >= 1000000)
+            return fromGeometry(GeometryFactory.parseSpatiaLiteBlob(array));
+
+        // XY, XYZ, XYM, XYZM
+        final int model = classType/1000;
+        final int type = classType%1000;
+        final int dimension = (model == 1 || model == 3) ? 3 : 2;
+
+        blob.position(43);
+        switch(type) {
+            case SpatialCalculator.GEOM_TYPE_POINT :
+            case SpatialCalculator.GEOM_TYPE_LINESTRING :
+            case SpatialCalculator.GEOM_TYPE_POLYGON :
+                return new Geom(type, dimension, new int[] {type}, new double[][][] {parseClass(blob, type, model, dimension)});
+            case SpatialCalculator.GEOM_TYPE_MULTIPOINT :
+            case SpatialCalculator.GEOM_TYPE_MULTILINESTRING :
+            case SpatialCalculator.GEOM_TYPE_MULTIPOLYGON :
+            case SpatialCalculator.GEOM_TYPE_GEOMETRYCOLLECTION :
+                final int numChildren = blob.getInt();
+                final int[] kinds = new int[numChildren];
+                final double[][][] parts = new double[numChildren][][];
+                for(int i = 0; i < numChildren; i++) {
+                    if((blob.get()&0xFF) != 0x69)
+                        throw new IllegalArgumentException();
+                    kinds[i] = blob.getInt()%1000;
+                    parts[i] = parseClass(blob, kinds[i], model, dimension);
+                }
+                return new Geom(type, dimension, kinds, parts);
+            default :
+                throw new IllegalArgumentException("class=" + classType);
+        }
+    }
+
+    private static double[][] parseClass(ByteBuffer blob, int type, int model, int dimension) {
+        switch(type) {
+            case SpatialCalculator.GEOM_TYPE_POINT :
+                return new double[][] {parseCoords(blob, 1, model, dimension)};
+            case SpatialCalculator.GEOM_TYPE_LINESTRING :
+                return new double[][] {parseCoords(blob, blob.getInt(), model, dimension)};
+            case SpatialCalculator.GEOM_TYPE_POLYGON :
+                final double[][] rings = new double[blob.getInt()][];
+                for(int i = 0; i < rings.length; i++)
+                    rings[i] = parseCoords(blob, blob.getInt(), model, dimension);
+                return rings;
+            default :
+                throw new IllegalArgumentException("class=" + type);
+        }
+    }
+
+    private static double[] parseCoords(ByteBuffer blob, int numPoints, int model, int dimension) {
+        final double[] retval = new double[numPoints*dimension];
+        for(int i = 0; i < numPoints; i++) {
+            retval[i*dimension] = blob.getDouble();
+            retval[i*dimension+1] = blob.getDouble();
+            if(model == 1 || model == 3)
+                retval[i*dimension+2] = blob.getDouble();
+            // measures are dropped
+            if(model >= 2)
+                blob.getDouble();
+        }
+        return retval;
+    }
+
+    /**
+     * Encodes the geometry as a SpatiaLite blob, in the same form as
+     * {@link SpatialCalculator#createGeometry(Geometry)}.
+     */
+    static byte[] toBlob(Geom geom) {
+        if(geom == null)
+            return null;
+
+        final boolean single = (geom.type == SpatialCalculator.GEOM_TYPE_POINT ||
+                                geom.type == SpatialCalculator.GEOM_TYPE_LINESTRING ||
+                                geom.type == SpatialCalculator.GEOM_TYPE_POLYGON);
+        int size = 43 + 1;
+        if(single) {
+            size += classSize(geom.kinds[0], geom.parts[0], geom.dimension);
+        } else {
+            size += 4;
+            for(int i = 0; i < geom.kinds.length; i++)
+                size += 5 + classSize(geom.kinds[i], geom.parts[i], geom.dimension);
+        }
+
+        final ByteBuffer blob = ByteBuffer.wrap(new byte[size]);
+        blob.order(ByteOrder.nativeOrder());
+
+        final int classTypeOffset = (geom.dimension == 3) ? 1000 : 0;
+
+        // header
+        blob.put((byte)0x00);
+        blob.put((blob.order() == ByteOrder.BIG_ENDIAN) ? (byte)0x00 : (byte)0x01);
+        blob.putInt(4326);
+        blob.putDouble(geom.minX);
+        blob.putDouble(geom.minY);
+        blob.putDouble(geom.maxX);
+        blob.putDouble(geom.maxY);
+        blob.put((byte)0x7C);
+        blob.putInt(geom.type + classTypeOffset);
+
+        if(single) {
+            encodeClass(geom.kinds[0], geom.parts[0], geom.dimension, blob);
+        } else {
+            blob.putInt(geom.kinds.length);
+            for(int i = 0; i < geom.kinds.length; i++) {
+                blob.put((byte)0x69);
+                blob.putInt(geom.kinds[i] + classTypeOffset);
+                encodeClass(geom.kinds[i], geom.parts[i], geom.dimension, blob);
+            }
+        }
+        blob.put((byte)0xFE);
+
+        return blob.array();
+    }
+
+    private static int classSize(int kind, double[][] rings, int dimension) {
+        switch(kind) {
+            case SpatialCalculator.GEOM_TYPE_POINT :
+                return dimension*8;
+            case SpatialCalculator.GEOM_TYPE_LINESTRING :
+                return 4 + rings[0].length*8;
+            case SpatialCalculator.GEOM_TYPE_POLYGON :
+                int retval = 4;
+                for(double[] ring : rings)
+                    retval += 4 + ring.length*8;
+                return retval;
+            default :
+                throw new IllegalStateException();
+        }
+    }
+
+    private static void encodeClass(int kind, double[][] rings, int dimension, ByteBuffer blob) {
+        if(kind == SpatialCalculator.GEOM_TYPE_POLYGON)
+            blob.putInt(rings.length);
+        for(double[] ring : rings) {
+            if(kind != SpatialCalculator.GEOM_TYPE_POINT)
+                blob.putInt(ring.length/dimension);
+            for(int i = 0; i < ring.length; i++)
+                blob.putDouble(ring[i]);
+        }
+    }
+
+    /**
+     * Returns the geometry as Well-Known Text.
+     */
+    static String toWkt(Geom geom) {
+        if(geom == null)
+            return null;
+
+        final StringBuilder wkt = new StringBuilder();
+        final String z = (geom.dimension == 3) ? " Z" : "";
+        switch(geom.type) {
+            case SpatialCalculator.GEOM_TYPE_POINT :
+            case SpatialCalculator.GEOM_TYPE_LINESTRING :
+            case SpatialCalculator.GEOM_TYPE_POLYGON :
+                appendTaggedWkt(wkt, geom.kinds[0], geom.parts[0], geom.dimension);
+                break;
+            case SpatialCalculator.GEOM_TYPE_MULTIPOINT :
+                wkt.append("MULTIPOINT").append(z).append("(");
+                for(int i = 0; i < geom.parts.length; i++) {
+                    if(i > 0)
+                        wkt.append(", ");
+                    appendCoords(wkt, geom.parts[i][0], geom.dimension);
+                }
+                wkt.append(")");
+                break;
+            case SpatialCalculator.GEOM_TYPE_MULTILINESTRING :
+            case SpatialCalculator.GEOM_TYPE_MULTIPOLYGON :
+                wkt.append((geom.type == SpatialCalculator.GEOM_TYPE_MULTILINESTRING) ? "MULTILINESTRING" : "MULTIPOLYGON").append(z).append("(");
+                for(int i = 0; i < geom.parts.length; i++) {
+                    if(i > 0)
+                        wkt.append(", ");
+                    appendWkt(wkt, geom.kinds[i], geom.parts[i], geom.dimension);
+                }
+                wkt.append(")");
+                break;
+            default :
+                wkt.append("GEOMETRYCOLLECTION").append(z).append("(");
+                for(int i = 0; i < geom.parts.length; i++) {
+                    if(i > 0)
+                        wkt.append(", ");
+                    appendTaggedWkt(wkt, geom.kinds[i], geom.parts[i], geom.dimension);
+                }
+                wkt.append(")");
+                break;
+        }
+        return wkt.toString();
+    }
+
+    private static void appendTaggedWkt(StringBuilder wkt, int kind, double[][] rings, int dimension) {
+        switch(kind) {
+            case SpatialCalculator.GEOM_TYPE_POINT :
+                wkt.append("POINT");
+                break;
+            case SpatialCalculator.GEOM_TYPE_LINESTRING :
+                wkt.append("LINESTRING");
+                break;
+            default :
+                wkt.append("POLYGON");
+                break;
+        }
+        if(dimension == 3)
+            wkt.append(" Z");
+        appendWkt(wkt, kind, rings, dimension);
+    }
+
+    private static void appendWkt(StringBuilder wkt, int kind, double[][] rings, int dimension) {
+        wkt.append("(");
+        if(kind == SpatialCalculator.GEOM_TYPE_POLYGON) {
+            for(int i = 0; i < rings.length; i++) {
+                if(i > 0)
+                    wkt.append(", ");
+                wkt.append("(");
+                appendCoords(wkt, rings[i], dimension);
+                wkt.append(")");
+            }
+        } else {
+            appendCoords(wkt, rings[0], dimension);
+        }
+        wkt.append(")");
+    }
+
+    private static void appendCoords(StringBuilder wkt, double[] coords, int dimension) {
+        for(int i = 0; i < coords.length; i++) {
+            if(i > 0)
+                wkt.append((i%dimension == 0) ? ", " : " ");
+            final double v = coords[i];
+            if(v == 0d)
+                wkt.append('0');
+            else if(Double.isNaN(v) || Double.isInfinite(v))
+                wkt.append(v);
+            else
+                wkt.append(BigDecimal.valueOf(v).stripTrailingZeros().toPlainString());
+        }
+    }
+
+    /**************************************************************************/
+    // operations
+
+    /**
+     * Douglas-Peucker simplification of the linestrings and rings of the
+     * geometry. Rings that collapse are removed, as are polygons whose
+     * exterior ring collapses.
+     *
+     * @return  The simplified geometry or <code>null</code> if nothing
+     *          remains of the geometry.
+     */
+    static Geom simplify(Geom geom, double tolerance) {
+        if(geom == null)
+            return null;
+
+        final int[] kinds = new int[geom.kinds.length];
+        final double[][][] parts = new double[geom.kinds.length][][];
+        int numParts = 0;
+        for(int i = 0; i < geom.kinds.length; i++) {
+            double[][] rings = geom.parts[i];
+            switch(geom.kinds[i]) {
+                case SpatialCalculator.GEOM_TYPE_POINT :
+                    break;
+                case SpatialCalculator.GEOM_TYPE_LINESTRING :
+                    rings = new double[][] {simplify(rings[0], geom.dimension, tolerance)};
+                    break;
+                case SpatialCalculator.GEOM_TYPE_POLYGON :
+                    final double[][] simplified = new double[rings.length][];
+                    int numRings = 0;
+                    for(int j = 0; j < rings.length; j++) {
+                        final double[] ring = simplify(rings[j], geom.dimension, tolerance);
+                        if(ring.length/geom.dimension < 4) {
+                            if(j == 0)
+                                break;
+                            continue;
+                        }
+                        simplified[numRings++] = ring;
+                    }
+                    rings = (numRings > 0) ? Arrays.copyOf(simplified, numRings) : null;
+                    break;
+                default :
+                    throw new IllegalStateException();
+            }
+            if(rings == null)
+                continue;
+            kinds[numParts] = geom.kinds[i];
+            parts[numParts] = rings;
+            numParts++;
+        }
+        if(numParts == 0)
+            return null;
+        return new Geom(geom.type, geom.dimension, Arrays.copyOf(kinds, numParts), Arrays.copyOf(parts, numParts));
+    }
+
+    static double[] simplify(double[] coords, int dimension, double tolerance) {
+        final int numPoints = coords.length/dimension;
+        if(numPoints < 3)
+            return coords;
+
+        final boolean[] keep = new boolean[numPoints];
+        keep[0] = true;
+        keep[numPoints-1] = true;
+
+        final double tolerance2 = tolerance*tolerance;
+        final int[] stack = new int[numPoints*2];
+        int sp = 0;
+        stack[sp++] = 0;
+        stack[sp++] = numPoints-1;
+        while(sp > 0) {
+            final int last = stack[--sp];
+            final int first = stack[--sp];
+            final double ax = coords[first*dimension];
+            final double ay = coords[first*dimension+1];
+            final double bx = coords[last*dimension];
+            final double by = coords[last*dimension+1];
+            double maxDist2 = -1d;
+            int index = -1;
+            for(int i = first+1; i < last; i++) {
+                final double d2 = distanceSq(coords[i*dimension], coords[i*dimension+1], ax, ay, bx, by);
+                if(d2 > maxDist2) {
+                    maxDist2 = d2;
+                    index = i;
+                }
+            }
+            if(index >= 0 && maxDist2 > tolerance2) {
+                keep[index] = true;
+                stack[sp++] = first;
+                stack[sp++] = index;
+                stack[sp++] = index;
+                stack[sp++] = last;
+            }
+        }
+
+        int numKept = 0;
+        for(int i = 0; i < numPoints; i++)
+            if(keep[i])
+                numKept++;
+        final double[] retval = new double[numKept*dimension];
+        int idx = 0;
+        for(int i = 0; i < numPoints; i++) {
+            if(!keep[i])
+                continue;
+            System.arraycopy(coords, i*dimension, retval, idx, dimension);
+            idx += dimension;
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the buffer of a point as a polygon approximating the circle of
+     * the specified radius.
+     */
+    static Geom bufferPoint(Geom point, double dist) {
+        final double cx = point.parts[0][0][0];
+        final double cy = point.parts[0][0][1];
+        final int numSegments = BUFFER_QUADRANT_SEGMENTS*4;
+        final double[] ring = new double[(numSegments+1)*2];
+        for(int i = 0; i < numSegments; i++) {
+            final double theta = (2d*Math.PI*i) / numSegments;
+            ring[i*2] = cx + dist*Math.cos(theta);
+            ring[i*2+1] = cy + dist*Math.sin(theta);
+        }
+        ring[numSegments*2] = ring[0];
+        ring[numSegments*2+1] = ring[1];
+        return new Geom(SpatialCalculator.GEOM_TYPE_POLYGON, 2, new int[] {SpatialCalculator.GEOM_TYPE_POLYGON}, new double[][][] {{ring}});
+    }
+
+    /**************************************************************************/
+    // predicates
+
+    /**
+     * Returns <code>true</code> if the geometries share at least one point.
+     */
+    static boolean intersects(Geom a, Geom b) {
+        if(a == null || b == null)
+            return false;
+        if(a.maxX < b.minX || a.minX > b.maxX || a.maxY < b.minY || a.minY > b.maxY)
+            return false;
+
+        final Prepared pa = prepare(a);
+        final Prepared pb = prepare(b);
+
+        // a component wholly within the other geometry has all of its
+        // vertices within; any other intersection involves an edge crossing
+        if(anyVertexWithin(b, a, pa) || anyVertexWithin(a, b, pb))
+            return true;
+        if(pa == null || pb == null)
+            return false;
+
+        // walk the edges of the smaller geometry through the index of the
+        // larger
+        final Prepared walk = (pa.numEdges <= pb.numEdges) ? pa : pb;
+        final Prepared index = (walk == pa) ? pb : pa;
+        final double[] edges = walk.edges;
+        for(int i = 0; i < walk.numEdges; i++) {
+            if(index.intersects(edges[i*4], edges[i*4+1], edges[i*4+2], edges[i*4+3]))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean anyVertexWithin(Geom g, Geom other, Prepared otherPrepared) {
+        for(int i = 0; i < g.kinds.length; i++) {
+            final double[] coords = g.parts[i][0];
+            if(coords.length < 2)
+                continue;
+            if(locate(other, otherPrepared, coords[0], coords[1]) != EXTERIOR)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if no point of <code>b</code> lies in the
+     * exterior of <code>a</code> and at least one point of the interior of
+     * <code>b</code> lies in the interior of <code>a</code>.
+     */
+    static boolean contains(Geom a, Geom b) {
+        if(a == null || b == null || b.kinds.length == 0)
+            return false;
+        if(b.minX < a.minX || b.maxX > a.maxX || b.minY < a.minY || b.maxY > a.maxY)
+            return false;
+
+        final Prepared pa = prepare(a);
+        // the boundary of a linestring is only its endpoints, treat points on
+        // the line as interior
+        final boolean areal = (pa != null && pa.hasAreal);
+        final int dimension = b.dimension;
+
+        boolean interior = false;
+        boolean polygonal = false;
+        for(int i = 0; i < b.kinds.length; i++) {
+            final int kind = b.kinds[i];
+            polygonal |= (kind == SpatialCalculator.GEOM_TYPE_POLYGON);
+            for(double[] ring : b.parts[i]) {
+                final int numPoints = ring.length/dimension;
+                for(int j = 0; j < numPoints; j++) {
+                    final double x0 = ring[j*dimension];
+                    final double y0 = ring[j*dimension+1];
+                    final int l0 = locate(a, pa, x0, y0);
+                    if(l0 == EXTERIOR)
+                        return false;
+                    interior |= (l0 == INTERIOR || (l0 == BOUNDARY && !areal));
+
+                    if(kind == SpatialCalculator.GEOM_TYPE_POINT)
+                        continue;
+                    final int k = j+1;
+                    if(k == numPoints && kind != SpatialCalculator.GEOM_TYPE_POLYGON)
+                        continue;
+                    final double x1 = ring[(k%numPoints)*dimension];
+                    final double y1 = ring[(k%numPoints)*dimension+1];
+                    if(pa != null && pa.crosses(x0, y0, x1, y1))
+                        return false;
+                    // catches edges that leave through a vertex of a
+                    final int lm = locate(a, pa, (x0+x1)/2d, (y0+y1)/2d);
+                    if(lm == EXTERIOR)
+                        return false;
+                    interior |= (lm == INTERIOR || (lm == BOUNDARY && !areal));
+                }
+            }
+        }
+
+        if(polygonal && areal) {
+            // holes, or concavities, of a may not lie in the interior of b
+            final Prepared pb = prepare(b);
+            for(int i = 0; i < a.kinds.length; i++) {
+                if(a.kinds[i] != SpatialCalculator.GEOM_TYPE_POLYGON)
+                    continue;
+                for(double[] ring : a.parts[i]) {
+                    for(int j = 0; j < ring.length; j += a.dimension) {
+                        final double x = ring[j];
+                        final double y = ring[j+1];
+                        if(x < b.minX || x > b.maxX || y < b.minY || y > b.maxY)
+                            continue;
+                        if(pb.locate(x, y) == INTERIOR)
+                            return false;
+                    }
+                }
+            }
+
+            // b lies on the boundary of a at all of the tested points, e.g.
+            // a == b; test a point within the interior of b
+            if(!interior) {
+                for(int i = 0; i < b.kinds.length && !interior; i++) {
+                    if(b.kinds[i] != SpatialCalculator.GEOM_TYPE_POLYGON)
+                        continue;
+                    final double[] xy = interiorPoint(b.parts[i], b.dimension);
+                    interior = (xy != null && locate(a, pa, xy[0], xy[1]) == INTERIOR);
+                }
+            }
+        }
+        return interior;
+    }
+
+    /**
+     * Returns a point in the interior of the polygon, found as the midpoint of
+     * the first span of a horizontal line through the middle of the exterior
+     * ring that lies within the polygon.
+     */
+    private static double[] interiorPoint(double[][] rings, int dimension) {
+        final double[] exterior = rings[0];
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for(int i = 1; i < exterior.length; i += dimension) {
+            minY = Math.min(minY, exterior[i]);
+            maxY = Math.max(maxY, exterior[i]);
+        }
+        final double y = (minY+maxY)/2d;
+
+        double[] xs = new double[8];
+        int numXs = 0;
+        for(double[] ring : rings) {
+            final int numPoints = ring.length/dimension;
+            for(int i = 0; i < numPoints; i++) {
+                final int j = (i+1)%numPoints;
+                final double x0 = ring[i*dimension];
+                final double y0 = ring[i*dimension+1];
+                final double x1 = ring[j*dimension];
+                final double y1 = ring[j*dimension+1];
+                if((y0 > y) == (y1 > y))
+                    continue;
+                if(numXs == xs.length)
+                    xs = Arrays.copyOf(xs, numXs*2);
+                xs[numXs++] = x0 + (y-y0)*(x1-x0)/(y1-y0);
+            }
+        }
+        if(numXs < 2)
+            return null;
+        Arrays.sort(xs, 0, numXs);
+        for(int i = 0; i+1 < numXs; i += 2) {
+            if(xs[i] < xs[i+1])
+                return new double[] {(xs[i]+xs[i+1])/2d, y};
+        }
+        return null;
+    }
+
+    /**
+     * Locates the point relative to the geometry.
+     *
+     * @return  {@link #INTERIOR} if the point is within a polygon of the
+     *          geometry or coincident with a point of the geometry,
+     *          {@link #BOUNDARY} if the point is on an edge of the geometry,
+     *          {@link #EXTERIOR} otherwise.
+     */
+    private static int locate(Geom geom, Prepared prepared, double x, double y) {
+        if(prepared != null) {
+            final int retval = prepared.locate(x, y);
+            if(retval != EXTERIOR)
+                return retval;
+        }
+        if(geom.hasPoints) {
+            for(int i = 0; i < geom.kinds.length; i++) {
+                if(geom.kinds[i] != SpatialCalculator.GEOM_TYPE_POINT)
+                    continue;
+                final double[] xy = geom.parts[i][0];
+                if(xy[0] == x && xy[1] == y)
+                    return INTERIOR;
+            }
+        }
+        return EXTERIOR;
+    }
+
+    private static Prepared prepare(Geom geom) {
+        if(geom.prepared == null && geom.hasEdges)
+            geom.prepared = new Prepared(geom);
+        return geom.prepared;
+    }
+
+    /**************************************************************************/
+
+    static double orientation(double ax, double ay, double bx, double by, double px, double py) {
+        return (bx-ax)*(py-ay) - (by-ay)*(px-ax);
+    }
+
+    static boolean onSegment(double ax, double ay, double bx, double by, double px, double py) {
+        return orientation(ax, ay, bx, by, px, py) == 0d &&
+               px >= Math.min(ax, bx) && px <= Math.max(ax, bx) &&
+               py >= Math.min(ay, by) && py <= Math.max(ay, by);
+    }
+
+    /**
+     * Returns <code>true</code> if the segments cross at a point interior to
+     * both.
+     */
+    static boolean crosses(double ax, double ay, double bx, double by, double cx, double cy, double dx, double dy) {
+        final double d1 = orientation(cx, cy, dx, dy, ax, ay);
+        final double d2 = orientation(cx, cy, dx, dy, bx, by);
+        final double d3 = orientation(ax, ay, bx, by, cx, cy);
+        final double d4 = orientation(ax, ay, bx, by, dx, dy);
+        return ((d1 > 0d && d2 < 0d) || (d1 < 0d && d2 > 0d)) &&
+               ((d3 > 0d && d4 < 0d) || (d3 < 0d && d4 > 0d));
+    }
+
+    /**
+     * Returns <code>true</code> if the segments share at least one point.
+     */
+    static boolean intersects(double ax, double ay, double bx, double by, double cx, double cy, double dx, double dy) {
+        return crosses(ax, ay, bx, by, cx, cy, dx, dy) ||
+               onSegment(cx, cy, dx, dy, ax, ay) ||
+               onSegment(cx, cy, dx, dy, bx, by) ||
+               onSegment(ax, ay, bx, by, cx, cy) ||
+               onSegment(ax, ay, bx, by, dx, dy);
+    }
+
+    private static double distanceSq(double px, double py, double ax, double ay, double bx, double by) {
+        final double dx = bx-ax;
+        final double dy = by-ay;
+        final double len2 = dx*dx + dy*dy;
+        double t = (len2 > 0d) ? ((px-ax)*dx + (py-ay)*dy) / len2 : 0d;
+        if(t < 0d)
+            t = 0d;
+        else if(t > 1d)
+            t = 1d;
+        final double ex = ax + t*dx - px;
+        final double ey = ay + t*dy - py;
+        return ex*ex + ey*ey;
+    }
+
+    /**************************************************************************/
+
+    /**
+     * A geometry in the calculator's memory. Points and linestrings are
+     * represented as a single ring; rings are not required to be closed, the
+     * closing edge is implied.
+     */
+    final static class Geom {
+        /** the geometry type, one of the <code>GEOM_TYPE_*</code> constants */
+        final int type;
+        final int dimension;
+        /** the type of each part; point, linestring or polygon */
+        final int[] kinds;
+        /** the rings of each part, coordinates are interleaved */
+        final double[][][] parts;
+
+        final double minX;
+        final double minY;
+        final double maxX;
+        final double maxY;
+        final boolean hasPoints;
+        final boolean hasEdges;
+
+        Prepared prepared;
+
+        Geom(int type, int dimension, int[] kinds, double[][][] parts) {
+            this.type = type;
+            this.dimension = dimension;
+            this.kinds = kinds;
+            this.parts = parts;
+
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            boolean hasPoints = false;
+            boolean hasEdges = false;
+            for(int i = 0; i < kinds.length; i++) {
+                hasPoints |= (kinds[i] == SpatialCalculator.GEOM_TYPE_POINT);
+                for(double[] ring : parts[i]) {
+                    hasEdges |= (kinds[i] != SpatialCalculator.GEOM_TYPE_POINT && ring.length >= 2*dimension);
+                    for(int j = 0; j < ring.length; j += dimension) {
+                        minX = Math.min(minX, ring[j]);
+                        minY = Math.min(minY, ring[j+1]);
+                        maxX = Math.max(maxX, ring[j]);
+                        maxY = Math.max(maxY, ring[j+1]);
+                    }
+                }
+            }
+            final boolean empty = (minX > maxX);
+            this.minX = empty ? Double.NaN : minX;
+            this.minY = empty ? Double.NaN : minY;
+            this.maxX = empty ? Double.NaN : maxX;
+            this.maxY = empty ? Double.NaN : maxY;
+            this.hasPoints = hasPoints;
+            this.hasEdges = hasEdges;
+        }
+    }
+
+    /**
+     * The edges of a geometry, bucketed into horizontal strips of equal
+     * height. An edge is recorded in every strip that its vertical extent
+     * overlaps.
+     */
+    final static class Prepared {
+        /** edge endpoints, <code>x0, y0, x1, y1</code> */
+        final double[] edges;
+        /** whether or not the edge belongs to a polygon ring */
+        final boolean[] areal;
+        final int numEdges;
+        final boolean hasAreal;
+
+        final double minX;
+        final double minY;
+        final double maxX;
+        final double maxY;
+        final int numStrips;
+        final double stripHeight;
+        /** the offset of each strip into <code>stripEdges</code> */
+        final int[] stripOffsets;
+        final int[] stripEdges;
+
+        Prepared(Geom geom) {
+            final int dimension = geom.dimension;
+
+            int numEdges = 0;
+            for(int i = 0; i < geom.kinds.length; i++) {
+                if(geom.kinds[i] == SpatialCalculator.GEOM_TYPE_POINT)
+                    continue;
+                for(double[] ring : geom.parts[i])
+                    numEdges += numEdges(ring, dimension, geom.kinds[i]);
+            }
+
+            this.edges = new double[numEdges*4];
+            this.areal = new boolean[numEdges];
+            this.numEdges = numEdges;
+
+            int idx = 0;
+            boolean hasAreal = false;
+            for(int i = 0; i < geom.kinds.length; i++) {
+                if(geom.kinds[i] == SpatialCalculator.GEOM_TYPE_POINT)
+                    continue;
+                final boolean polygon = (geom.kinds[i] == SpatialCalculator.GEOM_TYPE_POLYGON);
+                hasAreal |= polygon;
+                for(double[] ring : geom.parts[i]) {
+                    final int n = numEdges(ring, dimension, geom.kinds[i]);
+                    final int numPoints = ring.length/dimension;
+                    for(int j = 0; j < n; j++) {
+                        final int k = (j+1)%numPoints;
+                        this.edges[idx*4] = ring[j*dimension];
+                        this.edges[idx*4+1] = ring[j*dimension+1];
+                        this.edges[idx*4+2] = ring[k*dimension];
+                        this.edges[idx*4+3] = ring[k*dimension+1];
+                        this.areal[idx] = polygon;
+                        idx++;
+                    }
+                }
+            }
+            this.hasAreal = hasAreal;
+
+            this.minX = geom.minX;
+            this.minY = geom.minY;
+            this.maxX = geom.maxX;
+            this.maxY = geom.maxY;
+
+            final double height = this.maxY-this.minY;
+            this.numStrips = (height > 0d) ? MathUtils.clamp(numEdges/4, 1, MAX_STRIPS) : 1;
+            this.stripHeight = (height > 0d) ? height/this.numStrips : 1d;
+
+            // counting sort of the edges into the strips
+            this.stripOffsets = new int[this.numStrips+1];
+            for(int i = 0; i < numEdges; i++) {
+                final int s1 = this.strip(Math.max(this.edges[i*4+1], this.edges[i*4+3]));
+                for(int s = this.strip(Math.min(this.edges[i*4+1], this.edges[i*4+3])); s <= s1; s++)
+                    this.stripOffsets[s+1]++;
+            }
+            for(int s = 0; s < this.numStrips; s++)
+                this.stripOffsets[s+1] += this.stripOffsets[s];
+            this.stripEdges = new int[this.stripOffsets[this.numStrips]];
+            final int[] fill = Arrays.copyOf(this.stripOffsets, this.numStrips);
+            for(int i = 0; i < numEdges; i++) {
+                final int s1 = this.strip(Math.max(this.edges[i*4+1], this.edges[i*4+3]));
+                for(int s = this.strip(Math.min(this.edges[i*4+1], this.edges[i*4+3])); s <= s1; s++)
+                    this.stripEdges[fill[s]++] = i;
+            }
+        }
+
+        private static int numEdges(double[] ring, int dimension, int kind) {
+            final int numPoints = ring.length/dimension;
+            if(numPoints < 2)
+                return 0;
+            if(kind != SpatialCalculator.GEOM_TYPE_POLYGON)
+                return numPoints-1;
+            // implied closing edge
+            final boolean closed = (ring[0] == ring[(numPoints-1)*dimension] && ring[1] == ring[(numPoints-1)*dimension+1]);
+            return closed ? numPoints-1 : numPoints;
+        }
+
+        private int strip(double y) {
+            return MathUtils.clamp((int)((y-this.minY)/this.stripHeight), 0, this.numStrips-1);
+        }
+
+        /**
+         * Locates the point relative to the edges, using the even-odd rule
+         * over the polygon rings.
+         *
+         * @return  {@link #INTERIOR}, {@link #BOUNDARY} if the point lies on
+         *          any edge or {@link #EXTERIOR}
+         */
+        int locate(double x, double y) {
+            if(x < this.minX || x > this.maxX || y < this.minY || y > this.maxY)
+                return EXTERIOR;
+
+            final int s = this.strip(y);
+            boolean inside = false;
+            for(int i = this.stripOffsets[s]; i < this.stripOffsets[s+1]; i++) {
+                final int e = this.stripEdges[i];
+                final double x0 = this.edges[e*4];
+                final double y0 = this.edges[e*4+1];
+                final double x1 = this.edges[e*4+2];
+                final double y1 = this.edges[e*4+3];
+                if(onSegment(x0, y0, x1, y1, x, y))
+                    return BOUNDARY;
+                if(this.areal[e] && ((y0 > y) != (y1 > y)) && (x < x0 + (y-y0)*(x1-x0)/(y1-y0)))
+                    inside = !inside;
+            }
+            return inside ? INTERIOR : EXTERIOR;
+        }
+
+        /**
+         * Returns <code>true</code> if the segment shares at least one point
+         * with an edge.
+         */
+        boolean intersects(double ax, double ay, double bx, double by) {
+            if(Math.max(ax, bx) < this.minX || Math.min(ax, bx) > this.maxX ||
+               Math.max(ay, by) < this.minY || Math.min(ay, by) > this.maxY) {
+
+                return false;
+            }
+            final double minX = Math.min(ax, bx);
+            final double maxX = Math.max(ax, bx);
+            final double minY = Math.min(ay, by);
+            final double maxY = Math.max(ay, by);
+            final int s1 = this.strip(maxY);
+            for(int s = this.strip(minY); s <= s1; s++) {
+                for(int i = this.stripOffsets[s]; i < this.stripOffsets[s+1]; i++) {
+                    final int e = this.stripEdges[i];
+                    final double x0 = this.edges[e*4];
+                    final double y0 = this.edges[e*4+1];
+                    final double x1 = this.edges[e*4+2];
+                    final double y1 = this.edges[e*4+3];
+                    if(Math.max(x0, x1) < minX || Math.min(x0, x1) > maxX || Math.max(y0, y1) < minY || Math.min(y0, y1) > maxY)
+                        continue;
+                    if(HeapGeometryEngine.intersects(ax, ay, bx, by, x0, y0, x1, y1))
+                        return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns <code>true</code> if the segment crosses an edge at a point
+         * interior to both.
+         */
+        boolean crosses(double ax, double ay, double bx, double by) {
+            if(Math.max(ax, bx) < this.minX || Math.min(ax, bx) > this.maxX ||
+               Math.max(ay, by) < this.minY || Math.min(ay, by) > this.maxY) {
+
+                return false;
+            }
+            final double minX = Math.min(ax, bx);
+            final double maxX = Math.max(ax, bx);
+            final double minY = Math.min(ay, by);
+            final double maxY = Math.max(ay, by);
+            final int s1 = this.strip(maxY);
+            for(int s = this.strip(minY); s <= s1; s++) {
+                for(int i = this.stripOffsets[s]; i < this.stripOffsets[s+1]; i++) {
+                    final int e = this.stripEdges[i];
+                    final double x0 = this.edges[e*4];
+                    final double y0 = this.edges[e*4+1];
+                    final double x1 = this.edges[e*4+2];
+                    final double y1 = this.edges[e*4+3];
+                    if(Math.max(x0, x1) < minX || Math.min(x0, x1) > maxX || Math.max(y0, y1) < minY || Math.min(y0, y1) > maxY)
+                        continue;
+                    if(HeapGeometryEngine.crosses(ax, ay, bx, by, x0, y0, x1, y1))
+                        return true;
+                }
+            }
+            return false;
+        }
+    }
+}
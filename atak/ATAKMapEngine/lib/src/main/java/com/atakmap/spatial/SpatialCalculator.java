@@ -79,6 +79,20 @@ import com.atakmap.map.layer.feature.geometry.Polygon;
  * batch mode, instructions may only be issued to the calculator on the thread
  * that the batch was started in.
  * 
+ * <H2>In-heap Memory</H2>
+ * 
+ * <P>A calculator built with {@link Builder#inHeap()} holds its geometries in
+ * the Java heap rather than in a SpatiaLite database. Geometry creation and
+ * update, the {@link #intersects(long, long)} and {@link #contains(long, long)}
+ * predicates, non topology preserving simplification and the buffering of
+ * points are evaluated directly against the in-heap geometries, avoiding a
+ * statement execution and blob marshaling per instruction. The first geometry
+ * of a predicate is prepared on first use, so repeated tests against the same
+ * geometry (e.g. a geofence) only visit the edges near the other geometry.
+ * The remaining constructive operations (intersection, union, difference,
+ * topology preserving simplification and buffering of other geometries) are
+ * evaluated by an in-memory SpatiaLite database that is created on first use.
+ * 
  * @author Developer
  */
 public final class SpatialCalculator {
@@ -109,6 +123,14 @@ public final class SpatialCalculator {
     public final static int GEOM_TYPE_MULTIPOLYGON = 0x06;
     public final static int GEOM_TYPE_GEOMETRYCOLLECTION = 0x07;
 
+    private final static int OVERLAY_INTERSECTION = 0;
+    private final static int OVERLAY_UNION = 1;
+    private final static int OVERLAY_UNION_WITH_BUFFER = 2;
+    private final static int OVERLAY_UNARY_UNION = 3;
+    private final static int OVERLAY_DIFFERENCE = 4;
+    private final static int OVERLAY_SIMPLIFY_PRESERVE_TOPOLOGY = 5;
+    private final static int OVERLAY_BUFFER = 6;
+
     static {
         // spawn a thread to clean up any old files
         cleanup(DEFAULT_TMP_DIR, getRuntimeTempDir(), false);
@@ -152,6 +174,14 @@ public final class SpatialCalculator {
     private StatementIface updateGeomBlob;
     private StatementIface updateGeomWkt;
 
+    /** the calculator memory, if held in the heap */
+    private HeapGeometryEngine heap;
+    /**
+     * Evaluates the operations on in-heap geometries that are not computed in
+     * the heap; created on first use.
+     */
+    private SpatialCalculator overlay;
+
     /**
      * Marking this constructor for removal.
      * @deprecated use the Builder instead
@@ -210,6 +240,10 @@ public final class SpatialCalculator {
      */
     private SpatialCalculator(Builder builder) {
         this.dimension = builder.dimension;
+        if(builder.inHeap) {
+            this.heap = new HeapGeometryEngine();
+            return;
+        }
         File tempDir = getRuntimeTempDir();
         boolean memory = builder.inMemory | (tempDir == null);
         try{
@@ -355,6 +389,11 @@ public final class SpatialCalculator {
         this.arr2 = null;
         this.wkt = null;
         this.quad = null;
+
+        if(this.heap != null)
+            this.heap.clearCache();
+        if(this.overlay != null)
+            this.overlay.clearCache();
     }
 
     /**
@@ -363,6 +402,14 @@ public final class SpatialCalculator {
      * undefined results.
      */
     public synchronized void dispose() {
+        if(this.overlay != null) {
+            this.overlay.dispose();
+            this.overlay = null;
+        }
+        if(this.heap != null) {
+            this.heap.dispose();
+            this.disposed = true;
+        }
         if(this.database != null) {
             stmtClose(insertGeomWkt);
             stmtClose(insertGeomBlob);
@@ -432,6 +479,10 @@ public final class SpatialCalculator {
      * must be considered invalid.
      */
     public void clear() {
+        if(this.heap != null) {
+            this.heap.clear();
+            return;
+        }
         if(this.clear == null)
             this.clear = this.database.compileStatement("DELETE FROM Calculator");
         this.clear.execute();
@@ -451,6 +502,10 @@ public final class SpatialCalculator {
      * calculator on the thread that the batch was started on.
      */
     public void beginBatch() {
+        if(this.heap != null) {
+            this.heap.beginBatch();
+            return;
+        }
         this.database.beginTransaction();
     }
     
@@ -463,6 +518,10 @@ public final class SpatialCalculator {
      *                  <code>false</code> to undo.
      */
     public void endBatch(boolean commit) {
+        if(this.heap != null) {
+            this.heap.endBatch(commit);
+            return;
+        }
         if(commit)
             this.database.setTransactionSuccessful();
         this.database.endTransaction();
@@ -482,6 +541,10 @@ public final class SpatialCalculator {
      * @return  A handle to the point created in the calculator's memory.
      */
     public long createPoint(GeoPoint point) {
+        if(this.heap != null) {
+            final double z = (point.isAltitudeValid()) ? point.getAltitude() : 0.0d;
+            return this.heap.create(HeapGeometryEngine.point(point.getLongitude(), point.getLatitude(), z, this.dimension));
+        }
         Point pt;
         if (this.dimension == 3) {
             double z = point.isAltitudeValid() ? point.getAltitude() : 0.0d;
@@ -506,6 +569,9 @@ public final class SpatialCalculator {
      * @return  A handle to the point created in the calculator's memory.
      */
     public long createPoint(Point point) {
+        if(this.heap != null)
+            return this.heap.create(HeapGeometryEngine.point(point.getX(), point.getY(), point.getZ(), this.dimension));
+
         final double[] bindArgs = new double[this.dimension];
 
         bindArgs[0] = point.getX();
@@ -561,6 +627,9 @@ public final class SpatialCalculator {
     }
         
     private long createLineString(int numPoints, Iterator<GeoPoint> points) {
+        if(this.heap != null)
+            return this.heap.create(HeapGeometryEngine.lineString(numPoints, points));
+
         LineString line = new LineString(2);
         GeoPoint geo;
         while(points.hasNext()) {
@@ -627,6 +696,9 @@ public final class SpatialCalculator {
      * @return  A handle to the polygon created in the calculator's memory.
      */
     public long createPolygon(Collection<GeoPoint> points, Collection<Collection<GeoPoint>> innerRings) {
+        if(this.heap != null)
+            return this.heap.create(HeapGeometryEngine.polygon(points, innerRings));
+
         Polygon polygon = new Polygon(2);
         LineString ring;
         
@@ -651,6 +723,9 @@ public final class SpatialCalculator {
     }
 
     public long createGeometry(byte[] blob) {
+        if(this.heap != null)
+            return this.heap.create(HeapGeometryEngine.fromBlob(blob));
+
         try {
             if(this.insertGeomBlob == null)
                 this.insertGeomBlob = this.database.compileStatement("INSERT INTO Calculator (geom) VALUES(?)");
@@ -666,10 +741,15 @@ public final class SpatialCalculator {
     }
 
     public long createGeometry(Geometry geometry) {
+        if(this.heap != null)
+            return this.heap.create(HeapGeometryEngine.fromGeometry(geometry));
         return this.createGeometry(createGeometryBlob(geometry));
     }
 
     public long createWkbGeometry(byte[] blob) {
+        if(this.heap != null)
+            return this.heap.create(HeapGeometryEngine.fromGeometry(GeometryFactory.parseWkb(blob)));
+
         try {
             if(this.insertGeomWkb == null)
                 this.insertGeomWkb = this.database.compileStatement("INSERT INTO Calculator (geom) VALUES(GeomFromWkb(?, 4326))");
@@ -685,6 +765,9 @@ public final class SpatialCalculator {
     }
 
     public long createGeometry(String wkt) {
+        if(this.heap != null)
+            return this.heap.create(HeapGeometryEngine.fromGeometry(GeometryFactory.parseWkt(wkt)));
+
         try {
             if(this.insertGeomWkt == null)
                 this.insertGeomWkt = this.database.compileStatement("INSERT INTO Calculator (geom) VALUES(GeomFromText(?, 4326))");
@@ -712,6 +795,8 @@ public final class SpatialCalculator {
      * @return  A handle to the polygon created in the calculator's memory.
      */
     public long createPolygon(GeoPoint a, GeoPoint b, GeoPoint c, GeoPoint d) {
+        if(this.heap != null)
+            return this.heap.create(HeapGeometryEngine.quad(a, b, c, d));
         return this.createGeometry(this.createQuadBlob(a, b, c, d));
     }
     
@@ -721,6 +806,10 @@ public final class SpatialCalculator {
      * @param handle    The handle to the geometry in the calculator's memory.
      */
     public void deleteGeometry(long handle) {
+        if(this.heap != null) {
+            this.heap.delete(handle);
+            return;
+        }
         try {
             if(this.deleteGeom == null)
                 this.deleteGeom = this.database.compileStatement("DELETE FROM Calculator WHERE id = ?");
@@ -749,6 +838,10 @@ public final class SpatialCalculator {
      * @see #GEOM_TYPE_GEOMETRYCOLLECTION
      */
     public int getGeometryType(long handle) {
+        if(this.heap != null) {
+            final HeapGeometryEngine.Geom geom = this.heap.get(handle);
+            return (geom != null) ? geom.type : 0;
+        }
         CursorIface result = null;
         try {
             if(this.arr1 == null)
@@ -776,6 +869,8 @@ public final class SpatialCalculator {
      * @see <a href=http://www.gaia-gis.it/gaia-sins/BLOB-Geometry.html>BLOB-Geometry</a>
      */
     public byte[] getGeometryAsBlob(long handle) {
+        if(this.heap != null)
+            return HeapGeometryEngine.toBlob(this.heap.get(handle));
         CursorIface result = null;
         try {
             if(this.arr1 == null)
@@ -802,6 +897,8 @@ public final class SpatialCalculator {
      *          Well-Known Text string        
      */
     public String getGeometryAsWkt(long handle) {
+        if(this.heap != null)
+            return HeapGeometryEngine.toWkt(this.heap.get(handle));
         CursorIface result = null;
         try {
             if(this.arr1 == null)
@@ -825,6 +922,8 @@ public final class SpatialCalculator {
      * @return  The specified geometry from the calculator's memory
      */
     public Geometry getGeometry(long handle) {
+        if(this.heap != null)
+            return HeapGeometryEngine.toGeometry(this.heap.get(handle));
         CursorIface result = null;
         try {
             if(this.arr1 == null)
@@ -850,6 +949,8 @@ public final class SpatialCalculator {
      *          <code>false</code> otherwise.
      */
     public boolean intersects(long geom1, long geom2) {
+        if(this.heap != null)
+            return HeapGeometryEngine.intersects(this.heap.get(geom1), this.heap.get(geom2));
         CursorIface result = null;
         try {
             if(this.arr2 == null)
@@ -877,6 +978,8 @@ public final class SpatialCalculator {
      *          <code>geom2</code>, <code>false</code> otherwise.
      */
     public boolean contains(long geom1, long geom2) {
+        if(this.heap != null)
+            return HeapGeometryEngine.contains(this.heap.get(geom1), this.heap.get(geom2));
         CursorIface result = null;
         try {
             if(this.arr2 == null)
@@ -904,6 +1007,8 @@ public final class SpatialCalculator {
      *          specified geometries.
      */
     public long intersection(long geom1, long geom2) {
+        if(this.heap != null)
+            return this.heap.create(this.overlay(OVERLAY_INTERSECTION, geom1, geom2, 0d));
         try {
             if(this.intersectionInsert == null)
                 this.intersectionInsert = this.database.compileStatement("INSERT INTO Calculator (geom) SELECT Intersection((SELECT geom FROM Calculator WHERE id = ?), (SELECT geom FROM Calculator WHERE id = ?))");
@@ -933,6 +1038,10 @@ public final class SpatialCalculator {
      *                  overwritten with the result.
      */ 
     public void intersection(long geom1, long geom2, long result) {
+        if(this.heap != null) {
+            this.heap.update(result, this.overlay(OVERLAY_INTERSECTION, geom1, geom2, 0d));
+            return;
+        }
         try {
             if(this.intersectionUpdate == null)
                 this.intersectionUpdate = this.database.compileStatement("UPDATE Calculator SET geom = Intersection((SELECT geom FROM Calculator WHERE id = ?), (SELECT geom FROM Calculator WHERE id = ?)) WHERE id = ?");
@@ -958,6 +1067,8 @@ public final class SpatialCalculator {
      *          geometries.
      */
     public long union(long geom1, long geom2) {
+        if(this.heap != null)
+            return this.heap.create(this.overlay(OVERLAY_UNION, geom1, geom2, 0d));
         try {
             if(this.unionInsert == null)
                 this.unionInsert = this.database.compileStatement("INSERT INTO Calculator (geom) SELECT GUnion(geom) FROM Calculator WHERE id IN (?, ?)");
@@ -987,6 +1098,10 @@ public final class SpatialCalculator {
      *                  overwritten with the result.
      */ 
     public void union(long geom1, long geom2, long result) {
+        if(this.heap != null) {
+            this.heap.update(result, this.overlay(OVERLAY_UNION, geom1, geom2, 0d));
+            return;
+        }
         try {
             if(this.unionUpdate == null)
                 this.unionUpdate = this.database.compileStatement("UPDATE Calculator SET geom = GUnion((SELECT geom FROM Calculator WHERE id = ?), (SELECT geom FROM Calculator WHERE id = ?)) WHERE id = ?");
@@ -1016,6 +1131,10 @@ public final class SpatialCalculator {
      *                  overwritten with the result.
      */ 
     public void unionWithBuffer(long geom1, long geom2, double dist, long result) {
+        if(this.heap != null) {
+            this.heap.update(result, this.overlay(OVERLAY_UNION_WITH_BUFFER, geom1, geom2, dist));
+            return;
+        }
         try {
             if(this.unionUpdate == null)
                 this.unionUpdate = this.database.compileStatement("UPDATE Calculator SET geom = GUnion((SELECT geom FROM Calculator WHERE id = ?), Buffer((SELECT geom FROM Calculator WHERE id = ?),?)) WHERE id = ?");
@@ -1039,6 +1158,8 @@ public final class SpatialCalculator {
      * @return  The unary union result
      */
     public long unaryUnion(long geom) {
+        if(this.heap != null)
+            return this.heap.create(this.overlay(OVERLAY_UNARY_UNION, geom, 0L, 0d));
         try {
             if(this.unaryUnionInsert == null)
                 this.unaryUnionInsert = this.database.compileStatement("INSERT INTO Calculator (geom) SELECT UnaryUnion(geom) FROM Calculator WHERE id  = ?");
@@ -1061,6 +1182,10 @@ public final class SpatialCalculator {
      * @return  The unary union result
      */
     public void unaryUnion(long geom, long result) {
+        if(this.heap != null) {
+            this.heap.update(result, this.overlay(OVERLAY_UNARY_UNION, geom, 0L, 0d));
+            return;
+        }
         try {
             if(this.unaryUnionUpdate == null)
                 this.unaryUnionUpdate = this.database.compileStatement("UPDATE Calculator SET geom = UnaryUnion((SELECT geom FROM Calculator WHERE id = ?)) WHERE id = ?");
@@ -1084,6 +1209,8 @@ public final class SpatialCalculator {
      *          specified geometries.
      */
     public long difference(long geom1, long geom2) {
+        if(this.heap != null)
+            return this.heap.create(this.overlay(OVERLAY_DIFFERENCE, geom1, geom2, 0d));
         try {
             if(this.differenceInsert == null)
                 this.differenceInsert = this.database.compileStatement("INSERT INTO Calculator (geom) SELECT Difference((SELECT geom FROM Calculator WHERE id = ?), (SELECT geom FROM Calculator WHERE id = ?))");
@@ -1113,6 +1240,10 @@ public final class SpatialCalculator {
      *                  overwritten with the result.
      */ 
     public void difference(long geom1, long geom2, long result) {
+        if(this.heap != null) {
+            this.heap.update(result, this.overlay(OVERLAY_DIFFERENCE, geom1, geom2, 0d));
+            return;
+        }
         try {
             if(this.differenceUpdate == null)
                 this.differenceUpdate = this.database.compileStatement("UPDATE Calculator SET geom = Difference((SELECT geom FROM Calculator WHERE id = ?), (SELECT geom FROM Calculator WHERE id = ?)) WHERE id = ?");
@@ -1140,6 +1271,8 @@ public final class SpatialCalculator {
      *          specified geometry.
      */
     public long simplify(long handle, double tolerance, boolean preserveTopology) {
+        if(this.heap != null)
+            return this.heap.create(this.heapSimplify(handle, tolerance, preserveTopology));
         StatementIface stmt = null;
         try {
             if(preserveTopology) {
@@ -1182,6 +1315,10 @@ public final class SpatialCalculator {
      *                          the result.
      */ 
     public void simplify(long handle, double tolerance, boolean preserveTopology, long result) {
+        if(this.heap != null) {
+            this.heap.update(result, this.heapSimplify(handle, tolerance, preserveTopology));
+            return;
+        }
         StatementIface stmt = null;
         try {
             if(preserveTopology) {
@@ -1238,6 +1375,15 @@ public final class SpatialCalculator {
     }
     
     private Collection<GeoPoint> simplify(int numPoints, Iterator<GeoPoint> points, double tolerance, boolean preserveTopology) {
+        if(this.heap != null && !preserveTopology) {
+            final HeapGeometryEngine.Geom line = HeapGeometryEngine.lineString(numPoints, points);
+            final double[] simplified = HeapGeometryEngine.simplify(line.parts[0][0], 2, tolerance);
+            Collection<GeoPoint> retval = new ArrayList<GeoPoint>(simplified.length/2);
+            for(int i = 0; i < simplified.length; i += 2)
+                retval.add(new GeoPoint(simplified[i+1], simplified[i]));
+            return retval;
+        }
+
         long handle = 0L;
         try {
             handle = this.createLineString(numPoints, points);
@@ -1264,6 +1410,8 @@ public final class SpatialCalculator {
      *          geometry.
      */    
     public long buffer(long handle, double dist) {
+        if(this.heap != null)
+            return this.heap.create(this.heapBuffer(handle, dist));
         try {
             if(this.bufferInsert == null)
                 this.bufferInsert = this.database.compileStatement("INSERT INTO Calculator (geom) SELECT Buffer((SELECT geom FROM Calculator WHERE id = ?), ?)");
@@ -1294,6 +1442,10 @@ public final class SpatialCalculator {
      *                  the result.
      */ 
     public void buffer(long handle, double dist, long result) {
+        if(this.heap != null) {
+            this.heap.update(result, this.heapBuffer(handle, dist));
+            return;
+        }
         try {
             if(this.bufferUpdate == null)
                 this.bufferUpdate = this.database.compileStatement("UPDATE Calculator SET geom = Buffer((SELECT geom FROM Calculator WHERE id = ?), ?) WHERE id = ?");
@@ -1309,6 +1461,74 @@ public final class SpatialCalculator {
         }
     }
 
+    private HeapGeometryEngine.Geom heapSimplify(long handle, double tolerance, boolean preserveTopology) {
+        if(preserveTopology)
+            return this.overlay(OVERLAY_SIMPLIFY_PRESERVE_TOPOLOGY, handle, 0L, tolerance);
+        return HeapGeometryEngine.simplify(this.heap.get(handle), tolerance);
+    }
+
+    private HeapGeometryEngine.Geom heapBuffer(long handle, double dist) {
+        final HeapGeometryEngine.Geom geom = this.heap.get(handle);
+        if(geom != null && geom.type == GEOM_TYPE_POINT && dist > 0d)
+            return HeapGeometryEngine.bufferPoint(geom, dist);
+        return this.overlay(OVERLAY_BUFFER, handle, 0L, dist);
+    }
+
+    /**
+     * Evaluates an operation on in-heap geometries that is not computed in
+     * the heap by transferring the geometries to a SpatiaLite backed
+     * calculator.
+     * 
+     * @return  The result of the operation
+     */
+    private HeapGeometryEngine.Geom overlay(int op, long geom1, long geom2, double arg) {
+        final byte[] blob1 = HeapGeometryEngine.toBlob(this.heap.get(geom1));
+        final byte[] blob2 = (geom2 != 0L) ? HeapGeometryEngine.toBlob(this.heap.get(geom2)) : null;
+        if(blob1 == null || (geom2 != 0L && blob2 == null))
+            return null;
+
+        if(this.overlay == null) {
+            Builder builder = new Builder().inMemory();
+            builder.dimension = this.dimension;
+            this.overlay = builder.build();
+        }
+
+        try {
+            final long a = this.overlay.createGeometry(blob1);
+            final long b = (blob2 != null) ? this.overlay.createGeometry(blob2) : 0L;
+            final long result;
+            switch(op) {
+                case OVERLAY_INTERSECTION :
+                    result = this.overlay.intersection(a, b);
+                    break;
+                case OVERLAY_UNION :
+                    result = this.overlay.union(a, b);
+                    break;
+                case OVERLAY_UNION_WITH_BUFFER :
+                    this.overlay.buffer(b, arg, b);
+                    result = this.overlay.union(a, b);
+                    break;
+                case OVERLAY_UNARY_UNION :
+                    result = this.overlay.unaryUnion(a);
+                    break;
+                case OVERLAY_DIFFERENCE :
+                    result = this.overlay.difference(a, b);
+                    break;
+                case OVERLAY_SIMPLIFY_PRESERVE_TOPOLOGY :
+                    result = this.overlay.simplify(a, arg, true);
+                    break;
+                case OVERLAY_BUFFER :
+                    result = this.overlay.buffer(a, arg);
+                    break;
+                default :
+                    throw new IllegalArgumentException("op=" + op);
+            }
+            return HeapGeometryEngine.fromBlob(this.overlay.getGeometryAsBlob(result));
+        } finally {
+            this.overlay.clear();
+        }
+    }
+
     /**************************************************************************/
     // Object
     
@@ -1324,7 +1544,8 @@ public final class SpatialCalculator {
     /**************************************************************************/
     
     private String createLineStringWkt(LineString lineString) {
-        if(lineString.getNumPoints() < 1)
+        final double[] xy = lineString.getPoints(2);
+        if(xy.length < 2)
             throw new IllegalArgumentException();
         
         try {
@@ -1332,14 +1553,14 @@ public final class SpatialCalculator {
                 this.wkt = new StringBuilder();
             this.wkt = new StringBuilder("LINESTRING(");
                         
-            this.wkt.append(lineString.getX(0));
+            this.wkt.append(xy[0]);
             this.wkt.append(" ");
-            this.wkt.append(lineString.getY(0));
-            for(int i = 1; i < lineString.getNumPoints(); i++) {
+            this.wkt.append(xy[1]);
+            for(int i = 2; i < xy.length; i += 2) {
                 this.wkt.append(", ");
-                this.wkt.append(lineString.getX(i));
+                this.wkt.append(xy[i]);
                 this.wkt.append(" ");
-                this.wkt.append(lineString.getY(i));
+                this.wkt.append(xy[i+1]);
             }
             this.wkt.append(")");
             return this.wkt.toString();
@@ -1376,18 +1597,14 @@ public final class SpatialCalculator {
         
         buffer.putInt(1+innerRings.size());
 
-        buffer.putInt(extRing.getNumPoints());        
-        for(int i = 0; i < extRing.getNumPoints(); i++) {
-            buffer.putDouble(extRing.getX(i));
-            buffer.putDouble(extRing.getY(i));            
-        }
+        final double[] extPoints = extRing.getPoints(2);
+        buffer.putInt(extPoints.length/2);
+        putDoubles(buffer, extPoints);
         
         for(LineString innerRing : innerRings) {
-            buffer.putInt(innerRing.getNumPoints());
-            for(int i = 0; i < innerRing.getNumPoints(); i++) {
-                buffer.putDouble(innerRing.getX(i));
-                buffer.putDouble(innerRing.getY(i));
-            }            
+            final double[] innerPoints = innerRing.getPoints(2);
+            buffer.putInt(innerPoints.length/2);
+            putDoubles(buffer, innerPoints);
         }
 
         buffer.put((byte)0xFE);
@@ -1395,6 +1612,15 @@ public final class SpatialCalculator {
         return buffer.array();
     }
 
+    /**
+     * Bulk puts the specified values into the buffer, in the buffer's byte
+     * order, and advances the buffer's position.
+     */
+    private static void putDoubles(ByteBuffer buffer, double[] values) {
+        buffer.asDoubleBuffer().put(values);
+        buffer.position(buffer.position()+(values.length*8));
+    }
+
     private byte[] createQuadBlob(GeoPoint a, GeoPoint b, GeoPoint c, GeoPoint d) {
         if(this.quad == null)
             this.quad = new QuadBlob();
@@ -1483,6 +1709,10 @@ public final class SpatialCalculator {
      * @param points    The exterior ring of the polygon
      */
     public void updatePolygon(long handle, Collection<GeoPoint> points, Collection<Collection<GeoPoint>> innerRings) {
+        if(this.heap != null) {
+            this.heap.update(handle, HeapGeometryEngine.polygon(points, innerRings));
+            return;
+        }
         Polygon polygon = new Polygon(2);
         LineString ring;
         
@@ -1524,6 +1754,10 @@ public final class SpatialCalculator {
      * @return  A handle to the polygon created in the calculator's memory.
      */
     public void updatePolygon(long handle, GeoPoint a, GeoPoint b, GeoPoint c, GeoPoint d) {
+        if(this.heap != null) {
+            this.heap.update(handle, HeapGeometryEngine.quad(a, b, c, d));
+            return;
+        }
         this.updateGeometry(handle, this.createQuadBlob(a, b, c, d));
     }
 
@@ -1561,6 +1795,10 @@ public final class SpatialCalculator {
 
 
     public void updatePoint(long handle, GeoPoint point) {
+        if(this.heap != null) {
+            this.heap.update(handle, HeapGeometryEngine.point(point.getLongitude(), point.getLatitude(), 0d, 2));
+            return;
+        }
         try {
             if(this.updatePoint == null)
                 this.updatePoint = this.database.compileStatement("UPDATE Calculator SET geom = MakePoint(?, ?, 4326) WHERE id = ?");
@@ -1921,14 +2159,9 @@ public final class SpatialCalculator {
             final int numPoints = linestring.getNumPoints();
             if(blob != null) {
                 blob.putInt(numPoints);
-            
-                Point p = new Point(0, 0, 0);
-                p.setDimension(this.getDimension());
 
-                for(int i = 0; i < numPoints; i++) {
-                    linestring.get(p, i);
-                    this.encodePointClass(p, blob);
-                }
+                // points are coded as their coordinates, copied in bulk
+                putDoubles(blob, linestring.getPoints(this.dimension));
             }
             
             return 4 + (numPoints*this.getCodedPointSize());
@@ -2002,6 +2235,8 @@ public final class SpatialCalculator {
         private boolean inMemory = false;
         /** Indicator of 2D vs 3D points */
         private int dimension = 2;
+        /** Geometries held in the Java heap */
+        private boolean inHeap = false;
 
         public Builder inMemory() {
             this.inMemory = true;
@@ -2013,6 +2248,16 @@ public final class SpatialCalculator {
             return this;
         }
 
+        /**
+         * Holds the calculator's memory in the Java heap rather than in a
+         * SpatiaLite database. See the class documentation for the
+         * operations that are evaluated in-heap.
+         */
+        public Builder inHeap() {
+            this.inHeap = true;
+            return this;
+        }
+
         public SpatialCalculator build() {
             return new SpatialCalculator(this);
         }
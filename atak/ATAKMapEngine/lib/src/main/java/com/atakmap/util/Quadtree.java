@@ -184,8 +184,8 @@ public class Quadtree<T> {
             for(int i = 0; i < 4; i++) {
                 final double cnx = this.minX+((i%2)*halfWidth);
                 final double cxx = this.centerX+((i%2)*halfWidth);
-                final double cny = this.minY+((i/2f)*halfHeight);
-                final double cxy = this.centerY+((i/2f)*halfHeight);
+                final double cny = this.minY+((i/2)*halfHeight);
+                final double cxy = this.centerY+((i/2)*halfHeight);
                 
                 // if a child contains the object, add it to the child
                 if(cnx <= min.x &&
@@ -210,11 +210,32 @@ public class Quadtree<T> {
         for(int i = 0; i < 4; i++) {
             if(this.children[i] == null)
                 continue;
+            for(T object : this.children[i].objects)
+                this.root.objectToNode.put(object, this);
+            this.descendants -= this.children[i].objects.size();
             this.objects.addAll(this.children[i].objects);
             this.children[i] = null;
+            this.numChildren--;
         }
     }
 
+    private boolean isAttached() {
+        Quadtree<T> node = this;
+        while(node.parent != null) {
+            boolean found = false;
+            for(int i = 0; i < 4; i++) {
+                if(node.parent.children[i] == node) {
+                    found = true;
+                    break;
+                }
+            }
+            if(!found)
+                return false;
+            node = node.parent;
+        }
+        return true;
+    }
+
     public void add(T object) {
         PointD min = new PointD(0, 0);
         PointD max = new PointD(0, 0);
@@ -237,8 +258,8 @@ public class Quadtree<T> {
             for(int i = 0; i < 4; i++) {
                 cnx = this.minX+((i%2)*halfWidth);
                 cxx = this.centerX+((i%2)*halfWidth);
-                cny = this.minY+((i/2f)*halfHeight);
-                cxy = this.centerY+((i/2f)*halfHeight);
+                cny = this.minY+((i/2)*halfHeight);
+                cxy = this.centerY+((i/2)*halfHeight);
                 
                 // if a child contains the object, add it to the child
                 if(cnx <= minX &&
@@ -332,7 +353,8 @@ public class Quadtree<T> {
         if(!node.removeImpl(object, !inNode))
             return false;
 
-        if(inNode)
+        // the node may have been aggregated into its parent on removal
+        if(inNode && node.isAttached())
             node.add(object, objMin.x, objMin.y, objMax.x, objMax.y);
         else
             this.root.add(object, objMin.x, objMin.y, objMax.x, objMax.y);
@@ -340,6 +362,8 @@ public class Quadtree<T> {
     }
     
     public void clear() {
+        if(this.root == this)
+            this.objectToNode.clear();
         this.objects.clear();
         for(int i = 0; i < 4; i++)
             this.children[i] = null;
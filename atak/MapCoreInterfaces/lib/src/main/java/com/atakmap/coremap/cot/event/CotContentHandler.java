@@ -84,7 +84,7 @@ class CotContentHandler implements ContentHandler {
 
         // we get all the bs whitespace here too
         boolean isLegit = false;
-        for (int i = start; i < length; ++i) {
+        for (int i = start; i < start + length; ++i) {
             if (!Character.isWhitespace(ch[i])) {
                 isLegit = true;
                 break;
@@ -148,8 +148,13 @@ class CotContentHandler implements ContentHandler {
             final String qName,
             final Attributes attrs)
             throws SAXException {
+        // parsers that are not namespace aware (e.g. the desktop JVM)
+        // only report the qualified name
+        final String name = (localName == null || localName.isEmpty())
+                ? qName
+                : localName;
         try {
-            if (localName.equals("event") && _detailStack.size() == 0) {
+            if (name.equals("event") && _detailStack.size() == 0) {
                 editor.setType(_stringOrThrow(attrs, "type",
                         "event: missing type"));
                 editor.setVersion(_stringOrFallback(attrs, "version", "2.0"));
@@ -168,7 +173,7 @@ class CotContentHandler implements ContentHandler {
                 // these might not be clear in the case that a recycled event was passed in
                 editor.setPoint(CotPoint.ZERO);
                 editor.setDetail(null);
-            } else if (localName.equals("point") && _detailStack.size() == 0) {
+            } else if (name.equals("point") && _detailStack.size() == 0) {
                 // if (_parsedPoint || _eventEditor == null) {
                 // throw new CotIllegalException("illegal point tag");
                 // }
@@ -195,13 +200,13 @@ class CotContentHandler implements ContentHandler {
 
                 editor.setPoint(new CotPoint(lat, lon, hae, ce, le));
 
-            } else if (localName.equals("detail") && _detailStack.size() == 0
+            } else if (name.equals("detail") && _detailStack.size() == 0
                     && !_finishedDetail) {
                 CotDetail detail = _pushDetail("detail", attrs);
                 editor.setDetail(detail);
             } else if (_detailStack.size() > 0) {
                 // inside of detail tag just get DOM'ed out
-                _pushDetail(localName, attrs);
+                _pushDetail(name, attrs);
             }
         } catch (CotIllegalException e) {
             throw new SAXException(e.toString());
@@ -221,6 +226,8 @@ class CotContentHandler implements ContentHandler {
         detail.setElementName(name);
         for (int i = 0; i < attrs.getLength(); ++i) {
             String attrName = attrs.getLocalName(i);
+            if (attrName == null || attrName.isEmpty())
+                attrName = attrs.getQName(i);
             String attrValue = attrs.getValue(i);
             detail.setAttribute(attrName, attrValue);
         }
@@ -7,6 +7,8 @@ import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
 
@@ -35,6 +37,17 @@ public class CotEvent implements Parcelable {
 
     final static CotContentHandler cotHandler = new CotContentHandler();
 
+    /**
+     * The streaming parser keeps internal buffers, one instance per parsing
+     * thread.
+     */
+    private final static ThreadLocal<CotStreamParser> streamParser = new ThreadLocal<CotStreamParser>() {
+        @Override
+        protected CotStreamParser initialValue() {
+            return new CotStreamParser();
+        }
+    };
+
     public static final String TAG = "CotEvent";
     static PrintWriter fileWriter = null;
 
@@ -50,6 +63,10 @@ public class CotEvent implements Parcelable {
 
     // optional
     private CotDetail _detail;
+
+    // serialized <detail> element retained by a lazy parse, the detail tree
+    // is built from it on first access
+    private volatile byte[] _rawDetail;
     private String _opex;
     private String _qos;
     private String _access;
@@ -118,7 +135,11 @@ public class CotEvent implements Parcelable {
         if (event._point != null) {
             this._point = new CotPoint(event._point);
         }
-        if (event._detail != null) {
+        // the serialized form is immutable and may be shared
+        final byte[] rawDetail = event._rawDetail;
+        if (rawDetail != null) {
+            this._rawDetail = rawDetail;
+        } else if (event._detail != null) {
             this._detail = new CotDetail(event._detail);
         }
         if (event._time != null) {
@@ -263,7 +284,8 @@ public class CotEvent implements Parcelable {
         if (_qos != null && !_qos.equals("")) {
             optionalBits |= _OPTIONAL_QOS_BIT;
         }
-        if (_detail != null) {
+        final CotDetail detail = getDetail();
+        if (detail != null) {
             optionalBits |= _OPTIONAL_DETAIL_BIT;
         }
         if (_access != null) {
@@ -281,7 +303,7 @@ public class CotEvent implements Parcelable {
             dest.writeString(_access);
         }
         if ((optionalBits & _OPTIONAL_DETAIL_BIT) != 0) {
-            _detail.writeToParcel(dest, flags);
+            detail.writeToParcel(dest, flags);
         }
     }
 
@@ -334,14 +356,58 @@ public class CotEvent implements Parcelable {
     }
 
     /**
-     * Get this event root detail
+     * Get this event root detail. For an event obtained via
+     * {@link #parseLazy(String)} the detail tree is built on the first call.
      * 
      * @return
      */
     public CotDetail getDetail() {
+        if (_rawDetail != null)
+            materializeDetail();
         return _detail;
     }
 
+    /**
+     * Returns <code>true</code> if the event has a detail tag. Unlike
+     * {@link #getDetail()}, this never builds the detail tree of a lazily
+     * parsed event.
+     *
+     * @return true if there is a detail tag
+     */
+    public boolean hasDetail() {
+        return _rawDetail != null || _detail != null;
+    }
+
+    /**
+     * Retain the serialized detail element, replacing any detail tree.
+     */
+    void setRawDetail(final byte[] rawDetail) {
+        _detail = null;
+        _rawDetail = rawDetail;
+    }
+
+    private synchronized void materializeDetail() {
+        final byte[] raw = _rawDetail;
+        if (raw == null)
+            return;
+
+        CotDetail detail;
+        try {
+            detail = streamParser.get().parseDetail(raw);
+        } catch (CotStreamParser.UnsupportedContentException e) {
+            // hand the detail to the SAX parser wrapped in a minimal event
+            final CotEvent wrapper = cotHandler.parseXML(
+                    "<event version='2.0' uid='lazy' type='lazy' how='m-g'"
+                            + " time='" + _time + "' start='" + _start
+                            + "' stale='" + _stale + "'>"
+                            + new String(raw, StandardCharsets.UTF_8)
+                            + "</event>");
+            detail = wrapper.getDetail();
+        }
+        _detail = detail;
+        _rawDetail = null;
+    }
+
     /**
      * Find a detail element
      * Convenience method for {@link CotDetail#getFirstChildByName(int, String)}
@@ -351,9 +417,10 @@ public class CotEvent implements Parcelable {
      * @return CoT detail or null if not found
      */
     public CotDetail findDetail(int startIndex, String name) {
-        if (_detail == null)
+        final CotDetail detail = getDetail();
+        if (detail == null)
             return null;
-        return _detail.getFirstChildByName(startIndex, name);
+        return detail.getFirstChildByName(startIndex, name);
     }
 
     public CotDetail findDetail(String name) {
@@ -488,7 +555,11 @@ public class CotEvent implements Parcelable {
         if (_point != null) {
             _point.buildXml(b);
         }
-        if (_detail != null) {
+        final byte[] rawDetail = _rawDetail;
+        if (rawDetail != null) {
+            // never accessed, so the original serialization is still current
+            b.append(new String(rawDetail, StandardCharsets.UTF_8));
+        } else if (_detail != null) {
             _detail.buildXml(b);
         }
         b.append("</event>");
@@ -501,8 +572,106 @@ public class CotEvent implements Parcelable {
      * @return a CoT Event that can either be valid or invalid.
      */
     public static CotEvent parse(final String xml) {
-        CotEvent e = cotHandler.parseXML(xml);
+        CotEvent e;
+        try {
+            e = streamParser.get().parse(xml);
+        } catch (CotStreamParser.UnsupportedContentException ignored) {
+            e = cotHandler.parseXML(xml);
+        }
+        logInvalid(e, xml);
+        return e;
+    }
 
+    /**
+     * Parse a event from UTF-8 encoded XML without first materializing the
+     * message as a String.
+     *
+     * @param xml the buffer holding the message
+     * @param off the offset of the message in the buffer
+     * @param len the length of the message, in bytes
+     * @return a CoT Event that can either be valid or invalid.
+     */
+    public static CotEvent parse(final byte[] xml, final int off,
+            final int len) {
+        try {
+            CotEvent e = streamParser.get().parse(xml, off, len);
+            if (fileWriter != null && !e.isValid())
+                logInvalid(e, new String(xml, off, len,
+                        StandardCharsets.UTF_8));
+            return e;
+        } catch (CotStreamParser.UnsupportedContentException ignored) {
+            return parse(new String(xml, off, len, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Parse a event from the remaining UTF-8 encoded XML in the supplied
+     * buffer. The position of the buffer is not modified.
+     *
+     * @param xml the buffer holding the message
+     * @return a CoT Event that can either be valid or invalid.
+     */
+    public static CotEvent parse(final ByteBuffer xml) {
+        try {
+            CotEvent e = streamParser.get().parse(xml);
+            if (fileWriter != null && !e.isValid())
+                logInvalid(e, StandardCharsets.UTF_8.decode(xml.duplicate())
+                        .toString());
+            return e;
+        } catch (CotStreamParser.UnsupportedContentException ignored) {
+            return parse(StandardCharsets.UTF_8.decode(xml.duplicate())
+                    .toString());
+        }
+    }
+
+    /**
+     * Parse a event from an XML string, deferring the construction of the
+     * detail tree until it is first accessed via {@link #getDetail()} or
+     * {@link #findDetail(String)}. Events that are never inspected beyond
+     * their uid, type, times and point therefore never pay for the detail.
+     * If the detail is never accessed, {@link #buildXml(Appendable)} emits
+     * the detail exactly as it was received.
+     *
+     * Malformed content within the detail is only detected when the detail
+     * is built.
+     *
+     * @param xml
+     * @return a CoT Event that can either be valid or invalid.
+     */
+    public static CotEvent parseLazy(final String xml) {
+        CotEvent e;
+        try {
+            e = streamParser.get().parse(xml, true);
+        } catch (CotStreamParser.UnsupportedContentException ignored) {
+            e = cotHandler.parseXML(xml);
+        }
+        logInvalid(e, xml);
+        return e;
+    }
+
+    /**
+     * Parse a event from UTF-8 encoded XML, deferring the construction of
+     * the detail tree. See {@link #parseLazy(String)}.
+     *
+     * @param xml the buffer holding the message
+     * @param off the offset of the message in the buffer
+     * @param len the length of the message, in bytes
+     * @return a CoT Event that can either be valid or invalid.
+     */
+    public static CotEvent parseLazy(final byte[] xml, final int off,
+            final int len) {
+        try {
+            CotEvent e = streamParser.get().parse(xml, off, len, true);
+            if (fileWriter != null && !e.isValid())
+                logInvalid(e, new String(xml, off, len,
+                        StandardCharsets.UTF_8));
+            return e;
+        } catch (CotStreamParser.UnsupportedContentException ignored) {
+            return parse(new String(xml, off, len, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void logInvalid(final CotEvent e, final String xml) {
         //If the CotEvent is not valid, we should probably record it to a file if CotLogging is
         // enabled.
         synchronized (CotEvent.class) {
@@ -517,7 +686,6 @@ public class CotEvent implements Parcelable {
                 }
             }
         }
-        return e;
     }
 
     @Override
@@ -682,6 +850,7 @@ public class CotEvent implements Parcelable {
                     "detail tag must be named 'detail' (got '"
                             + detail.getElementName() + "'");
         }
+        _rawDetail = null;
         _detail = detail;
 
     }
@@ -0,0 +1,1091 @@
+package com.atakmap.coremap.cot.event;
+
+import com.atakmap.coremap.log.Log;
+import com.atakmap.coremap.maps.time.CoordinatedTime;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single pass, pull style decoder for Cursor on Target messages that operates
+ * directly on the UTF-8 encoded bytes of the message. Element and attribute
+ * names as well as the low cardinality event attributes are interned, the
+ * point and the timestamps are decoded straight to primitives and no SAX
+ * machinery is instantiated per message.
+ *
+ * The decoder produces the same {@link CotEvent} as {@link CotContentHandler}.
+ * Any construct that it does not handle (DOCTYPE declarations, undefined
+ * entities, malformed markup) is reported via {@link UnsupportedContentException}
+ * so that the caller may fall back to the SAX based implementation.
+ *
+ * Instances make use of internal buffers and are not thread safe.
+ */
+final class CotStreamParser {
+
+    public static final String TAG = "CotStreamParser";
+
+    /**
+     * Signals that the message requires the full SAX based parser. A single
+     * instance is used, without a stack trace, so that the fallback does not
+     * allocate.
+     */
+    static final class UnsupportedContentException extends Exception {
+        private UnsupportedContentException() {
+            super("unsupported content");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    static final UnsupportedContentException UNSUPPORTED = new UnsupportedContentException();
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final int[] CUMULATIVE_DAYS = {
+            0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334
+    };
+
+    private static final String[] COMMON_NAMES = {
+            "event", "point", "detail", "version", "uid", "type", "time",
+            "start", "stale", "how", "opex", "qos", "access", "lat", "lon",
+            "hae", "ce", "le", "contact", "callsign", "endpoint", "phone",
+            "__group", "name", "role", "status", "battery", "takv", "device",
+            "platform", "os", "track", "course", "speed", "precisionlocation",
+            "geopointsrc", "altsrc", "remarks", "source", "to", "link",
+            "relation", "production_time", "parent_callsign", "usericon",
+            "iconsetpath", "color", "argb", "value", "archive", "__chat",
+            "chatroom", "groupOwner", "id", "senderCallsign", "chatgrp",
+            "uid0", "uid1", "strokeColor", "strokeWeight", "fillColor",
+            "labels_on", "height", "height_unit", "shape", "ellipse",
+            "major", "minor", "angle", "__serverdestination", "destinations",
+            "marti", "dest", "_flow-tags_", "__video",
+            "ConnectionEntry", "sensor", "fov", "range", "azimuth", "model",
+            "hideLabel", "creator", "__routeinfo", "__navcues", "link_attr",
+            "method", "direction", "prefix", "stroke", "routetype", "order"
+    };
+
+    // input
+    private byte[] buf;
+    private int pos;
+    private int end;
+
+    // scratch space for decoded character data
+    private char[] chars = new char[256];
+
+    // attributes of the current start tag
+    private String[] attrNames = new String[16];
+    private int[] attrStart = new int[16];
+    private int[] attrEnd = new int[16];
+    private int attrCount;
+
+    // open elements and the detail tree being built
+    private String[] elementStack = new String[16];
+    private int elementDepth;
+    private CotDetail[] detailStack = new CotDetail[16];
+    private int detailDepth;
+    private final StringBuilder innerText = new StringBuilder();
+    private boolean finishedDetail;
+
+    // when set, the <detail> subtree is captured as raw bytes instead
+    private boolean lazyDetail;
+
+    private final StringTable names = new StringTable(512);
+    private final StringTable values = new StringTable(256);
+
+    // reusable storage for String input
+    private byte[] encoded = new byte[4096];
+
+    CotStreamParser() {
+        for (String name : COMMON_NAMES) {
+            byte[] b = name.getBytes(StandardCharsets.UTF_8);
+            names.intern(b, 0, b.length);
+        }
+    }
+
+    /**
+     * Parse a CoT message held in a String.
+     */
+    CotEvent parse(final String xml) throws UnsupportedContentException {
+        return parse(xml, false);
+    }
+
+    /**
+     * Parse a CoT message held in a String.
+     *
+     * @param lazyDetail if <code>true</code> the detail is retained in its
+     *            serialized form, see {@link CotEvent#parseLazy(String)}
+     */
+    CotEvent parse(final String xml, final boolean lazyDetail)
+            throws UnsupportedContentException {
+        final int len = xml.length();
+        if (encoded.length < len)
+            encoded = new byte[Math.max(len, encoded.length * 2)];
+        for (int i = 0; i < len; ++i) {
+            final char c = xml.charAt(i);
+            if (c >= 0x80) {
+                // non-ASCII content, let the platform encoder handle it
+                final byte[] utf8 = xml.getBytes(StandardCharsets.UTF_8);
+                return parse(utf8, 0, utf8.length, lazyDetail);
+            }
+            encoded[i] = (byte) c;
+        }
+        return parse(encoded, 0, len, lazyDetail);
+    }
+
+    /**
+     * Parse a CoT message held in a ByteBuffer. The position of the buffer is
+     * not modified.
+     */
+    CotEvent parse(final ByteBuffer xml) throws UnsupportedContentException {
+        return parse(xml, false);
+    }
+
+    /**
+     * Parse a CoT message held in a ByteBuffer, optionally deferring the
+     * construction of the detail tree.
+     */
+    CotEvent parse(final ByteBuffer xml, final boolean lazyDetail)
+            throws UnsupportedContentException {
+        final int len = xml.remaining();
+        if (xml.hasArray())
+            return parse(xml.array(), xml.arrayOffset() + xml.position(), len,
+                    lazyDetail);
+        if (encoded.length < len)
+            encoded = new byte[Math.max(len, encoded.length * 2)];
+        xml.duplicate().get(encoded, 0, len);
+        return parse(encoded, 0, len, lazyDetail);
+    }
+
+    /**
+     * Parse a UTF-8 encoded CoT message.
+     *
+     * @return the event; in the same way as the SAX parser, an event that
+     *         violated the CoT schema is returned in whatever state it was
+     *         when the violation was encountered.
+     * @throws UnsupportedContentException if the message should be handed to
+     *         the SAX based parser
+     */
+    CotEvent parse(final byte[] xml, final int off, final int len)
+            throws UnsupportedContentException {
+        return parse(xml, off, len, false);
+    }
+
+    /**
+     * Parse a UTF-8 encoded CoT message, optionally deferring the
+     * construction of the detail tree.
+     */
+    CotEvent parse(final byte[] xml, final int off, final int len,
+            final boolean lazyDetail)
+            throws UnsupportedContentException {
+        this.lazyDetail = lazyDetail;
+        buf = xml;
+        pos = off;
+        end = off + len;
+        attrCount = 0;
+        elementDepth = 0;
+        detailDepth = 0;
+        finishedDetail = false;
+        innerText.setLength(0);
+
+        final CotEvent event = new CotEvent();
+        try {
+            parseDocument(event);
+        } catch (CotIllegalException e) {
+            Log.v(TAG, "Bad message encountered: "
+                    + new String(xml, off, len, StandardCharsets.UTF_8));
+            Log.e(TAG, "error: ", e);
+        } finally {
+            for (int i = 0; i < detailDepth; ++i)
+                detailStack[i] = null;
+            buf = null;
+        }
+        return event;
+    }
+
+    private void parseDocument(final CotEvent event)
+            throws UnsupportedContentException, CotIllegalException {
+        boolean sawRoot = false;
+        while (pos < end) {
+            final byte b = buf[pos];
+            if (b == '<') {
+                if (pos + 1 >= end)
+                    throw UNSUPPORTED;
+                final byte n = buf[pos + 1];
+                if (n == '?') {
+                    skipPast('?', '>');
+                } else if (n == '!') {
+                    if (startsWith("<!--")) {
+                        pos += 4;
+                        skipComment();
+                    } else if (elementDepth > 0 && startsWith("<![CDATA[")) {
+                        pos += 9;
+                        parseCData();
+                    } else {
+                        // DOCTYPE and friends
+                        throw UNSUPPORTED;
+                    }
+                } else if (n == '/') {
+                    pos += 2;
+                    parseEndTag();
+                } else {
+                    if (elementDepth == 0 && sawRoot)
+                        throw UNSUPPORTED;
+                    sawRoot = true;
+                    pos++;
+                    parseStartTag(event);
+                }
+            } else if (elementDepth == 0) {
+                if (!isWhitespace(b))
+                    throw UNSUPPORTED;
+                pos++;
+            } else {
+                parseText();
+            }
+        }
+        if (!sawRoot || elementDepth != 0)
+            throw UNSUPPORTED;
+    }
+
+    /**
+     * Build the detail tree from the serialized <code>&lt;detail&gt;</code>
+     * element captured by a lazy parse.
+     */
+    CotDetail parseDetail(final byte[] xml)
+            throws UnsupportedContentException {
+        // the root detail element is handled exactly as within an event
+        return parse(xml, 0, xml.length, false).getDetail();
+    }
+
+    private void parseStartTag(final CotEvent event)
+            throws UnsupportedContentException, CotIllegalException {
+        final int tagStart = pos - 1;
+        final String name = readName();
+        attrCount = 0;
+        boolean empty = false;
+        while (true) {
+            final boolean ws = skipWhitespace();
+            if (pos >= end)
+                throw UNSUPPORTED;
+            final byte b = buf[pos];
+            if (b == '>') {
+                pos++;
+                break;
+            } else if (b == '/') {
+                if (pos + 1 >= end || buf[pos + 1] != '>')
+                    throw UNSUPPORTED;
+                pos += 2;
+                empty = true;
+                break;
+            }
+            if (!ws)
+                throw UNSUPPORTED;
+            readAttribute();
+        }
+
+        if (lazyDetail && detailDepth == 0 && !finishedDetail
+                && name.equals("detail")) {
+            if (!empty)
+                skipElement();
+            final byte[] raw = new byte[pos - tagStart];
+            System.arraycopy(buf, tagStart, raw, 0, raw.length);
+            event.setRawDetail(raw);
+            finishedDetail = true;
+            return;
+        }
+
+        startElement(event, name);
+        if (empty)
+            endElement();
+    }
+
+    /**
+     * Advances past the end tag that closes the element whose start tag was
+     * just consumed. Only the structure is examined; the content is checked
+     * when the subtree is materialized.
+     */
+    private void skipElement() throws UnsupportedContentException {
+        int depth = 1;
+        while (depth > 0) {
+            while (pos < end && buf[pos] != '<')
+                pos++;
+            if (pos + 1 >= end)
+                throw UNSUPPORTED;
+            final byte n = buf[pos + 1];
+            if (n == '/') {
+                skipPast('>');
+                depth--;
+            } else if (n == '?') {
+                skipPast('?', '>');
+            } else if (startsWith("<!--")) {
+                pos += 4;
+                skipComment();
+            } else if (startsWith("<![CDATA[")) {
+                pos += 9;
+                while (true) {
+                    if (pos + 2 >= end)
+                        throw UNSUPPORTED;
+                    if (buf[pos] == ']' && buf[pos + 1] == ']'
+                            && buf[pos + 2] == '>')
+                        break;
+                    pos++;
+                }
+                pos += 3;
+            } else if (n == '!') {
+                throw UNSUPPORTED;
+            } else {
+                // start tag, attribute values may legally contain '>'
+                byte quote = 0;
+                pos++;
+                while (true) {
+                    if (pos >= end)
+                        throw UNSUPPORTED;
+                    final byte b = buf[pos++];
+                    if (quote != 0) {
+                        if (b == quote)
+                            quote = 0;
+                    } else if (b == '\'' || b == '"') {
+                        quote = b;
+                    } else if (b == '>') {
+                        if (buf[pos - 2] != '/')
+                            depth++;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void readAttribute() throws UnsupportedContentException {
+        final String name = readName();
+        skipWhitespace();
+        if (pos >= end || buf[pos] != '=')
+            throw UNSUPPORTED;
+        pos++;
+        skipWhitespace();
+        if (pos >= end)
+            throw UNSUPPORTED;
+        final byte quote = buf[pos];
+        if (quote != '\'' && quote != '"')
+            throw UNSUPPORTED;
+        final int start = ++pos;
+        while (pos < end && buf[pos] != quote) {
+            if (buf[pos] == '<')
+                throw UNSUPPORTED;
+            pos++;
+        }
+        if (pos >= end)
+            throw UNSUPPORTED;
+        final int stop = pos++;
+
+        for (int i = 0; i < attrCount; ++i) {
+            if (attrNames[i].equals(name))
+                throw UNSUPPORTED;
+        }
+        if (attrCount == attrNames.length) {
+            attrNames = grow(attrNames);
+            attrStart = grow(attrStart);
+            attrEnd = grow(attrEnd);
+        }
+        attrNames[attrCount] = name;
+        attrStart[attrCount] = start;
+        attrEnd[attrCount] = stop;
+        attrCount++;
+    }
+
+    private void parseEndTag() throws UnsupportedContentException {
+        final String name = readName();
+        skipWhitespace();
+        if (pos >= end || buf[pos] != '>')
+            throw UNSUPPORTED;
+        pos++;
+        if (elementDepth == 0 || !elementStack[elementDepth - 1].equals(name))
+            throw UNSUPPORTED;
+        endElement();
+    }
+
+    private void parseText() throws UnsupportedContentException {
+        final int start = pos;
+        while (pos < end && buf[pos] != '<')
+            pos++;
+        if (detailDepth == 0) {
+            // not retained, but entities still have to be well formed
+            for (int i = start; i < pos; ++i) {
+                if (buf[i] == '&') {
+                    decode(start, pos, false);
+                    break;
+                }
+            }
+            return;
+        }
+
+        // like the SAX handler, whitespace only runs are dropped
+        for (int i = start; i < pos; ++i) {
+            if (!isWhitespace(buf[i])) {
+                innerText.append(decode(start, pos, false));
+                break;
+            }
+        }
+    }
+
+    private void parseCData() throws UnsupportedContentException {
+        final int start = pos;
+        while (pos + 2 < end) {
+            if (buf[pos] == ']' && buf[pos + 1] == ']' && buf[pos + 2] == '>') {
+                if (detailDepth > 0) {
+                    for (int i = start; i < pos; ++i) {
+                        if (!isWhitespace(buf[i])) {
+                            innerText.append(new String(buf, start,
+                                    pos - start, StandardCharsets.UTF_8));
+                            break;
+                        }
+                    }
+                }
+                pos += 3;
+                return;
+            }
+            pos++;
+        }
+        throw UNSUPPORTED;
+    }
+
+    /**
+     * Mirrors the element handling of {@link CotContentHandler#startElement}.
+     */
+    private void startElement(final CotEvent event, final String name)
+            throws CotIllegalException, UnsupportedContentException {
+        if (elementDepth == elementStack.length)
+            elementStack = grow(elementStack);
+        elementStack[elementDepth++] = name;
+
+        if (detailDepth == 0) {
+            if (name.equals("event")) {
+                parseEvent(event);
+            } else if (name.equals("point")) {
+                parsePoint(event);
+            } else if (name.equals("detail") && !finishedDetail) {
+                event.setDetail(pushDetail(name));
+            }
+        } else {
+            pushDetail(name);
+        }
+    }
+
+    private void endElement() {
+        elementDepth--;
+        if (detailDepth > 0) {
+            detailDepth--;
+            final CotDetail detail = detailStack[detailDepth];
+            detailStack[detailDepth] = null;
+            // the inner text is shared across elements, exactly as in
+            // CotContentHandler
+            if (innerText.length() > 0) {
+                detail.setInnerText(innerText.toString());
+                innerText.setLength(0);
+            }
+            if (detailDepth == 0)
+                finishedDetail = true;
+        }
+    }
+
+    private void parseEvent(final CotEvent event)
+            throws CotIllegalException, UnsupportedContentException {
+        event.setType(internedOrThrow("type", "event: missing type"));
+        final String vers = internedValue("version");
+        event.setVersion(vers != null ? vers : "2.0");
+        final int uid = indexOf("uid");
+        if (uid < 0)
+            throw new CotIllegalException("event: missing uid");
+        event.setUID(decode(attrStart[uid], attrEnd[uid], true));
+        event.setTime(timeOrDefault("time"));
+        event.setStart(timeOrDefault("start"));
+        event.setStale(timeOrDefault("stale"));
+        final String how = internedValue("how");
+        event.setHow(how != null ? how : "");
+        event.setOpex(stringOrNull("opex"));
+        event.setQos(stringOrNull("qos"));
+        event.setAccess(stringOrNull("access"));
+        // these might not be clear in the case that a recycled event was passed in
+        event.setPoint(CotPoint.ZERO);
+        event.setDetail(null);
+    }
+
+    private void parsePoint(final CotEvent event)
+            throws CotIllegalException, UnsupportedContentException {
+        final double lat = doubleOrThrow("lat",
+                "point: illegal or missing lat");
+        final double lon = doubleOrThrow("lon",
+                "point: illegal or missing lon");
+        double hae = doubleOrFallback("hae", CotPoint.UNKNOWN);
+        double le = doubleOrFallback("le", CotPoint.UNKNOWN);
+        double ce = doubleOrFallback("ce", CotPoint.UNKNOWN);
+
+        if (Double.isNaN(hae))
+            hae = CotPoint.UNKNOWN;
+        if (Double.isNaN(le))
+            le = CotPoint.UNKNOWN;
+        if (Double.isNaN(ce))
+            ce = CotPoint.UNKNOWN;
+
+        event.setPoint(new CotPoint(lat, lon, hae, ce, le));
+    }
+
+    private CotDetail pushDetail(final String name)
+            throws UnsupportedContentException {
+        final CotDetail detail = new CotDetail(name);
+        for (int i = 0; i < attrCount; ++i)
+            detail.setAttribute(attrNames[i],
+                    decode(attrStart[i], attrEnd[i], true));
+
+        if (detailDepth > 0)
+            detailStack[detailDepth - 1].addChild(detail);
+
+        if (detailDepth == detailStack.length)
+            detailStack = grow(detailStack);
+        detailStack[detailDepth++] = detail;
+        return detail;
+    }
+
+    /**************************************************************************/
+    // attribute access
+
+    private int indexOf(final String name) {
+        for (int i = 0; i < attrCount; ++i) {
+            if (attrNames[i].equals(name))
+                return i;
+        }
+        return -1;
+    }
+
+    private String stringOrNull(final String name)
+            throws UnsupportedContentException {
+        final int idx = indexOf(name);
+        if (idx < 0)
+            return null;
+        return decode(attrStart[idx], attrEnd[idx], true);
+    }
+
+    private String internedValue(final String name)
+            throws UnsupportedContentException {
+        final int idx = indexOf(name);
+        if (idx < 0)
+            return null;
+        final int start = attrStart[idx];
+        final int stop = attrEnd[idx];
+        if (isPlainAscii(start, stop, true))
+            return values.intern(buf, start, stop - start);
+        return decode(start, stop, true);
+    }
+
+    private String internedOrThrow(final String name, final String msg)
+            throws CotIllegalException, UnsupportedContentException {
+        final String value = internedValue(name);
+        if (value == null)
+            throw new CotIllegalException(msg);
+        return value;
+    }
+
+    private CoordinatedTime timeOrDefault(final String name)
+            throws UnsupportedContentException {
+        final int idx = indexOf(name);
+        if (idx >= 0) {
+            final long millis = parseCotTime(attrStart[idx], attrEnd[idx]);
+            if (millis != Long.MIN_VALUE)
+                return new CoordinatedTime(millis);
+            try {
+                return CoordinatedTime.fromCot(decode(attrStart[idx],
+                        attrEnd[idx], true));
+            } catch (Exception ignored) {
+            }
+        }
+        Log.e(TAG, "_timeOrDefault: illegal or missing " + name);
+        return new CoordinatedTime();
+    }
+
+    private double doubleOrThrow(final String name, final String msg)
+            throws CotIllegalException, UnsupportedContentException {
+        final int idx = indexOf(name);
+        if (idx < 0)
+            throw new CotIllegalException(msg);
+        try {
+            return parseDouble(attrStart[idx], attrEnd[idx]);
+        } catch (NumberFormatException e) {
+            throw new CotIllegalException(msg);
+        }
+    }
+
+    private double doubleOrFallback(final String name, final double fallback)
+            throws UnsupportedContentException {
+        final int idx = indexOf(name);
+        if (idx < 0)
+            return fallback;
+        try {
+            return parseDouble(attrStart[idx], attrEnd[idx]);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**************************************************************************/
+    // primitive decoding
+
+    /**
+     * Parses a decimal number. Values that can be converted exactly with a
+     * single multiplication or division are handled inline, everything else
+     * is handed to {@link Double#parseDouble(String)} so that the result is
+     * identical to the SAX path.
+     */
+    private double parseDouble(int start, int stop)
+            throws UnsupportedContentException {
+        // Double.parseDouble trims leading and trailing whitespace
+        while (start < stop && (buf[start] & 0xFF) <= ' ')
+            start++;
+        while (stop > start && (buf[stop - 1] & 0xFF) <= ' ')
+            stop--;
+
+        int i = start;
+        boolean negative = false;
+        if (i < stop && (buf[i] == '-' || buf[i] == '+')) {
+            negative = (buf[i] == '-');
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean sawDigit = false;
+        boolean fast = true;
+        for (; i < stop; ++i) {
+            final int d = buf[i] - '0';
+            if (d < 0 || d > 9)
+                break;
+            sawDigit = true;
+            if (mantissa != 0 || d != 0)
+                digits++;
+            mantissa = mantissa * 10 + d;
+        }
+        if (i < stop && buf[i] == '.') {
+            for (++i; i < stop; ++i) {
+                final int d = buf[i] - '0';
+                if (d < 0 || d > 9)
+                    break;
+                sawDigit = true;
+                if (mantissa != 0 || d != 0)
+                    digits++;
+                mantissa = mantissa * 10 + d;
+                scale--;
+            }
+        }
+        if (i < stop && (buf[i] == 'e' || buf[i] == 'E')) {
+            i++;
+            boolean negExp = false;
+            if (i < stop && (buf[i] == '-' || buf[i] == '+')) {
+                negExp = (buf[i] == '-');
+                i++;
+            }
+            int exp = 0;
+            final int expStart = i;
+            for (; i < stop && exp < 10000; ++i) {
+                final int d = buf[i] - '0';
+                if (d < 0 || d > 9)
+                    break;
+                exp = exp * 10 + d;
+            }
+            if (i == expStart)
+                fast = false;
+            scale += negExp ? -exp : exp;
+        }
+
+        if (fast && sawDigit && i == stop && digits <= 15
+                && scale >= -22 && scale <= 22) {
+            double value = (double) mantissa;
+            if (scale < 0)
+                value /= POW10[-scale];
+            else
+                value *= POW10[scale];
+            return negative ? -value : value;
+        }
+
+        return Double.parseDouble(decode(start, stop, true));
+    }
+
+    /**
+     * Decodes a CoT time in the same manner as
+     * {@link CoordinatedTime#fromCot(String)}, without any intermediate
+     * objects.
+     *
+     * @return the epoch milliseconds or <code>Long.MIN_VALUE</code> if the
+     *         value needs to go through {@link CoordinatedTime#fromCot(String)}
+     */
+    private long parseCotTime(final int start, final int stop) {
+        final int len = stop - start;
+        if (len <= 19)
+            return Long.MIN_VALUE;
+        final int y = digits(start, 4);
+        final int m = digits(start + 5, 2);
+        final int d = digits(start + 8, 2);
+        final int h = digits(start + 11, 2);
+        final int mm = digits(start + 14, 2);
+        final int s = digits(start + 17, 2);
+        if ((y | m | d | h | mm | s) < 0)
+            return Long.MIN_VALUE;
+
+        int ms = 0;
+        if (len > 23)
+            ms = digits(start + 20, 3);
+        else if (len > 22)
+            ms = digits(start + 20, 2) * 10;
+        else if (len > 21)
+            ms = digits(start + 20, 1) * 100;
+        if (ms < 0)
+            return Long.MIN_VALUE;
+
+        // stay within the range where the proleptic Gregorian calendar and
+        // the strict calendar used by CoordinatedTime agree
+        if (y < 1600 || m < 1 || m > 12 || d < 1 || h > 23 || mm > 59
+                || s > 59)
+            return Long.MIN_VALUE;
+        final boolean leap = (y % 4 == 0) && (y % 100 != 0 || y % 400 == 0);
+        final int monthDays = (m == 2) ? (leap ? 29 : 28)
+                : ((m == 4 || m == 6 || m == 9 || m == 11) ? 30 : 31);
+        if (d > monthDays)
+            return Long.MIN_VALUE;
+
+        final long yy = y - 1;
+        long days = 365L * (y - 1970) + (yy / 4 - yy / 100 + yy / 400)
+                - (1969 / 4 - 1969 / 100 + 1969 / 400);
+        days += CUMULATIVE_DAYS[m - 1] + (leap && m > 2 ? 1 : 0) + (d - 1);
+        return ((days * 24 + h) * 60 + mm) * 60000L + s * 1000L + ms;
+    }
+
+    private int digits(final int start, final int count) {
+        int v = 0;
+        for (int i = 0; i < count; ++i) {
+            final int d = buf[start + i] - '0';
+            if (d < 0 || d > 9)
+                return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    /**************************************************************************/
+    // character data
+
+    private boolean isPlainAscii(final int start, final int stop,
+            final boolean attribute) {
+        for (int i = start; i < stop; ++i) {
+            final byte b = buf[i];
+            if (b < 0x20 || b == '&') {
+                if (!attribute && (b == '\t' || b == '\n'))
+                    continue;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes UTF-8 character data, resolving the predefined and numeric
+     * entities and applying the XML end-of-line (and, for attributes,
+     * whitespace) normalization.
+     */
+    private String decode(final int start, final int stop,
+            final boolean attribute) throws UnsupportedContentException {
+        if (isPlainAscii(start, stop, attribute))
+            return new String(buf, start, stop - start,
+                    StandardCharsets.ISO_8859_1);
+
+        int n = 0;
+        int i = start;
+        while (i < stop) {
+            if (n + 2 > chars.length) {
+                final char[] c = new char[chars.length * 2];
+                System.arraycopy(chars, 0, c, 0, n);
+                chars = c;
+            }
+            final int b = buf[i] & 0xFF;
+            if (b == '&') {
+                i = decodeEntity(i + 1, stop);
+                final int cp = entityValue;
+                if (cp >= 0x10000) {
+                    chars[n++] = Character.highSurrogate(cp);
+                    chars[n++] = Character.lowSurrogate(cp);
+                } else {
+                    chars[n++] = (char) cp;
+                }
+            } else if (b == '\r') {
+                chars[n++] = attribute ? ' ' : '\n';
+                i++;
+                if (i < stop && buf[i] == '\n')
+                    i++;
+            } else if (b == '\n' || b == '\t') {
+                chars[n++] = attribute ? ' ' : (char) b;
+                i++;
+            } else if (b < 0x20) {
+                throw UNSUPPORTED;
+            } else if (b < 0x80) {
+                chars[n++] = (char) b;
+                i++;
+            } else {
+                int cp;
+                int extra;
+                if ((b & 0xE0) == 0xC0) {
+                    cp = b & 0x1F;
+                    extra = 1;
+                } else if ((b & 0xF0) == 0xE0) {
+                    cp = b & 0x0F;
+                    extra = 2;
+                } else if ((b & 0xF8) == 0xF0) {
+                    cp = b & 0x07;
+                    extra = 3;
+                } else {
+                    throw UNSUPPORTED;
+                }
+                if (i + extra >= stop)
+                    throw UNSUPPORTED;
+                for (int j = 1; j <= extra; ++j) {
+                    final int c = buf[i + j] & 0xFF;
+                    if ((c & 0xC0) != 0x80)
+                        throw UNSUPPORTED;
+                    cp = (cp << 6) | (c & 0x3F);
+                }
+                i += extra + 1;
+                if (cp >= 0x10000) {
+                    chars[n++] = Character.highSurrogate(cp);
+                    chars[n++] = Character.lowSurrogate(cp);
+                } else {
+                    chars[n++] = (char) cp;
+                }
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    private int entityValue;
+
+    /**
+     * Resolves the entity starting at <code>start</code> (just past the
+     * ampersand) into {@link #entityValue}.
+     *
+     * @return the index following the terminating semicolon
+     */
+    private int decodeEntity(final int start, final int stop)
+            throws UnsupportedContentException {
+        int semi = start;
+        while (semi < stop && buf[semi] != ';' && semi - start < 12)
+            semi++;
+        if (semi >= stop || buf[semi] != ';' || semi == start)
+            throw UNSUPPORTED;
+
+        if (buf[start] == '#') {
+            int radix = 10;
+            int i = start + 1;
+            if (i < semi && buf[i] == 'x') {
+                radix = 16;
+                i++;
+            }
+            if (i == semi)
+                throw UNSUPPORTED;
+            int cp = 0;
+            for (; i < semi; ++i) {
+                final int d = Character.digit(buf[i], radix);
+                if (d < 0)
+                    throw UNSUPPORTED;
+                cp = cp * radix + d;
+            }
+            if (cp > Character.MAX_CODE_POINT
+                    || (cp < 0x20 && cp != '\t' && cp != '\n' && cp != '\r'))
+                throw UNSUPPORTED;
+            entityValue = cp;
+        } else if (matches(start, semi, "amp")) {
+            entityValue = '&';
+        } else if (matches(start, semi, "lt")) {
+            entityValue = '<';
+        } else if (matches(start, semi, "gt")) {
+            entityValue = '>';
+        } else if (matches(start, semi, "quot")) {
+            entityValue = '"';
+        } else if (matches(start, semi, "apos")) {
+            entityValue = '\'';
+        } else {
+            throw UNSUPPORTED;
+        }
+        return semi + 1;
+    }
+
+    private boolean matches(final int start, final int stop, final String s) {
+        if (stop - start != s.length())
+            return false;
+        for (int i = 0; i < s.length(); ++i) {
+            if (buf[start + i] != s.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**************************************************************************/
+    // lexical helpers
+
+    private String readName() throws UnsupportedContentException {
+        final int start = pos;
+        while (pos < end) {
+            final byte b = buf[pos];
+            if (isWhitespace(b) || b == '=' || b == '/' || b == '>'
+                    || b == '<' || b == '\'' || b == '"')
+                break;
+            pos++;
+        }
+        if (pos == start || pos >= end)
+            throw UNSUPPORTED;
+        final byte first = buf[start];
+        if ((first >= '0' && first <= '9') || first == '-' || first == '.')
+            throw UNSUPPORTED;
+        for (int i = start; i < pos; ++i) {
+            if (buf[i] < 0)
+                return new String(buf, start, pos - start,
+                        StandardCharsets.UTF_8);
+        }
+        return names.intern(buf, start, pos - start);
+    }
+
+    private boolean skipWhitespace() {
+        final int start = pos;
+        while (pos < end && isWhitespace(buf[pos]))
+            pos++;
+        return pos > start;
+    }
+
+    private void skipPast(final char a) throws UnsupportedContentException {
+        while (pos < end) {
+            if (buf[pos++] == a)
+                return;
+        }
+        throw UNSUPPORTED;
+    }
+
+    private void skipPast(final char a, final char b)
+            throws UnsupportedContentException {
+        while (pos + 1 < end) {
+            if (buf[pos] == a && buf[pos + 1] == b) {
+                pos += 2;
+                return;
+            }
+            pos++;
+        }
+        throw UNSUPPORTED;
+    }
+
+    private void skipComment() throws UnsupportedContentException {
+        while (pos + 2 < end) {
+            if (buf[pos] == '-' && buf[pos + 1] == '-') {
+                if (buf[pos + 2] != '>')
+                    throw UNSUPPORTED;
+                pos += 3;
+                return;
+            }
+            pos++;
+        }
+        throw UNSUPPORTED;
+    }
+
+    private boolean startsWith(final String s) {
+        if (end - pos < s.length())
+            return false;
+        for (int i = 0; i < s.length(); ++i) {
+            if (buf[pos + i] != s.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(final byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+    }
+
+    private static String[] grow(final String[] a) {
+        final String[] r = new String[a.length * 2];
+        System.arraycopy(a, 0, r, 0, a.length);
+        return r;
+    }
+
+    private static int[] grow(final int[] a) {
+        final int[] r = new int[a.length * 2];
+        System.arraycopy(a, 0, r, 0, a.length);
+        return r;
+    }
+
+    private static CotDetail[] grow(final CotDetail[] a) {
+        final CotDetail[] r = new CotDetail[a.length * 2];
+        System.arraycopy(a, 0, r, 0, a.length);
+        return r;
+    }
+
+    /**
+     * Bounded, open addressing table that maps ASCII byte sequences to
+     * canonical String instances. Once the table is full, lookups for new
+     * sequences simply allocate.
+     */
+    static final class StringTable {
+        private static final int MAX_LENGTH = 64;
+
+        private final byte[][] keys;
+        private final String[] strings;
+        private final int mask;
+        private final int limit;
+        private int size;
+
+        StringTable(final int capacity) {
+            int n = Integer.highestOneBit(capacity - 1) << 2;
+            keys = new byte[n][];
+            strings = new String[n];
+            mask = n - 1;
+            limit = capacity;
+        }
+
+        String intern(final byte[] b, final int off, final int len) {
+            if (len > MAX_LENGTH)
+                return new String(b, off, len, StandardCharsets.ISO_8859_1);
+
+            int h = 0;
+            for (int i = 0; i < len; ++i)
+                h = 31 * h + b[off + i];
+            h ^= (h >>> 16);
+
+            int idx = h & mask;
+            while (true) {
+                final byte[] key = keys[idx];
+                if (key == null)
+                    break;
+                if (key.length == len && equal(key, b, off, len))
+                    return strings[idx];
+                idx = (idx + 1) & mask;
+            }
+
+            final String s = new String(b, off, len,
+                    StandardCharsets.ISO_8859_1);
+            if (size < limit) {
+                final byte[] key = new byte[len];
+                System.arraycopy(b, off, key, 0, len);
+                keys[idx] = key;
+                strings[idx] = s;
+                size++;
+            }
+            return s;
+        }
+
+        private static boolean equal(final byte[] key, final byte[] b,
+                final int off, final int len) {
+            for (int i = 0; i < len; ++i) {
+                if (key[i] != b[off + i])
+                    return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+#!/usr/bin/env python3
+"""
+Generates the synthetic sample data used by the benchmarks under
+src/jmh/resources. The output is deterministic so that results remain
+comparable across runs; rerun only when the sample shape needs to change.
+
+  dted/w079/n35.dt0, dted/w080/n35.dt0
+      DTED level 0 cells with rolling terrain, per MIL-PRF-89020B
+  shp/parcels.{shp,shx,dbf,prj}
+      polygon shapefile with a 52 column attribute table, mixing
+      enumerated, free text, integer, real and date columns
+"""
+
+import math
+import os
+import random
+import struct
+
+ROOT = os.path.join(os.path.dirname(os.path.abspath(__file__)), '..',
+                    'src', 'jmh', 'resources')
+
+
+def terrain(lat, lng):
+    return (300.0
+            + 180.0 * math.sin(lat * 7.1) * math.cos(lng * 5.3)
+            + 60.0 * math.sin(lat * 31.0 + lng * 17.0)
+            + 15.0 * math.cos(lat * 97.0 - lng * 83.0))
+
+
+def dted_cell(lat0, lng0, path):
+    lng_lines = 121
+    lat_points = 121
+
+    def dms(value, width, hemi):
+        value = abs(value)
+        return ('%0*d0000%s' % (width, value, hemi)).encode('ascii')
+
+    uhl = b'UHL1'
+    uhl += dms(lng0, 3, 'W' if lng0 < 0 else 'E')
+    uhl += dms(lat0, 3, 'S' if lat0 < 0 else 'N')
+    uhl += b'0300' + b'0300'
+    uhl += b'NA  ' + b'U  ' + b' ' * 12
+    uhl += b'%04d%04d' % (lng_lines, lat_points)
+    uhl += b'0' + b' ' * 24
+    assert len(uhl) == 80
+
+    dsi = (b'DSIU' + b' ' * 55 + b'DTED0' + b' ' * 648)[:648]
+    acc = (b'ACC' + b' ' * 2700)[:2700]
+
+    records = []
+    for x in range(lng_lines):
+        lng = lng0 + x / (lng_lines - 1.0)
+        rec = bytearray(b'\xaa')
+        rec += struct.pack('>I', x)[1:]
+        rec += struct.pack('>HH', x, 0)
+        for y in range(lat_points):
+            lat = lat0 + y / (lat_points - 1.0)
+            h = int(round(terrain(lat, lng)))
+            # signed magnitude
+            rec += struct.pack('>H', (0x8000 | -h) if h < 0 else h)
+        rec += struct.pack('>I', sum(rec) & 0xFFFFFFFF)
+        records.append(bytes(rec))
+
+    os.makedirs(os.path.dirname(path), exist_ok=True)
+    with open(path, 'wb') as f:
+        f.write(uhl + dsi + acc + b''.join(records))
+
+
+ZONING = ['R-1', 'R-2', 'R-4', 'R-6', 'RX', 'OX', 'CX', 'DX', 'IX', 'IH',
+          'CM', 'AP', 'MH', 'CMP']
+STREETS = ['OAK', 'MAPLE', 'PINE', 'HILLSBOROUGH', 'GLENWOOD', 'PERSON',
+           'BLOUNT', 'WADE', 'CREEDMOOR', 'SIX FORKS', 'FALLS OF NEUSE',
+           'CAPITAL', 'NEW BERN', 'WESTERN', 'LAKE WHEELER']
+SUFFIXES = ['ST', 'AVE', 'BLVD', 'DR', 'RD', 'CT', 'LN', 'WAY']
+LAND_USE = ['SINGLE FAMILY', 'MULTI FAMILY', 'COMMERCIAL', 'INDUSTRIAL',
+            'VACANT', 'INSTITUTIONAL', 'PARK', 'AGRICULTURAL']
+
+
+def shapefile(path, count):
+    r = random.Random(20201105)
+
+    # (name, type, length, decimals, generator)
+    fields = [
+        ('PIN_NUM', 'C', 10, 0, lambda i: '%010d' % (1703000000 + i * 37)),
+        ('OWNER', 'C', 40, 0,
+         lambda i: 'OWNER %05d %s' % (r.randint(0, 99999),
+                                      r.choice(['LLC', 'TRUST', 'INC', '']))),
+        ('ADDR_NUM', 'N', 6, 0, lambda i: r.randint(1, 12000)),
+        ('STREET', 'C', 24, 0, lambda i: r.choice(STREETS)),
+        ('SUFFIX', 'C', 4, 0, lambda i: r.choice(SUFFIXES)),
+        ('CITY', 'C', 16, 0, lambda i: r.choice(['RALEIGH', 'CARY', 'GARNER',
+                                                  'APEX', 'KNIGHTDALE'])),
+        ('ZIP', 'C', 5, 0, lambda i: r.choice(['27601', '27603', '27604',
+                                                '27605', '27606', '27607',
+                                                '27608', '27609', '27610'])),
+        ('ZONING', 'C', 6, 0, lambda i: r.choice(ZONING)),
+        ('LAND_USE', 'C', 20, 0, lambda i: r.choice(LAND_USE)),
+        ('ACRES', 'F', 12, 4, lambda i: r.uniform(0.05, 40.0)),
+        ('BLDG_VAL', 'N', 10, 0, lambda i: r.randint(0, 2500000)),
+        ('LAND_VAL', 'N', 10, 0, lambda i: r.randint(5000, 900000)),
+        ('YEAR_BUILT', 'N', 4, 0, lambda i: r.randint(1890, 2020)),
+        ('SALE_DATE', 'D', 8, 0,
+         lambda i: '%04d%02d%02d' % (r.randint(1970, 2020), r.randint(1, 12),
+                                     r.randint(1, 28))),
+        ('SALE_PRICE', 'N', 10, 0, lambda i: r.randint(0, 3000000)),
+        ('HEATED_SF', 'N', 8, 0, lambda i: r.randint(0, 12000)),
+        ('STORIES', 'F', 5, 1, lambda i: r.choice([1.0, 1.5, 2.0, 2.5, 3.0])),
+        ('EXEMPT', 'C', 1, 0, lambda i: r.choice(['Y', 'N', 'N', 'N'])),
+    ]
+    # township, utility and survey columns; mostly repeated values
+    for n in range(1, 19):
+        fields.append(('TWP_%02d' % n, 'C', 12, 0,
+                       lambda i, n=n: r.choice(['CODE %d' % ((n * k) % 7)
+                                                for k in range(4)])))
+    for n in range(1, 17):
+        fields.append(('MEAS_%02d' % n, 'F', 14, 6,
+                       lambda i: r.uniform(-1000.0, 1000.0)))
+    assert len(fields) == 52
+
+    x0, y0 = -78.70, 35.74
+    shapes = []
+    for i in range(count):
+        cx = x0 + (i % 20) * 0.004 + r.uniform(-0.0005, 0.0005)
+        cy = y0 + (i // 20) * 0.004 + r.uniform(-0.0005, 0.0005)
+        n = r.randint(8, 24)
+        ring = []
+        for k in range(n):
+            # star shaped, so most parcels are concave
+            a = -2.0 * math.pi * k / n
+            rad = 0.0015 * (0.55 + 0.45 * r.random())
+            ring.append((cx + rad * math.cos(a), cy + rad * math.sin(a)))
+        ring.append(ring[0])
+        shapes.append(ring)
+
+    def bbox(points):
+        xs = [p[0] for p in points]
+        ys = [p[1] for p in points]
+        return min(xs), min(ys), max(xs), max(ys)
+
+    contents = []
+    for ring in shapes:
+        c = struct.pack('<i', 5) + struct.pack('<4d', *bbox(ring))
+        c += struct.pack('<ii', 1, len(ring)) + struct.pack('<i', 0)
+        for x, y in ring:
+            c += struct.pack('<2d', x, y)
+        contents.append(c)
+
+    all_points = [p for ring in shapes for p in ring]
+
+    def header(length_bytes):
+        h = struct.pack('>i', 9994) + b'\0' * 20
+        h += struct.pack('>i', length_bytes // 2)
+        h += struct.pack('<ii', 1000, 5)
+        h += struct.pack('<4d', *bbox(all_points)) + struct.pack('<4d', 0, 0,
+                                                                  0, 0)
+        assert len(h) == 100
+        return h
+
+    shp = bytearray()
+    shx = bytearray()
+    offset = 100
+    for i, c in enumerate(contents):
+        shp += struct.pack('>ii', i + 1, len(c) // 2) + c
+        shx += struct.pack('>ii', offset // 2, len(c) // 2)
+        offset += 8 + len(c)
+
+    os.makedirs(os.path.dirname(path), exist_ok=True)
+    with open(path + '.shp', 'wb') as f:
+        f.write(header(100 + len(shp)) + shp)
+    with open(path + '.shx', 'wb') as f:
+        f.write(header(100 + len(shx)) + shx)
+
+    record_len = 1 + sum(f[2] for f in fields)
+    header_len = 32 + 32 * len(fields) + 1
+    dbf = bytearray(struct.pack('<B3BIHH', 3, 120, 11, 5, count, header_len,
+                                record_len))
+    dbf += b'\0' * 20
+    for name, ftype, length, dec, _ in fields:
+        dbf += name.encode('ascii').ljust(11, b'\0') + ftype.encode('ascii')
+        dbf += b'\0' * 4 + struct.pack('<BB', length, dec) + b'\0' * 14
+    dbf += b'\x0d'
+    for i in range(count):
+        dbf += b' '
+        for name, ftype, length, dec, gen in fields:
+            v = gen(i)
+            if ftype in 'NF':
+                s = ('%.*f' % (dec, v)).rjust(length)
+            else:
+                s = str(v).ljust(length)
+            s = s.encode('ascii')
+            assert len(s) == length, (name, s)
+            dbf += s
+    dbf += b'\x1a'
+    with open(path + '.dbf', 'wb') as f:
+        f.write(dbf)
+
+    with open(path + '.prj', 'w') as f:
+        f.write('GEOGCS["GCS_WGS_1984",DATUM["D_WGS_1984",'
+                'SPHEROID["WGS_1984",6378137.0,298.257223563]],'
+                'PRIMEM["Greenwich",0.0],UNIT["Degree",0.0174532925199433]]')
+
+
+if __name__ == '__main__':
+    dted_cell(35, -79, os.path.join(ROOT, 'dted', 'w079', 'n35.dt0'))
+    dted_cell(35, -80, os.path.join(ROOT, 'dted', 'w080', 'n35.dt0'))
+    shapefile(os.path.join(ROOT, 'shp', 'parcels'), 400)
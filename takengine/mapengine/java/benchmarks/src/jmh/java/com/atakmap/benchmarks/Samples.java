@@ -0,0 +1,106 @@
+package com.atakmap.benchmarks;
+
+import com.atakmap.coremap.maps.coords.GeoCalculations;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.map.EngineLibrary;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * Access to the sample data committed under <code>src/jmh/resources</code>
+ * and to the native engine libraries for the benchmarks that need them.
+ *
+ * The samples are synthetic and generated by
+ * <code>scripts/generate_samples.py</code> so that results stay comparable
+ * across runs.
+ */
+public final class Samples {
+
+    private static boolean engineLoaded;
+
+    private Samples() {
+    }
+
+    /**
+     * Copies the specified classpath resources into a new temporary
+     * directory, preserving their relative paths. Native readers (OGR,
+     * SQLite) can only open files on disk.
+     *
+     * @param resources The resource paths, relative to the resource root
+     * @return The directory containing the extracted resources
+     */
+    public static File extract(String... resources) throws IOException {
+        final File dir = Files.createTempDirectory("takengine-benchmarks")
+                .toFile();
+        dir.deleteOnExit();
+        for (String resource : resources) {
+            final File file = new File(dir, resource);
+            mkdirs(dir, file.getParentFile());
+            file.deleteOnExit();
+            try (InputStream in = Samples.class
+                    .getResourceAsStream("/" + resource);
+                    OutputStream out = new FileOutputStream(file)) {
+                if (in == null)
+                    throw new IOException("Sample not found: " + resource);
+                final byte[] buf = new byte[8192];
+                int n;
+                while ((n = in.read(buf)) > 0)
+                    out.write(buf, 0, n);
+            }
+        }
+        return dir;
+    }
+
+    private static void mkdirs(File root, File dir) {
+        if (dir == null || dir.equals(root) || dir.exists())
+            return;
+        mkdirs(root, dir.getParentFile());
+        dir.mkdir();
+        dir.deleteOnExit();
+    }
+
+    /**
+     * Loads the native engine libraries. {@link EngineLibrary} only bundles
+     * the Windows binaries; on other platforms the libraries are loaded from
+     * <code>java.library.path</code>, see <code>-PjmhLibraryPath</code>.
+     *
+     * @throws IllegalStateException if the libraries are not available
+     */
+    public static synchronized void requireEngine() {
+        if (engineLoaded)
+            return;
+
+        EngineLibrary.initialize();
+        if (!probe()) {
+            for (String lib : new String[] {
+                    "takengine", "takenginejni"
+            }) {
+                try {
+                    System.loadLibrary(lib);
+                } catch (UnsatisfiedLinkError ignored) {
+                }
+            }
+            if (!probe())
+                throw new IllegalStateException(
+                        "Native engine libraries are not available; run with "
+                                + "-PjmhLibraryPath=<directory containing "
+                                + "takenginejni>");
+        }
+        engineLoaded = true;
+    }
+
+    private static boolean probe() {
+        try {
+            GeoCalculations.distanceTo(new GeoPoint(0, 0),
+                    new GeoPoint(0, 1));
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.atakmap.coremap.cot.event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CotEvent#buildXml(StringBuilder)} and
+ * {@link CotEvent#toString()} for fully parsed events from the CoT corpus,
+ * as performed when events are sent, persisted or relayed after their detail
+ * was inspected.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CotBuildBenchmark {
+
+    private CotEvent[] events;
+    private int index;
+    private final StringBuilder xml = new StringBuilder();
+
+    @Setup
+    public void setup() throws IOException {
+        final List<String> messages = CotParseBenchmark.loadCorpus();
+        events = new CotEvent[messages.size()];
+        for (int i = 0; i < events.length; i++) {
+            final byte[] b = messages.get(i).getBytes("UTF-8");
+            events[i] = CotEvent.parse(b, 0, b.length);
+        }
+    }
+
+    private CotEvent next() {
+        final CotEvent e = events[index];
+        index = (index + 1) % events.length;
+        return e;
+    }
+
+    @Benchmark
+    public int buildXml() {
+        xml.setLength(0);
+        next().buildXml(xml);
+        return xml.length();
+    }
+
+    @Benchmark
+    public String asString() {
+        return next().toString();
+    }
+}
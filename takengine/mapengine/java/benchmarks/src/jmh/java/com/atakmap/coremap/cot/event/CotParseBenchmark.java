@@ -0,0 +1,136 @@
+package com.atakmap.coremap.cot.event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the SAX based {@link CotContentHandler} with the streaming
+ * {@link CotStreamParser} over a corpus of CoT messages, one message per line.
+ * The bundled corpus mirrors the traffic mix seen through a TAK Server (mostly
+ * position reports, with chat, markers and shapes); a captured corpus may be
+ * supplied with <code>-Dcot.corpus=/path/to/file</code>.
+ *
+ * Run with the <code>gc</code> profiler to compare allocation rates. The
+ * <code>lazy</code> benchmarks measure {@link CotEvent#parseLazy(byte[], int, int)}
+ * for events whose detail is never inspected.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CotParseBenchmark {
+
+    private String[] xml;
+    private byte[][] utf8;
+    private ByteBuffer[] direct;
+    private int index;
+
+    private CotContentHandler sax;
+    private final StringBuilder relay = new StringBuilder();
+
+    @Setup
+    public void setup() throws IOException {
+        final List<String> messages = loadCorpus();
+        xml = messages.toArray(new String[0]);
+        utf8 = new byte[xml.length][];
+        direct = new ByteBuffer[xml.length];
+        for (int i = 0; i < xml.length; ++i) {
+            utf8[i] = xml[i].getBytes(StandardCharsets.UTF_8);
+            direct[i] = ByteBuffer.allocateDirect(utf8[i].length);
+            direct[i].put(utf8[i]);
+            direct[i].flip();
+        }
+        sax = new CotContentHandler();
+    }
+
+    static List<String> loadCorpus() throws IOException {
+        final String path = System.getProperty("cot.corpus");
+        final InputStream stream = (path != null) ? new FileInputStream(path)
+                : CotParseBenchmark.class.getResourceAsStream(
+                        "/cot/corpus.xml");
+        if (stream == null)
+            throw new IOException("CoT corpus not found");
+
+        final List<String> messages = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty())
+                    messages.add(line);
+            }
+        }
+        return messages;
+    }
+
+    private int next() {
+        final int i = index;
+        index = (i + 1) % xml.length;
+        return i;
+    }
+
+    @Benchmark
+    public CotEvent saxHandler() {
+        return sax.parseXML(xml[next()]);
+    }
+
+    @Benchmark
+    public CotEvent streamString() throws Exception {
+        return CotEvent.parse(xml[next()]);
+    }
+
+    @Benchmark
+    public CotEvent streamBytes() {
+        final byte[] b = utf8[next()];
+        return CotEvent.parse(b, 0, b.length);
+    }
+
+    @Benchmark
+    public CotEvent streamDirectBuffer() {
+        return CotEvent.parse(direct[next()]);
+    }
+
+    @Benchmark
+    public CotEvent lazyBytes() {
+        final byte[] b = utf8[next()];
+        return CotEvent.parseLazy(b, 0, b.length);
+    }
+
+    /**
+     * Pass-through of a relayed event: parse, then serialize again without
+     * inspecting the detail.
+     */
+    @Benchmark
+    public int lazyRelay() {
+        final byte[] b = utf8[next()];
+        final CotEvent e = CotEvent.parseLazy(b, 0, b.length);
+        relay.setLength(0);
+        e.buildXml(relay);
+        return relay.length();
+    }
+
+    @Benchmark
+    public int eagerRelay() {
+        final byte[] b = utf8[next()];
+        final CotEvent e = CotEvent.parse(b, 0, b.length);
+        relay.setLength(0);
+        e.buildXml(relay);
+        return relay.length();
+    }
+}
@@ -0,0 +1,99 @@
+package com.atakmap.coremap.maps.coords;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link MGRSPoint} and {@link UTMPoint} conversions performed
+ * for coordinate display, entry and the MGRS grid overlay.
+ *
+ * Locations are drawn from all UTM zones between 80S and 72N, with an
+ * emphasis on the irregular zones around Norway.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CoordinateConversionBenchmark {
+
+    private double[] lat;
+    private double[] lng;
+    private String[] mgrs;
+    private UTMPoint[] utm;
+    private final double[] scratch = new double[2];
+    private int index;
+
+    @Setup
+    public void setup() {
+        final Random r = new Random(20201105L);
+        final int count = 1024;
+        lat = new double[count];
+        lng = new double[count];
+        mgrs = new String[count];
+        utm = new UTMPoint[count];
+        for (int i = 0; i < count; i++) {
+            if (i % 16 == 0) {
+                lat[i] = 56 + r.nextDouble() * 15.9;
+                lng[i] = r.nextDouble() * 12;
+            } else {
+                lat[i] = -79.9 + r.nextDouble() * 151.8;
+                lng[i] = -179.9 + r.nextDouble() * 359.8;
+            }
+            mgrs[i] = MGRSPoint.fromLatLng(Ellipsoid.WGS_84, lat[i], lng[i],
+                    null).toString();
+            utm[i] = UTMPoint.fromLatLng(Ellipsoid.WGS_84, lat[i], lng[i],
+                    null);
+        }
+    }
+
+    private int next() {
+        final int i = index;
+        index = (i + 1) % lat.length;
+        return i;
+    }
+
+    @Benchmark
+    public MGRSPoint mgrsFromLatLng() {
+        final int i = next();
+        return MGRSPoint.fromLatLng(Ellipsoid.WGS_84, lat[i], lng[i], null);
+    }
+
+    /**
+     * Conversion as performed for the coordinate display.
+     */
+    @Benchmark
+    public String mgrsFormat() {
+        final int i = next();
+        return MGRSPoint.fromLatLng(Ellipsoid.WGS_84, lat[i], lng[i], null)
+                .getFormattedString();
+    }
+
+    @Benchmark
+    public double[] mgrsDecode() {
+        return MGRSPoint.decodeString(mgrs[next()], Ellipsoid.WGS_84, null)
+                .toLatLng(scratch);
+    }
+
+    @Benchmark
+    public UTMPoint utmFromLatLng() {
+        final int i = next();
+        return UTMPoint.fromLatLng(Ellipsoid.WGS_84, lat[i], lng[i], null);
+    }
+
+    @Benchmark
+    public double[] utmToLatLng() {
+        return utm[next()].toLatLng(Ellipsoid.WGS_84, scratch);
+    }
+
+    @Benchmark
+    public String utmFormat() {
+        return utm[next()].toString();
+    }
+}
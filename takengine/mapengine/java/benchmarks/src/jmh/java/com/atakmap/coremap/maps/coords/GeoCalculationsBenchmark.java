@@ -0,0 +1,132 @@
+package com.atakmap.coremap.maps.coords;
+
+import com.atakmap.benchmarks.Samples;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link GeoCalculations} operations performed on every vertex
+ * of routes and shapes when they are edited or redrawn.
+ *
+ * The point set operations are pure Java. The distance and bearing
+ * operations cross into the native engine and only run when its libraries
+ * are available; they are reported as failed otherwise.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GeoCalculationsBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Engine {
+        @Setup
+        public void setup() {
+            Samples.requireEngine();
+        }
+    }
+
+    @Param({"16", "1024", "16384"})
+    public int count;
+
+    private GeoPoint[] route;
+    private GeoPoint[] antimeridian;
+
+    @Setup
+    public void setup() {
+        route = walk(new Random(20201105L), 35.77, -78.64, count);
+        antimeridian = walk(new Random(20201106L), -17.7, 179.9, count);
+    }
+
+    /**
+     * A vehicle track, roughly 50 m between vertices.
+     */
+    static GeoPoint[] walk(Random r, double lat, double lng, int count) {
+        final GeoPoint[] points = new GeoPoint[count];
+        double heading = r.nextDouble() * 2 * Math.PI;
+        for (int i = 0; i < count; i++) {
+            heading += r.nextGaussian() * 0.3;
+            lat += Math.cos(heading) * 4.5e-4;
+            lng += Math.sin(heading) * 5.5e-4;
+            if (lng > 180)
+                lng -= 360;
+            else if (lng < -180)
+                lng += 360;
+            points[i] = new GeoPoint(lat, lng);
+        }
+        return points;
+    }
+
+    @Benchmark
+    public GeoPoint computeAverage() {
+        return GeoCalculations.computeAverage(route, 0, count, true);
+    }
+
+    @Benchmark
+    public GeoPoint computeAverageAntimeridian() {
+        return GeoCalculations.computeAverage(antimeridian, 0, count, true);
+    }
+
+    @Benchmark
+    public GeoPoint centerOfExtremes() {
+        return GeoCalculations.centerOfExtremes(route, 0, count, true);
+    }
+
+    @Benchmark
+    public int[] findExtremes() {
+        return GeoCalculations.findExtremes(route, 0, count, true);
+    }
+
+    @Benchmark
+    public boolean crossesIDL() {
+        return GeoCalculations.crossesIDL(antimeridian, 0, count);
+    }
+
+    @Benchmark
+    public double approximateScale() {
+        double scale = 0d;
+        for (GeoPoint p : route)
+            scale += GeoCalculations
+                    .approximateMetersPerDegreeLongitude(p.getLatitude())
+                    / GeoCalculations.approximateMetersPerDegreeLatitude(
+                            p.getLatitude());
+        return scale;
+    }
+
+    /**
+     * Route length, as computed for the route details and the measurement
+     * tools.
+     */
+    @Benchmark
+    public double distanceTo(Engine engine) {
+        double length = 0d;
+        for (int i = 1; i < count; i++)
+            length += GeoCalculations.distanceTo(route[i - 1], route[i]);
+        return length;
+    }
+
+    @Benchmark
+    public double bearingTo(Engine engine) {
+        double sum = 0d;
+        for (int i = 1; i < count; i++)
+            sum += GeoCalculations.bearingTo(route[i - 1], route[i]);
+        return sum;
+    }
+
+    @Benchmark
+    public GeoPoint pointAtDistance(Engine engine) {
+        GeoPoint p = route[0];
+        for (int i = 0; i < count; i++)
+            p = GeoCalculations.pointAtDistance(p, (i * 37) % 360, 50d);
+        return p;
+    }
+}
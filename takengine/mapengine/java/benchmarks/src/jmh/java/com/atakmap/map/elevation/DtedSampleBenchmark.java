@@ -0,0 +1,116 @@
+package com.atakmap.map.elevation;
+
+import com.atakmap.benchmarks.Samples;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures point sampling of the DTED sample cells with the access pattern
+ * of the application's <code>Dt2ElevationModel</code>: the cell is opened,
+ * its header parsed and the four posts around the point read for every
+ * lookup. The points follow a route profile crossing both cells.
+ *
+ * The lookup is reproduced here as the application module is not available
+ * on a desktop JVM; it serves as the baseline for cached implementations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DtedSampleBenchmark {
+
+    private static final int NUM_LNG_LINES_OFFSET = 47;
+    private static final int HEADER_OFFSET = 3428;
+    private static final int DATA_RECORD_PREFIX_SIZE = 8;
+    private static final int DATA_RECORD_SUFFIX_SIZE = 4;
+
+    private File root;
+    private double[] lat;
+    private double[] lng;
+
+    @Setup
+    public void setup() throws IOException {
+        root = Samples.extract("dted/w079/n35.dt0", "dted/w080/n35.dt0");
+
+        // 1000 point profile across the cell boundary
+        final Random r = new Random(20201105L);
+        lat = new double[1000];
+        lng = new double[1000];
+        for (int i = 0; i < lat.length; i++) {
+            final double t = (double) i / (lat.length - 1);
+            lat[i] = 35.2 + 0.6 * t + r.nextGaussian() * 1e-4;
+            lng[i] = -79.6 + 1.2 * t + r.nextGaussian() * 1e-4;
+        }
+    }
+
+    private File cell(double latitude, double longitude) {
+        final int ilat = (int) Math.floor(latitude);
+        final int ilng = (int) Math.floor(longitude);
+        return new File(root, String.format("dted/%s%03d/%s%02d.dt0",
+                ilng < 0 ? "w" : "e", Math.abs(ilng),
+                ilat < 0 ? "s" : "n", Math.abs(ilat)));
+    }
+
+    @Benchmark
+    public double profilePerPoint() throws IOException {
+        double sum = 0d;
+        for (int i = 0; i < lat.length; i++) {
+            try (RandomAccessFile raf = new RandomAccessFile(
+                    cell(lat[i], lng[i]), "r")) {
+                sum += sample(raf, lat[i], lng[i]);
+            }
+        }
+        return sum;
+    }
+
+    static double sample(RandomAccessFile in, double latitude,
+            double longitude) throws IOException {
+        in.skipBytes(NUM_LNG_LINES_OFFSET);
+        final byte[] header = new byte[8];
+        in.readFully(header);
+        final int lngLines = Integer.parseInt(
+                new String(header, 0, 4, StandardCharsets.US_ASCII));
+        final int latPoints = Integer.parseInt(
+                new String(header, 4, 4, StandardCharsets.US_ASCII));
+
+        final double yd = (latitude - Math.floor(latitude)) * (latPoints - 1);
+        final double xd = (longitude - Math.floor(longitude))
+                * (lngLines - 1);
+        final int x = (int) xd;
+        final int y = (int) yd;
+        final int dataRecSize = DATA_RECORD_PREFIX_SIZE + (latPoints * 2)
+                + DATA_RECORD_SUFFIX_SIZE;
+        in.skipBytes((HEADER_OFFSET - NUM_LNG_LINES_OFFSET - 8)
+                + x * dataRecSize + DATA_RECORD_PREFIX_SIZE + y * 2);
+
+        final double sw = interpret(in.readShort());
+        final double nw = interpret(in.readShort());
+        in.skipBytes(dataRecSize - 4);
+        final double se = interpret(in.readShort());
+        final double ne = interpret(in.readShort());
+
+        final double xr = xd - x;
+        final double yr = yd - y;
+        final double s = sw + (se - sw) * xr;
+        final double n = nw + (ne - nw) * xr;
+        return s + (n - s) * yr;
+    }
+
+    private static double interpret(short s) {
+        if ((s & 0xFFFF) == 0xFFFF)
+            return Double.NaN;
+        return (1 - (2 * ((s & 0x8000) >> 15))) * (s & 0x7FFF);
+    }
+}
@@ -0,0 +1,196 @@
+package com.atakmap.map.layer.feature.datastore;
+
+import com.atakmap.benchmarks.Samples;
+import com.atakmap.map.layer.feature.AttributeSet;
+import com.atakmap.map.layer.feature.DataStoreException;
+import com.atakmap.map.layer.feature.Feature;
+import com.atakmap.map.layer.feature.FeatureCursor;
+import com.atakmap.map.layer.feature.FeatureDataSource;
+import com.atakmap.map.layer.feature.FeatureDataStore2;
+import com.atakmap.map.layer.feature.FeatureDefinition;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.feature.geometry.GeometryFactory;
+import com.atakmap.map.layer.feature.ogr.OgrFeatureDataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures bulk insertion into and queries against {@link FDB2}, using the
+ * sample parcel shapefile (400 polygons, 52 attribute columns).
+ *
+ * Requires the native engine libraries for SQLite/SpatiaLite and OGR.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FDB2Benchmark {
+
+    private File dir;
+    private String type;
+    private String provider;
+    private String name;
+    private double minResolution;
+    private double maxResolution;
+    private List<FeatureDefinition> features;
+    private FeatureSetDatabase2 database;
+    private int inserted;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, DataStoreException {
+        Samples.requireEngine();
+        dir = Samples.extract("shp/parcels.shp", "shp/parcels.shx",
+                "shp/parcels.dbf", "shp/parcels.prj");
+
+        features = new ArrayList<>();
+        final FeatureDataSource.Content content = new OgrFeatureDataSource()
+                .parse(new File(dir, "shp/parcels.shp"));
+        if (content == null)
+            throw new IOException("Failed to parse parcels.shp");
+        try {
+            type = content.getType();
+            provider = content.getProvider();
+            while (content.moveToNext(
+                    FeatureDataSource.Content.ContentPointer.FEATURE_SET)) {
+                name = content.getFeatureSetName();
+                minResolution = content.getMinResolution();
+                maxResolution = content.getMaxResolution();
+                while (content.moveToNext(
+                        FeatureDataSource.Content.ContentPointer.FEATURE))
+                    features.add(copy(content.get()));
+            }
+        } finally {
+            content.close();
+        }
+
+        database = build(new File(dir, "query.sqlite"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (database != null)
+            database.dispose();
+    }
+
+    private static FeatureDefinition copy(FeatureDefinition def) {
+        final FeatureDataSource.FeatureDefinition retval = new FeatureDataSource.FeatureDefinition();
+        retval.name = def.getName();
+        retval.geomCoding = def.getGeomCoding();
+        retval.rawGeom = def.getRawGeometry();
+        if (retval.rawGeom instanceof byte[])
+            retval.rawGeom = ((byte[]) retval.rawGeom).clone();
+        retval.styleCoding = def.getStyleCoding();
+        retval.rawStyle = def.getRawStyle();
+        retval.attributes = (def.getAttributes() != null)
+                ? new AttributeSet(def.getAttributes())
+                : null;
+        return retval;
+    }
+
+    private FeatureSetDatabase2 build(File file) throws DataStoreException {
+        final FeatureSetDatabase2.Builder builder = new FeatureSetDatabase2.Builder(
+                file);
+        try {
+            builder.beginBulkInsertion();
+            boolean commit = false;
+            try {
+                final long fsid = builder.insertFeatureSet(provider, type,
+                        name, minResolution, maxResolution);
+                for (FeatureDefinition def : features)
+                    builder.insertFeature(fsid, def);
+                commit = true;
+            } finally {
+                builder.endBulkInsertion(commit);
+            }
+            builder.createIndices();
+            return builder.build();
+        } finally {
+            builder.close();
+        }
+    }
+
+    private static int drain(FeatureCursor cursor, boolean materialize) {
+        int count = 0;
+        try {
+            while (cursor.moveToNext()) {
+                if (materialize) {
+                    final Feature f = cursor.get();
+                    if (f != null)
+                        count++;
+                } else if (cursor.getRawGeometry() != null) {
+                    count++;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return count;
+    }
+
+    /**
+     * Import of the shapefile into a new database, including index creation.
+     */
+    @Benchmark
+    public long insert() throws DataStoreException {
+        final File file = new File(dir, "insert" + (inserted++) + ".sqlite");
+        final FeatureSetDatabase2 db = build(file);
+        try {
+            return file.length();
+        } finally {
+            db.dispose();
+            file.delete();
+        }
+    }
+
+    /**
+     * Full feature materialization, as performed by search and export.
+     */
+    @Benchmark
+    public int queryAll() throws DataStoreException {
+        return drain(database.queryFeatures(null), true);
+    }
+
+    /**
+     * Geometry and style only, as queried by the renderer.
+     */
+    @Benchmark
+    public int queryRender() throws DataStoreException {
+        final FeatureDataStore2.FeatureQueryParameters params = new FeatureDataStore2.FeatureQueryParameters();
+        params.ignoredFeatureProperties = FeatureDataStore2.PROPERTY_FEATURE_ATTRIBUTES;
+        return drain(database.queryFeatures(params), false);
+    }
+
+    /**
+     * Attributes of the features in a viewport covering a quarter of the
+     * parcels.
+     */
+    @Benchmark
+    public int querySpatial() throws DataStoreException {
+        final FeatureDataStore2.FeatureQueryParameters params = new FeatureDataStore2.FeatureQueryParameters();
+        params.spatialFilter = GeometryFactory.fromEnvelope(
+                new Envelope(-78.70, 35.74, 0d, -78.66, 35.78, 0d));
+        int count = 0;
+        final FeatureCursor cursor = database.queryFeatures(params);
+        try {
+            while (cursor.moveToNext())
+                if (cursor.getAttributes() != null)
+                    count++;
+        } finally {
+            cursor.close();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,68 @@
+package com.atakmap.opengl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link GLTriangulate} for the concave polygons that drawing
+ * tools and imported shapes produce. Each polygon is star shaped with a
+ * randomized radius per vertex, so roughly half of its vertices are reflex.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GLTriangulateBenchmark {
+
+    @Param({"16", "256", "2048"})
+    public int vertices;
+
+    private FloatBuffer floats;
+    private DoubleBuffer doubles;
+    private ShortBuffer indices;
+
+    @Setup
+    public void setup() {
+        final Random r = new Random(20201105L);
+        floats = FloatBuffer.allocate(vertices * 2);
+        doubles = DoubleBuffer.allocate(vertices * 3);
+        for (int i = 0; i < vertices; i++) {
+            final double a = 2 * Math.PI * i / vertices;
+            final double radius = ((i & 1) == 0 ? 1.0 : 0.45)
+                    * (0.9 + 0.1 * r.nextDouble());
+            final double x = -78.64 + 0.01 * radius * Math.cos(a);
+            final double y = 35.77 + 0.01 * radius * Math.sin(a);
+            floats.put((float) (x + 78.64)).put((float) (y - 35.77));
+            doubles.put(x).put(y).put(100d);
+        }
+        indices = ShortBuffer.allocate((vertices - 2) * 3);
+    }
+
+    @Benchmark
+    public int triangulateFloat() {
+        floats.clear();
+        indices.clear();
+        return GLTriangulate.triangulate(floats, vertices, indices);
+    }
+
+    /**
+     * Geodetic XYZ vertices, as passed by the batch geometry renderer.
+     */
+    @Benchmark
+    public int triangulateDouble() {
+        doubles.clear();
+        indices.clear();
+        return GLTriangulate.triangulate(doubles, 3, vertices, indices);
+    }
+}
@@ -0,0 +1,103 @@
+package com.atakmap.opengl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link GLTriangulate} for the large polygons of imported data:
+ * country borders, coastline shapefiles and KML areas. The exterior ring is
+ * a coastline with 1/f roughness, as found in digitized shorelines, and the
+ * holes are lakes scattered over the interior.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GLTriangulateCoastlineBenchmark {
+
+    @Param({"10000", "100000"})
+    public int vertices;
+
+    /** the number of lakes */
+    @Param({"0", "64"})
+    public int holes;
+
+    private DoubleBuffer points;
+    private int[] rings;
+    private IntBuffer indices;
+    private GLTriangulate.Cache cache;
+
+    @Setup
+    public void setup() {
+        final Random r = new Random(20201105L);
+
+        // radial noise keeps the ring simple regardless of the roughness
+        final int octaves = 12;
+        final double[] phase = new double[octaves];
+        for (int o = 0; o < octaves; o++)
+            phase[o] = r.nextDouble() * 2 * Math.PI;
+
+        final int lakeVertices = 32;
+        rings = new int[1 + holes];
+        rings[0] = vertices;
+        points = DoubleBuffer.allocate((vertices + holes * lakeVertices) * 2);
+        for (int i = 0; i < vertices; i++) {
+            final double a = 2 * Math.PI * i / vertices;
+            double radius = 1d;
+            for (int o = 0; o < octaves; o++) {
+                final double f = 1 << o;
+                radius += 0.25 / f * Math.sin(a * f * 3 + phase[o]);
+            }
+            radius += 0.002 * r.nextDouble();
+            points.put(-78.64 + radius * Math.cos(a));
+            points.put(35.77 + radius * Math.sin(a));
+        }
+
+        // lakes on a grid within the smallest possible coastline radius
+        final int side = (int) Math.ceil(Math.sqrt(holes));
+        final double cell = 0.5 / side;
+        for (int h = 0; h < holes; h++) {
+            rings[1 + h] = lakeVertices;
+            final double cx = -78.64 - 0.25 + (h % side + 0.5) * cell;
+            final double cy = 35.77 - 0.25 + (h / side + 0.5) * cell;
+            for (int i = 0; i < lakeVertices; i++) {
+                // clockwise
+                final double a = -2 * Math.PI * i / lakeVertices;
+                final double radius = cell * (0.2 + 0.2 * r.nextDouble());
+                points.put(cx + radius * Math.cos(a));
+                points.put(cy + radius * Math.sin(a));
+            }
+        }
+
+        indices = IntBuffer
+                .allocate((vertices + holes * lakeVertices + 2 * holes - 2) * 3);
+        cache = new GLTriangulate.Cache(Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public int triangulate() {
+        points.clear();
+        indices.clear();
+        return GLTriangulate.triangulate(points, 2, rings, indices);
+    }
+
+    /**
+     * The polygon is restyled and its renderer recreated; the triangulation
+     * is retained.
+     */
+    @Benchmark
+    public GLTriangulate.Triangles restyle() {
+        points.clear();
+        return cache.get(points, 2, rings);
+    }
+}
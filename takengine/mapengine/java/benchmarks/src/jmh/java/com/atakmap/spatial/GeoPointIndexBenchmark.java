@@ -0,0 +1,198 @@
+package com.atakmap.spatial;
+
+import com.atakmap.coremap.maps.coords.GeoPoint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link GeoPointIndex} with the linear scans performed by
+ * <code>DefaultMapGroup</code> for radius, closest item and bounds queries.
+ *
+ * The items are distributed as tracked contacts typically are: most of them
+ * clustered over an area of operations, the remainder spread over the globe.
+ * The distance is computed in Java for both variants; on device the linear
+ * scan additionally pays a JNI transition per item.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GeoPointIndexBenchmark {
+
+    static final class Item {
+        final GeoPoint point = GeoPoint.createMutable();
+    }
+
+    static final GeoPointIndex.Locator<Item> LOCATOR = new GeoPointIndex.Locator<Item>() {
+        @Override
+        public boolean getLocation(Item object, GeoPoint location) {
+            location.set(object.point);
+            return true;
+        }
+    };
+
+    static final GeoPointIndex.Metric<Item> DISTANCE = new GeoPointIndex.Metric<Item>() {
+        @Override
+        public double distance(Item object, GeoPoint location) {
+            return haversine(object.point, location);
+        }
+    };
+
+    static double haversine(GeoPoint a, GeoPoint b) {
+        final double dlat = Math.toRadians(b.getLatitude() - a.getLatitude());
+        final double dlng = Math.toRadians(b.getLongitude() - a.getLongitude());
+        final double h = Math.sin(dlat / 2) * Math.sin(dlat / 2)
+                + Math.cos(Math.toRadians(a.getLatitude()))
+                        * Math.cos(Math.toRadians(b.getLatitude()))
+                        * Math.sin(dlng / 2) * Math.sin(dlng / 2);
+        return 2 * 6371008.8 * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+
+    @Param({"1000", "20000", "100000"})
+    public int count;
+
+    @Param({"1000"})
+    public double radius;
+
+    private Map<Long, Item> items;
+    private GeoPointIndex<Item> index;
+    private GeoPoint[] queries;
+    private Item[] movers;
+    private int next;
+    private int moved;
+
+    @Setup
+    public void setup() {
+        final Random r = new Random(20201105L);
+        items = new ConcurrentHashMap<>();
+        index = new GeoPointIndex<>(LOCATOR);
+        for (int i = 0; i < count; i++) {
+            final Item item = new Item();
+            if (r.nextInt(10) < 9)
+                item.point.set(35.5 + r.nextDouble(), -79.5 + r.nextDouble());
+            else
+                item.point.set(-80 + r.nextDouble() * 160,
+                        -180 + r.nextDouble() * 360);
+            items.put((long) i, item);
+            index.add(item);
+        }
+
+        queries = new GeoPoint[256];
+        for (int i = 0; i < queries.length; i++)
+            queries[i] = new GeoPoint(35.5 + r.nextDouble(),
+                    -79.5 + r.nextDouble());
+
+        movers = items.values().toArray(new Item[0]);
+    }
+
+    private GeoPoint nextQuery() {
+        next = (next + 1) % queries.length;
+        return queries[next];
+    }
+
+    @Benchmark
+    public List<Item> linearRadius() {
+        final GeoPoint location = nextQuery();
+        final List<Item> retval = new ArrayList<>();
+        for (Item i : items.values())
+            if (haversine(i.point, location) <= radius)
+                retval.add(i);
+        return retval;
+    }
+
+    @Benchmark
+    public List<Item> indexedRadius() {
+        final GeoPoint location = nextQuery();
+        final List<Item> candidates = new ArrayList<>();
+        index.get(location, radius, candidates);
+        final List<Item> retval = new ArrayList<>();
+        for (Item i : candidates)
+            if (haversine(i.point, location) <= radius)
+                retval.add(i);
+        return retval;
+    }
+
+    @Benchmark
+    public Item linearClosest() {
+        final GeoPoint location = nextQuery();
+        Item candidate = null;
+        double candidateDistance = Double.POSITIVE_INFINITY;
+        for (Item i : items.values()) {
+            final double d = haversine(i.point, location);
+            if (d < candidateDistance) {
+                candidate = i;
+                candidateDistance = d;
+            }
+        }
+        return candidate;
+    }
+
+    @Benchmark
+    public List<Item> indexedClosest() {
+        final List<Item> retval = new ArrayList<>(1);
+        index.nearest(nextQuery(), 1, Double.POSITIVE_INFINITY, DISTANCE,
+                null, retval);
+        return retval;
+    }
+
+    @Benchmark
+    public List<Item> indexedNearest10() {
+        final List<Item> retval = new ArrayList<>(10);
+        index.nearest(nextQuery(), 10, Double.POSITIVE_INFINITY, DISTANCE,
+                null, retval);
+        return retval;
+    }
+
+    @Benchmark
+    public List<Item> linearBounds() {
+        final GeoPoint location = nextQuery();
+        final double north = location.getLatitude() + 0.05;
+        final double south = location.getLatitude() - 0.05;
+        final double east = location.getLongitude() + 0.05;
+        final double west = location.getLongitude() - 0.05;
+        final List<Item> retval = new ArrayList<>();
+        for (Item i : items.values()) {
+            final double lat = i.point.getLatitude();
+            final double lng = i.point.getLongitude();
+            if (lat >= south && lat <= north && lng >= west && lng <= east)
+                retval.add(i);
+        }
+        return retval;
+    }
+
+    @Benchmark
+    public List<Item> indexedBounds() {
+        final GeoPoint location = nextQuery();
+        final List<Item> retval = new ArrayList<>();
+        index.get(location.getLatitude() + 0.05,
+                location.getLongitude() - 0.05,
+                location.getLatitude() - 0.05,
+                location.getLongitude() + 0.05, retval);
+        return retval;
+    }
+
+    /**
+     * Cost of keeping the index current as a contact reports a new position.
+     */
+    @Benchmark
+    public boolean indexedRefresh() {
+        final Item item = movers[moved];
+        moved = (moved + 1) % movers.length;
+        item.point.set(item.point.getLatitude(),
+                item.point.getLongitude() + ((moved & 1) == 0 ? 1e-4 : -1e-4));
+        return index.refresh(item);
+    }
+}
@@ -0,0 +1,150 @@
+package com.atakmap.spatial;
+
+import com.atakmap.benchmarks.Samples;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the SpatiaLite and in-heap {@link SpatialCalculator} backends on
+ * the instruction patterns of the geofence monitors (move a point, test it
+ * against the fence), of coverage selection (create a polygon, test it
+ * against an area of interest) and of shape editing (update the fence).
+ *
+ * The <code>sqlite</code> backend requires the native engine libraries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpatialCalculatorBenchmark {
+
+    @Param({"sqlite", "heap"})
+    public String backend;
+
+    /** number of vertices in the fence */
+    @Param({"5", "100", "2000"})
+    public int vertices;
+
+    private SpatialCalculator calc;
+    private List<GeoPoint> fence;
+    private long fenceHandle;
+    private long pointHandle;
+    private GeoPoint[] queries;
+    private GeoPoint[][] quads;
+    private GeoPoint[] route;
+    private int next;
+
+    @Setup
+    public void setup() {
+        final SpatialCalculator.Builder builder = new SpatialCalculator.Builder();
+        if (backend.equals("heap")) {
+            builder.inHeap();
+        } else {
+            Samples.requireEngine();
+            builder.inMemory();
+        }
+        calc = builder.build();
+
+        // an irregular ring around the area of operations
+        final Random r = new Random(20201105L);
+        fence = new ArrayList<>(vertices + 1);
+        for (int i = 0; i < vertices; i++) {
+            final double theta = 2 * Math.PI * i / vertices;
+            final double radius = 0.1 * (0.8 + 0.2 * r.nextDouble());
+            fence.add(new GeoPoint(35.5 + radius * Math.sin(theta),
+                    -79.5 + radius * Math.cos(theta)));
+        }
+        fence.add(fence.get(0));
+        fenceHandle = calc.createPolygon(fence);
+        pointHandle = calc.createPoint(new GeoPoint(35.5, -79.5));
+
+        queries = new GeoPoint[256];
+        quads = new GeoPoint[256][];
+        for (int i = 0; i < queries.length; i++) {
+            final double lat = 35.5 + (r.nextDouble() - 0.5) * 0.25;
+            final double lng = -79.5 + (r.nextDouble() - 0.5) * 0.25;
+            queries[i] = new GeoPoint(lat, lng);
+            final double d = 0.01;
+            quads[i] = new GeoPoint[] {
+                    new GeoPoint(lat - d, lng - d),
+                    new GeoPoint(lat + d, lng - d),
+                    new GeoPoint(lat + d, lng + d),
+                    new GeoPoint(lat - d, lng + d)
+            };
+        }
+
+        route = new GeoPoint[1000];
+        double lat = 35.4;
+        double lng = -79.6;
+        for (int i = 0; i < route.length; i++) {
+            lat += 0.0002 + (r.nextDouble() - 0.5) * 0.0001;
+            lng += 0.0002 + (r.nextDouble() - 0.5) * 0.0001;
+            route[i] = new GeoPoint(lat, lng);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        calc.dispose();
+    }
+
+    private int nextIndex() {
+        next = (next + 1) % queries.length;
+        return next;
+    }
+
+    /**
+     * A tracked item reports a new position and is tested against the fence.
+     */
+    @Benchmark
+    public boolean geofenceContains() {
+        calc.updatePoint(pointHandle, queries[nextIndex()]);
+        return calc.contains(fenceHandle, pointHandle);
+    }
+
+    /**
+     * A coverage is created, tested against the area of interest and
+     * released.
+     */
+    @Benchmark
+    public boolean coverageIntersects() {
+        final GeoPoint[] quad = quads[nextIndex()];
+        final long handle = calc.createPolygon(quad[0], quad[1], quad[2],
+                quad[3]);
+        try {
+            return calc.intersects(fenceHandle, handle);
+        } finally {
+            calc.deleteGeometry(handle);
+        }
+    }
+
+    /**
+     * The fence is edited and the tracked item retested; the fence must be
+     * prepared again.
+     */
+    @Benchmark
+    public boolean fenceUpdate() {
+        calc.updatePolygon(fenceHandle, fence);
+        calc.updatePoint(pointHandle, queries[nextIndex()]);
+        return calc.contains(fenceHandle, pointHandle);
+    }
+
+    @Benchmark
+    public Collection<GeoPoint> simplifyRoute() {
+        return calc.simplify(route, 0.0005, false);
+    }
+}
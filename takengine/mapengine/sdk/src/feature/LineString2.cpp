@@ -174,6 +174,31 @@ TAKErr LineString2::get(Point2 *value, const std::size_t i) const NOTHROWS
 
     return code;
 }
+TAKErr LineString2::getPoints(double *value, const std::size_t offset, const std::size_t count, const std::size_t ptsDim) const NOTHROWS
+{
+    if (!value && count)
+        return TE_InvalidArg;
+    if (ptsDim != 2u && ptsDim != 3u)
+        return TE_InvalidArg;
+    if (offset > this->numPoints || count > (this->numPoints - offset))
+        return TE_BadIndex;
+
+    const double *src = this->points.get() + (offset*this->dimension);
+    if (ptsDim == this->dimension) {
+        memcpy(value, src, count*ptsDim*sizeof(double));
+    } else {
+        // dimensions differ, either dropping or zero filling z
+        for (std::size_t i = 0; i < count; i++) {
+            value[0] = src[0];
+            value[1] = src[1];
+            if (ptsDim == 3u)
+                value[2] = 0.0;
+            src += this->dimension;
+            value += ptsDim;
+        }
+    }
+    return TE_Ok;
+}
 
 TAKErr LineString2::setX(const std::size_t i, const double x) NOTHROWS
 {
@@ -123,6 +123,24 @@ namespace TAK {
                  * @return  TE_Ok on success; various codes on failure.
                  */
                 Util::TAKErr get(Point2 *value, const std::size_t i) const NOTHROWS;
+                /**
+                 * Copies a range of points from the linestring. If 'ptsDim'
+                 * is '3' and the linestring is 2D, the z-coordinate for all
+                 * points will be '0'; if 'ptsDim' is '2' and the linestring
+                 * is 3D, the z-coordinates are not copied.
+                 *
+                 * @param value     Returns the points, interleaved by
+                 *                  component. Must have capacity for
+                 *                  'count'*'ptsDim' values.
+                 * @param offset    The index of the first point
+                 * @param count     The number of points
+                 * @param ptsDim    The dimension of the returned points
+                 *
+                 * @return  TE_Ok on success. TE_InvalidArg will be returned if
+                 *          'ptsDim' is not '2' or '3'; TE_BadIndex if the
+                 *          range exceeds the number of points.
+                 */
+                Util::TAKErr getPoints(double *value, const std::size_t offset, const std::size_t count, const std::size_t ptsDim) const NOTHROWS;
 
                 /**
                  * Sets the x-coordinate of the specified point.